@@ -0,0 +1,123 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.animation;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of decoded animation frames that is limited by
+ * the number of bytes the frames occupy (rather than the number of frames).
+ * <p>
+ * The images stored in this cache are owned by this cache: callers should copy
+ * an image before modifying it.
+ */
+public class FrameCache {
+
+	/**
+	 * Return the approximate number of bytes the raster of an image occupies.
+	 */
+	public static long getByteCount(BufferedImage image) {
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		long bits = ((long) buffer.getSize()) * buffer.getNumBanks()
+				* DataBuffer.getDataTypeSize(buffer.getDataType());
+		return bits / 8;
+	}
+
+	/** Frames in access order, from least to most recently used. */
+	private final LinkedHashMap<Integer, BufferedImage> frames = new LinkedHashMap<>(
+			16, .75f, true);
+	private final long maxByteCount;
+	private long byteCount = 0;
+
+	/**
+	 * @param maxByteCount
+	 *            the maximum number of bytes of image data this cache should
+	 *            retain. If this is zero then this cache never retains
+	 *            anything.
+	 */
+	public FrameCache(long maxByteCount) {
+		if (maxByteCount < 0)
+			throw new IllegalArgumentException("maxByteCount (" + maxByteCount
+					+ ") must not be negative");
+		this.maxByteCount = maxByteCount;
+	}
+
+	/**
+	 * Return a cached frame, or null if the frame is not in this cache.
+	 */
+	public synchronized BufferedImage get(int frameIndex) {
+		return frames.get(frameIndex);
+	}
+
+	/**
+	 * Store a frame in this cache. This may purge the least recently used
+	 * frames. If the image alone exceeds the maximum byte count of this cache
+	 * then it is not stored.
+	 * 
+	 * @param frameIndex
+	 *            the index of the frame
+	 * @param image
+	 *            the frame image. This cache assumes ownership of this image;
+	 *            the caller should not modify it after calling this method.
+	 */
+	public synchronized void put(int frameIndex, BufferedImage image) {
+		long size = getByteCount(image);
+		if (size > maxByteCount)
+			return;
+		BufferedImage oldImage = frames.put(frameIndex, image);
+		if (oldImage != null)
+			byteCount -= getByteCount(oldImage);
+		byteCount += size;
+
+		Iterator<Map.Entry<Integer, BufferedImage>> iter = frames.entrySet()
+				.iterator();
+		while (byteCount > maxByteCount && iter.hasNext()) {
+			Map.Entry<Integer, BufferedImage> entry = iter.next();
+			byteCount -= getByteCount(entry.getValue());
+			iter.remove();
+		}
+	}
+
+	/**
+	 * Return true if a frame is stored in this cache. Unlike {@link #get(int)}
+	 * this does not affect the order frames are purged in.
+	 */
+	public synchronized boolean contains(int frameIndex) {
+		return frames.containsKey(frameIndex);
+	}
+
+	/**
+	 * Remove all frames from this cache.
+	 */
+	public synchronized void clear() {
+		frames.clear();
+		byteCount = 0;
+	}
+
+	/**
+	 * Return the approximate number of bytes of image data this cache
+	 * currently retains.
+	 */
+	public synchronized long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Return the maximum number of bytes of image data this cache retains.
+	 */
+	public long getMaxByteCount() {
+		return maxByteCount;
+	}
+}
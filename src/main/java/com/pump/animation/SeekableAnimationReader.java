@@ -0,0 +1,77 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.animation;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An <code>AnimationReader</code> that can also jump to any frame.
+ * <p>
+ * Implementations are expected to index the animation when they are
+ * constructed, so {@link #getFrameCount()}, {@link #getDuration()} and
+ * {@link #getFrameDuration(int)} are always immediately available.
+ * <p>
+ * Calling {@link #getFrame(int, boolean)} also moves the position of
+ * {@link #getNextFrame(boolean)}: the next call to <code>getNextFrame()</code>
+ * returns the frame after the frame that was requested.
+ */
+public interface SeekableAnimationReader extends AnimationReader, Closeable {
+
+	/**
+	 * Return a specific frame of this animation.
+	 * 
+	 * @param frameIndex
+	 *            the index of the frame to return, from zero to
+	 *            <code>getFrameCount()-1</code>.
+	 * @param cloneImage
+	 *            if this is <code>true</code>, this method will always return a
+	 *            new <code>BufferedImage</code>. If this is <code>false</code>,
+	 *            then this method <i>may</i> constantly return the same
+	 *            <code>BufferedImage</code>, updated for each frame.
+	 * @return the requested frame.
+	 * @throws IOException
+	 *             if a problem occurs reading the frame data
+	 */
+	public BufferedImage getFrame(int frameIndex, boolean cloneImage)
+			throws IOException;
+
+	/**
+	 * Return the duration of a specific frame in seconds.
+	 * 
+	 * @param frameIndex
+	 *            the index of the frame to examine, from zero to
+	 *            <code>getFrameCount()-1</code>.
+	 */
+	public double getFrameDuration(int frameIndex);
+
+	/**
+	 * Return the index of the frame that is visible at a given time.
+	 * 
+	 * @param time
+	 *            the time, in seconds, relative to the start of this
+	 *            animation.
+	 * @return the index of the frame visible at the given time. If the time is
+	 *         negative this returns zero, and if the time is greater than the
+	 *         duration of this animation this returns the last frame.
+	 */
+	public default int getFrameIndex(double time) {
+		int frameCount = getFrameCount();
+		double t = 0;
+		for (int a = 0; a < frameCount; a++) {
+			t += getFrameDuration(a);
+			if (time < t)
+				return a;
+		}
+		return frameCount - 1;
+	}
+}
@@ -0,0 +1,304 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.animation.quicktime;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import javax.imageio.ImageIO;
+
+import com.pump.animation.FrameCache;
+import com.pump.animation.SeekableAnimationReader;
+import com.pump.animation.quicktime.atom.Atom;
+import com.pump.animation.quicktime.atom.AtomReader;
+import com.pump.animation.quicktime.atom.AtomReader.UnsupportedFileException;
+import com.pump.animation.quicktime.atom.ChunkOffsetAtom;
+import com.pump.animation.quicktime.atom.MediaHeaderAtom;
+import com.pump.animation.quicktime.atom.ParentAtom;
+import com.pump.animation.quicktime.atom.SampleSizeAtom;
+import com.pump.animation.quicktime.atom.SampleToChunkAtom;
+import com.pump.animation.quicktime.atom.SampleToChunkAtom.SampleToChunkEntry;
+import com.pump.animation.quicktime.atom.TimeToSampleAtom;
+import com.pump.animation.quicktime.atom.TimeToSampleAtom.TimeToSampleEntry;
+import com.pump.animation.quicktime.atom.VideoMediaInformationHeaderAtom;
+import com.pump.animation.quicktime.atom.VideoSampleDescriptionAtom;
+import com.pump.animation.quicktime.atom.VideoSampleDescriptionEntry;
+import com.pump.io.GuardedInputStream;
+
+/**
+ * This reads the frames of the first video track of a QuickTime movie where
+ * every sample is a JPEG or PNG image, such as the movies {@link JPEGMovWriter}
+ * and {@link PNGMovWriter} create.
+ * <p>
+ * When this object is constructed it uses an {@link AtomReader} to read the
+ * movie's sample tables, and from those tables it calculates the file offset,
+ * size and duration of every sample. (The sample data itself is skipped.)
+ * Because every sample is an independent image, any frame can be decoded
+ * without decoding the frames before it. Decoded frames are kept in a
+ * {@link FrameCache}.
+ */
+public class MovReader implements SeekableAnimationReader {
+
+	/**
+	 * The default number of bytes the frame cache may use: 64 MB.
+	 */
+	public static final long DEFAULT_CACHE_BYTE_COUNT = 64 * 1024 * 1024;
+
+	/**
+	 * This AtomReader skips the (potentially huge) "mdat" atom.
+	 */
+	static class IndexAtomReader extends AtomReader {
+		@Override
+		protected Atom read(Atom parent, GuardedInputStream in, String atomType)
+				throws IOException {
+			if ("mdat".equals(atomType)) {
+				Atom atom = super.read(parent, new GuardedInputStream(in, 0,
+						false), atomType);
+				Atom.skip(in, in.getRemainingLimit());
+				return atom;
+			}
+			return super.read(parent, in, atomType);
+		}
+	}
+
+	/**
+	 * Return the first descendant of an atom that is an instance of the given
+	 * class.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Atom> T findAtom(Atom atom, Class<T> type) {
+		if (type.isInstance(atom))
+			return (T) atom;
+		for (int a = 0; a < atom.getChildCount(); a++) {
+			T t = findAtom(atom.getChildAt(a), type);
+			if (t != null)
+				return t;
+		}
+		return null;
+	}
+
+	RandomAccessFile file;
+	FrameCache cache;
+	long[] sampleOffsets;
+	int[] sampleSizes;
+	double[] sampleDurations;
+	double totalDuration;
+	int width, height;
+	BufferedImage bi;
+	int nextFrameIndex = 0;
+
+	/**
+	 * Create a MovReader that uses a 64 MB frame cache.
+	 */
+	public MovReader(File file) throws IOException {
+		this(file, new FrameCache(DEFAULT_CACHE_BYTE_COUNT));
+	}
+
+	/**
+	 * @param file
+	 *            the movie file to read.
+	 * @param cache
+	 *            the cache to store decoded frames in. This should not be
+	 *            shared across different files.
+	 */
+	public MovReader(File file, FrameCache cache) throws IOException {
+		this.cache = cache;
+		Atom[] atoms = new IndexAtomReader().readAll(file);
+		Atom videoTrack = null;
+		for (Atom atom : atoms) {
+			if (ParentAtom.ATOM_TYPE_MOVIE.equals(atom.getIdentifier())) {
+				for (int a = 0; a < atom.getChildCount()
+						&& videoTrack == null; a++) {
+					Atom track = atom.getChildAt(a);
+					if (ParentAtom.ATOM_TYPE_TRACK.equals(track.getIdentifier())
+							&& findAtom(track,
+									VideoMediaInformationHeaderAtom.class) != null)
+						videoTrack = track;
+				}
+			}
+		}
+		if (videoTrack == null)
+			throw new UnsupportedFileException("No video track was found.");
+
+		readSampleTable(videoTrack);
+		this.file = new RandomAccessFile(file, "r");
+	}
+
+	private void readSampleTable(Atom videoTrack) throws IOException {
+		MediaHeaderAtom mediaHeader = findAtom(videoTrack, MediaHeaderAtom.class);
+		VideoSampleDescriptionAtom descriptionAtom = findAtom(videoTrack,
+				VideoSampleDescriptionAtom.class);
+		TimeToSampleAtom timeToSample = findAtom(videoTrack,
+				TimeToSampleAtom.class);
+		SampleToChunkAtom sampleToChunk = findAtom(videoTrack,
+				SampleToChunkAtom.class);
+		SampleSizeAtom sampleSize = findAtom(videoTrack, SampleSizeAtom.class);
+		ChunkOffsetAtom chunkOffset = findAtom(videoTrack,
+				ChunkOffsetAtom.class);
+		if (mediaHeader == null || descriptionAtom == null
+				|| timeToSample == null || sampleToChunk == null
+				|| sampleSize == null || chunkOffset == null)
+			throw new UnsupportedFileException(
+					"The video track is missing required atoms.");
+
+		VideoSampleDescriptionEntry[] descriptions = descriptionAtom
+				.getSampleDescriptionEntries();
+		if (descriptions.length == 0)
+			throw new UnsupportedFileException(
+					"The video track has no sample description.");
+		for (VideoSampleDescriptionEntry description : descriptions) {
+			String type = description.getType();
+			if (!("jpeg".equals(type) || "png ".equals(type)))
+				throw new UnsupportedFileException("Unsupported video type \""
+						+ type + "\"");
+		}
+		width = descriptions[0].getWidth();
+		height = descriptions[0].getHeight();
+
+		int sampleCount = (int) sampleSize.getSampleCount();
+		long[] sizeTable = sampleSize.getSizeTable();
+		sampleSizes = new int[sampleCount];
+		for (int a = 0; a < sampleCount; a++) {
+			sampleSizes[a] = (int) (sizeTable == null ? sampleSize
+					.getSampleSize() : sizeTable[a]);
+		}
+
+		// each chunk contains consecutive samples; the sample-to-chunk table
+		// uses 1-based chunk indices
+		sampleOffsets = new long[sampleCount];
+		SampleToChunkEntry[] chunkTable = sampleToChunk.getTable();
+		int sampleIndex = 0;
+		int tableIndex = 0;
+		for (int chunk = 0; chunk < chunkOffset.getChunkOffsetCount()
+				&& sampleIndex < sampleCount; chunk++) {
+			while (tableIndex + 1 < chunkTable.length
+					&& chunkTable[tableIndex + 1].getFirstChunk() <= chunk + 1) {
+				tableIndex++;
+			}
+			long offset = chunkOffset.getChunkOffset(chunk);
+			long samplesPerChunk = chunkTable[tableIndex].getSamplesPerChunk();
+			for (int a = 0; a < samplesPerChunk && sampleIndex < sampleCount; a++) {
+				sampleOffsets[sampleIndex] = offset;
+				offset += sampleSizes[sampleIndex];
+				sampleIndex++;
+			}
+		}
+
+		double timeScale = mediaHeader.getTimeScale();
+		sampleDurations = new double[sampleCount];
+		sampleIndex = 0;
+		for (TimeToSampleEntry entry : timeToSample.getTable()) {
+			for (long a = 0; a < entry.getSampleCount()
+					&& sampleIndex < sampleCount; a++) {
+				sampleDurations[sampleIndex++] = entry.getSampleDuration()
+						/ timeScale;
+			}
+		}
+		for (double d : sampleDurations) {
+			totalDuration += d;
+		}
+	}
+
+	@Override
+	public synchronized BufferedImage getNextFrame(boolean cloneImage)
+			throws IOException {
+		if (nextFrameIndex >= sampleOffsets.length)
+			return null;
+		return getFrame(nextFrameIndex, cloneImage);
+	}
+
+	@Override
+	public synchronized BufferedImage getFrame(int frameIndex,
+			boolean cloneImage) throws IOException {
+		if (frameIndex < 0 || frameIndex >= sampleOffsets.length)
+			throw new IllegalArgumentException("frameIndex (" + frameIndex
+					+ ") must be between [0, " + sampleOffsets.length + ")");
+		if (file == null)
+			throw new IllegalStateException("This reader has been closed.");
+
+		nextFrameIndex = frameIndex + 1;
+		BufferedImage frame = cache.get(frameIndex);
+		if (frame == null) {
+			byte[] data = new byte[sampleSizes[frameIndex]];
+			file.seek(sampleOffsets[frameIndex]);
+			file.readFully(data);
+			BufferedImage decodedImage = ImageIO.read(new ByteArrayInputStream(
+					data));
+			if (decodedImage == null)
+				throw new IOException("Frame " + frameIndex
+						+ " could not be decoded.");
+			frame = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = frame.createGraphics();
+			g.drawImage(decodedImage, 0, 0, null);
+			g.dispose();
+			cache.put(frameIndex, frame);
+		}
+
+		BufferedImage dest = cloneImage ? null : bi;
+		if (dest == null)
+			dest = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+		dest.getRaster().setDataElements(0, 0, frame.getRaster());
+		if (!cloneImage)
+			bi = dest;
+		return dest;
+	}
+
+	@Override
+	public double getDuration() {
+		return totalDuration;
+	}
+
+	@Override
+	public int getFrameCount() {
+		return sampleOffsets.length;
+	}
+
+	@Override
+	public int getLoopCount() {
+		return 1;
+	}
+
+	@Override
+	public synchronized double getFrameDuration() {
+		if (nextFrameIndex == 0)
+			return 0;
+		return sampleDurations[nextFrameIndex - 1];
+	}
+
+	@Override
+	public double getFrameDuration(int frameIndex) {
+		return sampleDurations[frameIndex];
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (file != null) {
+			file.close();
+			file = null;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.audio;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This reads another source on a separate thread.
+ * <P>
+ * The worker thread reads blocks of samples into a small pool of
+ * <code>float</code> arrays and hands them to the reading thread through a
+ * queue. Once the reading thread has copied a block it is returned to the
+ * pool, so no arrays are allocated after this object is constructed. This is
+ * useful for expensive sources (like a {@link MixedSampleSource} of many
+ * tracks) when the reading thread also has expensive work to do (like
+ * encoding the audio).
+ */
+public class AsyncSampleSource implements SampleSource {
+
+	/** The default number of frames in each block: 4096. */
+	public static final int DEFAULT_BLOCK_FRAME_COUNT = 4096;
+
+	/** The default number of blocks: 4. */
+	public static final int DEFAULT_BLOCK_COUNT = 4;
+
+	/**
+	 * The number of milliseconds {@link #close()} waits for the worker thread
+	 * to stop before it closes the source anyway.
+	 */
+	private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+	static class Block {
+		final float[] samples;
+		int frameCount;
+		IOException exception;
+
+		Block(int sampleCount) {
+			samples = new float[sampleCount];
+		}
+	}
+
+	/** A block that signals the end of the source. */
+	private static final Block END = new Block(0);
+
+	protected final SampleSource source;
+	private final BlockingQueue<Block> emptyBlocks;
+	private final BlockingQueue<Block> fullBlocks;
+	private final Thread thread;
+	private final int channels;
+
+	private Block currentBlock;
+	private int currentBlockPos;
+	private boolean finished = false;
+
+	public AsyncSampleSource(SampleSource source) {
+		this(source, DEFAULT_BLOCK_FRAME_COUNT, DEFAULT_BLOCK_COUNT);
+	}
+
+	/**
+	 * @param source
+	 *            the source to read on a separate thread.
+	 * @param blockFrameCount
+	 *            the number of frames in each block.
+	 * @param blockCount
+	 *            the number of blocks, which limits how far ahead of the
+	 *            reading thread the worker thread can get.
+	 */
+	public AsyncSampleSource(SampleSource source, final int blockFrameCount,
+			int blockCount) {
+		if (blockFrameCount <= 0 || blockCount <= 0)
+			throw new IllegalArgumentException("blockFrameCount ("
+					+ blockFrameCount + ") and blockCount (" + blockCount
+					+ ") must be positive");
+		this.source = source;
+		channels = source.getChannelCount();
+		emptyBlocks = new ArrayBlockingQueue<>(blockCount);
+		fullBlocks = new ArrayBlockingQueue<>(blockCount + 1);
+		for (int a = 0; a < blockCount; a++) {
+			emptyBlocks.add(new Block(blockFrameCount * channels));
+		}
+
+		thread = new Thread("AsyncSampleSource") {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						Block block = emptyBlocks.take();
+						try {
+							block.frameCount = PCMUtils.readFully(
+									AsyncSampleSource.this.source,
+									block.samples, 0, blockFrameCount);
+						} catch (IOException e) {
+							block.frameCount = 0;
+							block.exception = e;
+						}
+						if (block.frameCount > 0 || block.exception != null)
+							fullBlocks.put(block);
+						if (block.frameCount < blockFrameCount) {
+							fullBlocks.put(END);
+							return;
+						}
+					}
+				} catch (InterruptedException e) {
+					// close() was called
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public int getChannelCount() {
+		return channels;
+	}
+
+	@Override
+	public float getSampleRate() {
+		return source.getSampleRate();
+	}
+
+	@Override
+	public long getFrameLength() {
+		return source.getFrameLength();
+	}
+
+	@Override
+	public int read(float[] dest, int offset, int frameCount)
+			throws IOException {
+		if (finished)
+			return -1;
+		if (currentBlock == null) {
+			try {
+				currentBlock = fullBlocks.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			}
+			currentBlockPos = 0;
+			if (currentBlock == END) {
+				finished = true;
+				return -1;
+			}
+			if (currentBlock.exception != null) {
+				finished = true;
+				throw currentBlock.exception;
+			}
+		}
+
+		int k = Math.min(frameCount, currentBlock.frameCount - currentBlockPos);
+		System.arraycopy(currentBlock.samples, currentBlockPos * channels,
+				dest, offset, k * channels);
+		currentBlockPos += k;
+		if (currentBlockPos == currentBlock.frameCount) {
+			emptyBlocks.add(currentBlock);
+			currentBlock = null;
+		}
+		return k;
+	}
+
+	/**
+	 * Stop the worker thread and close the source.
+	 * <P>
+	 * If the worker thread is blocked reading the source then this waits up
+	 * to one second for it to finish, and then closes the source anyway. (For
+	 * most sources closing the source unblocks the worker thread, which then
+	 * exits on its own.)
+	 */
+	@Override
+	public void close() throws IOException {
+		finished = true;
+		thread.interrupt();
+		try {
+			thread.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		source.close();
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.audio;
+
+import java.io.IOException;
+
+/**
+ * This multiplies the samples of another source by a gain (volume) in place.
+ * <P>
+ * This is the sample-domain counterpart of
+ * {@link VolumeAdjustedPCMAudioInputStream}. To vary the gain over time,
+ * override {@link #getGain(float)}.
+ */
+public class GainSampleSource implements SampleSource {
+
+	protected final SampleSource source;
+	protected final float gain;
+	private long framePos = 0;
+
+	/**
+	 * @param source
+	 *            the source to modify.
+	 * @param gain
+	 *            the volume multiplier. For example: 0=silent, .5=half volume,
+	 *            1.0=normal volume, 2.0=double volume.
+	 */
+	public GainSampleSource(SampleSource source, float gain) {
+		this.source = source;
+		this.gain = gain;
+	}
+
+	@Override
+	public int getChannelCount() {
+		return source.getChannelCount();
+	}
+
+	@Override
+	public float getSampleRate() {
+		return source.getSampleRate();
+	}
+
+	@Override
+	public long getFrameLength() {
+		return source.getFrameLength();
+	}
+
+	@Override
+	public int read(float[] dest, int offset, int frameCount)
+			throws IOException {
+		int framesRead = source.read(dest, offset, frameCount);
+		if (framesRead <= 0)
+			return framesRead;
+
+		int channels = getChannelCount();
+		float sampleRate = getSampleRate();
+		int i = offset;
+		for (int frame = 0; frame < framesRead; frame++) {
+			float g = getGain((framePos + frame) / sampleRate);
+			if (g != 1) {
+				for (int end = i + channels; i < end; i++) {
+					dest[i] *= g;
+				}
+			} else {
+				i += channels;
+			}
+		}
+		framePos += framesRead;
+		return framesRead;
+	}
+
+	/**
+	 * Return the volume multiplier for a given time in this source. By default
+	 * this returns the constant passed to the constructor.
+	 * <p>
+	 * Samples are not clipped until they are encoded, so a gain above 1 may
+	 * distort the final audio but it never produces invalid PCM values.
+	 * 
+	 * @param time
+	 *            the time (in seconds) to retrieve the gain for
+	 */
+	protected float getGain(float time) {
+		return gain;
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.audio;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This adds the samples of several sources together.
+ * <P>
+ * The sources may have different lengths: a source that ends early
+ * contributes silence. This source ends when all of its sources end.
+ * <P>
+ * To mix on a separate thread, wrap this object in an
+ * {@link AsyncSampleSource}.
+ */
+public class MixedSampleSource implements SampleSource {
+
+	protected final SampleSource[] sources;
+	private final boolean[] finished;
+	private final int channels;
+	private final float sampleRate;
+	private float[] scratch = new float[0];
+
+	public MixedSampleSource(SampleSource... sources) {
+		if (sources.length == 0)
+			throw new IllegalArgumentException(
+					"at least one source is required");
+		this.sources = sources.clone();
+		finished = new boolean[sources.length];
+		channels = sources[0].getChannelCount();
+		sampleRate = sources[0].getSampleRate();
+		for (int a = 1; a < sources.length; a++) {
+			if (sources[a].getChannelCount() != channels
+					|| sources[a].getSampleRate() != sampleRate)
+				throw new IllegalArgumentException("sources[0] has "
+						+ channels + " channels at " + sampleRate
+						+ " Hz, but sources[" + a + "] has "
+						+ sources[a].getChannelCount() + " channels at "
+						+ sources[a].getSampleRate() + " Hz");
+		}
+	}
+
+	@Override
+	public int getChannelCount() {
+		return channels;
+	}
+
+	@Override
+	public float getSampleRate() {
+		return sampleRate;
+	}
+
+	@Override
+	public long getFrameLength() {
+		long max = 0;
+		for (SampleSource source : sources) {
+			long length = source.getFrameLength();
+			if (length == -1)
+				return -1;
+			max = Math.max(max, length);
+		}
+		return max;
+	}
+
+	@Override
+	public int read(float[] dest, int offset, int frameCount)
+			throws IOException {
+		int sampleCount = frameCount * channels;
+		if (scratch.length < sampleCount)
+			scratch = new float[sampleCount];
+
+		int maxFramesRead = -1;
+		for (int a = 0; a < sources.length; a++) {
+			if (finished[a])
+				continue;
+			int framesRead;
+			if (maxFramesRead == -1) {
+				// the first active source writes directly to dest
+				framesRead = PCMUtils.readFully(sources[a], dest, offset, frameCount);
+				Arrays.fill(dest, offset + framesRead * channels, offset
+						+ sampleCount, 0);
+			} else {
+				framesRead = PCMUtils.readFully(sources[a], scratch, 0, frameCount);
+				for (int i = 0, j = offset, end = framesRead * channels; i < end; i++, j++) {
+					dest[j] += scratch[i];
+				}
+			}
+			if (framesRead < frameCount)
+				finished[a] = true;
+			maxFramesRead = Math.max(maxFramesRead, framesRead);
+		}
+		if (maxFramesRead <= 0 && frameCount > 0)
+			return -1;
+		return maxFramesRead;
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException exception = null;
+		for (SampleSource source : sources) {
+			try {
+				source.close();
+			} catch (IOException e) {
+				if (exception == null)
+					exception = e;
+			}
+		}
+		if (exception != null)
+			throw exception;
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.audio;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * This decodes an 8-bit or 16-bit PCM <code>AudioInputStream</code> into
+ * float samples.
+ */
+public class PCMSampleSource implements SampleSource {
+
+	protected final AudioInputStream in;
+	protected final AudioFormat format;
+	protected final int frameSize;
+	private byte[] buffer = new byte[0];
+
+	public PCMSampleSource(AudioInputStream in) {
+		PCMUtils.validateFormat(in.getFormat());
+		this.in = in;
+		format = in.getFormat();
+		frameSize = format.getFrameSize();
+	}
+
+	@Override
+	public int getChannelCount() {
+		return format.getChannels();
+	}
+
+	@Override
+	public float getSampleRate() {
+		return format.getSampleRate();
+	}
+
+	@Override
+	public long getFrameLength() {
+		return in.getFrameLength();
+	}
+
+	@Override
+	public int read(float[] dest, int offset, int frameCount)
+			throws IOException {
+		int byteCount = frameCount * frameSize;
+		if (buffer.length < byteCount)
+			buffer = new byte[byteCount];
+
+		// only decode whole frames
+		int read = 0;
+		while (read < byteCount) {
+			int k = in.read(buffer, read, byteCount - read);
+			if (k == -1)
+				break;
+			read += k;
+			if (read % frameSize == 0 && in.available() == 0)
+				break;
+		}
+		int framesRead = read / frameSize;
+		if (framesRead == 0 && byteCount > 0)
+			return -1;
+		PCMUtils.decodeSamples(buffer, 0, dest, offset,
+				framesRead * format.getChannels(), format);
+		return framesRead;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
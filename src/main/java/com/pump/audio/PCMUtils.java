@@ -10,7 +10,155 @@
  */
 package com.pump.audio;
 
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioFormat.Encoding;
+
 public class PCMUtils {
+
+	/**
+	 * Read frames until <code>frameCount</code> frames are read or the source
+	 * ends.
+	 * 
+	 * @return the number of frames read, which is less than
+	 *         <code>frameCount</code> only if the source ended.
+	 */
+	public static int readFully(SampleSource source, float[] dest, int offset,
+			int frameCount) throws IOException {
+		int channels = source.getChannelCount();
+		int framesRead = 0;
+		while (framesRead < frameCount) {
+			int k = source.read(dest, offset + framesRead * channels,
+					frameCount - framesRead);
+			if (k == -1)
+				break;
+			framesRead += k;
+		}
+		return framesRead;
+	}
+
+	/**
+	 * Throw an IllegalArgumentException if a format is not 8-bit or 16-bit
+	 * signed or unsigned PCM.
+	 */
+	public static void validateFormat(AudioFormat format) {
+		if (!(format.getEncoding().equals(Encoding.PCM_SIGNED) || format
+				.getEncoding().equals(Encoding.PCM_UNSIGNED)))
+			throw new IllegalArgumentException("unsupported encoding: "
+					+ format.getEncoding());
+		if (!(format.getSampleSizeInBits() == 8 || format
+				.getSampleSizeInBits() == 16))
+			throw new IllegalArgumentException("unsupported sample size: "
+					+ format.getSampleSizeInBits());
+	}
+
+	/**
+	 * Decode several PCM samples as floats between [-1, 1].
+	 * 
+	 * @param src
+	 *            the PCM-encoded data.
+	 * @param srcOffset
+	 *            the offset of the first byte to decode.
+	 * @param dest
+	 *            the array to store samples in.
+	 * @param destOffset
+	 *            the index of the first sample to store.
+	 * @param sampleCount
+	 *            the number of samples (not frames) to decode.
+	 * @param format
+	 *            an 8-bit or 16-bit PCM format.
+	 */
+	public static void decodeSamples(byte[] src, int srcOffset, float[] dest,
+			int destOffset, int sampleCount, AudioFormat format) {
+		validateFormat(format);
+		boolean isSigned = format.getEncoding().equals(Encoding.PCM_SIGNED);
+		int i = srcOffset;
+		int end = destOffset + sampleCount;
+		if (format.getSampleSizeInBits() == 8) {
+			float scale = 1f / 128f;
+			int bias = isSigned ? 0 : 128;
+			for (int j = destOffset; j < end; j++) {
+				int v = isSigned ? src[i++] : (src[i++] & 0xff);
+				dest[j] = (v - bias) * scale;
+			}
+			return;
+		}
+
+		float scale = 1f / 32768f;
+		int hi = format.isBigEndian() ? 0 : 1;
+		int lo = 1 - hi;
+		if (isSigned) {
+			for (int j = destOffset; j < end; j++) {
+				int v = (src[i + hi] << 8) | (src[i + lo] & 0xff);
+				dest[j] = v * scale;
+				i += 2;
+			}
+		} else {
+			for (int j = destOffset; j < end; j++) {
+				int v = ((src[i + hi] & 0xff) << 8) | (src[i + lo] & 0xff);
+				dest[j] = (v - 32768) * scale;
+				i += 2;
+			}
+		}
+	}
+
+	/**
+	 * Encode several samples between [-1, 1] as PCM data. Samples outside
+	 * this range are clipped.
+	 * 
+	 * @param src
+	 *            the samples to encode.
+	 * @param srcOffset
+	 *            the index of the first sample to encode.
+	 * @param dest
+	 *            the array to store PCM-encoded data in.
+	 * @param destOffset
+	 *            the offset of the first byte to write.
+	 * @param sampleCount
+	 *            the number of samples (not frames) to encode.
+	 * @param format
+	 *            an 8-bit or 16-bit PCM format.
+	 */
+	public static void encodeSamples(float[] src, int srcOffset, byte[] dest,
+			int destOffset, int sampleCount, AudioFormat format) {
+		validateFormat(format);
+		boolean isSigned = format.getEncoding().equals(Encoding.PCM_SIGNED);
+		int i = destOffset;
+		int end = srcOffset + sampleCount;
+		if (format.getSampleSizeInBits() == 8) {
+			int bias = isSigned ? 0 : 128;
+			for (int j = srcOffset; j < end; j++) {
+				int v = round(src[j] * 128f);
+				if (v > 127)
+					v = 127;
+				else if (v < -128)
+					v = -128;
+				dest[i++] = (byte) (v + bias);
+			}
+			return;
+		}
+
+		int bias = isSigned ? 0 : 32768;
+		int hi = format.isBigEndian() ? 0 : 1;
+		int lo = 1 - hi;
+		for (int j = srcOffset; j < end; j++) {
+			int v = round(src[j] * 32768f);
+			if (v > 32767)
+				v = 32767;
+			else if (v < -32768)
+				v = -32768;
+			v += bias;
+			dest[i + hi] = (byte) (v >> 8);
+			dest[i + lo] = (byte) v;
+			i += 2;
+		}
+	}
+
+	private static int round(float f) {
+		return (int) (f < 0 ? f - .5f : f + .5f);
+	}
+
 	public static int decodeSample(byte[] data, int offset, int sampleSize,
 			boolean isSigned, boolean isBigEndian) {
 		int value;
@@ -0,0 +1,197 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.audio;
+
+import java.io.IOException;
+
+/**
+ * This resamples another source using linear interpolation.
+ * <P>
+ * This can either convert a source to a new sample rate (so it sounds the
+ * same), or stretch a source to a new number of frames at the same sample
+ * rate (so it plays back slower or faster, like
+ * {@link StretchedAudioInputStream}).
+ */
+public class ResampledSampleSource implements SampleSource {
+
+	/**
+	 * Create a source that plays another source at a different sample rate.
+	 */
+	public static ResampledSampleSource resample(SampleSource source,
+			float sampleRate) {
+		double step = source.getSampleRate() / sampleRate;
+		long frameLength = source.getFrameLength() == -1 ? -1 : (long) (source
+				.getFrameLength() / step);
+		return new ResampledSampleSource(source, step, sampleRate,
+				frameLength);
+	}
+
+	/**
+	 * Create a source that stretches another source to a fixed number of
+	 * frames.
+	 * 
+	 * @param source
+	 *            the source to stretch. The length of this source must be
+	 *            known.
+	 * @param frameCount
+	 *            the number of frames the source should be stretched to.
+	 */
+	public static ResampledSampleSource stretch(SampleSource source,
+			long frameCount) {
+		if (source.getFrameLength() == -1)
+			throw new IllegalArgumentException(
+					"the length of the source must be known");
+		if (frameCount <= 0)
+			throw new IllegalArgumentException("frameCount (" + frameCount
+					+ ") must be positive");
+		double step = ((double) source.getFrameLength()) / frameCount;
+		return new ResampledSampleSource(source, step, source.getSampleRate(),
+				frameCount);
+	}
+
+	/**
+	 * Create a source that stretches another source to a fixed duration.
+	 * 
+	 * @param source
+	 *            the source to stretch. The length of this source must be
+	 *            known.
+	 * @param duration
+	 *            the duration in seconds the source should be stretched to.
+	 */
+	public static ResampledSampleSource stretch(SampleSource source,
+			double duration) {
+		return stretch(source, (long) (source.getSampleRate() * duration));
+	}
+
+	/** The maximum number of input frames to buffer at once. */
+	private static final int BUFFER_FRAME_COUNT = 4096;
+
+	protected final SampleSource source;
+	protected final double step;
+	protected final float sampleRate;
+	protected final long frameLength;
+	protected final int channels;
+
+	/** Input frames, from index 0 to bufferFrameCount. */
+	private final float[] buffer;
+	private int bufferFrameCount = 0;
+	private boolean sourceFinished = false;
+	/** The position of the next output frame, relative to the buffer. */
+	private double position = 0;
+	private long framesWritten = 0;
+
+	/**
+	 * @param source
+	 *            the source to resample.
+	 * @param step
+	 *            the number of input frames per output frame. Values less
+	 *            than one stretch the source; values greater than one
+	 *            compress it.
+	 * @param sampleRate
+	 *            the sample rate of this source.
+	 * @param frameLength
+	 *            the number of frames this source produces, or -1 if this
+	 *            source should continue until its input ends.
+	 */
+	public ResampledSampleSource(SampleSource source, double step,
+			float sampleRate, long frameLength) {
+		if (!(step > 0))
+			throw new IllegalArgumentException("step (" + step
+					+ ") must be positive");
+		this.source = source;
+		this.step = step;
+		this.sampleRate = sampleRate;
+		this.frameLength = frameLength;
+		channels = source.getChannelCount();
+		buffer = new float[BUFFER_FRAME_COUNT * channels];
+	}
+
+	@Override
+	public int getChannelCount() {
+		return channels;
+	}
+
+	@Override
+	public float getSampleRate() {
+		return sampleRate;
+	}
+
+	@Override
+	public long getFrameLength() {
+		return frameLength;
+	}
+
+	@Override
+	public int read(float[] dest, int offset, int frameCount)
+			throws IOException {
+		if (frameLength != -1)
+			frameCount = (int) Math.min(frameCount, frameLength
+					- framesWritten);
+
+		int framesRead = 0;
+		int j = offset;
+		while (framesRead < frameCount) {
+			int i = (int) position;
+			if (i + 1 >= bufferFrameCount && !sourceFinished) {
+				fillBuffer(i);
+				continue;
+			}
+			if (i >= bufferFrameCount) {
+				// the source has ended
+				if (bufferFrameCount == 0 || frameLength == -1)
+					break;
+				// pad the end with the last frame
+				i = bufferFrameCount - 1;
+			}
+			int next = Math.min(i + 1, bufferFrameCount - 1);
+			float f = (float) (position - (int) position);
+			int a = i * channels;
+			int b = next * channels;
+			for (int c = 0; c < channels; c++) {
+				float v1 = buffer[a + c];
+				dest[j++] = v1 + (buffer[b + c] - v1) * f;
+			}
+			position += step;
+			framesRead++;
+		}
+		framesWritten += framesRead;
+		if (framesRead == 0 && frameCount > 0)
+			return -1;
+		if (framesRead == 0 && frameLength != -1
+				&& framesWritten >= frameLength)
+			return -1;
+		return framesRead;
+	}
+
+	/**
+	 * Discard the frames before <code>keepFrom</code> and read more frames
+	 * from the source.
+	 */
+	private void fillBuffer(int keepFrom) throws IOException {
+		keepFrom = Math.min(keepFrom, bufferFrameCount);
+		int kept = bufferFrameCount - keepFrom;
+		System.arraycopy(buffer, keepFrom * channels, buffer, 0, kept
+				* channels);
+		position -= keepFrom;
+		bufferFrameCount = kept;
+
+		int k = PCMUtils.readFully(source, buffer, kept * channels,
+				BUFFER_FRAME_COUNT - kept);
+		bufferFrameCount += k;
+		if (k < BUFFER_FRAME_COUNT - kept)
+			sourceFinished = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.audio;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A stream of audio samples stored as floats between [-1, 1].
+ * <P>
+ * This is the sample-domain counterpart of an <code>AudioInputStream</code>:
+ * PCM data is decoded once (see {@link PCMSampleSource}), passed through any
+ * number of stages that modify samples in place (such as
+ * {@link GainSampleSource}, {@link MixedSampleSource} and
+ * {@link ResampledSampleSource}), and encoded once at the end (see
+ * {@link SampleSourceAudioInputStream}).
+ * <P>
+ * Samples are interleaved, so a frame of stereo audio occupies two
+ * consecutive elements.
+ */
+public interface SampleSource extends Closeable {
+
+	/**
+	 * Return the number of channels in each frame.
+	 */
+	public int getChannelCount();
+
+	/**
+	 * Return the number of frames per second.
+	 */
+	public float getSampleRate();
+
+	/**
+	 * Return the number of frames in this source, or -1 if this is unknown.
+	 */
+	public long getFrameLength();
+
+	/**
+	 * Read several frames.
+	 * 
+	 * @param dest
+	 *            the array to store interleaved samples in.
+	 * @param offset
+	 *            the index in <code>dest</code> to store the first sample in.
+	 * @param frameCount
+	 *            the maximum number of frames to read. The number of elements
+	 *            written to <code>dest</code> is the number of frames read
+	 *            multiplied by {@link #getChannelCount()}.
+	 * @return the number of frames read, or -1 if this source is finished.
+	 *         This may be less than <code>frameCount</code> (including zero)
+	 *         even if this source is not finished.
+	 * @throws IOException
+	 *             if an IO problem occurs.
+	 */
+	public int read(float[] dest, int offset, int frameCount)
+			throws IOException;
+}
@@ -0,0 +1,168 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * This encodes a {@link SampleSource} as PCM data.
+ * <P>
+ * This is the last stage of a sample-domain processing chain: samples are
+ * clipped to [-1, 1] and encoded exactly once.
+ */
+public class SampleSourceAudioInputStream extends AudioInputStream {
+
+	/**
+	 * Return the 16-bit signed little-endian PCM format for a source.
+	 */
+	public static AudioFormat createDefaultFormat(SampleSource source) {
+		return new AudioFormat(source.getSampleRate(), 16,
+				source.getChannelCount(), true, false);
+	}
+
+	/** The number of frames to encode at a time. */
+	private static final int BLOCK_FRAME_COUNT = 4096;
+
+	private static class EncodingInputStream extends InputStream {
+		final SampleSource source;
+		final AudioFormat format;
+		final int frameSize;
+		final int channels;
+		final float[] samples;
+
+		/** Encoded data waiting to be read. */
+		final byte[] encoded;
+		int encodedPos = 0;
+		int encodedLimit = 0;
+		boolean finished = false;
+
+		EncodingInputStream(SampleSource source, AudioFormat format) {
+			this.source = source;
+			this.format = format;
+			frameSize = format.getFrameSize();
+			channels = format.getChannels();
+			samples = new float[BLOCK_FRAME_COUNT * channels];
+			encoded = new byte[BLOCK_FRAME_COUNT * frameSize];
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (encodedPos == encodedLimit && !fillEncoded())
+				return -1;
+			return encoded[encodedPos++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (encodedPos < encodedLimit) {
+				int k = Math.min(len, encodedLimit - encodedPos);
+				System.arraycopy(encoded, encodedPos, b, off, k);
+				encodedPos += k;
+				return k;
+			}
+
+			int frameCount = Math.min(len / frameSize, BLOCK_FRAME_COUNT);
+			if (frameCount == 0) {
+				if (!fillEncoded())
+					return -1;
+				return read(b, off, len);
+			}
+
+			// encode directly into the caller's array
+			int framesRead = readFrames(frameCount);
+			if (framesRead == -1)
+				return -1;
+			PCMUtils.encodeSamples(samples, 0, b, off, framesRead * channels,
+					format);
+			return framesRead * frameSize;
+		}
+
+		private boolean fillEncoded() throws IOException {
+			int framesRead = readFrames(BLOCK_FRAME_COUNT);
+			if (framesRead == -1)
+				return false;
+			PCMUtils.encodeSamples(samples, 0, encoded, 0, framesRead
+					* channels, format);
+			encodedPos = 0;
+			encodedLimit = framesRead * frameSize;
+			return true;
+		}
+
+		/**
+		 * Read at least one frame into <code>samples</code>, or return -1 if
+		 * the source is finished. A SampleSource may return zero frames, so
+		 * this keeps reading until it gets some.
+		 */
+		private int readFrames(int frameCount) throws IOException {
+			if (finished)
+				return -1;
+			while (true) {
+				int framesRead = source.read(samples, 0, frameCount);
+				if (framesRead == -1) {
+					finished = true;
+					return -1;
+				}
+				if (framesRead > 0)
+					return framesRead;
+			}
+		}
+
+		@Override
+		public int available() {
+			return encodedLimit - encodedPos;
+		}
+
+		@Override
+		public void close() throws IOException {
+			finished = true;
+			source.close();
+		}
+	}
+
+	/**
+	 * Create a stream that encodes a source as 16-bit signed little-endian
+	 * PCM data.
+	 */
+	public SampleSourceAudioInputStream(SampleSource source) {
+		this(source, createDefaultFormat(source));
+	}
+
+	/**
+	 * @param source
+	 *            the source to encode.
+	 * @param format
+	 *            an 8-bit or 16-bit PCM format with the same sample rate and
+	 *            number of channels as the source.
+	 */
+	public SampleSourceAudioInputStream(SampleSource source, AudioFormat format) {
+		super(new EncodingInputStream(source, validate(source, format)),
+				format, source.getFrameLength() == -1 ? AudioSystem.NOT_SPECIFIED
+						: source.getFrameLength());
+	}
+
+	private static AudioFormat validate(SampleSource source, AudioFormat format) {
+		PCMUtils.validateFormat(format);
+		if (format.getChannels() != source.getChannelCount()
+				|| format.getSampleRate() != source.getSampleRate())
+			throw new IllegalArgumentException("the format (" + format
+					+ ") must match the source's channel count ("
+					+ source.getChannelCount() + ") and sample rate ("
+					+ source.getSampleRate() + ")");
+		return format;
+	}
+}
@@ -15,9 +15,9 @@ import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -35,10 +35,20 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * example: maybe external classes cannot call get/set for any arbitrary
  * property. In some subclasses we can control with explicit methods exactly
  * which attributes can be set.
+ * <p>
+ * The attributes are stored in an immutable snapshot that is replaced every
+ * time an attribute changes, so reading an attribute never acquires a lock.
+ * Writers still acquire the write lock of {@link #getAttributeLock()}, so a
+ * caller can hold that lock to make several changes without interference from
+ * other writers. Subclasses that know their Keys in advance should override
+ * {@link #getKeySlots()} so those attributes are stored in an array instead
+ * of a map.
  */
 public class AbstractAttributeDataImpl implements Serializable {
 	private static final long serialVersionUID = 1L;
 
+	private static final PropertyChangeListener[] NO_LISTENERS = new PropertyChangeListener[0];
+
 	private static class PropertyChangeListenerDescriptor {
 		PropertyChangeListener listener;
 		String propertyName;
@@ -55,8 +65,94 @@ public class AbstractAttributeDataImpl implements Serializable {
 		}
 	}
 
-	protected Map<String, Object> data = new HashMap<>();
+	/**
+	 * This indexes the listeners by property name. This is rebuilt every time
+	 * a listener is added or removed, so firing an event only requires one
+	 * map lookup.
+	 */
+	private static class ListenerTable {
+		final PropertyChangeListener[] unnamedListeners;
+		final Map<String, PropertyChangeListener[]> listenersByName = new HashMap<>();
+
+		ListenerTable(List<PropertyChangeListenerDescriptor> descriptors) {
+			unnamedListeners = getListeners(descriptors, null);
+			for (PropertyChangeListenerDescriptor d : descriptors) {
+				if (d.propertyName != null
+						&& !listenersByName.containsKey(d.propertyName)) {
+					listenersByName.put(d.propertyName,
+							getListeners(descriptors, d.propertyName));
+				}
+			}
+		}
+
+		/**
+		 * Return all the listeners that accept a property, in the order they
+		 * were added.
+		 */
+		private static PropertyChangeListener[] getListeners(
+				List<PropertyChangeListenerDescriptor> descriptors,
+				String propertyName) {
+			List<PropertyChangeListener> returnValue = new ArrayList<>();
+			for (PropertyChangeListenerDescriptor d : descriptors) {
+				if (d.accepts(propertyName))
+					returnValue.add(d.listener);
+			}
+			return returnValue.isEmpty() ? NO_LISTENERS
+					: returnValue.toArray(NO_LISTENERS);
+		}
+
+		PropertyChangeListener[] get(String propertyName) {
+			PropertyChangeListener[] returnValue = listenersByName
+					.get(propertyName);
+			return returnValue == null ? unnamedListeners : returnValue;
+		}
+	}
+
+	/**
+	 * An immutable set of attributes. Values for Keys in our KeySlots are
+	 * stored in an array, and all other values are stored in a map. Neither
+	 * ever contains null values.
+	 */
+	private static class Snapshot {
+		final Object[] slotValues;
+		final Map<String, Object> extraValues;
+		final int size;
+
+		Snapshot(Object[] slotValues, Map<String, Object> extraValues) {
+			this.slotValues = slotValues;
+			this.extraValues = extraValues;
+			int z = extraValues.size();
+			for (Object value : slotValues) {
+				if (value != null)
+					z++;
+			}
+			size = z;
+		}
+
+		Object get(int slot, String name) {
+			return slot >= 0 ? slotValues[slot] : extraValues.get(name);
+		}
+
+		Snapshot with(int slot, String name, Object value) {
+			if (slot >= 0) {
+				Object[] newSlotValues = slotValues.clone();
+				newSlotValues[slot] = value;
+				return new Snapshot(newSlotValues, extraValues);
+			}
+			Map<String, Object> newExtraValues = new HashMap<>(extraValues);
+			if (value == null) {
+				newExtraValues.remove(name);
+			} else {
+				newExtraValues.put(name, value);
+			}
+			return new Snapshot(slotValues, newExtraValues);
+		}
+	}
+
+	private transient KeySlots keySlots;
+	private transient volatile Snapshot snapshot;
 	private transient List<PropertyChangeListenerDescriptor> listeners;
+	private transient volatile ListenerTable listenerTable;
 	private transient ReadWriteLock lock;
 
 	/**
@@ -74,17 +170,49 @@ public class AbstractAttributeDataImpl implements Serializable {
 	 */
 	public AbstractAttributeDataImpl(Map<String, Object> attributes) {
 		this();
-		data.putAll(attributes);
+		snapshot = createSnapshot(attributes);
 	}
 
 	private void initialize() {
+		keySlots = getKeySlots();
+		if (keySlots == null)
+			keySlots = KeySlots.EMPTY;
+		snapshot = createSnapshot(Collections.<String, Object> emptyMap());
 		listeners = new ArrayList<>();
+		listenerTable = new ListenerTable(listeners);
 		lock = new ReentrantReadWriteLock();
 	}
 
+	/**
+	 * Return the Keys this object stores in an array instead of a map.
+	 * <p>
+	 * This is called once during construction (and deserialization), so
+	 * subclasses should return a constant that is stored in a static field.
+	 * The default implementation returns {@link KeySlots#EMPTY}.
+	 */
+	protected KeySlots getKeySlots() {
+		return KeySlots.EMPTY;
+	}
+
+	private Snapshot createSnapshot(Map<String, ?> attributes) {
+		Object[] slotValues = new Object[keySlots.size()];
+		Map<String, Object> extraValues = new HashMap<>();
+		for (Entry<String, ?> entry : attributes.entrySet()) {
+			if (entry.getValue() == null)
+				continue;
+			int slot = keySlots.indexOf(entry.getKey());
+			if (slot >= 0) {
+				slotValues[slot] = entry.getValue();
+			} else {
+				extraValues.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return new Snapshot(slotValues, extraValues);
+	}
+
 	private void writeObject(java.io.ObjectOutputStream out) throws IOException {
 		out.writeInt(0);
-		out.writeObject(data);
+		out.writeObject(getAttributeMap());
 	}
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
@@ -96,7 +224,7 @@ public class AbstractAttributeDataImpl implements Serializable {
 			throw new IOException("unsupported serialization version: "
 					+ version);
 		}
-		data = (Map) in.readObject();
+		snapshot = createSnapshot((Map) in.readObject());
 	}
 
 	protected void addPropertyChangeListener(String propertyName,
@@ -104,13 +232,12 @@ public class AbstractAttributeDataImpl implements Serializable {
 		synchronized (listeners) {
 			listeners.add(new PropertyChangeListenerDescriptor(pcl,
 					propertyName));
+			listenerTable = new ListenerTable(listeners);
 		}
 	}
 
 	protected void addPropertyChangeListener(PropertyChangeListener pcl) {
-		synchronized (listeners) {
-			listeners.add(new PropertyChangeListenerDescriptor(pcl, null));
-		}
+		addPropertyChangeListener(null, pcl);
 	}
 
 	protected void removePropertyChangeListener(PropertyChangeListener pcl) {
@@ -121,23 +248,32 @@ public class AbstractAttributeDataImpl implements Serializable {
 				PropertyChangeListenerDescriptor d = iter.next();
 				if (d.listener == pcl) {
 					iter.remove();
+					listenerTable = new ListenerTable(listeners);
 					return;
 				}
 			}
 		}
 	}
 
+	/**
+	 * Return the lock that guards changes to this object's attributes.
+	 * <p>
+	 * Every method that changes an attribute acquires the write lock. Methods
+	 * that read attributes do not need this lock, but a caller that wants to
+	 * read several attributes without any of them changing can hold the read
+	 * lock.
+	 */
 	protected ReadWriteLock getAttributeLock() {
 		return lock;
 	}
 
 	protected <T> T setAttribute(Key<T> key, T value) {
+		key.validate(value);
 		getAttributeLock().writeLock().lock();
 		try {
-			T oldValue = key.put(data, value);
-			if (value == null && data.get(key.toString()) == null) {
-				data.remove(key.toString());
-			}
+			@SuppressWarnings("unchecked")
+			T oldValue = (T) putValue(keySlots.indexOf(key), key.toString(),
+					value);
 			if (!Objects.equals(value, oldValue))
 				firePropertyChangeListeners(key.getName(), oldValue, value);
 			return oldValue;
@@ -149,13 +285,7 @@ public class AbstractAttributeDataImpl implements Serializable {
 	protected Object setAttribute(String key, Object value) {
 		getAttributeLock().writeLock().lock();
 		try {
-			Object oldValue;
-			if (value == null) {
-				oldValue = data.get(key);
-				data.remove(key);
-			} else {
-				oldValue = data.put(key, value);
-			}
+			Object oldValue = putValue(keySlots.indexOf(key), key, value);
 			if (!Objects.equals(value, oldValue))
 				firePropertyChangeListeners(key, oldValue, value);
 			return oldValue;
@@ -164,20 +294,30 @@ public class AbstractAttributeDataImpl implements Serializable {
 		}
 	}
 
+	/**
+	 * Replace one value. The caller must hold the write lock.
+	 * 
+	 * @return the previous value.
+	 */
+	private Object putValue(int slot, String name, Object value) {
+		Snapshot s = snapshot;
+		Object oldValue = s.get(slot, name);
+		if (oldValue != value)
+			snapshot = s.with(slot, name, value);
+		return oldValue;
+	}
+
 	protected void firePropertyChangeListeners(String propertyName,
 			Object oldValue, Object newValue) {
-		PropertyChangeListenerDescriptor[] listenerArray;
-		synchronized (listeners) {
-			listenerArray = listeners
-					.toArray(new PropertyChangeListenerDescriptor[listeners
-							.size()]);
-		}
-		for (PropertyChangeListenerDescriptor pcld : listenerArray) {
+		PropertyChangeListener[] listenerArray = listenerTable
+				.get(propertyName);
+		if (listenerArray.length == 0)
+			return;
+		PropertyChangeEvent event = new PropertyChangeEvent(this,
+				propertyName, oldValue, newValue);
+		for (PropertyChangeListener listener : listenerArray) {
 			try {
-				if (pcld.accepts(propertyName)) {
-					pcld.listener.propertyChange(new PropertyChangeEvent(this,
-							propertyName, oldValue, newValue));
-				}
+				listener.propertyChange(event);
 			} catch (Exception e) {
 				handleUncaughtListenerException(e, propertyName, oldValue,
 						newValue);
@@ -194,18 +334,54 @@ public class AbstractAttributeDataImpl implements Serializable {
 			boolean completeReplace) {
 		getAttributeLock().writeLock().lock();
 		try {
+			Snapshot s = snapshot;
+			Object[] slotValues = s.slotValues.clone();
+			Map<String, Object> extraValues = new HashMap<>(s.extraValues);
+			List<Object[]> changes = new ArrayList<>();
 			for (Entry<String, Object> entry : incomingData.entrySet()) {
-				Object oldValue = data.put(entry.getKey(), entry.getValue());
-				if (!Objects.equals(oldValue, entry.getValue()))
-					firePropertyChangeListeners(entry.getKey(), oldValue,
-							entry.getValue());
+				String name = entry.getKey();
+				Object value = entry.getValue();
+				int slot = keySlots.indexOf(name);
+				Object oldValue;
+				if (slot >= 0) {
+					oldValue = slotValues[slot];
+					slotValues[slot] = value;
+				} else if (value == null) {
+					oldValue = extraValues.remove(name);
+				} else {
+					oldValue = extraValues.put(name, value);
+				}
+				if (!Objects.equals(oldValue, value))
+					changes.add(new Object[] { name, oldValue, value });
 			}
 			if (completeReplace) {
-				Collection<String> z = new HashSet<>(data.keySet());
-				z.removeAll(incomingData.keySet());
-				for (String unusedKey : z) {
-					setAttribute(new Key<String>(String.class, unusedKey), null);
+				for (int slot = 0; slot < slotValues.length; slot++) {
+					String name = keySlots.getKey(slot).toString();
+					if (slotValues[slot] != null
+							&& !incomingData.containsKey(name)) {
+						changes.add(new Object[] { name, slotValues[slot],
+								null });
+						slotValues[slot] = null;
+					}
 				}
+				Iterator<Entry<String, Object>> iter = extraValues.entrySet()
+						.iterator();
+				while (iter.hasNext()) {
+					Entry<String, Object> entry = iter.next();
+					if (!incomingData.containsKey(entry.getKey())) {
+						changes.add(new Object[] { entry.getKey(),
+								entry.getValue(), null });
+						iter.remove();
+					}
+				}
+			}
+			if (changes.isEmpty())
+				return;
+
+			snapshot = new Snapshot(slotValues, extraValues);
+			for (Object[] change : changes) {
+				firePropertyChangeListeners((String) change[0], change[1],
+						change[2]);
 			}
 		} finally {
 			getAttributeLock().writeLock().unlock();
@@ -213,31 +389,26 @@ public class AbstractAttributeDataImpl implements Serializable {
 	}
 
 	protected <T> T getAttribute(Key<T> key) {
-		getAttributeLock().readLock().lock();
-		try {
-			return key.get(data);
-		} finally {
-			getAttributeLock().readLock().unlock();
-		}
+		Object value = snapshot.get(keySlots.indexOf(key), key.toString());
+		return key.toValue(value, true);
 	}
 
 	protected Object getAttribute(String key) {
-		getAttributeLock().readLock().lock();
-		try {
-			return data.get(key);
-		} finally {
-			getAttributeLock().readLock().unlock();
-		}
+		return snapshot.get(keySlots.indexOf(key), key);
 	}
 
 	@Override
 	public int hashCode() {
-		lock.readLock().lock();
-		try {
-			return data.hashCode();
-		} finally {
-			lock.readLock().unlock();
+		// this matches the hashCode of the Map getAttributeMap() returns
+		Snapshot s = snapshot;
+		int returnValue = s.extraValues.hashCode();
+		for (int slot = 0; slot < s.slotValues.length; slot++) {
+			Object value = s.slotValues[slot];
+			if (value != null)
+				returnValue += keySlots.getKey(slot).toString().hashCode()
+						^ value.hashCode();
 		}
+		return returnValue;
 	}
 
 	@Override
@@ -252,65 +423,55 @@ public class AbstractAttributeDataImpl implements Serializable {
 	}
 
 	protected boolean equals(AttributeData other) {
-		getAttributeLock().readLock().lock();
-		other.getAttributeLock().readLock().lock();
-		try {
-			return getAttributeMap().equals(other.getAttributeMap());
-		} finally {
-			other.getAttributeLock().readLock().unlock();
-			getAttributeLock().readLock().unlock();
-		}
+		return getAttributeMap().equals(other.getAttributeMap());
 	}
 
 	protected boolean equals(AbstractAttributeDataImpl other) {
-		getAttributeLock().readLock().lock();
-		other.getAttributeLock().readLock().lock();
-		try {
-			return getAttributeMap().equals(other.getAttributeMap());
-		} finally {
-			other.getAttributeLock().readLock().unlock();
-			getAttributeLock().readLock().unlock();
+		if (keySlots == other.keySlots) {
+			Snapshot s = snapshot;
+			Snapshot t = other.snapshot;
+			return s.size == t.size
+					&& Arrays.equals(s.slotValues, t.slotValues)
+					&& s.extraValues.equals(t.extraValues);
 		}
+		return getAttributeMap().equals(other.getAttributeMap());
 	}
 
 	protected int getAttributeCount() {
-		getAttributeLock().readLock().lock();
-		try {
-			return data.size();
-		} finally {
-			getAttributeLock().readLock().unlock();
-		}
+		return snapshot.size;
 	}
 
 	protected String[] getAttributes() {
-		getAttributeLock().readLock().lock();
-		try {
-			return data.keySet().toArray(new String[data.size()]);
-		} finally {
-			getAttributeLock().readLock().unlock();
+		Snapshot s = snapshot;
+		String[] returnValue = new String[s.size];
+		int ctr = 0;
+		for (int slot = 0; slot < s.slotValues.length; slot++) {
+			if (s.slotValues[slot] != null)
+				returnValue[ctr++] = keySlots.getKey(slot).toString();
+		}
+		for (String name : s.extraValues.keySet()) {
+			returnValue[ctr++] = name;
 		}
+		return returnValue;
 	}
 
 	protected void clearAttributes() {
 		getAttributeLock().writeLock().lock();
 		try {
-			data.clear();
+			snapshot = createSnapshot(Collections.<String, Object> emptyMap());
 		} finally {
 			getAttributeLock().writeLock().unlock();
 		}
 	}
 
 	protected Map<String, Object> getAttributeMap() {
-		getAttributeLock().readLock().lock();
-		try {
-			Map<String, Object> returnValue = new HashMap<>();
-			for (Entry<String, Object> entry : data.entrySet()) {
-				if (entry.getValue() != null)
-					returnValue.put(entry.getKey(), entry.getValue());
-			}
-			return returnValue;
-		} finally {
-			getAttributeLock().readLock().unlock();
+		Snapshot s = snapshot;
+		Map<String, Object> returnValue = new HashMap<>(s.extraValues);
+		for (int slot = 0; slot < s.slotValues.length; slot++) {
+			if (s.slotValues[slot] != null)
+				returnValue.put(keySlots.getKey(slot).toString(),
+						s.slotValues[slot]);
 		}
+		return returnValue;
 	}
-}
\ No newline at end of file
+}
@@ -35,6 +35,12 @@ public interface AttributeData extends Serializable {
 
 	public String[] getAttributes();
 
+	/**
+	 * Return the lock that guards changes to these attributes. Methods that
+	 * change attributes acquire the write lock, so callers can hold the write
+	 * lock to make several changes atomically, or hold the read lock to read
+	 * several attributes without any of them changing.
+	 */
 	public ReadWriteLock getAttributeLock();
 
 	/**
@@ -16,7 +16,7 @@ import java.util.concurrent.locks.ReadWriteLock;
 
 /**
  * This is a minimal implementation of the AttributeData interface that is
- * backed with a HashMap.
+ * backed with a copy-on-write map.
  */
 public class AttributeDataImpl extends AbstractAttributeDataImpl implements
 		AttributeData {
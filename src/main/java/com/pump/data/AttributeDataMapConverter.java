@@ -0,0 +1,110 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.data;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.pump.data.converter.BeanMapConverter;
+
+/**
+ * This is a BeanMapConverter for AbstractAttributeDataImpls, including
+ * subclasses like the {@link AttributeDataImpl}.
+ * <p>
+ * The subclass must declare a constructor with no arguments (which may be
+ * private), and all of its state must be stored as attributes.
+ */
+public class AttributeDataMapConverter
+		implements BeanMapConverter<AbstractAttributeDataImpl> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * This property defines the name of the AbstractAttributeDataImpl
+	 * subclass.
+	 */
+	public static final Key<String> PROPERTY_CLASS = new Key<>(String.class,
+			"class");
+
+	/**
+	 * This property defines the attributes of the AbstractAttributeDataImpl.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static final Key<Map<String, Object>> PROPERTY_ATTRIBUTES = new Key(
+			Map.class, "attributes");
+
+	private static final Map<String, Constructor<?>> CONSTRUCTORS = new ConcurrentHashMap<>();
+
+	@Override
+	public Class<AbstractAttributeDataImpl> getType() {
+		return AbstractAttributeDataImpl.class;
+	}
+
+	@Override
+	public Map<String, Object> createAtoms(AbstractAttributeDataImpl object) {
+		// fail now instead of writing data we can't read
+		getConstructor(object.getClass().getName());
+
+		Map<String, Object> atoms = new HashMap<>(2);
+		PROPERTY_CLASS.put(atoms, object.getClass().getName());
+		PROPERTY_ATTRIBUTES.put(atoms, object.getAttributeMap());
+		return atoms;
+	}
+
+	@Override
+	public AbstractAttributeDataImpl createFromAtoms(Map<String, Object> atoms) {
+		Constructor<?> constructor = getConstructor(PROPERTY_CLASS.get(atoms));
+		try {
+			AbstractAttributeDataImpl returnValue = (AbstractAttributeDataImpl) constructor
+					.newInstance();
+			returnValue.putAllAttributes(PROPERTY_ATTRIBUTES.get(atoms), false);
+			return returnValue;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Return the no-argument constructor of an AbstractAttributeDataImpl
+	 * subclass.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the class isn't an AbstractAttributeDataImpl or it
+	 *             doesn't declare a no-argument constructor.
+	 */
+	private static Constructor<?> getConstructor(String className) {
+		Constructor<?> constructor = CONSTRUCTORS.get(className);
+		if (constructor != null)
+			return constructor;
+		try {
+			Class<?> type = Class.forName(className, false,
+					AttributeDataMapConverter.class.getClassLoader());
+			if (!AbstractAttributeDataImpl.class.isAssignableFrom(type))
+				throw new IllegalArgumentException("\"" + className
+						+ "\" is not an AbstractAttributeDataImpl");
+			constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("\"" + className
+					+ "\" could not be found", e);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("\"" + className
+					+ "\" does not declare a constructor with no arguments",
+					e);
+		}
+		CONSTRUCTORS.put(className, constructor);
+		return constructor;
+	}
+}
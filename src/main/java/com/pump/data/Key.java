@@ -215,9 +215,24 @@ public class Key<T> implements CharSequence, Serializable {
 	 *            {@link #getDefaultValue()} is returned.
 	 * @return the value of this key based on the map provided.
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@SuppressWarnings({ "rawtypes" })
 	public T get(Map attributes, boolean applyDefaultValue) {
-		Object v = attributes.get(toString());
+		return toValue(attributes.get(toString()), applyDefaultValue);
+	}
+
+	/**
+	 * Convert a stored value to this key's type. If the value is a String and
+	 * this key is not a String key then the value is parsed with this key's
+	 * encoder.
+	 * 
+	 * @param v
+	 *            the value associated with this key, which may be null.
+	 * @param applyDefaultValue
+	 *            if true and the value is null then
+	 *            {@link #getDefaultValue()} is returned.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	T toValue(Object v, boolean applyDefaultValue) {
 		if (v instanceof String && !String.class.equals(getType())) {
 			String str = (String) v;
 			ValueEncoder e = getEncoder();
@@ -0,0 +1,96 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ *
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ *
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This is a fixed list of Keys that an {@link AbstractAttributeDataImpl}
+ * stores in an array instead of a map.
+ * <p>
+ * Each Key is assigned an index when this object is constructed, so a
+ * subclass should create one KeySlots in a static field (after its Keys are
+ * defined) and return it from {@link AbstractAttributeDataImpl#getKeySlots()}.
+ * Attributes that are not listed here are still supported; they are just
+ * stored in a map.
+ */
+public final class KeySlots {
+
+	/**
+	 * A KeySlots that doesn't contain any Keys. This is the default for all
+	 * AbstractAttributeDataImpls.
+	 */
+	public static final KeySlots EMPTY = new KeySlots();
+
+	private final Key<?>[] keys;
+	private final Map<String, Integer> indexByName;
+
+	/**
+	 * Create a KeySlots.
+	 *
+	 * @param keys
+	 *            the keys to assign slots to. Each key must have a unique
+	 *            name.
+	 */
+	public KeySlots(Key<?>... keys) {
+		this.keys = keys.clone();
+		indexByName = new HashMap<>(keys.length * 2);
+		for (int a = 0; a < keys.length; a++) {
+			Objects.requireNonNull(keys[a]);
+			String name = keys[a].toString();
+			if (indexByName.put(name, a) != null)
+				throw new IllegalArgumentException(
+						"the key \"" + name + "\" was listed more than once");
+		}
+	}
+
+	/**
+	 * Return the number of slots.
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * Return the Key assigned to a slot.
+	 */
+	public Key<?> getKey(int index) {
+		return keys[index];
+	}
+
+	/**
+	 * Return the slot assigned to a Key, or -1 if this Key doesn't have a
+	 * slot.
+	 * <p>
+	 * This first checks for the exact Key object (which is the most common
+	 * case), and then checks for a Key with the same name.
+	 */
+	public int indexOf(Key<?> key) {
+		for (int a = 0; a < keys.length; a++) {
+			if (keys[a] == key)
+				return a;
+		}
+		return indexOf(key.toString());
+	}
+
+	/**
+	 * Return the slot assigned to a property name, or -1 if this name doesn't
+	 * have a slot.
+	 */
+	public int indexOf(String name) {
+		if (keys.length == 0)
+			return -1;
+		Integer index = indexByName.get(name);
+		return index == null ? -1 : index.intValue();
+	}
+}
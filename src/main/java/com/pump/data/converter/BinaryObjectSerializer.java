@@ -0,0 +1,909 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ *
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ *
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.data.converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.pump.awt.converter.AlphaCompositeMapConverter;
+import com.pump.awt.converter.BasicStrokeMapConverter;
+import com.pump.awt.converter.ColorMapConverter;
+import com.pump.data.AttributeDataImpl;
+import com.pump.data.AttributeDataMapConverter;
+import com.pump.data.converter.ConverterUtils.ByteArray;
+import com.pump.data.converter.ConverterUtils.FloatArray;
+import com.pump.image.shadow.ShadowAttributes;
+import com.pump.io.IOUtils;
+import com.pump.io.ObjectSerializer;
+
+/**
+ * This ObjectSerializer writes a compact binary format that is driven by
+ * BeanMapConverters.
+ * <p>
+ * Common types (wrapped primitives, Strings, primitive arrays, enums and the
+ * basic Lists, Sets and Maps) are written natively. Integers use variable
+ * length encoding, every String is only written once (subsequent occurrences
+ * refer to a string table), and every object is only written once (subsequent
+ * occurrences refer to the first). When several maps share the same String
+ * keys (such as the atoms of two beans of the same type) the keys are written
+ * once as a schema, and subsequent maps only write their values.
+ * <p>
+ * Objects that a registered BeanMapConverter supports are broken into atoms.
+ * By default this includes Colors, BasicStrokes, AlphaComposites,
+ * AttributeDataImpls and ShadowAttributes (see
+ * {@link #addConverter(BeanMapConverter, boolean)}). Objects that the ConverterUtils would serialize with a
+ * BeanMapConverter are also broken into atoms. All other objects fall back to
+ * Java serialization.
+ * <p>
+ * To make {@link IOUtils#serialize(java.io.Serializable)} use this format
+ * call <code>IOUtils.setSerializer(new BinaryObjectSerializer())</code>.
+ * <p>
+ * Cyclic references are supported as long as the cycle passes through a List,
+ * Set or Map. A bean that (indirectly) contains itself is not supported.
+ */
+public class BinaryObjectSerializer implements ObjectSerializer {
+
+	private static final byte[] SIGNATURE = new byte[] { 'P', 'B', 'O', 'S' };
+	private static final int VERSION = 1;
+
+	private static final int TAG_NULL = 0;
+	private static final int TAG_TRUE = 1;
+	private static final int TAG_FALSE = 2;
+	private static final int TAG_BYTE = 3;
+	private static final int TAG_SHORT = 4;
+	private static final int TAG_INT = 5;
+	private static final int TAG_LONG = 6;
+	private static final int TAG_FLOAT = 7;
+	private static final int TAG_DOUBLE = 8;
+	private static final int TAG_CHAR = 9;
+	private static final int TAG_STRING = 10;
+	private static final int TAG_REFERENCE = 11;
+	private static final int TAG_ENUM = 12;
+	private static final int TAG_BEAN = 13;
+	private static final int TAG_SERIALIZED = 14;
+	private static final int TAG_ARRAY_LIST = 15;
+	private static final int TAG_HASH_SET = 16;
+	private static final int TAG_LINKED_HASH_SET = 17;
+	private static final int TAG_HASH_MAP = 18;
+	private static final int TAG_LINKED_HASH_MAP = 19;
+	private static final int TAG_TREE_MAP = 20;
+	private static final int TAG_BYTE_ARRAY = 21;
+	private static final int TAG_INT_ARRAY = 22;
+	private static final int TAG_LONG_ARRAY = 23;
+	private static final int TAG_FLOAT_ARRAY = 24;
+	private static final int TAG_DOUBLE_ARRAY = 25;
+	private static final int TAG_OBJECT_ARRAY = 26;
+	private static final int TAG_STRING_ARRAY = 27;
+	private static final int TAG_WRAPPED_BYTE_ARRAY = 28;
+	private static final int TAG_WRAPPED_FLOAT_ARRAY = 29;
+
+	private static class Registration {
+		final BeanMapConverter<?> converter;
+		final Class<?> type;
+		final boolean includeSubclasses;
+
+		Registration(BeanMapConverter<?> converter, Class<?> type,
+				boolean includeSubclasses) {
+			this.converter = converter;
+			this.type = type;
+			this.includeSubclasses = includeSubclasses;
+		}
+
+		boolean accepts(Class<?> type) {
+			if (includeSubclasses)
+				return this.type.isAssignableFrom(type);
+			return this.type.equals(type);
+		}
+	}
+
+	/**
+	 * This writes one object graph to a byte array.
+	 */
+	private class Encoder {
+		byte[] buf = new byte[256];
+		int size = 0;
+		Map<String, Integer> strings = new HashMap<>();
+		Map<List<String>, Integer> schemas = new HashMap<>();
+		Map<Object, Integer> references = new IdentityHashMap<>();
+
+		void ensureCapacity(int extra) {
+			if (size + extra > buf.length)
+				buf = Arrays.copyOf(buf,
+						Math.max(buf.length * 2, size + extra));
+		}
+
+		void writeByte(int b) {
+			ensureCapacity(1);
+			buf[size++] = (byte) b;
+		}
+
+		void writeBytes(byte[] b, int offset, int length) {
+			ensureCapacity(length);
+			System.arraycopy(b, offset, buf, size, length);
+			size += length;
+		}
+
+		void writeVarLong(long v) {
+			ensureCapacity(10);
+			while ((v & ~0x7fL) != 0) {
+				buf[size++] = (byte) ((v & 0x7f) | 0x80);
+				v >>>= 7;
+			}
+			buf[size++] = (byte) v;
+		}
+
+		void writeUnsignedVarInt(int v) {
+			writeVarLong(v & 0xffffffffL);
+		}
+
+		void writeSignedVarLong(long v) {
+			writeVarLong((v << 1) ^ (v >> 63));
+		}
+
+		void writeFixedInt(int v) {
+			ensureCapacity(4);
+			buf[size++] = (byte) (v >>> 24);
+			buf[size++] = (byte) (v >>> 16);
+			buf[size++] = (byte) (v >>> 8);
+			buf[size++] = (byte) v;
+		}
+
+		void writeFixedLong(long v) {
+			writeFixedInt((int) (v >>> 32));
+			writeFixedInt((int) v);
+		}
+
+		/**
+		 * Write a String: either an index in the string table, or a new String
+		 * that is added to the table.
+		 */
+		void writeString(String s) {
+			Integer index = strings.get(s);
+			if (index != null) {
+				writeUnsignedVarInt(2 * index + 1);
+			} else {
+				strings.put(s, strings.size());
+				byte[] b = s.getBytes(StandardCharsets.UTF_8);
+				writeUnsignedVarInt(2 * b.length);
+				writeBytes(b, 0, b.length);
+			}
+		}
+
+		/**
+		 * Return true if this object was already written, in which case a
+		 * reference to it is written. Otherwise this assigns the object the
+		 * next reference index and returns false.
+		 */
+		boolean writeReference(Object obj) {
+			Integer index = references.get(obj);
+			if (index != null) {
+				writeByte(TAG_REFERENCE);
+				writeUnsignedVarInt(index);
+				return true;
+			}
+			references.put(obj, references.size());
+			return false;
+		}
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		void writeObject(Object obj) throws IOException {
+			if (obj == null) {
+				writeByte(TAG_NULL);
+				return;
+			}
+			Class<?> type = obj.getClass();
+			if (type == String.class) {
+				writeByte(TAG_STRING);
+				writeString((String) obj);
+			} else if (type == Boolean.class) {
+				writeByte(((Boolean) obj) ? TAG_TRUE : TAG_FALSE);
+			} else if (type == Integer.class) {
+				writeByte(TAG_INT);
+				writeSignedVarLong((Integer) obj);
+			} else if (type == Long.class) {
+				writeByte(TAG_LONG);
+				writeSignedVarLong((Long) obj);
+			} else if (type == Float.class) {
+				writeByte(TAG_FLOAT);
+				writeFixedInt(Float.floatToRawIntBits((Float) obj));
+			} else if (type == Double.class) {
+				writeByte(TAG_DOUBLE);
+				writeFixedLong(Double.doubleToRawLongBits((Double) obj));
+			} else if (type == Byte.class) {
+				writeByte(TAG_BYTE);
+				writeByte((Byte) obj);
+			} else if (type == Short.class) {
+				writeByte(TAG_SHORT);
+				writeSignedVarLong((Short) obj);
+			} else if (type == Character.class) {
+				writeByte(TAG_CHAR);
+				writeUnsignedVarInt((Character) obj);
+			} else if (writeReference(obj)) {
+				// this object was already written
+			} else if (type == ArrayList.class) {
+				writeByte(TAG_ARRAY_LIST);
+				writeCollection((Collection<?>) obj);
+			} else if (type == HashSet.class) {
+				writeByte(TAG_HASH_SET);
+				writeCollection((Collection<?>) obj);
+			} else if (type == LinkedHashSet.class) {
+				writeByte(TAG_LINKED_HASH_SET);
+				writeCollection((Collection<?>) obj);
+			} else if (type == HashMap.class) {
+				writeByte(TAG_HASH_MAP);
+				writeMap((Map<?, ?>) obj);
+			} else if (type == LinkedHashMap.class) {
+				writeByte(TAG_LINKED_HASH_MAP);
+				writeMap((Map<?, ?>) obj);
+			} else if (type == TreeMap.class
+					&& ((TreeMap<?, ?>) obj).comparator() == null) {
+				writeByte(TAG_TREE_MAP);
+				writeMap((Map<?, ?>) obj);
+			} else if (type == byte[].class) {
+				writeByte(TAG_BYTE_ARRAY);
+				writeByteArray((byte[]) obj);
+			} else if (type == int[].class) {
+				int[] array = (int[]) obj;
+				writeByte(TAG_INT_ARRAY);
+				writeUnsignedVarInt(array.length);
+				for (int a = 0; a < array.length; a++) {
+					writeSignedVarLong(array[a]);
+				}
+			} else if (type == long[].class) {
+				long[] array = (long[]) obj;
+				writeByte(TAG_LONG_ARRAY);
+				writeUnsignedVarInt(array.length);
+				for (int a = 0; a < array.length; a++) {
+					writeSignedVarLong(array[a]);
+				}
+			} else if (type == float[].class) {
+				writeByte(TAG_FLOAT_ARRAY);
+				writeFloatArray((float[]) obj);
+			} else if (type == double[].class) {
+				double[] array = (double[]) obj;
+				writeByte(TAG_DOUBLE_ARRAY);
+				writeUnsignedVarInt(array.length);
+				for (int a = 0; a < array.length; a++) {
+					writeFixedLong(Double.doubleToRawLongBits(array[a]));
+				}
+			} else if (type == Object[].class || type == String[].class) {
+				Object[] array = (Object[]) obj;
+				writeByte(type == Object[].class ? TAG_OBJECT_ARRAY
+						: TAG_STRING_ARRAY);
+				writeUnsignedVarInt(array.length);
+				for (int a = 0; a < array.length; a++) {
+					writeObject(array[a]);
+				}
+			} else if (type == ByteArray.class) {
+				writeByte(TAG_WRAPPED_BYTE_ARRAY);
+				writeByteArray(((ByteArray) obj).data);
+			} else if (type == FloatArray.class) {
+				writeByte(TAG_WRAPPED_FLOAT_ARRAY);
+				writeFloatArray(((FloatArray) obj).data);
+			} else if (obj instanceof Enum) {
+				writeByte(TAG_ENUM);
+				writeString(((Enum) obj).getDeclaringClass().getName());
+				writeString(((Enum) obj).name());
+			} else {
+				BeanMapConverter converter = getConverter(obj);
+				if (converter != null) {
+					writeByte(TAG_BEAN);
+					writeString(converter.getClass().getName());
+					writeMap(converter.createAtoms(obj));
+				} else {
+					ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+					try (ObjectOutputStream objOut = new ObjectOutputStream(
+							byteOut)) {
+						objOut.writeObject(obj);
+					}
+					writeByte(TAG_SERIALIZED);
+					writeByteArray(byteOut.toByteArray());
+				}
+			}
+		}
+
+		void writeByteArray(byte[] array) {
+			writeUnsignedVarInt(array.length);
+			writeBytes(array, 0, array.length);
+		}
+
+		void writeFloatArray(float[] array) {
+			writeUnsignedVarInt(array.length);
+			ensureCapacity(4 * array.length);
+			for (int a = 0; a < array.length; a++) {
+				writeFixedInt(Float.floatToRawIntBits(array[a]));
+			}
+		}
+
+		void writeCollection(Collection<?> c) throws IOException {
+			writeUnsignedVarInt(c.size());
+			for (Object element : c) {
+				writeObject(element);
+			}
+		}
+
+		/**
+		 * Write a map. If every key is a String then the keys are written as a
+		 * schema that other maps with the same keys can refer to.
+		 * <p>
+		 * The map begins with a varint: zero indicates an arbitrary map
+		 * (followed by its size and every key/value pair), an odd number
+		 * refers to a previous schema, and an even number indicates a new
+		 * schema (followed by its keys). In the last two cases the values
+		 * follow in the order of the schema's keys.
+		 */
+		void writeMap(Map<?, ?> map) throws IOException {
+			List<String> keys = new ArrayList<>(map.size());
+			for (Object key : map.keySet()) {
+				if (!(key instanceof String)) {
+					keys = null;
+					break;
+				}
+				keys.add((String) key);
+			}
+
+			if (keys == null || keys.isEmpty()) {
+				writeUnsignedVarInt(0);
+				writeUnsignedVarInt(map.size());
+				for (Map.Entry<?, ?> entry : map.entrySet()) {
+					writeObject(entry.getKey());
+					writeObject(entry.getValue());
+				}
+				return;
+			}
+
+			Integer schemaIndex = schemas.get(keys);
+			if (schemaIndex != null) {
+				writeUnsignedVarInt(2 * schemaIndex + 1);
+			} else {
+				schemas.put(keys, schemas.size());
+				writeUnsignedVarInt(2 * keys.size() + 2);
+				for (String key : keys) {
+					writeString(key);
+				}
+			}
+			for (String key : keys) {
+				writeObject(map.get(key));
+			}
+		}
+	}
+
+	/**
+	 * This reads one object graph from a byte array.
+	 */
+	private class Decoder {
+		final byte[] buf;
+		int pos;
+		final int limit;
+		List<String> strings = new ArrayList<>();
+		List<String[]> schemas = new ArrayList<>();
+		List<Object> references = new ArrayList<>();
+		Map<String, BeanMapConverter<?>> converters = new HashMap<>();
+
+		Decoder(byte[] buf, int pos, int limit) {
+			this.buf = buf;
+			this.pos = pos;
+			this.limit = limit;
+		}
+
+		void require(long byteCount) throws EOFException {
+			if (byteCount < 0 || byteCount > limit - pos)
+				throw new EOFException();
+		}
+
+		int readByte() throws EOFException {
+			require(1);
+			return buf[pos++];
+		}
+
+		long readVarLong() throws IOException {
+			long v = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				v |= ((long) (b & 0x7f)) << shift;
+				if ((b & 0x80) == 0)
+					return v;
+			}
+			throw new IOException("malformed varint");
+		}
+
+		int readUnsignedVarInt() throws IOException {
+			long v = readVarLong();
+			if (v < 0 || v > 0xffffffffL)
+				throw new IOException("malformed varint");
+			return (int) v;
+		}
+
+		/**
+		 * Read a varint used as a length or index.
+		 */
+		int readLength() throws IOException {
+			int v = readUnsignedVarInt();
+			if (v < 0)
+				throw new IOException("illegal length: " + (v & 0xffffffffL));
+			return v;
+		}
+
+		long readSignedVarLong() throws IOException {
+			long v = readVarLong();
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		int readFixedInt() throws EOFException {
+			require(4);
+			int v = ((buf[pos] & 0xff) << 24) | ((buf[pos + 1] & 0xff) << 16)
+					| ((buf[pos + 2] & 0xff) << 8) | (buf[pos + 3] & 0xff);
+			pos += 4;
+			return v;
+		}
+
+		long readFixedLong() throws EOFException {
+			long high = readFixedInt() & 0xffffffffL;
+			long low = readFixedInt() & 0xffffffffL;
+			return (high << 32) | low;
+		}
+
+		String readString() throws IOException {
+			int v = readLength();
+			if ((v & 1) == 1) {
+				int index = v >>> 1;
+				if (index >= strings.size())
+					throw new IOException("illegal string index: " + index);
+				return strings.get(index);
+			}
+			int length = v >>> 1;
+			require(length);
+			String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			strings.add(s);
+			return s;
+		}
+
+		/**
+		 * Reserve the next reference index for an object that is about to be
+		 * read.
+		 */
+		int reserveReference() {
+			references.add(null);
+			return references.size() - 1;
+		}
+
+		<T> T setReference(int index, T obj) {
+			references.set(index, obj);
+			return obj;
+		}
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		Object readObject() throws IOException, ClassNotFoundException {
+			int tag = readByte();
+			switch (tag) {
+			case TAG_NULL:
+				return null;
+			case TAG_TRUE:
+				return Boolean.TRUE;
+			case TAG_FALSE:
+				return Boolean.FALSE;
+			case TAG_BYTE:
+				return Byte.valueOf((byte) readByte());
+			case TAG_SHORT:
+				return Short.valueOf((short) readSignedVarLong());
+			case TAG_INT:
+				return Integer.valueOf((int) readSignedVarLong());
+			case TAG_LONG:
+				return Long.valueOf(readSignedVarLong());
+			case TAG_FLOAT:
+				return Float.valueOf(Float.intBitsToFloat(readFixedInt()));
+			case TAG_DOUBLE:
+				return Double
+						.valueOf(Double.longBitsToDouble(readFixedLong()));
+			case TAG_CHAR:
+				return Character.valueOf((char) readUnsignedVarInt());
+			case TAG_STRING:
+				return readString();
+			case TAG_REFERENCE: {
+				int index = readLength();
+				if (index >= references.size())
+					throw new IOException(
+							"illegal reference index: " + index);
+				return references.get(index);
+			}
+			case TAG_ARRAY_LIST: {
+				int index = reserveReference();
+				int size = readLength();
+				return readCollection(
+						setReference(index,
+								new ArrayList<>(Math.min(size, 1024))),
+						size);
+			}
+			case TAG_HASH_SET: {
+				int index = reserveReference();
+				return readCollection(setReference(index, new HashSet<>()),
+						readLength());
+			}
+			case TAG_LINKED_HASH_SET: {
+				int index = reserveReference();
+				return readCollection(
+						setReference(index, new LinkedHashSet<>()),
+						readLength());
+			}
+			case TAG_HASH_MAP: {
+				int index = reserveReference();
+				return readMap(setReference(index, new HashMap<>()));
+			}
+			case TAG_LINKED_HASH_MAP: {
+				int index = reserveReference();
+				return readMap(setReference(index, new LinkedHashMap<>()));
+			}
+			case TAG_TREE_MAP: {
+				int index = reserveReference();
+				return readMap(setReference(index, new TreeMap<>()));
+			}
+			case TAG_BYTE_ARRAY: {
+				int index = reserveReference();
+				return setReference(index, readByteArray());
+			}
+			case TAG_INT_ARRAY: {
+				int index = reserveReference();
+				int length = readLength();
+				require(length);
+				int[] array = new int[length];
+				for (int a = 0; a < length; a++) {
+					array[a] = (int) readSignedVarLong();
+				}
+				return setReference(index, array);
+			}
+			case TAG_LONG_ARRAY: {
+				int index = reserveReference();
+				int length = readLength();
+				require(length);
+				long[] array = new long[length];
+				for (int a = 0; a < length; a++) {
+					array[a] = readSignedVarLong();
+				}
+				return setReference(index, array);
+			}
+			case TAG_FLOAT_ARRAY: {
+				int index = reserveReference();
+				return setReference(index, readFloatArray());
+			}
+			case TAG_DOUBLE_ARRAY: {
+				int index = reserveReference();
+				int length = readLength();
+				require(8L * length);
+				double[] array = new double[length];
+				for (int a = 0; a < length; a++) {
+					array[a] = Double.longBitsToDouble(readFixedLong());
+				}
+				return setReference(index, array);
+			}
+			case TAG_OBJECT_ARRAY:
+			case TAG_STRING_ARRAY: {
+				int index = reserveReference();
+				int length = readLength();
+				require(length);
+				Object[] array = tag == TAG_OBJECT_ARRAY ? new Object[length]
+						: new String[length];
+				setReference(index, array);
+				for (int a = 0; a < length; a++) {
+					array[a] = readObject();
+				}
+				return array;
+			}
+			case TAG_WRAPPED_BYTE_ARRAY: {
+				int index = reserveReference();
+				return setReference(index, ByteArray.get(readByteArray()));
+			}
+			case TAG_WRAPPED_FLOAT_ARRAY: {
+				int index = reserveReference();
+				return setReference(index, FloatArray.get(readFloatArray()));
+			}
+			case TAG_ENUM: {
+				int index = reserveReference();
+				Class<?> type = Class.forName(readString(), false,
+						getClassLoader());
+				if (!type.isEnum())
+					throw new IOException(
+							"\"" + type.getName() + "\" is not an enum");
+				return setReference(index,
+						Enum.valueOf((Class) type, readString()));
+			}
+			case TAG_BEAN: {
+				int index = reserveReference();
+				BeanMapConverter converter = getConverter(readString());
+				Map<String, Object> atoms = readMap(new HashMap<>());
+				return setReference(index, converter.createFromAtoms(atoms));
+			}
+			case TAG_SERIALIZED: {
+				int index = reserveReference();
+				int length = readLength();
+				require(length);
+				try (ObjectInputStream objIn = new ObjectInputStream(
+						new ByteArrayInputStream(buf, pos, length))) {
+					pos += length;
+					return setReference(index, objIn.readObject());
+				}
+			}
+			default:
+				throw new IOException("unsupported tag: " + tag);
+			}
+		}
+
+		byte[] readByteArray() throws IOException {
+			int length = readLength();
+			require(length);
+			byte[] array = Arrays.copyOfRange(buf, pos, pos + length);
+			pos += length;
+			return array;
+		}
+
+		float[] readFloatArray() throws IOException {
+			int length = readLength();
+			require(4L * length);
+			float[] array = new float[length];
+			for (int a = 0; a < length; a++) {
+				array[a] = Float.intBitsToFloat(readFixedInt());
+			}
+			return array;
+		}
+
+		<C extends Collection<Object>> C readCollection(C c, int size)
+				throws IOException, ClassNotFoundException {
+			require(size);
+			for (int a = 0; a < size; a++) {
+				c.add(readObject());
+			}
+			return c;
+		}
+
+		/**
+		 * Read a map written by {@link Encoder#writeMap(Map)}.
+		 */
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		<M extends Map> M readMap(M map)
+				throws IOException, ClassNotFoundException {
+			int v = readLength();
+			if (v == 0) {
+				int size = readLength();
+				require(size);
+				for (int a = 0; a < size; a++) {
+					Object key = readObject();
+					map.put(key, readObject());
+				}
+				return map;
+			}
+
+			String[] keys;
+			if ((v & 1) == 1) {
+				int index = v >>> 1;
+				if (index >= schemas.size())
+					throw new IOException("illegal schema index: " + index);
+				keys = schemas.get(index);
+			} else {
+				int size = (v >>> 1) - 1;
+				require(size);
+				keys = new String[size];
+				for (int a = 0; a < size; a++) {
+					keys[a] = readString();
+				}
+				schemas.add(keys);
+			}
+			for (String key : keys) {
+				map.put(key, readObject());
+			}
+			return map;
+		}
+
+		BeanMapConverter<?> getConverter(String className)
+				throws IOException, ClassNotFoundException {
+			BeanMapConverter<?> converter = converters.get(className);
+			if (converter == null) {
+				converter = BinaryObjectSerializer.this
+						.getConverter(className);
+				converters.put(className, converter);
+			}
+			return converter;
+		}
+	}
+
+	private final List<Registration> registrations = new ArrayList<>();
+
+	/**
+	 * Create a BinaryObjectSerializer that supports Colors, BasicStrokes,
+	 * AlphaComposites, AttributeDataImpls and ShadowAttributes.
+	 */
+	public BinaryObjectSerializer() {
+		addConverter(new ColorMapConverter(), false);
+		addConverter(new BasicStrokeMapConverter(), false);
+		addConverter(new AlphaCompositeMapConverter(), false);
+
+		// other AbstractAttributeDataImpls may not have a no-argument
+		// constructor, or they may have state outside of their attributes
+		AttributeDataMapConverter attributeDataConverter = new AttributeDataMapConverter();
+		addConverter(attributeDataConverter, AttributeDataImpl.class);
+		addConverter(attributeDataConverter, ShadowAttributes.class);
+	}
+
+	/**
+	 * Register a BeanMapConverter this serializer uses to write objects. When
+	 * several converters support the same object the most recently added
+	 * converter is used.
+	 *
+	 * @param converter
+	 *            the converter to add.
+	 * @param includeSubclasses
+	 *            if false then this converter is only used for objects whose
+	 *            class is exactly {@link BeanMapConverter#getType()}. (For
+	 *            example: the ColorMapConverter would convert a
+	 *            ColorUIResource into a plain Color, so it is only used for
+	 *            exact Colors.) If true then this converter is trusted to
+	 *            recreate any subclass of its type.
+	 */
+	public synchronized void addConverter(BeanMapConverter<?> converter,
+			boolean includeSubclasses) {
+		registrations.add(new Registration(converter, converter.getType(),
+				includeSubclasses));
+	}
+
+	/**
+	 * Register a BeanMapConverter this serializer uses to write objects whose
+	 * class is exactly the given type. This is useful when a converter
+	 * supports a few (but not all) subclasses of its type.
+	 *
+	 * @param converter
+	 *            the converter to add.
+	 * @param type
+	 *            the exact class this converter is used for.
+	 */
+	public synchronized <T> void addConverter(
+			BeanMapConverter<? super T> converter, Class<T> type) {
+		if (!converter.getType().isAssignableFrom(type))
+			throw new IllegalArgumentException(converter.getClass().getName()
+					+ " does not support " + type.getName());
+		registrations.add(new Registration(converter, type, false));
+	}
+
+	/**
+	 * Return the converter used to break an object into atoms, or null if
+	 * this object should be written with Java serialization.
+	 */
+	private synchronized BeanMapConverter<?> getConverter(Object obj) {
+		Class<?> type = obj.getClass();
+		for (int a = registrations.size() - 1; a >= 0; a--) {
+			Registration r = registrations.get(a);
+			if (r.accepts(type))
+				return r.converter;
+		}
+		return ConverterUtils.getSerializationConverter(obj);
+	}
+
+	/**
+	 * Return a converter based on its class name. This only returns
+	 * converters that this object (or the ConverterUtils) could have used to
+	 * write an object: a stream can't make us instantiate an arbitrary class.
+	 */
+	private synchronized BeanMapConverter<?> getConverter(String className)
+			throws IOException {
+		for (int a = registrations.size() - 1; a >= 0; a--) {
+			Registration r = registrations.get(a);
+			if (r.converter.getClass().getName().equals(className))
+				return r.converter;
+		}
+
+		BeanMapConverter<?> converter = ConverterUtils
+				.getSerializationConverter(className);
+		if (converter == null)
+			throw new IOException(
+					"\"" + className + "\" is not a registered converter");
+		return converter;
+	}
+
+	private ClassLoader getClassLoader() {
+		return BinaryObjectSerializer.class.getClassLoader();
+	}
+
+	@Override
+	public byte[] getSignature() {
+		return SIGNATURE.clone();
+	}
+
+	/**
+	 * Write the signature, a version number, the length of the data and the
+	 * object.
+	 */
+	@Override
+	public void writeObject(Object object, OutputStream out)
+			throws IOException {
+		Encoder encoder = new Encoder();
+		encoder.writeObject(object);
+
+		Encoder header = new Encoder();
+		header.writeBytes(SIGNATURE, 0, SIGNATURE.length);
+		header.writeUnsignedVarInt(VERSION);
+		header.writeUnsignedVarInt(encoder.size);
+		out.write(header.buf, 0, header.size);
+		out.write(encoder.buf, 0, encoder.size);
+	}
+
+	@Override
+	public Object readObject(InputStream in)
+			throws IOException, ClassNotFoundException {
+		DataInputStream dataIn = new DataInputStream(in);
+		byte[] signature = new byte[SIGNATURE.length];
+		dataIn.readFully(signature);
+		if (!Arrays.equals(signature, SIGNATURE))
+			throw new IOException("unrecognized signature");
+
+		// the version and length are varints, read one byte at a time
+		int version = (int) readVarLong(dataIn);
+		if (version != VERSION)
+			throw new IOException("unsupported version: " + version);
+		long length = readVarLong(dataIn);
+		if (length < 0 || length > Integer.MAX_VALUE)
+			throw new IOException("illegal length: " + length);
+		byte[] data = readFully(dataIn, (int) length);
+		Decoder decoder = new Decoder(data, 0, data.length);
+		Object returnValue = decoder.readObject();
+		if (decoder.pos != data.length)
+			throw new IOException((data.length - decoder.pos)
+					+ " unexpected bytes remain");
+		return returnValue;
+	}
+
+	/**
+	 * Read a given number of bytes. The array grows as the data arrives, so a
+	 * corrupt length in a short stream doesn't allocate a huge array.
+	 */
+	private static byte[] readFully(InputStream in, int length)
+			throws IOException {
+		byte[] data = new byte[Math.min(length, 1 << 16)];
+		int pos = 0;
+		while (pos < length) {
+			if (pos == data.length)
+				data = Arrays.copyOf(data,
+						(int) Math.min(length, 2L * data.length));
+			int k = in.read(data, pos, data.length - pos);
+			if (k == -1)
+				throw new EOFException();
+			pos += k;
+		}
+		return data;
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			v |= ((long) (b & 0x7f)) << shift;
+			if ((b & 0x80) == 0)
+				return v;
+		}
+		throw new IOException("malformed varint");
+	}
+}
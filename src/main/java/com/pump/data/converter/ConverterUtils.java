@@ -350,28 +350,48 @@ public class ConverterUtils {
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public static void writeObject(ObjectOutputStream objOut, Object obj)
 			throws IOException {
-		if (obj == null) {
-			objOut.writeObject(null);
+		BeanMapConverter converter = obj == null ? null
+				: getSerializationConverter(obj);
+		if (converter == null) {
 			objOut.writeObject(null);
+			objOut.writeObject(obj);
 		} else {
-			BeanMapConverter converter = getConverter(obj.getClass());
-			if (converter == null || !isForSerialization(converter)) {
-				objOut.writeObject(null);
-				objOut.writeObject(obj);
-			} else {
-				if (obj instanceof Serializable
-						&& isSafelyDeserializable(obj.getClass())) {
-					objOut.writeObject(null);
-					objOut.writeObject(obj);
-				} else {
-					Map<String, Object> atoms = converter.createAtoms(obj);
-					objOut.writeObject(converter);
-					objOut.writeObject(atoms);
-				}
-			}
+			Map<String, Object> atoms = converter.createAtoms(obj);
+			objOut.writeObject(converter);
+			objOut.writeObject(atoms);
 		}
 	}
 
+	/**
+	 * Return the BeanMapConverter {@link #writeObject(ObjectOutputStream,
+	 * Object)} uses to serialize an object, or null if the object should be
+	 * serialized as-is.
+	 */
+	static BeanMapConverter<?> getSerializationConverter(Object obj) {
+		BeanMapConverter<?> converter = getConverter(obj.getClass());
+		if (converter == null || !isForSerialization(converter))
+			return null;
+		if (obj instanceof Serializable
+				&& isSafelyDeserializable(obj.getClass()))
+			return null;
+		return converter;
+	}
+
+	/**
+	 * Return the BeanMapConverter with the given class name that
+	 * {@link #writeObject(ObjectOutputStream, Object)} may use, or null if
+	 * there is no such converter.
+	 */
+	static BeanMapConverter<?> getSerializationConverter(String className) {
+		initialize();
+		for (BeanMapConverter<?> converter : CONVERTERS) {
+			if (isForSerialization(converter)
+					&& converter.getClass().getName().equals(className))
+				return converter;
+		}
+		return null;
+	}
+
 	/**
 	 * In issue #94 we were able to serialize a
 	 * com.apple.laf.AquaFonts$DerivedUIResourceFont, but we weren't able to
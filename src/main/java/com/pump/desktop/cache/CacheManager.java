@@ -166,6 +166,33 @@ public class CacheManager {
 		return commonDir;
 	}
 
+	/**
+	 * Create a {@link DiskCache} in a subdirectory of this CacheManager's
+	 * directory.
+	 * 
+	 * @param name
+	 *            the name of the subdirectory. Several processes (or several
+	 *            DiskCaches in the same process) may use the same name.
+	 * @param versioned
+	 *            if true then the cache is stored in the version-specific
+	 *            directory. See {@link #getDirectory(boolean)}.
+	 * @param maxByteCount
+	 *            the maximum number of bytes the cached entries may occupy.
+	 * @param evictionPolicy
+	 *            the policy used to choose which entries to remove when the
+	 *            cache exceeds maxByteCount.
+	 */
+	public DiskCache createDiskCache(String name, boolean versioned,
+			long maxByteCount, DiskCache.EvictionPolicy evictionPolicy)
+			throws IOException {
+		File parent = getDirectory(versioned);
+		if (parent == null)
+			throw new IllegalStateException(
+					"This CacheManager was not constructed with a version.");
+		return new DiskCache(new File(parent, name), maxByteCount,
+				evictionPolicy);
+	}
+
 	/**
 	 * Return true if {@link #initialize(String, String)} has been called.
 	 * 
@@ -0,0 +1,796 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ *
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ *
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.desktop.cache;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.pump.io.FileUtils;
+
+/**
+ * A size-bounded key/value store that persists across sessions.
+ * <p>
+ * All values are appended to one segment file, and an in-memory index maps
+ * each key to the record that holds its current value. Replacing or removing a
+ * value only appends a new record; when enough of the segment file is made of
+ * obsolete records it is compacted into a new file that atomically replaces
+ * the old one.
+ * <p>
+ * Every record ends with a checksum, so if a write is interrupted (for
+ * example, if the application is killed) the incomplete record is discarded
+ * the next time the segment file is read.
+ * <p>
+ * When the total size of the records exceeds the byte budget, entries are
+ * evicted according to the {@link EvictionPolicy}.
+ * <p>
+ * Several processes (or several DiskCaches in the same process) may safely
+ * share the same directory. Every operation holds a FileLock on a lock file in
+ * that directory, and each DiskCache reads any records other processes have
+ * appended before it consults its index.
+ */
+public class DiskCache implements Closeable {
+
+	/**
+	 * This determines which entries are removed when a DiskCache exceeds its
+	 * byte budget.
+	 */
+	public enum EvictionPolicy {
+		/**
+		 * Evict the entry that this DiskCache read or wrote the longest time
+		 * ago.
+		 */
+		LEAST_RECENTLY_USED,
+		/**
+		 * Evict the largest entry first. This keeps as many entries as
+		 * possible within the byte budget.
+		 */
+		LARGEST_FIRST
+	}
+
+	/**
+	 * The location of a record in the segment file.
+	 */
+	static class Entry {
+		final long offset;
+		final int length;
+
+		Entry(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private static final int MAGIC = 0x4A444B43;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+
+	private static final byte RECORD_PUT = 1;
+	private static final byte RECORD_REMOVE = 2;
+
+	private static final int MAX_KEY_LENGTH = 0xffff;
+
+	/**
+	 * Compaction is not attempted until the segment file contains at least
+	 * this many bytes of obsolete records.
+	 */
+	private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+	private static final String SEGMENT_FILE_NAME = "segment";
+	private static final String COMPACTION_FILE_NAME = "segment.tmp";
+	private static final String LOCK_FILE_NAME = "lock";
+
+	/**
+	 * These monitors synchronize all the DiskCaches in this JVM that share a
+	 * directory. (A FileLock is held on behalf of the whole JVM, so it can't
+	 * arbitrate between threads.)
+	 */
+	private static final Map<File, Object> DIRECTORY_MONITORS = new HashMap<>();
+
+	private static Object getMonitor(File dir) {
+		synchronized (DIRECTORY_MONITORS) {
+			Object monitor = DIRECTORY_MONITORS.get(dir);
+			if (monitor == null) {
+				monitor = new Object();
+				DIRECTORY_MONITORS.put(dir, monitor);
+			}
+			return monitor;
+		}
+	}
+
+	protected final File dir;
+	protected final long maxByteCount;
+	protected final EvictionPolicy evictionPolicy;
+
+	private final File segmentFile, compactionFile;
+	private final Object monitor;
+	private final FileChannel lockChannel;
+	private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16,
+			.75f, true);
+	private final Random random = new Random();
+
+	private RandomAccessFile segment;
+	private Object segmentKey;
+	private long generation;
+	private long segmentLength;
+	private long liveByteCount;
+	private boolean closed = false;
+
+	private long hitCount, missCount, evictionCount, evictedByteCount;
+
+	/**
+	 * Create a DiskCache that evicts the least recently used entries.
+	 *
+	 * @param dir
+	 *            the directory to store this cache in. This is created if it
+	 *            doesn't exist. See {@link CacheManager#getDirectory(boolean)}.
+	 * @param maxByteCount
+	 *            the maximum number of bytes the entries in this cache may
+	 *            occupy.
+	 */
+	public DiskCache(File dir, long maxByteCount) throws IOException {
+		this(dir, maxByteCount, EvictionPolicy.LEAST_RECENTLY_USED);
+	}
+
+	/**
+	 * Create a DiskCache.
+	 *
+	 * @param dir
+	 *            the directory to store this cache in. This is created if it
+	 *            doesn't exist. See {@link CacheManager#getDirectory(boolean)}.
+	 * @param maxByteCount
+	 *            the maximum number of bytes the entries in this cache may
+	 *            occupy.
+	 * @param evictionPolicy
+	 *            the policy used to choose which entries to remove when this
+	 *            cache exceeds maxByteCount.
+	 */
+	public DiskCache(File dir, long maxByteCount,
+			EvictionPolicy evictionPolicy) throws IOException {
+		Objects.requireNonNull(dir);
+		Objects.requireNonNull(evictionPolicy);
+		if (maxByteCount <= 0)
+			throw new IllegalArgumentException("maxByteCount ("
+					+ maxByteCount + ") must be greater than zero");
+		if (!dir.exists())
+			FileUtils.mkdirs(dir);
+		this.dir = dir.getCanonicalFile();
+		this.maxByteCount = maxByteCount;
+		this.evictionPolicy = evictionPolicy;
+		segmentFile = new File(this.dir, SEGMENT_FILE_NAME);
+		compactionFile = new File(this.dir, COMPACTION_FILE_NAME);
+		monitor = getMonitor(this.dir);
+		lockChannel = FileChannel.open(
+				new File(this.dir, LOCK_FILE_NAME).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+		synchronized (monitor) {
+			FileLock lock = lockChannel.lock();
+			try {
+				refresh();
+				evict();
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Return the directory this cache is stored in.
+	 */
+	public File getDirectory() {
+		return dir;
+	}
+
+	/**
+	 * Return the maximum number of bytes the entries in this cache may
+	 * occupy.
+	 */
+	public long getMaxByteCount() {
+		return maxByteCount;
+	}
+
+	/**
+	 * Return the policy used to choose which entries to evict.
+	 */
+	public EvictionPolicy getEvictionPolicy() {
+		return evictionPolicy;
+	}
+
+	/**
+	 * Return the value associated with a key, or null if this cache doesn't
+	 * contain that key.
+	 */
+	public byte[] get(String key) throws IOException {
+		Objects.requireNonNull(key);
+		synchronized (monitor) {
+			FileLock lock = lockChannel.lock();
+			try {
+				refresh();
+				Entry entry = index.get(key);
+				if (entry != null) {
+					byte[] record = new byte[entry.length];
+					segment.seek(entry.offset);
+					segment.readFully(record);
+					DataInputStream in = new DataInputStream(
+							new ByteArrayInputStream(record));
+					Object[] keyAndValue = readRecord(in, record.length);
+					if (keyAndValue != null && key.equals(keyAndValue[0])
+							&& keyAndValue[1] != null) {
+						hitCount++;
+						return (byte[]) keyAndValue[1];
+					}
+					// this should only happen if the file was modified
+					// outside of a DiskCache
+					index.remove(key);
+					liveByteCount -= entry.length;
+				}
+				missCount++;
+				return null;
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Store a value in this cache.
+	 *
+	 * @return false if this value is too large to be stored within the byte
+	 *         budget. In this case any previous value for this key is
+	 *         removed.
+	 */
+	public boolean put(String key, byte[] value) throws IOException {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		byte[] record = createRecord(RECORD_PUT, key, value);
+		if (record.length > maxByteCount) {
+			remove(key);
+			return false;
+		}
+		synchronized (monitor) {
+			FileLock lock = lockChannel.lock();
+			try {
+				refresh();
+				long offset = append(record);
+				Entry oldEntry = index.put(key,
+						new Entry(offset, record.length));
+				if (oldEntry != null)
+					liveByteCount -= oldEntry.length;
+				liveByteCount += record.length;
+				evict();
+				return true;
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Remove a value from this cache.
+	 *
+	 * @return true if this cache contained the key.
+	 */
+	public boolean remove(String key) throws IOException {
+		Objects.requireNonNull(key);
+		synchronized (monitor) {
+			FileLock lock = lockChannel.lock();
+			try {
+				refresh();
+				Entry entry = index.remove(key);
+				if (entry == null)
+					return false;
+				liveByteCount -= entry.length;
+				append(createRecord(RECORD_REMOVE, key, null));
+				compactIfNecessary();
+				return true;
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Return true if this cache contains a key.
+	 * <p>
+	 * This does not affect the hit rate or the least-recently-used order.
+	 */
+	public boolean containsKey(String key) throws IOException {
+		Objects.requireNonNull(key);
+		synchronized (monitor) {
+			FileLock lock = lockChannel.lock();
+			try {
+				refresh();
+				return index.containsKey(key);
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Return an object previously stored by calling
+	 * {@link #putObject(String, Object)}, or null if this cache doesn't
+	 * contain that key.
+	 */
+	public Object getObject(String key)
+			throws IOException, ClassNotFoundException {
+		byte[] data = get(key);
+		if (data == null)
+			return null;
+		try (ObjectInputStream objIn = new ObjectInputStream(
+				new GZIPInputStream(new ByteArrayInputStream(data)))) {
+			return objIn.readObject();
+		}
+	}
+
+	/**
+	 * Store a Serializable object in this cache using a GZIP compressed
+	 * ObjectOutputStream, like {@link CacheManager#cache(Object, File)}.
+	 *
+	 * @return false if this object is too large to be stored within the byte
+	 *         budget.
+	 */
+	public boolean putObject(String key, Object object) throws IOException {
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		try (ObjectOutputStream objOut = new ObjectOutputStream(
+				new GZIPOutputStream(byteOut))) {
+			objOut.writeObject(object);
+		}
+		return put(key, byteOut.toByteArray());
+	}
+
+	/**
+	 * Return the number of entries in this cache.
+	 */
+	public int size() throws IOException {
+		synchronized (monitor) {
+			FileLock lock = lockChannel.lock();
+			try {
+				refresh();
+				return index.size();
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Return the number of bytes the entries in this cache occupy. This is
+	 * never more than {@link #getMaxByteCount()}.
+	 */
+	public long getByteCount() throws IOException {
+		synchronized (monitor) {
+			FileLock lock = lockChannel.lock();
+			try {
+				refresh();
+				return liveByteCount;
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Remove every entry from this cache.
+	 */
+	public void clear() throws IOException {
+		synchronized (monitor) {
+			FileLock lock = lockChannel.lock();
+			try {
+				refresh();
+				index.clear();
+				liveByteCount = 0;
+				compact();
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Return the number of times {@link #get(String)} returned a value.
+	 */
+	public long getHitCount() {
+		synchronized (monitor) {
+			return hitCount;
+		}
+	}
+
+	/**
+	 * Return the number of times {@link #get(String)} returned null.
+	 */
+	public long getMissCount() {
+		synchronized (monitor) {
+			return missCount;
+		}
+	}
+
+	/**
+	 * Return the fraction of calls to {@link #get(String)} that returned a
+	 * value, or zero if it has never been called.
+	 */
+	public double getHitRate() {
+		synchronized (monitor) {
+			long total = hitCount + missCount;
+			return total == 0 ? 0 : ((double) hitCount) / ((double) total);
+		}
+	}
+
+	/**
+	 * Return the number of entries this DiskCache evicted to stay within its
+	 * byte budget.
+	 */
+	public long getEvictionCount() {
+		synchronized (monitor) {
+			return evictionCount;
+		}
+	}
+
+	/**
+	 * Return the number of bytes this DiskCache evicted to stay within its
+	 * byte budget.
+	 */
+	public long getEvictedByteCount() {
+		synchronized (monitor) {
+			return evictedByteCount;
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (monitor) {
+			return "DiskCache[ dir=\"" + dir.getAbsolutePath() + "\", size="
+					+ index.size() + ", bytes=" + liveByteCount + "/"
+					+ maxByteCount + ", hitRate=" + getHitRate()
+					+ ", evictedBytes=" + evictedByteCount + "]";
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (monitor) {
+			if (closed)
+				return;
+			closed = true;
+			try {
+				if (segment != null)
+					segment.close();
+			} finally {
+				segment = null;
+				lockChannel.close();
+			}
+		}
+	}
+
+	/**
+	 * Make sure the segment file is open and the index includes every record
+	 * in it. This must be called while holding the FileLock.
+	 */
+	private void refresh() throws IOException {
+		if (closed)
+			throw new IOException("this DiskCache has been closed");
+
+		if (segment != null) {
+			Object key = getFileKey();
+			if (key == null || !key.equals(segmentKey)) {
+				// another process replaced the segment file
+				segment.close();
+				segment = null;
+			}
+		}
+		if (segment == null) {
+			segment = new RandomAccessFile(segmentFile, "rw");
+			segmentKey = getFileKey();
+		}
+
+		long fileGeneration = readHeader();
+		long length = segment.length();
+		if (fileGeneration != generation || length < segmentLength) {
+			generation = fileGeneration;
+			index.clear();
+			liveByteCount = 0;
+			scan(HEADER_SIZE);
+		} else if (length > segmentLength) {
+			scan(segmentLength);
+		}
+	}
+
+	/**
+	 * Return an object that uniquely identifies the segment file, or null if
+	 * the file doesn't exist or the file system doesn't support file keys.
+	 */
+	private Object getFileKey() throws IOException {
+		if (!segmentFile.exists())
+			return null;
+		return Files.readAttributes(segmentFile.toPath(),
+				BasicFileAttributes.class).fileKey();
+	}
+
+	/**
+	 * Return the generation of the segment file, creating a new segment file
+	 * if it is empty or unreadable.
+	 */
+	private long readHeader() throws IOException {
+		if (segment.length() >= HEADER_SIZE) {
+			segment.seek(0);
+			int magic = segment.readInt();
+			int version = segment.readInt();
+			long fileGeneration = segment.readLong();
+			if (magic == MAGIC && version == VERSION)
+				return fileGeneration;
+		}
+		segment.setLength(0);
+		segment.seek(0);
+		long newGeneration = createGeneration();
+		segment.writeInt(MAGIC);
+		segment.writeInt(VERSION);
+		segment.writeLong(newGeneration);
+		return newGeneration;
+	}
+
+	private long createGeneration() {
+		long g;
+		do {
+			g = random.nextLong();
+		} while (g == generation);
+		return g;
+	}
+
+	/**
+	 * Read every record from a position in the segment file to the end of the
+	 * file. If an incomplete or corrupt record is found then the file is
+	 * truncated at that record.
+	 */
+	private void scan(long position) throws IOException {
+		long length = segment.length();
+		segment.getChannel().position(position);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(segment.getChannel())));
+		while (position < length) {
+			long remaining = length - position;
+			int recordLength = peekRecordLength(in, remaining);
+			Object[] keyAndValue = recordLength < 0 ? null
+					: readRecord(in, recordLength);
+			if (keyAndValue == null) {
+				segment.setLength(position);
+				break;
+			}
+			String key = (String) keyAndValue[0];
+			Entry oldEntry;
+			if (keyAndValue[1] == null) {
+				oldEntry = index.remove(key);
+			} else {
+				oldEntry = index.put(key, new Entry(position, recordLength));
+				liveByteCount += recordLength;
+			}
+			if (oldEntry != null)
+				liveByteCount -= oldEntry.length;
+			position += recordLength;
+		}
+		segmentLength = position;
+	}
+
+	/**
+	 * Return the length of the next record without consuming it, or -1 if the
+	 * record is malformed or incomplete.
+	 */
+	private static int peekRecordLength(DataInputStream in, long remaining)
+			throws IOException {
+		in.mark(MAX_KEY_LENGTH + 16);
+		try {
+			int type = in.readByte();
+			int keyLength = in.readInt();
+			if (keyLength < 0 || keyLength > MAX_KEY_LENGTH)
+				return -1;
+			long recordLength = 1 + 4 + keyLength + 4;
+			if (type == RECORD_PUT) {
+				if (remaining < 1 + 4 + keyLength + 4)
+					return -1;
+				in.skipBytes(keyLength);
+				int valueLength = in.readInt();
+				if (valueLength < 0)
+					return -1;
+				recordLength += 4 + valueLength;
+			} else if (type != RECORD_REMOVE) {
+				return -1;
+			}
+			if (recordLength > remaining || recordLength > Integer.MAX_VALUE)
+				return -1;
+			return (int) recordLength;
+		} catch (EOFException e) {
+			return -1;
+		} finally {
+			in.reset();
+		}
+	}
+
+	/**
+	 * Read a record and verify its checksum.
+	 *
+	 * @return the key and value of the record (where a null value indicates
+	 *         the key was removed), or null if the record is corrupt.
+	 */
+	private static Object[] readRecord(DataInputStream in, int recordLength)
+			throws IOException {
+		byte[] record = new byte[recordLength];
+		try {
+			in.readFully(record);
+		} catch (EOFException e) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record, 0, record.length - 4);
+		DataInputStream recordIn = new DataInputStream(
+				new ByteArrayInputStream(record));
+		int type = recordIn.readByte();
+		int keyLength = recordIn.readInt();
+		if (keyLength < 0 || keyLength > record.length - 9)
+			return null;
+		String key = new String(record, 5, keyLength, StandardCharsets.UTF_8);
+		recordIn.skipBytes(keyLength);
+		byte[] value = null;
+		if (type == RECORD_PUT) {
+			int valueLength = recordIn.readInt();
+			if (valueLength != record.length - 13 - keyLength)
+				return null;
+			value = new byte[valueLength];
+			recordIn.readFully(value);
+		} else if (type != RECORD_REMOVE) {
+			return null;
+		}
+		if (recordIn.readInt() != (int) crc.getValue())
+			return null;
+		return new Object[] { key, value };
+	}
+
+	private static byte[] createRecord(byte type, String key, byte[] value)
+			throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		if (keyBytes.length > MAX_KEY_LENGTH)
+			throw new IllegalArgumentException(
+					"the key is too long (" + keyBytes.length + " bytes)");
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream(
+				13 + keyBytes.length + (value == null ? 0 : value.length));
+		DataOutputStream dataOut = new DataOutputStream(byteOut);
+		dataOut.writeByte(type);
+		dataOut.writeInt(keyBytes.length);
+		dataOut.write(keyBytes);
+		if (value != null) {
+			dataOut.writeInt(value.length);
+			dataOut.write(value);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(byteOut.toByteArray());
+		dataOut.writeInt((int) crc.getValue());
+		return byteOut.toByteArray();
+	}
+
+	/**
+	 * Append a record to the segment file and return its offset.
+	 */
+	private long append(byte[] record) throws IOException {
+		long offset = segmentLength;
+		segment.seek(offset);
+		segment.write(record);
+		segmentLength += record.length;
+		return offset;
+	}
+
+	/**
+	 * Evict entries until this cache is within its byte budget.
+	 */
+	private void evict() throws IOException {
+		while (liveByteCount > maxByteCount && !index.isEmpty()) {
+			String key = null;
+			Entry entry = null;
+			Iterator<Map.Entry<String, Entry>> iter = index.entrySet()
+					.iterator();
+			if (evictionPolicy == EvictionPolicy.LEAST_RECENTLY_USED) {
+				Map.Entry<String, Entry> e = iter.next();
+				key = e.getKey();
+				entry = e.getValue();
+			} else {
+				while (iter.hasNext()) {
+					Map.Entry<String, Entry> e = iter.next();
+					if (entry == null || e.getValue().length > entry.length) {
+						key = e.getKey();
+						entry = e.getValue();
+					}
+				}
+			}
+			index.remove(key);
+			liveByteCount -= entry.length;
+			evictionCount++;
+			evictedByteCount += entry.length;
+			append(createRecord(RECORD_REMOVE, key, null));
+		}
+		compactIfNecessary();
+	}
+
+	private void compactIfNecessary() throws IOException {
+		long obsoleteByteCount = segmentLength - HEADER_SIZE - liveByteCount;
+		if (obsoleteByteCount > MIN_COMPACTION_SIZE
+				&& obsoleteByteCount > liveByteCount)
+			compact();
+	}
+
+	/**
+	 * Write every live record to a new segment file that replaces the current
+	 * segment file.
+	 */
+	private void compact() throws IOException {
+		long newGeneration = createGeneration();
+		LinkedHashMap<String, Entry> newIndex = new LinkedHashMap<>(16, .75f,
+				true);
+		try (RandomAccessFile out = new RandomAccessFile(compactionFile,
+				"rw")) {
+			out.setLength(0);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(newGeneration);
+			long position = HEADER_SIZE;
+			byte[] buffer = new byte[4096];
+			// iterating over the entry set preserves the access order
+			for (Map.Entry<String, Entry> e : index.entrySet()) {
+				Entry entry = e.getValue();
+				if (buffer.length < entry.length)
+					buffer = new byte[entry.length];
+				segment.seek(entry.offset);
+				segment.readFully(buffer, 0, entry.length);
+				out.write(buffer, 0, entry.length);
+				newIndex.put(e.getKey(), new Entry(position, entry.length));
+				position += entry.length;
+			}
+			out.getChannel().force(true);
+		}
+
+		segment.close();
+		segment = null;
+		Files.move(compactionFile.toPath(), segmentFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		index.clear();
+		index.putAll(newIndex);
+		segment = new RandomAccessFile(segmentFile, "rw");
+		segmentKey = getFileKey();
+		generation = newGeneration;
+		segmentLength = segment.length();
+	}
+}
@@ -136,10 +136,12 @@ public class SessionLog {
 
 		@Override
 		public void flush() {
+			fileLogger.flush();
 		}
 
 		@Override
 		public void close() {
+			fileLogger.flush();
 		}
 
 	}
@@ -40,6 +40,13 @@ public class ImmutableShape implements Shape, Serializable {
 		this.shape = shape;
 	}
 
+	/**
+	 * Return a copy of the shape this object delegates to.
+	 */
+	public Shape getShape() {
+		return ShapeUtils.clone(shape);
+	}
+
 	@Override
 	public Rectangle getBounds() {
 		return shape.getBounds();
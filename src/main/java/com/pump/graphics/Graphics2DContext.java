@@ -412,6 +412,14 @@ public class Graphics2DContext implements Serializable {
 		xorColor = null;
 	}
 
+	/**
+	 * Return the color passed to {@link #setXORMode(Color)}, or null if this
+	 * context is in paint mode.
+	 */
+	public Color getXORColor() {
+		return xorColor;
+	}
+
 	/**
 	 * @see java.awt.Graphics2D#setXORMode(Color)
 	 */
@@ -506,6 +514,26 @@ public class Graphics2DContext implements Serializable {
 		return new ImmutableShape(clip);
 	}
 
+	/**
+	 * Assign the clipping.
+	 * 
+	 * @param newClip
+	 *            the new clipping, or null to remove clipping.
+	 * @param withTransform
+	 *            when true then this is analogous to
+	 *            {@link Graphics2D#setClip(Shape)}, and the argument is
+	 *            relative to the current AffineTransform. When this is false
+	 *            then the argument is independent of the current transform
+	 *            (see {@link #getClip(boolean)}).
+	 */
+	public void setClip(Shape newClip, boolean withTransform) {
+		if (withTransform) {
+			setClip(newClip);
+		} else {
+			clip = ShapeUtils.clone(newClip);
+		}
+	}
+
 	/**
 	 * @see java.awt.Graphics2D#setClip(Shape)
 	 */
@@ -44,6 +44,9 @@ public class AttributedCharacterIteratorOperation extends Operation {
 	protected static final String PROPERTY_X = "x";
 	protected static final String PROPERTY_Y = "y";
 
+	AttributedCharacterIteratorOperation() {
+	}
+
 	public AttributedCharacterIteratorOperation(Graphics2DContext context,
 			AttributedCharacterIterator iter, float x, float y) {
 		super(context);
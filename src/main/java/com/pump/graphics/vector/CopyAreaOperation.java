@@ -30,6 +30,9 @@ public class CopyAreaOperation extends Operation {
 	protected static final String PROPERTY_DX = "dx";
 	protected static final String PROPERTY_DY = "dy";
 
+	CopyAreaOperation() {
+	}
+
 	public CopyAreaOperation(Graphics2DContext context, int x, int y, int width,
 			int height, int dx, int dy) {
 		super(context);
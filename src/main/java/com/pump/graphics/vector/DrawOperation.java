@@ -29,6 +29,9 @@ import com.pump.graphics.Graphics2DContext;
 public class DrawOperation extends ShapeOperation {
 	private static final long serialVersionUID = 1L;
 
+	DrawOperation() {
+	}
+
 	public DrawOperation(Graphics2DContext context, Shape shape) {
 		super(context, shape);
 	}
@@ -31,6 +31,9 @@ import com.pump.graphics.Graphics2DContext;
 public class FillOperation extends ShapeOperation {
 	private static final long serialVersionUID = 1L;
 
+	FillOperation() {
+	}
+
 	public FillOperation(Graphics2DContext context, Shape shape) {
 		super(context, shape);
 	}
@@ -33,6 +33,9 @@ public class GlyphVectorOperation extends Operation {
 	protected static final String PROPERTY_X = "x";
 	protected static final String PROPERTY_Y = "y";
 
+	GlyphVectorOperation() {
+	}
+
 	public GlyphVectorOperation(Graphics2DContext context, GlyphVector gv,
 			float x, float y) {
 		super(context);
@@ -44,6 +44,9 @@ public class ImageOperation extends Operation {
 	protected static final String PROPERTY_DEST_RECT = "destRect";
 	protected static final String PROPERTY_BKGND_COLOR = "backgroundColor";
 
+	ImageOperation() {
+	}
+
 	/**
 	 * Create an ImageOperation using the source and dest rectangles.
 	 */
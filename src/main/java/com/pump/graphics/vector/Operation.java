@@ -60,6 +60,13 @@ public abstract class Operation implements Serializable {
 	 */
 	protected Map<String, Object> clientProperties = new HashMap<>();
 
+	/**
+	 * This constructor is used by the {@link VectorImageReader}, which
+	 * populates the context and properties directly.
+	 */
+	Operation() {
+	}
+
 	protected Operation(Graphics2DContext context) {
 		setContext(context);
 	}
@@ -0,0 +1,678 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.graphics.vector;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.pump.util.list.AddElementsEvent;
+import com.pump.util.list.ChangeElementEvent;
+import com.pump.util.list.ListEvent;
+import com.pump.util.list.ListListener;
+import com.pump.util.list.ObservableList;
+import com.pump.util.list.RemoveElementsEvent;
+import com.pump.util.list.ReplaceElementsEvent;
+
+/**
+ * This is an R-tree of the bounds of every Operation in an ObservableList.
+ * <p>
+ * This listens to the list and updates itself incrementally. List events are
+ * queued and only applied (and the bounds of new operations are only
+ * calculated) the next time this index is queried, so recording a VectorImage
+ * doesn't pay for bounds it may never need.
+ * <p>
+ * Operations that return null bounds are tracked (so painting order is
+ * preserved) but are never returned by {@link #getOperations(Rectangle2D)}.
+ */
+class OperationIndex {
+
+	/**
+	 * The maximum number of children in a node.
+	 */
+	private static final int MAX_CHILDREN = 16;
+
+	/**
+	 * The minimum number of children in a node (other than the root).
+	 */
+	private static final int MIN_CHILDREN = 6;
+
+	/**
+	 * One Operation in the list. There is exactly one Entry for every element
+	 * in the list, even if the same Operation appears several times.
+	 */
+	static class Entry {
+		final Operation operation;
+		double minX, minY, maxX, maxY;
+		boolean hasBounds;
+
+		/**
+		 * True if this entry is in {@link OperationIndex#pendingEntries} and
+		 * has not been initialized yet.
+		 */
+		boolean isPending;
+
+		/**
+		 * The index of this entry in the list. This is only reliable when
+		 * {@link OperationIndex#indicesDirty} is false.
+		 */
+		int index;
+
+		/**
+		 * The leaf node containing this entry, or null if this entry isn't
+		 * in the tree.
+		 */
+		Node leaf;
+
+		Entry(Operation operation) {
+			this.operation = operation;
+		}
+	}
+
+	private static class Node {
+		Node parent;
+		final boolean isLeaf;
+		final Object[] children = new Object[MAX_CHILDREN + 1];
+		int size;
+		double minX, minY, maxX, maxY;
+
+		Node(boolean isLeaf) {
+			this.isLeaf = isLeaf;
+			minX = minY = Double.POSITIVE_INFINITY;
+			maxX = maxY = Double.NEGATIVE_INFINITY;
+		}
+
+		void add(Object child) {
+			children[size++] = child;
+			if (isLeaf) {
+				((Entry) child).leaf = this;
+			} else {
+				((Node) child).parent = this;
+			}
+		}
+
+		void remove(Object child) {
+			for (int a = 0; a < size; a++) {
+				if (children[a] == child) {
+					children[a] = children[size - 1];
+					children[--size] = null;
+					return;
+				}
+			}
+			throw new IllegalStateException();
+		}
+
+		void recalculateBounds() {
+			minX = minY = Double.POSITIVE_INFINITY;
+			maxX = maxY = Double.NEGATIVE_INFINITY;
+			for (int a = 0; a < size; a++) {
+				if (isLeaf) {
+					Entry e = (Entry) children[a];
+					include(e.minX, e.minY, e.maxX, e.maxY);
+				} else {
+					Node n = (Node) children[a];
+					include(n.minX, n.minY, n.maxX, n.maxY);
+				}
+			}
+		}
+
+		void include(double x0, double y0, double x1, double y1) {
+			minX = Math.min(minX, x0);
+			minY = Math.min(minY, y0);
+			maxX = Math.max(maxX, x1);
+			maxY = Math.max(maxY, y1);
+		}
+	}
+
+	private static final Comparator<Entry> INDEX_COMPARATOR = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry e1, Entry e2) {
+			return Integer.compare(e1.index, e2.index);
+		}
+	};
+
+	/**
+	 * A ListEvent and the order it was received in.
+	 */
+	private static class Delta {
+		final long id;
+		final ListEvent<Operation> event;
+
+		Delta(long id, ListEvent<Operation> event) {
+			this.id = id;
+			this.event = event;
+		}
+	}
+
+	/**
+	 * This only queues events. The list notifies it while holding its write
+	 * lock, so it must not acquire this index's monitor: a query holds that
+	 * monitor while it reads the list.
+	 */
+	private final ListListener<Operation> listListener = new ListListener<Operation>() {
+
+		@Override
+		public void elementsAdded(AddElementsEvent<Operation> event) {
+			queue(event);
+		}
+
+		@Override
+		public void elementsRemoved(RemoveElementsEvent<Operation> event) {
+			queue(event);
+		}
+
+		@Override
+		public void elementChanged(ChangeElementEvent<Operation> event) {
+			queue(event);
+		}
+
+		@Override
+		public void elementsReplaced(
+				ReplaceElementsEvent<Operation> event) {
+			queue(event);
+		}
+
+		private void queue(ListEvent<Operation> event) {
+			long id = eventCounter.incrementAndGet();
+			// if we're invalid then the next query takes a new snapshot
+			if (isValid)
+				pendingEvents.add(new Delta(id, event));
+		}
+	};
+
+	final ObservableList<Operation> operations;
+
+	private final AtomicLong eventCounter = new AtomicLong();
+	private final Queue<Delta> pendingEvents = new ConcurrentLinkedQueue<>();
+	private final List<Entry> entries = new ArrayList<>();
+	private final List<Entry> pendingEntries = new ArrayList<>();
+	private Node root = new Node(true);
+	private int copyAreaCount = 0;
+	private boolean indicesDirty = false;
+	private volatile boolean isValid = false;
+
+	/**
+	 * The id of the last event that is reflected in {@link #entries}.
+	 */
+	private long snapshotId;
+
+	OperationIndex(ObservableList<Operation> operations) {
+		this.operations = operations;
+		operations.addListListener(listListener, false);
+	}
+
+	/**
+	 * Stop listening to the list.
+	 */
+	void dispose() {
+		operations.removeListListener(listListener);
+		pendingEvents.clear();
+	}
+
+	/**
+	 * Return the union of the bounds of all operations, or null if no
+	 * operation has bounds.
+	 */
+	synchronized Rectangle2D getBounds() {
+		validate();
+		if (root.size == 0)
+			return null;
+		return new Rectangle2D.Double(root.minX, root.minY,
+				root.maxX - root.minX, root.maxY - root.minY);
+	}
+
+	/**
+	 * Return true if any operation in the list is a
+	 * {@link CopyAreaOperation}. Such an operation reads pixels from outside
+	 * of its own bounds, so it is not safe to skip operations that are
+	 * outside the area being painted.
+	 */
+	synchronized boolean containsCopyArea() {
+		validate();
+		return copyAreaCount > 0;
+	}
+
+	/**
+	 * Return the operations whose bounds intersect a rectangle, in the order
+	 * they appear in the list.
+	 */
+	synchronized List<Operation> getOperations(Rectangle2D r) {
+		validate();
+		List<Entry> hits = new ArrayList<>();
+		if (root.size > 0)
+			search(root, r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY(),
+					hits);
+		if (indicesDirty) {
+			for (int a = 0; a < entries.size(); a++) {
+				entries.get(a).index = a;
+			}
+			indicesDirty = false;
+		}
+		Collections.sort(hits, INDEX_COMPARATOR);
+		List<Operation> returnValue = new ArrayList<>(hits.size());
+		for (Entry e : hits) {
+			returnValue.add(e.operation);
+		}
+		return returnValue;
+	}
+
+	private void search(Node node, double x0, double y0, double x1,
+			double y1, List<Entry> dest) {
+		for (int a = 0; a < node.size; a++) {
+			if (node.isLeaf) {
+				Entry e = (Entry) node.children[a];
+				if (intersects(e.minX, e.minY, e.maxX, e.maxY, x0, y0, x1, y1))
+					dest.add(e);
+			} else {
+				Node n = (Node) node.children[a];
+				if (intersects(n.minX, n.minY, n.maxX, n.maxY, x0, y0, x1, y1))
+					search(n, x0, y0, x1, y1, dest);
+			}
+		}
+	}
+
+	private static boolean intersects(double ax0, double ay0, double ax1,
+			double ay1, double bx0, double by0, double bx1, double by1) {
+		return ax0 <= bx1 && bx0 <= ax1 && ay0 <= by1 && by0 <= ay1;
+	}
+
+	/**
+	 * Rebuild this index if it is invalid, apply all queued events, and insert
+	 * all pending entries.
+	 */
+	private void validate() {
+		if (!isValid)
+			rebuild();
+		Delta delta;
+		while ((delta = pendingEvents.poll()) != null) {
+			if (delta.id <= snapshotId)
+				continue;
+			apply(delta.event);
+			if (!isValid)
+				rebuild();
+		}
+		if (!pendingEntries.isEmpty()) {
+			for (Entry e : pendingEntries) {
+				if (e.isPending) {
+					e.isPending = false;
+					if (initialize(e))
+						insert(e);
+				}
+			}
+			pendingEntries.clear();
+		}
+	}
+
+	/**
+	 * Rebuild the tree from a snapshot of the list.
+	 */
+	private void rebuild() {
+		// set this first so the listener queues every event that follows
+		// our snapshot
+		isValid = true;
+		// snapshot() holds the list's read lock, so it never observes a
+		// change whose event hasn't been delivered yet
+		List<Operation> snapshot;
+		long id;
+		do {
+			id = eventCounter.get();
+			snapshot = operations.snapshot();
+		} while (id != eventCounter.get());
+		snapshotId = id;
+
+		entries.clear();
+		pendingEntries.clear();
+		copyAreaCount = 0;
+		for (Operation op : snapshot) {
+			Entry e = new Entry(op);
+			e.index = entries.size();
+			entries.add(e);
+		}
+		indicesDirty = false;
+		List<Entry> boundedEntries = new ArrayList<>(entries.size());
+		for (Entry e : entries) {
+			if (initialize(e))
+				boundedEntries.add(e);
+		}
+		root = bulkLoad(boundedEntries);
+	}
+
+	private void apply(ListEvent<Operation> event) {
+		if (event instanceof AddElementsEvent) {
+			AddElementsEvent<Operation> addEvent = (AddElementsEvent<Operation>) event;
+			int index = addEvent.getIndex();
+			List<Operation> newElements = addEvent.getNewElements();
+			List<Entry> newEntries = new ArrayList<>(newElements.size());
+			for (Operation op : newElements) {
+				Entry e = new Entry(op);
+				e.index = index + newEntries.size();
+				e.isPending = true;
+				newEntries.add(e);
+			}
+			if (index != entries.size())
+				indicesDirty = true;
+			entries.addAll(index, newEntries);
+			pendingEntries.addAll(newEntries);
+		} else if (event instanceof RemoveElementsEvent) {
+			List<Integer> indices = new ArrayList<>(
+					((RemoveElementsEvent<Operation>) event)
+							.getRemovedElements().keySet());
+			for (int a = indices.size() - 1; a >= 0; a--) {
+				int index = indices.get(a);
+				if (index != entries.size() - 1)
+					indicesDirty = true;
+				removeEntry(entries.remove(index));
+			}
+		} else if (event instanceof ChangeElementEvent) {
+			ChangeElementEvent<Operation> changeEvent = (ChangeElementEvent<Operation>) event;
+			int index = changeEvent.getIndex();
+			Entry e = new Entry(changeEvent.getNewElement());
+			e.index = index;
+			e.isPending = true;
+			removeEntry(entries.set(index, e));
+			pendingEntries.add(e);
+		} else {
+			isValid = false;
+		}
+	}
+
+	/**
+	 * Calculate the bounds of an entry.
+	 * 
+	 * @return true if the entry has bounds and should be added to the tree.
+	 */
+	private boolean initialize(Entry e) {
+		if (e.operation instanceof CopyAreaOperation)
+			copyAreaCount++;
+		Rectangle2D r = e.operation.getBounds();
+		e.hasBounds = r != null;
+		if (e.hasBounds) {
+			e.minX = r.getMinX();
+			e.minY = r.getMinY();
+			e.maxX = r.getMaxX();
+			e.maxY = r.getMaxY();
+		}
+		return e.hasBounds;
+	}
+
+	/**
+	 * Build a tree using the sort-tile-recursive algorithm.
+	 */
+	private Node bulkLoad(List<Entry> list) {
+		List<Object> level = new ArrayList<Object>(list);
+		boolean isLeaf = true;
+		do {
+			level = packLevel(level, isLeaf);
+			isLeaf = false;
+		} while (level.size() > 1);
+		Node newRoot = level.isEmpty() ? new Node(true) : (Node) level.get(0);
+		newRoot.parent = null;
+		return newRoot;
+	}
+
+	private List<Object> packLevel(List<Object> children, final boolean isLeaf) {
+		List<Object> nodes = new ArrayList<>();
+		int nodeCount = (children.size() + MAX_CHILDREN - 1) / MAX_CHILDREN;
+		int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+		int sliceSize = sliceCount * MAX_CHILDREN;
+
+		Object[] array = children.toArray();
+		Arrays.sort(array, new Comparator<Object>() {
+			@Override
+			public int compare(Object o1, Object o2) {
+				return Double.compare(getCenterX(o1), getCenterX(o2));
+			}
+		});
+		for (int start = 0; start < array.length; start += sliceSize) {
+			int end = Math.min(array.length, start + sliceSize);
+			Arrays.sort(array, start, end, new Comparator<Object>() {
+				@Override
+				public int compare(Object o1, Object o2) {
+					return Double.compare(getCenterY(o1), getCenterY(o2));
+				}
+			});
+			for (int a = start; a < end; a += MAX_CHILDREN) {
+				Node node = new Node(isLeaf);
+				for (int b = a; b < Math.min(end, a + MAX_CHILDREN); b++) {
+					node.add(array[b]);
+				}
+				node.recalculateBounds();
+				nodes.add(node);
+			}
+		}
+		return nodes;
+	}
+
+	private static double getCenterX(Object obj) {
+		if (obj instanceof Entry) {
+			Entry e = (Entry) obj;
+			return e.minX + e.maxX;
+		}
+		Node n = (Node) obj;
+		return n.minX + n.maxX;
+	}
+
+	private static double getCenterY(Object obj) {
+		if (obj instanceof Entry) {
+			Entry e = (Entry) obj;
+			return e.minY + e.maxY;
+		}
+		Node n = (Node) obj;
+		return n.minY + n.maxY;
+	}
+
+	private void insert(Entry e) {
+		Node leaf = root;
+		while (!leaf.isLeaf) {
+			leaf = chooseChild(leaf, e);
+		}
+		leaf.add(e);
+		leaf.include(e.minX, e.minY, e.maxX, e.maxY);
+		handleOverflow(leaf);
+	}
+
+	/**
+	 * Return the child that needs the least enlargement to include an entry.
+	 */
+	private Node chooseChild(Node node, Entry e) {
+		Node best = null;
+		double bestEnlargement = 0;
+		double bestArea = 0;
+		for (int a = 0; a < node.size; a++) {
+			Node child = (Node) node.children[a];
+			double area = getArea(child.minX, child.minY, child.maxX,
+					child.maxY);
+			double enlargement = getArea(Math.min(child.minX, e.minX),
+					Math.min(child.minY, e.minY),
+					Math.max(child.maxX, e.maxX),
+					Math.max(child.maxY, e.maxY)) - area;
+			if (best == null || enlargement < bestEnlargement
+					|| (enlargement == bestEnlargement && area < bestArea)) {
+				best = child;
+				bestEnlargement = enlargement;
+				bestArea = area;
+			}
+		}
+		return best;
+	}
+
+	private static double getArea(double x0, double y0, double x1,
+			double y1) {
+		return (x1 - x0) * (y1 - y0);
+	}
+
+	/**
+	 * Split a node if it has too many children, and update the bounds of its
+	 * ancestors.
+	 */
+	private void handleOverflow(Node node) {
+		while (node != null) {
+			Node parent = node.parent;
+			if (node.size > MAX_CHILDREN) {
+				Node sibling = split(node);
+				if (parent == null) {
+					root = new Node(false);
+					root.add(node);
+					root.add(sibling);
+					root.recalculateBounds();
+				} else {
+					parent.add(sibling);
+				}
+			}
+			if (parent != null)
+				parent.recalculateBounds();
+			node = parent;
+		}
+	}
+
+	/**
+	 * Split a node using Guttman's quadratic split. This leaves some of the
+	 * children in the original node and returns a new node with the rest.
+	 */
+	private Node split(Node node) {
+		Object[] children = Arrays.copyOf(node.children, node.size);
+		int seed1 = 0, seed2 = 1;
+		double worstWaste = Double.NEGATIVE_INFINITY;
+		for (int a = 0; a < children.length; a++) {
+			for (int b = a + 1; b < children.length; b++) {
+				double waste = getArea(
+						Math.min(getMinX(children[a]), getMinX(children[b])),
+						Math.min(getMinY(children[a]), getMinY(children[b])),
+						Math.max(getMaxX(children[a]), getMaxX(children[b])),
+						Math.max(getMaxY(children[a]), getMaxY(children[b])))
+						- getArea(children[a]) - getArea(children[b]);
+				if (waste > worstWaste) {
+					worstWaste = waste;
+					seed1 = a;
+					seed2 = b;
+				}
+			}
+		}
+
+		Arrays.fill(node.children, null);
+		node.size = 0;
+		Node sibling = new Node(node.isLeaf);
+		node.add(children[seed1]);
+		node.recalculateBounds();
+		sibling.add(children[seed2]);
+		sibling.recalculateBounds();
+
+		int remaining = children.length - 2;
+		for (int a = 0; a < children.length; a++) {
+			if (a == seed1 || a == seed2)
+				continue;
+			Object child = children[a];
+			Node target;
+			if (node.size + remaining == MIN_CHILDREN) {
+				target = node;
+			} else if (sibling.size + remaining == MIN_CHILDREN) {
+				target = sibling;
+			} else {
+				double e1 = getEnlargement(node, child);
+				double e2 = getEnlargement(sibling, child);
+				target = e1 < e2 || (e1 == e2 && node.size <= sibling.size)
+						? node
+						: sibling;
+			}
+			target.add(child);
+			target.include(getMinX(child), getMinY(child), getMaxX(child),
+					getMaxY(child));
+			remaining--;
+		}
+		return sibling;
+	}
+
+	private static double getEnlargement(Node node, Object child) {
+		return getArea(Math.min(node.minX, getMinX(child)),
+				Math.min(node.minY, getMinY(child)),
+				Math.max(node.maxX, getMaxX(child)),
+				Math.max(node.maxY, getMaxY(child)))
+				- getArea(node.minX, node.minY, node.maxX, node.maxY);
+	}
+
+	private static double getArea(Object obj) {
+		return getArea(getMinX(obj), getMinY(obj), getMaxX(obj),
+				getMaxY(obj));
+	}
+
+	private static double getMinX(Object obj) {
+		return obj instanceof Entry ? ((Entry) obj).minX : ((Node) obj).minX;
+	}
+
+	private static double getMinY(Object obj) {
+		return obj instanceof Entry ? ((Entry) obj).minY : ((Node) obj).minY;
+	}
+
+	private static double getMaxX(Object obj) {
+		return obj instanceof Entry ? ((Entry) obj).maxX : ((Node) obj).maxX;
+	}
+
+	private static double getMaxY(Object obj) {
+		return obj instanceof Entry ? ((Entry) obj).maxY : ((Node) obj).maxY;
+	}
+
+	/**
+	 * Remove an entry that is no longer in the list.
+	 */
+	private void removeEntry(Entry e) {
+		if (e.isPending) {
+			e.isPending = false;
+			return;
+		}
+		if (e.operation instanceof CopyAreaOperation)
+			copyAreaCount--;
+		if (e.leaf == null)
+			return;
+
+		// Guttman's CondenseTree: remove underfull nodes and reinsert their
+		// entries.
+		Node node = e.leaf;
+		node.remove(e);
+		e.leaf = null;
+		List<Entry> orphans = new ArrayList<>();
+		while (node.parent != null) {
+			Node parent = node.parent;
+			if (node.size < MIN_CHILDREN) {
+				parent.remove(node);
+				collectEntries(node, orphans);
+			} else {
+				node.recalculateBounds();
+			}
+			node = parent;
+		}
+		root.recalculateBounds();
+		while (!root.isLeaf && root.size == 1) {
+			root = (Node) root.children[0];
+			root.parent = null;
+		}
+		if (!root.isLeaf && root.size == 0)
+			root = new Node(true);
+		for (Entry orphan : orphans) {
+			insert(orphan);
+		}
+	}
+
+	private void collectEntries(Node node, List<Entry> dest) {
+		for (int a = 0; a < node.size; a++) {
+			if (node.isLeaf) {
+				dest.add((Entry) node.children[a]);
+			} else {
+				collectEntries((Node) node.children[a], dest);
+			}
+		}
+	}
+}
@@ -147,6 +147,9 @@ public class RenderableImageOperation extends Operation {
 	protected static final String PROPERTY_IMAGE = "image";
 	protected static final String PROPERTY_TRANSFORM = "transform";
 
+	RenderableImageOperation() {
+	}
+
 	public RenderableImageOperation(Graphics2DContext context,
 			RenderableImage img, AffineTransform tx) {
 		super(context);
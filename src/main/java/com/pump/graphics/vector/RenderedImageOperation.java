@@ -46,6 +46,9 @@ public class RenderedImageOperation extends Operation {
 	protected static final String PROPERTY_IMAGE = "image";
 	protected static final String PROPERTY_TRANSFORM = "transform";
 
+	RenderedImageOperation() {
+	}
+
 	public RenderedImageOperation(Graphics2DContext context, RenderedImage img,
 			AffineTransform tx) {
 		super(context);
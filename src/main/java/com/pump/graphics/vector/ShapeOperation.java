@@ -29,6 +29,9 @@ public abstract class ShapeOperation extends Operation {
 
 	protected static final String PROPERTY_SHAPE = "shape";
 
+	ShapeOperation() {
+	}
+
 	protected ShapeOperation(Graphics2DContext context, Shape shape) {
 		super(context);
 		setShape(shape);
@@ -33,6 +33,9 @@ public class StringOperation extends Operation {
 	protected static final String PROPERTY_Y = "y";
 	protected static final String PROPERTY_STRING = "string";
 
+	StringOperation() {
+	}
+
 	public StringOperation(Graphics2DContext context, String str, float x,
 			float y) {
 		super(context);
@@ -0,0 +1,396 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ *
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ *
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.graphics.vector;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.pump.image.pixel.PixelIterator;
+import com.pump.thread.DaemonThreadFactory;
+
+/**
+ * This rasterizes a VectorImage by splitting it into tiles and painting each
+ * tile on a pool of worker threads.
+ * <p>
+ * Each tile is painted with its own translated and clipped Graphics2D, so the
+ * VectorImage only replays the operations that intersect that tile. The
+ * result is pixel-identical to painting the whole image at once.
+ * <p>
+ * Some Java2D paints (such as the GradientPaint) and images drawn with a
+ * scaling transform accumulate their rounding from the edge of the clip, so
+ * they are not safe to split into tiles. If the VectorImage contains an
+ * operation like that then it is painted in a single pass instead.
+ * <p>
+ * You can either call {@link #render()} to create one BufferedImage, or call
+ * {@link #createPixelIterator()} to render one row of tiles at a time. (The
+ * latter is useful to pass very large images directly to an encoder without
+ * ever storing the entire raster in memory.)
+ */
+public class TiledVectorImageRenderer implements PixelIterator.Source<int[]> {
+
+	/**
+	 * The pool all renderers share. Each render only submits as many tasks
+	 * as its thread count, and idle threads expire, so this doesn't need a
+	 * fixed size.
+	 */
+	private static final ExecutorService EXECUTOR = Executors
+			.newCachedThreadPool(new DaemonThreadFactory(
+					"TiledVectorImageRenderer"));
+
+	/**
+	 * This iterates over the rows of the rendered image. The next row of
+	 * tiles is rendered in the background while the current row is read.
+	 */
+	class BandIterator implements PixelIterator<int[]> {
+		final int bandTileSize;
+		Band currentBand, nextBand;
+		int y = 0;
+		boolean isClosed = false;
+
+		BandIterator() {
+			// if we can't use tiles then the whole image is one band
+			bandTileSize = isTileable() ? tileSize : Math.max(width, height);
+			currentBand = new Band(0, bandTileSize);
+			nextBand = currentBand.y + currentBand.height < height
+					? new Band(currentBand.height, bandTileSize)
+					: null;
+		}
+
+		@Override
+		public int getType() {
+			return BufferedImage.TYPE_INT_ARGB;
+		}
+
+		@Override
+		public boolean isDone() {
+			return y >= height;
+		}
+
+		@Override
+		public boolean isTopDown() {
+			return true;
+		}
+
+		@Override
+		public int getWidth() {
+			return width;
+		}
+
+		@Override
+		public int getHeight() {
+			return height;
+		}
+
+		@Override
+		public void skip() {
+			next(null, 0);
+		}
+
+		@Override
+		public void next(int[] dest, int offset) {
+			if (isClosed)
+				throw new ClosedException();
+
+			if (y == currentBand.y + currentBand.height) {
+				currentBand = nextBand;
+				int nextY = currentBand.y + currentBand.height;
+				nextBand = nextY < height ? new Band(nextY, bandTileSize) : null;
+			}
+
+			if (dest != null) {
+				int[] data = currentBand.getData();
+				System.arraycopy(data, (y - currentBand.y) * width, dest,
+						offset, width);
+			}
+			y++;
+
+			if (isDone())
+				close();
+		}
+
+		@Override
+		public void close() {
+			if (!isClosed) {
+				isClosed = true;
+				currentBand.cancel();
+				if (nextBand != null)
+					nextBand.cancel();
+			}
+		}
+	}
+
+	/**
+	 * A row of tiles that is being rendered.
+	 */
+	class Band {
+		final int y, height;
+		final BufferedImage image;
+		final List<Future<?>> tiles;
+
+		Band(int y, int size) {
+			this.y = y;
+			this.height = Math.min(size,
+					TiledVectorImageRenderer.this.height - y);
+			image = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+			tiles = paintTiles(image, y, size);
+		}
+
+		void cancel() {
+			for (Future<?> future : tiles) {
+				future.cancel(true);
+			}
+		}
+
+		int[] getData() {
+			waitFor(tiles);
+			return ((DataBufferInt) image.getRaster().getDataBuffer())
+					.getData();
+		}
+	}
+
+	protected final VectorImage image;
+	protected final double scale;
+	protected final Rectangle pixelBounds;
+	protected final int width, height;
+
+	private int tileSize = 256;
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Create a renderer that paints a VectorImage at its original size.
+	 */
+	public TiledVectorImageRenderer(VectorImage image) {
+		this(image, 1);
+	}
+
+	/**
+	 * Create a renderer that paints a VectorImage at a given scale.
+	 *
+	 * @param image
+	 *            the image to render.
+	 * @param scale
+	 *            the scaling factor to render at. For example, to render a
+	 *            drawing designed at 72 DPI at 300 DPI this should be
+	 *            (300.0 / 72.0).
+	 */
+	public TiledVectorImageRenderer(VectorImage image, double scale) {
+		Objects.requireNonNull(image);
+		if (!(scale > 0))
+			throw new IllegalArgumentException(
+					"scale (" + scale + ") must be greater than zero");
+		Rectangle2D bounds = image.getBounds();
+		if (bounds == null)
+			throw new IllegalArgumentException(
+					"this image does not have any bounds");
+		this.image = image;
+		this.scale = scale;
+		pixelBounds = new Rectangle2D.Double(bounds.getX() * scale,
+				bounds.getY() * scale, bounds.getWidth() * scale,
+				bounds.getHeight() * scale).getBounds();
+		width = pixelBounds.width;
+		height = pixelBounds.height;
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("this image is empty ("
+					+ width + "x" + height + ")");
+	}
+
+	/**
+	 * Return the width and height of each tile.
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * Assign the width and height of each tile.
+	 */
+	public void setTileSize(int tileSize) {
+		if (tileSize <= 0)
+			throw new IllegalArgumentException(
+					"tileSize (" + tileSize + ") must be greater than zero");
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * Return the number of threads used to paint tiles.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Assign the number of threads used to paint tiles. By default this is
+	 * the number of available processors.
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount <= 0)
+			throw new IllegalArgumentException("threadCount (" + threadCount
+					+ ") must be greater than zero");
+		this.threadCount = threadCount;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Render the entire image.
+	 */
+	public BufferedImage render() {
+		BufferedImage bi = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		int size = isTileable() ? tileSize : Math.max(width, height);
+		List<Future<?>> futures = paintTiles(bi, 0, size);
+		try {
+			waitFor(futures);
+		} finally {
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return bi;
+	}
+
+	/**
+	 * Create a PixelIterator that renders one row of tiles at a time. At most
+	 * two rows of tiles are stored in memory at once.
+	 */
+	@Override
+	public PixelIterator<int[]> createPixelIterator() {
+		return new BandIterator();
+	}
+
+	/**
+	 * Return true if every operation paints the same pixels no matter how
+	 * the image is split into tiles.
+	 */
+	private boolean isTileable() {
+		for (Operation op : image.getOperations()) {
+			if (!isTranslationInvariant(op))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return true if an operation paints the same pixels when it is painted
+	 * with an additional integer translation.
+	 */
+	private boolean isTranslationInvariant(Operation op) {
+		if (op instanceof RenderedImageOperation
+				|| op instanceof RenderableImageOperation)
+			return false;
+		if (op instanceof ImageOperation) {
+			ImageOperation imageOp = (ImageOperation) op;
+			if (!imageOp.getDestRect().getSize()
+					.equals(imageOp.getSourceRect().getSize()))
+				return false;
+			AffineTransform tx = AffineTransform.getScaleInstance(scale, scale);
+			tx.concatenate(op.getContext().getTransform());
+			return (tx.getType() & ~AffineTransform.TYPE_TRANSLATION) == 0
+					&& tx.getTranslateX() == Math.rint(tx.getTranslateX())
+					&& tx.getTranslateY() == Math.rint(tx.getTranslateY());
+		}
+		return op.getContext().getPaint() instanceof Color;
+	}
+
+	/**
+	 * Submit tasks to paint every tile of a BufferedImage. This submits at
+	 * most {@link #getThreadCount()} tasks, and each task paints tiles until
+	 * there are none left.
+	 *
+	 * @param dest
+	 *            the image to paint to.
+	 * @param destY
+	 *            the y-coordinate of the top of this image in the full
+	 *            rendered image.
+	 * @param size
+	 *            the width and height of each tile.
+	 */
+	private List<Future<?>> paintTiles(final BufferedImage dest,
+			final int destY, int size) {
+		final List<Rectangle> tiles = new ArrayList<>();
+		for (int y = 0; y < dest.getHeight(); y += size) {
+			for (int x = 0; x < dest.getWidth(); x += size) {
+				tiles.add(new Rectangle(x, y,
+						Math.min(size, dest.getWidth() - x),
+						Math.min(size, dest.getHeight() - y)));
+			}
+		}
+		final AtomicInteger nextTile = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<>();
+		int taskCount = Math.min(threadCount, tiles.size());
+		for (int a = 0; a < taskCount; a++) {
+			futures.add(EXECUTOR.submit(new Runnable() {
+				@Override
+				public void run() {
+					int i;
+					while ((i = nextTile.getAndIncrement()) < tiles.size()) {
+						if (Thread.currentThread().isInterrupted())
+							return;
+						paintTile(dest, destY, tiles.get(i));
+					}
+				}
+			}));
+		}
+		return futures;
+	}
+
+	private void paintTile(BufferedImage dest, int destY, Rectangle tile) {
+		BufferedImage tileImage = dest.getSubimage(tile.x, tile.y, tile.width,
+				tile.height);
+		Graphics2D g = tileImage.createGraphics();
+		g.clipRect(0, 0, tile.width, tile.height);
+		g.translate(-pixelBounds.x - tile.x, -pixelBounds.y - destY - tile.y);
+		if (scale != 1)
+			g.scale(scale, scale);
+		image.paint(g);
+		g.dispose();
+	}
+
+	private static void waitFor(List<Future<?>> futures) {
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+}
@@ -12,8 +12,12 @@ package com.pump.graphics.vector;
 
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -22,7 +26,9 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -41,6 +47,10 @@ import com.pump.util.list.ObservableList.ArrayListener;
  * <h3>Serialization</h3> All the Operations in this image are always
  * serialized.
  * <p>
+ * The {@link #save(OutputStream)} method uses a more compact binary format
+ * that can also be painted as it is read; see
+ * {@link #paint(InputStream, Graphics2D)}.
+ * <p>
  * If an ObservableList listener is serializable then this class will preserve
  * it. Otherwise non-serializable listeners are ignored during serialization.
  */
@@ -55,6 +65,12 @@ public class VectorImage implements Serializable {
 
 	protected ObservableList<Operation> operations = new ObservableList<>();
 
+	/**
+	 * A spatial index of {@link #operations}. This is created as needed and
+	 * maintained by listening to the list.
+	 */
+	private transient OperationIndex index;
+
 	/**
 	 * Create an empty VectorImage.
 	 */
@@ -64,13 +80,60 @@ public class VectorImage implements Serializable {
 	/**
 	 * Read a VectorImage that was previously saved by calling
 	 * {@link #save(OutputStream)}.
+	 * <p>
+	 * This also reads files saved by older versions of this class, which used
+	 * Java serialization.
 	 */
 	public VectorImage(InputStream in)
 			throws IOException, ClassNotFoundException {
-		try (GZIPInputStream zipIn = new GZIPInputStream(in)) {
-			try (ObjectInputStream objIn = new ObjectInputStream(zipIn)) {
-				VectorImage i = (VectorImage) objIn.readObject();
-				operations = i.operations;
+		try (BufferedInputStream bufIn = new BufferedInputStream(
+				new GZIPInputStream(in))) {
+			if (VectorImageReader.isVectorImageStream(bufIn)) {
+				List<Operation> list = new ArrayList<>();
+				try (VectorImageReader reader = new VectorImageReader(bufIn)) {
+					Operation op;
+					while ((op = reader.read()) != null) {
+						list.add(op);
+					}
+				}
+				operations.addAll(list);
+			} else {
+				try (ObjectInputStream objIn = new ObjectInputStream(bufIn)) {
+					VectorImage i = (VectorImage) objIn.readObject();
+					operations = i.operations;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Paint a VectorImage that was previously saved by calling
+	 * {@link #save(OutputStream)}.
+	 * <p>
+	 * Each Operation is painted as soon as it is decoded, so this never holds
+	 * the entire image in memory.
+	 * 
+	 * @param in
+	 *            the stream to read. This is closed when this method returns.
+	 * @param g
+	 *            the Graphics2D to paint to.
+	 */
+	public static void paint(InputStream in, Graphics2D g)
+			throws IOException, ClassNotFoundException {
+		try (BufferedInputStream bufIn = new BufferedInputStream(
+				new GZIPInputStream(in))) {
+			if (VectorImageReader.isVectorImageStream(bufIn)) {
+				try (VectorImageReader reader = new VectorImageReader(bufIn)) {
+					Operation op;
+					while ((op = reader.read()) != null) {
+						op.paint(g);
+					}
+				}
+			} else {
+				try (ObjectInputStream objIn = new ObjectInputStream(bufIn)) {
+					VectorImage i = (VectorImage) objIn.readObject();
+					i.paint(g);
+				}
 			}
 		}
 	}
@@ -96,15 +159,71 @@ public class VectorImage implements Serializable {
 
 	/**
 	 * Paint all the operations in this VectorImage.
+	 * <p>
+	 * If the Graphics2D is clipped then this only paints the operations whose
+	 * bounds intersect the clip (in their original order).
 	 * 
 	 * @param g
 	 */
 	public void paint(Graphics2D g) {
-		for (Operation operation : operations) {
+		for (Operation operation : getOperations(g)) {
 			operation.paint(g);
 		}
 	}
 
+	/**
+	 * Return the operations that need to be painted to a Graphics2D.
+	 */
+	List<Operation> getOperations(Graphics2D g) {
+		Rectangle2D r = getPaintedArea(g);
+		if (r == null)
+			return operations;
+
+		OperationIndex index = getIndex();
+		if (index.containsCopyArea())
+			return operations;
+		Rectangle2D bounds = index.getBounds();
+		if (bounds != null && r.contains(bounds))
+			return operations;
+		return index.getOperations(r);
+	}
+
+	/**
+	 * Return the area (in user space) of a Graphics2D that painting can
+	 * affect, or null if this Graphics2D is not clipped.
+	 */
+	private static Rectangle2D getPaintedArea(Graphics2D g) {
+		// We could also consider the bounds of the device, but some
+		// Graphics2Ds (like a DualGraphics2D) paint to several destinations.
+		Shape clip = g.getClip();
+		if (clip == null)
+			return null;
+		AffineTransform tx = g.getTransform();
+		Rectangle2D deviceArea = tx.createTransformedShape(clip).getBounds2D();
+
+		// operations may touch pixels slightly outside of their bounds (for
+		// example: due to antialiasing or stroke normalization), so we pad
+		// this area by a couple of pixels.
+		deviceArea = new Rectangle2D.Double(deviceArea.getX() - 2,
+				deviceArea.getY() - 2, deviceArea.getWidth() + 4,
+				deviceArea.getHeight() + 4);
+		try {
+			return tx.createInverse().createTransformedShape(deviceArea)
+					.getBounds2D();
+		} catch (NoninvertibleTransformException e) {
+			return null;
+		}
+	}
+
+	private synchronized OperationIndex getIndex() {
+		if (index == null || index.operations != operations) {
+			if (index != null)
+				index.dispose();
+			index = new OperationIndex(operations);
+		}
+		return index;
+	}
+
 	/**
 	 * Return the Operations in this image. You can attach listeners to this
 	 * list to be notified as it changes.
@@ -120,20 +239,15 @@ public class VectorImage implements Serializable {
 	 * For example: if this contains no operations, or an operation that falls
 	 * outside (For example: an operation that renders outside of its clipped
 	 * area will have null bounds.)
+	 * <p>
+	 * The bounds of each operation are cached as operations are added to or
+	 * removed from {@link #getOperations()}. If you modify an Operation that
+	 * is already in this image, you should replace it in the list (for
+	 * example, by calling <code>getOperations().set(index, op)</code>) so
+	 * these cached bounds are updated.
 	 */
 	public Rectangle2D getBounds() {
-		Rectangle2D sum = null;
-		for (Operation op : getOperations()) {
-			Rectangle2D r = op.getBounds();
-			if (r != null) {
-				if (sum == null) {
-					sum = r;
-				} else {
-					sum.add(r);
-				}
-			}
-		}
-		return sum;
+		return getIndex().getBounds();
 	}
 
 	private void writeObject(java.io.ObjectOutputStream out)
@@ -147,9 +261,10 @@ public class VectorImage implements Serializable {
 		ChangeListener[] changeListeners = operations.getChangeListeners();
 		ListListener<Operation>[] listListeners = operations.getListListeners();
 
-		nullifyUnserializable(arrayListeners);
-		nullifyUnserializable(changeListeners);
-		nullifyUnserializable(listListeners);
+		// this also omits the listener our OperationIndex uses
+		arrayListeners = removeUnserializable(arrayListeners);
+		changeListeners = removeUnserializable(changeListeners);
+		listListeners = removeUnserializable(listListeners);
 
 		out.writeObject(arrayListeners);
 		out.writeObject(changeListeners);
@@ -163,11 +278,14 @@ public class VectorImage implements Serializable {
 		out.writeObject(ueh);
 	}
 
-	private void nullifyUnserializable(Object[] array) {
-		for (int a = 0; a < array.length; a++) {
-			if (!(array[a] instanceof Serializable))
-				array[a] = null;
+	private <T> T[] removeUnserializable(T[] array) {
+		int size = 0;
+		T[] returnValue = Arrays.copyOf(array, array.length);
+		for (T element : array) {
+			if (element instanceof Serializable)
+				returnValue[size++] = element;
 		}
+		return Arrays.copyOf(returnValue, size);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -257,12 +375,16 @@ public class VectorImage implements Serializable {
 
 	/**
 	 * Write this VectorImage to an OutputStream. This uses GZIP compression and
-	 * Java serialization.
+	 * the binary format described in {@link VectorImageWriter}.
+	 * <p>
+	 * Unlike Java serialization, this does not save any listeners attached to
+	 * {@link #getOperations()}.
 	 */
 	public void save(OutputStream out) throws IOException {
-		try (GZIPOutputStream zipOut = new GZIPOutputStream(out)) {
-			try (ObjectOutputStream objOut = new ObjectOutputStream(zipOut)) {
-				objOut.writeObject(this);
+		try (VectorImageWriter writer = new VectorImageWriter(
+				new GZIPOutputStream(out))) {
+			for (Operation op : operations) {
+				writer.write(op);
 			}
 		}
 	}
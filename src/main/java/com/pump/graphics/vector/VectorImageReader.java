@@ -0,0 +1,397 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.graphics.vector;
+
+import static com.pump.graphics.vector.VectorImageWriter.*;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import com.pump.data.converter.ConverterUtils;
+import com.pump.graphics.Graphics2DContext;
+
+/**
+ * This reads Operations that were written by a {@link VectorImageWriter}.
+ * <p>
+ * Operations are decoded one at a time, so a caller can paint each operation
+ * as it is read without first loading the entire image. (See
+ * {@link VectorImage#paint(InputStream, java.awt.Graphics2D)}.)
+ */
+public class VectorImageReader implements Closeable {
+
+	/**
+	 * Return true if the next bytes in an InputStream are the header of the
+	 * format written by a {@link VectorImageWriter}. This peeks at the stream
+	 * and then resets it.
+	 * 
+	 * @param in
+	 *            an InputStream that supports
+	 *            {@link InputStream#mark(int)}.
+	 */
+	public static boolean isVectorImageStream(InputStream in)
+			throws IOException {
+		if (!in.markSupported())
+			throw new IllegalArgumentException(
+					"the InputStream must support mark()");
+		in.mark(4);
+		try {
+			int magic = 0;
+			for (int a = 0; a < 4; a++) {
+				int k = in.read();
+				if (k == -1)
+					return false;
+				magic = (magic << 8) + k;
+			}
+			return magic == MAGIC;
+		} finally {
+			in.reset();
+		}
+	}
+
+	private final DataInputStream in;
+	private final List<Object> definitions = new ArrayList<>();
+	private byte[] floatBytes = new byte[1536];
+	private boolean finished = false;
+
+	/**
+	 * Create a new VectorImageReader and read the format header.
+	 * 
+	 * @throws IOException
+	 *             if the stream does not start with the expected header, or
+	 *             if it uses an unsupported version of the format.
+	 */
+	public VectorImageReader(InputStream in) throws IOException {
+		this.in = new DataInputStream(in instanceof BufferedInputStream ? in
+				: new BufferedInputStream(in));
+		int magic = this.in.readInt();
+		if (magic != MAGIC)
+			throw new IOException("unrecognized header (0x"
+					+ Integer.toHexString(magic) + ")");
+		int version = this.in.readInt();
+		if (version != VERSION)
+			throw new IOException("unsupported version " + version);
+	}
+
+	/**
+	 * Return the next Operation, or null if the end of the stream has been
+	 * reached.
+	 */
+	public Operation read() throws IOException, ClassNotFoundException {
+		while (!finished) {
+			byte recordType = in.readByte();
+			switch (recordType) {
+			case RECORD_DEFINITION:
+				definitions.add(readDefinition());
+				break;
+			case RECORD_OPERATION:
+				return readOperation();
+			case RECORD_SERIALIZED_OPERATION:
+				byte[] b = new byte[in.readInt()];
+				in.readFully(b);
+				try (ObjectInputStream objIn = new ObjectInputStream(
+						new ByteArrayInputStream(b))) {
+					return (Operation) objIn.readObject();
+				}
+			case RECORD_END:
+				finished = true;
+				break;
+			default:
+				throw new IOException(
+						"unsupported record type " + recordType);
+			}
+		}
+		return null;
+	}
+
+	private Operation readOperation()
+			throws IOException, ClassNotFoundException {
+		Constructor<?> constructor = getDefinition(in.readInt(),
+				Constructor.class);
+		Graphics2DContext context = getDefinition(in.readInt(),
+				Graphics2DContext.class);
+		Operation op;
+		try {
+			op = (Operation) constructor.newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IOException(e);
+		}
+		op.setContext(context);
+		op.coreProperties = readMap();
+		op.clientProperties = readMap();
+		return op;
+	}
+
+	private Map<String, Object> readMap() throws IOException {
+		int size = in.readInt();
+		Map<String, Object> map = new HashMap<>(size);
+		for (int a = 0; a < size; a++) {
+			String key = getDefinition(in.readInt(), String.class);
+			map.put(key, readValue());
+		}
+		return map;
+	}
+
+	private Object readValue() throws IOException {
+		byte valueType = in.readByte();
+		switch (valueType) {
+		case VALUE_NULL:
+			return null;
+		case VALUE_TRUE:
+			return Boolean.TRUE;
+		case VALUE_FALSE:
+			return Boolean.FALSE;
+		case VALUE_INT:
+			return in.readInt();
+		case VALUE_FLOAT:
+			return in.readFloat();
+		case VALUE_DOUBLE:
+			return in.readDouble();
+		case VALUE_LONG:
+			return in.readLong();
+		case VALUE_STRING:
+			return readString();
+		case VALUE_SHAPE:
+			return readShape();
+		case VALUE_REFERENCE:
+			return getDefinition(in.readInt(), Object.class);
+		}
+		throw new IOException("unsupported value type " + valueType);
+	}
+
+	private Object readDefinition() throws IOException, ClassNotFoundException {
+		byte definitionType = in.readByte();
+		switch (definitionType) {
+		case DEFINITION_OBJECT:
+			try (ObjectInputStream objIn = new ObjectInputStream(
+					new ByteArrayInputStream(readBytes()))) {
+				return ConverterUtils.readObject(objIn);
+			}
+		case DEFINITION_STRING:
+			return readString();
+		case DEFINITION_SHAPE:
+			return readShape();
+		case DEFINITION_COLOR:
+			return new Color(in.readInt(), true);
+		case DEFINITION_TRANSFORM:
+			return new AffineTransform(in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble(), in.readDouble(),
+					in.readDouble());
+		case DEFINITION_BASIC_STROKE:
+			float width = in.readFloat();
+			int cap = in.readByte();
+			int join = in.readByte();
+			float miterLimit = in.readFloat();
+			int dashLength = in.readInt();
+			float[] dash = dashLength < 0 ? null : new float[dashLength];
+			for (int a = 0; a < dashLength; a++) {
+				dash[a] = in.readFloat();
+			}
+			return new BasicStroke(width, cap, join, miterLimit, dash,
+					in.readFloat());
+		case DEFINITION_ALPHA_COMPOSITE:
+			int rule = in.readByte();
+			return AlphaComposite.getInstance(rule, in.readFloat());
+		case DEFINITION_IMAGE:
+			try (ByteArrayInputStream byteIn = new ByteArrayInputStream(
+					readBytes())) {
+				return ImageIO.read(byteIn);
+			}
+		case DEFINITION_CONTEXT:
+			return readContext();
+		case DEFINITION_OPERATION_CLASS:
+			return getConstructor(in.readUTF());
+		}
+		throw new IOException("unsupported definition type " + definitionType);
+	}
+
+	private Constructor<?> getConstructor(String className)
+			throws IOException, ClassNotFoundException {
+		Class<?> opClass = Class.forName(className);
+		// only classes VectorImageWriter would encode are trusted here
+		if (!Operation.class.isAssignableFrom(opClass) || opClass
+				.getPackage() != Operation.class.getPackage())
+			throw new IOException("unsupported operation class " + className);
+		try {
+			return opClass.getDeclaredConstructor();
+		} catch (NoSuchMethodException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private Graphics2DContext readContext() throws IOException {
+		boolean disposed = in.readInt() != 0;
+		Composite composite = getDefinition(in.readInt(), Composite.class);
+		AffineTransform transform = getDefinition(in.readInt(),
+				AffineTransform.class);
+		Color background = getDefinition(in.readInt(), Color.class);
+		Font font = getDefinition(in.readInt(), Font.class);
+		Color xorColor = getDefinition(in.readInt(), Color.class);
+		Color color = getDefinition(in.readInt(), Color.class);
+		Paint paint = getDefinition(in.readInt(), Paint.class);
+		Stroke stroke = getDefinition(in.readInt(), Stroke.class);
+		RenderingHints hints = getDefinition(in.readInt(),
+				RenderingHints.class);
+		Shape clip = getDefinition(in.readInt(), Shape.class);
+
+		Graphics2DContext context = new Graphics2DContext();
+		if (composite != null)
+			context.setComposite(composite);
+		context.setBackground(background);
+		if (font != null)
+			context.setFont(font);
+		context.setColor(color);
+		context.setPaint(paint);
+		if (stroke != null)
+			context.setStroke(stroke);
+		if (hints != null)
+			context.setRenderingHints(hints);
+		if (transform != null)
+			context.setTransform(transform);
+		context.setClip(clip, false);
+		if (xorColor != null)
+			context.setXORMode(xorColor);
+		if (disposed)
+			context.dispose();
+		return context;
+	}
+
+	private <T> T getDefinition(int id, Class<T> type) throws IOException {
+		if (id == -1)
+			return null;
+		if (id < 0 || id >= definitions.size())
+			throw new IOException("undefined reference " + id);
+		Object value = definitions.get(id);
+		if (!type.isInstance(value))
+			throw new IOException("reference " + id + " is a "
+					+ value.getClass().getName() + ", not a "
+					+ type.getName());
+		return type.cast(value);
+	}
+
+	private byte[] readBytes() throws IOException {
+		byte[] b = new byte[in.readInt()];
+		in.readFully(b);
+		return b;
+	}
+
+	private String readString() throws IOException {
+		return new String(readBytes(), StandardCharsets.UTF_8);
+	}
+
+	private Shape readShape() throws IOException {
+		byte shapeType = in.readByte();
+		switch (shapeType) {
+		case SHAPE_PATH:
+			return readPath();
+		case SHAPE_RECTANGLE:
+			return new Rectangle(in.readInt(), in.readInt(), in.readInt(),
+					in.readInt());
+		case SHAPE_RECTANGLE2D:
+			return new Rectangle2D.Double(in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble());
+		case SHAPE_ROUND_RECTANGLE2D:
+			return new RoundRectangle2D.Double(in.readDouble(),
+					in.readDouble(), in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble());
+		case SHAPE_ELLIPSE2D:
+			return new Ellipse2D.Double(in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble());
+		case SHAPE_ARC2D:
+			return new Arc2D.Double(in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readByte());
+		case SHAPE_LINE2D:
+			return new Line2D.Double(in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble());
+		}
+		throw new IOException("unsupported shape type " + shapeType);
+	}
+
+	private Path2D.Float readPath() throws IOException {
+		int windingRule = in.readByte();
+		byte[] types = new byte[in.readInt()];
+		in.readFully(types);
+		int coordCount = in.readInt();
+		if (floatBytes.length < coordCount * 4)
+			floatBytes = new byte[coordCount * 4];
+		in.readFully(floatBytes, 0, coordCount * 4);
+		float[] coords = new float[coordCount];
+		ByteBuffer.wrap(floatBytes, 0, coordCount * 4).asFloatBuffer()
+				.get(coords);
+
+		Path2D.Float path = new Path2D.Float(windingRule, types.length);
+		int i = 0;
+		for (byte type : types) {
+			switch (type) {
+			case PathIterator.SEG_MOVETO:
+				path.moveTo(coords[i], coords[i + 1]);
+				break;
+			case PathIterator.SEG_LINETO:
+				path.lineTo(coords[i], coords[i + 1]);
+				break;
+			case PathIterator.SEG_QUADTO:
+				path.quadTo(coords[i], coords[i + 1], coords[i + 2],
+						coords[i + 3]);
+				break;
+			case PathIterator.SEG_CUBICTO:
+				path.curveTo(coords[i], coords[i + 1], coords[i + 2],
+						coords[i + 3], coords[i + 4], coords[i + 5]);
+				break;
+			case PathIterator.SEG_CLOSE:
+				path.closePath();
+				break;
+			}
+			i += getCoordinateCount(type);
+		}
+		return path;
+	}
+
+	/**
+	 * Close the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+		definitions.clear();
+	}
+}
@@ -0,0 +1,617 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.graphics.vector;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import com.pump.data.converter.ConverterUtils;
+import com.pump.geom.ImmutableShape;
+import com.pump.graphics.Graphics2DContext;
+import com.pump.image.pixel.ImagePixelIterator;
+
+/**
+ * This writes Operations in a compact binary format that the
+ * {@link VectorImageReader} can decode.
+ * <p>
+ * The stream is a header (a magic number and a version) followed by a series
+ * of records. Objects that are commonly shared across operations (such as
+ * Graphics2DContexts, paints, fonts, strokes, clipping shapes, images and
+ * property names) are written once as a definition record and are then
+ * referred to by an integer id. Images are stored as PNG data and are
+ * deduplicated by their content. Paths are stored as packed float arrays.
+ * Colors are stored as ARGB ints if that describes them exactly; other Colors
+ * are serialized.
+ * <p>
+ * Operation classes in this package are encoded field-by-field. Any other
+ * Operation subclass is written using Java serialization.
+ * <p>
+ * This object keeps references to the paints, images and other objects it
+ * has interned until it is closed.
+ */
+public class VectorImageWriter implements Closeable {
+
+	/**
+	 * The first four bytes of this format ("JVGB").
+	 */
+	static final int MAGIC = 0x4A564742;
+
+	/**
+	 * The version of this format that this writer produces.
+	 */
+	static final int VERSION = 1;
+
+	static final byte RECORD_END = 0;
+	static final byte RECORD_DEFINITION = 1;
+	static final byte RECORD_OPERATION = 2;
+	static final byte RECORD_SERIALIZED_OPERATION = 3;
+
+	static final byte DEFINITION_OBJECT = 0;
+	static final byte DEFINITION_STRING = 1;
+	static final byte DEFINITION_SHAPE = 2;
+	static final byte DEFINITION_COLOR = 3;
+	static final byte DEFINITION_TRANSFORM = 4;
+	static final byte DEFINITION_BASIC_STROKE = 5;
+	static final byte DEFINITION_ALPHA_COMPOSITE = 6;
+	static final byte DEFINITION_IMAGE = 7;
+	static final byte DEFINITION_CONTEXT = 8;
+	static final byte DEFINITION_OPERATION_CLASS = 9;
+
+	static final byte VALUE_NULL = 0;
+	static final byte VALUE_TRUE = 1;
+	static final byte VALUE_FALSE = 2;
+	static final byte VALUE_INT = 3;
+	static final byte VALUE_FLOAT = 4;
+	static final byte VALUE_DOUBLE = 5;
+	static final byte VALUE_LONG = 6;
+	static final byte VALUE_STRING = 7;
+	static final byte VALUE_SHAPE = 8;
+	static final byte VALUE_REFERENCE = 9;
+
+	static final byte SHAPE_PATH = 0;
+	static final byte SHAPE_RECTANGLE = 1;
+	static final byte SHAPE_RECTANGLE2D = 2;
+	static final byte SHAPE_ROUND_RECTANGLE2D = 3;
+	static final byte SHAPE_ELLIPSE2D = 4;
+	static final byte SHAPE_ARC2D = 5;
+	static final byte SHAPE_LINE2D = 6;
+
+	/**
+	 * This is used as a key for objects that are identified by a digest of
+	 * their encoded bytes.
+	 */
+	private static class DigestKey {
+		final byte definitionType;
+		final byte[] digest;
+		final int hashCode;
+
+		DigestKey(byte definitionType, byte[] digest) {
+			this.definitionType = definitionType;
+			this.digest = digest;
+			hashCode = Arrays.hashCode(digest) + definitionType;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof DigestKey))
+				return false;
+			DigestKey other = (DigestKey) obj;
+			return definitionType == other.definitionType
+					&& Arrays.equals(digest, other.digest);
+		}
+	}
+
+	/**
+	 * A ByteArrayOutputStream that exposes its buffer so we can digest and
+	 * copy it without cloning it.
+	 */
+	private static class Buffer extends ByteArrayOutputStream {
+		Buffer() {
+			super(1024);
+		}
+
+		void writeTo(DataOutputStream out) throws IOException {
+			out.write(buf, 0, count);
+		}
+
+		byte[] digest(MessageDigest digest) {
+			digest.reset();
+			digest.update(buf, 0, count);
+			return digest.digest();
+		}
+	}
+
+	private final DataOutputStream out;
+	private final Buffer recordBuffer = new Buffer();
+	private final DataOutputStream record = new DataOutputStream(
+			recordBuffer);
+	private final Buffer definitionBuffer = new Buffer();
+	private final DataOutputStream definition = new DataOutputStream(
+			definitionBuffer);
+	private final MessageDigest digest;
+
+	private final Map<Object, Integer> idsByIdentity = new IdentityHashMap<>();
+	private final Map<Object, Integer> idsByValue = new HashMap<>();
+	private final Map<Class<?>, Integer> classIds = new HashMap<>();
+	private int nextId = 0;
+
+	private byte[] pathTypes = new byte[64];
+	private float[] pathCoords = new float[384];
+	private byte[] floatBytes = new byte[1536];
+	private boolean closed = false;
+
+	/**
+	 * Create a new VectorImageWriter and write the format header.
+	 * 
+	 * @param out
+	 *            the stream to write to. This stream is closed when this
+	 *            writer is closed.
+	 */
+	public VectorImageWriter(OutputStream out) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.out.writeInt(MAGIC);
+		this.out.writeInt(VERSION);
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java implementation is required to support SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Write an Operation.
+	 */
+	public void write(Operation op) throws IOException {
+		if (closed)
+			throw new IOException("this writer is closed");
+
+		recordBuffer.reset();
+		if (!isEncodable(op.getClass())) {
+			try (ObjectOutputStream objOut = new ObjectOutputStream(
+					recordBuffer)) {
+				objOut.writeObject(op);
+			}
+			out.writeByte(RECORD_SERIALIZED_OPERATION);
+			out.writeInt(recordBuffer.size());
+			recordBuffer.writeTo(out);
+			return;
+		}
+
+		// definitions may be written while we build up this record, so the
+		// record is buffered until all the ids it refers to are defined
+		record.writeInt(classIds.get(op.getClass()));
+		record.writeInt(internContext(op.context));
+		writeMap(op.coreProperties);
+		writeMap(op.clientProperties);
+
+		out.writeByte(RECORD_OPERATION);
+		recordBuffer.writeTo(out);
+	}
+
+	/**
+	 * Return true if an Operation class can be encoded field-by-field. This
+	 * assigns an id to the class the first time it is encountered.
+	 */
+	private boolean isEncodable(Class<? extends Operation> opClass)
+			throws IOException {
+		Integer id = classIds.get(opClass);
+		if (id == null) {
+			id = -1;
+			if (opClass.getPackage() == Operation.class.getPackage()) {
+				try {
+					opClass.getDeclaredConstructor();
+					id = nextId++;
+					out.writeByte(RECORD_DEFINITION);
+					out.writeByte(DEFINITION_OPERATION_CLASS);
+					out.writeUTF(opClass.getName());
+				} catch (NoSuchMethodException e) {
+					// this class will be serialized
+				}
+			}
+			classIds.put(opClass, id);
+		}
+		return id >= 0;
+	}
+
+	private void writeMap(Map<String, Object> map) throws IOException {
+		record.writeInt(map.size());
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			record.writeInt(intern(entry.getKey()));
+			writeValue(entry.getValue());
+		}
+	}
+
+	private void writeValue(Object value) throws IOException {
+		if (value == null) {
+			record.writeByte(VALUE_NULL);
+		} else if (value instanceof Boolean) {
+			record.writeByte(((Boolean) value).booleanValue() ? VALUE_TRUE
+					: VALUE_FALSE);
+		} else if (value instanceof Integer) {
+			record.writeByte(VALUE_INT);
+			record.writeInt((Integer) value);
+		} else if (value instanceof Float) {
+			record.writeByte(VALUE_FLOAT);
+			record.writeFloat((Float) value);
+		} else if (value instanceof Double) {
+			record.writeByte(VALUE_DOUBLE);
+			record.writeDouble((Double) value);
+		} else if (value instanceof Long) {
+			record.writeByte(VALUE_LONG);
+			record.writeLong((Long) value);
+		} else if (value instanceof String) {
+			record.writeByte(VALUE_STRING);
+			writeString(record, (String) value);
+		} else if (value instanceof Shape) {
+			record.writeByte(VALUE_SHAPE);
+			writeShape(record, (Shape) value);
+		} else {
+			if (value instanceof RenderableImage) {
+				// see Operation#writeMap
+				value = ((RenderableImage) value).createDefaultRendering();
+			}
+			record.writeByte(VALUE_REFERENCE);
+			record.writeInt(intern(value));
+		}
+	}
+
+	private int internContext(Graphics2DContext context) throws IOException {
+		Integer[] components = new Integer[] {
+				context.isDisposed() ? 1 : 0,
+				intern(context.getComposite()),
+				intern(context.getTransform()),
+				intern(context.getBackground()),
+				intern(context.getFont()), intern(context.getXORColor()),
+				intern(context.getColor()), intern(context.getPaint()),
+				intern(context.getStroke()),
+				intern(context.getRenderingHints()),
+				intern(getRawClip(context)) };
+		List<Integer> key = Arrays.asList(components);
+		Integer id = idsByValue.get(key);
+		if (id == null) {
+			id = nextId++;
+			idsByValue.put(key, id);
+			out.writeByte(RECORD_DEFINITION);
+			out.writeByte(DEFINITION_CONTEXT);
+			for (Integer component : components) {
+				out.writeInt(component);
+			}
+		}
+		return id;
+	}
+
+	private static Shape getRawClip(Graphics2DContext context) {
+		Shape clip = context.getClip(false);
+		if (clip instanceof ImmutableShape)
+			clip = ((ImmutableShape) clip).getShape();
+		return clip;
+	}
+
+	/**
+	 * Return the id of a definition for an object, writing that definition
+	 * if necessary. This returns -1 for null.
+	 */
+	private int intern(Object value) throws IOException {
+		if (value == null)
+			return -1;
+
+		Integer id = idsByIdentity.get(value);
+		if (id != null)
+			return id;
+
+		byte type;
+		if (value instanceof String) {
+			type = DEFINITION_STRING;
+		} else if (value instanceof Color && isRGBColor((Color) value)) {
+			type = DEFINITION_COLOR;
+		} else if (value.getClass() == AffineTransform.class) {
+			type = DEFINITION_TRANSFORM;
+		} else if (value.getClass() == BasicStroke.class) {
+			type = DEFINITION_BASIC_STROKE;
+		} else if (value instanceof AlphaComposite) {
+			type = DEFINITION_ALPHA_COMPOSITE;
+		} else if (value instanceof Font || value instanceof RenderingHints) {
+			type = DEFINITION_OBJECT;
+		} else {
+			// these are identified by a digest of their encoded data
+			definitionBuffer.reset();
+			if (value instanceof Image || value instanceof RenderedImage) {
+				type = DEFINITION_IMAGE;
+				RenderedImage img = value instanceof RenderedImage
+						? (RenderedImage) value
+						: ImagePixelIterator.createBufferedImage((Image) value);
+				writePNG(img);
+			} else if (value instanceof Shape) {
+				type = DEFINITION_SHAPE;
+				writeShape(definition, (Shape) value);
+			} else {
+				type = DEFINITION_OBJECT;
+				writeBlob(definitionBuffer, value);
+			}
+			DigestKey key = new DigestKey(type,
+					definitionBuffer.digest(digest));
+			id = idsByValue.get(key);
+			if (id == null) {
+				id = nextId++;
+				idsByValue.put(key, id);
+				out.writeByte(RECORD_DEFINITION);
+				out.writeByte(type);
+				if (type != DEFINITION_SHAPE)
+					out.writeInt(definitionBuffer.size());
+				definitionBuffer.writeTo(out);
+			}
+			// shapes are usually defensive copies, so identity won't help
+			if (type != DEFINITION_SHAPE)
+				idsByIdentity.put(value, id);
+			return id;
+		}
+
+		// these are identified by their equals() method
+		id = idsByValue.get(value);
+		if (id == null) {
+			id = nextId++;
+			idsByValue.put(value, id);
+			out.writeByte(RECORD_DEFINITION);
+			out.writeByte(type);
+			writeDefinition(type, value);
+		}
+		return id;
+	}
+
+	/**
+	 * Return true if a Color is exactly described by {@link Color#getRGB()}.
+	 * Other Colors (such as subclasses, colors in other ColorSpaces and colors
+	 * with more precise float components) are serialized instead.
+	 */
+	private static boolean isRGBColor(Color color) {
+		if (color.getClass() != Color.class
+				|| !color.getColorSpace().isCS_sRGB())
+			return false;
+		float[] components = color.getRGBComponents(null);
+		float[] rgbComponents = new Color(color.getRGB(), true)
+				.getRGBComponents(null);
+		return Arrays.equals(components, rgbComponents);
+	}
+
+	/**
+	 * Write an image as a PNG to the definition buffer.
+	 * <p>
+	 * If ImageIO can't write the image as-is (for example because of an
+	 * unusual ColorModel) then this converts it to an ARGB image first.
+	 */
+	private void writePNG(RenderedImage img) throws IOException {
+		if (ImageIO.write(img, "png", definitionBuffer))
+			return;
+
+		definitionBuffer.reset();
+		BufferedImage argb = new BufferedImage(img.getWidth(),
+				img.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = argb.createGraphics();
+		g.drawRenderedImage(img, AffineTransform.getTranslateInstance(
+				-img.getMinX(), -img.getMinY()));
+		g.dispose();
+		if (!ImageIO.write(argb, "png", definitionBuffer))
+			throw new IOException("No PNG writer is available for "
+					+ img.getClass().getName());
+	}
+
+	private void writeDefinition(byte type, Object value) throws IOException {
+		if (type == DEFINITION_STRING) {
+			writeString(out, (String) value);
+		} else if (type == DEFINITION_COLOR) {
+			out.writeInt(((Color) value).getRGB());
+		} else if (type == DEFINITION_TRANSFORM) {
+			double[] m = new double[6];
+			((AffineTransform) value).getMatrix(m);
+			for (double d : m) {
+				out.writeDouble(d);
+			}
+		} else if (type == DEFINITION_BASIC_STROKE) {
+			BasicStroke s = (BasicStroke) value;
+			out.writeFloat(s.getLineWidth());
+			out.writeByte(s.getEndCap());
+			out.writeByte(s.getLineJoin());
+			out.writeFloat(s.getMiterLimit());
+			float[] dash = s.getDashArray();
+			out.writeInt(dash == null ? -1 : dash.length);
+			if (dash != null) {
+				for (float f : dash) {
+					out.writeFloat(f);
+				}
+			}
+			out.writeFloat(s.getDashPhase());
+		} else if (type == DEFINITION_ALPHA_COMPOSITE) {
+			AlphaComposite c = (AlphaComposite) value;
+			out.writeByte(c.getRule());
+			out.writeFloat(c.getAlpha());
+		} else {
+			definitionBuffer.reset();
+			writeBlob(definitionBuffer, value);
+			out.writeInt(definitionBuffer.size());
+			definitionBuffer.writeTo(out);
+		}
+	}
+
+	private static void writeBlob(OutputStream dst, Object value)
+			throws IOException {
+		try (ObjectOutputStream objOut = new ObjectOutputStream(dst)) {
+			ConverterUtils.writeObject(objOut, value);
+		}
+	}
+
+	static void writeString(DataOutputStream dst, String str)
+			throws IOException {
+		byte[] b = str.getBytes(StandardCharsets.UTF_8);
+		dst.writeInt(b.length);
+		dst.write(b);
+	}
+
+	/**
+	 * Write a shape. Common RectangularShapes and lines are written as their
+	 * defining values, and everything else is written as a path.
+	 */
+	private void writeShape(DataOutputStream dst, Shape shape)
+			throws IOException {
+		if (shape.getClass() == Rectangle.class) {
+			Rectangle r = (Rectangle) shape;
+			dst.writeByte(SHAPE_RECTANGLE);
+			dst.writeInt(r.x);
+			dst.writeInt(r.y);
+			dst.writeInt(r.width);
+			dst.writeInt(r.height);
+		} else if (shape instanceof RectangularShape
+				&& !(shape instanceof Rectangle)) {
+			RectangularShape r = (RectangularShape) shape;
+			if (r instanceof Rectangle2D) {
+				dst.writeByte(SHAPE_RECTANGLE2D);
+			} else if (r instanceof RoundRectangle2D) {
+				dst.writeByte(SHAPE_ROUND_RECTANGLE2D);
+			} else if (r instanceof Ellipse2D) {
+				dst.writeByte(SHAPE_ELLIPSE2D);
+			} else if (r instanceof Arc2D) {
+				dst.writeByte(SHAPE_ARC2D);
+			} else {
+				writePath(dst, shape);
+				return;
+			}
+			dst.writeDouble(r.getX());
+			dst.writeDouble(r.getY());
+			dst.writeDouble(r.getWidth());
+			dst.writeDouble(r.getHeight());
+			if (r instanceof RoundRectangle2D) {
+				RoundRectangle2D rr = (RoundRectangle2D) r;
+				dst.writeDouble(rr.getArcWidth());
+				dst.writeDouble(rr.getArcHeight());
+			} else if (r instanceof Arc2D) {
+				Arc2D arc = (Arc2D) r;
+				dst.writeDouble(arc.getAngleStart());
+				dst.writeDouble(arc.getAngleExtent());
+				dst.writeByte(arc.getArcType());
+			}
+		} else if (shape instanceof Line2D) {
+			Line2D l = (Line2D) shape;
+			dst.writeByte(SHAPE_LINE2D);
+			dst.writeDouble(l.getX1());
+			dst.writeDouble(l.getY1());
+			dst.writeDouble(l.getX2());
+			dst.writeDouble(l.getY2());
+		} else {
+			writePath(dst, shape);
+		}
+	}
+
+	/**
+	 * Write a shape's winding rule, segment types and coordinates. The
+	 * coordinates are packed as a single array of floats.
+	 */
+	private void writePath(DataOutputStream dst, Shape shape)
+			throws IOException {
+		dst.writeByte(SHAPE_PATH);
+		PathIterator pi = shape.getPathIterator(null);
+		int segmentCount = 0;
+		int coordCount = 0;
+		float[] coords = new float[6];
+		while (!pi.isDone()) {
+			int k = pi.currentSegment(coords);
+			int n = getCoordinateCount(k);
+			if (segmentCount == pathTypes.length)
+				pathTypes = Arrays.copyOf(pathTypes, segmentCount * 2);
+			if (coordCount + n > pathCoords.length)
+				pathCoords = Arrays.copyOf(pathCoords,
+						(coordCount + n) * 2);
+			pathTypes[segmentCount++] = (byte) k;
+			System.arraycopy(coords, 0, pathCoords, coordCount, n);
+			coordCount += n;
+			pi.next();
+		}
+
+		dst.writeByte(pi.getWindingRule());
+		dst.writeInt(segmentCount);
+		dst.write(pathTypes, 0, segmentCount);
+		dst.writeInt(coordCount);
+		if (floatBytes.length < coordCount * 4)
+			floatBytes = new byte[pathCoords.length * 4];
+		ByteBuffer.wrap(floatBytes).asFloatBuffer().put(pathCoords, 0,
+				coordCount);
+		dst.write(floatBytes, 0, coordCount * 4);
+	}
+
+	static int getCoordinateCount(int segmentType) throws IOException {
+		switch (segmentType) {
+		case PathIterator.SEG_MOVETO:
+		case PathIterator.SEG_LINETO:
+			return 2;
+		case PathIterator.SEG_QUADTO:
+			return 4;
+		case PathIterator.SEG_CUBICTO:
+			return 6;
+		case PathIterator.SEG_CLOSE:
+			return 0;
+		}
+		throw new IOException("unsupported segment type " + segmentType);
+	}
+
+	/**
+	 * Write the end-of-stream marker and close the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		out.writeByte(RECORD_END);
+		out.close();
+		idsByIdentity.clear();
+		idsByValue.clear();
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.image.gif;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.pump.image.gif.block.GifColorTable;
+import com.pump.image.gif.block.GifImageDataBlock;
+import com.pump.image.gif.block.GifImageDescriptor;
+import com.pump.image.pixel.IndexedBytePixelIterator;
+
+/**
+ * This iterates over the indexed pixels of one GIF image block, decoding the
+ * LZW data one row at a time.
+ * <P>
+ * This does not composite the image block with earlier frames; it only
+ * describes the pixels in the image block itself. (Its width and height
+ * are the width and height of the {@link GifImageDescriptor}, and transparent
+ * pixels are left transparent.) For animations where each frame covers the
+ * entire image this is the same as the frame, but unlike
+ * {@link GifReader#getNextFrame(boolean)} this never allocates a full-size
+ * ARGB image.
+ * <P>
+ * Non-interlaced images are decoded as rows are requested. Interlaced images
+ * store rows out of order, so to return rows from top to bottom this buffers
+ * rows until they are requested. Because the last interlaced pass contains
+ * every odd row, this buffers at most about half of the image.
+ */
+public class GifFramePixelIterator implements IndexedBytePixelIterator {
+
+	/**
+	 * Return the row of the image that is stored at a given position in the
+	 * GIF's data.
+	 * 
+	 * @param height
+	 *            the height of the image.
+	 * @param interlaced
+	 *            whether the data is interlaced.
+	 * @return an array where element <code>i</code> is the index of the
+	 *         <code>i</code>th row in the encoded data.
+	 */
+	static int[] getRowOrder(int height, boolean interlaced) {
+		int[] order = new int[height];
+		if (!interlaced) {
+			for (int a = 0; a < height; a++) {
+				order[a] = a;
+			}
+			return order;
+		}
+		int ctr = 0;
+		int[] starts = new int[] { 0, 4, 2, 1 };
+		int[] increments = new int[] { 8, 8, 4, 2 };
+		for (int pass = 0; pass < 4; pass++) {
+			for (int y = starts[pass]; y < height; y += increments[pass]) {
+				order[ctr++] = y;
+			}
+		}
+		return order;
+	}
+
+	final int width, height, x, y;
+	final IndexColorModel colorModel;
+	final int fillIndex;
+	final int[] rowOrder;
+
+	InputStream in;
+	byte[][] bufferedRows;
+	/** The number of rows read from the encoded data */
+	int encodedRowCtr = 0;
+	/** The next row to return */
+	int rowCtr = 0;
+	boolean endOfData = false;
+
+	/**
+	 * @param imageDescriptor
+	 *            the descriptor that precedes the image data.
+	 * @param colorTable
+	 *            the local or global color table that applies to this image.
+	 * @param transparentIndex
+	 *            the transparent color index from the graphic control
+	 *            extension, or -1.
+	 * @param imageData
+	 *            the LZW-encoded image data.
+	 */
+	public GifFramePixelIterator(GifImageDescriptor imageDescriptor,
+			GifColorTable colorTable, int transparentIndex,
+			GifImageDataBlock imageData) {
+		width = imageDescriptor.getWidth();
+		height = imageDescriptor.getHeight();
+		x = imageDescriptor.getX();
+		y = imageDescriptor.getY();
+		colorModel = colorTable.getIndexColorModel(transparentIndex);
+		fillIndex = transparentIndex < 0 ? 0 : transparentIndex;
+		rowOrder = getRowOrder(height, imageDescriptor.isInterlaced());
+		if (imageDescriptor.isInterlaced())
+			bufferedRows = new byte[height][];
+		in = imageData.getUncompressedInputStream();
+	}
+
+	/**
+	 * Return the x-coordinate of this image block within the GIF.
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * Return the y-coordinate of this image block within the GIF.
+	 */
+	public int getY() {
+		return y;
+	}
+
+	@Override
+	public IndexColorModel getIndexColorModel() {
+		return colorModel;
+	}
+
+	@Override
+	public int getType() {
+		return BufferedImage.TYPE_BYTE_INDEXED;
+	}
+
+	@Override
+	public boolean isOpaque() {
+		return colorModel.getTransparentPixel() < 0;
+	}
+
+	@Override
+	public boolean isDone() {
+		return rowCtr >= height;
+	}
+
+	@Override
+	public boolean isTopDown() {
+		return true;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public void skip() throws ClosedException {
+		if (in == null)
+			throw new ClosedException();
+		if (bufferedRows == null) {
+			// non-interlaced rows are read in order, so we have to decode
+			// them anyway
+			next(new byte[width], 0);
+		} else {
+			next(null, 0);
+		}
+	}
+
+	@Override
+	public void next(byte[] dest, int offset) throws ClosedException {
+		if (in == null)
+			throw new ClosedException();
+
+		int targetRow = rowCtr++;
+		if (bufferedRows != null && bufferedRows[targetRow] != null) {
+			if (dest != null)
+				System.arraycopy(bufferedRows[targetRow], 0, dest, offset,
+						width);
+			bufferedRows[targetRow] = null;
+		} else {
+			while (true) {
+				int encodedRow = rowOrder[encodedRowCtr++];
+				if (encodedRow == targetRow) {
+					if (dest == null)
+						dest = new byte[width];
+					readRow(dest, offset);
+					break;
+				}
+				byte[] row = new byte[width];
+				readRow(row, 0);
+				bufferedRows[encodedRow] = row;
+			}
+		}
+
+		if (isDone())
+			close();
+	}
+
+	/**
+	 * Read the next row of encoded data. If the data ends prematurely the
+	 * remaining pixels are filled with the transparent index (or zero).
+	 */
+	private void readRow(byte[] dest, int offset) {
+		int ctr = 0;
+		if (!endOfData) {
+			try {
+				while (ctr < width) {
+					int t = in.read(dest, offset + ctr, width - ctr);
+					if (t == -1) {
+						endOfData = true;
+						break;
+					}
+					ctr += t;
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		if (ctr < width)
+			Arrays.fill(dest, offset + ctr, offset + width, (byte) fillIndex);
+	}
+
+	@Override
+	public void close() {
+		if (in == null)
+			return;
+		try {
+			in.close();
+		} catch (IOException e) {
+			throw new ClosingException(e);
+		} finally {
+			in = null;
+			bufferedRows = null;
+		}
+	}
+}
@@ -446,6 +446,70 @@ public class GifReader implements AnimationReader, GifConstants {
 	public BufferedImage getNextFrame(boolean cloneImage) throws IOException {
 		if (frame != null)
 			frame.dispose(bi);
+		if (!readNextImageBlocks())
+			return null;
+
+		if (bi == null) {
+			bi = new BufferedImage(getWidth(), getHeight(),
+					BufferedImage.TYPE_INT_ARGB);
+		}
+
+		frame = new GifFrame(lsd, gce, getColorTable(), imageDescriptor,
+				imageData);
+		frame.render(bi);
+
+		if (cloneImage) {
+			BufferedImage bi2 = new BufferedImage(bi.getWidth(),
+					bi.getHeight(), BufferedImage.TYPE_INT_ARGB);
+			Graphics g = bi2.createGraphics();
+			g.drawImage(bi, 0, 0, null);
+			g.dispose();
+			return bi2;
+		}
+		return bi;
+	}
+
+	/**
+	 * This iterates through the GIF file to the next image block, and returns
+	 * its indexed pixels without compositing them with earlier frames.
+	 * <P>
+	 * This is much lighter than {@link #getNextFrame(boolean)} when you only
+	 * need part of an image (or a scaled down copy of it), because it decodes
+	 * rows as they are requested and never allocates an ARGB image. But the
+	 * pixels it returns are only the pixels of the image block: this does not
+	 * apply earlier frames or disposal methods. So you should not call both
+	 * this method and <code>getNextFrame()</code> on the same reader.
+	 * 
+	 * @return an iterator for the next image block, or <code>null</code> if
+	 *         there are no more frames.
+	 * @throws IOException
+	 *             if a problem occurs reading the frame data
+	 */
+	public GifFramePixelIterator getNextFrameIterator() throws IOException {
+		if (!readNextImageBlocks())
+			return null;
+		int transparentIndex = gce == null ? -1 : gce
+				.getTransparentColorIndex();
+		return new GifFramePixelIterator(imageDescriptor, getColorTable(),
+				transparentIndex, imageData);
+	}
+
+	private GifColorTable getColorTable() {
+		GifColorTable colorTable = localTable;
+		if (colorTable == null)
+			colorTable = global;
+		if (colorTable == null)
+			throw new RuntimeException(
+					"There was no local or global color table available.");
+		return colorTable;
+	}
+
+	/**
+	 * Read all the blocks up to and including the next image data block.
+	 * 
+	 * @return false if there are no more image data blocks.
+	 */
+	private boolean readNextImageBlocks() throws IOException {
 		gce = null;
 		localTable = null;
 		imageDescriptor = null;
@@ -476,32 +540,7 @@ public class GifReader implements AnimationReader, GifConstants {
 						"This GIF decoder does not support the GIF plain text extension.");
 			}
 		}
-		if (finished)
-			return null;
-
-		if (bi == null) {
-			bi = new BufferedImage(getWidth(), getHeight(),
-					BufferedImage.TYPE_INT_ARGB);
-		}
-
-		GifColorTable colorTable = localTable;
-		if (colorTable == null)
-			colorTable = global;
-		if (colorTable == null)
-			throw new RuntimeException(
-					"There was no local or global color table available.");
-		frame = new GifFrame(lsd, gce, colorTable, imageDescriptor, imageData);
-		frame.render(bi);
-
-		if (cloneImage) {
-			BufferedImage bi2 = new BufferedImage(bi.getWidth(),
-					bi.getHeight(), BufferedImage.TYPE_INT_ARGB);
-			Graphics g = bi2.createGraphics();
-			g.drawImage(bi, 0, 0, null);
-			g.dispose();
-			return bi2;
-		}
-		return bi;
+		return !finished;
 	}
 
 	/**
@@ -636,7 +675,8 @@ public class GifReader implements AnimationReader, GifConstants {
 			if (x2 - x1 == 0 && y2 - y1 == 0)
 				return;
 			if (previous != null) {
-				image.getRaster().setDataElements(x1, y1, x2, y2, previous);
+				image.getRaster().setDataElements(x1, y1, x2 - x1, y2 - y1,
+						previous);
 				return;
 			}
 
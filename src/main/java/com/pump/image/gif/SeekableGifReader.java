@@ -0,0 +1,403 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.image.gif;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pump.animation.FrameCache;
+import com.pump.animation.SeekableAnimationReader;
+import com.pump.image.gif.block.GifBlock;
+import com.pump.image.gif.block.GifColorTable;
+import com.pump.image.gif.block.GifCommentExtension;
+import com.pump.image.gif.block.GifGraphicControlExtension;
+import com.pump.image.gif.block.GifGraphicControlExtension.DisposalMethod;
+import com.pump.image.gif.block.GifImageDataBlock;
+import com.pump.image.gif.block.GifImageDescriptor;
+import com.pump.image.gif.block.GifLocalColorTable;
+import com.pump.image.gif.block.GifLoopingApplicationExtension;
+import com.pump.image.gif.block.GifParser;
+import com.pump.image.gif.block.GifPlainTextExtension;
+import com.pump.io.MeasuredInputStream;
+
+/**
+ * A <code>GifReader</code> that can jump to any frame in a GIF file.
+ * <P>
+ * When this object is constructed it skims the file once to build a
+ * lightweight index of every frame: the file offset of its LZW data, its image
+ * descriptor, its color table and its graphic control extension (which
+ * includes its disposal method). No pixel data is decoded during this pass.
+ * <P>
+ * Because the frames of a GIF are composited on top of each other, rendering a
+ * frame may require rendering several earlier frames. When a frame is
+ * requested this reader starts from the nearest checkpoint before it, which is
+ * either:
+ * <ul>
+ * <li>A keyframe: a frame that does not depend on any earlier pixels. For
+ * example: an opaque frame that covers the entire image.</li>
+ * <li>A frame that was previously decoded and is still stored in the
+ * {@link FrameCache}.</li>
+ * <li>The frame this reader rendered most recently.</li>
+ * </ul>
+ * <P>
+ * Unlike the <code>GifReader</code>, this keeps a file open until
+ * {@link #close()} is called.
+ */
+public class SeekableGifReader extends GifReader implements
+		SeekableAnimationReader {
+
+	/**
+	 * The default number of bytes the frame cache may use: 64 MB.
+	 */
+	public static final long DEFAULT_CACHE_BYTE_COUNT = 64 * 1024 * 1024;
+
+	/**
+	 * The information needed to decode one frame, without any pixel data.
+	 */
+	static class FrameIndex {
+		long dataOffset;
+		int dataLength;
+		GifGraphicControlExtension gce;
+		GifImageDescriptor imageDescriptor;
+		GifLocalColorTable localTable;
+
+		/**
+		 * True if this frame can be rendered without knowing the results of any
+		 * earlier frames.
+		 */
+		boolean keyframe;
+
+		DisposalMethod getDisposalMethod() {
+			if (gce == null)
+				return DisposalMethod.NONE;
+			return gce.getDisposalMethod();
+		}
+
+		int getTransparentColorIndex() {
+			if (gce == null)
+				return -1;
+			return gce.getTransparentColorIndex();
+		}
+
+		boolean coversImage(int width, int height) {
+			return imageDescriptor.getX() <= 0 && imageDescriptor.getY() <= 0
+					&& imageDescriptor.getX() + imageDescriptor.getWidth() >= width
+					&& imageDescriptor.getY() + imageDescriptor.getHeight() >= height;
+		}
+	}
+
+	RandomAccessFile file;
+	List<FrameIndex> frameIndices = new ArrayList<>();
+	FrameCache cache;
+
+	/**
+	 * The frame that is currently rendered in {@link #bi}, or -1.
+	 */
+	int renderedFrameIndex = -1;
+	int nextFrameIndex = 0;
+
+	/**
+	 * Create a SeekableGifReader that uses a 64 MB frame cache.
+	 */
+	public SeekableGifReader(File file) throws IOException {
+		this(file, new FrameCache(DEFAULT_CACHE_BYTE_COUNT));
+	}
+
+	/**
+	 * @param file
+	 *            the GIF file to read.
+	 * @param cache
+	 *            the cache to store decoded frames in. This may be shared by
+	 *            several readers of the same file, but it should not be shared
+	 *            across different files.
+	 */
+	public SeekableGifReader(File file, FrameCache cache) throws IOException {
+		super(new FileInputStream(file), true);
+		// we only needed the header, everything else is read via the index:
+		p.close();
+
+		this.cache = cache;
+		buildIndex(file);
+		this.file = new RandomAccessFile(file, "r");
+	}
+
+	/**
+	 * Skim the GIF file and record the location and attributes of each frame.
+	 */
+	private void buildIndex(File gifFile) throws IOException {
+		int delay = 0;
+		try (MeasuredInputStream in = new MeasuredInputStream(
+				new FileInputStream(gifFile))) {
+			GifParser parser = new GifParser(in);
+			FrameIndex current = new FrameIndex();
+			FrameIndex previous = null;
+			int type = parser.getNextBlockType();
+			while (type != -1) {
+				if (type == GifBlock.IMAGE_DATA) {
+					current.dataOffset = in.getReadBytes();
+					parser.skipNextBlock();
+					current.dataLength = (int) (in.getReadBytes() - current.dataOffset);
+					current.keyframe = isKeyframe(current, previous);
+					if (current.gce != null)
+						delay += current.gce.getDelayTime();
+					frameIndices.add(current);
+					previous = current;
+					current = new FrameIndex();
+				} else {
+					GifBlock b = parser.readNextBlock();
+					if (b instanceof GifLoopingApplicationExtension) {
+						loopCount = ((GifLoopingApplicationExtension) b)
+								.getLoopCount();
+					} else if (b instanceof GifLocalColorTable) {
+						current.localTable = (GifLocalColorTable) b;
+					} else if (b instanceof GifCommentExtension) {
+						comments.add(((GifCommentExtension) b).getText());
+					} else if (b instanceof GifGraphicControlExtension) {
+						current.gce = (GifGraphicControlExtension) b;
+					} else if (b instanceof GifImageDescriptor) {
+						current.imageDescriptor = (GifImageDescriptor) b;
+					} else if (b instanceof GifPlainTextExtension) {
+						throw new IOException(
+								"This GIF decoder does not support the GIF plain text extension.");
+					}
+				}
+				type = parser.getNextBlockType();
+			}
+		}
+		frameCount = frameIndices.size();
+		duration = delay * 10;
+		finished = true;
+	}
+
+	/**
+	 * Return true if a frame can be rendered without rendering any of the
+	 * frames before it.
+	 */
+	private boolean isKeyframe(FrameIndex frame, FrameIndex previousFrame) {
+		if (previousFrame == null)
+			return true;
+		int w = getWidth();
+		int h = getHeight();
+
+		// this frame paints over every pixel, and doesn't need to restore
+		// those pixels later:
+		if (frame.coversImage(w, h) && frame.getTransparentColorIndex() == -1
+				&& frame.getDisposalMethod() != DisposalMethod.PREVIOUS)
+			return true;
+
+		// the previous frame wipes every pixel to the background:
+		if (previousFrame.coversImage(w, h)
+				&& previousFrame.getDisposalMethod() == DisposalMethod.RESTORE_BACKGROUND)
+			return true;
+
+		return false;
+	}
+
+	@Override
+	public int getLoopCount() {
+		if (loopCount >= 0)
+			return loopCount;
+		return 1;
+	}
+
+	@Override
+	public synchronized BufferedImage getNextFrame(boolean cloneImage)
+			throws IOException {
+		if (nextFrameIndex >= frameIndices.size())
+			return null;
+		return getFrame(nextFrameIndex, cloneImage);
+	}
+
+	@Override
+	public synchronized double getFrameDuration() {
+		if (nextFrameIndex == 0)
+			return 0;
+		return getFrameDuration(nextFrameIndex - 1);
+	}
+
+	@Override
+	public double getFrameDuration(int frameIndex) {
+		GifGraphicControlExtension frameGce = frameIndices.get(frameIndex).gce;
+		if (frameGce != null)
+			return ((double) frameGce.getDelayTime()) / 100.0;
+		return 0;
+	}
+
+	@Override
+	public synchronized BufferedImage getFrame(int frameIndex,
+			boolean cloneImage) throws IOException {
+		if (frameIndex < 0 || frameIndex >= frameIndices.size())
+			throw new IllegalArgumentException("frameIndex (" + frameIndex
+					+ ") must be between [0, " + frameIndices.size() + ")");
+		if (file == null)
+			throw new IllegalStateException("This reader has been closed.");
+
+		nextFrameIndex = frameIndex + 1;
+		FrameIndex target = frameIndices.get(frameIndex);
+		gce = target.gce;
+		localTable = target.localTable;
+		imageDescriptor = target.imageDescriptor;
+
+		if (bi == null) {
+			bi = new BufferedImage(getWidth(), getHeight(),
+					BufferedImage.TYPE_INT_ARGB);
+		}
+
+		if (frameIndex != renderedFrameIndex) {
+			BufferedImage cachedImage = cache.get(frameIndex);
+			if (cachedImage != null) {
+				copy(cachedImage, bi);
+				frame = createFrame(frameIndex);
+				renderedFrameIndex = frameIndex;
+			} else {
+				int startIndex = prepareCheckpoint(frameIndex);
+				for (int a = startIndex; a <= frameIndex; a++) {
+					if (a != startIndex)
+						frame.dispose(bi);
+					frame = createFrame(a);
+					frame.imageData = readImageData(frameIndices.get(a));
+					frame.render(bi);
+					frame.imageData = null;
+					renderedFrameIndex = a;
+					if (!cache.contains(a))
+						cache.put(a, copy(bi, null));
+				}
+			}
+		}
+
+		if (cloneImage)
+			return copy(bi, null);
+		return bi;
+	}
+
+	/**
+	 * Return the indexed pixels of one frame's image block, without
+	 * compositing them with earlier frames.
+	 * <P>
+	 * Unlike {@link #getFrame(int, boolean)} this never needs to decode any
+	 * other frames, and it decodes rows of pixels as they are requested.
+	 * 
+	 * @see GifReader#getNextFrameIterator()
+	 */
+	public synchronized GifFramePixelIterator getFrameIterator(int frameIndex)
+			throws IOException {
+		if (file == null)
+			throw new IllegalStateException("This reader has been closed.");
+		FrameIndex i = frameIndices.get(frameIndex);
+		GifColorTable colorTable = i.localTable == null ? global : i.localTable;
+		return new GifFramePixelIterator(i.imageDescriptor, colorTable,
+				i.getTransparentColorIndex(), readImageData(i));
+	}
+
+	/**
+	 * Prepare {@link #bi} so it can render a series of frames, and return the
+	 * index of the first frame to render. When this method returns the
+	 * previous frame has already been disposed, so the frame at the returned
+	 * index can be rendered immediately.
+	 */
+	private int prepareCheckpoint(int frameIndex) {
+		// a frame restored from the cache has no record of the pixels it
+		// covered, so we can't dispose it if it needs those pixels
+		boolean canDisposeRenderedFrame = renderedFrameIndex >= 0
+				&& (frame.previous != null || frame.disposalMethod != DisposalMethod.PREVIOUS);
+		for (int a = frameIndex; a >= 0; a--) {
+			if (a == renderedFrameIndex + 1 && canDisposeRenderedFrame) {
+				// keep going from the frame we last rendered
+				frame.dispose(bi);
+				return a;
+			}
+
+			if (a > 0
+					&& frameIndices.get(a - 1).getDisposalMethod() != DisposalMethod.PREVIOUS) {
+				BufferedImage previousImage = cache.get(a - 1);
+				if (previousImage != null) {
+					copy(previousImage, bi);
+					createFrame(a - 1).dispose(bi);
+					return a;
+				}
+			}
+
+			if (frameIndices.get(a).keyframe) {
+				int[] row = new int[bi.getWidth()];
+				for (int y = 0; y < bi.getHeight(); y++) {
+					bi.getRaster().setDataElements(0, y, row.length, 1, row);
+				}
+				if (a > 0)
+					createFrame(a - 1).dispose(bi);
+				return a;
+			}
+		}
+		throw new IllegalStateException("The first frame should be a keyframe.");
+	}
+
+	/**
+	 * Create a GifFrame without any image data. This is enough to dispose a
+	 * frame; the image data must be assigned before the frame is rendered.
+	 */
+	private GifFrame createFrame(int frameIndex) {
+		FrameIndex i = frameIndices.get(frameIndex);
+		GifColorTable colorTable = i.localTable;
+		if (colorTable == null)
+			colorTable = global;
+		if (colorTable == null)
+			throw new RuntimeException(
+					"There was no local or global color table available.");
+		return new GifFrame(lsd, i.gce, colorTable, i.imageDescriptor, null);
+	}
+
+	/**
+	 * Read the LZW-encoded data of a frame.
+	 */
+	private GifImageDataBlock readImageData(FrameIndex frameIndex)
+			throws IOException {
+		byte[] blocks = new byte[frameIndex.dataLength];
+		file.seek(frameIndex.dataOffset);
+		file.readFully(blocks);
+
+		// the first byte is the minimum code size, followed by sub-blocks
+		// that are each prefixed with their length
+		byte[] data = new byte[blocks.length];
+		int dataLength = 0;
+		int pos = 1;
+		while (pos < blocks.length) {
+			int blockSize = blocks[pos++] & 0xff;
+			if (blockSize == 0)
+				break;
+			System.arraycopy(blocks, pos, data, dataLength, blockSize);
+			dataLength += blockSize;
+			pos += blockSize;
+		}
+		byte[] trimmedData = new byte[dataLength];
+		System.arraycopy(data, 0, trimmedData, 0, dataLength);
+		return new GifImageDataBlock(blocks[0] & 0xff, trimmedData);
+	}
+
+	private static BufferedImage copy(BufferedImage src, BufferedImage dest) {
+		if (dest == null)
+			dest = new BufferedImage(src.getWidth(), src.getHeight(),
+					BufferedImage.TYPE_INT_ARGB);
+		dest.getRaster().setDataElements(0, 0, src.getRaster());
+		return dest;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (file != null) {
+			file.close();
+			file = null;
+		}
+	}
+}
@@ -53,13 +53,22 @@ import java.io.InputStream;
  * <ul>
  * <LI>There is a <code>clearCode</code>. Any time this is encountered, the
  * table of keys will be emptied.</li>
- * <LI>The first entry has to be the <code>clearCode</code>.</li>
+ * <LI>The first entry should be the <code>clearCode</code>. (This class
+ * tolerates data that omits it.)</li>
  * <LI>There are 2 ways to stop reading data. One is a special end-of-file code;
  * when this is encountered, we stop reading. The other is to simply run out of
  * incoming bytes.</li>
- * <LI>Codes can only reach 12 bits at most.</LI>
+ * <LI>Codes can only reach 12 bits at most. When the table is full, new codes
+ * are not added to it until the next <code>clearCode</code>.</LI>
  * </ul>
  * <P>
+ * This implementation reads the compressed data in large blocks and extracts
+ * codes from a 64-bit accumulator. The table is stored as flat arrays: every
+ * code is a prefix code plus one suffix byte, so strings are written backwards
+ * directly into the destination array without allocating anything per code.
+ * The fastest way to use this stream is to call {@link #read(byte[], int, int)}
+ * with a large array.
+ * <P>
  * <P>
  * These LZW classes would not be possible without Jef Poskanzer's GIF classes.
  * I have made a couple of improvements, and really shuffled the structures
@@ -70,27 +79,52 @@ import java.io.InputStream;
  */
 public class LZWInputStream extends InputStream {
 
-	private BitReader reader;
+	/** The maximum number of codes in the table. */
+	private static final int TABLE_SIZE = 4096;
+
+	/** The maximum number of bits in a code. */
+	private static final int MAX_CODE_SIZE = 12;
+
+	private InputStream in;
+
+	/** The compressed data read from the underlying stream */
+	private final byte[] inBuffer = new byte[4096];
+	private int inBufferPos = 0;
+	private int inBufferLimit = 0;
+
+	/** Unconsumed bits, with the next bit in the least significant position */
+	private long bitBuffer = 0;
+	private int bitCount = 0;
+
+	/** For each code: the code of its string without its last byte */
+	private final int[] prefix = new int[TABLE_SIZE];
+	/** For each code: the last byte of its string */
+	private final byte[] suffix = new byte[TABLE_SIZE];
+	/** For each code: the first byte of its string */
+	private final byte[] first = new byte[TABLE_SIZE];
+	/** For each code: the length of its string */
+	private final int[] length = new int[TABLE_SIZE];
 
-	/** The data ready to be read */
-	private byte[] outgoingData = null;
 	/**
-	 * The ptr to outgoingData indicating the first byte that has not yet been
-	 * sent.
+	 * Decoded data that didn't fit in the array passed to
+	 * {@link #read(byte[], int, int)}. A string is never longer than the
+	 * number of codes in the table.
 	 */
-	private int outgoingDataPtr = -1;
+	private final byte[] pending = new byte[TABLE_SIZE];
+	private int pendingPos = 0;
+	private int pendingLimit = 0;
 
-	/** The magic table that stores all our keys */
-	private byte[][] data = new byte[4096][];
+	/** Used by {@link #read()} */
+	private final byte[] singleByte = new byte[1];
 
 	/** The number of bits we read at a time */
-	private int n_bits;
+	private int codeSize;
 
 	/** The code that tells us to clear out the table */
-	private int clearCode;
+	private final int clearCode;
 
 	/** The code that tells us the file is finished */
-	private int eofCode;
+	private final int eofCode;
 
 	/** The index in the table we're pointing to */
 	private int availableCode;
@@ -98,14 +132,11 @@ public class LZWInputStream extends InputStream {
 	/** Whether we're finished reading or not */
 	private boolean finished = false;
 
-	/** The last code we read */
+	/** The last code we read, or -1 if the table was just cleared */
 	private int lastCode = -1;
 
-	/** A variable described in the algorithm */
-	private int character = -1;
-
 	/** The initial size we were passed */
-	private int initialSize;
+	private final int initialSize;
 
 	/**
 	 * Constructs a <code>LZWInputStream</code>.
@@ -122,227 +153,160 @@ public class LZWInputStream extends InputStream {
 	 *            block.
 	 */
 	public LZWInputStream(InputStream in, int initSize) {
-		reader = new BitReader(in);
-		clearCode = (int) (Math.pow(2, initSize) + .5);
+		if (initSize < 1 || initSize >= MAX_CODE_SIZE)
+			throw new IllegalArgumentException("initSize (" + initSize
+					+ ") must be between [1, " + (MAX_CODE_SIZE - 1) + "]");
+		this.in = in;
 		initialSize = initSize;
-		n_bits = initSize + 1;
+		clearCode = 1 << initSize;
 		eofCode = clearCode + 1;
-		availableCode = eofCode + 1;
-	}
-
-	private void iterate() throws IOException {
-		if (outgoingData != null && outgoingDataPtr < outgoingData.length) {
-			throw new RuntimeException(
-					"New data should not have be unpacked if there is still some outgoing data that has not yet been read.");
-		}
-		int newCode = reader.read(n_bits); // Read NEW_CODE
-		outgoingData = null;
-		if (newCode == clearCode) {
-			clearTable();
-
-			newCode = reader.read(n_bits);
-			if (newCode != -1) {
-				lastCode = newCode; // read OLD_CODE
-				outgoingData = new byte[1]; // output
-											// OLD_CODE
-				outgoingData[0] = (byte) lastCode;
-				character = lastCode; // CHARACTER = OLD_CODE
-			} else {
-				finished = true;
-			}
-		} else if (newCode == eofCode || newCode == -1) {
-			finished = true;
-		} else {
-			byte[] string = data[newCode]; // get translation of NEW_CODE)
-			if (string == null) { // if NEW_CODE is not in table
-				if (lastCode == -1)
-					throw new RuntimeException(
-							"The previous code read was -1, which probably means that this LZW data didn't begin with a clear-code like it should have.");
-				string = data[lastCode]; // STRING = get translation of
-											// OLD_CODE
-
-				if (string == null) {
-					throw new NullPointerException("Code " + lastCode
-							+ " not in table.");
-				}
-				string = concatenate(string, (byte) character);// STRING =
-																// STRING +
-																// CHARACTER
-			}
-			outgoingData = string; // output STRING
-
-			character = string[0]; // CHARACTER = first character in STRING
-			// add OLD_CODE+CHARACTER to table:
-			data[availableCode] = concatenate(data[lastCode], (byte) character);
-
-			availableCode++;
-			lastCode = newCode;
+		for (int a = 0; a < clearCode; a++) {
+			prefix[a] = -1;
+			suffix[a] = (byte) a;
+			first[a] = (byte) a;
+			length[a] = 1;
 		}
-		n_bits = Math.min(12,
-				(int) (Math.log(availableCode) / Math.log(2) + 1.0D));
-
-		outgoingDataPtr = 0;
+		clearTable();
 	}
 
+	@Override
 	public int read() throws IOException {
-		if (finished)
+		if (pendingPos < pendingLimit)
+			return pending[pendingPos++] & 0xff;
+		int k = read(singleByte, 0, 1);
+		if (k == -1)
 			return -1;
-		if (outgoingData != null) {
-			if (outgoingDataPtr < outgoingData.length) {
-				int v = outgoingData[outgoingDataPtr++] & 0xFF;
-				return v;
-			}
-		}
-		iterate();
-		return read();
+		return singleByte[0] & 0xff;
 	}
 
+	@Override
 	public int read(byte[] b, int offset, int len) throws IOException {
-		if (finished)
-			return -1;
-		if (outgoingData == null || outgoingDataPtr == outgoingData.length) {
-			iterate();
-			return read(b, offset, len);
-		}
-		int available = outgoingData.length - outgoingDataPtr;
-		if (available < len)
-			len = available;
-		System.arraycopy(outgoingData, outgoingDataPtr, b, offset, len);
-		outgoingDataPtr += len;
-		return len;
-	}
-
-	public void close() throws IOException {
-		reader.close();
-	}
-
-	public int available() throws IOException {
-		if (outgoingData == null)
+		if (offset < 0 || len < 0 || offset + len > b.length)
+			throw new IndexOutOfBoundsException("offset = " + offset
+					+ ", len = " + len + ", b.length = " + b.length);
+		if (len == 0)
 			return 0;
-		return outgoingData.length - outgoingDataPtr;
-	}
 
-	private void clearTable() {
-		int a = 0;
-		while (a < clearCode) {
-			data[a] = new byte[1];
-			data[a][0] = (byte) a;
-			a++;
-		}
-		while (a < data.length) {
-			data[a] = null;
-			a++;
+		int written = 0;
+		if (pendingPos < pendingLimit) {
+			written = Math.min(len, pendingLimit - pendingPos);
+			System.arraycopy(pending, pendingPos, b, offset, written);
+			pendingPos += written;
+			return written;
 		}
-		availableCode = eofCode + 1;
-		n_bits = initialSize + 1;
-	}
 
-	/** Just a convenient call to concatenate b1+b2 */
-	private byte[] concatenate(byte[] b1, byte b2) {
-		byte[] t = new byte[b1.length + 1];
-		System.arraycopy(b1, 0, t, 0, b1.length);
-		t[b1.length] = b2;
-		return t;
-	}
-}
-
-/**
- * This slices the right-most bits of new bytes off an InputStream.
- */
-class BitReader {
-	private InputStream in;
-
-	/** Used to extract the right-most bits out of bytes of data. */
-	private static final int[] masks = { 0x0000, 0x0001, 0x0003, 0x0007,
-			0x000F, 0x001F, 0x003F, 0x007F, 0x00FF, 0x01FF, 0x03FF, 0x07FF,
-			0x0FFF, 0x1FFF, 0x3FFF, 0x7FFF, 0xFFFF };
-
-	/**
-	 * The number of bits that have been read off of the current byte already
-	 */
-	private int bitCounter = 0;
+		while (written < len && !finished) {
+			int code = readCode();
+			if (code == -1 || code == eofCode) {
+				finished = true;
+				break;
+			}
+			if (code == clearCode) {
+				clearTable();
+				continue;
+			}
 
-	/** The current byte we're splicing */
-	private int current = 0;
+			if (lastCode != -1) {
+				if (code < availableCode) {
+					if (availableCode < TABLE_SIZE)
+						addCode(lastCode, first[code]);
+				} else if (code == availableCode && availableCode < TABLE_SIZE) {
+					// the string for this code is the last string plus its
+					// own first character
+					addCode(lastCode, first[lastCode]);
+				} else {
+					throw new IOException("Code " + code + " not in table.");
+				}
+			} else if (code > clearCode) {
+				throw new IOException("Code " + code + " not in table.");
+			}
+			lastCode = code;
 
-	/** If this is true, calls to read() will always return -1 */
-	private boolean finishedReading = false;
+			int stringLength = length[code];
+			if (written + stringLength <= len) {
+				writeString(code, b, offset + written);
+				written += stringLength;
+			} else {
+				writeString(code, pending, 0);
+				int k = len - written;
+				System.arraycopy(pending, 0, b, offset + written, k);
+				written += k;
+				pendingPos = k;
+				pendingLimit = stringLength;
+			}
+		}
 
-	/** We use this to jump-start the reading process */
-	private boolean startedReading = false;
+		if (written == 0 && finished)
+			return -1;
+		return written;
+	}
 
 	/**
-	 * Constructs a <code>BitReader</code>.
-	 * 
-	 * @param in
-	 *            the <code>InputStream</code> to gather bytes from.
+	 * Write the string a code represents.
 	 */
-	public BitReader(InputStream in) {
-		this.in = in;
+	private void writeString(int code, byte[] dest, int offset) {
+		int i = offset + length[code] - 1;
+		while (i > offset) {
+			dest[i--] = suffix[code];
+			code = prefix[code];
+		}
+		dest[offset] = suffix[code];
 	}
 
-	/**
-	 * This is only used if the LZWInputStream gets closed early for some
-	 * reason.
-	 * 
-	 * @throws IOException
-	 *             if an IO problem occurs.
-	 */
-	public void close() throws IOException {
-		finishedReading = true;
-		in.close();
+	private void addCode(int prefixCode, byte suffixByte) {
+		prefix[availableCode] = prefixCode;
+		suffix[availableCode] = suffixByte;
+		first[availableCode] = first[prefixCode];
+		length[availableCode] = length[prefixCode] + 1;
+		availableCode++;
+		codeSize = Math.min(MAX_CODE_SIZE,
+				32 - Integer.numberOfLeadingZeros(availableCode));
 	}
 
 	/**
-	 * Reads <code>bitsToRead</code>-many bits from the underlying
-	 * <code>InputStream</code>.
-	 * 
-	 * @param bitsToRead
-	 *            the number of bits to read.
-	 *            <P>
-	 *            If the <code>InputStream</code> is empty, then <code>-1</code>
-	 *            is returned.
-	 *            <P>
-	 *            If this exceeds the number of bits left in the
-	 *            <code>InputStream</code>, then an <code>IOException</code> is
-	 *            thrown.
-	 * @return the value of <code>bitsToRead</code>-many bits from the
-	 *         <code>InputStream</code>, or <code>-1</code> if there is no more
-	 *         data to read.
-	 * @throws IOException
-	 *             if an <code>IOException</code> occurred while reading the
-	 *             underlying stream, or if
+	 * Read the next code, or return -1 if there isn't enough data left.
 	 */
-	public int read(int bitsToRead) throws IOException {
-		if (finishedReading)
-			return -1;
-		if (startedReading == false) {
-			current = in.read();
-			startedReading = true;
-		}
-		int code = 0;
-		int bitsRead = 0;
-		int toRead = 0;
-		while (bitsRead < bitsToRead) {
-			// how many bits can we get this pass?
-			// we want n_bits, but we might have to carry over into the next bit
-			toRead = Math.min(bitsToRead - bitsRead, 8 - bitCounter);
-			code = ((current >> bitCounter & masks[toRead]) << bitsRead) + code;
-			bitCounter += toRead;
-			if (bitCounter == 8) {
-				bitCounter = 0;
-				current = in.read();
-				if (current == -1) {
-					/**
-					 * This is a cheap trick. Some GIFs simply stop... without
-					 * an EOF code.
-					 */
-					finishedReading = true;
+	private int readCode() throws IOException {
+		while (bitCount < codeSize) {
+			if (inBufferPos == inBufferLimit) {
+				if (in == null)
+					return -1;
+				inBufferLimit = in.read(inBuffer);
+				inBufferPos = 0;
+				if (inBufferLimit == -1) {
+					inBufferLimit = 0;
 					return -1;
 				}
 			}
-			bitsRead += toRead;
+			// fill as many whole bytes as we can fit in the accumulator
+			while (bitCount <= 56 && inBufferPos < inBufferLimit) {
+				bitBuffer |= ((long) (inBuffer[inBufferPos++] & 0xff)) << bitCount;
+				bitCount += 8;
+			}
 		}
+		int code = (int) bitBuffer & ((1 << codeSize) - 1);
+		bitBuffer >>>= codeSize;
+		bitCount -= codeSize;
 		return code;
 	}
-}
\ No newline at end of file
+
+	@Override
+	public void close() throws IOException {
+		finished = true;
+		if (in != null) {
+			in.close();
+			in = null;
+		}
+	}
+
+	@Override
+	public int available() throws IOException {
+		return pendingLimit - pendingPos;
+	}
+
+	private void clearTable() {
+		availableCode = eofCode + 1;
+		codeSize = initialSize + 1;
+		lastCode = -1;
+	}
+}
@@ -14,6 +14,7 @@ import java.awt.Color;
 
 import com.pump.data.AbstractAttributeDataImpl;
 import com.pump.data.Key;
+import com.pump.data.KeySlots;
 
 /**
  * This is an immutable set of attributes used to render a shadow.
@@ -30,6 +31,17 @@ public class ShadowAttributes extends AbstractAttributeDataImpl {
 	public static final Key<Color> KEY_SHADOW_COLOR = new Key<>(Color.class,
 			"shadowColor", Color.BLACK);
 
+	private static final KeySlots KEY_SLOTS = new KeySlots(
+			KEY_SHADOW_X_OFFSET, KEY_SHADOW_Y_OFFSET, KEY_SHADOW_KERNEL_RADIUS,
+			KEY_SHADOW_COLOR);
+
+	/**
+	 * This constructor is used by the AttributeDataMapConverter.
+	 */
+	@SuppressWarnings("unused")
+	private ShadowAttributes() {
+	}
+
 	/**
 	 * 
 	 * @param xOffset
@@ -82,6 +94,11 @@ public class ShadowAttributes extends AbstractAttributeDataImpl {
 		return getAttribute(KEY_SHADOW_Y_OFFSET);
 	}
 
+	@Override
+	protected KeySlots getKeySlots() {
+		return KEY_SLOTS;
+	}
+
 	@Override
 	public String toString() {
 		return "ShadowAttribute[ " + toCSSString() + "]";
@@ -20,14 +20,17 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.PathIterator;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 import com.pump.awt.TransformedTexturePaint;
 import com.pump.geom.Clipper;
 import com.pump.geom.EmptyPathException;
 import com.pump.geom.RectangularTransform;
 import com.pump.geom.ShapeStringUtils;
+import com.pump.util.Cache;
 
 /**
  * This is an instruction to render an image.
@@ -127,36 +130,43 @@ public class ImageInstruction extends Transition2DInstruction {
 
 	@Override
 	public void paint(Graphics2D g, BufferedImage frameA, BufferedImage frameB) {
-		g = (Graphics2D) g.create();
+		paint(g, frameA, frameB, null);
+	}
 
+	/**
+	 * Render this instruction, optionally reusing the antialiased clipping
+	 * calculated for an identical instruction.
+	 * 
+	 * @param clipCache
+	 *            an optional cache of clipping shapes. When this instruction
+	 *            is antialiased and has a transform, the shape it fills is
+	 *            calculated with several expensive <code>Area</code>
+	 *            operations. If an earlier instruction had the same clipping,
+	 *            transform and image size then that shape is reused.
+	 */
+	void paint(Graphics2D g, BufferedImage frameA, BufferedImage frameB,
+			Cache<ClipKey, Shape> clipCache) {
 		BufferedImage img = isFirstFrame ? frameA : frameB;
+		Shape s = null;
+		boolean antialiased = RenderingHints.VALUE_ANTIALIAS_ON.equals(g
+				.getRenderingHint(RenderingHints.KEY_ANTIALIASING));
+		if (antialiased) {
+			s = getAntialiasedShape(img.getWidth(), img.getHeight(), clipCache);
+			if (s == null) {
+				// nothing to render here
+				return;
+			}
+		}
+
+		g = (Graphics2D) g.create();
 
 		if (opacity != 1) {
 			g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
 					opacity));
 		}
 
-		if (RenderingHints.VALUE_ANTIALIAS_ON.equals(g
-				.getRenderingHint(RenderingHints.KEY_ANTIALIASING))) {
+		if (antialiased) {
 			Rectangle r = new Rectangle(0, 0, img.getWidth(), img.getHeight());
-			Shape s = clipping == null ? r : clipping;
-
-			if (transform != null) {
-				try {
-					AffineTransform i = transform.createInverse();
-					// TODO: if we use AreaX the Swivel transition fails
-					Area z = new Area();
-					z.add(new Area(s));
-					z.transform(i);
-					z.intersect(new Area(r));
-					z.transform(transform);
-					s = z;
-				} catch (EmptyPathException | NoninvertibleTransformException e) {
-					// nothing to render here
-					return;
-				}
-			}
-
 			g.setPaint(new TransformedTexturePaint(img, r, transform));
 			g.fill(s);
 		} else {
@@ -168,4 +178,121 @@ public class ImageInstruction extends Transition2DInstruction {
 
 		g.dispose();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Return the shape to fill with the transformed image, or null if nothing
+	 * should be rendered.
+	 */
+	private Shape getAntialiasedShape(int imageWidth, int imageHeight,
+			Cache<ClipKey, Shape> clipCache) {
+		Rectangle r = new Rectangle(0, 0, imageWidth, imageHeight);
+		Shape s = clipping == null ? r : clipping;
+		if (transform == null)
+			return s;
+
+		ClipKey key = null;
+		if (clipCache != null) {
+			key = new ClipKey(s, transform, imageWidth, imageHeight);
+			Shape cachedShape = clipCache.get(key);
+			if (cachedShape != null)
+				return cachedShape == ClipKey.EMPTY ? null : cachedShape;
+		}
+
+		Shape returnValue;
+		try {
+			AffineTransform i = transform.createInverse();
+			// TODO: if we use AreaX the Swivel transition fails
+			Area z = new Area();
+			z.add(new Area(s));
+			z.transform(i);
+			z.intersect(new Area(r));
+			z.transform(transform);
+			returnValue = z;
+		} catch (EmptyPathException | NoninvertibleTransformException e) {
+			returnValue = null;
+		}
+
+		if (key != null)
+			clipCache.put(key, returnValue == null ? ClipKey.EMPTY
+					: returnValue);
+		return returnValue;
+	}
+
+	/**
+	 * This identifies the clipping, transform and image size of an
+	 * antialiased ImageInstruction.
+	 */
+	static class ClipKey {
+		/** A cached value indicating there is nothing to render. */
+		static final Shape EMPTY = new Rectangle();
+
+		final int[] types;
+		final double[] coords;
+		final double[] matrix = new double[6];
+		final int imageWidth, imageHeight;
+		final int hashCode;
+
+		ClipKey(Shape clipping, AffineTransform transform, int imageWidth,
+				int imageHeight) {
+			this.imageWidth = imageWidth;
+			this.imageHeight = imageHeight;
+			transform.getMatrix(matrix);
+
+			int[] typeList = new int[16];
+			double[] coordList = new double[96];
+			int typeCount = 0;
+			int coordCount = 0;
+			double[] segment = new double[6];
+			PathIterator iter = clipping.getPathIterator(null);
+			while (!iter.isDone()) {
+				int type = iter.currentSegment(segment);
+				if (typeCount == typeList.length)
+					typeList = Arrays.copyOf(typeList, typeCount * 2);
+				if (coordCount + 6 > coordList.length)
+					coordList = Arrays.copyOf(coordList, coordList.length * 2);
+				typeList[typeCount++] = type;
+				int k = getCoordCount(type);
+				System.arraycopy(segment, 0, coordList, coordCount, k);
+				coordCount += k;
+				iter.next();
+			}
+			types = Arrays.copyOf(typeList, typeCount);
+			coords = Arrays.copyOf(coordList, coordCount);
+
+			hashCode = Arrays.hashCode(coords) + 31 * Arrays.hashCode(matrix)
+					+ imageWidth * 1013 + imageHeight;
+		}
+
+		private static int getCoordCount(int segmentType) {
+			switch (segmentType) {
+			case PathIterator.SEG_MOVETO:
+			case PathIterator.SEG_LINETO:
+				return 2;
+			case PathIterator.SEG_QUADTO:
+				return 4;
+			case PathIterator.SEG_CUBICTO:
+				return 6;
+			default:
+				return 0;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ClipKey))
+				return false;
+			ClipKey other = (ClipKey) obj;
+			return hashCode == other.hashCode
+					&& imageWidth == other.imageWidth
+					&& imageHeight == other.imageHeight
+					&& Arrays.equals(matrix, other.matrix)
+					&& Arrays.equals(types, other.types)
+					&& Arrays.equals(coords, other.coords);
+		}
+	}
+}
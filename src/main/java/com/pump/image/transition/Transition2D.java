@@ -42,19 +42,30 @@ public abstract class Transition2D extends AbstractTransition {
 	 */
 	protected final void doPaint(Graphics2D g, BufferedImage frameA,
 			BufferedImage frameB, float progress) {
+		Transition2DInstruction[] i = getPaintInstructions(progress,
+				new Dimension(frameA.getWidth(), frameA.getHeight()));
+		for (int a = 0; a < i.length; a++) {
+			i[a].paint(g, frameA, frameB);
+		}
+	}
+
+	/**
+	 * Return the instructions {@link #paint(Graphics2D, BufferedImage,
+	 * BufferedImage, float)} renders. This is usually the same as
+	 * {@link #getInstructions(float, Dimension)}, except at the very beginning
+	 * and end of this transition.
+	 */
+	Transition2DInstruction[] getPaintInstructions(float progress,
+			Dimension size) {
 		if (progress < .001) {
-			new ImageInstruction(true, 1).paint(g, frameA, frameA);
+			return new Transition2DInstruction[] { new ImageInstruction(true,
+					1) };
 		} else if (progress < .999) {
-			Transition2DInstruction[] i = getInstructions(progress,
-					new Dimension(frameA.getWidth(), frameA.getHeight()));
-			for (int a = 0; a < i.length; a++) {
-				i[a].paint(g, frameA, frameB);
-			}
-		} else {
-			// some transitions show seams (hairline edges) at t=100%,
-			// so if we're near t=100% just manually simplify what we're
-			// painting
-			new ImageInstruction(false, 1).paint(g, frameB, frameB);
+			return getInstructions(progress, size);
 		}
+		// some transitions show seams (hairline edges) at t=100%,
+		// so if we're near t=100% just manually simplify what we're
+		// painting
+		return new Transition2DInstruction[] { new ImageInstruction(false, 1) };
 	}
-}
\ No newline at end of file
+}
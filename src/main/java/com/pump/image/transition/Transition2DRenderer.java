@@ -0,0 +1,366 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.image.transition;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.pump.animation.ResettableAnimationReader;
+import com.pump.image.transition.ImageInstruction.ClipKey;
+import com.pump.thread.DaemonThreadFactory;
+import com.pump.util.Cache;
+
+/**
+ * This renders every frame of a {@link Transition2D} as an animation, using
+ * several threads.
+ * <P>
+ * The frames are evenly spaced from a progress of zero to a progress of one.
+ * While the caller consumes a frame, the following frames are already being
+ * calculated and painted on other threads into images borrowed from a pool.
+ * This means a consumer like {@link com.pump.animation.quicktime.JPEGMovWriter}
+ * or {@link com.pump.image.gif.GifWriter} can encode frames on one thread while
+ * the other processors render the frames that follow.
+ * <P>
+ * The antialiased clipping of each {@link ImageInstruction} is cached, so if
+ * several frames contain the same clipping and transform, the expensive
+ * <code>Area</code> calculations are only performed once.
+ * <P>
+ * Calls to {@link Transition2D#getInstructions(float, Dimension)} are
+ * synchronized, so the transition does not need to be thread-safe, but the
+ * two images must not be modified while this renderer is in use.
+ */
+public class Transition2DRenderer implements ResettableAnimationReader,
+		Closeable {
+
+	/**
+	 * The maximum number of clipping shapes retained per renderer.
+	 */
+	public static final int CLIP_CACHE_SIZE = 200;
+
+	/**
+	 * Return the default rendering hints: antialiasing, bilinear interpolation
+	 * and quality rendering.
+	 */
+	public static RenderingHints createDefaultRenderingHints() {
+		RenderingHints hints = new RenderingHints(
+				RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		hints.put(RenderingHints.KEY_ALPHA_INTERPOLATION,
+				RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+		hints.put(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		hints.put(RenderingHints.KEY_RENDERING,
+				RenderingHints.VALUE_RENDER_QUALITY);
+		return hints;
+	}
+
+	protected final Transition2D transition;
+	protected final BufferedImage frameA, frameB;
+	protected final int frameCount;
+	protected final double frameDuration;
+	protected final RenderingHints hints;
+
+	final int imageType;
+	final Dimension size;
+	final Cache<ClipKey, Shape> clipCache = new Cache<>(CLIP_CACHE_SIZE);
+
+	ExecutorService executor;
+	final boolean ownsExecutor;
+	final int maxPendingFrames;
+
+	/** Images that can be reused. */
+	final Deque<BufferedImage> imagePool = new ArrayDeque<>();
+	/** Frames that are rendering, in order. */
+	final Deque<Future<BufferedImage>> pendingFrames = new ArrayDeque<>();
+	/** The index of the next frame to submit to the executor. */
+	int nextSubmittedFrame = 0;
+	/** The index of the next frame to return. */
+	int nextFrame = 0;
+	/** The frame last returned, if we still own it. */
+	BufferedImage lastFrame;
+
+	/**
+	 * Create a renderer that uses one thread per available processor.
+	 * 
+	 * @param transition
+	 *            the transition to render.
+	 * @param frameA
+	 *            the first frame.
+	 * @param frameB
+	 *            the second frame. This must be the same size as
+	 *            <code>frameA</code>.
+	 * @param frameCount
+	 *            the number of frames to render. This must be at least 1.
+	 * @param duration
+	 *            the duration of this animation, in seconds.
+	 */
+	public Transition2DRenderer(Transition2D transition, BufferedImage frameA,
+			BufferedImage frameB, int frameCount, double duration) {
+		this(transition, frameA, frameB, frameCount, duration,
+				createDefaultRenderingHints(), null);
+	}
+
+	/**
+	 * @param transition
+	 *            the transition to render.
+	 * @param frameA
+	 *            the first frame.
+	 * @param frameB
+	 *            the second frame. This must be the same size as
+	 *            <code>frameA</code>.
+	 * @param frameCount
+	 *            the number of frames to render. This must be at least 1.
+	 * @param duration
+	 *            the duration of this animation, in seconds.
+	 * @param hints
+	 *            the rendering hints to paint every frame with.
+	 * @param executor
+	 *            an optional executor to render frames with. If this is null
+	 *            then this renderer creates its own threads (one per
+	 *            available processor), which are shut down when this renderer
+	 *            is closed.
+	 */
+	public Transition2DRenderer(Transition2D transition, BufferedImage frameA,
+			BufferedImage frameB, int frameCount, double duration,
+			RenderingHints hints, ExecutorService executor) {
+		if (transition == null || frameA == null || frameB == null
+				|| hints == null)
+			throw new NullPointerException();
+		if (frameA.getWidth() != frameB.getWidth()
+				|| frameA.getHeight() != frameB.getHeight())
+			throw new IllegalArgumentException(
+					"the two images must be the same dimensions ("
+							+ frameA.getWidth() + "x" + frameA.getHeight()
+							+ " != " + frameB.getWidth() + "x"
+							+ frameB.getHeight());
+		if (frameCount < 1)
+			throw new IllegalArgumentException("frameCount (" + frameCount
+					+ ") must be at least 1");
+		this.transition = transition;
+		this.frameA = frameA;
+		this.frameB = frameB;
+		this.frameCount = frameCount;
+		this.frameDuration = duration / frameCount;
+		this.hints = (RenderingHints) hints.clone();
+		size = new Dimension(frameA.getWidth(), frameA.getHeight());
+		imageType = frameA.getColorModel().hasAlpha()
+				|| frameB.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB
+				: BufferedImage.TYPE_INT_RGB;
+
+		int threadCount = Runtime.getRuntime().availableProcessors();
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threadCount,
+					new DaemonThreadFactory("Transition2DRenderer"));
+			ownsExecutor = true;
+		} else {
+			ownsExecutor = false;
+		}
+		this.executor = executor;
+		maxPendingFrames = 2 * threadCount;
+	}
+
+	/**
+	 * Return the progress of a frame, from zero to one.
+	 */
+	public float getProgress(int frameIndex) {
+		if (frameCount == 1)
+			return 1;
+		return ((float) frameIndex) / ((float) (frameCount - 1));
+	}
+
+	@Override
+	public synchronized BufferedImage getNextFrame(boolean cloneImage)
+			throws IOException {
+		if (executor == null)
+			throw new IllegalStateException("This renderer has been closed.");
+		if (lastFrame != null) {
+			recycle(lastFrame);
+			lastFrame = null;
+		}
+		if (nextFrame >= frameCount)
+			return null;
+
+		submitFrames();
+		Future<BufferedImage> future = pendingFrames.removeFirst();
+		nextFrame++;
+		submitFrames();
+
+		BufferedImage bi = getResult(future);
+		if (!cloneImage)
+			lastFrame = bi;
+		return bi;
+	}
+
+	/**
+	 * Submit frames to the executor until we reach the end of the animation
+	 * or {@link #maxPendingFrames}.
+	 */
+	private void submitFrames() {
+		while (nextSubmittedFrame < frameCount
+				&& pendingFrames.size() < maxPendingFrames) {
+			final float progress = getProgress(nextSubmittedFrame++);
+			pendingFrames.add(executor.submit(new Callable<BufferedImage>() {
+				@Override
+				public BufferedImage call() {
+					return render(progress);
+				}
+			}));
+		}
+	}
+
+	private BufferedImage getResult(Future<BufferedImage> future)
+			throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Render one frame. This is called on the executor's threads.
+	 */
+	protected BufferedImage render(float progress) {
+		Transition2DInstruction[] instructions;
+		synchronized (transition) {
+			instructions = transition.getPaintInstructions(progress, size);
+		}
+
+		BufferedImage bi = borrowImage();
+		Graphics2D g = bi.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.setColor(Color.black);
+		g.fillRect(0, 0, size.width, size.height);
+		g.setComposite(AlphaComposite.SrcOver);
+		g.setRenderingHints(hints);
+		for (Transition2DInstruction instruction : instructions) {
+			if (instruction instanceof ImageInstruction) {
+				((ImageInstruction) instruction).paint(g, frameA, frameB,
+						clipCache);
+			} else {
+				instruction.paint(g, frameA, frameB);
+			}
+		}
+		g.dispose();
+		return bi;
+	}
+
+	private BufferedImage borrowImage() {
+		synchronized (imagePool) {
+			BufferedImage bi = imagePool.poll();
+			if (bi != null)
+				return bi;
+		}
+		return new BufferedImage(size.width, size.height, imageType);
+	}
+
+	private void recycle(BufferedImage bi) {
+		synchronized (imagePool) {
+			imagePool.add(bi);
+		}
+	}
+
+	/**
+	 * Wait for all pending frames to finish and return them to the image
+	 * pool.
+	 */
+	private void discardPendingFrames() {
+		while (!pendingFrames.isEmpty()) {
+			Future<BufferedImage> future = pendingFrames.removeFirst();
+			try {
+				recycle(future.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				// this frame is being discarded anyway
+			}
+		}
+	}
+
+	@Override
+	public synchronized void reset() {
+		discardPendingFrames();
+		if (lastFrame != null) {
+			recycle(lastFrame);
+			lastFrame = null;
+		}
+		nextFrame = 0;
+		nextSubmittedFrame = 0;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (executor == null)
+			return;
+		discardPendingFrames();
+		if (ownsExecutor)
+			executor.shutdown();
+		executor = null;
+		lastFrame = null;
+		synchronized (imagePool) {
+			imagePool.clear();
+		}
+		clipCache.clear();
+	}
+
+	@Override
+	public double getDuration() {
+		return frameDuration * frameCount;
+	}
+
+	@Override
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	@Override
+	public int getLoopCount() {
+		return 1;
+	}
+
+	@Override
+	public double getFrameDuration() {
+		return frameDuration;
+	}
+
+	@Override
+	public int getWidth() {
+		return size.width;
+	}
+
+	@Override
+	public int getHeight() {
+		return size.height;
+	}
+}
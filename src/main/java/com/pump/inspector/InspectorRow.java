@@ -19,6 +19,7 @@ import javax.swing.JLabel;
 
 import com.pump.data.AbstractAttributeDataImpl;
 import com.pump.data.Key;
+import com.pump.data.KeySlots;
 
 /**
  * This is a bean describing the contents of an inspector row.
@@ -45,6 +46,11 @@ public class InspectorRow extends AbstractAttributeDataImpl {
 	public static final Key<Float> PROPERTY_ROW_VERTICAL_WEIGHT = new Key<>(
 			Float.class, InspectorRow.class.getName() + "#rowVerticalWeight");
 
+	private static final KeySlots KEY_SLOTS = new KeySlots(
+			PROPERTY_LEAD_COMPONENT, PROPERTY_MAIN_COMPONENT,
+			PROPERTY_MAIN_COMPONENT_STRETCH_TO_FILL,
+			PROPERTY_ROW_VERTICAL_WEIGHT);
+
 	public InspectorRow(JComponent leadComponent, JComponent mainComponent,
 			boolean mainComponentStretchToFill, float rowVerticalWeight) {
 		setLeadComponent(leadComponent);
@@ -59,6 +65,11 @@ public class InspectorRow extends AbstractAttributeDataImpl {
 		}
 	}
 
+	@Override
+	protected KeySlots getKeySlots() {
+		return KEY_SLOTS;
+	}
+
 	@Override
 	public void addPropertyChangeListener(PropertyChangeListener listener) {
 		super.addPropertyChangeListener(listener);
@@ -0,0 +1,838 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.pump.thread.DaemonThreadFactory;
+
+/**
+ * This appends text to a file on a shared background writer thread.
+ * <p>
+ * Threads that call {@link #append(String)} only publish the String to a
+ * bounded lock-free ring buffer, so they never wait for I/O and never contend
+ * for a lock. A single writer thread (which is shared by every
+ * AsyncFileAppender) drains the ring buffer, encodes every pending String into
+ * one buffer and writes that buffer to a <code>FileChannel</code> that stays
+ * open. So a burst of thousands of messages costs a handful of write calls
+ * instead of thousands of open/write/close calls.
+ * <p>
+ * This class also supports:
+ * <ul>
+ * <li>A {@link FlushPolicy} that controls when written data is forced to the
+ * storage device.</li>
+ * <li>An {@link OverflowPolicy} that controls what happens when the ring
+ * buffer is full.</li>
+ * <li>Rolling the file over when it exceeds a maximum size or a time interval
+ * passes. Old files are renamed "name.1.txt", "name.2.txt", etc.</li>
+ * </ul>
+ * <p>
+ * Messages are always completely encoded before they are written, so if
+ * writing fails (for example: the disk is full, or a file can't be renamed
+ * while rolling over) the writer thread keeps the unwritten bytes and the
+ * pending messages and retries periodically. See {@link #isWriterFailed()}.
+ * <p>
+ * The writer thread is a daemon thread that starts with the first message and
+ * stops when every appender is closed. One shutdown hook makes sure every
+ * appender's pending messages are written before the JVM exits. Messages
+ * appended after {@link #close()} are written synchronously.
+ */
+public class AsyncFileAppender implements Closeable, Flushable {
+
+	/**
+	 * This controls what {@link AsyncFileAppender#append(String)} does when
+	 * the ring buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * Wait until the writer thread makes room. No messages are lost.
+		 */
+		BLOCK,
+		/**
+		 * Discard the message. The number of discarded messages is written to
+		 * the file as soon as the writer thread catches up.
+		 */
+		DROP
+	}
+
+	/**
+	 * This controls when the writer thread forces data to the storage device.
+	 * Data is always written to the file (and therefore visible to other
+	 * processes) as soon as the writer thread catches up; this only controls
+	 * when it is also synced to disk.
+	 */
+	public enum FlushPolicy {
+		/**
+		 * Never force data to disk; let the operating system decide.
+		 */
+		NONE,
+		/**
+		 * Force data to disk after every batch of messages.
+		 */
+		BATCH,
+		/**
+		 * Force data to disk at most once per flush interval.
+		 * 
+		 * @see AsyncFileAppender#setFlushInterval(long)
+		 */
+		PERIODIC
+	}
+
+	private static final int DEFAULT_CAPACITY = 8192;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long MIN_RETRY_MILLIS = 100;
+	private static final long MAX_RETRY_MILLIS = 10000;
+
+	/**
+	 * The appenders the writer thread is responsible for. An appender is
+	 * added when it receives its first message, and removed when the writer
+	 * thread finishes it after it is closed.
+	 */
+	private static final List<AsyncFileAppender> ACTIVE_APPENDERS =
+			new CopyOnWriteArrayList<>();
+
+	/**
+	 * The thread that writes every appender's messages, or null if no
+	 * appender is active. This is guarded by AsyncFileAppender.class.
+	 */
+	private static volatile Thread writerThread;
+	private static volatile boolean writerParked;
+	private static Thread shutdownHook;
+
+	private final File file;
+	private final Charset charset;
+	private final int capacity;
+	private final int mask;
+
+	// the ring buffer:
+	private final AtomicReferenceArray<String> slots;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private long head;
+
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final Object flushLock = new Object();
+	private final AtomicInteger flushWaiters = new AtomicInteger();
+	private volatile long writtenPosition;
+
+	private volatile boolean registered;
+	private volatile boolean closed;
+	private volatile boolean writerFinished;
+
+	private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	private volatile FlushPolicy flushPolicy = FlushPolicy.NONE;
+	private volatile long flushIntervalMillis = 1000;
+	private volatile long maxFileSize = -1;
+	private volatile long rollIntervalMillis = -1;
+	private volatile int maxBackupCount = 5;
+
+	// only used by the writer thread:
+	private FileChannel channel;
+	private ByteBuffer defaultBuffer, buffer;
+	private CharsetEncoder encoder;
+	private char pendingHighSurrogate;
+	private long fileSize;
+	private long lastForceTime, openTime;
+	private boolean unforcedData;
+	private long retryTime;
+	private long retryMillis = MIN_RETRY_MILLIS;
+
+	private volatile boolean writerFailed;
+	private volatile boolean reportedError;
+
+	/**
+	 * Create an AsyncFileAppender that uses the default charset and a ring
+	 * buffer of 8192 messages.
+	 */
+	public AsyncFileAppender(File file) {
+		this(file, Charset.defaultCharset(), DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create an AsyncFileAppender.
+	 * 
+	 * @param file
+	 *            the file to append text to.
+	 * @param charset
+	 *            the charset used to encode text.
+	 * @param capacity
+	 *            the number of messages the ring buffer can hold. This is
+	 *            rounded up to a power of two.
+	 */
+	public AsyncFileAppender(File file, Charset charset, int capacity) {
+		Objects.requireNonNull(file);
+		Objects.requireNonNull(charset);
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity (" + capacity
+					+ ") must be positive");
+		this.file = file;
+		this.charset = charset;
+		int c = 1;
+		while (c < capacity) {
+			c <<= 1;
+		}
+		this.capacity = c;
+		mask = c - 1;
+		slots = new AtomicReferenceArray<>(c);
+		sequences = new AtomicLongArray(c);
+		for (int a = 0; a < c; a++) {
+			sequences.set(a, a);
+		}
+	}
+
+	/**
+	 * Return the file this appender writes to.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		Objects.requireNonNull(overflowPolicy);
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	public FlushPolicy getFlushPolicy() {
+		return flushPolicy;
+	}
+
+	public void setFlushPolicy(FlushPolicy flushPolicy) {
+		Objects.requireNonNull(flushPolicy);
+		this.flushPolicy = flushPolicy;
+	}
+
+	public long getFlushInterval() {
+		return flushIntervalMillis;
+	}
+
+	/**
+	 * Set the number of milliseconds between forced writes when the flush
+	 * policy is {@link FlushPolicy#PERIODIC}.
+	 */
+	public void setFlushInterval(long millis) {
+		if (millis <= 0)
+			throw new IllegalArgumentException("millis (" + millis
+					+ ") must be positive");
+		flushIntervalMillis = millis;
+	}
+
+	public long getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	/**
+	 * Set the size (in bytes) a file can grow to before it is rolled over.
+	 * 
+	 * @param maxFileSize
+	 *            the maximum file size, or -1 to never roll over based on
+	 *            size. The file may exceed this by up to one batch of
+	 *            messages.
+	 */
+	public void setMaxFileSize(long maxFileSize) {
+		this.maxFileSize = maxFileSize;
+	}
+
+	public long getRollInterval() {
+		return rollIntervalMillis;
+	}
+
+	/**
+	 * Set the number of milliseconds after which a file is rolled over. This
+	 * is measured from when the current file was opened, so this can be
+	 * changed at any time.
+	 * 
+	 * @param millis
+	 *            the interval, or -1 to never roll over based on time.
+	 */
+	public void setRollInterval(long millis) {
+		rollIntervalMillis = millis;
+	}
+
+	public int getMaxBackupCount() {
+		return maxBackupCount;
+	}
+
+	/**
+	 * Set the number of rolled-over files to keep. If this is zero then a
+	 * file that rolls over is deleted.
+	 */
+	public void setMaxBackupCount(int maxBackupCount) {
+		if (maxBackupCount < 0)
+			throw new IllegalArgumentException("maxBackupCount ("
+					+ maxBackupCount + ") must be zero or positive");
+		this.maxBackupCount = maxBackupCount;
+	}
+
+	/**
+	 * Return the file the given rolled-over file is renamed to. For example
+	 * if this appender writes to "log.txt", then backup file 1 is "log.1.txt".
+	 */
+	public File getBackupFile(int index) {
+		String name = file.getName();
+		int i = name.lastIndexOf('.');
+		if (i <= 0) {
+			name = name + "." + index;
+		} else {
+			name = name.substring(0, i) + "." + index + name.substring(i);
+		}
+		return new File(file.getParentFile(), name);
+	}
+
+	/**
+	 * Return the number of messages that have been discarded since the last
+	 * time the writer thread reported discarded messages.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Return true if the writer thread's most recent attempt to write to the
+	 * file failed. While this is true the writer thread keeps retrying (with
+	 * a growing delay of up to 10 seconds), and messages wait in the ring
+	 * buffer. So depending on the {@link OverflowPolicy} new messages may
+	 * block or be dropped until the file can be written again.
+	 */
+	public boolean isWriterFailed() {
+		return writerFailed;
+	}
+
+	/**
+	 * Append text to the file.
+	 * <p>
+	 * This returns as soon as the text is in the ring buffer, unless the ring
+	 * buffer is full and the overflow policy is {@link OverflowPolicy#BLOCK}.
+	 */
+	public void append(String s) {
+		Objects.requireNonNull(s);
+		if (closed) {
+			appendDirectly(s);
+			return;
+		}
+		Thread writer = getWriterThread();
+		if (Thread.currentThread() == writer) {
+			// the writer thread is logging its own error. If the ring buffer
+			// is full we can't wait for ourselves
+			if (!offer(s))
+				droppedCount.incrementAndGet();
+			return;
+		}
+
+		int attempts = 0;
+		while (!offer(s)) {
+			if (overflowPolicy == OverflowPolicy.DROP) {
+				droppedCount.incrementAndGet();
+				return;
+			}
+			LockSupport.unpark(writer);
+			if (attempts++ < 100) {
+				Thread.onSpinWait();
+			} else {
+				LockSupport.parkNanos(this, 100000);
+			}
+			if (writerFinished) {
+				appendDirectly(s);
+				return;
+			}
+		}
+
+		if (writerParked)
+			LockSupport.unpark(writer);
+		if (writerFinished) {
+			// the writer thread exited between our check and our offer
+			drainDirectly();
+		}
+	}
+
+	/**
+	 * Add an element to the ring buffer, or return false if it is full.
+	 * <p>
+	 * Each slot has a sequence number. A producer may claim position p when
+	 * its slot's sequence is p, and it publishes the element by setting the
+	 * sequence to p + 1. The consumer releases the slot by setting its
+	 * sequence to p + capacity.
+	 */
+	private boolean offer(String s) {
+		while (true) {
+			long pos = tail.get();
+			int index = (int) (pos & mask);
+			long seq = sequences.get(index);
+			if (seq == pos) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					slots.set(index, s);
+					sequences.set(index, pos + 1);
+					return true;
+				}
+			} else if (seq < pos) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Remove the next element from the ring buffer, or return null if the
+	 * next element has not been published yet. Only one thread may call this
+	 * at a time.
+	 */
+	private String poll() {
+		int index = (int) (head & mask);
+		if (sequences.get(index) != head + 1)
+			return null;
+		String returnValue = slots.get(index);
+		slots.set(index, null);
+		sequences.set(index, head + capacity);
+		head++;
+		return returnValue;
+	}
+
+	/**
+	 * Return the writer thread, and make sure it knows about this appender.
+	 */
+	private Thread getWriterThread() {
+		if (registered)
+			return writerThread;
+		synchronized (AsyncFileAppender.class) {
+			if (!registered) {
+				ACTIVE_APPENDERS.add(this);
+				registered = true;
+				if (writerThread == null) {
+					Thread t = new DaemonThreadFactory("AsyncFileAppender")
+							.newThread(new Runnable() {
+								@Override
+								public void run() {
+									runWriter();
+								}
+							});
+					writerThread = t;
+					t.start();
+				}
+				if (shutdownHook == null) {
+					shutdownHook = new Thread("AsyncFileAppender-shutdown") {
+						@Override
+						public void run() {
+							for (AsyncFileAppender appender : ACTIVE_APPENDERS) {
+								appender.close();
+							}
+						}
+					};
+					Runtime.getRuntime().addShutdownHook(shutdownHook);
+				}
+			}
+			return writerThread;
+		}
+	}
+
+	/**
+	 * Wait until every message appended before this call has been written
+	 * to the file, or until the writer thread fails to write to the file.
+	 * 
+	 * @see #isWriterFailed()
+	 */
+	@Override
+	public void flush() {
+		Thread writer = writerThread;
+		if (!registered || writer == null
+				|| writer == Thread.currentThread() || writerFinished)
+			return;
+		long target = tail.get();
+		flushWaiters.incrementAndGet();
+		try {
+			synchronized (flushLock) {
+				while (writtenPosition < target && !writerFinished
+						&& !writerFailed) {
+					LockSupport.unpark(writer);
+					flushLock.wait(10);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			flushWaiters.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Write all pending messages and release the file. Messages that are
+	 * appended after this call are written synchronously.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Thread writer = writerThread;
+		if (!registered || writer == null
+				|| writer == Thread.currentThread())
+			return;
+		LockSupport.unpark(writer);
+		try {
+			synchronized (flushLock) {
+				while (!writerFinished) {
+					LockSupport.unpark(writer);
+					flushLock.wait(10);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Service every active appender until there are no active appenders.
+	 */
+	private static void runWriter() {
+		while (true) {
+			long now = System.currentTimeMillis();
+			long wakeTime = now + 1000;
+			for (AsyncFileAppender appender : ACTIVE_APPENDERS) {
+				wakeTime = Math.min(wakeTime, appender.service());
+			}
+
+			synchronized (AsyncFileAppender.class) {
+				if (ACTIVE_APPENDERS.isEmpty()) {
+					writerThread = null;
+					return;
+				}
+			}
+
+			long wait = wakeTime - System.currentTimeMillis();
+			if (wait > 0) {
+				writerParked = true;
+				if (!isWorkAvailable())
+					LockSupport.parkNanos(AsyncFileAppender.class,
+							wait * 1000000L);
+				writerParked = false;
+			}
+		}
+	}
+
+	/**
+	 * Return true if an appender has messages (or a close request) that the
+	 * writer thread can handle now.
+	 */
+	private static boolean isWorkAvailable() {
+		long now = System.currentTimeMillis();
+		for (AsyncFileAppender appender : ACTIVE_APPENDERS) {
+			if (appender.closed)
+				return true;
+			if (appender.head != appender.tail.get()
+					&& !(appender.writerFailed && now < appender.retryTime))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Write this appender's pending messages. This is only called on the
+	 * writer thread.
+	 * 
+	 * @return the time (in milliseconds) when this appender next needs the
+	 *         writer thread even if no new messages arrive.
+	 */
+	private long service() {
+		long now = System.currentTimeMillis();
+		if (writerFinished)
+			return Long.MAX_VALUE;
+		if (writerFailed && !closed && now < retryTime)
+			return retryTime;
+		if (buffer == null) {
+			defaultBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			buffer = defaultBuffer;
+			encoder = charset.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+		try {
+			if (channel == null)
+				openChannel();
+			if (writeMessages())
+				return now;
+			if (closed && head == tail.get()) {
+				finish();
+				return Long.MAX_VALUE;
+			}
+			return now + getParkMillis();
+		} catch (IOException e) {
+			reportError(e);
+			if (!writerFailed)
+				retryMillis = MIN_RETRY_MILLIS;
+			writerFailed = true;
+			closeChannel();
+			if (closed) {
+				finish();
+				return Long.MAX_VALUE;
+			}
+
+			// messages wait in the ring buffer while we retry
+			retryTime = now + retryMillis;
+			retryMillis = Math.min(MAX_RETRY_MILLIS, retryMillis * 2);
+			return retryTime;
+		}
+	}
+
+	/**
+	 * Make a final attempt to write everything, release the file, and stop
+	 * servicing this appender.
+	 */
+	private void finish() {
+		try {
+			if (channel == null)
+				openChannel();
+			commit();
+		} catch (IOException e) {
+			reportError(e);
+		}
+		closeChannel();
+		writerFinished = true;
+		ACTIVE_APPENDERS.remove(this);
+		synchronized (flushLock) {
+			flushLock.notifyAll();
+		}
+		drainDirectly();
+	}
+
+	/**
+	 * Group commit: encode the messages that are available (up to one ring
+	 * buffer's worth) and then write them all at once.
+	 * 
+	 * @return true if there may be more messages waiting.
+	 */
+	private boolean writeMessages() throws IOException {
+		int count = 0;
+		String s;
+		while (count < capacity && (s = poll()) != null) {
+			reportDroppedMessages();
+			encode(s);
+			count++;
+			if (buffer.position() >= BUFFER_SIZE)
+				writeBuffer();
+		}
+		reportDroppedMessages();
+		commit();
+		return count == capacity;
+	}
+
+	private void closeChannel() {
+		if (channel == null)
+			return;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			reportError(e);
+		}
+		channel = null;
+	}
+
+	/**
+	 * Return how long the writer thread can sleep before it has to force or
+	 * roll over the file.
+	 */
+	private long getParkMillis() {
+		long now = System.currentTimeMillis();
+		long wait = 1000;
+		if (unforcedData && flushPolicy == FlushPolicy.PERIODIC)
+			wait = Math.min(wait, lastForceTime + flushIntervalMillis - now);
+		long rollInterval = rollIntervalMillis;
+		if (rollInterval > 0)
+			wait = Math.min(wait, openTime + rollInterval - now);
+		return Math.max(1, wait);
+	}
+
+	private void reportDroppedMessages() {
+		if (droppedCount.get() > 0) {
+			long dropped = droppedCount.getAndSet(0);
+			encode("[" + getClass().getSimpleName() + " dropped " + dropped
+					+ " message(s)]\r\n");
+		}
+	}
+
+	/**
+	 * Encode a message into the buffer. The buffer grows if necessary, so a
+	 * message is never partially written: if a write fails the buffer still
+	 * contains every byte that was not written.
+	 */
+	private void encode(String s) {
+		CharBuffer chars;
+		if (pendingHighSurrogate != 0) {
+			chars = CharBuffer.wrap(pendingHighSurrogate + s);
+			pendingHighSurrogate = 0;
+		} else {
+			chars = CharBuffer.wrap(s);
+		}
+		while (true) {
+			CoderResult result = encoder.encode(chars, buffer, false);
+			if (result.isOverflow()) {
+				ByteBuffer newBuffer = ByteBuffer
+						.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				newBuffer.put(buffer);
+				buffer = newBuffer;
+			} else {
+				break;
+			}
+		}
+		if (chars.hasRemaining()) {
+			// the first half of a surrogate pair: the second half should be
+			// the next message
+			pendingHighSurrogate = chars.get();
+		}
+	}
+
+	private void writeBuffer() throws IOException {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) {
+				fileSize += channel.write(buffer);
+			}
+		} catch (IOException e) {
+			// keep the unwritten bytes so we can retry them
+			buffer.compact();
+			throw e;
+		}
+		// a large message may have replaced our default buffer
+		buffer = defaultBuffer;
+		buffer.clear();
+		unforcedData = true;
+	}
+
+	/**
+	 * Write the buffer to the file, force it to disk if the flush policy says
+	 * to, notify threads waiting in {@link #flush()}, and roll over the file
+	 * if necessary.
+	 */
+	private void commit() throws IOException {
+		if (channel == null)
+			return;
+		if (buffer.position() > 0)
+			writeBuffer();
+
+		long now = System.currentTimeMillis();
+		if (unforcedData) {
+			FlushPolicy p = flushPolicy;
+			if (p == FlushPolicy.BATCH
+					|| (p == FlushPolicy.PERIODIC && now - lastForceTime >= flushIntervalMillis)) {
+				channel.force(false);
+				lastForceTime = now;
+				unforcedData = false;
+			}
+		}
+
+		writtenPosition = head;
+		if (writerFailed) {
+			// we recovered, so print the next error
+			writerFailed = false;
+			reportedError = false;
+		}
+		if (flushWaiters.get() > 0) {
+			synchronized (flushLock) {
+				flushLock.notifyAll();
+			}
+		}
+
+		long max = maxFileSize;
+		long rollInterval = rollIntervalMillis;
+		if ((max > 0 && fileSize >= max)
+				|| (rollInterval > 0 && now >= openTime + rollInterval)) {
+			roll();
+		}
+	}
+
+	private void openChannel() throws IOException {
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists())
+			FileUtils.mkdirs(parent);
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		fileSize = channel.size();
+		lastForceTime = System.currentTimeMillis();
+		openTime = lastForceTime;
+	}
+
+	private void roll() throws IOException {
+		channel.close();
+		channel = null;
+		int backups = maxBackupCount;
+		if (backups == 0) {
+			file.delete();
+		} else {
+			getBackupFile(backups).delete();
+			for (int a = backups - 1; a >= 1; a--) {
+				File src = getBackupFile(a);
+				if (src.exists())
+					src.renameTo(getBackupFile(a + 1));
+			}
+			file.renameTo(getBackupFile(1));
+		}
+		openChannel();
+	}
+
+	private void reportError(IOException e) {
+		// if this is logging System.err, printing every error could create
+		// an endless loop. So only print the first error until the writer
+		// recovers.
+		if (!reportedError) {
+			reportedError = true;
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write any messages left in the ring buffer after the writer thread
+	 * exited.
+	 */
+	private synchronized void drainDirectly() {
+		if (!writerFinished)
+			return;
+		StringBuilder sb = null;
+		String s;
+		while ((s = poll()) != null) {
+			if (sb == null)
+				sb = new StringBuilder();
+			sb.append(s);
+		}
+		if (sb != null)
+			appendDirectly(sb.toString());
+	}
+
+	/**
+	 * Open the file, append text, and close the file.
+	 */
+	private synchronized void appendDirectly(String s) {
+		try (OutputStream out = new FileOutputStream(file, true)) {
+			out.write(s.getBytes(charset));
+		} catch (IOException e) {
+			reportError(e);
+		}
+	}
+}
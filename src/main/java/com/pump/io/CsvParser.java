@@ -10,21 +10,48 @@
  */
 package com.pump.io;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import com.pump.thread.DaemonThreadFactory;
 import com.pump.util.Receiver;
 
 /**
  * This is simple parser for CSV files.
- * 
- * TODO: write unit tests
+ * <P>
+ * Rows are separated by line breaks ("\n", "\r" or "\r\n"). Blank lines are
+ * skipped. A cell that begins with the text qualifier may contain delimiters,
+ * line breaks and (doubled) text qualifiers.
+ * <P>
+ * This parser scans large blocks of characters. The fastest way to use it is
+ * to pass a {@link RowListener} to one of the <code>parseRows</code> methods.
+ * The listener receives a {@link Row} that refers to the cells' positions in
+ * the buffer instead of creating a <code>String</code> for every cell. When
+ * parsing a file, {@link #parseRows(File, Charset, RowListener)} also splits
+ * the file into chunks that are parsed in parallel.
  */
 public class CsvParser {
 
@@ -56,6 +83,380 @@ public class CsvParser {
 		}
 	}
 
+	/**
+	 * This is notified as rows are parsed.
+	 */
+	public interface RowListener {
+		/**
+		 * Process a row.
+		 * 
+		 * @param row
+		 *            the row that was just parsed. This object (and the
+		 *            buffer it refers to) is reused for the next row, so it
+		 *            is only valid until this method returns.
+		 */
+		public void rowParsed(Row row) throws IOException;
+	}
+
+	/**
+	 * A row of cells, expressed as ranges of characters in a buffer.
+	 */
+	public static class Row {
+		final char textQualifier;
+		char[] buffer;
+		int lineNumber;
+		int cellCount;
+		int[] starts = new int[16];
+		int[] ends = new int[16];
+		boolean[] escaped = new boolean[16];
+
+		Row(char textQualifier) {
+			this.textQualifier = textQualifier;
+		}
+
+		void addCell(int start, int end, boolean isEscaped) {
+			if (cellCount == starts.length) {
+				starts = Arrays.copyOf(starts, cellCount * 2);
+				ends = Arrays.copyOf(ends, cellCount * 2);
+				escaped = Arrays.copyOf(escaped, cellCount * 2);
+			}
+			starts[cellCount] = start;
+			ends[cellCount] = end;
+			escaped[cellCount] = isEscaped;
+			cellCount++;
+		}
+
+		/**
+		 * Return the line number this row starts on, where the first line is
+		 * 1.
+		 */
+		public int getLineNumber() {
+			return lineNumber;
+		}
+
+		/**
+		 * Return the number of cells in this row.
+		 */
+		public int getCellCount() {
+			return cellCount;
+		}
+
+		/**
+		 * Return the buffer the cells of this row are stored in.
+		 */
+		public char[] getBuffer() {
+			return buffer;
+		}
+
+		/**
+		 * Return the index in {@link #getBuffer()} of the first character of
+		 * a cell. If the cell was enclosed in text qualifiers, this excludes
+		 * the opening text qualifier.
+		 */
+		public int getCellStart(int cellIndex) {
+			checkIndex(cellIndex);
+			return starts[cellIndex];
+		}
+
+		/**
+		 * Return the index in {@link #getBuffer()} after the last character of
+		 * a cell.
+		 */
+		public int getCellEnd(int cellIndex) {
+			checkIndex(cellIndex);
+			return ends[cellIndex];
+		}
+
+		/**
+		 * Return true if a cell contains doubled text qualifiers. In this case
+		 * the characters in the buffer are not the cell's value: each pair of
+		 * text qualifiers represents one text qualifier.
+		 */
+		public boolean isEscaped(int cellIndex) {
+			checkIndex(cellIndex);
+			return escaped[cellIndex];
+		}
+
+		/**
+		 * Return the value of a cell.
+		 */
+		public String getString(int cellIndex) {
+			checkIndex(cellIndex);
+			int start = starts[cellIndex];
+			int end = ends[cellIndex];
+			if (!escaped[cellIndex])
+				return new String(buffer, start, end - start);
+			StringBuilder sb = new StringBuilder(end - start);
+			for (int i = start; i < end; i++) {
+				sb.append(buffer[i]);
+				if (buffer[i] == textQualifier)
+					i++;
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Return the values of all the cells in this row.
+		 */
+		public List<String> toList() {
+			List<String> list = new ArrayList<>(cellCount);
+			for (int a = 0; a < cellCount; a++) {
+				list.add(getString(a));
+			}
+			return list;
+		}
+
+		private void checkIndex(int cellIndex) {
+			if (cellIndex < 0 || cellIndex >= cellCount)
+				throw new IndexOutOfBoundsException("cellIndex = " + cellIndex
+						+ ", cellCount = " + cellCount);
+		}
+
+		@Override
+		public String toString() {
+			return "Row[ lineNumber = " + lineNumber + ", cells = " + toList()
+					+ "]";
+		}
+	}
+
+	/**
+	 * This identifies rows in a block of characters.
+	 */
+	class BlockScanner {
+		final Row row = new Row(textQualifier);
+		char[] buffer;
+		int limit;
+		boolean eof;
+
+		/** The line number of the next unconsumed character. */
+		int lineNumber = 1;
+
+		/**
+		 * True if the end of the data was reached inside a cell enclosed in
+		 * text qualifiers.
+		 */
+		boolean endedInsideQualifier = false;
+
+		/**
+		 * Notify a listener of all the complete rows in the buffer.
+		 * 
+		 * @param pos
+		 *            the index of the first character to scan.
+		 * @return the index of the first character that was not consumed. If
+		 *         <code>eof</code> is true this is always
+		 *         <code>limit</code>.
+		 */
+		int scan(int pos, RowListener listener) throws IOException {
+			row.buffer = buffer;
+			while (true) {
+				// skip line breaks (including blank lines)
+				while (pos < limit) {
+					char c = buffer[pos];
+					if (c == '\n') {
+						lineNumber++;
+						pos++;
+					} else if (c == '\r') {
+						if (pos + 1 < limit) {
+							pos += buffer[pos + 1] == '\n' ? 2 : 1;
+						} else if (eof) {
+							pos++;
+						} else {
+							return pos;
+						}
+						lineNumber++;
+					} else {
+						break;
+					}
+				}
+				if (pos == limit)
+					return pos;
+
+				int end = scanRow(pos);
+				if (end == -1)
+					return pos;
+				listener.rowParsed(row);
+				pos = end;
+			}
+		}
+
+		/**
+		 * Identify the cells of the row that starts at <code>pos</code>.
+		 * 
+		 * @return the index of the line break after this row, or
+		 *         <code>limit</code>, or -1 if more data is needed to finish
+		 *         this row.
+		 */
+		private int scanRow(int pos) throws ParseException {
+			final char[] buf = buffer;
+			final int limit = this.limit;
+			final char q = textQualifier;
+			final char d = delimiter;
+
+			row.cellCount = 0;
+			row.lineNumber = lineNumber;
+			int line = lineNumber;
+			int lineStart = pos;
+			int i = pos;
+			while (true) {
+				if (i == limit) {
+					if (!eof)
+						return -1;
+					// the row ended with a delimiter
+					row.addCell(i, i, false);
+					lineNumber = line;
+					return i;
+				}
+
+				if (buf[i] == q) {
+					int start = ++i;
+					boolean isEscaped = false;
+					while (true) {
+						if (i == limit) {
+							if (!eof)
+								return -1;
+							endedInsideQualifier = true;
+							row.addCell(start, i, isEscaped);
+							lineNumber = line;
+							return i;
+						}
+						char c = buf[i];
+						if (c == q) {
+							if (i + 1 < limit) {
+								if (buf[i + 1] != q)
+									break;
+								isEscaped = true;
+								i += 2;
+								continue;
+							} else if (eof) {
+								break;
+							}
+							return -1;
+						} else if (c == '\n') {
+							line++;
+							lineStart = i + 1;
+						} else if (c == '\r') {
+							if (i + 1 < limit) {
+								if (buf[i + 1] == '\n')
+									i++;
+							} else if (!eof) {
+								return -1;
+							}
+							line++;
+							lineStart = i + 1;
+						}
+						i++;
+					}
+					row.addCell(start, i, isEscaped);
+					i++;
+
+					while (i < limit && buf[i] != d
+							&& (buf[i] == ' ' || buf[i] == '\t')) {
+						i++;
+					}
+					if (i == limit) {
+						if (!eof)
+							return -1;
+						lineNumber = line;
+						return i;
+					}
+					char c = buf[i];
+					if (c == d) {
+						i++;
+						continue;
+					} else if (c == '\n' || c == '\r') {
+						lineNumber = line;
+						return i;
+					}
+					int position = i - lineStart + 1;
+					throw createWrappedCellException(line, position);
+				}
+
+				int start = i;
+				char c = 0;
+				while (i < limit && (c = buf[i]) != d && c != '\n' && c != '\r') {
+					i++;
+				}
+				if (i == limit && !eof)
+					return -1;
+				row.addCell(start, i, false);
+				if (i < limit && c == d) {
+					i++;
+					continue;
+				}
+				lineNumber = line;
+				return i;
+			}
+		}
+	}
+
+	/**
+	 * The rows of one chunk of a file.
+	 */
+	static class ChunkResult {
+		char[] buffer;
+		int rowCount, cellCount;
+		int[] rowLineNumbers = new int[1024];
+		int[] rowCellCounts = new int[1024];
+		int[] cellStarts = new int[4096];
+		int[] cellEnds = new int[4096];
+		boolean[] cellEscaped = new boolean[4096];
+		int lineBreakCount;
+		boolean endedInsideQualifier;
+		ParseException exception;
+
+		void add(Row row) {
+			if (rowCount == rowLineNumbers.length) {
+				rowLineNumbers = Arrays.copyOf(rowLineNumbers, rowCount * 2);
+				rowCellCounts = Arrays.copyOf(rowCellCounts, rowCount * 2);
+			}
+			rowLineNumbers[rowCount] = row.lineNumber;
+			rowCellCounts[rowCount] = row.cellCount;
+			rowCount++;
+
+			int newCellCount = cellCount + row.cellCount;
+			if (newCellCount > cellStarts.length) {
+				int newLength = Math.max(newCellCount, cellStarts.length * 2);
+				cellStarts = Arrays.copyOf(cellStarts, newLength);
+				cellEnds = Arrays.copyOf(cellEnds, newLength);
+				cellEscaped = Arrays.copyOf(cellEscaped, newLength);
+			}
+			System.arraycopy(row.starts, 0, cellStarts, cellCount,
+					row.cellCount);
+			System.arraycopy(row.ends, 0, cellEnds, cellCount, row.cellCount);
+			System.arraycopy(row.escaped, 0, cellEscaped, cellCount,
+					row.cellCount);
+			cellCount = newCellCount;
+		}
+
+		/**
+		 * Notify a listener of every row in this chunk.
+		 */
+		void replay(Row row, int lineNumberOffset, RowListener listener)
+				throws IOException {
+			row.buffer = buffer;
+			int cellIndex = 0;
+			for (int a = 0; a < rowCount; a++) {
+				row.lineNumber = rowLineNumbers[a] + lineNumberOffset;
+				row.cellCount = 0;
+				for (int b = 0; b < rowCellCounts[a]; b++) {
+					row.addCell(cellStarts[cellIndex], cellEnds[cellIndex],
+							cellEscaped[cellIndex]);
+					cellIndex++;
+				}
+				listener.rowParsed(row);
+			}
+		}
+	}
+
+	/**
+	 * The default number of bytes in each chunk of a file that is parsed in
+	 * parallel: 8 MB.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	/** The initial size of the buffer used to parse a Reader. */
+	private static final int READER_BUFFER_SIZE = 64 * 1024;
+
 	protected char delimiter = ',';
 	protected char textQualifier = '\"';
 
@@ -104,100 +505,294 @@ public class CsvParser {
 	 * @param receiver
 	 *            the Receiver that will be notified as new lines as parsed.
 	 */
-	public void parse(Reader reader, Receiver<List<String>> receiver)
+	public void parse(Reader reader, final Receiver<List<String>> receiver)
+			throws IOException {
+		parseRows(reader, new RowListener() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public void rowParsed(Row row) {
+				receiver.add(row.toList());
+			}
+		});
+	}
+
+	/**
+	 * Parse a Reader.
+	 * 
+	 * @param reader
+	 *            the reader to parse.
+	 * @param listener
+	 *            the listener that is notified as rows are parsed.
+	 */
+	public void parseRows(Reader reader, RowListener listener)
 			throws IOException {
-		class MeasuredReader {
-			Reader reader;
-			int pos, lineNumber;
+		parseRows(reader, listener, 0);
+	}
 
-			MeasuredReader(Reader r, int lineNumber) {
-				reader = r;
-				this.lineNumber = lineNumber;
+	private void parseRows(Reader reader, RowListener listener,
+			int lineNumberOffset) throws IOException {
+		BlockScanner scanner = new BlockScanner();
+		scanner.lineNumber += lineNumberOffset;
+		char[] buffer = new char[READER_BUFFER_SIZE];
+		int limit = 0;
+		int pos = 0;
+		while (true) {
+			int k = reader.read(buffer, limit, buffer.length - limit);
+			if (k == -1) {
+				scanner.eof = true;
+			} else {
+				limit += k;
 			}
+			scanner.buffer = buffer;
+			scanner.limit = limit;
+			pos = scanner.scan(pos, listener);
+			if (scanner.eof)
+				return;
 
-			public int read() throws IOException {
-				int returnValue = reader.read();
-				pos++;
-				return returnValue;
+			// keep the incomplete row at the end of the buffer
+			if (pos > 0) {
+				System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+				limit -= pos;
+				pos = 0;
 			}
+			if (limit == buffer.length)
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
 		}
+	}
 
-		List<String> currentRow = new LinkedList<>();
-		MeasuredReader lineReader = new MeasuredReader(reader, 1);
-		int t = lineReader.read();
-		while (t != -1) {
-			if (t == textQualifier) {
-				// read a text-qualifier-enclosed cell:
-				StringBuilder sb = new StringBuilder();
-				t = lineReader.read();
-				readCell: while (t != -1) {
-					if (t == textQualifier) {
-						t = lineReader.read();
-						if (t == textQualifier) {
-							sb.append(textQualifier);
-						} else {
-							break readCell;
+	/**
+	 * Parse a file, using one thread per available processor.
+	 * 
+	 * @param file
+	 *            the file to parse.
+	 * @param charset
+	 *            the character set of the file.
+	 * @param listener
+	 *            the listener that is notified as rows are parsed. This is
+	 *            always notified on the calling thread, in the order the rows
+	 *            appear in the file.
+	 */
+	public void parseRows(File file, Charset charset, RowListener listener)
+			throws IOException {
+		parseRows(file, charset, listener, null, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Parse a file by splitting it into chunks and parsing the chunks in
+	 * parallel.
+	 * <P>
+	 * Each chunk ends after a line feed, so most chunks begin with a new row.
+	 * If a chunk actually begins inside a cell enclosed in text qualifiers,
+	 * this is detected when the previous chunk is parsed, and the rest of the
+	 * file is parsed sequentially instead.
+	 * <P>
+	 * If the charset may use the byte 0x0A for anything other than a line
+	 * feed (such as UTF-16), the file is parsed sequentially.
+	 * 
+	 * @param file
+	 *            the file to parse.
+	 * @param charset
+	 *            the character set of the file.
+	 * @param listener
+	 *            the listener that is notified as rows are parsed. This is
+	 *            always notified on the calling thread, in the order the rows
+	 *            appear in the file.
+	 * @param executor
+	 *            an optional executor to parse chunks with. If this is null
+	 *            then this creates one thread per available processor.
+	 * @param chunkSize
+	 *            the approximate number of bytes in each chunk.
+	 */
+	public void parseRows(File file, Charset charset, RowListener listener,
+			ExecutorService executor, int chunkSize) throws IOException {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("chunkSize (" + chunkSize
+					+ ") must be positive");
+		if (!isLineFeedSafe(charset)) {
+			try (Reader reader = new InputStreamReader(
+					new FileInputStream(file), charset)) {
+				parseRows(reader, listener);
+			}
+			return;
+		}
+
+		boolean ownsExecutor = executor == null;
+		int threadCount = Runtime.getRuntime().availableProcessors();
+		if (ownsExecutor) {
+			executor = Executors.newFixedThreadPool(threadCount,
+					new DaemonThreadFactory("CsvParser"));
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			List<Long> chunkStarts = getChunkStarts(channel, chunkSize);
+			chunkStarts.add(channel.size());
+
+			Deque<Future<ChunkResult>> futures = new ArrayDeque<>();
+			int nextChunk = 0;
+			int chunkCount = chunkStarts.size() - 1;
+			int lineNumberOffset = 0;
+			Row row = new Row(textQualifier);
+			try {
+				for (int chunk = 0; chunk < chunkCount; chunk++) {
+					while (nextChunk < chunkCount
+							&& futures.size() < threadCount + 1) {
+						futures.add(executor.submit(createChunkTask(channel,
+								charset, chunkStarts.get(nextChunk),
+								chunkStarts.get(nextChunk + 1))));
+						nextChunk++;
+					}
+					ChunkResult result = getResult(futures.removeFirst());
+					if (result.endedInsideQualifier && chunk < chunkCount - 1) {
+						// the next chunk boundary was inside a cell
+						result = null;
+						for (Future<ChunkResult> future : futures) {
+							future.cancel(false);
 						}
-					} else {
-						sb.append((char) t);
+						futures.clear();
+						channel.position(chunkStarts.get(chunk));
+						Reader reader = new InputStreamReader(
+								Channels.newInputStream(channel), charset);
+						parseRows(reader, listener, lineNumberOffset);
+						return;
+					}
+					result.replay(row, lineNumberOffset, listener);
+					if (result.exception != null) {
+						ParseException e = result.exception;
+						throw createWrappedCellException(e.getLineNumber()
+								+ lineNumberOffset, e.getPosition());
 					}
-					t = lineReader.read();
+					lineNumberOffset += result.lineBreakCount;
 				}
-				currentRow.add(sb.toString());
-
-				while (t != -1 && (t == ' ' || t == '\t')) {
-					t = lineReader.read();
+			} finally {
+				for (Future<ChunkResult> future : futures) {
+					future.cancel(false);
 				}
+			}
+		} finally {
+			if (ownsExecutor)
+				executor.shutdown();
+		}
+	}
+
+	/**
+	 * Return true if the byte 0x0A always represents a line feed in a charset,
+	 * and the charset's decoder treats every line feed as a boundary.
+	 */
+	private static boolean isLineFeedSafe(Charset charset) {
+		if (charset.equals(StandardCharsets.UTF_8)
+				|| charset.equals(StandardCharsets.US_ASCII)
+				|| charset.equals(StandardCharsets.ISO_8859_1))
+			return true;
+		if (!charset.canEncode())
+			return false;
+		return charset.newEncoder().maxBytesPerChar() == 1
+				&& Arrays.equals(new byte[] { '\n' },
+						"\n".getBytes(charset));
+	}
 
-				if (t == '\n' || t == '\r') {
-					// finished this row:
-					while (t == '\n' || t == '\r') {
-						t = lineReader.read();
+	/**
+	 * Return the offsets of the chunks of a file. Every chunk except the first
+	 * begins immediately after a line feed.
+	 */
+	private static List<Long> getChunkStarts(FileChannel channel,
+			int chunkSize) throws IOException {
+		List<Long> returnValue = new ArrayList<>();
+		returnValue.add(0L);
+		long size = channel.size();
+		ByteBuffer bb = ByteBuffer.allocate(4096);
+		long pos = chunkSize;
+		while (pos < size) {
+			// look for the next line feed
+			long lineFeed = -1;
+			while (lineFeed == -1 && pos < size) {
+				bb.clear();
+				int k = channel.read(bb, pos);
+				if (k <= 0)
+					break;
+				for (int i = 0; i < k; i++) {
+					if (bb.get(i) == '\n') {
+						lineFeed = pos + i;
+						break;
 					}
-					receiver.add(new List[] { currentRow });
-					currentRow = new ArrayList<>(currentRow.size());
-					lineReader = new MeasuredReader(reader,
-							lineReader.lineNumber + 1);
-				} else if (!(t == -1 || t == delimiter)) {
-					throw new ParseException(
-							"Unexpected character after a wrapped cell value. Line "
-									+ lineReader.lineNumber + ", pos="
-									+ lineReader.pos, lineReader.pos,
-							lineReader.lineNumber);
 				}
-			} else {
-				if (t == delimiter) {
-					// empty!
-					currentRow.add(new String());
-					t = lineReader.read();
-				} else {
-					StringBuilder sb = new StringBuilder();
-					while (t != -1 && t != delimiter && t != '\n' && t != '\r') {
-						sb.append((char) t);
-						t = lineReader.read();
-					}
+				pos += k;
+			}
+			if (lineFeed == -1 || lineFeed + 1 >= size)
+				break;
+			returnValue.add(lineFeed + 1);
+			pos = lineFeed + 1 + chunkSize;
+		}
+		return returnValue;
+	}
+
+	private Callable<ChunkResult> createChunkTask(final FileChannel channel,
+			final Charset charset, final long start, final long end) {
+		return new Callable<ChunkResult>() {
+			@Override
+			public ChunkResult call() throws Exception {
+				ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY,
+						start, end - start);
+				CharsetDecoder decoder = charset.newDecoder()
+						.onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE);
+				CharBuffer chars = decoder.decode(bytes);
 
-					currentRow.add(sb.toString());
-					if (t == '\n' || t == '\r') {
-						// finished this row:
-						while (t == '\n' || t == '\r') {
-							t = lineReader.read();
+				final ChunkResult result = new ChunkResult();
+				BlockScanner scanner = new BlockScanner();
+				if (chars.hasArray() && chars.arrayOffset() == 0) {
+					result.buffer = chars.array();
+				} else {
+					result.buffer = new char[chars.remaining()];
+					chars.get(result.buffer);
+				}
+				scanner.buffer = result.buffer;
+				scanner.limit = chars.limit();
+				scanner.eof = true;
+				try {
+					scanner.scan(0, new RowListener() {
+						@Override
+						public void rowParsed(Row row) {
+							result.add(row);
 						}
-						receiver.add(new List[] { currentRow });
-						currentRow = new ArrayList<>(currentRow.size());
-						lineReader = new MeasuredReader(reader,
-								lineReader.lineNumber + 1);
-					} else if (t == delimiter) {
-						t = lineReader.read();
-						continue;
-					}
-					if (t == -1) {
-						if (currentRow.size() > 0)
-							receiver.add(new List[] { currentRow });
-						return;
-					}
+					});
+				} catch (ParseException e) {
+					result.exception = e;
 				}
+				result.lineBreakCount = scanner.lineNumber - 1;
+				result.endedInsideQualifier = scanner.endedInsideQualifier;
+				return result;
 			}
+		};
+	}
+
+	/**
+	 * Create the exception thrown when a wrapped cell value is followed by
+	 * something other than a delimiter or line break.
+	 */
+	private static ParseException createWrappedCellException(int lineNumber,
+			int position) {
+		return new ParseException(
+				"Unexpected character after a wrapped cell value. Line "
+						+ lineNumber + ", pos=" + position, position,
+				lineNumber);
+	}
+
+	private static ChunkResult getResult(Future<ChunkResult> future)
+			throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -16,23 +16,63 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import com.pump.data.AbstractAttributeDataImpl;
 import com.pump.data.Key;
+import com.pump.data.KeySlots;
 import com.pump.swing.Cancellable;
+import com.pump.thread.DaemonThreadFactory;
 
+/**
+ * This copies the contents of one directory into another directory.
+ * <P>
+ * The source directory is walked on one thread while several other threads
+ * copy files using <code>FileChannel.transferTo(..)</code>. Only a small
+ * number of files are queued at any time, so very large directory trees do not
+ * need to be indexed in memory. The total workload and the progress both grow
+ * as the source directory is walked.
+ * <P>
+ * A file is not copied if the destination already contains a file with the
+ * same size and modification time, or with the same size and contents. Copied
+ * files receive the modification time of the source file, so running the same
+ * task again is an incremental sync that only needs to read file attributes.
+ * <P>
+ * If <code>deleteExtraDestFiles</code> is true then files in the top level of
+ * the destination directory that are not in the source directory are
+ * deleted. This never deletes a directory that contains files.
+ */
 public class DirectoryCopyTask extends AbstractAttributeDataImpl
 		implements Cancellable {
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * The default number of threads that copy files. Copying is usually
+	 * limited by the disks rather than the processors, so this is a constant.
+	 */
+	public static final int DEFAULT_COPIER_COUNT = 4;
+
 	static final Key<File> KEY_SOURCE_DIRECTORY = new Key<>(File.class,
 			"srcDir");
 	static final Key<File> KEY_DEST_DIRECTORY = new Key<>(File.class,
@@ -56,171 +96,320 @@ public class DirectoryCopyTask extends AbstractAttributeDataImpl
 	static final Key<Throwable> KEY_THROWABLE = new Key<>(Throwable.class,
 			"throwable");
 
-	static class WorkerRunnable implements Runnable {
+	private static final KeySlots KEY_SLOTS = new KeySlots(
+			KEY_SOURCE_DIRECTORY, KEY_DEST_DIRECTORY,
+			KEY_DELETE_EXTRA_DEST_FILES, KEY_CANCELLED, KEY_FINISHED,
+			KEY_TOTAL_FILES_TO_COPY, KEY_CURRENT_FILES_COPIED,
+			KEY_CURRENT_BYTES_COPIED, KEY_CURRENT_FILE, KEY_TOTAL_BYTES_TO_COPY,
+			KEY_THROWABLE);
+
+	/**
+	 * File names that are skipped when <code>deleteExtraDestFiles</code> is
+	 * false.
+	 */
+	static final Set<String> IGNORED_FILE_NAMES = new HashSet<>(Arrays.asList(
+			".DS_Store", "BufferedAnimationPanel.java",
+			"edit2_control_zoom_normal.png",
+			"edit2_control_zoom_normal@2x.png", "tooltip_back_bottom.png",
+			"tooltip_back_bottom@2x.png", "tooltip_back_bottom_arrow.png",
+			"tooltip_back_bottom_arrow@2x.png", "tooltip_back_bottom_left.png",
+			"tooltip_back_bottom_left@2x.png", "tooltip_back_bottom_right.png",
+			"tooltip_back_bottom_right@2x.png", "tooltip_back_left.png",
+			"tooltip_back_left@2x.png", "tooltip_back_left_arrow.png",
+			"tooltip_back_left_arrow@2x.png", "tooltip_back_middle.png",
+			"tooltip_back_middle@2x.png", "tooltip_back_right.png",
+			"tooltip_back_right@2x.png", "tooltip_back_right_arrow.png",
+			"tooltip_back_right_arrow@2x.png", "tooltip_back_top_arrow.png",
+			"tooltip_back_top_arrow@2x.png", "trayIcon.png", "frame_icon.png",
+			"Equations.java"));
+
+	static class WorkerRunnable extends SimpleFileVisitor<Path> implements
+			Runnable {
 		DirectoryCopyTask task;
-		File src, dst;
-		Map<File, Long> filesToCopy = new HashMap<>();
+		Path src, dst;
+		boolean deleteExtraDestFiles;
+		int copierCount;
+		ExecutorService executor;
+
+		/**
+		 * This limits the number of files that are waiting to be copied.
+		 */
+		Semaphore queuePermits;
 
-		public WorkerRunnable(DirectoryCopyTask task) {
+		/**
+		 * If we delete extra files: this is the names of the files in the top
+		 * level of the destination directory that have not been matched with
+		 * a source file yet.
+		 */
+		Set<String> unmatchedDestFiles;
+
+		public WorkerRunnable(DirectoryCopyTask task, int copierCount) {
 			this.task = task;
-			src = task.getAttribute(KEY_SOURCE_DIRECTORY);
-			dst = task.getAttribute(KEY_DEST_DIRECTORY);
+			this.copierCount = copierCount;
+			src = task.getAttribute(KEY_SOURCE_DIRECTORY).toPath();
+			dst = task.getAttribute(KEY_DEST_DIRECTORY).toPath();
+			deleteExtraDestFiles = task.getAttribute(KEY_DELETE_EXTRA_DEST_FILES);
+			queuePermits = new Semaphore(4 * copierCount);
 		}
 
 		@Override
 		public void run() {
+			executor = Executors.newFixedThreadPool(copierCount,
+					new DaemonThreadFactory("DirectoryCopyTask"));
 			try {
-				index();
-				copyFiles();
+				Files.walkFileTree(src, EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+						Integer.MAX_VALUE, this);
 			} catch (IOException e) {
 				task.setThrowable(e);
 				task.cancel();
+			} catch (InterruptedRuntimeException e) {
+				task.cancel();
+			} finally {
+				executor.shutdown();
+				try {
+					executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+				} catch (InterruptedException e) {
+					task.cancel();
+				}
 			}
+			if (!task.isCancelled())
+				task.setAttribute(KEY_FINISHED, Boolean.TRUE);
 		}
 
-		private void copyFiles() throws IOException {
-			String srcPath = src.getAbsolutePath();
-			String dstPath = dst.getAbsolutePath();
-			for (Entry<File, Long> entry : filesToCopy.entrySet()) {
-				File srcFile = entry.getKey();
-				String filePath = srcFile.getAbsolutePath();
-				if (filePath.startsWith(srcPath)) {
-					String relPath = filePath.substring(srcPath.length());
-					String destFilePath = dstPath + relPath;
-					File destFile = new File(destFilePath);
-					IOUtils.copy(srcFile, destFile);
-					task.incrementProgress(entry.getValue(), entry.getKey());
-				}
-			}
+		private Path getDestPath(Path srcPath) {
+			return dst.resolve(src.relativize(srcPath).toString());
 		}
 
-		/**
-		 * Prepares this job. Populate filesToCopy and update the # of files and
-		 * bytes to copy.
-		 */
-		private void index() throws IOException {
-			if (task.getAttribute(KEY_DELETE_EXTRA_DEST_FILES)) {
-				indexAndDelete(src, dst);
+		@Override
+		public FileVisitResult preVisitDirectory(Path dir,
+				BasicFileAttributes attrs) throws IOException {
+			if (task.isCancelled())
+				return FileVisitResult.TERMINATE;
+			Path dstDir = getDestPath(dir);
+			if (unmatchedDestFiles != null && src.equals(dir.getParent()))
+				unmatchedDestFiles.remove(dir.getFileName().toString());
+
+			if (Files.exists(dstDir)) {
+				if (!Files.isDirectory(dstDir)) {
+					throw new IOException("the file " + dstDir.toAbsolutePath()
+							+ " exists as a file, but this operation expects a directory");
+				}
 			} else {
-				index(src, dst);
+				Files.createDirectories(dstDir);
 			}
-		}
 
-		private void index(File src, File dst) throws IOException {
-			for (File child : src.listFiles()) {
-				File dstChild = new File(dst, child.getName());
-				if (child.isDirectory()) {
-					if (dstChild.exists()) {
-						if (!dstChild.isDirectory()) {
-							throw new IOException("the file "
-									+ dstChild.getAbsolutePath()
-									+ " exists as a file, but this operation expects a directory");
-						}
-					} else {
-						FileUtils.mkdir(dstChild);
-					}
-					index(child, dstChild);
-				} else {
-					if (dstChild.getName().equals(".DS_Store"))
-						continue;
-
-					Collection<String> terms = Arrays.asList(
-							"BufferedAnimationPanel.java",
-							"edit2_control_zoom_normal.png",
-							"edit2_control_zoom_normal@2x.png",
-							"tooltip_back_bottom.png",
-							"tooltip_back_bottom@2x.png",
-							"tooltip_back_bottom_arrow.png",
-							"tooltip_back_bottom_arrow@2x.png",
-							"tooltip_back_bottom_left.png",
-							"tooltip_back_bottom_left@2x.png",
-							"tooltip_back_bottom_right.png",
-							"tooltip_back_bottom_right@2x.png",
-							"tooltip_back_left.png", "tooltip_back_left@2x.png",
-							"tooltip_back_left_arrow.png",
-							"tooltip_back_left_arrow@2x.png",
-							"tooltip_back_middle.png",
-							"tooltip_back_middle@2x.png",
-							"tooltip_back_right.png",
-							"tooltip_back_right@2x.png",
-							"tooltip_back_right_arrow.png",
-							"tooltip_back_right_arrow@2x.png",
-							"tooltip_back_top_arrow.png",
-							"tooltip_back_top_arrow@2x.png", "trayIcon.png",
-							"frame_icon.png", "Equations.java");
-					if (terms.contains(dstChild.getName()))
-						continue;
-
-					if (dstChild.exists()) {
-						if (IOUtils.equals(child, dstChild)) {
-							continue;
-						}
-						// if we use indexAndDelete we can delete/overwrite dst
-						// files, but this operation never deletes data
-						// If we ever add a way to prompt the user with q's,
-						// this is a good candidate
-						throw new IOException("a file named " + child.getName()
-								+ " already exists at "
-								+ dst.getAbsolutePath());
+			if (deleteExtraDestFiles && dir.equals(src)) {
+				unmatchedDestFiles = new HashSet<>();
+				try (DirectoryStream<Path> stream = Files
+						.newDirectoryStream(dstDir)) {
+					for (Path child : stream) {
+						unmatchedDestFiles.add(child.getFileName().toString());
 					}
-					enqueue(child);
 				}
 			}
+			return FileVisitResult.CONTINUE;
 		}
 
-		private Map<String, File> getFiles(File dir) {
-			Map<String, File> returnValue = new HashMap<>();
-			for (File child : dir.listFiles()) {
-				returnValue.put(child.getName(), child);
+		@Override
+		public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+				throws IOException {
+			if (task.isCancelled())
+				return FileVisitResult.TERMINATE;
+			String name = file.getFileName().toString();
+			Path dstFile = getDestPath(file);
+			BasicFileAttributes dstAttrs = readAttributes(dstFile);
+
+			if (deleteExtraDestFiles) {
+				if (src.equals(file.getParent()))
+					unmatchedDestFiles.remove(name);
+				if (dstAttrs != null) {
+					if (dstAttrs.isDirectory()) {
+						// if we reach this point: maybe we should add a way to
+						// prompt the user for feedback? this could be very
+						// harmful.
+						throw new IOException("will not delete directory "
+								+ dstFile.toAbsolutePath() + " to copy file "
+								+ name);
+					}
+					if (isUnchanged(file, attrs, dstFile, dstAttrs))
+						return FileVisitResult.CONTINUE;
+					Files.delete(dstFile);
+				}
+			} else {
+				if (IGNORED_FILE_NAMES.contains(name))
+					return FileVisitResult.CONTINUE;
+				if (dstAttrs != null) {
+					if (isUnchanged(file, attrs, dstFile, dstAttrs))
+						return FileVisitResult.CONTINUE;
+					// if we use deleteExtraDestFiles we can delete/overwrite
+					// dst files, but this operation never deletes data
+					// If we ever add a way to prompt the user with q's,
+					// this is a good candidate
+					throw new IOException("a file named " + name
+							+ " already exists at "
+							+ dstFile.getParent().toAbsolutePath());
+				}
 			}
-			return returnValue;
+			enqueue(file, dstFile, attrs);
+			return FileVisitResult.CONTINUE;
 		}
 
-		private void enqueue(File srcFile) {
-			long size = srcFile.length();
-			task.incrementWorkload(size);
-			filesToCopy.put(srcFile, size);
+		@Override
+		public FileVisitResult visitFileFailed(Path file, IOException exc)
+				throws IOException {
+			throw exc;
 		}
 
-		private void indexAndDelete(File src, File dst) throws IOException {
-			Map<String, File> srcFiles = getFiles(src);
-			Map<String, File> dstFiles = getFiles(dst);
-
-			for (Entry<String, File> srcEntry : srcFiles.entrySet()) {
-				File dstFile = dstFiles.remove(srcEntry.getKey());
-				if (dstFile == null) {
-					enqueue(srcEntry.getValue());
-				} else if (dstFile.isDirectory()) {
-					// if we reach this point: maybe we should add a way to
-					// prompt the user for feedback? this could be very harmful.
-					throw new IOException("will not delete directory "
-							+ dstFile.getAbsolutePath() + " to copy file "
-							+ srcEntry.getValue().getName());
-				} else if (IOUtils.equals(srcEntry.getValue(), dstFile)) {
-					// continue;
-				} else {
-					// the files are different
-					if (!dstFile.delete())
-						throw new IOException("File.delete() failed for "
-								+ dstFile.getAbsolutePath());
-					enqueue(srcEntry.getValue());
+		@Override
+		public FileVisitResult postVisitDirectory(Path dir, IOException exc)
+				throws IOException {
+			if (exc != null)
+				throw exc;
+			if (deleteExtraDestFiles && dir.equals(src)) {
+				for (String name : unmatchedDestFiles) {
+					// this throws an exception for a directory that isn't empty
+					Files.delete(dst.resolve(name));
 				}
 			}
+			return FileVisitResult.CONTINUE;
+		}
+
+		/**
+		 * Return true if a destination file does not need to be copied.
+		 * <P>
+		 * If the files have the same size but different modification times,
+		 * this compares their contents. If they are identical and we're
+		 * allowed to modify the destination, the destination file's
+		 * modification time is updated so the next sync only has to compare
+		 * attributes.
+		 */
+		private boolean isUnchanged(Path srcFile, BasicFileAttributes srcAttrs,
+				Path dstFile, BasicFileAttributes dstAttrs) throws IOException {
+			if (srcAttrs.size() != dstAttrs.size())
+				return false;
+			if (srcAttrs.lastModifiedTime().equals(dstAttrs.lastModifiedTime()))
+				return true;
+			if (!IOUtils.equals(srcFile.toFile(), dstFile.toFile()))
+				return false;
+			if (deleteExtraDestFiles)
+				Files.setLastModifiedTime(dstFile, srcAttrs.lastModifiedTime());
+			return true;
+		}
 
-			for (File dstFile : dstFiles.values()) {
-				if (!dstFile.delete())
-					throw new IOException("File.delete() failed for "
-							+ dstFile.getAbsolutePath());
+		private void enqueue(final Path srcFile, final Path dstFile,
+				BasicFileAttributes attrs) {
+			final long size = attrs.size();
+			final FileTime lastModified = attrs.lastModifiedTime();
+			task.incrementWorkload(size);
+			try {
+				queuePermits.acquire();
+			} catch (InterruptedException e) {
+				throw new InterruptedRuntimeException();
 			}
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (task.isCancelled())
+							return;
+						copy(srcFile, dstFile, lastModified);
+						task.incrementProgress(size, srcFile.toFile());
+					} catch (IOException | RuntimeException e) {
+						task.setThrowable(e);
+						task.cancel();
+					} finally {
+						queuePermits.release();
+					}
+				}
+			});
 		}
 	}
 
+	/**
+	 * This is thrown from a FileVisitor when the walking thread is
+	 * interrupted.
+	 */
+	static class InterruptedRuntimeException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Return the attributes of a file, or null if it does not exist.
+	 */
+	static BasicFileAttributes readAttributes(Path path) throws IOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Copy a file and apply the given modification time to the copy.
+	 */
+	static void copy(Path src, Path dst, FileTime lastModified)
+			throws IOException {
+		try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(dst,
+						StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			long pos = 0;
+			while (pos < size) {
+				long k = in.transferTo(pos, size - pos, out);
+				if (k <= 0)
+					break;
+				pos += k;
+			}
+		}
+		Files.setLastModifiedTime(dst, lastModified);
+	}
+
 	transient List<ActionListener> cancelListeners = new LinkedList<>();
 	transient List<ActionListener> finishListeners = new LinkedList<>();
 	transient Thread workerThread;
 
+	/**
+	 * Create and start a task that copies files using
+	 * {@link #DEFAULT_COPIER_COUNT} threads.
+	 * 
+	 * @param srcDir
+	 *            the directory to copy.
+	 * @param dstDir
+	 *            the directory to copy into.
+	 * @param deleteExtraDestFiles
+	 *            if true then files in the top level of the destination
+	 *            directory that are not in the source directory are deleted,
+	 *            and files that differ are overwritten. If false then this
+	 *            task fails instead of overwriting a different file, and it
+	 *            never modifies existing files.
+	 */
 	public DirectoryCopyTask(File srcDir, File dstDir,
 			boolean deleteExtraDestFiles) {
+		this(srcDir, dstDir, deleteExtraDestFiles, DEFAULT_COPIER_COUNT);
+	}
+
+	/**
+	 * Create and start a task.
+	 * 
+	 * @param srcDir
+	 *            the directory to copy.
+	 * @param dstDir
+	 *            the directory to copy into.
+	 * @param deleteExtraDestFiles
+	 *            if true then files in the top level of the destination
+	 *            directory that are not in the source directory are deleted,
+	 *            and files that differ are overwritten. If false then this
+	 *            task fails instead of overwriting a different file, and it
+	 *            never modifies existing files.
+	 * @param copierCount
+	 *            the number of threads that copy files.
+	 */
+	public DirectoryCopyTask(File srcDir, File dstDir,
+			boolean deleteExtraDestFiles, int copierCount) {
+		if (copierCount < 1)
+			throw new IllegalArgumentException("copierCount (" + copierCount
+					+ ") must be at least 1");
 		if (!srcDir.isDirectory()) {
 			throw new IllegalArgumentException("srcDir must be a directory ("
 					+ srcDir.getAbsolutePath() + ")");
@@ -238,8 +427,8 @@ public class DirectoryCopyTask extends AbstractAttributeDataImpl
 		setAttribute(KEY_SOURCE_DIRECTORY, srcDir);
 		setAttribute(KEY_DEST_DIRECTORY, dstDir);
 		setAttribute(KEY_DELETE_EXTRA_DEST_FILES, deleteExtraDestFiles);
-		workerThread = new Thread(new WorkerRunnable(this));
-		workerThread.start();
+		workerThread = new Thread(new WorkerRunnable(this, copierCount),
+				"DirectoryCopyTask");
 
 		addPropertyChangeListener(KEY_CANCELLED.getName(),
 				new PropertyChangeListener() {
@@ -284,12 +473,48 @@ public class DirectoryCopyTask extends AbstractAttributeDataImpl
 
 				});
 
+		workerThread.start();
+	}
+
+	@Override
+	protected KeySlots getKeySlots() {
+		return KEY_SLOTS;
 	}
 
 	public Throwable getThrowable() {
 		return getAttribute(KEY_THROWABLE);
 	}
 
+	/**
+	 * Return the number of files this task has found that need to be copied so
+	 * far. This increases as the source directory is walked.
+	 */
+	public int getTotalFileCount() {
+		return getAttribute(KEY_TOTAL_FILES_TO_COPY);
+	}
+
+	/**
+	 * Return the number of bytes in all the files this task has found that
+	 * need to be copied so far.
+	 */
+	public long getTotalByteCount() {
+		return getAttribute(KEY_TOTAL_BYTES_TO_COPY);
+	}
+
+	/**
+	 * Return the number of files that have been copied.
+	 */
+	public int getCopiedFileCount() {
+		return getAttribute(KEY_CURRENT_FILES_COPIED);
+	}
+
+	/**
+	 * Return the number of bytes that have been copied.
+	 */
+	public long getCopiedByteCount() {
+		return getAttribute(KEY_CURRENT_BYTES_COPIED);
+	}
+
 	void setThrowable(Throwable t) {
 		setAttribute(KEY_THROWABLE, t);
 	}
@@ -10,18 +10,25 @@
  */
 package com.pump.io;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
 
 import com.pump.util.JVM;
 
 /**
  * This logs text to a file.
+ * <p>
+ * Text is written by an {@link AsyncFileAppender}, so calls to
+ * {@link #print(Object)} and {@link #println(Object)} do not wait for disk
+ * I/O. Call {@link #flush()} to wait until everything printed so far is in
+ * the file.
  */
-public class FileLogger {
+public class FileLogger implements Flushable, Closeable {
 
 	File f;
+	AsyncFileAppender appender;
 
 	public FileLogger(String name) {
 		this(createLocalLog(name));
@@ -58,45 +65,46 @@ public class FileLogger {
 				throw new RuntimeException(e.getMessage());
 			}
 		}
+		appender = new AsyncFileAppender(f);
 	}
 
 	public void print(Object obj) {
 		if (obj == null)
 			obj = "null";
-		print2(obj.toString());
+		appender.append(obj.toString());
 	}
 
 	public File getFile() {
 		return f;
 	}
 
-	private int inside = 0;
+	/**
+	 * Return the appender that writes to this logger's file. This can be used
+	 * to configure rolling, flushing and overflow behavior.
+	 */
+	public AsyncFileAppender getAppender() {
+		return appender;
+	}
 
 	public void println(Object obj) {
-		print(obj);
-		print("\r\n");
+		// one message keeps concurrent lines from interleaving
+		appender.append(obj + "\r\n");
 	}
 
-	private void print2(String s) {
-		synchronized (this) {
-			try {
-				inside++;
-				FileOutputStream out = new FileOutputStream(f, true);
-				out.write(s.getBytes());
-				out.close();
-			} catch (IOException e) {
-				if (inside == 1) {
-					/**
-					 * This little clause is intended for logging the console
-					 * output. If we're logging the console output, but then an
-					 * error occurs ~and we print it to the console~ then we
-					 * might enter a nasty loop. Instead only print one error.
-					 */
-					e.printStackTrace();
-				}
-			} finally {
-				inside--;
-			}
-		}
+	/**
+	 * Wait until everything printed so far has been written to the file.
+	 */
+	@Override
+	public void flush() {
+		appender.flush();
+	}
+
+	/**
+	 * Write all pending text and stop the writer thread. Text printed after
+	 * this is written synchronously.
+	 */
+	@Override
+	public void close() {
+		appender.close();
 	}
-}
\ No newline at end of file
+}
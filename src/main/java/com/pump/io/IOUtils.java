@@ -13,6 +13,8 @@ package com.pump.io;
 import java.io.*;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.file.Path;
@@ -21,18 +23,31 @@ import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
+import com.pump.thread.DaemonThreadFactory;
 import com.pump.util.JVM;
 
 /**
@@ -256,9 +271,20 @@ public class IOUtils {
 	 *             if an IO problem occurs.
 	 */
 	public static boolean isZip(File file) throws IOException {
-		if (file.exists() == false)
+		if (file.exists() == false || file.isDirectory())
 			return false;
 
+		// ZipInputStream requires a local file header signature at the start
+		// of the file, so we can usually rule out a zip by reading 4 bytes:
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] header = new byte[4];
+			if (read(in, header) < 4 || header[0] != 'P' || header[1] != 'K'
+					|| header[2] != 3 || header[3] != 4)
+				return false;
+		} catch (IOException e) {
+			return false;
+		}
+
 		try (InputStream in = new FileInputStream(file);
 				ZipInputStream zipIn = new ZipInputStream(in)) {
 			ZipEntry e = zipIn.getNextEntry();
@@ -312,6 +338,17 @@ public class IOUtils {
 		if (zip1.length() != zip2.length() && ignorablePatterns.length == 0)
 			return false;
 
+		try {
+			Map<String, Long> entries1 = getZipEntryChecksums(zip1,
+					ignorablePatterns);
+			Map<String, Long> entries2 = getZipEntryChecksums(zip2,
+					ignorablePatterns);
+			return entries1.equals(entries2);
+		} catch (ZipException e) {
+			// the central directory couldn't be read, so fall back to
+			// reading every entry
+		}
+
 		Map<String, Long> crcMap = new HashMap<String, Long>();
 
 		try (InputStream in = new FileInputStream(zip1);
@@ -360,6 +397,34 @@ public class IOUtils {
 		return true;
 	}
 
+	/**
+	 * Return a map of every zip entry name to a combination of its CRC and
+	 * uncompressed size, as recorded in the central directory. This does not
+	 * inflate any data.
+	 */
+	private static Map<String, Long> getZipEntryChecksums(File zip,
+			Pattern[] ignorablePatterns) throws IOException {
+		Map<String, Long> returnValue = new HashMap<>();
+		try (ZipFile zipFile = new ZipFile(zip)) {
+			Enumeration<? extends ZipEntry> e = zipFile.entries();
+			scanZipArchive: while (e.hasMoreElements()) {
+				ZipEntry entry = e.nextElement();
+				for (Pattern pattern : ignorablePatterns) {
+					if (pattern.matcher(entry.getName()).matches()) {
+						continue scanZipArchive;
+					}
+				}
+				long crc = entry.getCrc();
+				long size = entry.getSize();
+				if (crc == -1 || size == -1)
+					throw new ZipException("missing CRC or size for "
+							+ entry.getName());
+				returnValue.put(entry.getName(), (size << 32) ^ crc);
+			}
+		}
+		return returnValue;
+	}
+
 	/**
 	 * Return the length of an InputStream. This is measured by invoking
 	 * <code>InputStream.skip(..)</code> and <code>InputStream.read()</code>.
@@ -403,7 +468,7 @@ public class IOUtils {
 	public static long getCRC(InputStream in, boolean close)
 			throws IOException {
 		CRC32 crc = new CRC32();
-		byte[] chunk = new byte[4096];
+		byte[] chunk = new byte[BUFFER_SIZE];
 		try {
 			int t = in.read(chunk);
 			while (t != -1) {
@@ -418,24 +483,211 @@ public class IOUtils {
 		}
 	}
 
+	/**
+	 * Calculate the CRC32 checksum of a file using one thread per available
+	 * processor. This returns the same value as
+	 * <code>getCRC(new FileInputStream(file), true)</code>.
+	 */
+	public static long getCRC(File file) throws IOException {
+		return getCRC(file, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Calculate the CRC32 checksum of a file. This returns the same value as
+	 * <code>getCRC(new FileInputStream(file), true)</code>.
+	 * <P>
+	 * Large files are split into segments that are checksummed on separate
+	 * threads, and the segments' checksums are then combined.
+	 * 
+	 * @param file
+	 *            the file to checksum.
+	 * @param threadCount
+	 *            the maximum number of threads to use.
+	 */
+	public static long getCRC(File file, int threadCount) throws IOException {
+		return getCRC(file, threadCount, MIN_CRC_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Calculate the CRC32 checksum of a file.
+	 * 
+	 * @param file
+	 *            the file to checksum.
+	 * @param threadCount
+	 *            the maximum number of threads to use.
+	 * @param minSegmentSize
+	 *            the minimum number of bytes to assign to one thread.
+	 */
+	static long getCRC(File file, int threadCount, long minSegmentSize)
+			throws IOException {
+		if (threadCount < 1)
+			throw new IllegalArgumentException("threadCount (" + threadCount
+					+ ") must be at least 1");
+		try (final FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			long length = channel.size();
+			int segmentCount = (int) Math.max(1,
+					Math.min(threadCount, length / minSegmentSize));
+			if (segmentCount == 1)
+				return getCRC(channel, 0, length);
+
+			long segmentSize = length / segmentCount;
+			ExecutorService executor = Executors.newFixedThreadPool(
+					segmentCount, new DaemonThreadFactory("IOUtils-getCRC"));
+			try {
+				List<Future<Long>> futures = new ArrayList<>(segmentCount);
+				for (int a = 0; a < segmentCount; a++) {
+					final long start = a * segmentSize;
+					final long end = a == segmentCount - 1 ? length : start
+							+ segmentSize;
+					futures.add(executor.submit(new Callable<Long>() {
+						@Override
+						public Long call() throws IOException {
+							return getCRC(channel, start, end);
+						}
+					}));
+				}
+				long crc = 0;
+				for (int a = 0; a < segmentCount; a++) {
+					long segmentLength = a == segmentCount - 1 ? length - a
+							* segmentSize : segmentSize;
+					crc = combineCRC(crc, getResult(futures.get(a)),
+							segmentLength);
+				}
+				return crc;
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * The minimum number of bytes {@link #getCRC(File, int)} assigns to one
+	 * thread.
+	 */
+	private static final long MIN_CRC_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * The number of bytes read at a time when comparing or checksumming data.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Files at least this large are compared using memory-mapped windows.
+	 */
+	static final long MAP_THRESHOLD = 4 * 1024 * 1024;
+
+	/**
+	 * The size of the memory-mapped windows used to compare large files.
+	 */
+	private static final long MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private static long getCRC(FileChannel channel, long start, long end)
+			throws IOException {
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		long pos = start;
+		while (pos < end) {
+			buffer.clear();
+			if (end - pos < buffer.capacity())
+				buffer.limit((int) (end - pos));
+			int k = channel.read(buffer, pos);
+			if (k == -1)
+				throw new EOFException();
+			buffer.flip();
+			crc.update(buffer);
+			pos += k;
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Return the CRC32 checksum of two concatenated blocks of data.
+	 * <P>
+	 * This is based on zlib's <code>crc32_combine()</code>.
+	 * 
+	 * @param crc1
+	 *            the checksum of the first block.
+	 * @param crc2
+	 *            the checksum of the second block.
+	 * @param length2
+	 *            the number of bytes in the second block.
+	 */
+	static long combineCRC(long crc1, long crc2, long length2) {
+		if (length2 <= 0)
+			return crc1;
+
+		long[] even = new long[32];
+		long[] odd = new long[32];
+
+		// the operator for one zero bit
+		odd[0] = 0xedb88320L;
+		long row = 1;
+		for (int n = 1; n < 32; n++) {
+			odd[n] = row;
+			row <<= 1;
+		}
+
+		// the operators for two and four zero bits
+		gf2MatrixSquare(even, odd);
+		gf2MatrixSquare(odd, even);
+
+		// apply length2 zero bytes to crc1
+		do {
+			gf2MatrixSquare(even, odd);
+			if ((length2 & 1) != 0)
+				crc1 = gf2MatrixTimes(even, crc1);
+			length2 >>= 1;
+			if (length2 == 0)
+				break;
+
+			gf2MatrixSquare(odd, even);
+			if ((length2 & 1) != 0)
+				crc1 = gf2MatrixTimes(odd, crc1);
+			length2 >>= 1;
+		} while (length2 != 0);
+
+		return crc1 ^ crc2;
+	}
+
+	private static long gf2MatrixTimes(long[] matrix, long vector) {
+		long sum = 0;
+		int i = 0;
+		while (vector != 0) {
+			if ((vector & 1) != 0)
+				sum ^= matrix[i];
+			vector >>>= 1;
+			i++;
+		}
+		return sum;
+	}
+
+	private static void gf2MatrixSquare(long[] square, long[] matrix) {
+		for (int n = 0; n < 32; n++) {
+			square[n] = gf2MatrixTimes(matrix, matrix[n]);
+		}
+	}
+
+	/**
+	 * Return true if two InputStreams contain the same data. This reads both
+	 * streams until a difference is found or the end of the streams is
+	 * reached, but it does not close them.
+	 */
 	public static boolean equals(InputStream in1, InputStream in2)
 			throws IOException {
-		byte[] b1 = new byte[4096];
-		byte[] b2 = new byte[4096];
+		byte[] b1 = new byte[BUFFER_SIZE];
+		byte[] b2 = new byte[BUFFER_SIZE];
 
-		int k1 = read(in1, b1);
-		int k2 = read(in2, b2);
-		while (k1 > 0 && k2 > 0) {
-			if (k1 != k2) {
+		while (true) {
+			int k1 = read(in1, b1);
+			int k2 = read(in2, b2);
+			if (k1 != k2)
 				return false;
-			}
-			if (equals(b1, b2, k1) == false) {
+			if (!Arrays.equals(b1, 0, k1, b2, 0, k2))
 				return false;
-			}
-			k1 = read(in1, b1);
-			k2 = read(in2, b2);
+			if (k1 < BUFFER_SIZE)
+				return true;
 		}
-		return true;
 	}
 
 	public static boolean equals(byte[] a1, byte[] a2, int length) {
@@ -455,11 +707,7 @@ public class IOUtils {
 		if (amountToRead1 != amountToRead2)
 			return false;
 
-		for (int i = 0; i < length; i++)
-			if (a1[i] != a2[i])
-				return false;
-
-		return true;
+		return Arrays.equals(a1, 0, length, a2, 0, length);
 	}
 
 	/** This accepts all files that are not hidden. */
@@ -474,7 +722,10 @@ public class IOUtils {
 
 	/**
 	 * @return true if two files are exactly equal. This will call
-	 *         <code>zipEquals()</code> if both files are zip files.
+	 *         <code>zipEquals()</code> if both files are zip files. If both
+	 *         files are directories then this compares the names and
+	 *         contents of their visible children, using one thread per
+	 *         available processor.
 	 * @param file1
 	 *            the first file
 	 * @param file2
@@ -483,34 +734,173 @@ public class IOUtils {
 	 *             if an IO problem occurs.
 	 */
 	public static boolean equals(File file1, File file2) throws IOException {
+		if (file1.isDirectory() && file2.isDirectory()) {
+			ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime()
+					.availableProcessors());
+			try {
+				return pool.invoke(new FileEqualsTask(file1, file2,
+						new AtomicBoolean()));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			} finally {
+				pool.shutdown();
+			}
+		}
+		return fileEquals(file1, file2);
+	}
+
+	/**
+	 * This compares two files, and if they are directories it forks a task
+	 * for each pair of children.
+	 */
+	private static class FileEqualsTask extends RecursiveTask<Boolean> {
+		private static final long serialVersionUID = 1L;
+
+		final File file1, file2;
+
+		/**
+		 * This is set to true when any difference is found, so the other
+		 * tasks can stop early.
+		 */
+		final AtomicBoolean differenceFound;
+
+		FileEqualsTask(File file1, File file2, AtomicBoolean differenceFound) {
+			this.file1 = file1;
+			this.file2 = file2;
+			this.differenceFound = differenceFound;
+		}
+
+		@Override
+		protected Boolean compute() {
+			if (differenceFound.get())
+				return false;
+			try {
+				boolean returnValue = compare();
+				if (!returnValue)
+					differenceFound.set(true);
+				return returnValue;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private boolean compare() throws IOException {
+			if (!(file1.isDirectory() && file2.isDirectory()))
+				return fileEquals(file1, file2);
+
+			File[] list1 = listVisibleFiles(file1);
+			File[] list2 = listVisibleFiles(file2);
+			if (list1.length != list2.length)
+				return false;
+			List<FileEqualsTask> tasks = new ArrayList<>(list1.length);
+			for (int a = 0; a < list1.length; a++) {
+				if (!list1[a].getName().equals(list2[a].getName()))
+					return false;
+				tasks.add(new FileEqualsTask(list1[a], list2[a],
+						differenceFound));
+			}
+			for (FileEqualsTask task : invokeAll(tasks)) {
+				if (!task.join())
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Return the sorted visible children of a directory.
+	 */
+	private static File[] listVisibleFiles(File dir) throws IOException {
+		File[] list = dir.listFiles(VISIBLE_FILE_FILTER);
+		if (list == null)
+			throw new IOException("unable to list " + dir.getAbsolutePath());
+		Arrays.sort(list);
+		return list;
+	}
+
+	/**
+	 * Compare two files that are not both directories. (Directories are
+	 * compared by {@link FileEqualsTask}.)
+	 */
+	private static boolean fileEquals(File file1, File file2)
+			throws IOException {
 		if (file1.exists() != file2.exists())
 			return false;
+		if (file1.isDirectory() != file2.isDirectory())
+			return false;
 
 		if (isZip(file1) && isZip(file2)) {
 			return zipEquals(file1, file2);
 		}
 
-		if (file1.length() != file2.length())
-			return false;
-		if (file1.isDirectory() != file2.isDirectory())
+		long length = file1.length();
+		if (length != file2.length())
 			return false;
-		if (file1.isDirectory()) {
-			File[] list1 = file1.listFiles(VISIBLE_FILE_FILTER);
-			File[] list2 = file2.listFiles(VISIBLE_FILE_FILTER);
-			if (list1.length != list2.length)
-				return false;
-			Arrays.sort(list1);
-			Arrays.sort(list2);
-			for (int a = 0; a < list1.length; a++) {
-				if (!equals(list1[a], list2[a]))
+
+		try (FileChannel channel1 = FileChannel.open(file1.toPath(),
+				StandardOpenOption.READ);
+				FileChannel channel2 = FileChannel.open(file2.toPath(),
+						StandardOpenOption.READ)) {
+			if (length >= MAP_THRESHOLD) {
+				// ByteBuffer.equals uses a vectorized comparison
+				for (long pos = 0; pos < length; pos += MAP_WINDOW_SIZE) {
+					long size = Math.min(MAP_WINDOW_SIZE, length - pos);
+					MappedByteBuffer b1 = channel1.map(
+							FileChannel.MapMode.READ_ONLY, pos, size);
+					MappedByteBuffer b2 = channel2.map(
+							FileChannel.MapMode.READ_ONLY, pos, size);
+					if (!b1.equals(b2))
+						return false;
+				}
+				return true;
+			}
+
+			ByteBuffer b1 = ByteBuffer.allocate(BUFFER_SIZE);
+			ByteBuffer b2 = ByteBuffer.allocate(BUFFER_SIZE);
+			while (true) {
+				int k1 = readFully(channel1, b1);
+				int k2 = readFully(channel2, b2);
+				if (k1 != k2)
 					return false;
+				if (!Arrays.equals(b1.array(), 0, k1, b2.array(), 0, k2))
+					return false;
+				if (k1 < BUFFER_SIZE)
+					return true;
 			}
-			return true;
 		}
+	}
+
+	/**
+	 * Clear a buffer and fill it from a channel.
+	 * 
+	 * @return the number of bytes read, which is less than the capacity of the
+	 *         buffer only if the end of the channel is reached.
+	 */
+	private static int readFully(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) == -1)
+				break;
+		}
+		return buffer.position();
+	}
 
-		try (InputStream in1 = new FileInputStream(file1);
-				InputStream in2 = new FileInputStream(file2)) {
-			return equals(in1, in2);
+	private static <T> T getResult(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
 		}
 	}
 
@@ -818,6 +1208,28 @@ public class IOUtils {
 		return doRead(new BufferedReader(r));
 	}
 
+	/**
+	 * Read all the chars from a Reader. Unlike {@link #read(Reader)} this
+	 * does not alter line breaks.
+	 * <p>
+	 * This does not close the Reader.
+	 * 
+	 * @return a CharBuffer that wraps an array containing every char the
+	 *         Reader returned.
+	 */
+	public static CharBuffer readChars(Reader r) throws IOException {
+		char[] array = new char[4096];
+		int length = 0;
+		while (true) {
+			if (length == array.length)
+				array = Arrays.copyOf(array, array.length * 2);
+			int k = r.read(array, length, array.length - length);
+			if (k == -1)
+				return CharBuffer.wrap(array, 0, length);
+			length += k;
+		}
+	}
+
 	private static String doRead(BufferedReader br) throws IOException {
 		StringBuffer sb = null;
 		String s = br.readLine();
@@ -1122,16 +1534,10 @@ public class IOUtils {
 	 * @return one Serializable object from the InputStream.
 	 */
 	public static Serializable deserialize(InputStream in, boolean useGZIPdecompression) throws IOException, ClassNotFoundException {
-		if (useGZIPdecompression) {
-			try (GZIPInputStream zipIn = new GZIPInputStream(in)) {
-				try (ObjectInputStream objIn = new ObjectInputStream(zipIn)) {
-					return (Serializable) objIn.readObject();
-				}
-			}
-		} else {
-			try (ObjectInputStream objIn = new ObjectInputStream(in)) {
-				return (Serializable) objIn.readObject();
-			}
+		InputStream src = useGZIPdecompression ? new GZIPInputStream(in) : in;
+		try (BufferedInputStream bufIn = new BufferedInputStream(src)) {
+			ObjectSerializer serializer = getSerializer(bufIn);
+			return (Serializable) serializer.readObject(bufIn);
 		}
 	}
 
@@ -1200,17 +1606,93 @@ public class IOUtils {
 	 * @param useGZIPcompression if true then the OutputStream passes through an additional GZIPOutputStream
 	 */
 	public static void serialize(Serializable object, OutputStream outputStream, boolean useGZIPcompression) throws IOException {
-		if (useGZIPcompression) {
-			try (GZIPOutputStream zipOut = new GZIPOutputStream(outputStream)) {
-				try (ObjectOutputStream objOut = new ObjectOutputStream(zipOut)) {
-					objOut.writeObject(object);
+		serialize(object, outputStream, useGZIPcompression, getSerializer());
+	}
+
+	/**
+	 * Serialize an object to the OutputStream provided using a specific
+	 * ObjectSerializer.
+	 * <p>
+	 * The {@link #deserialize(InputStream, boolean)} can read what this writes
+	 * if the serializer has been passed to {@link #addSerializer(ObjectSerializer)}.
+	 *
+	 * @param object the object to serialize
+	 * @param outputStream the stream to write to
+	 * @param useGZIPcompression if true then the OutputStream passes through an additional GZIPOutputStream
+	 * @param serializer the serializer used to convert the object to bytes
+	 */
+	public static void serialize(Serializable object, OutputStream outputStream, boolean useGZIPcompression, ObjectSerializer serializer) throws IOException {
+		try (OutputStream out = useGZIPcompression ? new GZIPOutputStream(outputStream) : outputStream) {
+			serializer.writeObject(object, out);
+		}
+	}
+
+	private static final List<ObjectSerializer> SERIALIZERS = new ArrayList<>();
+	private static ObjectSerializer serializer = new JavaObjectSerializer();
+
+	static {
+		SERIALIZERS.add(serializer);
+	}
+
+	/**
+	 * Return the ObjectSerializer the serialize(..) methods use. By default
+	 * this is a {@link JavaObjectSerializer}.
+	 */
+	public static synchronized ObjectSerializer getSerializer() {
+		return serializer;
+	}
+
+	/**
+	 * Assign the ObjectSerializer the serialize(..) methods use. This
+	 * serializer is also passed to {@link #addSerializer(ObjectSerializer)},
+	 * so the deserialize(..) methods can read data written by this serializer
+	 * or by any serializer previously used.
+	 */
+	public static synchronized void setSerializer(ObjectSerializer serializer) {
+		addSerializer(serializer);
+		IOUtils.serializer = serializer;
+	}
+
+	/**
+	 * Register an ObjectSerializer so the deserialize(..) methods can read
+	 * data it wrote.
+	 */
+	public static synchronized void addSerializer(ObjectSerializer serializer) {
+		Objects.requireNonNull(serializer);
+		if (!SERIALIZERS.contains(serializer))
+			SERIALIZERS.add(serializer);
+	}
+
+	/**
+	 * Return the registered ObjectSerializer whose signature matches the
+	 * beginning of an InputStream, without consuming any bytes.
+	 */
+	private static ObjectSerializer getSerializer(InputStream in) throws IOException {
+		byte[] prefix = new byte[16];
+		in.mark(prefix.length);
+		int length = 0;
+		while (length < prefix.length) {
+			int k = in.read(prefix, length, prefix.length - length);
+			if (k == -1)
+				break;
+			length += k;
+		}
+		in.reset();
+
+		synchronized (IOUtils.class) {
+			ObjectSerializer match = null;
+			int matchLength = 0;
+			for (ObjectSerializer s : SERIALIZERS) {
+				byte[] signature = s.getSignature();
+				if (signature.length <= length && signature.length > matchLength
+						&& Arrays.equals(signature, 0, signature.length, prefix, 0, signature.length)) {
+					match = s;
+					matchLength = signature.length;
 				}
 			}
-		} else {
-			try (ObjectOutputStream objOut = new ObjectOutputStream(
-					outputStream)) {
-				objOut.writeObject(object);
-			}
+			if (match == null)
+				throw new IOException("No registered ObjectSerializer recognizes this data.");
+			return match;
 		}
 	}
 
@@ -0,0 +1,46 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+
+/**
+ * This ObjectSerializer uses an ObjectOutputStream and an ObjectInputStream.
+ * This is the default serializer {@link IOUtils} uses.
+ */
+public class JavaObjectSerializer implements ObjectSerializer {
+
+	@Override
+	public byte[] getSignature() {
+		return new byte[] { (byte) (ObjectStreamConstants.STREAM_MAGIC >> 8),
+				(byte) ObjectStreamConstants.STREAM_MAGIC };
+	}
+
+	@Override
+	public void writeObject(Object object, OutputStream out)
+			throws IOException {
+		ObjectOutputStream objOut = new ObjectOutputStream(out);
+		objOut.writeObject(object);
+		objOut.flush();
+	}
+
+	@Override
+	public Object readObject(InputStream in)
+			throws IOException, ClassNotFoundException {
+		ObjectInputStream objIn = new ObjectInputStream(in);
+		return objIn.readObject();
+	}
+}
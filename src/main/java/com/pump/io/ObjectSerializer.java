@@ -0,0 +1,55 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This converts an object graph to bytes and back again.
+ * <p>
+ * {@link IOUtils#serialize(java.io.Serializable, OutputStream, boolean)} uses
+ * the serializer passed to {@link IOUtils#setSerializer(ObjectSerializer)},
+ * and {@link IOUtils#deserialize(InputStream, boolean)} identifies which
+ * serializer wrote a stream by its signature.
+ */
+public interface ObjectSerializer {
+
+	/**
+	 * Return the bytes every stream this serializer writes starts with. This
+	 * is used to identify which serializer can read a stream, so it should be
+	 * unique.
+	 */
+	byte[] getSignature();
+
+	/**
+	 * Write an object (starting with the signature) to an OutputStream.
+	 * 
+	 * @param object
+	 *            the object to write. This may be null.
+	 * @param out
+	 *            the stream to write to. This method should not close this
+	 *            stream.
+	 */
+	void writeObject(Object object, OutputStream out) throws IOException;
+
+	/**
+	 * Read an object previously written by {@link #writeObject(Object,
+	 * OutputStream)}.
+	 * 
+	 * @param in
+	 *            the stream to read from. This method should not close this
+	 *            stream.
+	 */
+	Object readObject(InputStream in)
+			throws IOException, ClassNotFoundException;
+}
@@ -232,6 +232,15 @@ public abstract class Parser {
 			token.matching = this;
 		}
 
+		@Override
+		public BracketCharToken translate(int lineNumberDelta,
+				int startIndexDelta, int documentIndexDelta) {
+			BracketCharToken copy = (BracketCharToken) super.translate(
+					lineNumberDelta, startIndexDelta, documentIndexDelta);
+			copy.matching = null;
+			return copy;
+		}
+
 		/**
 		 * Return the optional matching (opposing) bracket token.
 		 * 
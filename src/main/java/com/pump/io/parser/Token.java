@@ -24,7 +24,7 @@ package com.pump.io.parser;
  * Optionally some parsers may also choose to include tokens for all the
  * consecutive whitespace, so this may have 9 tokens instead of 5.
  */
-public class Token implements Comparable<Token> {
+public class Token implements Comparable<Token>, Cloneable {
 
 	/** Convert an array of tokens back into a line of text. */
 	public static String toString(Token... line) {
@@ -46,9 +46,9 @@ public class Token implements Comparable<Token> {
 	}
 
 	final String text;
-	final int start;
-	final int lineNumber;
-	final int docStart;
+	int start;
+	int lineNumber;
+	int docStart;
 
 	ParserException exception;
 
@@ -140,6 +140,36 @@ public class Token implements Comparable<Token> {
 		exception = ex;
 	}
 
+	/**
+	 * Return a copy of this token that is moved to a different position in
+	 * the document. This is used to reuse tokens after text is inserted or
+	 * removed before them.
+	 * <p>
+	 * If this is a {@link MatchingToken} the copy has no match; the caller is
+	 * responsible for linking copies to each other.
+	 * 
+	 * @param lineNumberDelta
+	 *            the amount to add to the line number.
+	 * @param startIndexDelta
+	 *            the amount to add to the start index relative to the line.
+	 * @param documentIndexDelta
+	 *            the amount to add to the start index relative to the
+	 *            document.
+	 * @return a copy of this token.
+	 */
+	public Token translate(int lineNumberDelta, int startIndexDelta,
+			int documentIndexDelta) {
+		try {
+			Token copy = (Token) clone();
+			copy.lineNumber += lineNumberDelta;
+			copy.start += startIndexDelta;
+			copy.docStart += documentIndexDelta;
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		return text.hashCode();
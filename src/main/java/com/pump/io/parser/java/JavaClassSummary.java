@@ -17,6 +17,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
@@ -52,55 +53,69 @@ public class JavaClassSummary {
 		@Override
 		public void add(Token... tokens) {
 			for (Token token : tokens) {
-				if (token.getText().equals(";")) {
-					if (uncommittedPackageName != null) {
-						packageName = uncommittedPackageName.toString().trim();
-						uncommittedPackageName = null;
-					} else if (uncommittedImportStatement != null) {
-						importedClasses.add(uncommittedImportStatement
-								.toString().trim());
-						uncommittedImportStatement = null;
-					}
-				} else if (uncommittedPackageName != null) {
-					uncommittedPackageName.append(token.getText());
+				BracketType bracketType = null;
+				boolean isOpenBracket = false;
+				if (token instanceof BracketCharToken) {
+					bracketType = ((BracketCharToken) token).getBracketType();
+					isOpenBracket = ((BracketCharToken) token).isOpen();
+				}
+				if (!add(token.getText(), token instanceof WordToken,
+						bracketType, isOpenBracket))
+					throw new FinishedException();
+			}
+		}
+
+		/**
+		 * Interpret one token.
+		 * 
+		 * @return false if this token begins the body of the type
+		 *         declaration, so no more tokens need to be read.
+		 */
+		boolean add(String text, boolean isWord, BracketType bracketType,
+				boolean isOpenBracket) {
+			if (text.equals(";")) {
+				if (uncommittedPackageName != null) {
+					packageName = uncommittedPackageName.toString().trim();
+					uncommittedPackageName = null;
 				} else if (uncommittedImportStatement != null) {
-					uncommittedImportStatement.append(token.getText());
-				} else if (token.getText().equals("package")) {
-					uncommittedPackageName = new StringBuffer();
-				} else if (token.getText().equals("import")) {
-					uncommittedImportStatement = new StringBuffer();
-				} else if (token instanceof WordToken
-						&& ((WordToken) token).isModifier) {
-					modifiers.add(JavaModifier.valueOf(token.getText()
-							.toUpperCase()));
-				} else if (brackets.size() == 0 && token instanceof WordToken
-						&& ((WordToken) token).isDeclarationType) {
-					declarationType = DeclarationType.valueOf(token.getText()
-							.toUpperCase());
-				} else if (brackets.size() == 0 && declarationType != null
-						&& simpleName == null && token instanceof WordToken) {
-					simpleName = token.getText();
-				} else if (token instanceof BracketCharToken) {
-					if (token.getText().equals("{") && brackets.size() == 0) {
-						throw new FinishedException();
-					}
+					importedClasses.add(uncommittedImportStatement.toString()
+							.trim());
+					uncommittedImportStatement = null;
+				}
+			} else if (uncommittedPackageName != null) {
+				uncommittedPackageName.append(text);
+			} else if (uncommittedImportStatement != null) {
+				uncommittedImportStatement.append(text);
+			} else if (text.equals("package")) {
+				uncommittedPackageName = new StringBuffer();
+			} else if (text.equals("import")) {
+				uncommittedImportStatement = new StringBuffer();
+			} else if (isWord && JavaParser.JAVA_MODIFIERS.contains(text)) {
+				modifiers.add(JavaModifier.valueOf(text.toUpperCase()));
+			} else if (isWord && brackets.size() == 0
+					&& JavaParser.JAVA_DECLARATION_TYPES.contains(text)) {
+				declarationType = DeclarationType.valueOf(text.toUpperCase());
+			} else if (isWord && brackets.size() == 0
+					&& declarationType != null && simpleName == null) {
+				simpleName = text;
+			} else if (bracketType != null) {
+				if (text.equals("{") && brackets.size() == 0) {
+					return false;
+				}
 
-					BracketCharToken bct = (BracketCharToken) token;
-					if (bct.isOpen()) {
-						brackets.push(bct.getBracketType());
+				if (isOpenBracket) {
+					brackets.push(bracketType);
+				} else {
+					if (brackets.size() > 0 && brackets.peek() == bracketType) {
+						brackets.pop();
 					} else {
-						if (brackets.size() > 0
-								&& brackets.peek() == bct.getBracketType()) {
-							brackets.pop();
-						} else {
-							// unbalanced brackets of some sort:
-							error = true;
-						}
+						// unbalanced brackets of some sort:
+						error = true;
 					}
 				}
 			}
+			return true;
 		}
-
 	}
 
 	protected MyReceiver receiver = new MyReceiver();
@@ -142,17 +157,28 @@ public class JavaClassSummary {
 		initialize(reader);
 	}
 
+	/**
+	 * Read tokens until the body of the type declaration begins, so most of
+	 * the source code is never read or tokenized.
+	 * <p>
+	 * This does not close the Reader.
+	 */
 	private void initialize(Reader reader) {
 		try {
-			new JavaParser().parse(reader, receiver);
+			JavaTokenizer tokenizer = new JavaTokenizer(reader);
+			JavaTokenizer.Type type;
+			while ((type = tokenizer.next()) != null) {
+				if (!receiver.add(tokenizer.getText(),
+						type == JavaTokenizer.Type.WORD,
+						tokenizer.getBracketType(), tokenizer.isOpenBracket()))
+					return;
+			}
 			if (receiver.brackets.size() != 0) {
 				error = true;
 			}
-		} catch (FinishedException e) {
-			// do nothing, this is how we prematurely exit
-		} catch (IOException e) {
+		} catch (UncheckedIOException e) {
 			// this shouldn't happen for a StringReader
-			throw new RuntimeException(e);
+			throw new RuntimeException(e.getCause());
 		}
 	}
 
@@ -14,15 +14,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Modifier;
 import java.nio.charset.Charset;
-import java.text.CharacterIterator;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Set;
 
-import com.pump.io.LookAheadReader;
 import com.pump.io.parser.Parser;
 import com.pump.io.parser.ParserException;
 import com.pump.io.parser.Token;
@@ -328,400 +327,162 @@ public class JavaParser extends Parser {
 
 	public void parse(Reader reader, Receiver<Token> receiver)
 			throws IOException {
-		LinkedList<BracketCharToken> brackets = new LinkedList<BracketCharToken>();
-
-		StringBuffer scratch = new StringBuffer();
-		try (LookAheadReader l = new LookAheadReader(reader)) {
-			int lineNumber = 0;
-			int lastLineStart = 0;
-			parseTokens: while (l.current() != CharacterIterator.DONE) {
-				char ch = l.current();
-				char next = l.peek(1);
-				int start = (int) l.getPosition();
-				if (ch == '/' && next == '*') {
-					// parse a multiline comment:
-					StringBuffer comment = new StringBuffer();
-
-					boolean finished = false;
-					searchForCommentEnd: while (l.hasNext()) {
-						ch = l.current();
-						next = l.peek(1);
-						comment.append(ch);
-						if (ch == '*' && next == '/') {
-							comment.append(next);
-							l.skip(2);
-							finished = true;
-							break searchForCommentEnd;
-						} else if (ch == '\r' && next == '\n') {
-							lineNumber++;
-							l.skip(2);
-							lastLineStart = (int) l.getPosition();
-						} else if (ch == '\r' || next == '\n') {
-							lineNumber++;
-							l.next();
-							lastLineStart = (int) l.getPosition();
-						} else {
-							l.next();
-						}
-					}
-					Token token = new CommentToken(comment.toString(), start
-							- lastLineStart, lineNumber, start);
-
-					receiver.add(token);
-					if (!finished)
-						token.setException(new ParserException(token,
-								"this text appeared to have an unclosed javadoc"));
-
-					continue parseTokens;
-				} else if (ch == '/' && next == '/') {
-					// parse a single-line comment that occupies the rest of
-					// this line:
-					StringBuffer comment = new StringBuffer();
-
-					searchForCommentEnd: while (l.current() != CharacterIterator.DONE) {
-						ch = l.current();
-						comment.append(ch);
-						l.next();
-
-						ch = l.current();
-						if (ch == '\r' && l.peek(1) == '\n') {
-							l.skip(1);
-							break searchForCommentEnd;
-						} else if (ch == '\r' || ch == '\n') {
-							break searchForCommentEnd;
-						}
-					}
-
-					receiver.add(new CommentToken(comment.toString(), start
-							- lastLineStart, lineNumber, start));
-					continue parseTokens;
-				} else if (ch == '"' || ch == '\'') {
-					// parse either a String or a char literal:
-					char closingChar = ch;
-					/**
-					 * How the String looks when encoded in Java. This includes
-					 * the enclosing double quotation or single quotation marks.
-					 */
-					StringBuffer encodedString = new StringBuffer(
-							Character.toString(ch));
-					/**
-					 * How the String is actually parsed. The encoded String may
-					 * include the two characters \n, but the decoded converts
-					 * this to one new line character.
-					 */
-					StringBuffer decodedString = new StringBuffer();
-
-					l.next();
-					boolean finished = false;
-					Exception ex = null;
-					String error = null;
-					readLiteral: while (l.current() != CharacterIterator.DONE
-							&& error == null && ex == null) {
-						// store at least 6 chars, because a unicode char is
-						// the longest char we may parse: \u0123
-						scratch.delete(0, scratch.length());
-						peek(l, scratch, 6);
-						int charsRead = 0;
-						try {
-							charsRead = JavaEncoding.decode(scratch, 0,
-									decodedString);
-						} catch (Exception e) {
-							if (ex == null)
-								ex = e;
-						}
-						encodedString.append(scratch.subSequence(0, charsRead));
-						l.skip(charsRead);
-						if (charsRead == 1) {
-							char charRead = scratch.charAt(0);
-							if (charRead == closingChar) {
-								finished = true;
-								decodedString.deleteCharAt(decodedString
-										.length() - 1);
-
-								break readLiteral;
-							} else if (charsRead == 1 && charRead == '\n'
-									|| charRead == '\r') {
-								error = "Line breaks in literals should be encoded as \\n or \\r.";
-							}
-						}
-					}
+		try (Reader r = reader) {
+			parse(new JavaTokenizer(r), receiver);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
 
-					Token token;
-					if (closingChar == '\'') {
-						char newCh = decodedString.length() > 0 ? decodedString
-								.charAt(0) : '?';
-						token = new CharToken(encodedString.toString(), newCh,
-								start - lastLineStart, lineNumber, start);
-						if (decodedString.length() != 1) {
-							token.setException(new ParserException(token,
-									"This char token didn't evaluate to a singular character."));
-						}
-					} else if (closingChar == '\"') {
-						token = new StringToken(encodedString.toString(),
-								decodedString.toString(),
-								start - lastLineStart, lineNumber, start);
-					} else {
-						throw new RuntimeException("Unexpected condition");
-					}
-					receiver.add(token);
-					if (ex != null) {
-						token.setException(new ParserException(token, ex));
-					} else if (error != null) {
-						token.setException(new ParserException(token, error));
-					} else if (!finished) {
-						token.setException(new ParserException(token,
-								"This text appeared to have an unclosed literal."));
-					}
+	/**
+	 * Parse Java source code.
+	 * 
+	 * @param text
+	 *            the text to parse.
+	 * @param receiver
+	 *            the receiver in which tokens are placed as they are parsed.
+	 */
+	public void parse(CharSequence text, Receiver<Token> receiver) {
+		parse(new JavaTokenizer(text), receiver);
+	}
 
-					continue parseTokens;
-				} else if (Character.isWhitespace(ch)) {
-					// parse a block of consecutive whitespace
-					StringBuffer whitespace = new StringBuffer();
-					int origLineStart = lastLineStart;
-					int origLineNumber = lineNumber;
-					do {
-						ch = l.current();
-						whitespace.append(ch);
-						next = l.peek(1);
-
-						if (ch == '\r' && next == '\n') {
-							lineNumber++;
-							l.skip(1);
-							lastLineStart = (int) l.getPosition();
-						} else if (ch == '\r' || ch == '\n') {
-							lineNumber++;
-							lastLineStart = (int) l.getPosition() + 1;
-						}
-						l.next();
-						next = l.peek(1);
-					} while (Character.isWhitespace(l.current()) && l.hasNext());
-
-					receiver.add(new WhitespaceToken(whitespace.toString(),
-							start - origLineStart, origLineNumber, start));
-					continue parseTokens;
-				} else if (Character.isLetter(ch)) {
-					// parse a word (any consecutive string letters/digits
-					// that follow a letter):
-
-					StringBuffer word = new StringBuffer();
-					while (Character.isLetterOrDigit(ch) || ch == '_') {
-						word.append(ch);
-						l.next();
-						ch = l.current();
-					}
-					receiver.add(new WordToken(word.toString(), start
-							- lastLineStart, lineNumber, start));
-					continue parseTokens;
+	/**
+	 * Convert every token a JavaTokenizer identifies into a Token.
+	 */
+	private void parse(JavaTokenizer tokenizer, Receiver<Token> receiver) {
+		LinkedList<BracketCharToken> brackets = new LinkedList<BracketCharToken>();
+		JavaTokenizer.Type type;
+		while ((type = tokenizer.next()) != null) {
+			int start = tokenizer.getStart();
+			int startIndex = tokenizer.getStartIndex();
+			int lineNumber = tokenizer.getLineNumber();
+			Token token;
+			switch (type) {
+			case WHITESPACE:
+				token = new WhitespaceToken(tokenizer.getText(), startIndex,
+						lineNumber, start);
+				break;
+			case COMMENT:
+				token = new CommentToken(tokenizer.getText(), startIndex,
+						lineNumber, start);
+				break;
+			case STRING:
+				token = new StringToken(tokenizer.getText(),
+						tokenizer.getDecodedText(), startIndex, lineNumber,
+						start);
+				break;
+			case CHAR:
+				String decodedString = tokenizer.getDecodedText();
+				char decodedChar = decodedString.length() > 0 ? decodedString
+						.charAt(0) : '?';
+				token = new CharToken(tokenizer.getText(), decodedChar,
+						startIndex, lineNumber, start);
+				if (decodedString.length() != 1) {
+					token.setException(new ParserException(token,
+							"This char token didn't evaluate to a singular character."));
 				}
-
-				// TODO: address hex numbers
-
-				readNumber: if (ch == '+' || ch == '-' || Character.isDigit(ch)
-						|| ch == '.') {
-					// now the hardest one to parse: numbers.
-
-					// "[-+]?[0-9]*\\.?[0-9]+([eE][-+]?[0-9]+)?" (and
-					// optional f or L)
-
-					// So first, just tackle the left half of this
-					// expression:
-					// [-+]?[0-9]*\\.?[0-9]+
-
-					String error = null;
-					StringBuffer number = new StringBuffer();
-					int pos = 0;
-					if (ch == '+' || ch == '-') {
-						number.append(ch);
-						pos++;
-						if (l.peek(pos) == '.') {
-							number.append('.');
-							pos++;
-							int requiredClusterCtr = 0;
-							while (Character.isDigit(l.peek(pos))) {
-								number.append(l.peek(pos));
-								pos++;
-								requiredClusterCtr++;
-							}
-							if (requiredClusterCtr == 0) {
-								error = "This number must have digits after the decimal.";
-							}
-						} else {
-							int clusterCtr = 0;
-							while (Character.isDigit(l.peek(pos))) {
-								number.append(l.peek(pos));
-								pos++;
-								clusterCtr++;
-							}
-							if (l.peek(pos) == '.') {
-								number.append(l.peek(pos));
-								pos++;
-								int requiredClusterCtr = 0;
-								while (Character.isDigit(l.peek(pos))) {
-									number.append(l.peek(pos));
-									pos++;
-									requiredClusterCtr++;
-								}
-								if (requiredClusterCtr == 0) {
-									error = "This number must have digits after the decimal.";
-								}
-							} else {
-								if (clusterCtr == 0) {
-									// we're not reading a number, we just
-									// had a plus or minus sign.
-									break readNumber;
-								}
-							}
-						}
-					} else if (ch == '.') {
-						number.append('.');
-						pos++;
-						int requiredClusterCtr = 0;
-						while (Character.isDigit(l.peek(pos))) {
-							number.append(l.peek(pos));
-							pos++;
-							requiredClusterCtr++;
-						}
-						if (requiredClusterCtr == 0) {
-							// this wasn't a number, it was just a period.
-							break readNumber;
-						}
+				break;
+			case WORD:
+				token = new WordToken(tokenizer.getText(), startIndex,
+						lineNumber, start);
+				break;
+			case INTEGER:
+				token = new IntegerToken(tokenizer.getText(), startIndex,
+						lineNumber, start);
+				break;
+			case LONG:
+				token = new LongToken(tokenizer.getText(), startIndex,
+						lineNumber, start);
+				break;
+			case FLOAT:
+				token = new FloatToken(tokenizer.getText(), startIndex,
+						lineNumber, start);
+				break;
+			case DOUBLE:
+				token = new DoubleToken(tokenizer.getText(), startIndex,
+						lineNumber, start);
+				break;
+			case BRACKET:
+				BracketCharToken bct = new BracketCharToken(
+						tokenizer.getBracketType(), tokenizer.isOpenBracket(),
+						startIndex, lineNumber, start);
+				if (brackets != null) {
+					if (bct.isOpen()) {
+						brackets.add(bct);
 					} else {
-						int clusterCtr = 0;
-						while (Character.isDigit(l.peek(pos))) {
-							number.append(l.peek(pos));
-							pos++;
-							clusterCtr++;
-						}
-						if (clusterCtr == 0) {
-							// how did we get here if we didn't have a
-							// cluster of digits?
-							throw new RuntimeException("Unexpected condition");
-						}
-						if (l.peek(pos) == '.') {
-							number.append(l.peek(pos));
-							pos++;
-							int requiredClusterCtr = 0;
-							while (Character.isDigit(l.peek(pos))) {
-								number.append(l.peek(pos));
-								pos++;
-								requiredClusterCtr++;
-							}
-							if (requiredClusterCtr == 0) {
-								error = "This number must have digits after the decimal.";
-							}
-						}
-					}
-
-					// whew. That was the hard(er) part. Now we just parse
-					// the optional tail of that expression:
-					Token newToken;
-					if (l.peek(pos) == 'f' || l.peek(pos) == 'F') {
-						number.append(l.peek(pos));
-						newToken = new FloatToken(number.toString(), start
-								- lastLineStart, lineNumber, start);
-					} else if (l.peek(pos) == 'd' || l.peek(pos) == 'D') {
-						number.append(l.peek(pos));
-						newToken = new DoubleToken(number.toString(), start
-								- lastLineStart, lineNumber, start);
-					} else if (l.peek(pos) == 'l' || l.peek(pos) == 'L') {
-						number.append(l.peek(pos));
-						newToken = new LongToken(number.toString(), start
-								- lastLineStart, lineNumber, start);
-					} else if (l.peek(pos) == 'e' || l.peek(pos) == 'E') {
-						// almost done, but now we have to parse:
-
-						// ([eE][-+]?[0-9]+)?
-
-						number.append(l.peek(pos));
-						pos++;
-						if (l.peek(pos) == '+' || l.peek(pos) == '-') {
-							number.append(l.peek(pos));
-							pos++;
-						}
-						int requiredClusterCtr = 0;
-						while (Character.isDigit(l.peek(pos))) {
-							number.append(l.peek(pos));
-							pos++;
-							requiredClusterCtr++;
-						}
-						if (requiredClusterCtr == 0) {
-							error = "This exponent must have digits after exponent indicator.";
-						}
-						newToken = new DoubleToken(number.toString(), start
-								- lastLineStart, lineNumber, start);
-					} else {
-						if (number.indexOf(".") != -1) {
-							newToken = new DoubleToken(number.toString(), start
-									- lastLineStart, lineNumber, start);
-						} else {
-							newToken = new IntegerToken(number.toString(),
-									start - lastLineStart, lineNumber, start);
-						}
-					}
-
-					if (error != null) {
-						newToken.setException(new ParserException(newToken,
-								error));
-					}
-
-					receiver.add(newToken);
-					l.skip(number.length());
-					continue parseTokens;
-				}
-
-				BracketType[] bracketTypes = BracketType.values();
-				BracketCharToken bct = null;
-				for (int a = 0; a < bracketTypes.length && bct == null; a++) {
-					if (ch == bracketTypes[a].closeChar) {
-						bct = new BracketCharToken(bracketTypes[a], false,
-								start - lastLineStart, lineNumber, start);
-					} else if (ch == bracketTypes[a].openChar) {
-						bct = new BracketCharToken(bracketTypes[a], true, start
-								- lastLineStart, lineNumber, start);
-					}
-				}
-				if (bct != null) {
-					if (brackets != null) {
-						if (bct.isOpen()) {
-							brackets.add(bct);
+						BracketCharToken last = (brackets.size() == 0) ? null
+								: brackets.removeLast();
+						if (last != null
+								&& last.isOpen()
+								&& last.getBracketType().equals(
+										bct.getBracketType())) {
+							last.setMatch(bct);
 						} else {
-							BracketCharToken last = (brackets.size() == 0) ? null
-									: brackets.removeLast();
-							if (last != null
-									&& last.isOpen()
-									&& last.getBracketType().equals(
-											bct.getBracketType())) {
-								last.setMatch(bct);
-							} else {
-								// signal that bracket matching is broken,
-								// and we stop trying to match
-								brackets = null;
-							}
+							// signal that bracket matching is broken,
+							// and we stop trying to match
+							brackets = null;
 						}
 					}
-					receiver.add(bct);
-				} else {
-					receiver.add(new SymbolCharToken(ch, start - lastLineStart,
-							lineNumber, start));
 				}
-				l.next();
+				token = bct;
+				break;
+			default:
+				token = new SymbolCharToken(tokenizer.getChar(), startIndex,
+						lineNumber, start);
 			}
+
+			// numbers report their errors before they are received, but
+			// comments and literals report their errors afterwards
+			boolean isNumber = token instanceof NumberToken;
+			if (isNumber)
+				setException(token, tokenizer);
+			receiver.add(token);
+			if (!isNumber)
+				setException(token, tokenizer);
+		}
+	}
+
+	private void setException(Token token, JavaTokenizer tokenizer) {
+		if (tokenizer.getErrorCause() != null) {
+			token.setException(new ParserException(token, tokenizer
+					.getErrorCause()));
+		} else if (tokenizer.getError() != null) {
+			token.setException(new ParserException(token, tokenizer
+					.getError()));
 		}
 	}
 
 	/**
-	 * Store the first {@code maximum} chars (accessed by peeking) into the
-	 * destination buffer. This starts with {@code reader.peek(0)}, which means
-	 * it will include the current queued char.
+	 * Match the BracketCharTokens in a series of tokens using the same rules
+	 * as {@link #parse(Reader, Receiver)}: once a closing bracket doesn't
+	 * match the last open bracket no more brackets are matched.
+	 * <p>
+	 * This is useful when the tokens were not all produced by one call to
+	 * <code>parse(..)</code>, for example when only part of a document was
+	 * parsed again after an edit.
 	 * 
-	 * @param reader
-	 * @param dest
-	 * @param maximum
+	 * @param tokens
+	 *            the tokens to match. The BracketCharTokens in this array
+	 *            should not already be matched.
 	 */
-	private static void peek(LookAheadReader reader, StringBuffer dest,
-			int maximum) {
-		for (int a = 0; a < maximum; a++) {
-			dest.append(reader.peek(a));
+	public static void matchBrackets(Token[] tokens) {
+		LinkedList<BracketCharToken> brackets = new LinkedList<BracketCharToken>();
+		for (Token token : tokens) {
+			if (token instanceof BracketCharToken) {
+				BracketCharToken bct = (BracketCharToken) token;
+				if (bct.isOpen()) {
+					brackets.add(bct);
+				} else {
+					BracketCharToken last = (brackets.size() == 0) ? null
+							: brackets.removeLast();
+					if (last != null && last.isOpen()
+							&& last.getBracketType().equals(bct.getBracketType())) {
+						last.setMatch(bct);
+					} else {
+						return;
+					}
+				}
+			}
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,613 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.io.parser.java;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.text.CharacterIterator;
+import java.util.Objects;
+
+import com.pump.io.parser.java.JavaParser.BracketType;
+
+/**
+ * A pull-based lexer for Java source code.
+ * <p>
+ * Each call to {@link #next()} identifies the next token and returns its
+ * {@link Type}. The token is described by offsets into the original text (see
+ * {@link #getStart()} and {@link #getEnd()}), so no
+ * {@link com.pump.io.parser.Token} objects or substrings are created unless
+ * you ask for them. This is intended for scanning large amounts of source code
+ * (for example: indexing a codebase) where most tokens are discarded as soon
+ * as they are identified.
+ * <p>
+ * This uses exactly the same rules as the {@link JavaParser}; in fact the
+ * JavaParser is a thin layer on top of this class that converts each token
+ * into a {@link com.pump.io.parser.Token}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class JavaTokenizer {
+
+	/** The types of tokens a JavaTokenizer identifies. */
+	public static enum Type {
+		/** A run of whitespace characters. */
+		WHITESPACE,
+		/** A single-line or multiline comment. */
+		COMMENT,
+		/** A String literal, including its quotation marks. */
+		STRING,
+		/** A char literal, including its quotation marks. */
+		CHAR,
+		/** A word that starts with a letter, such as a keyword or identifier. */
+		WORD,
+		/** An int literal. */
+		INTEGER,
+		/** A long literal. */
+		LONG,
+		/** A float literal. */
+		FLOAT,
+		/** A double literal. */
+		DOUBLE,
+		/** One of the chars in {@link BracketType}. */
+		BRACKET,
+		/** Any other single character. */
+		SYMBOL;
+	}
+
+	private static final char DONE = CharacterIterator.DONE;
+
+	private static final BracketType[] BRACKET_TYPES = BracketType.values();
+
+	/**
+	 * A 6-char window of the text that is padded with DONE chars past the end
+	 * of the text. Literals are decoded against this window so escape sequences
+	 * near the end of the text fail the same way the JavaParser always has.
+	 */
+	private class Window implements CharSequence {
+		int offset;
+
+		@Override
+		public int length() {
+			return 6;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= 6)
+				throw new StringIndexOutOfBoundsException(index);
+			return c(offset + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().subSequence(start, end);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(6);
+			for (int a = 0; a < 6; a++) {
+				sb.append(charAt(a));
+			}
+			return sb.toString();
+		}
+	}
+
+	private final CharSequence text;
+	private final Window window = new Window();
+
+	/**
+	 * The number of chars in {@link #text} that are available. If we're
+	 * reading from a Reader this grows as we read more chars.
+	 */
+	private int length;
+
+	/**
+	 * The Reader we're reading from, or null if we're not reading from a
+	 * Reader or we've reached the end of it.
+	 */
+	private Reader reader;
+
+	private int pos = 0;
+	private int lineNumber = 0;
+	private int lastLineStart = 0;
+
+	private Type type;
+	private int start, end, tokenLineNumber, tokenStartIndex;
+	private String error;
+	private Exception errorCause;
+	private BracketType bracketType;
+	private boolean openBracket, literalClosed;
+
+	/**
+	 * Create a JavaTokenizer that reads text from a Reader as it is needed,
+	 * so if you stop calling {@link #next()} early the rest of the Reader is
+	 * never read.
+	 * <p>
+	 * If the Reader throws an IOException then {@link #next()} throws an
+	 * UncheckedIOException.
+	 * <p>
+	 * This does not close the Reader.
+	 */
+	public JavaTokenizer(Reader reader) {
+		Objects.requireNonNull(reader);
+		this.reader = reader;
+		this.text = new StringBuilder();
+	}
+
+	/**
+	 * Create a JavaTokenizer.
+	 * 
+	 * @param text
+	 *            the Java source code. This may be a String, a
+	 *            StringBuilder, a CharBuffer, etc. It should not be modified
+	 *            while this tokenizer is in use.
+	 */
+	public JavaTokenizer(CharSequence text) {
+		Objects.requireNonNull(text);
+		this.text = text;
+		this.length = text.length();
+	}
+
+	/**
+	 * Return a character in the text, or DONE if the index is past the end of
+	 * the text.
+	 */
+	private char c(int index) {
+		if (index >= length && reader != null)
+			read(index);
+		return index < length ? text.charAt(index) : DONE;
+	}
+
+	/**
+	 * Read chars from our Reader until the argument is a valid index or we
+	 * reach the end of the Reader.
+	 */
+	private void read(int index) {
+		StringBuilder sb = (StringBuilder) text;
+		char[] buffer = new char[4096];
+		try {
+			while (index >= length) {
+				int k = reader.read(buffer);
+				if (k == -1) {
+					reader = null;
+					return;
+				}
+				sb.append(buffer, 0, k);
+				length += k;
+			}
+		} catch (IOException e) {
+			reader = null;
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Identify the next token.
+	 * 
+	 * @return the type of the next token, or null if the end of the text was
+	 *         reached.
+	 */
+	public Type next() {
+		error = null;
+		errorCause = null;
+		bracketType = null;
+		openBracket = false;
+		literalClosed = false;
+		start = pos;
+
+		char ch = c(pos);
+		if (ch == DONE) {
+			type = null;
+			end = pos;
+			return null;
+		}
+		char next = c(pos + 1);
+		if (ch == '/' && next == '*') {
+			readMultilineComment();
+		} else if (ch == '/' && next == '/') {
+			readSingleLineComment();
+		} else if (ch == '"' || ch == '\'') {
+			readLiteral(ch);
+		} else if (Character.isWhitespace(ch)) {
+			readWhitespace();
+		} else if (Character.isLetter(ch)) {
+			while (Character.isLetterOrDigit(ch) || ch == '_') {
+				ch = c(++pos);
+			}
+			setType(Type.WORD);
+		} else if (!readNumber(ch)) {
+			for (int a = 0; a < BRACKET_TYPES.length && bracketType == null; a++) {
+				if (ch == BRACKET_TYPES[a].closeChar) {
+					bracketType = BRACKET_TYPES[a];
+				} else if (ch == BRACKET_TYPES[a].openChar) {
+					bracketType = BRACKET_TYPES[a];
+					openBracket = true;
+				}
+			}
+			pos++;
+			setType(bracketType == null ? Type.SYMBOL : Type.BRACKET);
+		}
+		end = pos;
+		return type;
+	}
+
+	private void setType(Type type) {
+		this.type = type;
+		tokenLineNumber = lineNumber;
+		tokenStartIndex = start - lastLineStart;
+	}
+
+	private void readMultilineComment() {
+		boolean finished = false;
+		while (c(pos + 1) != DONE) {
+			char ch = c(pos);
+			char next = c(pos + 1);
+			if (ch == '*' && next == '/') {
+				pos += 2;
+				finished = true;
+				break;
+			} else if (ch == '\r' && next == '\n') {
+				lineNumber++;
+				pos += 2;
+				lastLineStart = pos;
+			} else if (ch == '\r' || next == '\n') {
+				lineNumber++;
+				pos++;
+				lastLineStart = pos;
+			} else {
+				pos++;
+			}
+		}
+		setType(Type.COMMENT);
+		if (!finished)
+			error = "this text appeared to have an unclosed javadoc";
+	}
+
+	private void readSingleLineComment() {
+		while (c(pos) != DONE) {
+			char ch = c(++pos);
+			if (ch == '\r' && c(pos + 1) == '\n') {
+				// the \r is consumed, but it is not part of the comment's text
+				pos++;
+				break;
+			} else if (ch == '\r' || ch == '\n') {
+				break;
+			}
+		}
+		setType(Type.COMMENT);
+	}
+
+	private void readLiteral(char closingChar) {
+		setType(closingChar == '"' ? Type.STRING : Type.CHAR);
+		pos++;
+		int decodedLength = 0;
+		while (c(pos) != DONE && error == null && errorCause == null) {
+			int charsRead = 0;
+			try {
+				charsRead = decodeLength(pos);
+				decodedLength++;
+			} catch (Exception e) {
+				errorCause = e;
+			}
+			pos += charsRead;
+			if (charsRead == 1) {
+				char charRead = c(pos - 1);
+				if (charRead == closingChar) {
+					literalClosed = true;
+					decodedLength--;
+					break;
+				} else if (charRead == '\n' || charRead == '\r') {
+					error = "Line breaks in literals should be encoded as \\n or \\r.";
+				}
+			}
+		}
+
+		if (errorCause != null) {
+			error = errorCause.getMessage() == null ? errorCause.toString()
+					: errorCause.getMessage();
+		} else if (error == null && !literalClosed) {
+			error = "This text appeared to have an unclosed literal.";
+		} else if (error == null && type == Type.CHAR && decodedLength != 1) {
+			error = "This char token didn't evaluate to a singular character.";
+		}
+	}
+
+	/**
+	 * Return the number of chars that encode one char of a literal, or throw
+	 * an exception if the text is not a valid escape sequence.
+	 * <p>
+	 * The common cases are handled here without creating any objects, and
+	 * everything else is delegated to
+	 * {@link JavaEncoding#decode(CharSequence, int, StringBuffer)}.
+	 */
+	private int decodeLength(int index) {
+		if (c(index) != '\\')
+			return 1;
+		switch (c(index + 1)) {
+		case 't':
+		case 'n':
+		case 'b':
+		case 'r':
+		case 'f':
+		case '"':
+		case '\'':
+		case '\\':
+			return 2;
+		case 'u':
+			if (Character.digit(c(index + 2), 16) != -1
+					&& Character.digit(c(index + 3), 16) != -1
+					&& Character.digit(c(index + 4), 16) != -1
+					&& Character.digit(c(index + 5), 16) != -1)
+				return 6;
+		}
+		window.offset = index;
+		return JavaEncoding.decode(window, 0, null);
+	}
+
+	private void readWhitespace() {
+		int origLineStart = lastLineStart;
+		int origLineNumber = lineNumber;
+		do {
+			char ch = c(pos);
+			char next = c(pos + 1);
+			if (ch == '\r' && next == '\n') {
+				lineNumber++;
+				pos++;
+				lastLineStart = pos;
+			} else if (ch == '\r' || ch == '\n') {
+				lineNumber++;
+				lastLineStart = pos + 1;
+			}
+			pos++;
+		} while (Character.isWhitespace(c(pos)) && c(pos + 1) != DONE);
+
+		type = Type.WHITESPACE;
+		tokenLineNumber = origLineNumber;
+		tokenStartIndex = start - origLineStart;
+	}
+
+	/**
+	 * Read a number that matches "[-+]?[0-9]*\\.?[0-9]+([eE][-+]?[0-9]+)?"
+	 * followed by an optional f, d or L suffix.
+	 * 
+	 * @return false if the current char does not begin a number.
+	 */
+	private boolean readNumber(char ch) {
+		if (!(ch == '+' || ch == '-' || Character.isDigit(ch) || ch == '.'))
+			return false;
+
+		int i = pos;
+		boolean decimal = false;
+		if (ch == '+' || ch == '-') {
+			i++;
+			if (c(i) == '.') {
+				i = readFraction(i);
+				decimal = true;
+			} else {
+				int clusterStart = i;
+				while (Character.isDigit(c(i))) {
+					i++;
+				}
+				if (c(i) == '.') {
+					i = readFraction(i);
+					decimal = true;
+				} else if (i == clusterStart) {
+					// we just had a plus or minus sign
+					return false;
+				}
+			}
+		} else if (ch == '.') {
+			if (!Character.isDigit(c(i + 1))) {
+				// this is just a period
+				return false;
+			}
+			i = readFraction(i);
+			decimal = true;
+		} else {
+			while (Character.isDigit(c(i))) {
+				i++;
+			}
+			if (c(i) == '.') {
+				i = readFraction(i);
+				decimal = true;
+			}
+		}
+
+		String suffixError = null;
+		ch = c(i);
+		if (ch == 'f' || ch == 'F') {
+			i++;
+			type = Type.FLOAT;
+		} else if (ch == 'd' || ch == 'D') {
+			i++;
+			type = Type.DOUBLE;
+		} else if (ch == 'l' || ch == 'L') {
+			i++;
+			type = Type.LONG;
+		} else if (ch == 'e' || ch == 'E') {
+			i++;
+			if (c(i) == '+' || c(i) == '-')
+				i++;
+			int clusterStart = i;
+			while (Character.isDigit(c(i))) {
+				i++;
+			}
+			if (i == clusterStart)
+				suffixError = "This exponent must have digits after exponent indicator.";
+			type = Type.DOUBLE;
+		} else {
+			type = decimal ? Type.DOUBLE : Type.INTEGER;
+		}
+		setType(type);
+		if (suffixError != null)
+			error = suffixError;
+		pos = i;
+		return true;
+	}
+
+	/**
+	 * Read a decimal point and the digits that follow it.
+	 * 
+	 * @param i
+	 *            the index of the decimal point.
+	 * @return the index after the last digit.
+	 */
+	private int readFraction(int i) {
+		i++;
+		int clusterStart = i;
+		while (Character.isDigit(c(i))) {
+			i++;
+		}
+		if (i == clusterStart)
+			error = "This number must have digits after the decimal.";
+		return i;
+	}
+
+	/**
+	 * Return the type of the current token, or null if {@link #next()} has
+	 * not been called or the end of the text was reached.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/** Return the index in the text where the current token starts. */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * Return the index in the text where the current token ends (exclusive).
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * Return the line number of the current token, using the same rules as
+	 * {@link com.pump.io.parser.Token#getLineNumber()}.
+	 */
+	public int getLineNumber() {
+		return tokenLineNumber;
+	}
+
+	/**
+	 * Return the index of the current token relative to its line, using the
+	 * same rules as {@link com.pump.io.parser.Token#getStartIndex()}.
+	 */
+	public int getStartIndex() {
+		return tokenStartIndex;
+	}
+
+	/**
+	 * Return a description of what is wrong with the current token, or null
+	 * if it is well-formed.
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Return the exception that caused {@link #getError()}, or null if the
+	 * error was not caused by an exception.
+	 */
+	public Exception getErrorCause() {
+		return errorCause;
+	}
+
+	/**
+	 * Return the BracketType of the current token if it is a
+	 * {@link Type#BRACKET}.
+	 */
+	public BracketType getBracketType() {
+		return bracketType;
+	}
+
+	/**
+	 * Return true if the current token is an opening {@link Type#BRACKET}.
+	 */
+	public boolean isOpenBracket() {
+		return openBracket;
+	}
+
+	/**
+	 * Return true if the current token is a {@link Type#STRING} or
+	 * {@link Type#CHAR} that ends with its closing quotation mark.
+	 */
+	public boolean isLiteralClosed() {
+		return literalClosed;
+	}
+
+	/**
+	 * Return the first char of the current token. For a {@link Type#SYMBOL} or
+	 * {@link Type#BRACKET} this is the entire token.
+	 */
+	public char getChar() {
+		return text.charAt(start);
+	}
+
+	/**
+	 * Return true if the text of the current token is exactly the argument.
+	 * This does not create any objects.
+	 */
+	public boolean textEquals(CharSequence s) {
+		int len = end - start;
+		if (s.length() != len)
+			return false;
+		for (int a = 0; a < len; a++) {
+			if (s.charAt(a) != text.charAt(start + a))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return the text of the current token as it appears in the
+	 * {@link com.pump.io.parser.Token} the JavaParser creates.
+	 * <p>
+	 * This is usually <code>text.subSequence(getStart(), getEnd())</code>,
+	 * except a "\r\n" line break in whitespace or a multiline comment is
+	 * reduced to "\r", and a single-line comment never includes its trailing
+	 * "\r".
+	 */
+	public String getText() {
+		String s = text.subSequence(start, end).toString();
+		if (type == Type.COMMENT && s.startsWith("//")) {
+			if (s.endsWith("\r"))
+				s = s.substring(0, s.length() - 1);
+		} else if (type == Type.COMMENT || type == Type.WHITESPACE) {
+			if (s.indexOf('\r') != -1)
+				s = s.replace("\r\n", "\r");
+		}
+		return s;
+	}
+
+	/**
+	 * Return the decoded value of the current {@link Type#STRING} or
+	 * {@link Type#CHAR}, not including its quotation marks.
+	 */
+	public String getDecodedText() {
+		if (type != Type.STRING && type != Type.CHAR)
+			throw new IllegalStateException("the current token (" + type
+					+ ") is not a literal");
+		StringBuffer sb = new StringBuffer(end - start);
+		int i = start + 1;
+		while (i < end) {
+			window.offset = i;
+			i += JavaEncoding.decode(window, 0, sb);
+		}
+		if (literalClosed)
+			sb.setLength(sb.length() - 1);
+		return sb.toString();
+	}
+}
@@ -14,14 +14,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
-import java.text.CharacterIterator;
-import java.util.Arrays;
+import java.util.LinkedList;
 
-import com.pump.io.LookAheadReader;
 import com.pump.io.parser.MatchingToken;
 import com.pump.io.parser.Parser;
-import com.pump.io.parser.ParserException;
 import com.pump.io.parser.Token;
 import com.pump.util.Receiver;
 
@@ -87,6 +83,16 @@ public class XMLParser extends Parser {
 		public void setMatch(Z match) {
 			this.match = match;
 		}
+
+		@Override
+		public TagDeclarationToken<Z> translate(int lineNumberDelta,
+				int startIndexDelta, int documentIndexDelta) {
+			TagDeclarationToken<Z> copy = (TagDeclarationToken<Z>) super
+					.translate(lineNumberDelta, startIndexDelta,
+							documentIndexDelta);
+			copy.match = null;
+			return copy;
+		}
 	}
 
 	public static class StartPrologToken extends
@@ -165,123 +171,6 @@ public class XMLParser extends Parser {
 
 	}
 
-	static class CacheLastTokenReceiver implements Receiver<Token> {
-		Token lastToken;
-		Receiver<Token> delegate;
-
-		CacheLastTokenReceiver(Receiver<Token> delegate) {
-			this.delegate = delegate;
-		}
-
-		public Token getLastToken() {
-			return lastToken;
-		}
-
-		@Override
-		public void add(Token... elements) {
-			lastToken = elements[elements.length - 1];
-			delegate.add(elements);
-		}
-	}
-
-	private void parseTagAttributes(LookAheadReader l,
-			CacheLastTokenReceiver receiver,
-			boolean allowBracketsOrParentheses, String... closingTagTokens)
-			throws IOException {
-		TagDeclarationToken startingToken = (TagDeclarationToken) receiver
-				.getLastToken();
-		while (l.current() != CharacterIterator.DONE) {
-			char ch = l.current();
-			char next = l.peek(1);
-			int start = (int) l.getPosition();
-
-			if (ch == '[' && allowBracketsOrParentheses) {
-				receiver.add(new SymbolCharToken(ch, start, 0, start));
-				l.next();
-				parseElements(l, receiver, "]");
-			} else if (ch == '(' && allowBracketsOrParentheses) {
-				receiver.add(new SymbolCharToken(ch, start, 0, start));
-				l.next();
-				parseElements(l, receiver, ")");
-			} else if (ch == '?' && next == '>') {
-				receiver.add(new EndPrologToken(start, 0, start));
-				l.next(2);
-			} else if (ch == '/' && next == '>') {
-				receiver.add(new EndTagToken("/>", start, 0, start, true));
-				l.next(2);
-			} else if (ch == '>') {
-				receiver.add(new EndTagToken(">", start, 0, start, true));
-				l.next();
-			} else if (ch == '"' || ch == '\'') {
-				char quote = ch;
-				StringBuilder encodedStr = new StringBuilder();
-				StringBuilder decodedStr = new StringBuilder();
-				encodedStr.append(ch);
-				boolean closed = false;
-
-				while (!closed && l.next()) {
-					ch = l.current();
-					encodedStr.append(ch);
-					if (ch == quote) {
-						closed = true;
-						l.next();
-					} else {
-						decodedStr.append(ch);
-					}
-				}
-
-				StringToken strToken = new StringToken(encodedStr.toString(),
-						decodedStr.toString(), start, 0, start);
-				if (!closed) {
-					throw new ParserException(strToken,
-							"This string was not closed.");
-				}
-				receiver.add(strToken);
-			} else if (Character.isWhitespace(ch)) {
-				StringBuilder sb = new StringBuilder();
-				while (ch != CharacterIterator.DONE
-						&& Character.isWhitespace(ch)) {
-					sb.append(ch);
-					l.next();
-					ch = l.current();
-				}
-				receiver.add(new WhitespaceToken(sb.toString(), start, 0, start));
-			} else if (ch == '=') {
-				receiver.add(new AssignmentToken(ch, start, 0, start));
-				l.next();
-			} else if (ch == '%' || ch == '#' || ch == ';' || ch == ')'
-					|| ch == ']') {
-				receiver.add(new SymbolCharToken(ch, start, 0, start));
-				l.next();
-			} else if (Character.isLetter(ch)) {
-				StringBuilder sb = new StringBuilder();
-				while (ch != CharacterIterator.DONE
-						&& (Character.isLetterOrDigit(ch) || ch == '-'
-								|| ch == '_' || ch == ':' || ch == '.')) {
-					sb.append(ch);
-					l.next();
-					ch = l.current();
-				}
-				receiver.add(new WordToken(sb.toString(), start, 0, start));
-			} else {
-				Token token = new Token(Character.toString(ch), start, 0, start);
-				throw new ParserException(token, "Unsupported character \'"
-						+ ch + "\'");
-			}
-
-			String lastTokenText = receiver.getLastToken().getText();
-			for (String closingTag : closingTagTokens) {
-				if (lastTokenText.equals(closingTag)) {
-					TagDeclarationToken endToken = (TagDeclarationToken) receiver
-							.getLastToken();
-					endToken.setMatch(startingToken);
-					startingToken.setMatch(endToken);
-					return;
-				}
-			}
-		}
-	}
-
 	@Override
 	public void parse(InputStream in, Receiver<Token> receiver)
 			throws IOException {
@@ -297,154 +186,102 @@ public class XMLParser extends Parser {
 	}
 
 	public void parse(String xml, Receiver<Token> receiver) throws IOException {
-		try (Reader reader = new StringReader(xml)) {
-			parse(reader, receiver);
-		}
+		parse(new XMLTokenizer(xml), receiver);
 	}
 
 	public void parse(Reader reader, Receiver<Token> receiver)
 			throws IOException {
-		try (LookAheadReader l = new LookAheadReader(reader)) {
-			parseElements(l, receiver);
+		try (Reader r = reader) {
+			parse(new XMLTokenizer(r), receiver);
 		}
 	}
 
-	private void parseElements(LookAheadReader l, Receiver<Token> receiver,
-			String... closingTagTokens) throws IOException {
-		CacheLastTokenReceiver cltr = new CacheLastTokenReceiver(receiver);
-		while (l.current() != CharacterIterator.DONE) {
-			char ch = l.current();
-			char next = l.peek(1);
-			int start = (int) l.getPosition();
-			if (ch == '<' && next == '!' && l.peek(2) == '-'
-					&& l.peek(3) == '-') {
-				StartCommentToken startComment = new StartCommentToken(start,
-						0, start);
-				cltr.add(startComment);
-				l.next(4);
-				start = (int) l.getPosition();
-				ch = l.current();
-
-				StringBuilder sb = new StringBuilder();
-				readComment: while (true) {
-					sb.append(ch);
-					l.next();
-					ch = l.current();
-
-					if (ch == CharacterIterator.DONE) {
-						if (sb.length() > 0)
-							cltr.add(new CommentToken(sb.toString(), start, 0,
-									start));
-						break readComment;
-					} else if (ch == '-' && l.peek(1) == '-'
-							&& l.peek(2) == '>') {
-						if (sb.length() > 0)
-							cltr.add(new CommentToken(sb.toString(), start, 0,
-									start));
-
-						EndCommentToken endComment = new EndCommentToken(
-								(int) l.getPosition(), 0, (int) l.getPosition());
-						cltr.add(endComment);
-						endComment.setMatch(startComment);
-						startComment.setMatch(endComment);
-						l.next(3);
-						break readComment;
-					}
-				}
-			} else if (ch == '<' && next == '?') {
-				cltr.add(new StartPrologToken(start, 0, start));
-				l.next(2);
-				parseTagAttributes(l, cltr, false, "?>");
-			} else if (ch == '<' && next == '/') {
-				StartTagToken startTag = new StartTagToken(start, 0, start,
+	/**
+	 * Convert every token an XMLTokenizer identifies into a Token.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void parse(XMLTokenizer tokenizer, Receiver<Token> receiver) {
+		LinkedList<TagDeclarationToken> startingTokens = new LinkedList<>();
+		StartCommentToken startComment = null;
+		XMLTokenizer.Type type;
+		while ((type = tokenizer.next()) != null) {
+			int start = tokenizer.getStart();
+			Token token;
+			switch (type) {
+			case START_TAG:
+				token = new StartTagToken(start, 0, start,
+						tokenizer.textEquals("</"));
+				break;
+			case END_TAG:
+				token = new EndTagToken(tokenizer.getText(), start, 0, start,
 						true);
-				cltr.add(startTag);
-				l.next(2);
-				parseTagAttributes(l, cltr, false, ">");
-			} else if (ch == '<' && next == '!') {
-				cltr.add(new StartDTDTagToken(start, 0, start));
-				l.next(2);
-				parseTagAttributes(l, cltr, true, ">", "/>");
-			} else if (ch == '<') {
-				cltr.add(new StartTagToken(start, 0, start, false));
-				l.next();
-				parseTagAttributes(l, cltr, false, ">", "/>");
-			} else if (ch == ']'
-					&& Arrays.asList(closingTagTokens).contains("]")) {
-				cltr.add(new SymbolCharToken(ch, start, 0, start));
-				l.next();
-			} else {
-				StringBuilder sb = new StringBuilder();
-				while (ch != CharacterIterator.DONE && ch != '<') {
-					sb.append(ch);
-					l.next();
-					ch = l.current();
-				}
-
-				int leadingWhitespace = getLeadingWhitespace(sb);
-				if (leadingWhitespace == sb.length()) {
-					cltr.add(new WhitespaceToken(sb.toString(), start, 0, start));
-				} else {
-					int trailingWhitespace = getTrailingWhitespace(sb);
-					String leadingWhitespaceStr = sb.substring(0,
-							leadingWhitespace);
-					if (leadingWhitespace > 0) {
-						cltr.add(new WhitespaceToken(leadingWhitespaceStr,
-								start, 0, start));
-					}
-					cltr.add(new ContentToken(sb.substring(leadingWhitespace,
-							sb.length() - trailingWhitespace), start
-							+ leadingWhitespace, 0, start + leadingWhitespace));
-					if (trailingWhitespace > 0) {
-						String trailingWhitespaceStr = sb.substring(sb.length()
-								- trailingWhitespace, sb.length());
-						cltr.add(new WhitespaceToken(trailingWhitespaceStr,
-								start + sb.length() - trailingWhitespace, 0,
-								start + sb.length() - trailingWhitespace));
-					}
-				}
-			}
-
-			String lastTokenText = cltr.getLastToken().getText();
-			for (String closingTag : closingTagTokens) {
-				if (lastTokenText.equals(closingTag)) {
-					return;
-				}
-			}
-		}
-	}
-
-	private int getTrailingWhitespace(StringBuilder sb) {
-		int run = 0;
-		for (int a = sb.length() - 1; a >= 0; a--) {
-			if (Character.isWhitespace(sb.charAt(a))) {
-				run++;
-			} else {
 				break;
-			}
-		}
-		return run;
-	}
-
-	private int getLeadingWhitespace(StringBuilder sb) {
-		int run = 0;
-		for (int a = 0; a < sb.length(); a++) {
-			if (Character.isWhitespace(sb.charAt(a))) {
-				run++;
-			} else {
+			case START_PROLOG:
+				token = new StartPrologToken(start, 0, start);
+				break;
+			case END_PROLOG:
+				token = new EndPrologToken(start, 0, start);
 				break;
+			case START_DTD_TAG:
+				token = new StartDTDTagToken(start, 0, start);
+				break;
+			case START_COMMENT:
+				startComment = new StartCommentToken(start, 0, start);
+				token = startComment;
+				break;
+			case COMMENT:
+				token = new CommentToken(tokenizer.getText(), start, 0, start);
+				break;
+			case END_COMMENT:
+				token = new EndCommentToken(start, 0, start);
+				break;
+			case STRING:
+				String str = tokenizer.getText();
+				token = new StringToken(str,
+						str.substring(1, str.length() - 1), start, 0, start);
+				break;
+			case WHITESPACE:
+				token = new WhitespaceToken(tokenizer.getText(), start, 0,
+						start);
+				break;
+			case ASSIGNMENT:
+				token = new AssignmentToken(tokenizer.getChar(), start, 0,
+						start);
+				break;
+			case SYMBOL:
+				token = new SymbolCharToken(tokenizer.getChar(), start, 0,
+						start);
+				break;
+			case WORD:
+				token = new WordToken(tokenizer.getText(), start, 0, start);
+				break;
+			default:
+				token = new ContentToken(tokenizer.getText(), start, 0, start);
 			}
-		}
-		return run;
-	}
+			receiver.add(token);
 
-	private boolean isWhitespace(String str) {
-		for (int a = 0; a < str.length(); a++) {
-			if (!Character.isWhitespace(str.charAt(a))) {
-				return false;
+			if (type == XMLTokenizer.Type.START_TAG
+					|| type == XMLTokenizer.Type.START_PROLOG
+					|| type == XMLTokenizer.Type.START_DTD_TAG) {
+				startingTokens.add((TagDeclarationToken) token);
+			} else {
+				for (int a = 0; a < tokenizer.getMatchCount(); a++) {
+					TagDeclarationToken startingToken;
+					if (type == XMLTokenizer.Type.END_COMMENT) {
+						startingToken = startComment;
+					} else {
+						// at the end of the text some starting tokens may be
+						// skipped because they were never closed
+						do {
+							startingToken = startingTokens.removeLast();
+						} while (startingToken.getDocumentStartIndex() != tokenizer
+								.getMatchStart(a));
+					}
+					TagDeclarationToken endToken = (TagDeclarationToken) token;
+					endToken.setMatch(startingToken);
+					startingToken.setMatch(endToken);
+				}
 			}
 		}
-		return str.length() > 0;
 	}
-
-}
\ No newline at end of file
+}
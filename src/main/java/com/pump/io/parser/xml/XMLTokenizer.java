@@ -0,0 +1,482 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ *
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ *
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.io.parser.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.CharacterIterator;
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.pump.io.IOUtils;
+import com.pump.io.parser.Parser.StringToken;
+import com.pump.io.parser.ParserException;
+import com.pump.io.parser.Token;
+
+/**
+ * A pull-based lexer for XML.
+ * <p>
+ * Each call to {@link #next()} identifies the next token and returns its
+ * {@link Type}. The token is described by offsets into the original text (see
+ * {@link #getStart()} and {@link #getEnd()}), so no
+ * {@link com.pump.io.parser.Token} objects or substrings are created unless
+ * you ask for them.
+ * <p>
+ * This uses exactly the same rules as the {@link XMLParser}, which is a thin
+ * layer on top of this class. Where the XMLParser uses recursion to parse tags
+ * (and the elements nested inside DTD declarations), this class keeps an
+ * explicit stack of states so it can stop after every token.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class XMLTokenizer {
+
+	/** The types of tokens an XMLTokenizer identifies. */
+	public static enum Type {
+		/** The "&lt;" or "&lt;/" that starts a tag. */
+		START_TAG,
+		/** The "&gt;" or "/&gt;" that ends a tag or DTD declaration. */
+		END_TAG,
+		/** The "&lt;?" that starts a prolog. */
+		START_PROLOG,
+		/** The "?&gt;" that ends a prolog. */
+		END_PROLOG,
+		/** The "&lt;!" that starts a DTD declaration. */
+		START_DTD_TAG,
+		/** The "&lt;!--" that starts a comment. */
+		START_COMMENT,
+		/** The body of a comment. */
+		COMMENT,
+		/** The "--&gt;" that ends a comment. */
+		END_COMMENT,
+		/** A quoted attribute value, including its quotation marks. */
+		STRING,
+		/** A run of whitespace characters. */
+		WHITESPACE,
+		/** The "=" in an attribute. */
+		ASSIGNMENT,
+		/** A single punctuation character inside a tag. */
+		SYMBOL,
+		/** A name inside a tag. */
+		WORD,
+		/** Text between tags, not including leading or trailing whitespace. */
+		CONTENT;
+	}
+
+	private static final char DONE = CharacterIterator.DONE;
+
+	/** A state that reads elements until the end of the text. */
+	private static final int ELEMENTS = 0;
+
+	/** A state that reads elements until a "]". */
+	private static final int ELEMENTS_UNTIL_BRACKET = 1;
+
+	/** A state that reads elements until a ")". */
+	private static final int ELEMENTS_UNTIL_PARENTHESIS = 2;
+
+	/** A state that reads the inside of a prolog until a "?&gt;". */
+	private static final int PROLOG = 3;
+
+	/** A state that reads the inside of a closing tag until a "&gt;". */
+	private static final int CLOSING_TAG = 4;
+
+	/**
+	 * A state that reads the inside of a DTD declaration until a "&gt;" or
+	 * "/&gt;". This may contain brackets or parentheses.
+	 */
+	private static final int DTD_TAG = 5;
+
+	/** A state that reads the inside of a tag until a "&gt;" or "/&gt;". */
+	private static final int TAG = 6;
+
+	private final CharSequence text;
+	private final int length;
+	private int pos = 0;
+
+	/**
+	 * The stack of states. The XMLParser used to represent this as recursive
+	 * method calls.
+	 */
+	private int[] states = new int[16];
+
+	/** The start of the token that began each state. */
+	private int[] stateStarts = new int[16];
+	private int depth = 1;
+
+	/**
+	 * One step of the XMLParser may identify up to 3 tokens (such as the
+	 * start, body and end of a comment).
+	 */
+	private final Type[] pendingTypes = new Type[3];
+	private final int[] pendingStarts = new int[3];
+	private final int[] pendingEnds = new int[3];
+	private int pendingCount = 0;
+	private int pendingIndex = 0;
+
+	/**
+	 * The starts of the tokens that the pending token at matchIndex ends.
+	 * This usually contains one element, but at the end of the text the same
+	 * token may end several nested tags.
+	 */
+	private int[] matchStarts = new int[4];
+	private int matchCount = 0;
+	private int matchIndex = -1;
+
+	private Type type;
+	private int start, end, currentMatchCount;
+
+	/**
+	 * Create an XMLTokenizer that reads all the text from a Reader into a
+	 * CharBuffer.
+	 * <p>
+	 * This does not close the Reader.
+	 */
+	public XMLTokenizer(Reader reader) throws IOException {
+		this(IOUtils.readChars(reader));
+	}
+
+	/**
+	 * Create an XMLTokenizer.
+	 *
+	 * @param text
+	 *            the XML to parse. This may be a String, a StringBuilder, a
+	 *            CharBuffer, etc. It should not be modified while this
+	 *            tokenizer is in use.
+	 */
+	public XMLTokenizer(CharSequence text) {
+		Objects.requireNonNull(text);
+		this.text = text;
+		this.length = text.length();
+		states[0] = ELEMENTS;
+	}
+
+	/**
+	 * Return a character in the text, or DONE if the index is past the end of
+	 * the text.
+	 */
+	private char c(int index) {
+		return index < length ? text.charAt(index) : DONE;
+	}
+
+	/**
+	 * Identify the next token.
+	 *
+	 * @return the type of the next token, or null if the end of the text was
+	 *         reached.
+	 * @throws ParserException
+	 *             if a tag contains an unclosed string or an unsupported
+	 *             character. This is the same exception the XMLParser throws,
+	 *             and no more tokens can be read after it is thrown.
+	 */
+	public Type next() throws ParserException {
+		if (pendingIndex == pendingCount) {
+			pendingIndex = pendingCount = 0;
+			matchIndex = -1;
+			if (c(pos) == DONE) {
+				type = null;
+				start = end = pos;
+				currentMatchCount = 0;
+				return null;
+			}
+
+			int state = states[depth - 1];
+			int stateDepth = depth;
+			if (state <= ELEMENTS_UNTIL_PARENTHESIS) {
+				readElement(state);
+			} else {
+				readTagAttribute(state);
+			}
+
+			// When a state is finished it returns control to the state below
+			// it, which then checks whether it is also finished. At the end
+			// of the text every state returns, so every state is checked.
+			// (But a state that was just entered returns without a check.)
+			int last = pendingCount - 1;
+			boolean eof = c(pos) == DONE;
+			if (depth == stateDepth || eof) {
+				for (int i = stateDepth - 1; i >= 0; i--) {
+					boolean finished = isFinished(states[i], last);
+					if (finished && states[i] >= PROLOG)
+						addMatch(last, stateStarts[i]);
+					if (!finished && !eof)
+						break;
+					depth = i;
+				}
+			}
+		}
+
+		type = pendingTypes[pendingIndex];
+		start = pendingStarts[pendingIndex];
+		end = pendingEnds[pendingIndex];
+		currentMatchCount = pendingIndex == matchIndex ? matchCount : 0;
+		pendingIndex++;
+		return type;
+	}
+
+	/**
+	 * Return true if a state is finished after the given pending token.
+	 */
+	private boolean isFinished(int state, int pendingIndex) {
+		switch (state) {
+		case ELEMENTS_UNTIL_BRACKET:
+			return textEquals(pendingIndex, "]");
+		case ELEMENTS_UNTIL_PARENTHESIS:
+			return textEquals(pendingIndex, ")");
+		case PROLOG:
+			return pendingTypes[pendingIndex] == Type.END_PROLOG;
+		case CLOSING_TAG:
+			return textEquals(pendingIndex, ">");
+		case DTD_TAG:
+		case TAG:
+			return pendingTypes[pendingIndex] == Type.END_TAG;
+		}
+		return false;
+	}
+
+	private void addMatch(int pendingIndex, int matchStart) {
+		if (matchIndex != pendingIndex) {
+			matchIndex = pendingIndex;
+			matchCount = 0;
+		} else if (matchCount == matchStarts.length) {
+			matchStarts = Arrays.copyOf(matchStarts, matchCount * 2);
+		}
+		matchStarts[matchCount++] = matchStart;
+	}
+
+	private boolean textEquals(int pendingIndex, String s) {
+		return textEquals(pendingStarts[pendingIndex],
+				pendingEnds[pendingIndex], s);
+	}
+
+	private boolean textEquals(int start, int end, CharSequence s) {
+		int len = end - start;
+		if (s.length() != len)
+			return false;
+		for (int a = 0; a < len; a++) {
+			if (s.charAt(a) != text.charAt(start + a))
+				return false;
+		}
+		return true;
+	}
+
+	private void add(Type type, int start, int end) {
+		pendingTypes[pendingCount] = type;
+		pendingStarts[pendingCount] = start;
+		pendingEnds[pendingCount] = end;
+		pendingCount++;
+	}
+
+	private void push(int state, int stateStart) {
+		if (depth == states.length) {
+			states = Arrays.copyOf(states, depth * 2);
+			stateStarts = Arrays.copyOf(stateStarts, depth * 2);
+		}
+		states[depth] = state;
+		stateStarts[depth] = stateStart;
+		depth++;
+	}
+
+	private void readElement(int state) {
+		char ch = c(pos);
+		char next = c(pos + 1);
+		int start = pos;
+		if (ch == '<' && next == '!' && c(pos + 2) == '-' && c(pos + 3) == '-') {
+			add(Type.START_COMMENT, start, start + 4);
+			pos += 4;
+			int commentStart = pos;
+			if (pos < length) {
+				// the first char always belongs to the comment, even if the
+				// comment ends immediately.
+				do {
+					pos++;
+				} while (c(pos) != DONE
+						&& !(c(pos) == '-' && c(pos + 1) == '-' && c(pos + 2) == '>'));
+				add(Type.COMMENT, commentStart, pos);
+				if (c(pos) != DONE) {
+					add(Type.END_COMMENT, pos, pos + 3);
+					addMatch(pendingCount - 1, start);
+					pos += 3;
+				}
+			}
+		} else if (ch == '<' && next == '?') {
+			add(Type.START_PROLOG, start, start + 2);
+			pos += 2;
+			push(PROLOG, start);
+		} else if (ch == '<' && next == '/') {
+			add(Type.START_TAG, start, start + 2);
+			pos += 2;
+			push(CLOSING_TAG, start);
+		} else if (ch == '<' && next == '!') {
+			add(Type.START_DTD_TAG, start, start + 2);
+			pos += 2;
+			push(DTD_TAG, start);
+		} else if (ch == '<') {
+			add(Type.START_TAG, start, start + 1);
+			pos++;
+			push(TAG, start);
+		} else if (ch == ']' && state == ELEMENTS_UNTIL_BRACKET) {
+			add(Type.SYMBOL, start, start + 1);
+			pos++;
+		} else {
+			while (ch != DONE && ch != '<') {
+				ch = c(++pos);
+			}
+			int contentStart = start;
+			while (contentStart < pos
+					&& Character.isWhitespace(text.charAt(contentStart))) {
+				contentStart++;
+			}
+			if (contentStart == pos) {
+				add(Type.WHITESPACE, start, pos);
+			} else {
+				int contentEnd = pos;
+				while (Character.isWhitespace(text.charAt(contentEnd - 1))) {
+					contentEnd--;
+				}
+				if (contentStart > start)
+					add(Type.WHITESPACE, start, contentStart);
+				add(Type.CONTENT, contentStart, contentEnd);
+				if (contentEnd < pos)
+					add(Type.WHITESPACE, contentEnd, pos);
+			}
+		}
+	}
+
+	private void readTagAttribute(int state) {
+		char ch = c(pos);
+		char next = c(pos + 1);
+		int start = pos;
+		if (ch == '[' && state == DTD_TAG) {
+			add(Type.SYMBOL, start, ++pos);
+			push(ELEMENTS_UNTIL_BRACKET, start);
+		} else if (ch == '(' && state == DTD_TAG) {
+			add(Type.SYMBOL, start, ++pos);
+			push(ELEMENTS_UNTIL_PARENTHESIS, start);
+		} else if (ch == '?' && next == '>') {
+			pos += 2;
+			add(Type.END_PROLOG, start, pos);
+		} else if (ch == '/' && next == '>') {
+			pos += 2;
+			add(Type.END_TAG, start, pos);
+		} else if (ch == '>') {
+			add(Type.END_TAG, start, ++pos);
+		} else if (ch == '"' || ch == '\'') {
+			while (true) {
+				pos++;
+				if (pos >= length) {
+					String encoded = text.subSequence(start, length)
+							.toString();
+					StringToken token = new StringToken(encoded,
+							encoded.substring(1), start, 0, start);
+					throw new ParserException(token,
+							"This string was not closed.");
+				} else if (text.charAt(pos) == ch) {
+					pos++;
+					break;
+				}
+			}
+			add(Type.STRING, start, pos);
+		} else if (Character.isWhitespace(ch)) {
+			while (ch != DONE && Character.isWhitespace(ch)) {
+				ch = c(++pos);
+			}
+			add(Type.WHITESPACE, start, pos);
+		} else if (ch == '=') {
+			add(Type.ASSIGNMENT, start, ++pos);
+		} else if (ch == '%' || ch == '#' || ch == ';' || ch == ')'
+				|| ch == ']') {
+			add(Type.SYMBOL, start, ++pos);
+		} else if (Character.isLetter(ch)) {
+			while (ch != DONE
+					&& (Character.isLetterOrDigit(ch) || ch == '-' || ch == '_'
+							|| ch == ':' || ch == '.')) {
+				ch = c(++pos);
+			}
+			add(Type.WORD, start, pos);
+		} else {
+			Token token = new Token(Character.toString(ch), start, 0, start);
+			throw new ParserException(token, "Unsupported character \'" + ch
+					+ "\'");
+		}
+	}
+
+	/**
+	 * Return the type of the current token, or null if {@link #next()} has
+	 * not been called or the end of the text was reached.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/** Return the index in the text where the current token starts. */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * Return the index in the text where the current token ends (exclusive).
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * If the current token ends a tag, prolog or comment, then this returns
+	 * the index of the token that started it. Otherwise this returns -1.
+	 * <p>
+	 * This is the same as the position of the token that
+	 * {@link XMLParser.TagDeclarationToken#getMatch()} returns.
+	 */
+	public int getMatchStart() {
+		return currentMatchCount == 0 ? -1
+				: matchStarts[currentMatchCount - 1];
+	}
+
+	/**
+	 * Return the number of tokens the current token ends. This is usually zero
+	 * or one, but if the text ends with a "&gt;" inside an unclosed DTD
+	 * declaration then that "&gt;" ends the DTD declaration too.
+	 */
+	int getMatchCount() {
+		return currentMatchCount;
+	}
+
+	/**
+	 * Return the start of one of the tokens the current token ends. The
+	 * innermost token is at index zero.
+	 */
+	int getMatchStart(int index) {
+		return matchStarts[index];
+	}
+
+	/**
+	 * Return the first char of the current token. For a {@link Type#SYMBOL} or
+	 * {@link Type#ASSIGNMENT} this is the entire token.
+	 */
+	public char getChar() {
+		return text.charAt(start);
+	}
+
+	/**
+	 * Return true if the text of the current token is exactly the argument.
+	 * This does not create any objects.
+	 */
+	public boolean textEquals(CharSequence s) {
+		return textEquals(start, end, s);
+	}
+
+	/**
+	 * Return the text of the current token.
+	 */
+	public String getText() {
+		return text.subSequence(start, end).toString();
+	}
+}
@@ -353,7 +353,7 @@ class WindowOptionsForm extends AttributeDataImpl {
 	 * Copy the data from one form to another.
 	 */
 	public WindowOptionsForm(WindowOptionsForm otherForm) {
-		putAllAttributes(otherForm.data, true);
+		putAllAttributes(otherForm.getAttributeMap(), true);
 	}
 
 	/**
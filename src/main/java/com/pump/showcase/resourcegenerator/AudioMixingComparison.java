@@ -0,0 +1,195 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.showcase.resourcegenerator;
+
+import com.pump.audio.AsyncSampleSource;
+import com.pump.audio.GainSampleSource;
+import com.pump.audio.MixedSampleSource;
+import com.pump.audio.PCMSampleSource;
+import com.pump.audio.PCMUtils;
+import com.pump.audio.ResampledSampleSource;
+import com.pump.audio.SampleSource;
+import com.pump.audio.SampleSourceAudioInputStream;
+import com.pump.audio.StretchedAudioInputStream;
+import com.pump.audio.VolumeAdjustedPCMAudioInputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This compares the time it takes to mix several tracks using the
+ * AudioInputStream-based classes vs the SampleSource-based classes.
+ * <p>
+ * Each track is halved in volume and stretched by 10%, and then all the tracks
+ * are added together and encoded as 16-bit PCM. The results are expressed as
+ * a realtime factor: the duration of the audio divided by the time it took to
+ * produce it.
+ */
+public class AudioMixingComparison extends DemoResourceGenerator {
+
+    static final AudioFormat FORMAT = new AudioFormat(44100, 16, 2, true, false);
+    static final int TRACK_COUNT = 8;
+    static final int TRACK_FRAME_COUNT = 44100 * 20;
+    static final long STRETCHED_FRAME_COUNT = TRACK_FRAME_COUNT * 11 / 10;
+
+    public enum Model {
+        AUDIO_INPUT_STREAM("AudioInputStream chain") {
+            @Override
+            public long mix(byte[][] tracks) throws Exception {
+                InputStream[] ins = new InputStream[tracks.length];
+                for (int a = 0; a < tracks.length; a++) {
+                    AudioInputStream volumeIn = new VolumeAdjustedPCMAudioInputStream(createStream(tracks[a])) {
+                        @Override
+                        protected float getVolume(float time) {
+                            return .5f;
+                        }
+                    };
+                    ins[a] = StretchedAudioInputStream.create(volumeIn, STRETCHED_FRAME_COUNT);
+                }
+
+                // there is no mixing stream, so decode, add and encode every sample:
+                byte[][] buffers = new byte[tracks.length][4096];
+                byte[] mixed = new byte[4096];
+                long bytesWritten = 0;
+                while (true) {
+                    int len = 0;
+                    for (int a = 0; a < ins.length; a++) {
+                        len = Math.max(len, readFully(ins[a], buffers[a]));
+                    }
+                    if (len <= 0)
+                        break;
+                    for (int i = 0; i < len; i += 2) {
+                        int sum = 0;
+                        for (int a = 0; a < ins.length; a++) {
+                            sum += PCMUtils.decodeSample(buffers[a], i, 2, true, false);
+                        }
+                        sum = Math.max(-32768, Math.min(32767, sum));
+                        PCMUtils.encodeSample(sum, mixed, i, 2, true, false);
+                    }
+                    bytesWritten += len;
+                }
+                for (InputStream in : ins) {
+                    in.close();
+                }
+                return bytesWritten;
+            }
+        },
+        SAMPLE_SOURCE("SampleSource chain") {
+            @Override
+            public long mix(byte[][] tracks) throws Exception {
+                SampleSource[] sources = new SampleSource[tracks.length];
+                for (int a = 0; a < tracks.length; a++) {
+                    SampleSource source = new GainSampleSource(new PCMSampleSource(createStream(tracks[a])), .5f);
+                    sources[a] = ResampledSampleSource.stretch(source, STRETCHED_FRAME_COUNT);
+                }
+                return readAll(new SampleSourceAudioInputStream(new MixedSampleSource(sources), FORMAT));
+            }
+        },
+        ASYNC_SAMPLE_SOURCE("SampleSource chain, mixing on a worker thread") {
+            @Override
+            public long mix(byte[][] tracks) throws Exception {
+                SampleSource[] sources = new SampleSource[tracks.length];
+                for (int a = 0; a < tracks.length; a++) {
+                    SampleSource source = new GainSampleSource(new PCMSampleSource(createStream(tracks[a])), .5f);
+                    sources[a] = ResampledSampleSource.stretch(source, STRETCHED_FRAME_COUNT);
+                }
+                SampleSource mix = new AsyncSampleSource(new MixedSampleSource(sources));
+                return readAll(new SampleSourceAudioInputStream(mix, FORMAT));
+            }
+        };
+
+        final String name;
+
+        Model(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Mix the tracks and return the number of bytes produced.
+         */
+        public abstract long mix(byte[][] tracks) throws Exception;
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static AudioInputStream createStream(byte[] data) {
+        return new AudioInputStream(new ByteArrayInputStream(data), FORMAT, data.length / FORMAT.getFrameSize());
+    }
+
+    static int readFully(InputStream in, byte[] dest) throws IOException {
+        int read = 0;
+        while (read < dest.length) {
+            int k = in.read(dest, read, dest.length - read);
+            if (k == -1)
+                break;
+            read += k;
+        }
+        Arrays.fill(dest, read, dest.length, (byte) 0);
+        return read;
+    }
+
+    static long readAll(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        long sum = 0;
+        int k = in.read(buffer);
+        while (k != -1) {
+            sum += k;
+            k = in.read(buffer);
+        }
+        in.close();
+        return sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running " + AudioMixingComparison.class.getSimpleName());
+        System.out.println("OS: " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        new AudioMixingComparison().run(null);
+    }
+
+    @Override
+    public void run(DemoResourceContext context) throws Exception {
+        Random random = new Random(0);
+        byte[][] tracks = new byte[TRACK_COUNT][];
+        for (int a = 0; a < tracks.length; a++) {
+            float[] samples = new float[TRACK_FRAME_COUNT * FORMAT.getChannels()];
+            double frequency = 200 + random.nextInt(800);
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (float) (.2 * Math.sin(2 * Math.PI * frequency * (i / 2) / FORMAT.getSampleRate()));
+            }
+            tracks[a] = new byte[samples.length * 2];
+            PCMUtils.encodeSamples(samples, 0, tracks[a], 0, samples.length, FORMAT);
+        }
+
+        double audioSeconds = STRETCHED_FRAME_COUNT / FORMAT.getFrameRate();
+        System.out.println(TRACK_COUNT + " tracks, " + audioSeconds + " seconds of " + FORMAT);
+        long[] samples = new long[5];
+        for (Model model : Model.values()) {
+            // warm up
+            model.mix(tracks);
+            for (int sampleIndex = 0; sampleIndex < samples.length; sampleIndex++) {
+                samples[sampleIndex] = System.nanoTime();
+                model.mix(tracks);
+                samples[sampleIndex] = System.nanoTime() - samples[sampleIndex];
+            }
+            Arrays.sort(samples);
+            double millis = samples[samples.length / 2] / 1000000.0;
+            System.out.println(model + "\t" + String.format("%.1f ms\t%.1fx realtime", millis, audioSeconds / (millis / 1000)));
+        }
+    }
+}
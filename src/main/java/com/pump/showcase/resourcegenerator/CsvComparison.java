@@ -0,0 +1,141 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.showcase.resourcegenerator;
+
+import com.pump.io.CsvParser;
+import com.pump.util.Receiver;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This compares the time it takes to parse a large CSV file using the
+ * Receiver-based CsvParser method, the RowListener-based method, and the
+ * method that parses chunks of a file in parallel.
+ */
+public class CsvComparison extends DemoResourceGenerator {
+
+    static final Charset CHARSET = StandardCharsets.UTF_8;
+    static final int ROW_COUNT = 500000;
+
+    public enum Model {
+        RECEIVER("parse(InputStream, Charset, Receiver)") {
+            @Override
+            public long parse(File file) throws Exception {
+                final long[] cellCount = new long[1];
+                try (InputStream in = new FileInputStream(file)) {
+                    new CsvParser().parse(in, CHARSET, new Receiver<List<String>>() {
+                        @Override
+                        @SafeVarargs
+                        public final void add(List<String>... rows) {
+                            for (List<String> row : rows) {
+                                cellCount[0] += row.size();
+                            }
+                        }
+                    });
+                }
+                return cellCount[0];
+            }
+        },
+        ROW_LISTENER("parseRows(Reader, RowListener)") {
+            @Override
+            public long parse(File file) throws Exception {
+                final long[] cellCount = new long[1];
+                try (InputStream in = new FileInputStream(file)) {
+                    new CsvParser().parseRows(new InputStreamReader(in, CHARSET), new CsvParser.RowListener() {
+                        @Override
+                        public void rowParsed(CsvParser.Row row) {
+                            cellCount[0] += row.getCellCount();
+                        }
+                    });
+                }
+                return cellCount[0];
+            }
+        },
+        PARALLEL_FILE("parseRows(File, Charset, RowListener)") {
+            @Override
+            public long parse(File file) throws Exception {
+                final long[] cellCount = new long[1];
+                new CsvParser().parseRows(file, CHARSET, new CsvParser.RowListener() {
+                    @Override
+                    public void rowParsed(CsvParser.Row row) {
+                        cellCount[0] += row.getCellCount();
+                    }
+                });
+                return cellCount[0];
+            }
+        };
+
+        final String name;
+
+        Model(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Parse a file and return the number of cells.
+         */
+        public abstract long parse(File file) throws Exception;
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running " + CsvComparison.class.getSimpleName());
+        System.out.println("OS: " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+        new CsvComparison().run(null);
+    }
+
+    @Override
+    public void run(DemoResourceContext context) throws Exception {
+        File file = File.createTempFile("CsvComparison", ".csv");
+        try {
+            Random random = new Random(0);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), CHARSET))) {
+                for (int a = 0; a < ROW_COUNT; a++) {
+                    writer.write(a + ",\"Name " + random.nextInt(10000) + "\"," + random.nextDouble() + ",\"a \"\"quoted\"\", multiline\nvalue\"," + random.nextLong() + "\r\n");
+                }
+            }
+            System.out.println(ROW_COUNT + " rows, " + file.length() + " bytes");
+
+            long[] samples = new long[5];
+            for (Model model : Model.values()) {
+                // warm up
+                long cellCount = model.parse(file);
+                for (int sampleIndex = 0; sampleIndex < samples.length; sampleIndex++) {
+                    samples[sampleIndex] = System.nanoTime();
+                    model.parse(file);
+                    samples[sampleIndex] = System.nanoTime() - samples[sampleIndex];
+                }
+                Arrays.sort(samples);
+                double millis = samples[samples.length / 2] / 1000000.0;
+                System.out.println(model + "\t" + String.format("%.1f ms\t%.1f MB/s\t%d cells", millis, file.length() / 1024.0 / 1024.0 / (millis / 1000), cellCount));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
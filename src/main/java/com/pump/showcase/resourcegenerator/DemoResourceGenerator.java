@@ -32,10 +32,20 @@ public abstract class DemoResourceGenerator {
 					new ShadowRendererDemoResourceGenerator(),
 					new Transition2DDemoResourceGenerator(),
 					new Transition3DDemoResourceGenerator(),
+					new AudioMixingComparison(),
 					new BmpComparison(),
 					new ClipperComparison(),
+					new CsvComparison(),
+					new FileLoggerComparison(),
+					new JavaTokenizerComparison(),
 					new LoadImagesComparison(),
-					new ScalingComparison()
+					new LZWComparison(),
+					new ObservableListComparison(),
+					new ScalingComparison(),
+					new SerializationComparison(),
+					new TextDiffComparison(),
+					new VectorImageComparison(),
+					new WildcardComparison()
 			};
 
 			for (DemoResourceGenerator g : gs) {
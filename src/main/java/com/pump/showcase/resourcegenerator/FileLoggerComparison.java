@@ -0,0 +1,120 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.showcase.resourcegenerator;
+
+import com.pump.io.AsyncFileAppender;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This compares the time it takes several threads to log messages to a file
+ * by opening, writing and closing the file for each message vs using an
+ * AsyncFileAppender.
+ */
+public class FileLoggerComparison extends DemoResourceGenerator {
+
+    public enum Model {
+        SYNCHRONOUS("Open/write/close per message"), ASYNC("AsyncFileAppender");
+
+        final String name;
+
+        Model(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static final int MESSAGES_PER_THREAD = 20000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running " + FileLoggerComparison.class.getSimpleName());
+        System.out.println("OS: " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        new FileLoggerComparison().run(null);
+    }
+
+    @Override
+    public void run(DemoResourceContext context) throws Exception {
+        int[] threadCounts = new int[] { 1, 4 };
+        long[] samples = new long[5];
+        for (int threadCount : threadCounts) {
+            for (Model model : Model.values()) {
+                // warm up
+                log(model, threadCount);
+                for (int sampleIndex = 0; sampleIndex < samples.length; sampleIndex++) {
+                    samples[sampleIndex] = log(model, threadCount);
+                }
+                Arrays.sort(samples);
+                double millis = samples[samples.length / 2] / 1000000.0;
+                System.out.println(model + "\t" + threadCount + " thread(s)\t" + String.format("%.1f ms", millis));
+            }
+        }
+    }
+
+    /**
+     * Return the nanoseconds it takes several threads to log messages until
+     * every message is in the file.
+     */
+    private long log(final Model model, int threadCount) throws Exception {
+        final File file = File.createTempFile("FileLoggerComparison", ".txt");
+        try {
+            final AsyncFileAppender appender = model == Model.ASYNC ? new AsyncFileAppender(file) : null;
+            Thread[] threads = new Thread[threadCount];
+            for (int a = 0; a < threads.length; a++) {
+                final int threadIndex = a;
+                threads[a] = new Thread() {
+                    @Override
+                    public void run() {
+                        for (int b = 0; b < MESSAGES_PER_THREAD; b++) {
+                            String msg = "Thread " + threadIndex + " message " + b + "\r\n";
+                            if (appender != null) {
+                                appender.append(msg);
+                            } else {
+                                writeSynchronously(file, msg);
+                            }
+                        }
+                    }
+                };
+            }
+
+            long time = System.nanoTime();
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (appender != null)
+                appender.close();
+            time = System.nanoTime() - time;
+            return time;
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * This is how FileLogger used to write every message.
+     */
+    private static synchronized void writeSynchronously(File file, String msg) {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(msg.getBytes());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
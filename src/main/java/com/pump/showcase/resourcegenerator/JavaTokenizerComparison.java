@@ -0,0 +1,166 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.showcase.resourcegenerator;
+
+import com.pump.io.parser.Token;
+import com.pump.io.parser.java.JavaParser;
+import com.pump.io.parser.java.JavaTokenizer;
+import com.pump.util.Receiver;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This compares the time it takes to tokenize a large corpus of Java source
+ * code using the Token-based JavaParser methods and the pull-based
+ * JavaTokenizer.
+ * <p>
+ * The corpus is every .java file in "src/main/java" if that directory exists,
+ * otherwise it is generated.
+ */
+public class JavaTokenizerComparison extends DemoResourceGenerator {
+
+    public enum Model {
+        PARSE_LINES("JavaParser.parseLines(InputStream, true)") {
+            @Override
+            public long tokenize(List<String> corpus) throws Exception {
+                long tokenCount = 0;
+                for (String source : corpus) {
+                    Token[][] lines = new JavaParser().parseLines(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), true);
+                    for (Token[] line : lines) {
+                        tokenCount += line.length;
+                    }
+                }
+                return tokenCount;
+            }
+        },
+        RECEIVER("JavaParser.parse(Reader, Receiver)") {
+            @Override
+            public long tokenize(List<String> corpus) throws Exception {
+                final long[] tokenCount = new long[1];
+                Receiver<Token> receiver = new Receiver<Token>() {
+                    @Override
+                    public void add(Token... tokens) {
+                        tokenCount[0] += tokens.length;
+                    }
+                };
+                for (String source : corpus) {
+                    new JavaParser().parse(new StringReader(source), receiver);
+                }
+                return tokenCount[0];
+            }
+        },
+        TOKENIZER("JavaTokenizer.next()") {
+            @Override
+            public long tokenize(List<String> corpus) {
+                long tokenCount = 0;
+                for (String source : corpus) {
+                    JavaTokenizer tokenizer = new JavaTokenizer(CharBuffer.wrap(source));
+                    while (tokenizer.next() != null) {
+                        tokenCount++;
+                    }
+                }
+                return tokenCount;
+            }
+        };
+
+        final String name;
+
+        Model(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Tokenize every String in the corpus and return the number of tokens.
+         */
+        public abstract long tokenize(List<String> corpus) throws Exception;
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running " + JavaTokenizerComparison.class.getSimpleName());
+        System.out.println("OS: " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        new JavaTokenizerComparison().run(null);
+    }
+
+    @Override
+    public void run(DemoResourceContext context) throws Exception {
+        List<String> corpus = new ArrayList<>();
+        File dir = new File("src" + File.separator + "main" + File.separator + "java");
+        if (dir.isDirectory()) {
+            addJavaFiles(dir, corpus);
+        } else {
+            for (int a = 0; a < 1000; a++) {
+                corpus.add(createSource(a));
+            }
+        }
+        long charCount = 0;
+        for (String source : corpus) {
+            charCount += source.length();
+        }
+        System.out.println(corpus.size() + " files, " + charCount + " chars");
+
+        long[] samples = new long[5];
+        for (Model model : Model.values()) {
+            // warm up
+            long tokenCount = model.tokenize(corpus);
+            for (int sampleIndex = 0; sampleIndex < samples.length; sampleIndex++) {
+                samples[sampleIndex] = System.nanoTime();
+                model.tokenize(corpus);
+                samples[sampleIndex] = System.nanoTime() - samples[sampleIndex];
+            }
+            Arrays.sort(samples);
+            double millis = samples[samples.length / 2] / 1000000.0;
+            System.out.println(model + "\t" + String.format("%.1f ms\t%.1f MB/s\t%d tokens", millis, charCount / 1024.0 / 1024.0 / (millis / 1000), tokenCount));
+        }
+    }
+
+    private void addJavaFiles(File dir, List<String> corpus) throws IOException {
+        File[] children = dir.listFiles();
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addJavaFiles(child, corpus);
+            } else if (child.getName().endsWith(".java")) {
+                corpus.add(new String(Files.readAllBytes(child.toPath()), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private String createSource(int index) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package com.example;\n\nimport java.util.*;\n\n");
+        sb.append("/**\n * Generated class " + index + ".\n */\n");
+        sb.append("public class Example" + index + " {\n");
+        for (int a = 0; a < 100; a++) {
+            sb.append("\t// method " + a + "\n");
+            sb.append("\tpublic double method" + a + "(int x, List<String> list) {\n");
+            sb.append("\t\tString s = \"value\\t" + a + "\";\n");
+            sb.append("\t\tif (x > " + a + " && list.size() < 0x1F) {\n");
+            sb.append("\t\t\treturn x * 1.5e3 + 'c' - " + a + "L;\n");
+            sb.append("\t\t}\n\t\treturn s.length() / 2.0f;\n\t}\n\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
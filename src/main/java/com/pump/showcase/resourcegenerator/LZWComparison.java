@@ -0,0 +1,185 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.showcase.resourcegenerator;
+
+import com.pump.image.gif.block.GifBlock;
+import com.pump.image.gif.block.GifImageDataBlock;
+import com.pump.image.gif.block.GifParser;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This compares the time it takes to decode the LZW data in a corpus of GIF
+ * files.
+ * <p>
+ * The corpus is every GIF file in the directories passed as arguments to
+ * {@link #main(String[])}. If there are no arguments this uses the
+ * "resources" directory in the current working directory.
+ */
+public class LZWComparison extends DemoResourceGenerator {
+
+    public enum Model {
+        LZW_BYTE_AT_A_TIME("LZWInputStream.read()") {
+            @Override
+            public long decode(List<GifImageDataBlock> blocks, List<byte[]> gifFiles) throws Exception {
+                long sum = 0;
+                for (GifImageDataBlock block : blocks) {
+                    try (InputStream in = block.getUncompressedInputStream()) {
+                        int k = in.read();
+                        while (k != -1) {
+                            sum++;
+                            k = in.read();
+                        }
+                    }
+                }
+                return sum;
+            }
+        },
+        LZW_BULK("LZWInputStream.read(byte[])") {
+            @Override
+            public long decode(List<GifImageDataBlock> blocks, List<byte[]> gifFiles) throws Exception {
+                long sum = 0;
+                byte[] buffer = new byte[8192];
+                for (GifImageDataBlock block : blocks) {
+                    try (InputStream in = block.getUncompressedInputStream()) {
+                        int k = in.read(buffer);
+                        while (k != -1) {
+                            sum += k;
+                            k = in.read(buffer);
+                        }
+                    }
+                }
+                return sum;
+            }
+        },
+        IMAGE_IO("ImageIO (all frames)") {
+            @Override
+            public long decode(List<GifImageDataBlock> blocks, List<byte[]> gifFiles) throws Exception {
+                long sum = 0;
+                for (byte[] gifFile : gifFiles) {
+                    try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(gifFile))) {
+                        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+                        ImageReader reader = readers.next();
+                        reader.setInput(in);
+                        int frameCount = reader.getNumImages(true);
+                        for (int a = 0; a < frameCount; a++) {
+                            sum += reader.read(a).getWidth();
+                        }
+                        reader.dispose();
+                    }
+                }
+                return sum;
+            }
+        };
+
+        final String name;
+
+        Model(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Decode the corpus and return a checksum (so the JIT can't discard the work).
+         */
+        public abstract long decode(List<GifImageDataBlock> blocks, List<byte[]> gifFiles) throws Exception;
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running " + LZWComparison.class.getSimpleName());
+        System.out.println("OS: " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        File[] dirs;
+        if (args.length == 0) {
+            dirs = new File[] { new File("resources") };
+        } else {
+            dirs = new File[args.length];
+            for (int a = 0; a < args.length; a++) {
+                dirs[a] = new File(args[a]);
+            }
+        }
+        new LZWComparison(dirs).run(null);
+    }
+
+    File[] corpusDirectories;
+
+    public LZWComparison() {
+        this(new File("resources"));
+    }
+
+    public LZWComparison(File... corpusDirectories) {
+        this.corpusDirectories = corpusDirectories;
+    }
+
+    @Override
+    public void run(DemoResourceContext context) throws Exception {
+        List<byte[]> gifFiles = new ArrayList<>();
+        List<GifImageDataBlock> blocks = new ArrayList<>();
+        for (File dir : corpusDirectories) {
+            collectGifs(dir, gifFiles, blocks);
+        }
+
+        long uncompressedSize = Model.LZW_BULK.decode(blocks, gifFiles);
+        System.out.println("Corpus: " + gifFiles.size() + " files, " + blocks.size()
+                + " image blocks, " + uncompressedSize + " decoded bytes");
+
+        long[] samples = new long[10];
+        for (Model model : Model.values()) {
+            // warm up
+            model.decode(blocks, gifFiles);
+            for (int sampleIndex = 0; sampleIndex < samples.length; sampleIndex++) {
+                samples[sampleIndex] = System.nanoTime();
+                model.decode(blocks, gifFiles);
+                samples[sampleIndex] = System.nanoTime() - samples[sampleIndex];
+            }
+            Arrays.sort(samples);
+            double millis = samples[samples.length / 2] / 1000000.0;
+            double mbPerSecond = uncompressedSize / (1024.0 * 1024.0) / (millis / 1000.0);
+            System.out.println(model + "\t" + String.format("%.1f ms\t%.1f MB/s", millis, mbPerSecond));
+        }
+    }
+
+    private void collectGifs(File file, List<byte[]> gifFiles, List<GifImageDataBlock> blocks) throws Exception {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    collectGifs(child, gifFiles, blocks);
+                }
+            }
+        } else if (file.getName().toLowerCase().endsWith(".gif")) {
+            try (InputStream in = new FileInputStream(file)) {
+                GifParser parser = new GifParser(in);
+                GifBlock block = parser.readNextBlock();
+                while (block != null) {
+                    if (block instanceof GifImageDataBlock)
+                        blocks.add((GifImageDataBlock) block);
+                    block = parser.readNextBlock();
+                }
+            }
+            gifFiles.add(Files.readAllBytes(file.toPath()));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.showcase.resourcegenerator;
+
+import com.pump.util.list.ObservableList;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This compares the time it takes several threads to read an ObservableList
+ * that is occasionally modified, with and without optimistic reads.
+ */
+public class ObservableListComparison extends DemoResourceGenerator {
+
+    public enum Model {
+        READ_LOCK("ReentrantReadWriteLock", false), OPTIMISTIC("Optimistic reads", true);
+
+        final String name;
+        final boolean optimisticReads;
+
+        Model(String name, boolean optimisticReads) {
+            this.name = name;
+            this.optimisticReads = optimisticReads;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static final int LIST_SIZE = 1000;
+    static final int READS_PER_THREAD = 2000000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running " + ObservableListComparison.class.getSimpleName());
+        System.out.println("OS: " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        new ObservableListComparison().run(null);
+    }
+
+    @Override
+    public void run(DemoResourceContext context) throws Exception {
+        int[] threadCounts = new int[] { 1, 4 };
+        long[] samples = new long[5];
+        for (int threadCount : threadCounts) {
+            for (Model model : Model.values()) {
+                // warm up
+                read(model, threadCount);
+                for (int sampleIndex = 0; sampleIndex < samples.length; sampleIndex++) {
+                    samples[sampleIndex] = read(model, threadCount);
+                }
+                Arrays.sort(samples);
+                double millis = samples[samples.length / 2] / 1000000.0;
+                System.out.println(model + "\t" + threadCount + " thread(s)\t" + String.format("%.1f ms", millis));
+            }
+        }
+    }
+
+    /**
+     * Return the nanoseconds it takes several threads to call get() and
+     * size() many times while another thread modifies the list every
+     * millisecond.
+     */
+    private long read(Model model, int threadCount) throws InterruptedException {
+        final ObservableList<Integer> list = new ObservableList<>();
+        for (int a = 0; a < LIST_SIZE; a++) {
+            list.add(a);
+        }
+        list.setOptimisticReads(model.optimisticReads);
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                int k = 0;
+                while (!done.get()) {
+                    list.set(k % LIST_SIZE, k);
+                    k++;
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        };
+
+        Thread[] readers = new Thread[threadCount];
+        for (int a = 0; a < readers.length; a++) {
+            readers[a] = new Thread() {
+                @Override
+                public void run() {
+                    long sum = 0;
+                    for (int b = 0; b < READS_PER_THREAD; b++) {
+                        sum += list.get(b % list.size());
+                    }
+                    if (sum == 0)
+                        System.out.println("unexpected sum");
+                }
+            };
+        }
+
+        writer.start();
+        long time = System.nanoTime();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        time = System.nanoTime() - time;
+        done.set(true);
+        writer.join();
+        return time;
+    }
+}
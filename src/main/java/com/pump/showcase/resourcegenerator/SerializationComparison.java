@@ -0,0 +1,148 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.showcase.resourcegenerator;
+
+import com.pump.awt.converter.ShapeMapConverter;
+import com.pump.data.AttributeDataImpl;
+import com.pump.data.Key;
+import com.pump.data.converter.BinaryObjectSerializer;
+import com.pump.data.converter.ConverterUtils;
+import com.pump.image.shadow.ShadowAttributes;
+import com.pump.io.JavaObjectSerializer;
+import com.pump.io.ObjectSerializer;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.geom.Ellipse2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This compares the size and speed of Java serialization vs the
+ * BinaryObjectSerializer for AttributeDataImpls, ShadowAttributes and
+ * BeanMapConverter atom maps.
+ */
+public class SerializationComparison extends DemoResourceGenerator {
+
+    public enum Model {
+        JAVA("Java serialization", new JavaObjectSerializer()), BINARY("BinaryObjectSerializer", new BinaryObjectSerializer());
+
+        final String name;
+        final ObjectSerializer serializer;
+
+        Model(String name, ObjectSerializer serializer) {
+            this.name = name;
+            this.serializer = serializer;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static final int ELEMENT_COUNT = 5000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running " + SerializationComparison.class.getSimpleName());
+        System.out.println("OS: " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        new SerializationComparison().run(null);
+    }
+
+    @Override
+    public void run(DemoResourceContext context) throws Exception {
+        Random random = new Random(0);
+        Object[] datasets = new Object[] { createAttributeData(random), createShadowAttributes(random), createBeanMaps(random) };
+        String[] datasetNames = new String[] { "AttributeDataImpl", "ShadowAttributes", "bean maps" };
+        long[] writeSamples = new long[5];
+        long[] readSamples = new long[5];
+        for (int datasetIndex = 0; datasetIndex < datasets.length; datasetIndex++) {
+            for (Model model : Model.values()) {
+                Object dataset = datasets[datasetIndex];
+                byte[] data = write(model, dataset);
+
+                // warm up
+                for (int a = 0; a < 100; a++) {
+                    write(model, dataset);
+                    model.serializer.readObject(new ByteArrayInputStream(data));
+                }
+                for (int sampleIndex = 0; sampleIndex < writeSamples.length; sampleIndex++) {
+                    long time = System.nanoTime();
+                    write(model, dataset);
+                    writeSamples[sampleIndex] = System.nanoTime() - time;
+
+                    time = System.nanoTime();
+                    model.serializer.readObject(new ByteArrayInputStream(data));
+                    readSamples[sampleIndex] = System.nanoTime() - time;
+                }
+                Arrays.sort(writeSamples);
+                Arrays.sort(readSamples);
+                System.out.println(datasetNames[datasetIndex] + "\t" + model + "\t" + data.length + " bytes\t"
+                        + String.format("write %.1f ms", writeSamples[writeSamples.length / 2] / 1000000.0) + "\t"
+                        + String.format("read %.1f ms", readSamples[readSamples.length / 2] / 1000000.0));
+            }
+        }
+    }
+
+    private byte[] write(Model model, Object dataset) throws Exception {
+        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+        model.serializer.writeObject(dataset, byteOut);
+        return byteOut.toByteArray();
+    }
+
+    private ArrayList<AttributeDataImpl> createAttributeData(Random random) {
+        Key<String> name = new Key<>(String.class, "name");
+        Key<Integer> index = new Key<>(Integer.class, "index");
+        Key<Double> weight = new Key<>(Double.class, "weight");
+        Key<Color> color = new Key<>(Color.class, "color");
+        Color[] colors = new Color[] { Color.red, Color.green, Color.blue };
+        ArrayList<AttributeDataImpl> list = new ArrayList<>();
+        for (int a = 0; a < ELEMENT_COUNT; a++) {
+            AttributeDataImpl data = new AttributeDataImpl();
+            data.setAttribute(name, "item " + random.nextInt(100));
+            data.setAttribute(index, a);
+            data.setAttribute(weight, random.nextDouble());
+            data.setAttribute(color, colors[random.nextInt(colors.length)]);
+            list.add(data);
+        }
+        return list;
+    }
+
+    private ArrayList<ShadowAttributes> createShadowAttributes(Random random) {
+        ArrayList<ShadowAttributes> list = new ArrayList<>();
+        for (int a = 0; a < ELEMENT_COUNT; a++) {
+            list.add(new ShadowAttributes(random.nextInt(5), random.nextInt(5), random.nextInt(10),
+                    new Color(random.nextInt(), true)));
+        }
+        return list;
+    }
+
+    private ArrayList<Map<String, Object>> createBeanMaps(Random random) {
+        ArrayList<Map<String, Object>> list = new ArrayList<>();
+        ShapeMapConverter shapeConverter = new ShapeMapConverter();
+        for (int a = 0; a < ELEMENT_COUNT; a++) {
+            if (a % 3 == 0) {
+                list.add(ConverterUtils.getAtoms(new Color(random.nextInt())));
+            } else if (a % 3 == 1) {
+                list.add(ConverterUtils.getAtoms(new BasicStroke(1 + random.nextInt(5))));
+            } else {
+                list.add(shapeConverter.createAtoms(new Ellipse2D.Float(random.nextFloat() * 100,
+                        random.nextFloat() * 100, 10, 10)));
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.showcase.resourcegenerator;
+
+import com.pump.text.TextDiff;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This compares the time it takes the recursive and Myers-based TextDiff
+ * algorithms to find the simplest solutions for Strings of different lengths.
+ * <p>
+ * Each pair of Strings is a random String and a copy of it where about 20% of
+ * the characters were changed. The recursive search is skipped once it takes
+ * more than a second.
+ */
+public class TextDiffComparison extends DemoResourceGenerator {
+
+    static final int[] LENGTHS = {2, 4, 6, 8, 10, 12, 14, 16, 20, 50, 100, 500, 1000, 5000};
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running " + TextDiffComparison.class.getSimpleName());
+        System.out.println("OS: " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        new TextDiffComparison().run(null);
+    }
+
+    @Override
+    public void run(DemoResourceContext context) throws Exception {
+        Random random = new Random(0);
+        boolean[] skip = new boolean[TextDiff.Algorithm.values().length];
+        System.out.println("Length\t" + TextDiff.Algorithm.RECURSIVE + " (ms)\t" + TextDiff.Algorithm.MYERS + " (ms)");
+        for (int length : LENGTHS) {
+            String[][] pairs = new String[20][];
+            for (int a = 0; a < pairs.length; a++) {
+                pairs[a] = createPair(random, length);
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append(length);
+            for (TextDiff.Algorithm algorithm : new TextDiff.Algorithm[]{TextDiff.Algorithm.RECURSIVE, TextDiff.Algorithm.MYERS}) {
+                if (skip[algorithm.ordinal()]) {
+                    sb.append("\t-");
+                    continue;
+                }
+                double millis = measure(algorithm, pairs);
+                sb.append("\t" + String.format("%.4f", millis));
+                if (millis > 1000)
+                    skip[algorithm.ordinal()] = true;
+            }
+            System.out.println(sb);
+        }
+    }
+
+    /**
+     * Return the median time (in milliseconds) to diff one pair of Strings.
+     */
+    private double measure(TextDiff.Algorithm algorithm, String[][] pairs) {
+        // no cache, so every call is measured
+        TextDiff diff = new TextDiff(algorithm, 0);
+        int sampleCount = 5;
+        long[] samples = new long[sampleCount];
+        // warm up
+        for (String[] pair : pairs) {
+            diff.getSolution(pair[0], pair[1]);
+        }
+        for (int sampleIndex = 0; sampleIndex < samples.length; sampleIndex++) {
+            samples[sampleIndex] = System.nanoTime();
+            for (String[] pair : pairs) {
+                diff.getSolution(pair[0], pair[1]);
+            }
+            samples[sampleIndex] = System.nanoTime() - samples[sampleIndex];
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2] / 1000000.0 / pairs.length;
+    }
+
+    private String[] createPair(Random random, int length) {
+        char[] chars = new char[length];
+        for (int a = 0; a < chars.length; a++) {
+            chars[a] = (char) ('a' + random.nextInt(26));
+        }
+        String strA = new String(chars);
+        for (int a = 0; a < chars.length; a++) {
+            if (random.nextInt(5) == 0)
+                chars[a] = (char) ('a' + random.nextInt(26));
+        }
+        return new String[]{strA, new String(chars)};
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.showcase.resourcegenerator;
+
+import com.pump.graphics.vector.VectorGraphics2D;
+import com.pump.graphics.vector.VectorImage;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This compares the size and load time of a VectorImage saved with GZIP'd Java
+ * serialization (the original file format) vs the binary format written by
+ * VectorImage#save.
+ */
+public class VectorImageComparison extends DemoResourceGenerator {
+
+    public enum Model {
+        SERIALIZATION("Java serialization"), BINARY("VectorImageWriter");
+
+        final String name;
+
+        Model(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static final int OPERATION_COUNT = 20000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running " + VectorImageComparison.class.getSimpleName());
+        System.out.println("OS: " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        new VectorImageComparison().run(null);
+    }
+
+    @Override
+    public void run(DemoResourceContext context) throws Exception {
+        VectorImage img = createImage();
+        long[] samples = new long[5];
+        for (Model model : Model.values()) {
+            byte[] data = save(img, model);
+
+            // warm up
+            new VectorImage(new ByteArrayInputStream(data));
+            for (int sampleIndex = 0; sampleIndex < samples.length; sampleIndex++) {
+                long time = System.nanoTime();
+                new VectorImage(new ByteArrayInputStream(data));
+                samples[sampleIndex] = System.nanoTime() - time;
+            }
+            Arrays.sort(samples);
+            double millis = samples[samples.length / 2] / 1000000.0;
+            System.out.println(model + "\t" + data.length + " bytes\t" + String.format("%.1f ms", millis));
+        }
+    }
+
+    /**
+     * Create an image with many small shapes that share a handful of
+     * colors, strokes and clips.
+     */
+    private VectorImage createImage() {
+        Random random = new Random(0);
+        VectorImage img = new VectorImage();
+        VectorGraphics2D g = img.createGraphics();
+        Color[] colors = new Color[] { Color.red, Color.green, Color.blue, Color.gray };
+        for (int a = 0; a < OPERATION_COUNT; a++) {
+            if (a % 1000 == 0) {
+                g.setClip(random.nextInt(100), random.nextInt(100), 800, 800);
+                g.setStroke(new BasicStroke(1 + random.nextInt(4)));
+            }
+            g.setColor(colors[random.nextInt(colors.length)]);
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            if (a % 2 == 0) {
+                g.fill(new Ellipse2D.Float(x, y, 10, 10));
+            } else {
+                Path2D p = new Path2D.Float();
+                p.moveTo(x, y);
+                p.curveTo(x + 10, y, x + 10, y + 10, x, y + 20);
+                p.lineTo(x - 5, y + 5);
+                g.draw(p);
+            }
+        }
+        g.dispose();
+        return img;
+    }
+
+    private byte[] save(VectorImage img, Model model) throws Exception {
+        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+        if (model == Model.BINARY) {
+            img.save(byteOut);
+        } else {
+            try (ObjectOutputStream objOut = new ObjectOutputStream(new GZIPOutputStream(byteOut))) {
+                objOut.writeObject(img);
+            }
+        }
+        return byteOut.toByteArray();
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.showcase.resourcegenerator;
+
+import com.pump.text.WildcardPattern;
+import com.pump.text.WildcardPatternSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * This compares the time it takes to match many file names against many
+ * WildcardPatterns, either one pattern at a time or with a WildcardPatternSet,
+ * and the time it takes to find the elements of a sorted set that match one
+ * pattern.
+ */
+public class WildcardComparison extends DemoResourceGenerator {
+
+    static final int NAME_COUNT = 100000;
+    static final int PATTERN_COUNT = 200;
+
+    static final String[] WORDS = {"img", "photo", "report", "draft", "final", "backup", "notes", "data", "build", "test"};
+    static final String[] EXTENSIONS = {"jpg", "png", "txt", "doc", "java", "class", "xml", "csv"};
+
+    interface Model {
+        /**
+         * Return the number of names that match at least one pattern.
+         */
+        int count(List<String> names);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running " + WildcardComparison.class.getSimpleName());
+        System.out.println("OS: " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        new WildcardComparison().run(null);
+    }
+
+    @Override
+    public void run(DemoResourceContext context) throws Exception {
+        Random random = new Random(0);
+        List<String> names = new ArrayList<>(NAME_COUNT);
+        for (int a = 0; a < NAME_COUNT; a++) {
+            names.add(createName(random));
+        }
+        final List<WildcardPattern> patterns = new ArrayList<>(PATTERN_COUNT);
+        for (int a = 0; a < PATTERN_COUNT; a++) {
+            patterns.add(new WildcardPattern(createPattern(random)));
+        }
+        final WildcardPatternSet patternSet = new WildcardPatternSet(patterns);
+
+        System.out.println(NAME_COUNT + " names, " + PATTERN_COUNT + " patterns");
+        System.out.println("each pattern\t" + String.format("%.1f ms", measure(new Model() {
+            @Override
+            public int count(List<String> names) {
+                int sum = 0;
+                for (String name : names) {
+                    for (WildcardPattern p : patterns) {
+                        if (p.matches(name)) {
+                            sum++;
+                            break;
+                        }
+                    }
+                }
+                return sum;
+            }
+        }, names)));
+        System.out.println("WildcardPatternSet\t" + String.format("%.1f ms", measure(new Model() {
+            @Override
+            public int count(List<String> names) {
+                int sum = 0;
+                for (String name : names) {
+                    if (patternSet.matchesAny(name))
+                        sum++;
+                }
+                return sum;
+            }
+        }, names)));
+
+        final TreeSet<String> sortedNames = new TreeSet<>(names);
+        for (String patternText : new String[]{"d???_[b-d]*_1*.csv", "[b-d]*_?4*.[cj]*"}) {
+            final WildcardPattern pattern = new WildcardPattern(patternText);
+            System.out.println("\"" + patternText + "\"");
+            System.out.println("matches(..) on every element\t" + String.format("%.1f ms", measure(new Model() {
+                @Override
+                public int count(List<String> names) {
+                    TreeSet<String> matches = new TreeSet<>();
+                    for (String name : sortedNames) {
+                        if (pattern.matches(name))
+                            matches.add(name);
+                    }
+                    return matches.size();
+                }
+            }, names)));
+            System.out.println("getMatches(..)\t" + String.format("%.1f ms", measure(new Model() {
+                @Override
+                public int count(List<String> names) {
+                    return pattern.getMatches(sortedNames).size();
+                }
+            }, names)));
+        }
+    }
+
+    /**
+     * Return the median time (in milliseconds) a model takes.
+     */
+    private double measure(Model model, List<String> names) {
+        // warm up
+        model.count(names);
+        long[] samples = new long[5];
+        for (int sampleIndex = 0; sampleIndex < samples.length; sampleIndex++) {
+            samples[sampleIndex] = System.nanoTime();
+            model.count(names);
+            samples[sampleIndex] = System.nanoTime() - samples[sampleIndex];
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2] / 1000000.0;
+    }
+
+    private String createName(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int wordCount = 1 + random.nextInt(3);
+        for (int a = 0; a < wordCount; a++) {
+            if (a > 0)
+                sb.append('_');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        sb.append('_').append(random.nextInt(10000));
+        sb.append('.').append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+        return sb.toString();
+    }
+
+    private String createPattern(Random random) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        String extension = EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+        switch (random.nextInt(4)) {
+            case 0:
+                return word + "_*." + extension;
+            case 1:
+                return "*" + word + "*" + random.nextInt(10) + "*." + extension;
+            case 2:
+                return "*_" + word + "_*_" + random.nextInt(10) + "??." + extension.charAt(0) + "*";
+            default:
+                return "[a-" + (char) ('a' + random.nextInt(26)) + "]*" + word + "*_?" + random.nextInt(10) + "*";
+        }
+    }
+}
@@ -14,6 +14,8 @@ import java.awt.Color;
 import java.awt.Font;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.text.AttributeSet;
 import javax.swing.text.JTextComponent;
@@ -24,6 +26,7 @@ import com.pump.io.parser.Parser.CommentToken;
 import com.pump.io.parser.Parser.StringToken;
 import com.pump.io.parser.Parser.SymbolCharToken;
 import com.pump.io.parser.Parser.UnparsedToken;
+import com.pump.io.parser.Parser.WhitespaceToken;
 import com.pump.io.parser.Token;
 import com.pump.io.parser.java.JavaParser;
 import com.pump.io.parser.java.JavaParser.CharToken;
@@ -133,6 +136,30 @@ public class JavaFormatter extends TokenTextComponentHighlighter {
 		return defaultAttributes;
 	}
 
+	/**
+	 * Lexing can restart at any boundary between whitespace and other text,
+	 * because no Java token depends on the text before it. The exception is a
+	 * multiline comment, because its line number may be the line it ends on.
+	 */
+	@Override
+	protected boolean isRestartPoint(List<Token> tokens, int tokenIndex) {
+		if (tokenIndex == 0)
+			return true;
+		Token token = tokens.get(tokenIndex);
+		if (token instanceof CommentToken && token.getText().startsWith("/*"))
+			return false;
+		return token instanceof WhitespaceToken != tokens.get(tokenIndex - 1) instanceof WhitespaceToken;
+	}
+
+	/**
+	 * Brackets may be matched across the whole document, so this matches all
+	 * the brackets again.
+	 */
+	@Override
+	protected void linkTokens(Token[] tokens, Map<Token, Token> copies) {
+		JavaParser.matchBrackets(tokens);
+	}
+
 	@Override
 	protected void createTokens(String inputText, Receiver<Token> receiver)
 			throws Exception {
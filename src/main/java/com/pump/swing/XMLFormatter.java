@@ -12,6 +12,7 @@ package com.pump.swing;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.util.List;
 
 import javax.swing.text.AttributeSet;
 import javax.swing.text.JTextComponent;
@@ -25,6 +26,10 @@ import com.pump.io.parser.Token;
 import com.pump.io.parser.java.JavaParser.CharToken;
 import com.pump.io.parser.xml.XMLParser;
 import com.pump.io.parser.xml.XMLParser.CommentToken;
+import com.pump.io.parser.xml.XMLParser.StartCommentToken;
+import com.pump.io.parser.xml.XMLParser.StartDTDTagToken;
+import com.pump.io.parser.xml.XMLParser.StartPrologToken;
+import com.pump.io.parser.xml.XMLParser.StartTagToken;
 import com.pump.io.parser.xml.XMLParser.TagDeclarationToken;
 import com.pump.io.parser.xml.XMLParser.WordToken;
 import com.pump.text.TokenTextComponentHighlighter;
@@ -123,6 +128,32 @@ public class XMLFormatter extends TokenTextComponentHighlighter {
 		return defaultAttributes;
 	}
 
+	/**
+	 * Lexing can restart at the beginning of any tag or comment, unless it is
+	 * inside the internal subset of a DTD (which is enclosed in brackets).
+	 */
+	@Override
+	protected boolean isRestartPoint(List<Token> tokens, int tokenIndex) {
+		if (tokenIndex == 0)
+			return true;
+		Token token = tokens.get(tokenIndex);
+		if (!(token instanceof StartTagToken
+				|| token instanceof StartCommentToken
+				|| token instanceof StartPrologToken || token instanceof StartDTDTagToken))
+			return false;
+		for (int a = tokenIndex - 1; a >= 0; a--) {
+			Token t = tokens.get(a);
+			if (t instanceof SymbolCharToken) {
+				char ch = ((SymbolCharToken) t).getChar();
+				if (ch == ']')
+					return true;
+				if (ch == '[')
+					return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	protected void createTokens(String inputText, Receiver<Token> receiver)
 			throws Exception {
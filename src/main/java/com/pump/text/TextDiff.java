@@ -10,9 +10,13 @@
  */
 package com.pump.text;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TreeSet;
 
@@ -20,11 +24,11 @@ import java.util.TreeSet;
  * This object can diff two Strings together to find the minimal amount of
  * changes between the two.
  * <p>
- * Note this is only intended for small strings, and depending on the similarity
- * and length of the Strings: this can be very expensive. Because it is
- * expensive: this object caches all requested diffs for cheap retrieval. So
- * periodically you may want to replace your {@code TextDiff} object to avoid
- * store large sets of Strings and diffs in memory.
+ * The simplest solutions are found by a search that takes O(ND) time and
+ * memory, where N is the combined length of the Strings and D is the number of
+ * characters that are added or removed (see {@link Algorithm}). Results are
+ * cached for cheap retrieval, but the cache is bounded by an estimate of its
+ * memory use, and the least recently used results are evicted first.
  * <p>
  * This class can best be described by examples, so let's consider how this
  * diffs the two strings: "antigravity" and "gravity field". The simplest result
@@ -288,7 +292,7 @@ public class TextDiff {
 			} else {
 				SharedSegment newTail = new SharedSegment(ch);
 				tail.next = newTail;
-				newTail.prev = tail.next;
+				newTail.prev = tail;
 			}
 			return clone;
 		}
@@ -353,7 +357,7 @@ public class TextDiff {
 			} else {
 				SplitSegment newTail = new SplitSegment(strA, strB);
 				tail.next = newTail;
-				newTail.prev = tail.next;
+				newTail.prev = tail;
 			}
 			return clone;
 		}
@@ -635,16 +639,27 @@ public class TextDiff {
 		final String strA, strB;
 		final boolean includeAllSolutions;
 
+		/**
+		 * If true then only one of the simplest solutions is needed.
+		 */
+		final boolean singleSolution;
+
 		Key(String strA, String strB, boolean includeAllSolutions) {
+			this(strA, strB, includeAllSolutions, false);
+		}
+
+		Key(String strA, String strB, boolean includeAllSolutions,
+				boolean singleSolution) {
 			this.strA = strA;
 			this.strB = strB;
 			this.includeAllSolutions = includeAllSolutions;
+			this.singleSolution = singleSolution;
 		}
 
 		@Override
 		public int hashCode() {
 			return strA.hashCode() + strB.hashCode()
-					+ (includeAllSolutions ? 1 : 0);
+					+ (includeAllSolutions ? 1 : 0) + (singleSolution ? 2 : 0);
 		}
 
 		@Override
@@ -654,19 +669,182 @@ public class TextDiff {
 			}
 			Key other = (Key) obj;
 			return strA.equals(other.strA) && strB.equals(other.strB)
-					&& includeAllSolutions == other.includeAllSolutions;
+					&& includeAllSolutions == other.includeAllSolutions
+					&& singleSolution == other.singleSolution;
 		}
 
 		@Override
 		public String toString() {
 			return "\"" + strA + "\" \"" + strB + "\" includeAllSolutions="
-					+ includeAllSolutions;
+					+ includeAllSolutions + " singleSolution="
+					+ singleSolution;
 		}
 	}
 
-	protected Map<Key, Collection<DiffSegment>> cachedResults = new HashMap<>();
+	/**
+	 * The strategies used to find the simplest solutions.
+	 * <p>
+	 * Both of these return the same set of solutions. Queries that ask for all
+	 * solutions (including overly complex solutions) always use
+	 * {@link #RECURSIVE}.
+	 */
+	public static enum Algorithm {
+		/**
+		 * A recursive search that explores every possible graph, pruning
+		 * graphs that are more complex than the simplest graph found so far.
+		 * Its cost grows exponentially with the length of the Strings.
+		 */
+		RECURSIVE,
+		/**
+		 * A dynamic programming search whose cost is proportional to the
+		 * length of the Strings times the number of characters that differ.
+		 * <p>
+		 * This first uses Myers' O(ND) algorithm to measure the edit distance
+		 * D between the two Strings. The simplest graph can't deviate from the
+		 * diagonal of the edit graph by more than a few multiples of D, so the
+		 * search only has to consider a band of that width.
+		 * <p>
+		 * This is faster than {@link #RECURSIVE} for Strings of every length,
+		 * and its advantage grows exponentially with the length of the
+		 * Strings.
+		 */
+		MYERS;
+	}
+
+	/**
+	 * The default maximum estimated memory (in bytes) of the cached results: 4
+	 * MB.
+	 */
+	public static final long DEFAULT_MAX_CACHE_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * The cached results, ordered from least recently used to most recently
+	 * used. Access to this map should be synchronized against it.
+	 */
+	protected Map<Key, Collection<DiffSegment>> cachedResults = new LinkedHashMap<>(
+			16, .75f, true);
+
+	/**
+	 * The estimated memory (in bytes) of {@link #cachedResults}.
+	 */
+	protected long cacheSize = 0;
 
+	protected final long maxCacheSize;
+	protected final Algorithm algorithm;
+
+	/**
+	 * Create a TextDiff that uses {@link Algorithm#MYERS} and
+	 * {@link #DEFAULT_MAX_CACHE_SIZE}.
+	 */
 	public TextDiff() {
+		this(Algorithm.MYERS, DEFAULT_MAX_CACHE_SIZE);
+	}
+
+	/**
+	 * Create a TextDiff.
+	 * 
+	 * @param algorithm
+	 *            the algorithm used to find the simplest solutions.
+	 * @param maxCacheSize
+	 *            the maximum estimated memory (in bytes) of cached results.
+	 *            If this is zero then nothing is cached.
+	 */
+	public TextDiff(Algorithm algorithm, long maxCacheSize) {
+		if (algorithm == null)
+			throw new NullPointerException();
+		if (maxCacheSize < 0)
+			throw new IllegalArgumentException("maxCacheSize (" + maxCacheSize
+					+ ") must not be negative");
+		this.algorithm = algorithm;
+		this.maxCacheSize = maxCacheSize;
+	}
+
+	/**
+	 * Return the estimated memory (in bytes) of the cached results.
+	 */
+	public long getCacheSize() {
+		synchronized (cachedResults) {
+			return cacheSize;
+		}
+	}
+
+	/**
+	 * Remove all cached results.
+	 */
+	public void clearCache() {
+		synchronized (cachedResults) {
+			cachedResults.clear();
+			cacheSize = 0;
+		}
+	}
+
+	/**
+	 * Return the solutions for a query, calculating them if they are not
+	 * cached.
+	 */
+	private Collection<DiffSegment> getSolutions(Key key) {
+		synchronized (cachedResults) {
+			Collection<DiffSegment> solutions = cachedResults.get(key);
+			if (solutions != null)
+				return solutions;
+		}
+
+		Collection<DiffSegment> solutions;
+		if (key.includeAllSolutions || algorithm == Algorithm.RECURSIVE) {
+			solutions = key.includeAllSolutions ? new TreeSet<DiffSegment>()
+					: new HashSet<DiffSegment>();
+			calculateSolutions(solutions, null, key, 0, 0, new Complexity());
+		} else {
+			solutions = new HashSet<>();
+			calculateSimplestSolutions(solutions, key.strA, key.strB,
+					key.singleSolution);
+		}
+
+		long size = estimateSize(key, solutions);
+		if (size <= maxCacheSize) {
+			synchronized (cachedResults) {
+				Collection<DiffSegment> oldSolutions = cachedResults.put(key,
+						solutions);
+				if (oldSolutions != null) {
+					cacheSize -= estimateSize(key, oldSolutions);
+				}
+				cacheSize += size;
+				Iterator<Map.Entry<Key, Collection<DiffSegment>>> iter = cachedResults
+						.entrySet().iterator();
+				while (cacheSize > maxCacheSize && iter.hasNext()) {
+					Map.Entry<Key, Collection<DiffSegment>> eldest = iter
+							.next();
+					cacheSize -= estimateSize(eldest.getKey(),
+							eldest.getValue());
+					iter.remove();
+				}
+			}
+		}
+		return solutions;
+	}
+
+	/**
+	 * Return an estimate of the number of bytes used to cache a result.
+	 */
+	private static long estimateSize(Key key,
+			Collection<DiffSegment> solutions) {
+		// the key, its Strings and the map entry:
+		long size = 150 + 2 * (key.strA.length() + key.strB.length());
+		for (DiffSegment solution : solutions) {
+			// the collection entry:
+			size += 40;
+			for (DiffSegment t = solution; t != null; t = t.next) {
+				// the segment and its Strings:
+				if (t instanceof SharedSegment) {
+					size += 80 + 2 * ((SharedSegment) t).text.length();
+				} else {
+					SplitSegment split = (SplitSegment) t;
+					size += 120 + 2 * (split.textA.length() + split.textB
+							.length());
+				}
+			}
+		}
+		return size;
 	}
 
 	/**
@@ -675,6 +853,10 @@ public class TextDiff {
 	 * If this query is already cached, then that cached value is immediately
 	 * returned. Otherwise this method calculates the diff and caches the
 	 * results in this object for future retrieval.
+	 * <p>
+	 * For long Strings there may be a very large number of equally simple
+	 * graphs, so {@link #getSolution(String, String)} may be more
+	 * appropriate.
 	 * 
 	 * @param strA
 	 *            the first String/branch to compare.
@@ -716,13 +898,7 @@ public class TextDiff {
 			tB = strB;
 		}
 		Key key = new Key(tA, tB, includeAllSolutions);
-		Collection<DiffSegment> solutions = cachedResults.get(key);
-		if (solutions == null) {
-			solutions = includeAllSolutions ? new TreeSet<DiffSegment>()
-					: new HashSet<DiffSegment>();
-			calculateSolutions(solutions, null, key, 0, 0, new Complexity());
-			cachedResults.put(key, solutions);
-		}
+		Collection<DiffSegment> solutions = getSolutions(key);
 
 		DiffSegment[] returnValue = new DiffSegment[solutions.size()];
 		if (reverse) {
@@ -762,13 +938,12 @@ public class TextDiff {
 			tA = strA;
 			tB = strB;
 		}
-		Key key = new Key(tA, tB, false);
-		Collection<DiffSegment> solutions = cachedResults.get(key);
-		if (solutions == null) {
-			solutions = new HashSet<>();
-			calculateSolutions(solutions, null, key, 0, 0, new Complexity());
-			cachedResults.put(key, solutions);
+		Collection<DiffSegment> solutions;
+		synchronized (cachedResults) {
+			solutions = cachedResults.get(new Key(tA, tB, false));
 		}
+		if (solutions == null || solutions.isEmpty())
+			solutions = getSolutions(new Key(tA, tB, false, true));
 
 		DiffSegment returnValue = solutions.iterator().next();
 		if (reverse) {
@@ -877,6 +1052,268 @@ public class TextDiff {
 		}
 	}
 
+	/** The state of a path in the edit graph that ends with a shared char. */
+	private static final int STATE_SHARED = 0;
+	/** The state of a path that ends with a char that is only in branch A. */
+	private static final int STATE_A = 1;
+	/** The state of a path that ends with a char that is only in branch B. */
+	private static final int STATE_B = 2;
+
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+	/**
+	 * Return the edit distance between two Strings (the number of characters
+	 * that must be inserted or deleted) using Myers' greedy O(ND) algorithm.
+	 */
+	static int getEditDistance(String strA, String strB) {
+		int n = strA.length();
+		int m = strB.length();
+		int max = n + m;
+		// v[offset + k] is the furthest x reached on diagonal k = x - y
+		int offset = max + 1;
+		int[] v = new int[2 * max + 3];
+		for (int d = 0; d <= max; d++) {
+			for (int k = -d; k <= d; k += 2) {
+				int x;
+				if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+					x = v[offset + k + 1];
+				} else {
+					x = v[offset + k - 1] + 1;
+				}
+				int y = x - k;
+				while (x < n && y < m && strA.charAt(x) == strB.charAt(y)) {
+					x++;
+					y++;
+				}
+				v[offset + k] = x;
+				if (x >= n && y >= m)
+					return d;
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * Identify all the simplest solutions for two Strings.
+	 * <p>
+	 * The complexity of a graph is the number of shared characters, plus the
+	 * number of split characters, plus the number of split segments. Each path
+	 * through the edit graph is a series of steps that are in one of three
+	 * states: shared, A-only or B-only. Within a split segment all the A-only
+	 * steps come before the B-only steps, so each graph corresponds to exactly
+	 * one path. This uses dynamic programming to find the cost of every path,
+	 * and then enumerates the paths with the lowest cost.
+	 * <p>
+	 * Note the number of simplest paths can grow exponentially with the
+	 * length of the Strings, so if <code>singleSolution</code> is true this
+	 * stops after the first path.
+	 * <p>
+	 * If a path shares L characters then its x - y diagonal always stays
+	 * between -(m - L) and (n - L). A path that shares Lmax characters (the
+	 * length of the longest common subsequence) and has at most D split
+	 * segments always exists, so the simplest path shares at least Lmax - D
+	 * characters. So we only need to consider a band of the edit graph whose
+	 * width is about 3D.
+	 */
+	private void calculateSimplestSolutions(Collection<DiffSegment> results,
+			String strA, String strB, boolean singleSolution) {
+		int n = strA.length();
+		int m = strB.length();
+		int d = getEditDistance(strA, strB);
+		if (d == 0) {
+			if (n > 0)
+				results.add(new SharedSegment(strA));
+			return;
+		}
+		int lcsLength = (n + m - d) / 2;
+		int minShared = Math.max(0, lcsLength - d);
+		// the range of diagonals (k = i - j) we consider:
+		int minK = -(m - minShared);
+		int maxK = n - minShared;
+		int width = maxK - minK + 1;
+
+		/*
+		 * For every cell in the band this stores which predecessors lead to
+		 * the lowest cost for each state. Bits 0-2 are the predecessor states
+		 * for STATE_SHARED, bits 3-4 are for STATE_A, and bits 5-7 are for
+		 * STATE_B.
+		 */
+		byte[] predecessors = new byte[(n + 1) * width];
+
+		// the costs of the previous row (i - 1) and the current row (i),
+		// indexed by j - i - minK
+		int[][] prevCosts = new int[3][width + 2];
+		int[][] costs = new int[3][width + 2];
+		for (int[] array : costs) {
+			Arrays.fill(array, INFINITY);
+		}
+
+		for (int i = 0; i <= n; i++) {
+			int[][] t = prevCosts;
+			prevCosts = costs;
+			costs = t;
+			for (int[] array : costs) {
+				Arrays.fill(array, INFINITY);
+			}
+
+			int minJ = Math.max(0, i - maxK);
+			int maxJ = Math.min(m, i - minK);
+			for (int j = minJ; j <= maxJ; j++) {
+				// the index of (i, j) in this row
+				int c = i - j - minK;
+				// the index of (i - 1, j) in the previous row is c - 1, and
+				// the index of (i - 1, j - 1) in the previous row is c.
+				// The index of (i, j - 1) in this row is c + 1.
+				int mask = 0;
+				if (i == 0 && j == 0) {
+					costs[STATE_SHARED][c] = 0;
+				} else {
+					if (i > 0 && j > 0 && strA.charAt(i - 1) == strB.charAt(j - 1)) {
+						int best = INFINITY;
+						for (int state = 0; state < 3; state++) {
+							best = Math.min(best, prevCosts[state][c]);
+						}
+						if (best < INFINITY) {
+							costs[STATE_SHARED][c] = best + 1;
+							for (int state = 0; state < 3; state++) {
+								if (prevCosts[state][c] == best)
+									mask |= 1 << state;
+							}
+						}
+					}
+					if (i > 0 && c > 0) {
+						int fromShared = prevCosts[STATE_SHARED][c - 1] + 2;
+						int fromA = prevCosts[STATE_A][c - 1] + 1;
+						int best = Math.min(fromShared, fromA);
+						if (best < INFINITY) {
+							costs[STATE_A][c] = best;
+							if (fromShared == best)
+								mask |= 1 << 3;
+							if (fromA == best)
+								mask |= 1 << 4;
+						}
+					}
+					if (j > 0 && c + 1 < width) {
+						int fromShared = costs[STATE_SHARED][c + 1] + 2;
+						int fromA = costs[STATE_A][c + 1] + 1;
+						int fromB = costs[STATE_B][c + 1] + 1;
+						int best = Math.min(fromShared, Math.min(fromA, fromB));
+						if (best < INFINITY) {
+							costs[STATE_B][c] = best;
+							if (fromShared == best)
+								mask |= 1 << 5;
+							if (fromA == best)
+								mask |= 1 << 6;
+							if (fromB == best)
+								mask |= 1 << 7;
+						}
+					}
+				}
+				predecessors[i * width + c] = (byte) mask;
+			}
+		}
+
+		int c = n - m - minK;
+		int best = Math.min(costs[STATE_SHARED][c],
+				Math.min(costs[STATE_A][c], costs[STATE_B][c]));
+
+		// enumerate every path with the lowest cost, starting at the end.
+		// Each stack element is {i, j, state, depth}.
+		char[] steps = new char[n + m];
+		Deque<int[]> stack = new ArrayDeque<>();
+		for (int state = 2; state >= 0; state--) {
+			if (costs[state][c] == best)
+				stack.push(new int[] { n, m, state, 0 });
+		}
+		while (!stack.isEmpty()) {
+			int[] node = stack.pop();
+			int i = node[0];
+			int j = node[1];
+			int state = node[2];
+			int depth = node[3];
+			if (i == 0 && j == 0) {
+				results.add(createSolution(strA, strB, steps, depth));
+				if (singleSolution)
+					return;
+				continue;
+			}
+			int mask = predecessors[i * width + (i - j - minK)] & 0xff;
+			int predI = i, predJ = j, predStates;
+			if (state == STATE_SHARED) {
+				steps[depth] = 'S';
+				predI--;
+				predJ--;
+				predStates = mask & 7;
+			} else if (state == STATE_A) {
+				steps[depth] = 'A';
+				predI--;
+				predStates = (mask >> 3) & 3;
+			} else {
+				steps[depth] = 'B';
+				predJ--;
+				predStates = (mask >> 5) & 7;
+			}
+			for (int predState = 2; predState >= 0; predState--) {
+				if ((predStates & (1 << predState)) != 0) {
+					if (predI == 0 && predJ == 0 && predState != STATE_SHARED)
+						continue;
+					stack.push(new int[] { predI, predJ, predState, depth + 1 });
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a graph from a path through the edit graph.
+	 * 
+	 * @param steps
+	 *            the steps of the path in reverse order. Each step is 'S'
+	 *            (shared), 'A' (A-only) or 'B' (B-only).
+	 * @param stepCount
+	 *            the number of steps.
+	 */
+	private static DiffSegment createSolution(String strA, String strB,
+			char[] steps, int stepCount) {
+		DiffSegment head = null;
+		DiffSegment tail = null;
+		int i = 0;
+		int j = 0;
+		int k = stepCount - 1;
+		while (k >= 0) {
+			DiffSegment segment;
+			if (steps[k] == 'S') {
+				int start = i;
+				while (k >= 0 && steps[k] == 'S') {
+					i++;
+					j++;
+					k--;
+				}
+				segment = new SharedSegment(strA.substring(start, i));
+			} else {
+				int startA = i;
+				int startB = j;
+				while (k >= 0 && steps[k] != 'S') {
+					if (steps[k] == 'A') {
+						i++;
+					} else {
+						j++;
+					}
+					k--;
+				}
+				segment = new SplitSegment(strA.substring(startA, i),
+						strB.substring(startB, j));
+			}
+			if (head == null) {
+				head = segment;
+			} else {
+				tail.next = segment;
+				segment.prev = tail;
+			}
+			tail = segment;
+		}
+		return head;
+	}
+
 	/**
 	 * This chooses to record the results in the collection provided or discard
 	 * it.
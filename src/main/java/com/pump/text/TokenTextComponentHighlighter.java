@@ -11,46 +11,163 @@
 package com.pump.text;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import javax.swing.text.Highlighter.HighlightPainter;
 import javax.swing.text.JTextComponent;
 import javax.swing.text.StyledDocument;
 
+import com.pump.io.parser.MatchingToken;
 import com.pump.io.parser.Parser.UnparsedToken;
 import com.pump.io.parser.Parser.WhitespaceToken;
 import com.pump.io.parser.ParserException;
 import com.pump.io.parser.Token;
+import com.pump.thread.DaemonThreadFactory;
 import com.pump.util.BasicReceiver;
 import com.pump.util.FixedCapacityMap;
 import com.pump.util.Receiver;
 
 /**
  * This TextComponentHighlighter relies on {@link Token Tokens}.
- *
+ * <p>
+ * When the user edits the document only the edited part of the text is parsed
+ * again: lexing restarts from a token before the edited line (see
+ * {@link #isRestartPoint(List, int)}) and stops as soon as it produces a token
+ * that lines up with a token from the previous text. The remaining tokens are
+ * copied from the previous text, and only the tokens that changed are
+ * formatted again. This lexing happens on a background thread, and it is
+ * abandoned if the user edits the document again before it finishes.
  */
 public abstract class TokenTextComponentHighlighter extends
 		TextComponentHighlighter {
 
+	private static final ExecutorService LEXER_EXECUTOR = Executors
+			.newSingleThreadExecutor(new DaemonThreadFactory(
+					"TokenTextComponentHighlighter"));
+
+	/**
+	 * This is thrown to stop parsing once the new tokens line up with the old
+	 * tokens.
+	 */
+	private static class ResyncException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		ResyncException() {
+			super(null, null, false, false);
+		}
+	}
+
+	/** This describes how a new series of tokens relates to an old series. */
+	private static class Update {
+		/** The new tokens. */
+		final Token[] tokens;
+
+		/**
+		 * The tokens before this index are copies of the old tokens.
+		 */
+		final int first;
+
+		/**
+		 * The old tokens at or after this index are equivalent to the new
+		 * tokens at or after {@link #newEnd}, except for their position.
+		 */
+		final int oldEnd;
+
+		/**
+		 * The new tokens at or after this index are copies of the old tokens
+		 * at or after {@link #oldEnd}.
+		 */
+		final int newEnd;
+
+		Update(Token[] tokens, int first, int oldEnd, int newEnd) {
+			this.tokens = tokens;
+			this.first = first;
+			this.oldEnd = oldEnd;
+			this.newEnd = newEnd;
+		}
+	}
+
 	/** This manages cached results. */
 	private Map<String, ParseResults> cachedValues = new FixedCapacityMap<>(5);
 
+	/** The most recent results, which the next text is compared against. */
+	private ParseResults lastResults;
+
+	/**
+	 * This is incremented every time formatting is requested, so background
+	 * lexing can tell when its results are no longer needed.
+	 */
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/** The number of insertions and removals in the document. */
+	private int editCount = 0;
+
+	/** The value of {@link #editCount} when all the text was formatted. */
+	private int formattedEditCount = 0;
+
+	/** The text the document was last formatted for. */
+	private String formattedText;
+
+	/**
+	 * The tokens the document was last formatted with, or null if the next
+	 * update has to format all the text.
+	 */
+	private Token[] formattedTokens;
+
+	/** The highlight tags for each element in {@link #formattedTokens}. */
+	private Object[] formattedHighlights;
+
+	private DocumentListener editListener = new DocumentListener() {
+
+		@Override
+		public void insertUpdate(DocumentEvent e) {
+			editCount++;
+		}
+
+		@Override
+		public void removeUpdate(DocumentEvent e) {
+			editCount++;
+		}
+
+		@Override
+		public void changedUpdate(DocumentEvent e) {
+		}
+	};
+
 	public TokenTextComponentHighlighter(JTextComponent jtc) {
 		super(jtc);
+		jtc.getDocument().addDocumentListener(editListener);
 	}
 
 	/** This helps cache parsed data to avoid lots of redundant overhead. */
 	private class ParseResults {
+		String text;
 		Token[] tokens;
 		RuntimeException rEx;
 		Error error;
 		Token[] strippedTokens;
 
+		ParseResults(String inputText, Token[] tokens) {
+			this.text = inputText;
+			this.tokens = tokens;
+		}
+
 		ParseResults(String inputText) {
+			text = inputText;
 			try {
 				BasicReceiver<Token> receiver = new BasicReceiver<>();
 				try {
@@ -108,6 +225,9 @@ public abstract class TokenTextComponentHighlighter extends
 	 * JavaParser.parse(..) can be expensive for complex code, this method
 	 * caches some values. When possible you should avoid calling
 	 * JavaParser.parse(..) and use this method instead.
+	 * <p>
+	 * If this text is similar to the text this method was last called with,
+	 * then only the part of the text that changed is parsed again.
 	 * 
 	 * @param text
 	 *            the java source code to parse.
@@ -123,9 +243,21 @@ public abstract class TokenTextComponentHighlighter extends
 		text = text.replace("\r\n", "\n");
 		ParseResults results = cachedValues.get(text);
 		if (results == null) {
-			results = new ParseResults(text);
+			if (lastResults != null && lastResults.tokens != null) {
+				try {
+					Update update = createUpdate(lastResults.text,
+							lastResults.tokens, text, null);
+					results = new ParseResults(text, update.tokens);
+				} catch (Exception e) {
+					// ParseResults will handle this exception the same way
+					// it always has
+				}
+			}
+			if (results == null)
+				results = new ParseResults(text);
 			cachedValues.put(text, results);
 		}
+		lastResults = results;
 		if (includeWhitespace)
 			return results.getTokens();
 		return results.getStrippedTokens();
@@ -134,32 +266,435 @@ public abstract class TokenTextComponentHighlighter extends
 	protected abstract void createTokens(String inputText,
 			Receiver<Token> receiver) throws Exception;
 
+	/**
+	 * Return true if lexing can restart at a token.
+	 * <p>
+	 * This should only return true if calling
+	 * {@link #createTokens(String, Receiver)} for the text that starts at this
+	 * token produces the same tokens (apart from their positions) as the rest
+	 * of the list, and if this token's line number and start index describe
+	 * where it begins. When the user edits the text, lexing restarts from the last
+	 * restart point before the edited line, and it stops at the first restart
+	 * point after the edit where the new tokens line up with the old tokens.
+	 * <p>
+	 * This may be called from any thread. The default implementation only
+	 * returns true for the first token, so the whole document is always
+	 * parsed again.
+	 * 
+	 * @param tokens
+	 *            a series of tokens parsed from the start of a document. This
+	 *            list may not be complete.
+	 * @param tokenIndex
+	 *            the index of the token to check.
+	 */
+	protected boolean isRestartPoint(List<Token> tokens, int tokenIndex) {
+		return tokenIndex == 0;
+	}
+
+	/**
+	 * Restore the links between {@link MatchingToken MatchingTokens} after
+	 * part of the text was parsed again.
+	 * <p>
+	 * Every token in the new series is a copy of either an old token or a
+	 * token from the new partial parse, and copies of MatchingTokens have no
+	 * match. The default implementation links two copies if their originals
+	 * were linked, which is correct for parsers whose matches never span a
+	 * restart point. This may be called from any thread.
+	 * 
+	 * @param tokens
+	 *            the new series of tokens.
+	 * @param copies
+	 *            a map of the original MatchingTokens to their copies in
+	 *            <code>tokens</code>. This uses identity comparisons.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected void linkTokens(Token[] tokens, Map<Token, Token> copies) {
+		for (Map.Entry<Token, Token> entry : copies.entrySet()) {
+			if (entry.getKey() instanceof MatchingToken) {
+				Token match = ((MatchingToken<?>) entry.getKey()).getMatch();
+				Token matchCopy = match == null ? null : copies.get(match);
+				if (matchCopy != null) {
+					((MatchingToken) entry.getValue()).setMatch(matchCopy);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parse a new version of a document again, reusing as many tokens from
+	 * the old version as possible.
+	 * 
+	 * @param cancelled
+	 *            an optional supplier that returns true if this work should
+	 *            be abandoned, in which case a CancellationException is
+	 *            thrown.
+	 */
+	private Update createUpdate(String oldText, final Token[] oldTokens,
+			final String newText, final BooleanSupplier cancelled)
+			throws Exception {
+		int minLength = Math.min(oldText.length(), newText.length());
+		int prefix = 0;
+		while (prefix < minLength
+				&& oldText.charAt(prefix) == newText.charAt(prefix)) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < minLength - prefix
+				&& oldText.charAt(oldText.length() - 1 - suffix) == newText
+						.charAt(newText.length() - 1 - suffix)) {
+			suffix++;
+		}
+		final int delta = newText.length() - oldText.length();
+		final int suffixStart = newText.length() - suffix;
+		final List<Token> oldList = Arrays.asList(oldTokens);
+
+		// restart at a token that starts before both the edit and its line:
+		int lineStart = newText.lastIndexOf('\n', prefix - 1) + 1;
+		int restartLimit = Math.min(lineStart, prefix - 1);
+		if (suffix == 0) {
+			// a lexer may peek one char ahead to see if the text ends
+			restartLimit = Math.min(restartLimit, minLength - 2);
+		}
+		int restartIndex = getTokenIndex(oldTokens, restartLimit);
+		while (restartIndex > 0 && !isRestartPoint(oldList, restartIndex)) {
+			restartIndex--;
+		}
+		restartIndex = Math.max(0, restartIndex);
+		final int restartPos = restartIndex == 0 ? 0
+				: oldTokens[restartIndex].getDocumentStartIndex();
+		final int lineDelta = restartIndex == 0 ? 0
+				: oldTokens[restartIndex].getLineNumber();
+		final int startDelta = restartIndex == 0 ? 0
+				: oldTokens[restartIndex].getStartIndex();
+
+		final Map<Token, Token> copies = new IdentityHashMap<>();
+		final List<Token> newTokens = new ArrayList<>(oldTokens.length
+				+ Math.max(0, delta / 4));
+		for (int a = 0; a < restartIndex; a++) {
+			// only MatchingTokens are modified after they are parsed
+			if (oldTokens[a] instanceof MatchingToken) {
+				Token copy = oldTokens[a].translate(0, 0, 0);
+				copies.put(oldTokens[a], copy);
+				newTokens.add(copy);
+			} else {
+				newTokens.add(oldTokens[a]);
+			}
+		}
+
+		final int[] resync = new int[] { -1 };
+		final Token[] lastToken = new Token[1];
+		Receiver<Token> receiver = new Receiver<Token>() {
+			int oldIndex = 0;
+
+			@Override
+			public void add(Token... elements) {
+				for (Token token : elements) {
+					if (cancelled != null && cancelled.getAsBoolean())
+						throw new CancellationException();
+
+					Token copy = token.translate(lineDelta,
+							token.getLineNumber() == 0 ? startDelta : 0,
+							restartPos);
+					if (copy instanceof MatchingToken)
+						copies.put(token, copy);
+					newTokens.add(copy);
+					lastToken[0] = copy;
+
+					int pos = copy.getDocumentStartIndex();
+					if (pos >= suffixStart) {
+						int oldPos = pos - delta;
+						while (oldIndex < oldTokens.length
+								&& oldTokens[oldIndex].getDocumentStartIndex() < oldPos) {
+							oldIndex++;
+						}
+						if (oldIndex < oldTokens.length
+								&& oldTokens[oldIndex].getDocumentStartIndex() == oldPos
+								&& oldTokens[oldIndex].getClass() == copy
+										.getClass()
+								&& oldTokens[oldIndex].getText().equals(
+										copy.getText())
+								&& isRestartPoint(oldList, oldIndex)
+								&& isRestartPoint(newTokens,
+										newTokens.size() - 1)) {
+							resync[0] = oldIndex;
+							throw new ResyncException();
+						}
+					}
+				}
+			}
+		};
+
+		try {
+			createTokens(newText.substring(restartPos), receiver);
+		} catch (ResyncException e) {
+			// the rest of the old tokens can be reused
+		} catch (ParserException e) {
+			int pos = lastToken[0] == null ? restartPos : lastToken[0]
+					.getDocumentEndIndex();
+			newTokens.add(new UnparsedToken(pos, newText, e));
+		}
+
+		int newEnd = newTokens.size();
+		int oldEnd = oldTokens.length;
+		if (resync[0] != -1) {
+			Token syncToken = newTokens.remove(newTokens.size() - 1);
+			newEnd = newTokens.size();
+			oldEnd = resync[0];
+			Token oldSyncToken = oldTokens[oldEnd];
+			int tailLineDelta = syncToken.getLineNumber()
+					- oldSyncToken.getLineNumber();
+			int tailStartDelta = syncToken.getStartIndex()
+					- oldSyncToken.getStartIndex();
+			for (int a = oldEnd; a < oldTokens.length; a++) {
+				Token oldToken = oldTokens[a];
+				Token copy;
+				if (oldToken instanceof UnparsedToken) {
+					copy = new UnparsedToken(oldToken.getDocumentStartIndex()
+							+ delta, newText, oldToken.getException());
+				} else {
+					copy = oldToken.translate(tailLineDelta,
+							oldToken.getLineNumber() == oldSyncToken
+									.getLineNumber() ? tailStartDelta : 0,
+							delta);
+				}
+				if (copy instanceof MatchingToken)
+					copies.put(oldToken, copy);
+				newTokens.add(copy);
+			}
+		}
+
+		Token[] tokens = newTokens.toArray(new Token[newTokens.size()]);
+		linkTokens(tokens, copies);
+		return new Update(tokens, restartIndex, oldEnd, newEnd);
+	}
+
+	/**
+	 * Return the index of the last token that starts at or before a position,
+	 * or -1 if there is no such token.
+	 */
+	private static int getTokenIndex(Token[] tokens, int pos) {
+		int low = 0;
+		int high = tokens.length - 1;
+		int returnValue = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (tokens[mid].getDocumentStartIndex() <= pos) {
+				returnValue = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return returnValue;
+	}
+
+	@Override
+	protected void documentTextChanged(boolean onlyCaretChanged,
+			boolean invokeLater) {
+		if (onlyCaretChanged) {
+			super.documentTextChanged(onlyCaretChanged, invokeLater);
+			return;
+		}
+
+		String text = jtc.getText();
+		if (!active || formattedTokens == null || text.equals(formattedText)
+				|| text.indexOf('\r') != -1) {
+			// the formatting rules may have changed, so start over:
+			rehighlightAll(invokeLater);
+			return;
+		}
+
+		final int gen = generation.incrementAndGet();
+		BooleanSupplier cancelled = new BooleanSupplier() {
+			@Override
+			public boolean getAsBoolean() {
+				return generation.get() != gen;
+			}
+		};
+		UpdateRunnable runnable = new UpdateRunnable(formattedText,
+				formattedTokens, text, gen, editCount, cancelled,
+				jtc.getSelectionStart(), jtc.getSelectionEnd(), invokeLater);
+		if (invokeLater) {
+			LEXER_EXECUTOR.execute(runnable);
+		} else {
+			runnable.run();
+		}
+	}
+
+	/**
+	 * Reset all the formatting in the document.
+	 */
+	private void rehighlightAll(boolean invokeLater) {
+		generation.incrementAndGet();
+		formattedTokens = null;
+		formattedEditCount = editCount;
+		super.documentTextChanged(false, invokeLater);
+	}
+
+	/**
+	 * This parses a new version of the text and then formats the tokens that
+	 * changed on the event dispatch thread.
+	 */
+	private class UpdateRunnable implements Runnable {
+		final String oldText, newText;
+		final Token[] oldTokens;
+		final int gen, edits, selectionStart, selectionEnd;
+		final BooleanSupplier cancelled;
+		final boolean invokeLater;
+
+		UpdateRunnable(String oldText, Token[] oldTokens, String newText,
+				int gen, int edits, BooleanSupplier cancelled,
+				int selectionStart, int selectionEnd, boolean invokeLater) {
+			this.oldText = oldText;
+			this.oldTokens = oldTokens;
+			this.newText = newText;
+			this.gen = gen;
+			this.edits = edits;
+			this.cancelled = cancelled;
+			this.selectionStart = selectionStart;
+			this.selectionEnd = selectionEnd;
+			this.invokeLater = invokeLater;
+		}
+
+		@Override
+		public void run() {
+			if (cancelled.getAsBoolean())
+				return;
+			Update update;
+			try {
+				update = createUpdate(oldText, oldTokens, newText, cancelled);
+			} catch (CancellationException e) {
+				return;
+			} catch (Exception e) {
+				update = null;
+			}
+			final Update finalUpdate = update;
+			if (update != null) {
+				synchronized (TokenTextComponentHighlighter.this) {
+					ParseResults results = new ParseResults(newText,
+							update.tokens);
+					cachedValues.put(newText, results);
+					lastResults = results;
+				}
+			}
+
+			Runnable applyRunnable = new Runnable() {
+				@Override
+				public void run() {
+					if (generation.get() != gen || editCount != edits)
+						return;
+					if (finalUpdate == null || formattedTokens != oldTokens) {
+						rehighlightAll(false);
+					} else {
+						applyUpdate(newText, finalUpdate, selectionStart,
+								selectionEnd);
+					}
+				}
+			};
+			if (invokeLater) {
+				SwingUtilities.invokeLater(applyRunnable);
+			} else {
+				applyRunnable.run();
+			}
+		}
+	}
+
+	/**
+	 * Reformat the tokens that changed. This must be called on the event
+	 * dispatch thread.
+	 */
+	private void applyUpdate(String text, Update update, int selectionStart,
+			int selectionEnd) {
+		Token[] tokens = update.tokens;
+
+		// the attributes of a token may depend on its neighbors:
+		int first = Math.max(0, update.first - 1);
+		int newEnd = Math.min(tokens.length, update.newEnd + 1);
+		int oldEnd = update.oldEnd + (newEnd - update.newEnd);
+
+		Object[] highlights = new Object[tokens.length];
+		System.arraycopy(formattedHighlights, 0, highlights, 0, first);
+		System.arraycopy(formattedHighlights, oldEnd, highlights, newEnd,
+				tokens.length - newEnd);
+		for (int a = first; a < oldEnd; a++) {
+			if (formattedHighlights[a] != null) {
+				jtc.getHighlighter().removeHighlight(formattedHighlights[a]);
+				allHighlights.remove(formattedHighlights[a]);
+			}
+		}
+
+		Document doc = jtc.getDocument();
+		removeDocumentListeners();
+		try {
+			for (int index = first; index < newEnd; index++) {
+				HighlightPainter painter = getHighlightPainter(tokens, index,
+						selectionStart, selectionEnd);
+				if (painter != null) {
+					highlights[index] = jtc.getHighlighter().addHighlight(
+							tokens[index].getDocumentStartIndex(),
+							tokens[index].getDocumentEndIndex(), painter);
+					allHighlights.add(highlights[index]);
+				}
+			}
+
+			if (first < newEnd && doc instanceof StyledDocument) {
+				StyledDocument d = (StyledDocument) doc;
+				int start = tokens[first].getDocumentStartIndex();
+				int end = tokens[newEnd - 1].getDocumentEndIndex();
+				d.setCharacterAttributes(start, end - start,
+						getDefaultAttributes(), true);
+				for (int index = first; index < newEnd; index++) {
+					AttributeSet attributes = getAttributes(tokens, index,
+							selectionStart, selectionEnd);
+					if (attributes != null) {
+						d.setCharacterAttributes(
+								tokens[index].getDocumentStartIndex(),
+								tokens[index].getLength(), attributes, true);
+					}
+				}
+			}
+		} catch (BadLocationException e) {
+			throw new RuntimeException(e);
+		} finally {
+			addDocumentListeners();
+		}
+
+		formattedText = text;
+		formattedTokens = tokens;
+		formattedHighlights = highlights;
+	}
+
 	@Override
 	protected void formatTextComponent(String text, StyledDocument doc,
 			int selectionStart, int selectionEnd) throws BadLocationException {
 
 		Token[] tokens = getTokens(text, true);
-		final Map<Token, AttributeSet> tokenAttributes = new TreeMap<Token, AttributeSet>();
+		Object[] highlights = new Object[tokens.length];
 
 		for (int index = 0; index < tokens.length; index++) {
 			HighlightPainter painter = getHighlightPainter(tokens, index,
 					selectionStart, selectionEnd);
 			if (painter != null) {
-				allHighlights.add(jtc.getHighlighter().addHighlight(
+				highlights[index] = jtc.getHighlighter().addHighlight(
 						tokens[index].getDocumentStartIndex(),
-						tokens[index].getDocumentEndIndex(), painter));
+						tokens[index].getDocumentEndIndex(), painter);
+				allHighlights.add(highlights[index]);
 			}
 			AttributeSet attributes = getAttributes(tokens, index,
 					selectionStart, selectionEnd);
 			if (attributes != null) {
-				tokenAttributes.put(tokens[index], attributes);
+				doc.setCharacterAttributes(
+						tokens[index].getDocumentStartIndex(),
+						tokens[index].getLength(), attributes, true);
 			}
 		}
 
-		for (Token token : tokenAttributes.keySet()) {
-			AttributeSet attr = tokenAttributes.get(token);
-			doc.setCharacterAttributes(token.getDocumentStartIndex(),
-					token.getLength(), attr, true);
+		if (editCount == formattedEditCount && text.indexOf('\r') == -1) {
+			formattedText = text;
+			formattedTokens = tokens;
+			formattedHighlights = highlights;
+		} else {
+			formattedTokens = null;
 		}
 	}
 
@@ -174,4 +709,4 @@ public abstract class TokenTextComponentHighlighter extends
 			int selectionStart, int selectionEnd) {
 		return null;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,591 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.text;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.pump.text.WildcardPattern.FixedCharacter;
+import com.pump.text.WildcardPattern.Placeholder;
+import com.pump.text.WildcardPattern.QuestionMarkWildcard;
+import com.pump.text.WildcardPattern.SquareBracketsWildcard;
+import com.pump.text.WildcardPattern.StarWildcard;
+
+/**
+ * A bit-parallel NFA compiled from one or more WildcardPatterns.
+ * <p>
+ * Each pattern with <code>n</code> placeholders is assigned
+ * <code>n + 1</code> consecutive bits: bit <code>i</code> means "the next
+ * character should be compared against placeholder <code>i</code>", and the
+ * last bit is the accepting state. Consuming a character shifts every state
+ * whose placeholder accepts that character up by one bit, and star states
+ * also keep their own bit. So the cost of matching a String is always
+ * proportional to its length (times the number of 64-bit words the states
+ * need), no matter how many star wildcards are involved.
+ * <p>
+ * The states of several patterns are packed next to each other, so one pass
+ * over a String evaluates every pattern at once. A state never shifts into
+ * the next pattern's bits because the accepting state of a pattern never
+ * consumes characters.
+ * <p>
+ * When many Strings are evaluated the state sets are also turned into a DFA
+ * on demand: each distinct state set becomes a {@link State} that caches its
+ * transitions, so most characters cost one array lookup no matter how many
+ * words the state sets need. The number of cached States is limited to
+ * {@link #MAX_CACHED_STATES}; after that new state sets are computed without
+ * being cached.
+ */
+class WildcardAutomaton {
+
+	/**
+	 * The maximum number of DFA States each automaton caches.
+	 */
+	static int MAX_CACHED_STATES = 4096;
+
+	/**
+	 * A set of NFA states. Once created a State is immutable (except for its
+	 * cache of transitions), so it can be shared across threads.
+	 */
+	class State {
+		final long[] bits;
+		final boolean live, accepting, universal;
+
+		/**
+		 * The States reached by consuming characters less than TABLE_SIZE, or
+		 * null if this State is not cached.
+		 */
+		private final State[] transitions;
+
+		private State(long[] bits, boolean cached) {
+			this.bits = bits;
+			boolean z = false;
+			for (long word : bits) {
+				z = z || word != 0;
+			}
+			live = z;
+			accepting = isFinal(bits, 0);
+			universal = isUniversal(bits, 0);
+			transitions = cached ? new State[TABLE_SIZE] : null;
+		}
+
+		/**
+		 * Return true if this State caches its transitions. If this returns
+		 * false then the DFA is full, and it is cheaper to continue with
+		 * {@link WildcardAutomaton#step(long[], int, long[], int, char, long[])}
+		 * than to keep creating States.
+		 */
+		boolean isCached() {
+			return transitions != null;
+		}
+
+		/**
+		 * Return the State reached by consuming a character.
+		 */
+		State next(char c) {
+			if (transitions != null && c < TABLE_SIZE) {
+				State returnValue = transitions[c];
+				if (returnValue == null) {
+					returnValue = createNext(c);
+					transitions[c] = returnValue;
+				}
+				return returnValue;
+			}
+			return createNext(c);
+		}
+
+		private State createNext(char c) {
+			long[] nextBits = new long[wordCount];
+			step(bits, 0, nextBits, 0, c, new long[wordCount]);
+			return getState(nextBits);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(bits);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof State
+					&& Arrays.equals(bits, ((State) obj).bits);
+		}
+	}
+
+	/**
+	 * Characters below this value use a lookup table; all others use a binary
+	 * search.
+	 */
+	private static final int TABLE_SIZE = 128;
+
+	/**
+	 * When getMatches(..) skips a prefix it iterates over this many elements
+	 * before it looks up the end of that prefix's range in the set.
+	 */
+	private static final int SKIP_SCAN_LIMIT = 8;
+
+	final WildcardPattern[] patterns;
+
+	/**
+	 * The bit of the first state of each pattern. The last element is the
+	 * total number of states.
+	 */
+	final int[] offsets;
+
+	final int wordCount;
+
+	/** States that are followed by a StarWildcard. */
+	private final long[] starMask;
+
+	/** The accepting state of every pattern. */
+	private final long[] finalMask;
+
+	/**
+	 * Star states that are the last placeholder of their pattern: once one of
+	 * these is reached that pattern matches any continuation of the String.
+	 */
+	private final long[] universalMask;
+
+	/** The initial state set (including star closures). */
+	private final long[] startState;
+
+	/** States that accept any character (QuestionMarkWildcards). */
+	private final long[] anyMask;
+
+	/**
+	 * For every character less than TABLE_SIZE: the states that accept it.
+	 * This is <code>TABLE_SIZE * wordCount</code> elements long.
+	 */
+	private final long[] tableMasks;
+
+	private final ConcurrentMap<State, State> cachedStates = new ConcurrentHashMap<>();
+	private final State startDfaState;
+
+	private final char[] caseSensitiveKeys;
+	private final long[] caseSensitiveMasks;
+	private final char[] caseInsensitiveKeys;
+	private final long[] caseInsensitiveMasks;
+
+	WildcardAutomaton(WildcardPattern... patterns) {
+		this.patterns = patterns.clone();
+		offsets = new int[patterns.length + 1];
+		for (int a = 0; a < patterns.length; a++) {
+			offsets[a + 1] = offsets[a] + patterns[a].placeholders.length + 1;
+		}
+		wordCount = Math.max(1, (offsets[patterns.length] + 63) / 64);
+
+		starMask = new long[wordCount];
+		finalMask = new long[wordCount];
+		universalMask = new long[wordCount];
+		anyMask = new long[wordCount];
+		Map<Character, long[]> caseSensitive = new TreeMap<>();
+		Map<Character, long[]> caseInsensitive = new TreeMap<>();
+
+		for (int a = 0; a < patterns.length; a++) {
+			Placeholder[] p = patterns[a].placeholders;
+			Map<Character, long[]> map = patterns[a].getFormat().caseSensitive
+					? caseSensitive : caseInsensitive;
+			for (int i = 0; i < p.length; i++) {
+				int bit = offsets[a] + i;
+				if (p[i] instanceof StarWildcard) {
+					setBit(starMask, bit);
+					if (i == p.length - 1)
+						setBit(universalMask, bit);
+				} else if (p[i] instanceof QuestionMarkWildcard) {
+					setBit(anyMask, bit);
+				} else if (p[i] instanceof FixedCharacter) {
+					char ch = ((FixedCharacter) p[i]).ch;
+					setBit(map, map == caseSensitive ? ch : Character
+							.toLowerCase(ch), bit);
+				} else if (p[i] instanceof SquareBracketsWildcard) {
+					for (char ch : ((SquareBracketsWildcard) p[i]).getChars()) {
+						setBit(map, map == caseSensitive ? ch : Character
+								.toLowerCase(ch), bit);
+					}
+				} else {
+					throw new IllegalArgumentException(
+							"unsupported placeholder: " + p[i]);
+				}
+			}
+			setBit(finalMask, offsets[a + 1] - 1);
+		}
+
+		caseSensitiveKeys = getKeys(caseSensitive);
+		caseSensitiveMasks = getMasks(caseSensitive);
+		caseInsensitiveKeys = getKeys(caseInsensitive);
+		caseInsensitiveMasks = getMasks(caseInsensitive);
+
+		tableMasks = new long[TABLE_SIZE * wordCount];
+		for (int c = 0; c < TABLE_SIZE; c++) {
+			getMask((char) c, tableMasks, c * wordCount);
+		}
+
+		long[] start = new long[wordCount];
+		for (int a = 0; a < patterns.length; a++) {
+			setBit(start, offsets[a]);
+		}
+		startState = new long[wordCount];
+		close(start, 0, startState, 0);
+		startDfaState = getState(startState.clone());
+	}
+
+	/**
+	 * Return the State for a set of bits, creating (and possibly caching) it
+	 * if necessary.
+	 */
+	private State getState(long[] bits) {
+		State state = new State(bits, false);
+		State returnValue = cachedStates.get(state);
+		if (returnValue == null) {
+			if (cachedStates.size() >= MAX_CACHED_STATES)
+				return state;
+			returnValue = new State(bits, true);
+			State existing = cachedStates.putIfAbsent(returnValue, returnValue);
+			if (existing != null)
+				returnValue = existing;
+		}
+		return returnValue;
+	}
+
+	/**
+	 * Return the State before any characters are consumed.
+	 */
+	State getStartState() {
+		return startDfaState;
+	}
+
+	private static void setBit(long[] words, int bit) {
+		words[bit >>> 6] |= 1L << bit;
+	}
+
+	private static boolean getBit(long[] words, int offset, int bit) {
+		return (words[offset + (bit >>> 6)] & (1L << bit)) != 0;
+	}
+
+	private void setBit(Map<Character, long[]> map, char key, int bit) {
+		long[] words = map.get(key);
+		if (words == null) {
+			words = new long[wordCount];
+			map.put(key, words);
+		}
+		setBit(words, bit);
+	}
+
+	private static char[] getKeys(Map<Character, long[]> map) {
+		char[] keys = new char[map.size()];
+		int i = 0;
+		for (Character key : map.keySet()) {
+			keys[i++] = key;
+		}
+		return keys;
+	}
+
+	private long[] getMasks(Map<Character, long[]> map) {
+		long[] masks = new long[map.size() * wordCount];
+		int i = 0;
+		for (long[] words : map.values()) {
+			System.arraycopy(words, 0, masks, i, wordCount);
+			i += wordCount;
+		}
+		return masks;
+	}
+
+	/**
+	 * Store the states that accept the given character in <code>dest</code>.
+	 */
+	private void getMask(char c, long[] dest, int destOffset) {
+		System.arraycopy(anyMask, 0, dest, destOffset, wordCount);
+		int i = Arrays.binarySearch(caseSensitiveKeys, c);
+		if (i >= 0) {
+			for (int w = 0; w < wordCount; w++) {
+				dest[destOffset + w] |= caseSensitiveMasks[i * wordCount + w];
+			}
+		}
+		i = Arrays.binarySearch(caseInsensitiveKeys, Character.toLowerCase(c));
+		if (i >= 0) {
+			for (int w = 0; w < wordCount; w++) {
+				dest[destOffset + w] |= caseInsensitiveMasks[i * wordCount + w];
+			}
+		}
+	}
+
+	/**
+	 * Return the states that accept the given character when there is only
+	 * one word of states.
+	 */
+	private long getMask(char c) {
+		if (c < TABLE_SIZE)
+			return tableMasks[c];
+		long mask = anyMask[0];
+		int i = Arrays.binarySearch(caseSensitiveKeys, c);
+		if (i >= 0)
+			mask |= caseSensitiveMasks[i];
+		i = Arrays.binarySearch(caseInsensitiveKeys, Character.toLowerCase(c));
+		if (i >= 0)
+			mask |= caseInsensitiveMasks[i];
+		return mask;
+	}
+
+	/**
+	 * Copy <code>src</code> to <code>dst</code> and add the state after every
+	 * star state, because a star can also match zero characters.
+	 * 
+	 * @return true if any state is set.
+	 */
+	private boolean close(long[] src, int srcOffset, long[] dst, int dstOffset) {
+		long carry = 0;
+		long live = 0;
+		for (int w = 0; w < wordCount; w++) {
+			long state = src[srcOffset + w];
+			long stars = state & starMask[w];
+			state |= (stars << 1) | carry;
+			carry = stars >>> 63;
+			dst[dstOffset + w] = state;
+			live |= state;
+		}
+		return live != 0;
+	}
+
+	/**
+	 * Consume one character.
+	 * 
+	 * @param src
+	 *            the array containing the current state set.
+	 * @param srcOffset
+	 *            the index of the current state set in <code>src</code>.
+	 * @param dst
+	 *            the array to store the new state set in. This may be the
+	 *            same as <code>src</code>.
+	 * @param dstOffset
+	 *            the index of the new state set in <code>dst</code>.
+	 * @param c
+	 *            the character to consume.
+	 * @param scratch
+	 *            an array of at least <code>wordCount</code> elements.
+	 * @return true if any state is still set.
+	 */
+	boolean step(long[] src, int srcOffset, long[] dst, int dstOffset, char c,
+			long[] scratch) {
+		long[] mask;
+		int maskOffset;
+		if (c < TABLE_SIZE) {
+			mask = tableMasks;
+			maskOffset = c * wordCount;
+		} else {
+			getMask(c, scratch, 0);
+			mask = scratch;
+			maskOffset = 0;
+		}
+
+		long carry = 0;
+		long starCarry = 0;
+		long live = 0;
+		for (int w = 0; w < wordCount; w++) {
+			long state = src[srcOffset + w];
+			long stars = starMask[w];
+			long consumed = state & mask[maskOffset + w];
+			long next = (consumed << 1) | carry | (state & stars);
+			carry = consumed >>> 63;
+
+			// the closure (see close(..)) in the same pass:
+			long nextStars = next & stars;
+			next |= (nextStars << 1) | starCarry;
+			starCarry = nextStars >>> 63;
+
+			dst[dstOffset + w] = next;
+			live |= next;
+		}
+		return live != 0;
+	}
+
+	/**
+	 * Return true if the state set contains the accepting state of any
+	 * pattern.
+	 */
+	boolean isFinal(long[] state, int offset) {
+		return intersects(state, offset, finalMask);
+	}
+
+	/**
+	 * Return true if the state set guarantees at least one pattern will match
+	 * every continuation of the String consumed so far.
+	 */
+	boolean isUniversal(long[] state, int offset) {
+		return intersects(state, offset, universalMask);
+	}
+
+	/**
+	 * Return true if the state set contains the accepting state of a specific
+	 * pattern.
+	 */
+	boolean isFinal(long[] state, int offset, int patternIndex) {
+		return getBit(state, offset, offsets[patternIndex + 1] - 1);
+	}
+
+	private boolean intersects(long[] state, int offset, long[] mask) {
+		for (int w = 0; w < wordCount; w++) {
+			if ((state[offset + w] & mask[w]) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return true if the characters in <code>[start, end)</code> lead from
+	 * <code>startBit</code> to <code>acceptBit</code>.
+	 * <p>
+	 * If <code>acceptBit</code> is followed by a StarWildcard then this
+	 * returns true as soon as that state is reached, because the star can
+	 * absorb all the remaining characters.
+	 */
+	boolean matches(CharSequence s, int start, int end, int startBit,
+			int acceptBit) {
+		if (wordCount == 1) {
+			long stars = starMask[0];
+			long state = 1L << startBit;
+			state |= (state & stars) << 1;
+			long accept = 1L << acceptBit;
+			boolean acceptIsStar = (stars & accept) != 0;
+			for (int k = start; k < end; k++) {
+				if (acceptIsStar && (state & accept) != 0)
+					return true;
+				long consumed = state & getMask(s.charAt(k));
+				state = (consumed << 1) | (state & stars);
+				state |= (state & stars) << 1;
+				if (state == 0)
+					return false;
+			}
+			return (state & accept) != 0;
+		}
+
+		long[] state = new long[wordCount];
+		long[] scratch = new long[wordCount];
+		setBit(state, startBit);
+		close(state, 0, state, 0);
+		boolean acceptIsStar = getBit(starMask, 0, acceptBit);
+		for (int k = start; k < end; k++) {
+			if (acceptIsStar && getBit(state, 0, acceptBit))
+				return true;
+			if (!step(state, 0, state, 0, s.charAt(k), scratch))
+				return false;
+		}
+		return getBit(state, 0, acceptBit);
+	}
+
+	/**
+	 * Add every element of a sorted set that matches any pattern to
+	 * <code>dest</code>.
+	 * <p>
+	 * The set is walked like a trie: consecutive elements share the States of
+	 * their common prefix, so each element only consumes the characters after
+	 * that prefix. When a prefix leads to a dead State every element that
+	 * starts with it is skipped, and when it reaches a trailing star every
+	 * element that starts with it is added without being examined.
+	 * 
+	 * @param set
+	 *            a set that uses the natural ordering of Strings.
+	 * @param dest
+	 *            the collection to add matches to.
+	 */
+	void getMatches(NavigableSet<String> set, Collection<String> dest) {
+		if (startDfaState.universal) {
+			dest.addAll(set);
+			return;
+		} else if (!startDfaState.live) {
+			return;
+		}
+
+		// states[d] is the State after d characters
+		State[] states = new State[16];
+		states[0] = startDfaState;
+
+		String prev = "";
+		Iterator<String> iter = set.iterator();
+		String s = iter.hasNext() ? iter.next() : null;
+		while (s != null) {
+			int depth = getCommonPrefixLength(prev, s);
+			if (states.length < s.length() + 1)
+				states = Arrays.copyOf(states,
+						Math.max(states.length * 2, s.length() + 1));
+
+			String skippedPrefix = null;
+			for (; depth < s.length(); depth++) {
+				State next = states[depth].next(s.charAt(depth));
+				states[depth + 1] = next;
+				if (!next.live || next.universal) {
+					skippedPrefix = s.substring(0, depth + 1);
+					break;
+				}
+			}
+
+			if (skippedPrefix == null) {
+				if (states[s.length()].accepting)
+					dest.add(s);
+				prev = s;
+				s = iter.hasNext() ? iter.next() : null;
+				continue;
+			}
+
+			// skip (or add) every element that starts with skippedPrefix. If
+			// there are only a few we iterate past them, otherwise we look up
+			// the end of the range.
+			boolean add = states[depth + 1].universal;
+			prev = skippedPrefix;
+			int scanned = 0;
+			while (s != null && s.startsWith(skippedPrefix)
+					&& scanned < SKIP_SCAN_LIMIT) {
+				if (add)
+					dest.add(s);
+				s = iter.hasNext() ? iter.next() : null;
+				scanned++;
+			}
+			if (s != null && s.startsWith(skippedPrefix)) {
+				String end = getPrefixSuccessor(skippedPrefix);
+				if (add) {
+					dest.addAll(end == null ? set.tailSet(s, true) : set
+							.subSet(s, true, end, false));
+				}
+				iter = end == null ? null : set.tailSet(end, true).iterator();
+				s = iter != null && iter.hasNext() ? iter.next() : null;
+			}
+		}
+	}
+
+	private static int getCommonPrefixLength(String s1, String s2) {
+		int max = Math.min(s1.length(), s2.length());
+		int i = 0;
+		while (i < max && s1.charAt(i) == s2.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Return the smallest String that is greater than every String that starts
+	 * with <code>prefix</code>, or null if there is no such String.
+	 */
+	private static String getPrefixSuccessor(String prefix) {
+		char[] chars = prefix.toCharArray();
+		int length = chars.length;
+		while (length > 0 && chars[length - 1] == Character.MAX_VALUE) {
+			length--;
+		}
+		if (length == 0)
+			return null;
+		chars[length - 1]++;
+		return new String(chars, 0, length);
+	}
+}
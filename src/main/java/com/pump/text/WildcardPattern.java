@@ -17,6 +17,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedSet;
@@ -834,11 +835,20 @@ public class WildcardPattern implements Serializable {
 			return true;
 		}
 
-		// TODO: another trick we can explore here is to scan the remaining
-		// placeholders for runs of continuous text. For example in the pattern
-		// "*abc?xyz*", the string "abc" and "xyz" are two runs of text. Each
-		// run of text has to appear in the remaining String, so if that doesn't
-		// happen we can immediately abort.
+		// if we exhausted the String before reaching a star: the remaining
+		// placeholders need more characters
+		if (!(placeholders[placeholderMaxIndex] instanceof StarWildcard))
+			return false;
+
+		// the remaining placeholders start and end with a star. Trying every
+		// way to split the String between those stars is exponential, so
+		// we run the compiled automaton over the remaining characters instead:
+		if (placeholders == this.placeholders
+				&& caseSensitive == getFormat().caseSensitive) {
+			return getAutomaton().matches(string, stringMinIndex,
+					stringMaxIndex + 1, placeholderMinIndex,
+					placeholderMaxIndex);
+		}
 
 		for (; stringMinIndex <= stringMaxIndex; stringMinIndex++) {
 			if (matches(string, stringMinIndex, stringMaxIndex, placeholders,
@@ -849,6 +859,21 @@ public class WildcardPattern implements Serializable {
 		return false;
 	}
 
+	private transient WildcardAutomaton automaton;
+
+	/**
+	 * Return the automaton this pattern is compiled to. This is created on
+	 * demand: many patterns never need to match more than one star.
+	 */
+	WildcardAutomaton getAutomaton() {
+		WildcardAutomaton returnValue = automaton;
+		if (returnValue == null) {
+			returnValue = new WildcardAutomaton(this);
+			automaton = returnValue;
+		}
+		return returnValue;
+	}
+
 	/**
 	 * @return the maximum number of characters in this pattern. This may return
 	 *         Integer.MAX_VALUE if this pattern contains an asterisk.
@@ -930,36 +955,39 @@ public class WildcardPattern implements Serializable {
 	/**
 	 * Return all the elements of the argument that comply with this pattern.
 	 * <p>
-	 * This should be functionally equivalent to iterating over every element of
-	 * the set and checking its compliance, but depending on the composition of
-	 * this pattern: this method may be faster than if you iterate over all
-	 * elements directly.
+	 * This is functionally equivalent to iterating over every element of the
+	 * set and checking its compliance, but the set is walked like a trie: once
+	 * a prefix can't match this pattern all the elements that start with that
+	 * prefix are skipped, and once a prefix reaches a trailing star all the
+	 * elements that start with it are accepted without being examined.
 	 * 
 	 * @param set
-	 * @return
+	 *            the set of Strings to search.
+	 * @return the elements of the set that match this pattern.
 	 */
 	public SortedSet<String> getMatches(TreeSet<String> set) {
-		SortedSet<String> returnValue = new TreeSet<>();
-		Placeholder[] phs = getPlaceholders();
+		return getMatches((NavigableSet<String>) set);
+	}
 
-		StringBuilder constantPrefixBuilder = new StringBuilder();
-		for (int a = 0; a < phs.length; a++) {
-			if (phs[a] instanceof FixedCharacter) {
-				FixedCharacter fc = (FixedCharacter) phs[a];
-				constantPrefixBuilder.append(fc.ch);
-			} else {
-				break;
+	/**
+	 * Return all the elements of the argument that comply with this pattern.
+	 * 
+	 * @param set
+	 *            the set of Strings to search.
+	 * @return the elements of the set that match this pattern.
+	 * @see #getMatches(TreeSet)
+	 */
+	public SortedSet<String> getMatches(NavigableSet<String> set) {
+		SortedSet<String> returnValue = new TreeSet<>();
+		if (set.comparator() != null) {
+			// we can only prune when the set uses the natural String order
+			for (String s : set) {
+				if (matches(s))
+					returnValue.add(s);
 			}
+		} else {
+			getAutomaton().getMatches(set, returnValue);
 		}
-		String constantPrefix = constantPrefixBuilder.toString();
-
-		for (String s : set.tailSet(constantPrefix, true)) {
-			if (matches(s))
-				returnValue.add(s);
-			if (!s.startsWith(constantPrefix))
-				break;
-		}
-
 		return returnValue;
 	}
 
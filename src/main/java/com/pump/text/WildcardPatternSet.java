@@ -0,0 +1,167 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.pump.text.WildcardAutomaton.State;
+
+/**
+ * An immutable group of WildcardPatterns that can be tested against a String
+ * in one pass.
+ * <p>
+ * All the patterns are compiled into one automaton whose states are cached
+ * as a DFA, so once the DFA is warmed up testing a String against this set
+ * usually costs one table lookup per character no matter how many patterns it
+ * contains. This is much faster than calling
+ * {@link WildcardPattern#matches(CharSequence)} for each pattern when there
+ * are many patterns.
+ * <p>
+ * This class is thread-safe.
+ */
+public class WildcardPatternSet {
+
+	private final WildcardAutomaton automaton;
+	private final List<WildcardPattern> patterns;
+
+	public WildcardPatternSet(WildcardPattern... patterns) {
+		this(Arrays.asList(patterns));
+	}
+
+	public WildcardPatternSet(Collection<WildcardPattern> patterns) {
+		WildcardPattern[] array = patterns
+				.toArray(new WildcardPattern[patterns.size()]);
+		for (WildcardPattern p : array) {
+			Objects.requireNonNull(p);
+		}
+		this.patterns = Collections.unmodifiableList(Arrays.asList(array));
+		automaton = new WildcardAutomaton(array);
+	}
+
+	/**
+	 * Return the patterns in this set.
+	 */
+	public List<WildcardPattern> getPatterns() {
+		return patterns;
+	}
+
+	/**
+	 * Return true if the argument matches at least one pattern in this set.
+	 */
+	public boolean matchesAny(CharSequence string) {
+		long[] state = match(string, true);
+		return state != null && automaton.isFinal(state, 0);
+	}
+
+	/**
+	 * Return the indices of all the patterns that match the argument, in
+	 * ascending order.
+	 */
+	public int[] getMatchingIndices(CharSequence string) {
+		long[] state = match(string, false);
+		if (state == null)
+			return new int[0];
+		int[] returnValue = new int[patterns.size()];
+		int size = 0;
+		for (int a = 0; a < returnValue.length; a++) {
+			if (automaton.isFinal(state, 0, a))
+				returnValue[size++] = a;
+		}
+		return Arrays.copyOf(returnValue, size);
+	}
+
+	/**
+	 * Consume a String and return the final state set, or null if no pattern
+	 * can match it.
+	 * 
+	 * @param stopWhenUniversal
+	 *            if true then this returns as soon as one pattern is
+	 *            guaranteed to match the rest of the String. The state set
+	 *            that is returned is then not accurate for the other
+	 *            patterns.
+	 */
+	private long[] match(CharSequence string, boolean stopWhenUniversal) {
+		Objects.requireNonNull(string);
+		State state = automaton.getStartState();
+		int k = 0;
+		while (k < string.length() && state.isCached()) {
+			if (stopWhenUniversal && state.universal)
+				return state.bits;
+			state = state.next(string.charAt(k++));
+			if (!state.live)
+				return null;
+		}
+		if (k == string.length())
+			return state.bits;
+
+		// the DFA is full, so step through the NFA directly:
+		long[] bits = state.bits.clone();
+		long[] scratch = new long[automaton.wordCount];
+		for (; k < string.length(); k++) {
+			if (stopWhenUniversal && automaton.isUniversal(bits, 0))
+				return bits;
+			if (!automaton.step(bits, 0, bits, 0, string.charAt(k), scratch))
+				return null;
+		}
+		return bits;
+	}
+
+	/**
+	 * Return all the patterns that match the argument, in the order they
+	 * appear in this set.
+	 */
+	public List<WildcardPattern> getMatchingPatterns(CharSequence string) {
+		int[] indices = getMatchingIndices(string);
+		List<WildcardPattern> returnValue = new ArrayList<>(indices.length);
+		for (int i : indices) {
+			returnValue.add(patterns.get(i));
+		}
+		return returnValue;
+	}
+
+	/**
+	 * Return all the elements of the argument that match at least one pattern
+	 * in this set.
+	 * <p>
+	 * Like {@link WildcardPattern#getMatches(TreeSet)}, this walks the set like
+	 * a trie and skips every element that starts with a prefix no pattern can
+	 * match.
+	 * 
+	 * @param set
+	 *            the set of Strings to search.
+	 * @return the elements of the set that match at least one pattern.
+	 */
+	public SortedSet<String> getMatches(NavigableSet<String> set) {
+		SortedSet<String> returnValue = new TreeSet<>();
+		if (set.comparator() != null) {
+			for (String s : set) {
+				if (matchesAny(s))
+					returnValue.add(s);
+			}
+		} else {
+			automaton.getMatches(set, returnValue);
+		}
+		return returnValue;
+	}
+
+	@Override
+	public String toString() {
+		return "WildcardPatternSet" + patterns;
+	}
+}
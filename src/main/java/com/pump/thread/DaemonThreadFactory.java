@@ -0,0 +1,43 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ *
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ *
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.thread;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This creates daemon threads that are named with a prefix and a counter,
+ * such as "CsvParser-0", "CsvParser-1", etc.
+ * <p>
+ * Daemon threads don't prevent the JVM from exiting, so this is appropriate
+ * for pools that only perform work another thread is waiting for.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	private final String namePrefix;
+	private final AtomicInteger counter = new AtomicInteger();
+
+	/**
+	 * @param namePrefix
+	 *            the prefix of each thread's name.
+	 */
+	public DaemonThreadFactory(String namePrefix) {
+		this.namePrefix = Objects.requireNonNull(namePrefix);
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, namePrefix + "-" + counter.getAndIncrement());
+		t.setDaemon(true);
+		return t;
+	}
+}
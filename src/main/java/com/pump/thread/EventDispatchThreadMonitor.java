@@ -10,15 +10,27 @@
  */
 package com.pump.thread;
 
+import java.awt.AWTEvent;
 import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.swing.SwingUtilities;
 
 /**
@@ -31,6 +43,16 @@ import javax.swing.SwingUtilities;
  * responsive. If that runnable is not executed: then we start to notify the
  * listeners. Each listener can have a unique threshold for when it gets
  * notified.
+ * <h3>Metrics</h3>
+ * <p>
+ * The monitor also records {@link LatencyHistogram LatencyHistograms} of how
+ * long each ping waited to run (the dispatch delay) and, if
+ * {@link #setLatencyRecordingEnabled(boolean)} is used, how long each AWTEvent
+ * took to process. When the event dispatch thread is unresponsive for longer
+ * than the stall threshold the monitor captures a few stack traces of it, and
+ * when it recovers the resulting {@link Stall} is passed to every
+ * {@link StallListener}. These metrics are also available through JMX; see
+ * {@link #registerMBean()}.
  * <h3>Recommendations</h3>
  * <p>
  * I recommend a sliding scale of listeners. For example:
@@ -68,18 +90,259 @@ public final class EventDispatchThreadMonitor {
 
 	static class PingEDTRunnable implements Runnable {
 		final long constructionMillis = System.currentTimeMillis();
-		long executionMillis = -1;
+		final long constructionNanos = System.nanoTime();
+		volatile long executionMillis = -1;
 
 		@Override
 		public void run() {
-			get().eventDispatchThread = Thread.currentThread();
+			EventDispatchThreadMonitor m = get();
+			m.dispatchDelayHistogram
+					.record(System.nanoTime() - constructionNanos);
+			m.eventDispatchThread = Thread.currentThread();
 			executionMillis = System.currentTimeMillis();
 		}
 	}
 
-	private Thread eventDispatchThread;
+	/**
+	 * This EventQueue measures how long each event takes to dispatch.
+	 */
+	class TimingEventQueue extends EventQueue {
+
+		/**
+		 * The total time spent in nested calls to dispatchEvent, so an event
+		 * that opens a modal dialog isn't blamed for the time the dialog was
+		 * open.
+		 */
+		long nestedNanos = 0;
+
+		/**
+		 * This is false after {@link #uninstall()} is called. If this queue
+		 * couldn't be popped then it keeps dispatching events but stops
+		 * recording them.
+		 */
+		volatile boolean isRecording = true;
+
+		@Override
+		protected void dispatchEvent(AWTEvent event) {
+			if (!isRecording) {
+				super.dispatchEvent(event);
+				return;
+			}
+			long startNanos = System.nanoTime();
+			long startNestedNanos = nestedNanos;
+			try {
+				super.dispatchEvent(event);
+			} finally {
+				long elapsed = System.nanoTime() - startNanos;
+				long ownNanos = elapsed - (nestedNanos - startNestedNanos);
+				nestedNanos += ownNanos;
+				eventProcessingHistogram.record(ownNanos);
+			}
+		}
+
+		/**
+		 * Stop recording events, and pop this queue if it is the top of the
+		 * EventQueue stack.
+		 * <p>
+		 * {@link EventQueue#pop()} always removes the top of the stack, so if
+		 * another EventQueue was pushed after this one (by the application or
+		 * a library) then popping would remove that queue instead. In that
+		 * case this queue stays installed and quietly forwards events.
+		 * 
+		 * @return true if this queue was popped.
+		 */
+		boolean uninstall() {
+			isRecording = false;
+			if (Toolkit.getDefaultToolkit().getSystemEventQueue() != this)
+				return false;
+			pop();
+			return true;
+		}
+	}
+
+	/**
+	 * This describes a period when the event dispatch thread was
+	 * unresponsive.
+	 */
+	public static class Stall {
+		final long startMillis;
+		long durationMillis;
+		final List<ThreadInfo> samples = new ArrayList<>();
+		final List<Long> sampleMillis = new ArrayList<>();
+
+		Stall(long startMillis) {
+			this.startMillis = startMillis;
+		}
+
+		/**
+		 * Return the System time the first unanswered ping was posted to the
+		 * event dispatch thread.
+		 */
+		public long getStartMillis() {
+			return startMillis;
+		}
+
+		/**
+		 * Return the approximate number of milliseconds the event dispatch
+		 * thread was unresponsive.
+		 */
+		public long getDurationMillis() {
+			return durationMillis;
+		}
+
+		/**
+		 * Return the stack traces (and lock information) of the event
+		 * dispatch thread captured during this stall, in chronological order.
+		 */
+		public List<ThreadInfo> getSamples() {
+			return Collections.unmodifiableList(samples);
+		}
+
+		/**
+		 * Return the System time each sample was captured.
+		 */
+		public List<Long> getSampleMillis() {
+			return Collections.unmodifiableList(sampleMillis);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("Stall of " + durationMillis + " ms starting at "
+					+ DateFormat.getDateTimeInstance()
+							.format(new Date(startMillis))
+					+ "\n");
+			for (int a = 0; a < samples.size(); a++) {
+				ThreadInfo info = samples.get(a);
+				sb.append("Sample " + (a + 1) + " (+"
+						+ (sampleMillis.get(a) - startMillis) + " ms) \""
+						+ info.getThreadName() + "\" "
+						+ info.getThreadState());
+				if (info.getLockName() != null) {
+					sb.append(" on " + info.getLockName());
+					if (info.getLockOwnerName() != null)
+						sb.append(" owned by \"" + info.getLockOwnerName()
+								+ "\"");
+				}
+				sb.append("\n");
+				for (StackTraceElement e : info.getStackTrace()) {
+					sb.append("\tat " + e + "\n");
+				}
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * This is notified when the event dispatch thread recovers from a stall.
+	 * 
+	 * @see EventDispatchThreadMonitor#setStallThreshold(long)
+	 */
+	public interface StallListener {
+		/**
+		 * This is called on the monitor's thread after the event dispatch
+		 * thread recovers from a stall.
+		 */
+		void stallRecorded(Stall stall);
+	}
+
+	class MXBeanImpl implements EventDispatchThreadMonitorMXBean {
+
+		private double toMillis(long nanos) {
+			return nanos / 1000000.0;
+		}
+
+		@Override
+		public long getDispatchDelayCount() {
+			return dispatchDelayHistogram.getTotalCount();
+		}
+
+		@Override
+		public double getDispatchDelayMedian() {
+			return toMillis(dispatchDelayHistogram.getValueAtPercentile(50));
+		}
+
+		@Override
+		public double getDispatchDelay90thPercentile() {
+			return toMillis(dispatchDelayHistogram.getValueAtPercentile(90));
+		}
+
+		@Override
+		public double getDispatchDelay99thPercentile() {
+			return toMillis(dispatchDelayHistogram.getValueAtPercentile(99));
+		}
+
+		@Override
+		public double getDispatchDelayMax() {
+			return toMillis(dispatchDelayHistogram.getMaxValue());
+		}
+
+		@Override
+		public long getEventProcessingCount() {
+			return eventProcessingHistogram.getTotalCount();
+		}
+
+		@Override
+		public double getEventProcessingMedian() {
+			return toMillis(eventProcessingHistogram.getValueAtPercentile(50));
+		}
+
+		@Override
+		public double getEventProcessing90thPercentile() {
+			return toMillis(eventProcessingHistogram.getValueAtPercentile(90));
+		}
+
+		@Override
+		public double getEventProcessing99thPercentile() {
+			return toMillis(eventProcessingHistogram.getValueAtPercentile(99));
+		}
+
+		@Override
+		public double getEventProcessingMax() {
+			return toMillis(eventProcessingHistogram.getMaxValue());
+		}
+
+		@Override
+		public long getStallCount() {
+			return stallCount.get();
+		}
+
+		@Override
+		public String[] getRecentStalls() {
+			List<Stall> stalls = EventDispatchThreadMonitor.this
+					.getRecentStalls();
+			String[] returnValue = new String[stalls.size()];
+			for (int a = 0; a < returnValue.length; a++) {
+				returnValue[a] = stalls.get(a).toString();
+			}
+			return returnValue;
+		}
+
+		@Override
+		public void resetHistograms() {
+			dispatchDelayHistogram.reset();
+			eventProcessingHistogram.reset();
+		}
+	}
+
+	private static final int MAX_RECENT_STALLS = 10;
+
+	private volatile Thread eventDispatchThread;
 	private final Thread monitorThread;
 	private final TreeMap<Long, Collection<Listener>> listenersByThreshold = new TreeMap<>();
+	private final List<StallListener> stallListeners = new LinkedList<>();
+	private final LinkedList<Stall> recentStalls = new LinkedList<>();
+	private final AtomicLong stallCount = new AtomicLong();
+	private final LatencyHistogram dispatchDelayHistogram = new LatencyHistogram();
+	private final LatencyHistogram eventProcessingHistogram = new LatencyHistogram();
+	private final ThreadMXBean threadMXBean = ManagementFactory
+			.getThreadMXBean();
+	private volatile long stallThreshold = 500;
+	private volatile int maxStallSamples = 10;
+	private volatile int maxStallStackDepth = 64;
+	private boolean latencyRecordingEnabled = false;
+	private TimingEventQueue timingEventQueue;
+	private ObjectName objectName;
 
 	private EventDispatchThreadMonitor() {
 		Runnable monitorRunnable = new Runnable() {
@@ -87,6 +350,18 @@ public final class EventDispatchThreadMonitor {
 
 			List<Listener> listenersWaitingForResponsiveNotification = new LinkedList<>();
 
+			/**
+			 * The stall in progress, or null.
+			 */
+			Stall stall;
+
+			/**
+			 * The time the oldest ping that hasn't run yet was posted, or -1.
+			 * Stalls are measured from this (instead of from the last
+			 * responsive time) so time this thread spent idle isn't counted.
+			 */
+			long firstUnansweredPingMillis = -1;
+
 			@Override
 			public void run() {
 				long lastResponsiveTime = System.currentTimeMillis();
@@ -99,6 +374,8 @@ public final class EventDispatchThreadMonitor {
 					synchronized (listenersByThreshold) {
 						if (listenersWaitingForResponsiveNotification.isEmpty()
 								&& listenersByThreshold.isEmpty()
+								&& stallListeners.isEmpty()
+								&& !isLatencyRecordingEnabled() && stall == null
 								&& isInitialized()) {
 							// nobody is listening, so don't do anything
 
@@ -111,6 +388,8 @@ public final class EventDispatchThreadMonitor {
 
 					PingEDTRunnable r = new PingEDTRunnable();
 					EventQueue.invokeLater(r);
+					if (firstUnansweredPingMillis == -1)
+						firstUnansweredPingMillis = r.constructionMillis;
 
 					try {
 						Thread.sleep(Math.max(20, minPingTime * 10));
@@ -135,6 +414,14 @@ public final class EventDispatchThreadMonitor {
 						}
 						listenersWaitingForResponsiveNotification.clear();
 
+						if (stall != null) {
+							stall.durationMillis = r.executionMillis
+									- stall.startMillis;
+							recordStall(stall);
+							stall = null;
+						}
+						firstUnansweredPingMillis = -1;
+
 						lastResponsiveTime = r.executionMillis;
 						long pingTime = r.executionMillis
 								- r.constructionMillis;
@@ -146,8 +433,16 @@ public final class EventDispatchThreadMonitor {
 							// app. Don't notify the listeners until we're more
 							// confident the app has really started.
 						} else {
-							long unresponsiveMillis = System.currentTimeMillis()
+							long currentTime = System.currentTimeMillis();
+							long unresponsiveMillis = currentTime
 									- lastResponsiveTime;
+							if (currentTime
+									- firstUnansweredPingMillis >= stallThreshold) {
+								if (stall == null)
+									stall = new Stall(
+											firstUnansweredPingMillis);
+								captureStallSample(stall, currentTime);
+							}
 							List<Listener> newListeners = new LinkedList<>();
 							synchronized (listenersByThreshold) {
 								for (Map.Entry<Long, Collection<Listener>> e : listenersByThreshold
@@ -299,6 +594,187 @@ public final class EventDispatchThreadMonitor {
 		return returnValue;
 	}
 
+	/**
+	 * Capture the event dispatch thread's stack if the stall doesn't have
+	 * enough samples yet and at least one stall threshold has passed since
+	 * the last sample.
+	 */
+	private void captureStallSample(Stall stall, long currentTime) {
+		int size = stall.samples.size();
+		if (size >= maxStallSamples)
+			return;
+		if (size > 0 && currentTime
+				- stall.sampleMillis.get(size - 1) < stallThreshold)
+			return;
+		Thread edt = eventDispatchThread;
+		ThreadInfo info = threadMXBean.getThreadInfo(edt.getId(),
+				maxStallStackDepth);
+		if (info != null) {
+			stall.samples.add(info);
+			stall.sampleMillis.add(currentTime);
+		}
+	}
+
+	private void recordStall(Stall stall) {
+		stallCount.incrementAndGet();
+		List<StallListener> listeners;
+		synchronized (recentStalls) {
+			recentStalls.add(stall);
+			while (recentStalls.size() > MAX_RECENT_STALLS) {
+				recentStalls.removeFirst();
+			}
+		}
+		synchronized (listenersByThreshold) {
+			listeners = new ArrayList<>(stallListeners);
+		}
+		for (StallListener listener : listeners) {
+			try {
+				listener.stallRecorded(stall);
+			} catch (Exception e) {
+				Thread.currentThread().getUncaughtExceptionHandler()
+						.uncaughtException(Thread.currentThread(), e);
+			}
+		}
+	}
+
+	/**
+	 * Add a StallListener that is notified each time the event dispatch
+	 * thread recovers after being unresponsive for at least the stall
+	 * threshold.
+	 */
+	public void addStallListener(StallListener listener) {
+		synchronized (listenersByThreshold) {
+			stallListeners.add(listener);
+		}
+	}
+
+	/**
+	 * Remove a StallListener.
+	 * 
+	 * @return true if the listener was found and removed, false if not.
+	 */
+	public boolean removeStallListener(StallListener listener) {
+		synchronized (listenersByThreshold) {
+			return stallListeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Return the most recent stalls, oldest first.
+	 */
+	public List<Stall> getRecentStalls() {
+		synchronized (recentStalls) {
+			return new ArrayList<>(recentStalls);
+		}
+	}
+
+	/**
+	 * Assign the number of milliseconds the event dispatch thread must be
+	 * unresponsive before it is considered stalled. The default is 500.
+	 */
+	public void setStallThreshold(long millis) {
+		if (millis <= 0)
+			throw new IllegalArgumentException(
+					"millis (" + millis + ") must be positive");
+		stallThreshold = millis;
+	}
+
+	/**
+	 * Return the number of milliseconds the event dispatch thread must be
+	 * unresponsive before it is considered stalled.
+	 */
+	public long getStallThreshold() {
+		return stallThreshold;
+	}
+
+	/**
+	 * Assign the maximum number of stack traces captured per stall, and the
+	 * maximum number of frames in each stack trace. The defaults are 10 and
+	 * 64.
+	 */
+	public void setStallCaptureLimits(int maxSamples, int maxStackDepth) {
+		if (maxSamples <= 0)
+			throw new IllegalArgumentException(
+					"maxSamples (" + maxSamples + ") must be positive");
+		if (maxStackDepth <= 0)
+			throw new IllegalArgumentException("maxStackDepth ("
+					+ maxStackDepth + ") must be positive");
+		maxStallSamples = maxSamples;
+		maxStallStackDepth = maxStackDepth;
+	}
+
+	/**
+	 * Return the histogram of how long Runnables waited in the event queue
+	 * before they ran.
+	 */
+	public LatencyHistogram getDispatchDelayHistogram() {
+		return dispatchDelayHistogram;
+	}
+
+	/**
+	 * Return the histogram of how long each AWTEvent took to dispatch. This
+	 * is only populated while {@link #isLatencyRecordingEnabled()} is true.
+	 */
+	public LatencyHistogram getEventProcessingHistogram() {
+		return eventProcessingHistogram;
+	}
+
+	/**
+	 * Return true if this monitor continually measures the event dispatch
+	 * thread even when no listeners are attached.
+	 */
+	public synchronized boolean isLatencyRecordingEnabled() {
+		return latencyRecordingEnabled;
+	}
+
+	/**
+	 * Toggle whether this monitor continually measures the event dispatch
+	 * thread.
+	 * <p>
+	 * When this is enabled the monitor pings the event dispatch thread even
+	 * if no listeners are attached, and it pushes an EventQueue that records
+	 * the time it takes to dispatch every AWTEvent in
+	 * {@link #getEventProcessingHistogram()}.
+	 * <p>
+	 * When this is disabled that EventQueue is popped, unless another
+	 * EventQueue has been pushed on top of it. (Popping it would then remove
+	 * the other queue.) In that case it stays installed but stops recording,
+	 * and it is reused if recording is enabled again.
+	 */
+	public synchronized void setLatencyRecordingEnabled(boolean b) {
+		if (latencyRecordingEnabled == b)
+			return;
+		latencyRecordingEnabled = b;
+		if (b) {
+			if (timingEventQueue != null) {
+				timingEventQueue.isRecording = true;
+			} else {
+				timingEventQueue = new TimingEventQueue();
+				Toolkit.getDefaultToolkit().getSystemEventQueue()
+						.push(timingEventQueue);
+			}
+		} else if (timingEventQueue.uninstall()) {
+			timingEventQueue = null;
+		}
+	}
+
+	/**
+	 * Register this monitor with the platform MBeanServer as
+	 * "com.pump.thread:type=EventDispatchThreadMonitor". This does nothing if
+	 * it is already registered.
+	 * 
+	 * @see EventDispatchThreadMonitorMXBean
+	 */
+	public synchronized void registerMBean() throws JMException {
+		if (objectName != null)
+			return;
+		ObjectName name = new ObjectName(
+				"com.pump.thread:type=EventDispatchThreadMonitor");
+		ManagementFactory.getPlatformMBeanServer()
+				.registerMBean(new MXBeanImpl(), name);
+		objectName = name;
+	}
+
 	/**
 	 * Return true if this monitor has issued and received one successful ping
 	 * on the event dispatch thread.
@@ -0,0 +1,59 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.thread;
+
+/**
+ * This is the JMX interface for the {@link EventDispatchThreadMonitor}.
+ * <p>
+ * The "dispatch delay" is how long a Runnable passed to
+ * <code>EventQueue.invokeLater(..)</code> waits before it runs. The "event
+ * processing time" is how long the event dispatch thread spends dispatching
+ * each AWTEvent. All durations are in milliseconds.
+ * 
+ * @see EventDispatchThreadMonitor#registerMBean()
+ */
+public interface EventDispatchThreadMonitorMXBean {
+
+	long getDispatchDelayCount();
+
+	double getDispatchDelayMedian();
+
+	double getDispatchDelay90thPercentile();
+
+	double getDispatchDelay99thPercentile();
+
+	double getDispatchDelayMax();
+
+	long getEventProcessingCount();
+
+	double getEventProcessingMedian();
+
+	double getEventProcessing90thPercentile();
+
+	double getEventProcessing99thPercentile();
+
+	double getEventProcessingMax();
+
+	/**
+	 * Return the number of stalls recorded since the monitor started.
+	 */
+	long getStallCount();
+
+	/**
+	 * Return descriptions (including stack traces) of the most recent stalls.
+	 */
+	String[] getRecentStalls();
+
+	/**
+	 * Clear the dispatch delay and event processing histograms.
+	 */
+	void resetHistograms();
+}
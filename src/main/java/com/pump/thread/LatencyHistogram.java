@@ -0,0 +1,159 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.thread;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This records a distribution of nanosecond durations in a fixed amount of
+ * memory.
+ * <p>
+ * Like an HDR histogram, the buckets are log-linear: every power of two is
+ * divided into 64 equal sub-buckets. So any value from 1 nanosecond to
+ * several centuries is recorded with a relative error under 1.6%, using
+ * fewer than 4000 counters.
+ * <p>
+ * Recording a value is lock-free and allocation-free, so it is safe to call
+ * {@link #record(long)} from any thread (including the event dispatch
+ * thread) as often as necessary.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS)
+			* SUB_BUCKET_COUNT;
+
+	/**
+	 * Return the counter index a value is recorded in.
+	 */
+	static int getIndex(long value) {
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		if (shift <= 0)
+			return (int) value;
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+
+	/**
+	 * Return the largest value that is recorded at a counter index.
+	 */
+	static long getHighestValue(int index) {
+		int shift = (index >> SUB_BUCKET_BITS) - 1;
+		if (shift <= 0)
+			return index;
+		long lowestValue = ((long) (index - (shift << SUB_BUCKET_BITS))) << shift;
+		return lowestValue + (1L << shift) - 1;
+	}
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong totalCount = new AtomicLong();
+	private final AtomicLong totalValue = new AtomicLong();
+	private final AtomicLong maxValue = new AtomicLong();
+
+	/**
+	 * Record a duration.
+	 * 
+	 * @param nanos
+	 *            the duration in nanoseconds. Negative values are recorded as
+	 *            zero.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		counts.incrementAndGet(getIndex(nanos));
+		totalCount.incrementAndGet();
+		totalValue.addAndGet(nanos);
+		long max = maxValue.get();
+		while (nanos > max && !maxValue.compareAndSet(max, nanos)) {
+			max = maxValue.get();
+		}
+	}
+
+	/**
+	 * Return the number of values recorded.
+	 */
+	public long getTotalCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 * Return the largest value recorded, in nanoseconds.
+	 */
+	public long getMaxValue() {
+		return maxValue.get();
+	}
+
+	/**
+	 * Return the average value recorded, in nanoseconds.
+	 */
+	public double getMean() {
+		long count = totalCount.get();
+		if (count == 0)
+			return 0;
+		return ((double) totalValue.get()) / count;
+	}
+
+	/**
+	 * Return the value (in nanoseconds) that the given percentage of recorded
+	 * values are less than or equal to.
+	 * 
+	 * @param percentile
+	 *            a value from 0 to 100, such as 50 for the median or 99.9.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("percentile (" + percentile
+					+ ") must be between 0 and 100");
+		long count = 0;
+		long[] snapshot = new long[BUCKET_COUNT];
+		for (int a = 0; a < snapshot.length; a++) {
+			snapshot[a] = counts.get(a);
+			count += snapshot[a];
+		}
+		if (count == 0)
+			return 0;
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long sum = 0;
+		for (int a = 0; a < snapshot.length; a++) {
+			sum += snapshot[a];
+			if (sum >= target)
+				return Math.min(getHighestValue(a), maxValue.get());
+		}
+		return maxValue.get();
+	}
+
+	/**
+	 * Remove all recorded values.
+	 */
+	public void reset() {
+		for (int a = 0; a < BUCKET_COUNT; a++) {
+			counts.set(a, 0);
+		}
+		totalCount.set(0);
+		totalValue.set(0);
+		maxValue.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram[ count=" + getTotalCount() + ", mean="
+				+ format(getMean()) + ", p50="
+				+ format(getValueAtPercentile(50)) + ", p90="
+				+ format(getValueAtPercentile(90)) + ", p99="
+				+ format(getValueAtPercentile(99)) + ", max="
+				+ format(getMaxValue()) + "]";
+	}
+
+	private static String format(double nanos) {
+		return String.format("%.3f ms", nanos / 1000000.0);
+	}
+}
@@ -15,10 +15,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.nio.charset.Charset;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
@@ -29,8 +33,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import javax.swing.event.ChangeEvent;
@@ -49,7 +51,16 @@ import javax.swing.event.ChangeListener;
  * </p>
  * <p>
  * The {@link ThreadProfiler#getOutput()} and <code>write</code> methods write a
- * plain text summary of the composite stack traces.
+ * plain text summary of the composite stack traces. The
+ * {@link #getCollapsedStacks()} method writes the same data in the "collapsed
+ * stack" format that flame graph tools read.
+ * </p>
+ * <p>
+ * Each sample only fetches the stack traces of the threads that pass this
+ * profiler's filter (using a <code>ThreadMXBean</code>), so profiling a few
+ * threads in a JVM with hundreds of threads is cheap. Frames are interned
+ * into int ids and the call tree is stored in primitive arrays, so a sample
+ * doesn't allocate a node for every frame.
  * </p>
  * <p>
  * If you have access to a suite professionally maintained performance
@@ -80,118 +91,230 @@ public class ThreadProfiler {
 		return str1.compareTo(str2);
 	}
 
-	static class StackTraceElementNode
-			implements Comparable<StackTraceElementNode> {
-		StackTraceElement element;
-		Map<StackTraceElementNode, StackTraceElementNode> children = new TreeMap<>();
-		int frequency = 1;
-		SynchronizedStatus isSynchronized;
+	private static int compareElements(StackTraceElement e1,
+			StackTraceElement e2) {
+		int k = compareString(e1.getFileName(), e2.getFileName());
+		if (k != 0)
+			return k;
+		k = compareString(e1.getClassName(), e2.getClassName());
+		if (k != 0)
+			return k;
+		k = compareString(e1.getMethodName(), e2.getMethodName());
+		if (k != 0)
+			return k;
+		return Integer.compare(e1.getLineNumber(), e2.getLineNumber());
+	}
 
-		StackTraceElementNode(StackTraceElement e) {
-			element = e;
-		}
+	enum SynchronizedStatus {
+		IS_SYNCHRONIZED, IS_NOT_SYNCHRONIZED, UNKNOWN
+	}
 
-		public StackTraceElementNode catalog(StackTraceElement e,
-				long timestamp) {
+	/**
+	 * Return the SynchronizedStatus of a method, which may be UNKNOWN if it
+	 * can't be determined.
+	 */
+	static SynchronizedStatus getSynchronizedStatus(StackTraceElement element) {
+		try {
+			Collection<Method> candidates = new HashSet<>();
+
+			Class z = Class.forName(element.getClassName());
+			while (z != null) {
+				Method[] methods = z.getDeclaredMethods();
+				for (Method method : methods) {
+					if (method.getName().equals(element.getMethodName()))
+						candidates.add(method);
+				}
+				z = z.getSuperclass();
+			}
 
-			StackTraceElementNode newNode = new StackTraceElementNode(e);
-			synchronized (children) {
-				StackTraceElementNode oldNode = children.get(newNode);
-				if (oldNode != null) {
-					oldNode.frequency++;
-					return oldNode;
+			int synchronizedCount = 0;
+			for (Method m : candidates) {
+				if ((m.getModifiers() & Modifier.SYNCHRONIZED) > 0) {
+					synchronizedCount++;
 				}
+			}
 
-				children.put(newNode, newNode);
+			if (synchronizedCount == candidates.size()) {
+				return synchronizedCount == 0
+						? SynchronizedStatus.IS_NOT_SYNCHRONIZED
+						: SynchronizedStatus.IS_SYNCHRONIZED;
 			}
-			return newNode;
+			return SynchronizedStatus.UNKNOWN;
+		} catch (Throwable t) {
+			// in my tests this was often a
+			// "java.lang.ClassNotFoundException:
+			// com.apple.laf.AquaPainter$AquaSingleImagePainter$$Lambda$175/0x0000000800db35f0",
+			// but of course this could also be a security issue. This
+			// is optional info: if ANYTHING comes up, just call it
+			// UNKNOWN
+			return SynchronizedStatus.UNKNOWN;
 		}
+	}
 
-		@Override
-		public String toString() {
-			return "StackTraceElementNode[ frequency=" + frequency
-					+ ", element=" + element + "]";
+	/**
+	 * This assigns every distinct StackTraceElement an int id, so the call
+	 * tree only stores ints.
+	 */
+	static class FrameTable {
+		Map<StackTraceElement, Integer> ids = new HashMap<>();
+		List<StackTraceElement> elements = new ArrayList<>();
+		List<SynchronizedStatus> synchronizedStatuses = new ArrayList<>();
+
+		int intern(StackTraceElement element) {
+			Integer id = ids.get(element);
+			if (id == null) {
+				id = elements.size();
+				ids.put(element, id);
+				elements.add(element);
+				synchronizedStatuses.add(null);
+			}
+			return id;
 		}
 
-		@Override
-		public int compareTo(StackTraceElementNode o) {
-			int k = compareString(element.getFileName(),
-					o.element.getFileName());
-			if (k != 0)
-				return k;
-			k = compareString(element.getClassName(), o.element.getClassName());
-			if (k != 0)
-				return k;
-			k = compareString(element.getMethodName(),
-					o.element.getMethodName());
-			if (k != 0)
-				return k;
-			k = Integer.compare(element.getLineNumber(),
-					o.element.getLineNumber());
-			return k;
+		StackTraceElement get(int id) {
+			return elements.get(id);
 		}
 
-		public int getMaxFrequency() {
-			int returnValue = frequency;
-			synchronized (children) {
-				for (StackTraceElementNode child : children.keySet()) {
-					returnValue = Math.max(returnValue, child.getMaxFrequency());
-				}
+		SynchronizedStatus getSynchronizedStatus(int id) {
+			SynchronizedStatus s = synchronizedStatuses.get(id);
+			if (s == null) {
+				s = ThreadProfiler.getSynchronizedStatus(elements.get(id));
+				synchronizedStatuses.set(id, s);
 			}
-			return returnValue;
+			return s;
 		}
+	}
 
+	/**
+	 * This is a call tree stored in parallel int arrays. Every node is an
+	 * index into these arrays. A node's child for a given frame is found
+	 * through an open-addressing hash table whose keys combine the parent
+	 * node and the frame id.
+	 */
+	static class CallTree {
+		private static final long EMPTY_KEY = -1;
+
+		int size = 0;
+		int[] frame = new int[256];
+		int[] parent = new int[256];
 		/**
-		 * Return the SynchronizedStatus of this method, which may be UNKNOWN if
-		 * it can't be determined.
+		 * The number of samples that passed through each node.
 		 */
-		public SynchronizedStatus getSynchronizedStatus() {
-			if (isSynchronized == null) {
-				try {
-					Collection<Method> candidates = new HashSet<>();
-
-					Class z = Class.forName(element.getClassName());
-					while (z != null) {
-						Method[] methods = z.getDeclaredMethods();
-						for (Method method : methods) {
-							if (method.getName()
-									.equals(element.getMethodName()))
-								candidates.add(method);
-						}
-						z = z.getSuperclass();
-					}
+		int[] count = new int[256];
+		/**
+		 * The number of samples that ended at each node.
+		 */
+		int[] self = new int[256];
+		int[] firstChild = new int[256];
+		int[] nextSibling = new int[256];
+
+		private long[] keys = createKeys(512);
+		private int[] values = new int[512];
+		private int keyCount = 0;
+
+		private static long[] createKeys(int size) {
+			long[] keys = new long[size];
+			Arrays.fill(keys, EMPTY_KEY);
+			return keys;
+		}
 
-					int synchronizedCount = 0;
-					for (Method m : candidates) {
-						if ((m.getModifiers() & Modifier.SYNCHRONIZED) > 0) {
-							synchronizedCount++;
-						}
-					}
+		private static int hash(long key) {
+			int h = (int) (key ^ (key >>> 32)) * 0x9e3779b9;
+			return h ^ (h >>> 16);
+		}
 
-					if (synchronizedCount == candidates.size()) {
-						isSynchronized = synchronizedCount == 0
-								? SynchronizedStatus.IS_NOT_SYNCHRONIZED
-								: SynchronizedStatus.IS_SYNCHRONIZED;
-					} else {
-						isSynchronized = SynchronizedStatus.UNKNOWN;
+		/**
+		 * Create a node. If parentNode is -1 this creates a new root.
+		 */
+		int createNode(int parentNode, int frameId) {
+			if (size == frame.length) {
+				int newLength = size * 2;
+				frame = Arrays.copyOf(frame, newLength);
+				parent = Arrays.copyOf(parent, newLength);
+				count = Arrays.copyOf(count, newLength);
+				self = Arrays.copyOf(self, newLength);
+				firstChild = Arrays.copyOf(firstChild, newLength);
+				nextSibling = Arrays.copyOf(nextSibling, newLength);
+			}
+			int node = size++;
+			frame[node] = frameId;
+			parent[node] = parentNode;
+			firstChild[node] = -1;
+			if (parentNode >= 0) {
+				nextSibling[node] = firstChild[parentNode];
+				firstChild[parentNode] = node;
+			} else {
+				nextSibling[node] = -1;
+			}
+			return node;
+		}
+
+		/**
+		 * Return the child of a node for a given frame, creating it if
+		 * necessary.
+		 */
+		int getChild(int parentNode, int frameId) {
+			long key = (((long) parentNode) << 32) | (frameId & 0xffffffffL);
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (keys[i] != EMPTY_KEY) {
+				if (keys[i] == key)
+					return values[i];
+				i = (i + 1) & mask;
+			}
+			int child = createNode(parentNode, frameId);
+			keys[i] = key;
+			values[i] = child;
+			keyCount++;
+			if (keyCount * 2 > keys.length)
+				rehash();
+			return child;
+		}
+
+		private void rehash() {
+			long[] oldKeys = keys;
+			int[] oldValues = values;
+			keys = createKeys(oldKeys.length * 2);
+			values = new int[oldValues.length * 2];
+			int mask = keys.length - 1;
+			for (int a = 0; a < oldKeys.length; a++) {
+				if (oldKeys[a] != EMPTY_KEY) {
+					int i = hash(oldKeys[a]) & mask;
+					while (keys[i] != EMPTY_KEY) {
+						i = (i + 1) & mask;
 					}
-					return isSynchronized;
-				} catch (Throwable t) {
-					// in my tests this was often a
-					// "java.lang.ClassNotFoundException:
-					// com.apple.laf.AquaPainter$AquaSingleImagePainter$$Lambda$175/0x0000000800db35f0",
-					// but of course this could also be a security issue. This
-					// is optional info: if ANYTHING comes up, just call it
-					// UNKNOWN
-					isSynchronized = SynchronizedStatus.UNKNOWN;
+					keys[i] = oldKeys[a];
+					values[i] = oldValues[a];
 				}
 			}
-			return isSynchronized;
 		}
 	}
 
-	enum SynchronizedStatus {
-		IS_SYNCHRONIZED, IS_NOT_SYNCHRONIZED, UNKNOWN
+	/**
+	 * The data collected for one thread.
+	 */
+	static class ThreadData {
+		final long id;
+		final int root;
+		String name;
+		int priority;
+		int sampleCount;
+		int[] stateCounts = new int[Thread.State.values().length];
+
+		/**
+		 * The leaf node from the most recent sample, or -1.
+		 */
+		int activeLeafNode = -1;
+
+		ThreadData(long id, int root) {
+			this.id = id;
+			this.root = root;
+		}
+
+		double getRunnableFraction() {
+			return ((double) stateCounts[Thread.State.RUNNABLE.ordinal()])
+					/ sampleCount;
+		}
 	}
 
 	static class ListenerInfo {
@@ -240,51 +363,38 @@ public class ThreadProfiler {
 		}
 	}
 
-	static class RootStackTraceElementNode extends StackTraceElementNode {
-
-		Map<Thread.State, AtomicInteger> stateMap = new TreeMap<>();
-
-		/**
-		 * The most recent leaf node from the last stacktrace profile
-		 */
-		StackTraceElementNode activeLeafNode;
-
-		RootStackTraceElementNode(StackTraceElement e) {
-			super(e);
-		}
-
-		public void catalogState(Thread.State state) {
-			AtomicInteger i = stateMap.get(state);
-			if (i == null) {
-				i = new AtomicInteger(1);
-				stateMap.put(state, i);
-			} else {
-				i.incrementAndGet();
-			}
-		}
-	}
-
 	private static DecimalFormat format = new DecimalFormat("#.0");
 	private static DecimalFormat intFormat = new DecimalFormat("#");
 
-	private static Comparator<StackTraceElementNode> NODE_FREQUENCY_COMPARATOR = new Comparator<StackTraceElementNode>() {
+	// sort highest-priority first, then the most active, then sort by name
+	private static Comparator<ThreadData> THREAD_COMPARATOR = new Comparator<ThreadData>() {
 		@Override
-		public int compare(StackTraceElementNode o1, StackTraceElementNode o2) {
-			int max1 = o1.getMaxFrequency();
-			int max2 = o2.getMaxFrequency();
-			int k = Integer.compare(max1, max2);
+		public int compare(ThreadData o1, ThreadData o2) {
+			int k = -Integer.compare(o1.priority, o2.priority);
+			if (k != 0)
+				return k;
+			k = -Double.compare(o1.getRunnableFraction(),
+					o2.getRunnableFraction());
+			if (k != 0)
+				return k;
+			k = compareString(o1.name, o2.name);
 			if (k != 0)
-				return -k;
-			return o1.compareTo(o2);
+				return k;
+			return Long.compare(o1.id, o2.id);
 		}
 	};
 
 	boolean active = false;
 	Thread profilingThread;
 	long sampleMillisInterval = 50;
+	int maxStackDepth = Integer.MAX_VALUE;
 	Runnable profilingRunnable;
 	Function<Thread, Boolean> threadFilter;
-	Map<Thread, RootStackTraceElementNode> stackTraceData = new HashMap<>();
+	ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	Thread[] threadBuffer = new Thread[64];
+	Map<Long, ThreadData> threadData = new HashMap<>();
+	FrameTable frames;
+	CallTree tree;
 	List<ListenerInfo> listeners = new LinkedList<>();
 
 	/**
@@ -353,79 +463,7 @@ public class ThreadProfiler {
 							lastTimestamp = currentMillis;
 						}
 
-						Map<Thread, StackTraceElement[]> map = Thread
-								.getAllStackTraces();
-
-						// prepare: prune the map, reverse the
-						// StackTraceElement[] order:
-						Iterator<Map.Entry<Thread, StackTraceElement[]>> iter = map
-								.entrySet().iterator();
-						while (iter.hasNext()) {
-							Map.Entry<Thread, StackTraceElement[]> entry = iter
-									.next();
-							Thread thread = entry.getKey();
-
-							if (thread instanceof ProfilerThread) {
-								iter.remove();
-								continue;
-							} else if (threadFilter != null
-									&& !threadFilter.apply(thread)) {
-								iter.remove();
-								continue;
-							}
-
-							// invert the order of StackTraceElements:
-							StackTraceElement[] elements = entry.getValue();
-
-							if (elements.length == 0) {
-								iter.remove();
-								continue;
-							}
-
-							for (int a = 0; a < elements.length / 2; a++) {
-								StackTraceElement t = elements[a];
-								elements[a] = elements[elements.length - 1 - a];
-								elements[elements.length - 1 - a] = t;
-							}
-						}
-
-						// record what's left:
-
-						synchronized (stackTraceData) {
-							for (RootStackTraceElementNode node : stackTraceData
-									.values()) {
-								node.activeLeafNode = null;
-							}
-							for (Map.Entry<Thread, StackTraceElement[]> entry : map
-									.entrySet()) {
-								Thread thread = entry.getKey();
-								StackTraceElement[] elements = entry.getValue();
-								RootStackTraceElementNode root = stackTraceData
-										.get(thread);
-								if (root == null) {
-									root = new RootStackTraceElementNode(
-											elements[0]);
-									stackTraceData.put(thread, root);
-								}
-								root.catalogState(thread.getState());
-								root.frequency++;
-								if (elements.length > 1) {
-									StackTraceElementNode node = root;
-									for (int a = 1; a < elements.length; a++) {
-										node = node.catalog(elements[a],
-												currentMillis);
-									}
-									if (root.frequency > 1) {
-										// don't log activeLeafNode when
-										// frequency == 0. When frequency == 0:
-										// only one tree is shown so the active
-										// node is implied/obvious
-										root.activeLeafNode = node;
-									}
-								}
-							}
-
-						}
+						sample();
 					}
 				} finally {
 					notifyListeners(true, System.currentTimeMillis());
@@ -436,6 +474,89 @@ public class ThreadProfiler {
 		reset();
 	}
 
+	/**
+	 * Fetch the stack traces of every thread that passes our filter and add
+	 * them to the call tree.
+	 */
+	private void sample() {
+		int threadCount = getAllThreads();
+		long[] ids = new long[threadCount];
+		int idCount = 0;
+		for (int a = 0; a < threadCount; a++) {
+			Thread thread = threadBuffer[a];
+			threadBuffer[a] = null;
+			if (thread instanceof ProfilerThread)
+				continue;
+			if (threadFilter != null && !threadFilter.apply(thread))
+				continue;
+			ids[idCount++] = thread.getId();
+		}
+		if (idCount == 0)
+			return;
+
+		// this only walks the stacks of the threads we asked for, instead
+		// of every thread in the JVM
+		ThreadInfo[] infos = threadMXBean
+				.getThreadInfo(Arrays.copyOf(ids, idCount), maxStackDepth);
+
+		synchronized (threadData) {
+			for (ThreadData d : threadData.values()) {
+				d.activeLeafNode = -1;
+			}
+			for (ThreadInfo info : infos) {
+				// a thread that died since we listed it has no ThreadInfo
+				if (info == null)
+					continue;
+				StackTraceElement[] elements = info.getStackTrace();
+				if (elements.length == 0)
+					continue;
+
+				ThreadData d = threadData.get(info.getThreadId());
+				if (d == null) {
+					d = new ThreadData(info.getThreadId(),
+							tree.createNode(-1, -1));
+					threadData.put(d.id, d);
+				}
+				d.name = info.getThreadName();
+				d.priority = info.getPriority();
+				d.stateCounts[info.getThreadState().ordinal()]++;
+				d.sampleCount++;
+
+				int node = d.root;
+				tree.count[node]++;
+				for (int a = elements.length - 1; a >= 0; a--) {
+					node = tree.getChild(node, frames.intern(elements[a]));
+					tree.count[node]++;
+				}
+				tree.self[node]++;
+				if (d.sampleCount > 1) {
+					// don't log activeLeafNode for the first sample: when
+					// only one tree is shown the active node is
+					// implied/obvious
+					d.activeLeafNode = node;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Store every live thread in {@link #threadBuffer} and return the number
+	 * of threads. Unlike <code>Thread.getAllStackTraces()</code> this doesn't
+	 * require walking any stacks.
+	 */
+	private int getAllThreads() {
+		ThreadGroup group = Thread.currentThread().getThreadGroup();
+		while (group.getParent() != null) {
+			group = group.getParent();
+		}
+		while (true) {
+			int count = group.enumerate(threadBuffer, true);
+			if (count < threadBuffer.length)
+				return count;
+			threadBuffer = new Thread[threadBuffer.length * 2];
+		}
+	}
+
 	private synchronized void notifyListeners(boolean force, long timestamp) {
 		Iterator<ListenerInfo> iter = listeners.iterator();
 		while (iter.hasNext()) {
@@ -456,6 +577,25 @@ public class ThreadProfiler {
 		sampleMillisInterval = millis;
 	}
 
+	/**
+	 * Assign the maximum number of frames collected from each stack trace. If
+	 * a stack trace is deeper than this then its outermost frames are
+	 * omitted. Lowering this reduces the cost of each sample.
+	 */
+	public synchronized void setMaxStackDepth(int maxStackDepth) {
+		if (maxStackDepth <= 0)
+			throw new IllegalArgumentException("maxStackDepth ("
+					+ maxStackDepth + ") must be positive");
+		this.maxStackDepth = maxStackDepth;
+	}
+
+	/**
+	 * Return the maximum number of frames collected from each stack trace.
+	 */
+	public synchronized int getMaxStackDepth() {
+		return maxStackDepth;
+	}
+
 	/**
 	 * Add a listener that will be notified after a given interval while this
 	 * profiler is running. Listeners are always notified when this profiler
@@ -523,87 +663,70 @@ public class ThreadProfiler {
 	/**
 	 * Return a String representation of all the data this profiler collected.
 	 */
-	public synchronized String getOutput() {
+	public String getOutput() {
 		StringBuilder sb = new StringBuilder();
+		synchronized (threadData) {
+			List<ThreadData> threads = new ArrayList<>(threadData.values());
+			threads.sort(THREAD_COMPARATOR);
 
-		// sort highest-priority first, then the most active, then sort by name
-		Comparator<Thread> comparator = new Comparator<Thread>() {
-
-			public int compare(Thread o1, Thread o2) {
-				int k = -Integer.compare(o1.getPriority(), o2.getPriority());
-				if (k != 0)
-					return k;
-
-				RootStackTraceElementNode n1 = stackTraceData.get(o1);
-				RootStackTraceElementNode n2 = stackTraceData.get(o2);
-
-				if (n1 == null && n2 != null) {
-					return -1;
-				} else if (n1 != null && n2 == null) {
-					return 1;
-				}
-
-				AtomicInteger r1 = n1.stateMap.get(Thread.State.RUNNABLE);
-				AtomicInteger r2 = n2.stateMap.get(Thread.State.RUNNABLE);
-				double q1 = r1 == null ? 0 : r1.intValue();
-				double q2 = r2 == null ? 0 : r2.intValue();
-				q1 = q1 / ((double) n1.frequency);
-				q2 = q2 / ((double) n2.frequency);
-
-				k = -Double.compare(q1, q2);
-				if (k != 0)
-					return k;
-
-				k = compareString(o1.getName(), o2.getName());
-				if (k != 0)
-					return k;
-				return Long.compare(o1.getId(), o2.getId());
+			int maxFrequency = 0;
+			for (ThreadData d : threads) {
+				maxFrequency = Math.max(maxFrequency, d.sampleCount);
 			}
 
-		};
-		Collection<Thread> threads = new TreeSet<>(comparator);
-
-		int maxFrequency = 0;
-		for (Map.Entry<Thread, RootStackTraceElementNode> entry : stackTraceData
-				.entrySet()) {
-			threads.add(entry.getKey());
-			maxFrequency = Math.max(maxFrequency, entry.getValue().frequency);
-		}
-
-		sb.append(intFormat.format(maxFrequency) + " samples collected.\n\n");
-
-		for (Thread thread : threads) {
-			RootStackTraceElementNode node = stackTraceData.get(thread);
-
-			float sum = 0;
-			for (AtomicInteger i : node.stateMap.values()) {
-				sum += i.intValue();
-			}
+			sb.append(
+					intFormat.format(maxFrequency) + " samples collected.\n\n");
+
+			for (ThreadData d : threads) {
+				StringBuilder stateStr = new StringBuilder();
+				for (Thread.State state : Thread.State.values()) {
+					int stateCount = d.stateCounts[state.ordinal()];
+					if (stateCount == 0)
+						continue;
+					float fraction = ((float) stateCount) / d.sampleCount
+							* 100;
+					String percent = format.format(fraction);
+					if (stateStr.length() > 0) {
+						stateStr.append(", ");
+					}
+					stateStr.append(state + "=" + percent + "%");
+				}
 
-			StringBuilder stateStr = new StringBuilder();
-			for (Map.Entry<Thread.State, AtomicInteger> e : node.stateMap
-					.entrySet()) {
-				float fraction = e.getValue().floatValue() / sum * 100;
-				String percent = format.format(fraction);
-				if (stateStr.length() > 0) {
-					stateStr.append(", ");
+				sb.append("-------- " + d.name + ", priority = " + d.priority
+						+ ", " + stateStr.toString() + "\n");
+				StringBuilder indent = new StringBuilder();
+				for (int child : getSortedChildren(d.root)) {
+					write(sb, child, d.sampleCount, indent, d.activeLeafNode);
 				}
-				stateStr.append(e.getKey() + "=" + percent + "%");
 			}
-
-			sb.append("-------- " + thread.getName() + ", priority = "
-					+ thread.getPriority() + ", " + stateStr.toString() + "\n");
-			int max = node.getMaxFrequency();
-			StringBuilder indent = new StringBuilder();
-			write(sb, node, max, indent, node.activeLeafNode);
 		}
 		return sb.toString();
 	}
 
-	private void write(StringBuilder output, StackTraceElementNode node,
-			int maxFrequency, StringBuilder indent,
-			StackTraceElementNode activeLeafNode) {
-		float fraction = node.frequency * 100f / maxFrequency;
+	/**
+	 * Return the children of a node, sorted with the most frequent first.
+	 */
+	private List<Integer> getSortedChildren(int node) {
+		List<Integer> children = new ArrayList<>();
+		for (int child = tree.firstChild[node]; child != -1; child = tree.nextSibling[child]) {
+			children.add(child);
+		}
+		children.sort(new Comparator<Integer>() {
+			@Override
+			public int compare(Integer n1, Integer n2) {
+				int k = -Integer.compare(tree.count[n1], tree.count[n2]);
+				if (k != 0)
+					return k;
+				return compareElements(frames.get(tree.frame[n1]),
+						frames.get(tree.frame[n2]));
+			}
+		});
+		return children;
+	}
+
+	private void write(StringBuilder output, int node, int maxFrequency,
+			StringBuilder indent, int activeLeafNode) {
+		float fraction = tree.count[node] * 100f / maxFrequency;
 		String percentStr = format.format(fraction);
 
 		output.append(percentStr);
@@ -624,12 +747,13 @@ public class ThreadProfiler {
 			output.append(indentation);
 		}
 
-		output.append(
-				node.element.getClassName() + "#" + node.element.getMethodName()
-						+ "(" + node.element.getFileName() + ":"
-						+ node.element.getLineNumber() + ")");
+		int frameId = tree.frame[node];
+		StackTraceElement element = frames.get(frameId);
+		output.append(element.getClassName() + "#" + element.getMethodName()
+				+ "(" + element.getFileName() + ":" + element.getLineNumber()
+				+ ")");
 
-		SynchronizedStatus s = node.getSynchronizedStatus();
+		SynchronizedStatus s = frames.getSynchronizedStatus(frameId);
 		if (s == SynchronizedStatus.IS_SYNCHRONIZED) {
 			output.append(" (synchronized)");
 		}
@@ -637,17 +761,72 @@ public class ThreadProfiler {
 		output.append("\n");
 		indent.append(" ");
 
-		TreeSet<StackTraceElementNode> children = new TreeSet<>(
-				NODE_FREQUENCY_COMPARATOR);
-		synchronized (node.children) {
-			children.addAll(node.children.keySet());
-		}
-		for (StackTraceElementNode child : children) {
+		for (int child : getSortedChildren(node)) {
 			write(output, child, maxFrequency, indent, activeLeafNode);
 		}
 		indent.delete(indent.length() - 1, indent.length());
 	}
 
+	/**
+	 * Return all the data this profiler collected in the "collapsed stack"
+	 * format used by flame graph tools.
+	 * <p>
+	 * Each line is a thread name followed by the methods of a call path
+	 * (outermost first), separated by semicolons, then a space and the number
+	 * of samples that ended in that call path. For example:
+	 * <code>main;Foo.main;Foo.run 12</code>
+	 */
+	public String getCollapsedStacks() {
+		Map<String, Integer> stacks = new TreeMap<>();
+		synchronized (threadData) {
+			StringBuilder path = new StringBuilder();
+			for (ThreadData d : threadData.values()) {
+				path.setLength(0);
+				path.append(escapeCollapsedName(d.name));
+				collapse(stacks, path, d.root);
+			}
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Integer> entry : stacks.entrySet()) {
+			sb.append(entry.getKey());
+			sb.append(' ');
+			sb.append(entry.getValue());
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	private void collapse(Map<String, Integer> stacks, StringBuilder path,
+			int node) {
+		int self = tree.self[node];
+		if (self > 0) {
+			String key = path.toString();
+			Integer oldValue = stacks.get(key);
+			stacks.put(key, oldValue == null ? self : oldValue + self);
+		}
+		int length = path.length();
+		for (int child = tree.firstChild[node]; child != -1; child = tree.nextSibling[child]) {
+			StackTraceElement element = frames.get(tree.frame[child]);
+			path.append(';');
+			path.append(escapeCollapsedName(element.getClassName()));
+			path.append('.');
+			path.append(escapeCollapsedName(element.getMethodName()));
+			collapse(stacks, path, child);
+			path.setLength(length);
+		}
+	}
+
+	/**
+	 * Remove characters that have special meaning in the collapsed stack
+	 * format.
+	 */
+	private static String escapeCollapsedName(String name) {
+		if (name == null)
+			return "null";
+		return name.replace(';', '_').replace('\n', ' ').replace('\r', ' ');
+	}
+
 	/**
 	 * Write {@link #getOutput()} to a File.
 	 */
@@ -667,12 +846,33 @@ public class ThreadProfiler {
 		}
 	}
 
+	/**
+	 * Write {@link #getCollapsedStacks()} to a File.
+	 */
+	public void writeCollapsedStacks(File file) throws IOException {
+		try (FileOutputStream fileOut = new FileOutputStream(file)) {
+			writeCollapsedStacks(fileOut);
+		}
+	}
+
+	/**
+	 * Write {@link #getCollapsedStacks()} to an OutputStream.
+	 */
+	public void writeCollapsedStacks(OutputStream fileOut) throws IOException {
+		try (OutputStreamWriter writer = new OutputStreamWriter(fileOut,
+				Charset.forName("UTF-8"))) {
+			writer.write(getCollapsedStacks());
+		}
+	}
+
 	/**
 	 * Clear all profiler data.
 	 */
 	public void reset() {
-		synchronized (stackTraceData) {
-			stackTraceData.clear();
+		synchronized (threadData) {
+			threadData.clear();
+			frames = new FrameTable();
+			tree = new CallTree();
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,324 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ *
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ *
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.util;
+
+import java.lang.ref.Cleaner;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * This keeps a strong reference to keys and a weak reference to values, and
+ * is safe to use from several threads at once.
+ * <p>
+ * Unlike the {@link WeakValueMap}, callers never need to purge this map: when
+ * a value is garbage collected a shared {@link Cleaner} thread removes its
+ * entry. The {@link #computeIfAbsent(Object, Function)} method guarantees that
+ * if several threads request the same missing key at the same time then the
+ * value is only computed once, which makes this suitable as an interning table
+ * for expensive values (such as decoded images).
+ * <p>
+ * This map does not allow null keys or values.
+ *
+ * @param <K>
+ *            the key in a key/value pair. This maps keeps strong references to
+ *            the keys.
+ * @param <V>
+ *            the value in a key/value pair. The map keeps weak references to
+ *            the values.
+ */
+public class ConcurrentWeakValueMap<K, V> {
+
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	/**
+	 * This custom WeakReference also keeps track of our key.
+	 */
+	static class ValueReference<K, V> extends WeakReference<V> {
+		final K key;
+		final Cleaner.Cleanable cleanable;
+
+		ValueReference(ConcurrentWeakValueMap<K, V> owner, K key, V value) {
+			super(value);
+			this.key = key;
+			cleanable = CLEANER.register(value, new PurgeAction<>(owner, this));
+		}
+	}
+
+	/**
+	 * This removes an entry after its value is garbage collected. This must
+	 * not refer to the value, and it only weakly refers to the map so it
+	 * doesn't keep a discarded map in memory.
+	 */
+	static class PurgeAction<K, V> implements Runnable {
+		final WeakReference<ConcurrentWeakValueMap<K, V>> ownerRef;
+		final ValueReference<K, V> valueRef;
+
+		PurgeAction(ConcurrentWeakValueMap<K, V> owner,
+				ValueReference<K, V> valueRef) {
+			ownerRef = new WeakReference<>(owner);
+			this.valueRef = valueRef;
+		}
+
+		@Override
+		public void run() {
+			ConcurrentWeakValueMap<K, V> owner = ownerRef.get();
+			if (owner != null)
+				owner.purge(valueRef);
+		}
+	}
+
+	protected final ConcurrentHashMap<K, ValueReference<K, V>> map = new ConcurrentHashMap<>();
+
+	/**
+	 * The values that are currently being computed by
+	 * {@link #computeIfAbsent(Object, Function)}.
+	 */
+	private final ConcurrentHashMap<K, CompletableFuture<V>> pendingValues = new ConcurrentHashMap<>();
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder computeCount = new LongAdder();
+	private final LongAdder purgeCount = new LongAdder();
+
+	/**
+	 * Return the value associated with a key, or null if there is no value or
+	 * the value has been garbage collected.
+	 */
+	public V get(K key) {
+		Objects.requireNonNull(key);
+		V value = getValue(key);
+		if (value == null) {
+			missCount.increment();
+		} else {
+			hitCount.increment();
+		}
+		return value;
+	}
+
+	private V getValue(K key) {
+		ValueReference<K, V> ref = map.get(key);
+		if (ref == null)
+			return null;
+		V value = ref.get();
+		if (value == null)
+			purge(ref);
+		return value;
+	}
+
+	/**
+	 * Return true if this map contains a value for the given key.
+	 */
+	public boolean containsKey(K key) {
+		Objects.requireNonNull(key);
+		return getValue(key) != null;
+	}
+
+	/**
+	 * Associate a value with a key.
+	 *
+	 * @return the previous value associated with the key, or null.
+	 */
+	public V put(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		ValueReference<K, V> oldRef = map.put(key,
+				new ValueReference<>(this, key, value));
+		return release(oldRef);
+	}
+
+	/**
+	 * Remove the value associated with a key.
+	 *
+	 * @return the previous value associated with the key, or null.
+	 */
+	public V remove(K key) {
+		Objects.requireNonNull(key);
+		return release(map.remove(key));
+	}
+
+	/**
+	 * Unregister a reference that was removed from the map and return its
+	 * value.
+	 */
+	private V release(ValueReference<K, V> ref) {
+		if (ref == null)
+			return null;
+		V value = ref.get();
+		// this runs the PurgeAction now, which has no effect because the
+		// reference is no longer in the map
+		ref.cleanable.clean();
+		return value;
+	}
+
+	/**
+	 * Return the value associated with a key, or compute and store a new
+	 * value if there isn't one.
+	 * <p>
+	 * If several threads call this method with the same key at the same time
+	 * then the function is only invoked once; the other threads wait for its
+	 * result. The function is invoked without holding any locks, so it may
+	 * safely interact with this map (except to compute the same key).
+	 *
+	 * @param key
+	 *            the key to retrieve the value of.
+	 * @param function
+	 *            the function used to compute the value. If this returns null
+	 *            then nothing is stored and this method returns null. If this
+	 *            throws an exception then that exception is also thrown to all
+	 *            the threads waiting for this value.
+	 * @return the existing or computed value.
+	 */
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(function);
+		V value = getValue(key);
+		if (value != null) {
+			hitCount.increment();
+			return value;
+		}
+		missCount.increment();
+
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> existingFuture = pendingValues.putIfAbsent(key,
+				future);
+		if (existingFuture != null) {
+			try {
+				return existingFuture.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw e;
+			}
+		}
+
+		try {
+			// another thread may have stored the value after we checked
+			value = getValue(key);
+			if (value == null) {
+				value = function.apply(key);
+				computeCount.increment();
+				if (value != null)
+					put(key, value);
+			}
+			future.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			pendingValues.remove(key, future);
+		}
+	}
+
+	/**
+	 * Return the number of entries in this map. This may include entries
+	 * whose values were just garbage collected but that the Cleaner hasn't
+	 * removed yet.
+	 */
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * Remove all the key/value pairs in this map.
+	 */
+	public void clear() {
+		for (ValueReference<K, V> ref : map.values()) {
+			if (map.remove(ref.key, ref))
+				release(ref);
+		}
+	}
+
+	/**
+	 * Remove entries whose values have been garbage collected. It's never
+	 * necessary to call this method, because the Cleaner automatically
+	 * removes these entries, but this lets a caller remove them sooner.
+	 *
+	 * @return the number of removed entries.
+	 */
+	public int purge() {
+		int returnValue = 0;
+		for (ValueReference<K, V> ref : map.values()) {
+			if (ref.get() == null && purge(ref))
+				returnValue++;
+		}
+		return returnValue;
+	}
+
+	private boolean purge(ValueReference<K, V> ref) {
+		if (map.remove(ref.key, ref)) {
+			purgeCount.increment();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return the number of times a value was found by {@link #get(Object)} or
+	 * {@link #computeIfAbsent(Object, Function)}.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * Return the number of times a value was not found by
+	 * {@link #get(Object)} or {@link #computeIfAbsent(Object, Function)}.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * Return the number of times {@link #computeIfAbsent(Object, Function)}
+	 * invoked its function.
+	 */
+	public long getComputeCount() {
+		return computeCount.sum();
+	}
+
+	/**
+	 * Return the number of entries that were removed because their values
+	 * were garbage collected.
+	 */
+	public long getPurgeCount() {
+		return purgeCount.sum();
+	}
+
+	/**
+	 * Convert this map of weakly referenced data to a regular java.util.Map
+	 * with strong references.
+	 */
+	public Map<K, V> toMap() {
+		Map<K, V> returnValue = new HashMap<>(map.size());
+		for (ValueReference<K, V> ref : map.values()) {
+			V value = ref.get();
+			if (value != null)
+				returnValue.put(ref.key, value);
+		}
+		return returnValue;
+	}
+
+	@Override
+	public String toString() {
+		return toMap().toString();
+	}
+}
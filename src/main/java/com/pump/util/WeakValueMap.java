@@ -28,6 +28,10 @@ import java.util.Objects;
  * independent timer to also purge references.)
  * <p>
  * This map does not allow null keys or values.
+ * <p>
+ * This class is not designed for concurrent access. See the
+ * {@link ConcurrentWeakValueMap} for a thread-safe alternative that purges
+ * itself.
  * 
  * @param <K>
  *            the key in a key/value pair. This maps keeps strong references to
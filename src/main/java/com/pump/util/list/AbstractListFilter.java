@@ -13,12 +13,50 @@ package com.pump.util.list;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 public abstract class AbstractListFilter<T> implements ListFilter<T> {
 
+	/**
+	 * This ChangeEvent describes how a filter changed, so a filtered list can
+	 * avoid reevaluating every element.
+	 */
+	public static class FilterChangeEvent extends ChangeEvent {
+		private static final long serialVersionUID = 1L;
+
+		public enum Type {
+			/**
+			 * The filter now accepts a subset of what it used to accept. For
+			 * example: the user typed another character in a search field.
+			 */
+			NARROWED,
+			/**
+			 * The filter now accepts a superset of what it used to accept. For
+			 * example: the user deleted a character from a search field.
+			 */
+			WIDENED,
+			/**
+			 * The filter changed in some other way.
+			 */
+			CHANGED
+		}
+
+		private final Type type;
+
+		public FilterChangeEvent(Object source, Type type) {
+			super(source);
+			Objects.requireNonNull(type);
+			this.type = type;
+		}
+
+		public Type getType() {
+			return type;
+		}
+	}
+
 	private List<ChangeListener> changeListeners = new ArrayList<>();
 	private boolean active = true;
 	private UncaughtExceptionHandler uncaughtExceptionHandler;
@@ -27,6 +65,7 @@ public abstract class AbstractListFilter<T> implements ListFilter<T> {
 	}
 
 	protected AbstractListFilter(boolean active) {
+		this.active = active;
 	}
 
 	@Override
@@ -48,7 +87,9 @@ public abstract class AbstractListFilter<T> implements ListFilter<T> {
 		if (this.active == active)
 			return;
 		this.active = active;
-		fireChangeListeners();
+		// an inactive filter accepts everything
+		fireChangeListeners(active ? FilterChangeEvent.Type.NARROWED
+				: FilterChangeEvent.Type.WIDENED);
 	}
 
 	/**
@@ -57,12 +98,29 @@ public abstract class AbstractListFilter<T> implements ListFilter<T> {
 	 * This should be called when the filter has fundamentally changed what
 	 * it may accept. For example: if this filter is based on text in a text field,
 	 * then every time that text field is changed we should call this method
+	 * <p>
+	 * If you know the filter only became narrower or wider you should call
+	 * {@link #fireChangeListeners(FilterChangeEvent.Type)} instead.
 	 */
 	public void fireChangeListeners() {
+		fireChangeListeners(FilterChangeEvent.Type.CHANGED);
+	}
+
+	/**
+	 * Fire all ChangeListeners with a {@link FilterChangeEvent}.
+	 * 
+	 * @param type
+	 *            how this filter changed. A filtered list can use this to
+	 *            only reevaluate the elements that may be affected: if this
+	 *            filter became narrower then only elements it used to accept
+	 *            need to be evaluated.
+	 */
+	public void fireChangeListeners(FilterChangeEvent.Type type) {
+		FilterChangeEvent event = new FilterChangeEvent(this, type);
 		for (ChangeListener changeListener : changeListeners
 				.toArray(new ChangeListener[changeListeners.size()])) {
 			try {
-				changeListener.stateChanged(new ChangeEvent(this));
+				changeListener.stateChanged(event);
 			} catch (Exception e) {
 				UncaughtExceptionHandler u = getUncaughtExceptionHandler();
 				if (u != null) {
@@ -83,4 +141,4 @@ public abstract class AbstractListFilter<T> implements ListFilter<T> {
 		this.uncaughtExceptionHandler = uncaughtExceptionHandler;
 	}
 
-}
\ No newline at end of file
+}
@@ -44,9 +44,14 @@ public class AddElementsEvent<T> extends ListEvent<T> {
 		list.addAll(getIndex(), getNewElements());
 	}
 
+	@Override
+	public void revert(List<T> list) {
+		list.subList(getIndex(), getIndex() + getNewElements().size()).clear();
+	}
+
 	@Override
 	protected ListDataEvent createListDataEvent() {
 		return new ListDataEvent(getSource(), ListDataEvent.INTERVAL_ADDED,
-				getIndex(), getIndex() + getNewElements().size());
+				getIndex(), getIndex() + getNewElements().size() - 1);
 	}
 }
\ No newline at end of file
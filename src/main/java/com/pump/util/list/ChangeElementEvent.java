@@ -49,6 +49,11 @@ public class ChangeElementEvent<T> extends ListEvent<T> {
 		list.set(getIndex(), getNewElement());
 	}
 
+	@Override
+	public void revert(List<T> list) {
+		list.set(getIndex(), getOldElement());
+	}
+
 	@Override
 	protected ListDataEvent createListDataEvent() {
 		return new ListDataEvent(getSource(), ListDataEvent.CONTENTS_CHANGED,
@@ -0,0 +1,450 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.util.list;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/**
+ * A List that stores its elements in a series of small arrays ("chunks") so
+ * {@link #snapshot()} can return an immutable copy of this list that shares
+ * all of its storage with this list.
+ * <p>
+ * Chunks are copied on write: after a snapshot is taken the first
+ * modification of any chunk copies only that chunk. So taking a snapshot
+ * costs O(n/512) and each later edit copies at most 512 elements, no matter
+ * how large this list is.
+ * <p>
+ * Random access costs a binary search over the chunks, so {@link #get(int)}
+ * is slightly slower than an <code>ArrayList</code>. Inserting and removing
+ * elements in the middle of a large list is much faster than an
+ * <code>ArrayList</code>.
+ * <p>
+ * This class is not thread-safe.
+ * 
+ * @param <T>
+ */
+public class ChunkedList<T> extends AbstractList<T>
+		implements RandomAccess, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	static final int CHUNK_SIZE = 512;
+
+	private static class Chunk {
+		final Object[] elements;
+		int size;
+
+		/**
+		 * The owner token of the list that may modify this chunk in place. All
+		 * other lists must copy this chunk before they modify it.
+		 */
+		Object owner;
+
+		Chunk(Object owner) {
+			this.owner = owner;
+			elements = new Object[CHUNK_SIZE];
+		}
+
+		Chunk(Object owner, Chunk copy) {
+			this.owner = owner;
+			elements = copy.elements.clone();
+			size = copy.size;
+		}
+	}
+
+	private transient Chunk[] chunks;
+	private transient int[] starts;
+	private transient int chunkCount, size;
+	private transient Object owner;
+	private final boolean immutable;
+
+	/**
+	 * Create an empty ChunkedList.
+	 */
+	public ChunkedList() {
+		this(false);
+	}
+
+	/**
+	 * Create a ChunkedList that contains all the elements of the argument.
+	 */
+	public ChunkedList(Collection<? extends T> elements) {
+		this(false);
+		addAll(elements);
+	}
+
+	private ChunkedList(boolean immutable) {
+		this.immutable = immutable;
+		owner = new Object();
+		chunks = new Chunk[4];
+		starts = new int[4];
+	}
+
+	/**
+	 * Return an immutable copy of this list. This copy shares its storage
+	 * with this list until this list is modified.
+	 */
+	public ChunkedList<T> snapshot() {
+		if (immutable)
+			return this;
+		ChunkedList<T> returnValue = new ChunkedList<>(true);
+		returnValue.chunks = Arrays.copyOf(chunks, Math.max(1, chunkCount));
+		returnValue.starts = Arrays.copyOf(starts, Math.max(1, chunkCount));
+		returnValue.chunkCount = chunkCount;
+		returnValue.size = size;
+
+		// now none of our chunks can be modified in place:
+		owner = new Object();
+		return returnValue;
+	}
+
+	/**
+	 * Return true if this list was created by {@link #snapshot()} and cannot
+	 * be modified.
+	 */
+	public boolean isImmutable() {
+		return immutable;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		Objects.checkIndex(index, size);
+		int c = getChunkIndex(index);
+		return (T) chunks[c].elements[index - starts[c]];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T set(int index, T element) {
+		checkMutable();
+		Objects.checkIndex(index, size);
+		int c = getChunkIndex(index);
+		Chunk chunk = getWritableChunk(c);
+		int i = index - starts[c];
+		T oldElement = (T) chunk.elements[i];
+		chunk.elements[i] = element;
+		return oldElement;
+	}
+
+	@Override
+	public void add(int index, T element) {
+		checkMutable();
+		Objects.checkIndex(index, size + 1);
+		int c;
+		if (chunkCount == 0) {
+			insertChunk(0, new Chunk(owner), 0);
+			c = 0;
+		} else if (index == size) {
+			c = chunkCount - 1;
+		} else {
+			c = getChunkIndex(index);
+		}
+
+		Chunk chunk = getWritableChunk(c);
+		if (chunk.size == CHUNK_SIZE) {
+			if (index == size) {
+				// appending: start a new chunk instead of splitting
+				c++;
+				insertChunk(c, new Chunk(owner), size);
+			} else {
+				Chunk next = new Chunk(owner);
+				int half = CHUNK_SIZE / 2;
+				System.arraycopy(chunk.elements, half, next.elements, 0,
+						CHUNK_SIZE - half);
+				Arrays.fill(chunk.elements, half, CHUNK_SIZE, null);
+				chunk.size = half;
+				next.size = CHUNK_SIZE - half;
+				insertChunk(c + 1, next, starts[c] + half);
+				if (index - starts[c] > half)
+					c++;
+			}
+			chunk = chunks[c];
+		}
+
+		int i = index - starts[c];
+		System.arraycopy(chunk.elements, i, chunk.elements, i + 1,
+				chunk.size - i);
+		chunk.elements[i] = element;
+		chunk.size++;
+		adjustStarts(c + 1, 1);
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends T> c) {
+		return addAll(size, c);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean addAll(int index, Collection<? extends T> c) {
+		checkMutable();
+		Objects.checkIndex(index, size + 1);
+		Object[] array = c.toArray();
+		if (index < size) {
+			for (int a = 0; a < array.length; a++) {
+				add(index + a, (T) array[a]);
+			}
+			return array.length > 0;
+		}
+
+		// appending is the common case, so fill up chunks directly:
+		int k = 0;
+		while (k < array.length) {
+			Chunk chunk;
+			int ci;
+			if (chunkCount > 0
+					&& chunks[chunkCount - 1].size < CHUNK_SIZE) {
+				ci = chunkCount - 1;
+				chunk = getWritableChunk(ci);
+			} else {
+				ci = chunkCount;
+				chunk = new Chunk(owner);
+				insertChunk(ci, chunk, size);
+			}
+			int length = Math.min(array.length - k, CHUNK_SIZE - chunk.size);
+			System.arraycopy(array, k, chunk.elements, chunk.size, length);
+			chunk.size += length;
+			size += length;
+			k += length;
+		}
+		if (array.length > 0)
+			modCount++;
+		return array.length > 0;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T remove(int index) {
+		checkMutable();
+		Objects.checkIndex(index, size);
+		int c = getChunkIndex(index);
+		Chunk chunk = getWritableChunk(c);
+		int i = index - starts[c];
+		T oldElement = (T) chunk.elements[i];
+		System.arraycopy(chunk.elements, i + 1, chunk.elements, i,
+				chunk.size - i - 1);
+		chunk.size--;
+		chunk.elements[chunk.size] = null;
+		if (chunk.size == 0) {
+			removeChunk(c);
+			adjustStarts(c, -1);
+		} else {
+			adjustStarts(c + 1, -1);
+			if (c + 1 < chunkCount
+					&& chunk.size + chunks[c + 1].size <= CHUNK_SIZE / 2) {
+				// merge small neighbors so the chunks don't fragment
+				Chunk next = chunks[c + 1];
+				System.arraycopy(next.elements, 0, chunk.elements, chunk.size,
+						next.size);
+				chunk.size += next.size;
+				removeChunk(c + 1);
+			}
+		}
+		size--;
+		modCount++;
+		return oldElement;
+	}
+
+	@Override
+	public boolean removeAll(final Collection<?> c) {
+		Objects.requireNonNull(c);
+		return removeIf(new Predicate<T>() {
+			@Override
+			public boolean test(T t) {
+				return c.contains(t);
+			}
+		});
+	}
+
+	@Override
+	public boolean retainAll(final Collection<?> c) {
+		Objects.requireNonNull(c);
+		return removeIf(new Predicate<T>() {
+			@Override
+			public boolean test(T t) {
+				return !c.contains(t);
+			}
+		});
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean removeIf(Predicate<? super T> filter) {
+		checkMutable();
+		Object[] kept = new Object[size];
+		int keptCount = 0;
+		for (int c = 0; c < chunkCount; c++) {
+			for (int i = 0; i < chunks[c].size; i++) {
+				T element = (T) chunks[c].elements[i];
+				if (!filter.test(element))
+					kept[keptCount++] = element;
+			}
+		}
+		if (keptCount == size)
+			return false;
+
+		// rebuilding the chunks is O(n), removing one element at a time is not
+		clear();
+		addAll((List<T>) Arrays.asList(kept).subList(0, keptCount));
+		return true;
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		checkMutable();
+		if (fromIndex == 0 && toIndex == size) {
+			clear();
+			return;
+		}
+		for (int a = toIndex - 1; a >= fromIndex; a--) {
+			remove(a);
+		}
+	}
+
+	@Override
+	public void clear() {
+		checkMutable();
+		chunks = new Chunk[4];
+		starts = new int[4];
+		chunkCount = 0;
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public Object[] toArray() {
+		Object[] returnValue = new Object[size];
+		copyInto(returnValue);
+		return returnValue;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <S> S[] toArray(S[] a) {
+		if (a.length < size)
+			a = (S[]) java.lang.reflect.Array
+					.newInstance(a.getClass().getComponentType(), size);
+		copyInto(a);
+		if (a.length > size)
+			a[size] = null;
+		return a;
+	}
+
+	private void copyInto(Object[] dest) {
+		for (int c = 0; c < chunkCount; c++) {
+			System.arraycopy(chunks[c].elements, 0, dest, starts[c],
+					chunks[c].size);
+		}
+	}
+
+	private void checkMutable() {
+		if (immutable)
+			throw new UnsupportedOperationException(
+					"This list is an immutable snapshot.");
+	}
+
+	/**
+	 * Return the index of the chunk that contains the element at the given
+	 * index.
+	 */
+	private int getChunkIndex(int index) {
+		int low = 0;
+		int high = chunkCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (starts[mid] <= index) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	private Chunk getWritableChunk(int c) {
+		Chunk chunk = chunks[c];
+		if (chunk.owner != owner) {
+			chunk = new Chunk(owner, chunk);
+			chunks[c] = chunk;
+		}
+		return chunk;
+	}
+
+	private void insertChunk(int c, Chunk chunk, int start) {
+		if (chunkCount == chunks.length) {
+			chunks = Arrays.copyOf(chunks, chunkCount * 2);
+			starts = Arrays.copyOf(starts, chunkCount * 2);
+		}
+		System.arraycopy(chunks, c, chunks, c + 1, chunkCount - c);
+		System.arraycopy(starts, c, starts, c + 1, chunkCount - c);
+		chunks[c] = chunk;
+		starts[c] = start;
+		chunkCount++;
+	}
+
+	private void removeChunk(int c) {
+		System.arraycopy(chunks, c + 1, chunks, c, chunkCount - c - 1);
+		System.arraycopy(starts, c + 1, starts, c, chunkCount - c - 1);
+		chunkCount--;
+		chunks[chunkCount] = null;
+	}
+
+	private void adjustStarts(int fromChunk, int delta) {
+		for (int c = fromChunk; c < chunkCount; c++) {
+			starts[c] += delta;
+		}
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (int c = 0; c < chunkCount; c++) {
+			for (int i = 0; i < chunks[c].size; i++) {
+				out.writeObject(chunks[c].elements[i]);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		owner = new Object();
+		chunks = new Chunk[4];
+		starts = new int[4];
+		int newSize = in.readInt();
+		while (size < newSize) {
+			Chunk chunk = new Chunk(owner);
+			chunk.size = Math.min(CHUNK_SIZE, newSize - size);
+			for (int i = 0; i < chunk.size; i++) {
+				chunk.elements[i] = in.readObject();
+			}
+			insertChunk(chunkCount, chunk, size);
+			size += chunk.size;
+		}
+	}
+}
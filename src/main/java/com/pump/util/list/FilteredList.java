@@ -0,0 +1,622 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.util.list;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.swing.event.ListDataEvent;
+
+import com.pump.util.list.AbstractListFilter.FilterChangeEvent;
+
+/**
+ * This maintains a copy of a list and the subset of that copy that a
+ * {@link ListFilter} accepts, and updates both incrementally.
+ * <p>
+ * A {@link ListEvent} only evaluates the filter against the elements it adds
+ * or changes. When the filter changes this only evaluates the elements that
+ * may be affected: if the filter became narrower only accepted elements are
+ * evaluated, and if it became wider only rejected elements are evaluated.
+ * If {@link #setParallel(boolean)} is enabled then large evaluations are
+ * split across the common <code>ForkJoinPool</code>.
+ * <p>
+ * Every change is reported as a series of <code>ListDataEvents</code> that
+ * describe the smallest intervals that changed. (If a change is very
+ * fragmented this reports one coarse change instead of hundreds of small
+ * intervals.)
+ * <p>
+ * This class is not thread-safe.
+ * 
+ * @param <T>
+ */
+abstract class FilteredList<T> {
+
+	/**
+	 * The minimum number of elements to evaluate before the work is split
+	 * across several threads (if parallel evaluation is enabled).
+	 */
+	static final int PARALLEL_THRESHOLD = 10000;
+
+	/**
+	 * Events that modify more than this many elements rebuild our data in
+	 * one pass instead of modifying it one element at a time.
+	 */
+	static final int BULK_THRESHOLD = 64;
+
+	/**
+	 * If a change is described by more than this many intervals then one
+	 * coarse change is reported instead.
+	 */
+	static final int MAX_INTERVALS = 100;
+
+	/**
+	 * A list of booleans that keeps track of how many true values it
+	 * contains, so we can convert an index in the master list to an index in
+	 * the list of accepted elements without visiting every element.
+	 */
+	private static class FlagList {
+		static final int CHUNK_SIZE = 1024;
+
+		private static class Chunk {
+			boolean[] values = new boolean[CHUNK_SIZE];
+			int size, trueCount;
+		}
+
+		List<Chunk> chunks = new ArrayList<>();
+		int size;
+
+		FlagList() {
+		}
+
+		FlagList(boolean[] values) {
+			for (int k = 0; k < values.length; k += CHUNK_SIZE) {
+				Chunk chunk = new Chunk();
+				chunk.size = Math.min(CHUNK_SIZE, values.length - k);
+				System.arraycopy(values, k, chunk.values, 0, chunk.size);
+				for (int i = 0; i < chunk.size; i++) {
+					if (chunk.values[i])
+						chunk.trueCount++;
+				}
+				chunks.add(chunk);
+			}
+			size = values.length;
+		}
+
+		boolean[] toArray() {
+			boolean[] returnValue = new boolean[size];
+			int k = 0;
+			for (Chunk chunk : chunks) {
+				System.arraycopy(chunk.values, 0, returnValue, k, chunk.size);
+				k += chunk.size;
+			}
+			return returnValue;
+		}
+
+		/**
+		 * Return the number of true values before the given index.
+		 */
+		int rank(int index) {
+			int returnValue = 0;
+			for (Chunk chunk : chunks) {
+				if (index < chunk.size) {
+					for (int i = 0; i < index; i++) {
+						if (chunk.values[i])
+							returnValue++;
+					}
+					return returnValue;
+				}
+				index -= chunk.size;
+				returnValue += chunk.trueCount;
+			}
+			return returnValue;
+		}
+
+		boolean set(int index, boolean value) {
+			for (Chunk chunk : chunks) {
+				if (index < chunk.size) {
+					boolean oldValue = chunk.values[index];
+					chunk.values[index] = value;
+					if (oldValue && !value) {
+						chunk.trueCount--;
+					} else if (value && !oldValue) {
+						chunk.trueCount++;
+					}
+					return oldValue;
+				}
+				index -= chunk.size;
+			}
+			throw new IndexOutOfBoundsException();
+		}
+
+		void insert(int index, boolean value) {
+			int c = 0;
+			while (c < chunks.size() - 1 && index > chunks.get(c).size) {
+				index -= chunks.get(c).size;
+				c++;
+			}
+			if (chunks.isEmpty()) {
+				chunks.add(new Chunk());
+			}
+			Chunk chunk = chunks.get(c);
+			if (chunk.size == CHUNK_SIZE) {
+				Chunk next = new Chunk();
+				int half = CHUNK_SIZE / 2;
+				next.size = CHUNK_SIZE - half;
+				System.arraycopy(chunk.values, half, next.values, 0,
+						next.size);
+				for (int i = 0; i < next.size; i++) {
+					if (next.values[i])
+						next.trueCount++;
+				}
+				chunk.size = half;
+				chunk.trueCount -= next.trueCount;
+				chunks.add(c + 1, next);
+				if (index > half) {
+					index -= half;
+					chunk = next;
+				}
+			}
+			System.arraycopy(chunk.values, index, chunk.values, index + 1,
+					chunk.size - index);
+			chunk.values[index] = value;
+			chunk.size++;
+			if (value)
+				chunk.trueCount++;
+			size++;
+		}
+
+		boolean remove(int index) {
+			for (int c = 0; c < chunks.size(); c++) {
+				Chunk chunk = chunks.get(c);
+				if (index < chunk.size) {
+					boolean value = chunk.values[index];
+					System.arraycopy(chunk.values, index + 1, chunk.values,
+							index, chunk.size - index - 1);
+					chunk.size--;
+					if (value)
+						chunk.trueCount--;
+					if (chunk.size == 0)
+						chunks.remove(c);
+					size--;
+					return value;
+				}
+				index -= chunk.size;
+			}
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * This converts a series of single-element additions and removals into
+	 * intervals.
+	 * <p>
+	 * Each addition/removal is relative to the state of the list after all
+	 * the previous additions/removals.
+	 */
+	private static class IntervalBuilder {
+		List<int[]> intervals = new ArrayList<>();
+		int type = -1;
+		int start, length;
+
+		void removed(int index) {
+			if (type == ListDataEvent.INTERVAL_REMOVED && index == start) {
+				length++;
+			} else {
+				flush();
+				type = ListDataEvent.INTERVAL_REMOVED;
+				start = index;
+				length = 1;
+			}
+		}
+
+		void added(int index) {
+			if (type == ListDataEvent.INTERVAL_ADDED
+					&& index == start + length) {
+				length++;
+			} else {
+				flush();
+				type = ListDataEvent.INTERVAL_ADDED;
+				start = index;
+				length = 1;
+			}
+		}
+
+		void flush() {
+			if (type != -1)
+				intervals.add(new int[] { type, start, start + length - 1 });
+			type = -1;
+		}
+	}
+
+	/**
+	 * Evaluates a range of elements, splitting the work in half until each
+	 * task is small enough.
+	 */
+	private class EvaluateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final List<T> values;
+		final int[] indices;
+		final boolean[] results;
+		final int start, end;
+
+		EvaluateTask(List<T> values, int[] indices, boolean[] results,
+				int start, int end) {
+			this.values = values;
+			this.indices = indices;
+			this.results = results;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= PARALLEL_THRESHOLD / 2) {
+				evaluate(values, indices, results, start, end);
+			} else {
+				int mid = (start + end) >>> 1;
+				invokeAll(new EvaluateTask(values, indices, results, start,
+						mid), new EvaluateTask(values, indices, results, mid,
+						end));
+			}
+		}
+	}
+
+	private final Object source;
+	private final ListFilter<T> filter;
+	private List<T> elements = new ChunkedList<>();
+	private FlagList flags = new FlagList();
+	private List<T> acceptedElements = new ChunkedList<>();
+	private volatile boolean parallel = false;
+
+	/**
+	 * @param source
+	 *            the source of the ListDataEvents this object fires.
+	 * @param filter
+	 *            the optional filter to apply.
+	 */
+	FilteredList(Object source, ListFilter<T> filter) {
+		this.source = source;
+		this.filter = filter;
+	}
+
+	protected abstract void fireListDataEvent(ListDataEvent event);
+
+	/**
+	 * Control whether large evaluations are split across several threads.
+	 * This is off by default, because it requires a ListFilter that is
+	 * thread-safe.
+	 */
+	void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Return whether large evaluations are split across several threads.
+	 */
+	boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Return the elements the filter accepts. This list should not be
+	 * modified.
+	 */
+	List<T> getAcceptedElements() {
+		return acceptedElements;
+	}
+
+	/**
+	 * Replace all the elements in this list.
+	 */
+	void setElements(Collection<? extends T> newElements) {
+		List<T> values = new ArrayList<>(newElements);
+		boolean[] newFlags = evaluate(values, null);
+		List<T> newAcceptedElements = new ArrayList<>();
+		for (int a = 0; a < values.size(); a++) {
+			if (newFlags[a])
+				newAcceptedElements.add(values.get(a));
+		}
+
+		int oldSize = acceptedElements.size();
+		elements = new ChunkedList<>(values);
+		flags = new FlagList(newFlags);
+		acceptedElements = new ChunkedList<>(newAcceptedElements);
+		fireCoarseChange(oldSize, acceptedElements.size());
+	}
+
+	/**
+	 * Apply an event from the master list.
+	 */
+	void process(ListEvent<T> event) {
+		if (event instanceof AddElementsEvent) {
+			AddElementsEvent<T> e = (AddElementsEvent<T>) event;
+			add(e.getIndex(), e.getNewElements());
+		} else if (event instanceof RemoveElementsEvent) {
+			remove(((RemoveElementsEvent<T>) event).getRemovedElements()
+					.keySet());
+		} else if (event instanceof ChangeElementEvent) {
+			ChangeElementEvent<T> e = (ChangeElementEvent<T>) event;
+			set(e.getIndex(), e.getNewElement());
+		} else if (event instanceof ReplaceElementsEvent) {
+			setElements(((ReplaceElementsEvent<T>) event).getNewElements());
+		} else {
+			throw new IllegalArgumentException("Unsupported event: "
+					+ event.getClass().getName());
+		}
+	}
+
+	private void add(int index, List<T> newElements) {
+		List<T> values = new ArrayList<>(newElements);
+		boolean[] newFlags = evaluate(values, null);
+		int acceptedIndex = flags.rank(index);
+		List<T> added = new ArrayList<>();
+		for (int a = 0; a < values.size(); a++) {
+			if (newFlags[a])
+				added.add(values.get(a));
+		}
+
+		elements.addAll(index, values);
+		if (values.size() > BULK_THRESHOLD) {
+			boolean[] oldFlags = flags.toArray();
+			boolean[] allFlags = new boolean[oldFlags.length + values.size()];
+			System.arraycopy(oldFlags, 0, allFlags, 0, index);
+			System.arraycopy(newFlags, 0, allFlags, index, newFlags.length);
+			System.arraycopy(oldFlags, index, allFlags, index + values.size(),
+					oldFlags.length - index);
+			flags = new FlagList(allFlags);
+		} else {
+			for (int a = 0; a < values.size(); a++) {
+				flags.insert(index + a, newFlags[a]);
+			}
+		}
+
+		if (!added.isEmpty()) {
+			acceptedElements.addAll(acceptedIndex, added);
+			fireListDataEvent(new ListDataEvent(source,
+					ListDataEvent.INTERVAL_ADDED, acceptedIndex, acceptedIndex
+							+ added.size() - 1));
+		}
+	}
+
+	private void remove(Collection<Integer> indices) {
+		if (indices.size() > BULK_THRESHOLD) {
+			removeBulk(indices);
+			return;
+		}
+
+		List<Integer> descendingIndices = new ArrayList<>(indices);
+		Collections.sort(descendingIndices, Collections.reverseOrder());
+		IntervalBuilder intervals = new IntervalBuilder();
+		for (int index : descendingIndices) {
+			int acceptedIndex = flags.rank(index);
+			elements.remove(index);
+			if (flags.remove(index)) {
+				// removing in descending order: each interval ends where the
+				// previous one started
+				if (intervals.type == ListDataEvent.INTERVAL_REMOVED
+						&& acceptedIndex == intervals.start - 1) {
+					intervals.start--;
+					intervals.length++;
+				} else {
+					flushRemoval(intervals);
+					intervals.type = ListDataEvent.INTERVAL_REMOVED;
+					intervals.start = acceptedIndex;
+					intervals.length = 1;
+				}
+			}
+		}
+		flushRemoval(intervals);
+	}
+
+	/**
+	 * Remove the current interval from our accepted elements and then fire
+	 * an event describing it.
+	 */
+	private void flushRemoval(IntervalBuilder intervals) {
+		if (intervals.type == -1)
+			return;
+		acceptedElements.subList(intervals.start,
+				intervals.start + intervals.length).clear();
+		fireListDataEvent(new ListDataEvent(source,
+				ListDataEvent.INTERVAL_REMOVED, intervals.start,
+				intervals.start + intervals.length - 1));
+		intervals.type = -1;
+	}
+
+	private void removeBulk(Collection<Integer> indices) {
+		List<T> oldValues = new ArrayList<>(elements);
+		boolean[] oldFlags = flags.toArray();
+		boolean[] removed = new boolean[oldValues.size()];
+		for (int index : indices) {
+			removed[index] = true;
+		}
+
+		List<T> newValues = new ArrayList<>(oldValues.size() - indices.size());
+		boolean[] newFlags = new boolean[oldValues.size() - indices.size()];
+		List<T> newAcceptedElements = new ArrayList<>();
+		IntervalBuilder intervals = new IntervalBuilder();
+		int acceptedIndex = 0;
+		for (int a = 0; a < oldValues.size(); a++) {
+			if (removed[a]) {
+				if (oldFlags[a])
+					intervals.removed(acceptedIndex);
+			} else {
+				newFlags[newValues.size()] = oldFlags[a];
+				newValues.add(oldValues.get(a));
+				if (oldFlags[a]) {
+					newAcceptedElements.add(oldValues.get(a));
+					acceptedIndex++;
+				}
+			}
+		}
+		intervals.flush();
+
+		int oldSize = acceptedElements.size();
+		elements = new ChunkedList<>(newValues);
+		flags = new FlagList(newFlags);
+		acceptedElements = new ChunkedList<>(newAcceptedElements);
+		fireIntervals(intervals, oldSize);
+	}
+
+	private void set(int index, T newElement) {
+		boolean newFlag = evaluate(Collections.singletonList(newElement),
+				null)[0];
+		int acceptedIndex = flags.rank(index);
+		elements.set(index, newElement);
+		boolean oldFlag = flags.set(index, newFlag);
+		if (oldFlag && newFlag) {
+			acceptedElements.set(acceptedIndex, newElement);
+			fireListDataEvent(new ListDataEvent(source,
+					ListDataEvent.CONTENTS_CHANGED, acceptedIndex,
+					acceptedIndex));
+		} else if (oldFlag) {
+			acceptedElements.remove(acceptedIndex);
+			fireListDataEvent(new ListDataEvent(source,
+					ListDataEvent.INTERVAL_REMOVED, acceptedIndex,
+					acceptedIndex));
+		} else if (newFlag) {
+			acceptedElements.add(acceptedIndex, newElement);
+			fireListDataEvent(new ListDataEvent(source,
+					ListDataEvent.INTERVAL_ADDED, acceptedIndex, acceptedIndex));
+		}
+	}
+
+	/**
+	 * Reevaluate the filter after it changed.
+	 * 
+	 * @param type
+	 *            how the filter changed. If this is
+	 *            {@link FilterChangeEvent.Type#NARROWED} then only accepted
+	 *            elements are evaluated, and if it is
+	 *            {@link FilterChangeEvent.Type#WIDENED} then only rejected
+	 *            elements are evaluated.
+	 */
+	void refilter(FilterChangeEvent.Type type) {
+		List<T> values = new ArrayList<>(elements);
+		boolean[] oldFlags = flags.toArray();
+		int[] candidates;
+		if (type == FilterChangeEvent.Type.CHANGED) {
+			candidates = null;
+		} else {
+			boolean candidateFlag = type == FilterChangeEvent.Type.NARROWED;
+			candidates = new int[values.size()];
+			int k = 0;
+			for (int a = 0; a < values.size(); a++) {
+				if (oldFlags[a] == candidateFlag)
+					candidates[k++] = a;
+			}
+			candidates = Arrays.copyOf(candidates, k);
+		}
+
+		boolean[] results = evaluate(values, candidates);
+		boolean[] newFlags;
+		if (candidates == null) {
+			newFlags = results;
+		} else {
+			newFlags = oldFlags.clone();
+			for (int a = 0; a < candidates.length; a++) {
+				newFlags[candidates[a]] = results[a];
+			}
+		}
+
+		IntervalBuilder intervals = new IntervalBuilder();
+		List<T> newAcceptedElements = new ArrayList<>();
+		int acceptedIndex = 0;
+		for (int a = 0; a < values.size(); a++) {
+			if (oldFlags[a] && !newFlags[a]) {
+				intervals.removed(acceptedIndex);
+			} else if (newFlags[a]) {
+				if (!oldFlags[a])
+					intervals.added(acceptedIndex);
+				newAcceptedElements.add(values.get(a));
+				acceptedIndex++;
+			}
+		}
+		intervals.flush();
+		if (intervals.intervals.isEmpty())
+			return;
+
+		int oldSize = acceptedElements.size();
+		flags = new FlagList(newFlags);
+		acceptedElements = new ChunkedList<>(newAcceptedElements);
+		fireIntervals(intervals, oldSize);
+	}
+
+	/**
+	 * Fire the events in an IntervalBuilder, or fire one coarse change if
+	 * there are too many intervals.
+	 */
+	private void fireIntervals(IntervalBuilder intervals, int oldSize) {
+		if (intervals.intervals.size() > MAX_INTERVALS) {
+			fireCoarseChange(oldSize, acceptedElements.size());
+			return;
+		}
+		for (int[] interval : intervals.intervals) {
+			fireListDataEvent(new ListDataEvent(source, interval[0],
+					interval[1], interval[2]));
+		}
+	}
+
+	private void fireCoarseChange(int oldSize, int newSize) {
+		int min = Math.min(oldSize, newSize);
+		if (min > 0)
+			fireListDataEvent(new ListDataEvent(source,
+					ListDataEvent.CONTENTS_CHANGED, 0, min - 1));
+		if (newSize > oldSize) {
+			fireListDataEvent(new ListDataEvent(source,
+					ListDataEvent.INTERVAL_ADDED, oldSize, newSize - 1));
+		} else if (newSize < oldSize) {
+			fireListDataEvent(new ListDataEvent(source,
+					ListDataEvent.INTERVAL_REMOVED, newSize, oldSize - 1));
+		}
+	}
+
+	/**
+	 * Evaluate the filter against several elements.
+	 * 
+	 * @param values
+	 *            the elements to evaluate. This should support fast random
+	 *            access.
+	 * @param indices
+	 *            the indices of the elements to evaluate, or null to evaluate
+	 *            every element.
+	 * @return whether the filter accepted each element. This array is
+	 *         parallel to <code>indices</code>, or to <code>values</code> if
+	 *         <code>indices</code> is null.
+	 */
+	private boolean[] evaluate(List<T> values, int[] indices) {
+		int count = indices == null ? values.size() : indices.length;
+		boolean[] results = new boolean[count];
+		if (filter == null || !filter.isActive()) {
+			Arrays.fill(results, true);
+		} else if (!parallel || count < PARALLEL_THRESHOLD) {
+			evaluate(values, indices, results, 0, count);
+		} else {
+			ForkJoinPool.commonPool().invoke(
+					new EvaluateTask(values, indices, results, 0, count));
+		}
+		return results;
+	}
+
+	private void evaluate(List<T> values, int[] indices, boolean[] results,
+			int start, int end) {
+		for (int a = start; a < end; a++) {
+			int i = indices == null ? a : indices[a];
+			results[a] = filter.accept(values.get(i));
+		}
+	}
+}
@@ -24,8 +24,23 @@ public abstract class ListEvent<T> {
 
 	public abstract void execute(List<T> list);
 
+	/**
+	 * Undo this event. This is the inverse of {@link #execute(List)}: the
+	 * argument should reflect the state of a list immediately after this event,
+	 * and this method restores the state it had immediately before this event.
+	 */
+	public abstract void revert(List<T> list);
+
 	protected abstract ListDataEvent createListDataEvent();
 
+	/**
+	 * Create the ListDataEvents that describe this event, in the order they
+	 * should be fired. Most events are described by one ListDataEvent.
+	 */
+	protected ListDataEvent[] createListDataEvents() {
+		return new ListDataEvent[] { createListDataEvent() };
+	}
+
 	public Object getSource() {
 		return source;
 	}
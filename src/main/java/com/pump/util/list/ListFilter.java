@@ -18,6 +18,16 @@ import javax.swing.event.ChangeListener;
  * For example: if you have a large list of Files, and you're presenting those
  * Files in a JList using a UIMirror: this filter can automatically help
  * eliminate files as they are transfered from the master list to the JList.
+ * <p>
+ * When a filter changes it should notify its ChangeListeners. If the
+ * ChangeEvent is an {@link AbstractListFilter.FilterChangeEvent} that says the
+ * filter became narrower or wider, then the UIMirror only reevaluates the
+ * elements that may be affected.
+ * <p>
+ * If {@link ObservableList.UIMirror#setParallelFilterEvaluation(boolean)} is
+ * enabled, then when a large number of elements need to be evaluated the
+ * UIMirror may call {@link #accept(Object)} from several threads at the same
+ * time.
  *
  * @param <T>
  */
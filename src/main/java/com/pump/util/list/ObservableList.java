@@ -19,6 +19,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -32,6 +33,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 import javax.swing.ComboBoxModel;
 import javax.swing.SwingUtilities;
@@ -40,12 +42,17 @@ import javax.swing.event.ChangeListener;
 import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
 
+import com.pump.util.list.AbstractListFilter.FilterChangeEvent;
+
 /**
  * This is a List which supports three types of listeners.
  * <p>
  * All operations take place inside either a read or write lock. Listeners are
  * notified inside a write lock during which no other thread can interact with
- * this list.
+ * this list. (If this list is backed by an <code>ArrayList</code> or a
+ * {@link ChunkedList} then reads are optimistic instead: they only acquire the
+ * read lock if a write was in progress. See
+ * {@link #setOptimisticReads(boolean)}.)
  * <p>
  * All attempts to interact with this list are subject to a timeout if the lock
  * doesn't become available. If that timeout is exceeded a
@@ -56,6 +63,11 @@ import javax.swing.event.ListDataListener;
  * avoid cascading/competing listeners from changing this list in unexpected
  * ways.
  * <p>
+ * Several modifications can be combined into one notification by calling
+ * {@link #runBatch(Runnable)}. If this list is backed by a {@link ChunkedList}
+ * then {@link #snapshot()} and ArrayListeners do not need to copy the whole
+ * list after each modification.
+ * <p>
  * You can also call {@link #createUIMirror(ListFilter)} or
  * {@link #createUIView()} to create <code>java.awt.event.ListModel</code> based
  * on this list.
@@ -134,31 +146,33 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 				@Override
 				public void elementsAdded(AddElementsEvent<T> event) {
-					UIView.this.fireListDataListeners(event
-							.createListDataEvent());
+					fireListDataEvents(event);
 				}
 
 				@Override
 				public void elementsRemoved(RemoveElementsEvent<T> event) {
-					UIView.this.fireListDataListeners(event
-							.createListDataEvent());
+					fireListDataEvents(event);
 				}
 
 				@Override
 				public void elementChanged(ChangeElementEvent<T> event) {
-					UIView.this.fireListDataListeners(event
-							.createListDataEvent());
+					fireListDataEvents(event);
 				}
 
 				@Override
 				public void elementsReplaced(ReplaceElementsEvent<T> event) {
-					UIView.this.fireListDataListeners(event
-							.createListDataEvent());
+					fireListDataEvents(event);
 				}
 
 			}, true);
 		}
 
+		private void fireListDataEvents(ListEvent<T> event) {
+			for (ListDataEvent e : event.createListDataEvents()) {
+				fireListDataListeners(e);
+			}
+		}
+
 		@Override
 		public int getSize() {
 			return masterList.size();
@@ -178,60 +192,67 @@ public class ObservableList<T> implements List<T>, Serializable {
 	 * only modified on the event dispatch thread. This object is always safe to
 	 * use with UI elements. It is possible that it can be temporarily
 	 * out-of-sync with its parent ObservableList.
+	 * <p>
+	 * If this mirror has a {@link ListFilter} then changes are applied
+	 * incrementally: list events only evaluate the filter against the elements
+	 * they add or change, and a {@link FilterChangeEvent} that says the filter
+	 * became narrower (or wider) only reevaluates the elements that are
+	 * currently accepted (or rejected). ListDataListeners are notified of the
+	 * smallest intervals that changed.
 	 * 
 	 * @param <T>
 	 */
 	public static class UIMirror<T> extends AbstractComboBoxModel<T> {
-		List<T> mirrorList = new ArrayList<>();
-		List<ListEvent<T>> eventQueue = new ArrayList<>();
+		FilteredList<T> filteredList;
+
+		/**
+		 * The ListEvents and filter ChangeEvents that have not been applied
+		 * yet.
+		 */
+		List<Object> eventQueue = new ArrayList<>();
 		ListFilter<T> filter;
 		ObservableList<T> masterList;
 
 		Runnable eventQueueRunnable = new Runnable() {
 			public void run() {
-				ListEvent<T>[] events;
+				Object[] events;
 				synchronized (eventQueue) {
-					events = (ListEvent<T>[]) eventQueue
-							.toArray(new ListEvent[eventQueue.size()]);
+					events = eventQueue.toArray();
 					eventQueue.clear();
 				}
-				for (ListEvent<T> event : events) {
-					event.execute(mirrorList);
-					fireListDataListeners(event.createListDataEvent());
+
+				// consecutive filter changes only need one pass
+				FilterChangeEvent.Type filterChange = null;
+				for (Object event : events) {
+					if (event instanceof ChangeEvent) {
+						FilterChangeEvent.Type type = FilterChangeEvent.Type.CHANGED;
+						if (event instanceof FilterChangeEvent)
+							type = ((FilterChangeEvent) event).getType();
+						if (filterChange == null || filterChange == type) {
+							filterChange = type;
+						} else {
+							filterChange = FilterChangeEvent.Type.CHANGED;
+						}
+					} else {
+						if (filterChange != null) {
+							filteredList.refilter(filterChange);
+							filterChange = null;
+						}
+						filteredList.process((ListEvent<T>) event);
+					}
 				}
+				if (filterChange != null)
+					filteredList.refilter(filterChange);
 			}
 		};
-		ListEvent<T> resetListEvent;
 
 		private UIMirror(ObservableList<T> masterList, ListFilter<T> filter) {
 			this.filter = filter;
 			this.masterList = masterList;
-
-			resetListEvent = new ListEvent<T>(UIMirror.this) {
+			filteredList = new FilteredList<T>(UIMirror.this, filter) {
 				@Override
-				public void execute(List<T> list) {
-					UIMirror.this.masterList.acquireReadLock();
-					try {
-						mirrorList.clear();
-						if (UIMirror.this.filter == null
-								|| !UIMirror.this.filter.isActive()) {
-							mirrorList.addAll(UIMirror.this.masterList);
-						} else {
-							for (T element : UIMirror.this.masterList) {
-								if (UIMirror.this.filter.accept(element))
-									mirrorList.add(element);
-							}
-						}
-					} finally {
-						UIMirror.this.masterList.readLock.unlock();
-					}
-				}
-
-				@Override
-				protected ListDataEvent createListDataEvent() {
-					return new ListDataEvent(UIMirror.this,
-							ListDataEvent.CONTENTS_CHANGED, 0,
-							mirrorList.size() - 1);
+				protected void fireListDataEvent(ListDataEvent event) {
+					fireListDataListeners(event);
 				}
 			};
 
@@ -259,51 +280,42 @@ public class ObservableList<T> implements List<T>, Serializable {
 						processEvent(event);
 					}
 
-					private void processEvent(ListEvent<T> event) {
-						synchronized (eventQueue) {
-							eventQueue.add(event);
-						}
-						if (SwingUtilities.isEventDispatchThread()) {
-							eventQueueRunnable.run();
-						} else {
-							SwingUtilities.invokeLater(eventQueueRunnable);
-						}
-					}
-
 				}, false);
 				if (filter != null) {
 					filter.addChangeListener(new ChangeListener() {
 
 						@Override
 						public void stateChanged(ChangeEvent e) {
-							synchronized (eventQueue) {
-								eventQueue.clear();
-								eventQueue.add(resetListEvent);
-							}
-							if (SwingUtilities.isEventDispatchThread()) {
-								eventQueueRunnable.run();
-							} else {
-								SwingUtilities.invokeLater(eventQueueRunnable);
-							}
+							processEvent(e);
 						}
 
 					});
 				}
-				eventQueue.add(resetListEvent);
-				eventQueueRunnable.run();
+				filteredList.setElements(masterList.data);
 			} finally {
 				masterList.writeLock.unlock();
 			}
 		}
 
+		private void processEvent(Object event) {
+			synchronized (eventQueue) {
+				eventQueue.add(event);
+			}
+			if (SwingUtilities.isEventDispatchThread()) {
+				eventQueueRunnable.run();
+			} else {
+				SwingUtilities.invokeLater(eventQueueRunnable);
+			}
+		}
+
 		@Override
 		public int getSize() {
-			return mirrorList.size();
+			return filteredList.getAcceptedElements().size();
 		}
 
 		@Override
 		public T getElementAt(int index) {
-			return mirrorList.get(index);
+			return filteredList.getAcceptedElements().get(index);
 		}
 
 		/**
@@ -316,6 +328,26 @@ public class ObservableList<T> implements List<T>, Serializable {
 			}
 			return -1;
 		}
+
+		/**
+		 * Control whether the ListFilter may be evaluated on several threads at
+		 * the same time when a large number of elements need to be evaluated.
+		 * This is off by default. Only enable this if the ListFilter's
+		 * {@link ListFilter#accept(Object)} method is thread-safe.
+		 */
+		public void setParallelFilterEvaluation(boolean b) {
+			filteredList.setParallel(b);
+		}
+
+		/**
+		 * Return whether the ListFilter may be evaluated on several threads at
+		 * the same time.
+		 * 
+		 * @see #setParallelFilterEvaluation(boolean)
+		 */
+		public boolean isParallelFilterEvaluation() {
+			return filteredList.isParallel();
+		}
 	}
 
 	/**
@@ -417,15 +449,23 @@ public class ObservableList<T> implements List<T>, Serializable {
 	}
 
 	transient ListenerManager<T> listenerManager;
-	ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-	ReadLock readLock = lock.readLock();
-	WriteLock writeLock = lock.writeLock();
+	ReentrantReadWriteLock lock;
+	ReadLock readLock;
+	WriteLock writeLock;
+
+	/**
+	 * This is only write-locked while the data is actually being modified, so
+	 * readers can validate optimistic reads against it.
+	 */
+	StampedLock stampedLock;
 	List<T> data;
 	int timeoutSeconds = 10;
 	protected transient AtomicInteger modCount;
 	private UncaughtExceptionHandler uncaughtExceptionHandler;
 	private transient Boolean allowRecursiveListenerModification;
 	private boolean allowAnyModification;
+	private transient BatchOperation batch;
+	private boolean optimisticReads;
 
 	/**
 	 * Create a new empty ObservableList.
@@ -440,17 +480,24 @@ public class ObservableList<T> implements List<T>, Serializable {
 	 */
 	public ObservableList(List<T> data) {
 		this(data, new ListenerManager<T>(), new AtomicInteger(0),
-				new DefaultUncaughtExceptionHandler(), true);
+				new DefaultUncaughtExceptionHandler(), true,
+				new ReentrantReadWriteLock(), new StampedLock());
 	}
 
 	private ObservableList(List<T> data, ListenerManager<T> listenerManager,
 			AtomicInteger modCount,
 			UncaughtExceptionHandler uncaughtExceptionHandler,
-			boolean allowAnyModification) {
+			boolean allowAnyModification, ReentrantReadWriteLock lock,
+			StampedLock stampedLock) {
 		Objects.requireNonNull(data);
 		Objects.requireNonNull(listenerManager);
 		Objects.requireNonNull(modCount);
 		this.data = data;
+		this.lock = lock;
+		this.stampedLock = stampedLock;
+		readLock = lock.readLock();
+		writeLock = lock.writeLock();
+		optimisticReads = isOptimisticReadSupported(data);
 		this.listenerManager = listenerManager;
 		this.modCount = modCount;
 		this.allowAnyModification = allowAnyModification;
@@ -604,6 +651,12 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 	@Override
 	public int size() {
+		long stamp = beginOptimisticRead();
+		if (stamp != 0) {
+			int returnValue = data.size();
+			if (stampedLock.validate(stamp))
+				return returnValue;
+		}
 		acquireReadLock();
 		try {
 			return data.size();
@@ -696,6 +749,62 @@ public class ObservableList<T> implements List<T>, Serializable {
 		}
 	}
 
+	/**
+	 * Return true if concurrent reads of the argument can only fail by
+	 * returning inconsistent data or throwing a RuntimeException. For example:
+	 * reading a <code>LinkedList</code> while another thread modifies it may
+	 * loop forever, so it does not support optimistic reads.
+	 */
+	private static boolean isOptimisticReadSupported(List<?> data) {
+		return data.getClass() == ArrayList.class
+				|| data instanceof ChunkedList;
+	}
+
+	/**
+	 * Control whether reads are optimistic.
+	 * <p>
+	 * When optimistic reads are enabled, methods like {@link #get(int)},
+	 * {@link #size()} and {@link #toArray()} first read the data without
+	 * acquiring the read lock, and then confirm that no writer modified the
+	 * data in the meantime. Only if that validation fails do they acquire the
+	 * read lock and try again. So reads never block and never write to shared
+	 * memory unless a write is in progress. This is much faster when many
+	 * threads read a list that is rarely modified.
+	 * <p>
+	 * Optimistic reads are enabled by default if this list's data is stored in
+	 * an <code>ArrayList</code> or a {@link ChunkedList}, and they are not
+	 * supported for any other type of list.
+	 * 
+	 * @param optimisticReads
+	 *            whether reads should be optimistic.
+	 */
+	public void setOptimisticReads(boolean optimisticReads) {
+		if (optimisticReads && !isOptimisticReadSupported(data))
+			throw new IllegalStateException("This list's data ("
+					+ data.getClass().getName()
+					+ ") does not support optimistic reads.");
+		this.optimisticReads = optimisticReads;
+	}
+
+	/**
+	 * Return true if reads are optimistic.
+	 * 
+	 * @see #setOptimisticReads(boolean)
+	 */
+	public boolean isOptimisticReads() {
+		return optimisticReads;
+	}
+
+	/**
+	 * Return a stamp to validate an optimistic read with, or zero if the read
+	 * must acquire the read lock.
+	 */
+	private long beginOptimisticRead() {
+		if (!optimisticReads)
+			return 0;
+		return stampedLock.tryOptimisticRead();
+	}
+
 	/**
 	 * Return the number of seconds this list will wait to acquire a lock.
 	 */
@@ -717,6 +826,16 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 	@Override
 	public boolean contains(Object element) {
+		long stamp = beginOptimisticRead();
+		if (stamp != 0) {
+			try {
+				boolean returnValue = data.contains(element);
+				if (stampedLock.validate(stamp))
+					return returnValue;
+			} catch (RuntimeException e) {
+				// a writer interfered, so try again with the read lock
+			}
+		}
 		acquireReadLock();
 		try {
 			return data.contains(element);
@@ -727,6 +846,16 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 	@Override
 	public T get(int index) {
+		long stamp = beginOptimisticRead();
+		if (stamp != 0) {
+			try {
+				T returnValue = data.get(index);
+				if (stampedLock.validate(stamp))
+					return returnValue;
+			} catch (RuntimeException e) {
+				// a writer interfered, so try again with the read lock
+			}
+		}
 		acquireReadLock();
 		try {
 			return data.get(index);
@@ -737,6 +866,16 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 	@Override
 	public int indexOf(Object element) {
+		long stamp = beginOptimisticRead();
+		if (stamp != 0) {
+			try {
+				int returnValue = data.indexOf(element);
+				if (stampedLock.validate(stamp))
+					return returnValue;
+			} catch (RuntimeException e) {
+				// a writer interfered, so try again with the read lock
+			}
+		}
 		acquireReadLock();
 		try {
 			return data.indexOf(element);
@@ -747,6 +886,16 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 	@Override
 	public int lastIndexOf(Object element) {
+		long stamp = beginOptimisticRead();
+		if (stamp != 0) {
+			try {
+				int returnValue = data.lastIndexOf(element);
+				if (stampedLock.validate(stamp))
+					return returnValue;
+			} catch (RuntimeException e) {
+				// a writer interfered, so try again with the read lock
+			}
+		}
 		acquireReadLock();
 		try {
 			return data.lastIndexOf(element);
@@ -757,6 +906,16 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 	@Override
 	public boolean containsAll(Collection<?> c) {
+		long stamp = beginOptimisticRead();
+		if (stamp != 0) {
+			try {
+				boolean returnValue = data.containsAll(c);
+				if (stampedLock.validate(stamp))
+					return returnValue;
+			} catch (RuntimeException e) {
+				// a writer interfered, so try again with the read lock
+			}
+		}
 		acquireReadLock();
 		try {
 			return data.containsAll(c);
@@ -767,6 +926,16 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 	@Override
 	public Object[] toArray() {
+		long stamp = beginOptimisticRead();
+		if (stamp != 0) {
+			try {
+				Object[] returnValue = data.toArray();
+				if (stampedLock.validate(stamp))
+					return returnValue;
+			} catch (RuntimeException e) {
+				// a writer interfered, so try again with the read lock
+			}
+		}
 		acquireReadLock();
 		try {
 			return data.toArray();
@@ -799,6 +968,16 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 	@Override
 	public <S> S[] toArray(S[] a) {
+		if (optimisticReads) {
+			Object[] array = toArray();
+			if (a.length < array.length)
+				a = (S[]) Array.newInstance(a.getClass().getComponentType(),
+						array.length);
+			System.arraycopy(array, 0, a, 0, array.length);
+			if (a.length > array.length)
+				a[array.length] = null;
+			return a;
+		}
 		acquireReadLock();
 		try {
 			return data.toArray(a);
@@ -817,7 +996,7 @@ public class ObservableList<T> implements List<T>, Serializable {
 		acquireWriteLock(true);
 		try {
 			AddOperation op = new AddOperation(Arrays.asList(e));
-			boolean returnValue = op.execute();
+			boolean returnValue = (Boolean) op.run();
 			op.notifyListeners();
 			return returnValue;
 		} finally {
@@ -829,8 +1008,9 @@ public class ObservableList<T> implements List<T>, Serializable {
 	public boolean remove(Object o) {
 		acquireWriteLock(true);
 		try {
-			RemoveElementsOperation op = new RemoveElementsOperation(o);
-			boolean returnValue = op.execute();
+			RemoveElementsOperation op = new RemoveElementsOperation(
+					Collections.singleton(o));
+			boolean returnValue = (Boolean) op.run();
 			op.notifyListeners();
 			return returnValue;
 		} finally {
@@ -843,7 +1023,7 @@ public class ObservableList<T> implements List<T>, Serializable {
 		acquireWriteLock(true);
 		try {
 			AddOperation op = new AddOperation(c);
-			boolean returnValue = op.execute();
+			boolean returnValue = (Boolean) op.run();
 			op.notifyListeners();
 			return returnValue;
 		} finally {
@@ -856,7 +1036,7 @@ public class ObservableList<T> implements List<T>, Serializable {
 		acquireWriteLock(true);
 		try {
 			AddOperation op = new AddOperation(index, c);
-			boolean returnValue = op.execute();
+			boolean returnValue = (Boolean) op.run();
 			op.notifyListeners();
 			return returnValue;
 		} finally {
@@ -892,9 +1072,8 @@ public class ObservableList<T> implements List<T>, Serializable {
 	public boolean removeAll(Collection<?> c) {
 		acquireWriteLock(true);
 		try {
-			RemoveElementsOperation op = new RemoveElementsOperation(
-					c.toArray());
-			boolean returnValue = op.execute();
+			RemoveElementsOperation op = new RemoveElementsOperation(c);
+			boolean returnValue = (Boolean) op.run();
 			op.notifyListeners();
 			return returnValue;
 		} finally {
@@ -928,8 +1107,8 @@ public class ObservableList<T> implements List<T>, Serializable {
 	public void clear() {
 		acquireWriteLock(true);
 		try {
-			RemoveElementsOperation op = new RemoveElementsOperation(toArray());
-			op.execute();
+			RemoveElementsOperation op = new RemoveElementsOperation(null);
+			op.run();
 			op.notifyListeners();
 		} finally {
 			writeLock.unlock();
@@ -941,7 +1120,7 @@ public class ObservableList<T> implements List<T>, Serializable {
 		acquireWriteLock(true);
 		try {
 			SetOperation op = new SetOperation(index, element);
-			T returnValue = (T) op.execute();
+			T returnValue = (T) op.run();
 			if (!Objects.equals(returnValue, element)) {
 				op.notifyListeners();
 			}
@@ -957,7 +1136,7 @@ public class ObservableList<T> implements List<T>, Serializable {
 		try {
 			AddOperation op = new AddOperation(index,
 					Collections.singleton(element));
-			op.execute();
+			op.run();
 			op.notifyListeners();
 		} finally {
 			writeLock.unlock();
@@ -969,7 +1148,7 @@ public class ObservableList<T> implements List<T>, Serializable {
 		acquireWriteLock(true);
 		try {
 			RemoveIndexOperation op = new RemoveIndexOperation(index);
-			T returnValue = (T) op.execute();
+			T returnValue = (T) op.run();
 			op.notifyListeners();
 			return returnValue;
 		} finally {
@@ -984,40 +1163,159 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 	@Override
 	public ListIterator<T> listIterator(int index) {
+		return new MyIterator(index);
+	}
+
+	@Override
+	public List<T> subList(int fromIndex, int toIndex) {
+		return new ObservableList<T>(data.subList(fromIndex, toIndex),
+				listenerManager, modCount,
+				getListenerUncaughtExceptionHandler(), allowAnyModification,
+				lock, stampedLock);
+	}
+
+	/**
+	 * Return an immutable copy of the contents of this list.
+	 * <p>
+	 * If this list stores its data in a {@link ChunkedList} then the snapshot
+	 * shares its storage with this list, so this is very cheap even for large
+	 * lists. Otherwise this copies every element.
+	 */
+	public List<T> snapshot() {
 		acquireReadLock();
 		try {
-			return new MyIterator(index);
+			return createSnapshot();
 		} finally {
 			readLock.unlock();
 		}
 	}
 
-	@Override
-	public List<T> subList(int fromIndex, int toIndex) {
-		return new ObservableList<T>(data.subList(fromIndex, toIndex),
-				listenerManager, modCount,
-				getListenerUncaughtExceptionHandler(), allowAnyModification);
+	private List<T> createSnapshot() {
+		if (data instanceof ChunkedList)
+			return ((ChunkedList<T>) data).snapshot();
+		return Collections.unmodifiableList(new ArrayList<>(data));
 	}
 
+	/**
+	 * Run a series of modifications and notify listeners only once.
+	 * <p>
+	 * The write lock is held while the runnable executes, so no other thread
+	 * can observe the intermediate states. When the runnable finishes all its
+	 * changes are coalesced into one event: if every change added elements to
+	 * one contiguous block this is one {@link AddElementsEvent}, if every
+	 * change modified the same index this is one {@link ChangeElementEvent}, and
+	 * otherwise this is one {@link ReplaceElementsEvent}. If the runnable made
+	 * no net changes then listeners are not notified at all.
+	 * <p>
+	 * If the runnable throws an exception then every change it made is rolled
+	 * back, listeners are not notified, and the exception is rethrown.
+	 * <p>
+	 * If this is called while another batch is in progress then the runnable's
+	 * changes become part of the outer batch. (So if the runnable throws an
+	 * exception that the outer batch doesn't catch, the outer batch is also
+	 * rolled back.)
+	 * 
+	 * @param runnable
+	 *            the runnable that modifies this list.
+	 */
+	public void runBatch(Runnable runnable) {
+		Objects.requireNonNull(runnable);
+		acquireWriteLock(true);
+		try {
+			if (batch != null) {
+				runnable.run();
+				return;
+			}
+			BatchOperation op = new BatchOperation();
+			batch = op;
+			boolean completed = false;
+			try {
+				runnable.run();
+				completed = true;
+			} finally {
+				batch = null;
+				if (completed) {
+					op.execute();
+					op.notifyListeners();
+				} else {
+					op.rollback();
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * An operation modifies the list and then notifies listeners.
+	 * <p>
+	 * Each operation is described by a {@link ListEvent}. That event is only
+	 * recorded if a ListListener or ArrayListener needs it, and ArrayListeners
+	 * are given arrays that are derived from that event: the old array is
+	 * calculated by reverting the event, so the list is never copied before an
+	 * operation executes.
+	 */
 	abstract class Operation {
 
 		LinkedHashMap<Object, Boolean> listeners;
-		Object[] oldArray;
+		boolean recordDelta;
 		boolean nullOp;
+		private ListEvent<T> event;
+		private List<T> newState;
+		private Object[] oldArray, newArray;
 
 		Operation() {
 			listeners = new LinkedHashMap<>(listenerManager.listeners);
-			if (listenerManager.containsArrayListener())
-				oldArray = toArray();
+			if (batch != null) {
+				recordDelta = batch.recordDelta;
+			} else {
+				recordDelta = listenerManager.containsListListener()
+						|| listenerManager.containsArrayListener();
+			}
 		}
 
 		abstract Object execute();
 
+		/**
+		 * Execute this operation while holding the stamped write lock, so
+		 * concurrent optimistic reads know their results are invalid.
+		 */
+		Object run() {
+			long stamp = stampedLock.writeLock();
+			try {
+				return execute();
+			} finally {
+				stampedLock.unlockWrite(stamp);
+			}
+		}
+
+		/**
+		 * Create the event describing this operation. This is only called if
+		 * {@link #recordDelta} is true.
+		 */
+		abstract ListEvent<T> createEvent();
+
+		ListEvent<T> getEvent() {
+			if (event == null)
+				event = createEvent();
+			return event;
+		}
+
 		void notifyListeners() {
 			if (nullOp)
 				return;
+			if (batch != null && batch != this) {
+				batch.operations.add(this);
+				return;
+			}
 
-			Object[] newArray = oldArray == null ? null : toArray();
+			for (Object listener : listeners.keySet()) {
+				if (listener instanceof ArrayListener) {
+					// this is cheap if our data is a ChunkedList:
+					newState = createSnapshot();
+					break;
+				}
+			}
 			ChangeEvent changeEvent = null;
 
 			for (Entry<Object, Boolean> listenerEntry : listeners.entrySet()) {
@@ -1027,13 +1325,16 @@ public class ObservableList<T> implements List<T>, Serializable {
 				try {
 					if (listener instanceof ArrayListener) {
 						((ArrayListener) listener).listChanged(
-								ObservableList.this, oldArray, newArray);
+								ObservableList.this, getOldArray(),
+								getNewArray());
 					} else if (listener instanceof ChangeListener) {
 						if (changeEvent == null)
 							changeEvent = new ChangeEvent(ObservableList.this);
 						((ChangeListener) listener).stateChanged(changeEvent);
 					} else if (listener instanceof ListListener) {
-						notifyListListener((ListListener<T>) listener);
+						@SuppressWarnings("unchecked")
+						ListListener<T> listListener = (ListListener<T>) listener;
+						notifyListListener(listListener, getEvent());
 					}
 				} catch (Exception e) {
 					getListenerUncaughtExceptionHandler().uncaughtException(
@@ -1044,11 +1345,45 @@ public class ObservableList<T> implements List<T>, Serializable {
 			}
 		}
 
+		private Object[] getNewArray() {
+			if (newArray == null)
+				newArray = newState.toArray();
+			return newArray;
+		}
+
+		private Object[] getOldArray() {
+			if (oldArray == null) {
+				ListEvent<T> e = getEvent();
+				if (e instanceof ReplaceElementsEvent) {
+					oldArray = ((ReplaceElementsEvent<T>) e).getOldElements()
+							.toArray();
+				} else {
+					List<T> list = new ChunkedList<>(newState);
+					e.revert(list);
+					oldArray = list.toArray();
+				}
+			}
+			return oldArray;
+		}
+
 		void setNullOp() {
 			nullOp = true;
 		}
+	}
 
-		abstract void notifyListListener(ListListener<T> listener);
+	private void notifyListListener(ListListener<T> listener, ListEvent<T> event) {
+		if (event instanceof AddElementsEvent) {
+			listener.elementsAdded((AddElementsEvent<T>) event);
+		} else if (event instanceof RemoveElementsEvent) {
+			listener.elementsRemoved((RemoveElementsEvent<T>) event);
+		} else if (event instanceof ChangeElementEvent) {
+			listener.elementChanged((ChangeElementEvent<T>) event);
+		} else if (event instanceof ReplaceElementsEvent) {
+			listener.elementsReplaced((ReplaceElementsEvent<T>) event);
+		} else {
+			throw new IllegalStateException("Unsupported event: "
+					+ event.getClass().getName());
+		}
 	}
 
 	class SetOperation extends Operation {
@@ -1063,19 +1398,20 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 		@Override
 		T execute() {
+			oldElement = data.get(index);
 			if (Objects.equals(oldElement, newElement)) {
 				setNullOp();
 				return oldElement;
 			}
-			oldElement = data.set(index, newElement);
+			data.set(index, newElement);
 			modCount.incrementAndGet();
 			return oldElement;
 		}
 
 		@Override
-		void notifyListListener(ListListener<T> listener) {
-			listener.elementChanged(new ChangeElementEvent<T>(
-					ObservableList.this, index, oldElement, newElement));
+		ListEvent<T> createEvent() {
+			return new ChangeElementEvent<T>(ObservableList.this, index,
+					oldElement, newElement);
 		}
 
 	}
@@ -1106,9 +1442,9 @@ public class ObservableList<T> implements List<T>, Serializable {
 		}
 
 		@Override
-		void notifyListListener(ListListener<T> listener) {
-			listener.elementsAdded(new AddElementsEvent<T>(ObservableList.this,
-					index, newElements));
+		ListEvent<T> createEvent() {
+			return new AddElementsEvent<T>(ObservableList.this, index,
+					newElements);
 		}
 
 	}
@@ -1124,15 +1460,16 @@ public class ObservableList<T> implements List<T>, Serializable {
 		@Override
 		T execute() {
 			oldElement = data.remove(index);
+			modCount.incrementAndGet();
 			return oldElement;
 		}
 
 		@Override
-		void notifyListListener(ListListener<T> listener) {
+		ListEvent<T> createEvent() {
 			TreeMap<Integer, T> removedElements = new TreeMap<>();
 			removedElements.put(index, oldElement);
-			listener.elementsRemoved(new RemoveElementsEvent<T>(
-					ObservableList.this, removedElements));
+			return new RemoveElementsEvent<T>(ObservableList.this,
+					removedElements);
 		}
 
 	}
@@ -1140,25 +1477,46 @@ public class ObservableList<T> implements List<T>, Serializable {
 	class RemoveElementsOperation extends Operation {
 
 		TreeMap<Integer, T> removedElements;
-		Object[] elements;
+		Collection<?> elements;
 
-		public RemoveElementsOperation(Object... elements) {
-			this.elements = elements;
-			if (listenerManager.containsListListener()) {
-				// TODO: this will yield inaccurate indices for multiple
-				// equivalent objects
-				removedElements = new TreeMap<>();
-				for (Object element : elements) {
-					int index = data.indexOf(element);
-					if (index >= 0)
-						removedElements.put(index, (T) element);
-				}
+		/**
+		 * @param elements
+		 *            every element in the list that is equal to one of these
+		 *            elements is removed. Or if this is null then every element
+		 *            is removed.
+		 */
+		public RemoveElementsOperation(Collection<?> elements) {
+			// copy the argument in case it is a view of this list
+			if (elements != null && elements.size() > 16) {
+				elements = new HashSet<>(elements);
+			} else if (elements != null) {
+				elements = new ArrayList<>(elements);
 			}
+			this.elements = elements;
 		}
 
 		@Override
 		Boolean execute() {
-			boolean returnValue = data.removeAll(Arrays.asList(elements));
+			if (recordDelta) {
+				removedElements = new TreeMap<>();
+				int index = 0;
+				for (T element : data) {
+					if (elements == null || elements.contains(element))
+						removedElements.put(index, element);
+					index++;
+				}
+			}
+
+			boolean returnValue;
+			if (elements == null) {
+				returnValue = !data.isEmpty();
+				data.clear();
+			} else if (removedElements != null && removedElements.isEmpty()) {
+				returnValue = false;
+			} else {
+				returnValue = data.removeAll(elements);
+			}
+
 			if (returnValue) {
 				modCount.incrementAndGet();
 			} else {
@@ -1168,14 +1526,9 @@ public class ObservableList<T> implements List<T>, Serializable {
 		}
 
 		@Override
-		void notifyListListener(ListListener<T> listener) {
-			if (removedElements == null) {
-				// this should never happen
-				throw new IllegalStateException();
-			}
-
-			listener.elementsRemoved(new RemoveElementsEvent<T>(
-					ObservableList.this, removedElements));
+		ListEvent<T> createEvent() {
+			return new RemoveElementsEvent<T>(ObservableList.this,
+					removedElements);
 		}
 
 	}
@@ -1187,11 +1540,10 @@ public class ObservableList<T> implements List<T>, Serializable {
 
 		public ReplaceAllOperation(Collection<T> newElements) {
 			this.newElements = newElements;
-			if (listenerManager.containsListListener()) {
+			if (recordDelta) {
 				newElementsAsList = new ArrayList<>(newElements.size());
 				newElementsAsList.addAll(newElements);
-				oldElements = new ArrayList<>(data.size());
-				oldElements.addAll(data);
+				oldElements = createSnapshot();
 			}
 		}
 
@@ -1209,16 +1561,140 @@ public class ObservableList<T> implements List<T>, Serializable {
 		}
 
 		@Override
-		void notifyListListener(ListListener<T> listener) {
-			if (newElementsAsList == null || oldElements == null) {
-				// this should never happen
-				throw new IllegalStateException();
+		ListEvent<T> createEvent() {
+			return new ReplaceElementsEvent<T>(ObservableList.this,
+					oldElements, newElementsAsList);
+		}
+
+	}
+
+	/**
+	 * This collects the operations executed by {@link #runBatch(Runnable)} and
+	 * coalesces them into one event.
+	 * <p>
+	 * The operations in a batch always record their events (even if no
+	 * listener needs them), so the batch can be rolled back.
+	 */
+	class BatchOperation extends Operation {
+		List<Operation> operations = new ArrayList<>();
+		ListEvent<T> coalescedEvent;
+		boolean coalesce;
+
+		BatchOperation() {
+			coalesce = recordDelta;
+			recordDelta = true;
+		}
+
+		@Override
+		Boolean execute() {
+			if (operations.isEmpty()) {
+				setNullOp();
+				return false;
+			}
+			if (!coalesce)
+				return true;
+
+			if (operations.size() == 1) {
+				coalescedEvent = operations.get(0).getEvent();
+			} else {
+				coalescedEvent = coalesceAdditions();
+				if (coalescedEvent == null)
+					coalescedEvent = coalesceChanges();
+				if (coalescedEvent == null)
+					coalescedEvent = createReplaceEvent();
+			}
+
+			if (coalescedEvent == null) {
+				setNullOp();
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Return one AddElementsEvent if every operation inserted elements
+		 * into the same contiguous block, or null otherwise.
+		 */
+		private AddElementsEvent<T> coalesceAdditions() {
+			int start = -1;
+			List<T> block = new ArrayList<>();
+			for (Operation op : operations) {
+				ListEvent<T> e = op.getEvent();
+				if (!(e instanceof AddElementsEvent))
+					return null;
+				AddElementsEvent<T> addEvent = (AddElementsEvent<T>) e;
+				if (start == -1) {
+					start = addEvent.getIndex();
+				} else if (addEvent.getIndex() < start
+						|| addEvent.getIndex() > start + block.size()) {
+					return null;
+				}
+				block.addAll(addEvent.getIndex() - start,
+						addEvent.getNewElements());
+			}
+			return new AddElementsEvent<T>(ObservableList.this, start, block);
+		}
+
+		/**
+		 * Return one ChangeElementEvent if every operation changed the same
+		 * index, or null otherwise.
+		 */
+		private ListEvent<T> coalesceChanges() {
+			ChangeElementEvent<T> first = null;
+			ChangeElementEvent<T> last = null;
+			for (Operation op : operations) {
+				ListEvent<T> e = op.getEvent();
+				if (!(e instanceof ChangeElementEvent))
+					return null;
+				last = (ChangeElementEvent<T>) e;
+				if (first == null) {
+					first = last;
+				} else if (first.getIndex() != last.getIndex()) {
+					return null;
+				}
+			}
+			return new ChangeElementEvent<T>(ObservableList.this,
+					first.getIndex(), first.getOldElement(),
+					last.getNewElement());
+		}
+
+		/**
+		 * Return a ReplaceElementsEvent, or null if the operations had no net
+		 * effect.
+		 */
+		private ReplaceElementsEvent<T> createReplaceEvent() {
+			List<T> newElements = new ArrayList<>(data);
+			List<T> oldElements = new ChunkedList<>(newElements);
+			for (int a = operations.size() - 1; a >= 0; a--) {
+				operations.get(a).getEvent().revert(oldElements);
 			}
+			if (oldElements.equals(newElements))
+				return null;
+			return new ReplaceElementsEvent<T>(ObservableList.this,
+					oldElements, newElements);
+		}
 
-			listener.elementsReplaced(new ReplaceElementsEvent<T>(
-					ObservableList.this, oldElements, newElementsAsList));
+		@Override
+		ListEvent<T> createEvent() {
+			return coalescedEvent;
 		}
 
+		/**
+		 * Revert every operation in this batch, in reverse order.
+		 */
+		void rollback() {
+			if (operations.isEmpty())
+				return;
+			long stamp = stampedLock.writeLock();
+			try {
+				for (int a = operations.size() - 1; a >= 0; a--) {
+					operations.get(a).getEvent().revert(data);
+				}
+				modCount.incrementAndGet();
+			} finally {
+				stampedLock.unlockWrite(stamp);
+			}
+		}
 	}
 
 	/**
@@ -1354,7 +1830,7 @@ public class ObservableList<T> implements List<T>, Serializable {
 	 */
 	public ObservableList<T> getUnmodifiableView() {
 		return new ObservableList<>(data, listenerManager, modCount,
-				uncaughtExceptionHandler, false);
+				uncaughtExceptionHandler, false, lock, stampedLock);
 	}
 
 	/**
@@ -1451,7 +1927,7 @@ public class ObservableList<T> implements List<T>, Serializable {
 			}
 
 			ReplaceAllOperation op = new ReplaceAllOperation(newContents);
-			T returnValue = (T) op.execute();
+			T returnValue = (T) op.run();
 			op.notifyListeners();
 
 			return true;
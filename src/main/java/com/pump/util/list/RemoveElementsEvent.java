@@ -10,9 +10,11 @@
  */
 package com.pump.util.list;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -52,6 +54,13 @@ public class RemoveElementsEvent<T> extends ListEvent<T> {
 		}
 	}
 
+	@Override
+	public void revert(List<T> list) {
+		for (Entry<Integer, T> entry : removedElements.entrySet()) {
+			list.add(entry.getKey(), entry.getValue());
+		}
+	}
+
 	@Override
 	protected ListDataEvent createListDataEvent() {
 		int minIndex = removedElements.firstKey();
@@ -63,4 +72,32 @@ public class RemoveElementsEvent<T> extends ListEvent<T> {
 				minIndex, maxIndex);
 	}
 
+	/**
+	 * Return one INTERVAL_REMOVED event for each run of consecutive indices,
+	 * starting with the highest indices so each event's indices are still
+	 * valid after the previous events.
+	 */
+	@Override
+	protected ListDataEvent[] createListDataEvents() {
+		List<ListDataEvent> returnValue = new ArrayList<>();
+		Iterator<Integer> iter = removedElements.descendingKeySet().iterator();
+		int end = -1;
+		int start = -1;
+		while (iter.hasNext()) {
+			int index = iter.next();
+			if (index == start - 1) {
+				start = index;
+			} else {
+				if (end != -1)
+					returnValue.add(new ListDataEvent(getSource(),
+							ListDataEvent.INTERVAL_REMOVED, start, end));
+				start = end = index;
+			}
+		}
+		if (end != -1)
+			returnValue.add(new ListDataEvent(getSource(),
+					ListDataEvent.INTERVAL_REMOVED, start, end));
+		return returnValue.toArray(new ListDataEvent[returnValue.size()]);
+	}
+
 }
\ No newline at end of file
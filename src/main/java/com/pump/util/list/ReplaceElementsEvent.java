@@ -10,6 +10,7 @@
  */
 package com.pump.util.list;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -40,6 +41,12 @@ public class ReplaceElementsEvent<T> extends ListEvent<T> {
 		list.addAll(getNewElements());
 	}
 
+	@Override
+	public void revert(List<T> list) {
+		list.clear();
+		list.addAll(getOldElements());
+	}
+
 	public List<? extends T> getNewElements() {
 		return Collections.unmodifiableList(newElements);
 	}
@@ -54,4 +61,28 @@ public class ReplaceElementsEvent<T> extends ListEvent<T> {
 				0, newElements.size() - 1);
 	}
 
+	/**
+	 * Return a CONTENTS_CHANGED event for the indices that exist before and
+	 * after this event, followed by an INTERVAL_ADDED or INTERVAL_REMOVED
+	 * event if the size of the list changed.
+	 */
+	@Override
+	protected ListDataEvent[] createListDataEvents() {
+		List<ListDataEvent> returnValue = new ArrayList<>(2);
+		int oldSize = oldElements.size();
+		int newSize = newElements.size();
+		int min = Math.min(oldSize, newSize);
+		if (min > 0)
+			returnValue.add(new ListDataEvent(getSource(),
+					ListDataEvent.CONTENTS_CHANGED, 0, min - 1));
+		if (newSize > oldSize) {
+			returnValue.add(new ListDataEvent(getSource(),
+					ListDataEvent.INTERVAL_ADDED, oldSize, newSize - 1));
+		} else if (newSize < oldSize) {
+			returnValue.add(new ListDataEvent(getSource(),
+					ListDataEvent.INTERVAL_REMOVED, newSize, oldSize - 1));
+		}
+		return returnValue.toArray(new ListDataEvent[returnValue.size()]);
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,321 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class SampleSourceTest extends TestCase {
+
+	static AudioFormat[] FORMATS = new AudioFormat[] {
+			new AudioFormat(8000, 8, 1, true, false),
+			new AudioFormat(8000, 8, 2, false, false),
+			new AudioFormat(8000, 16, 2, true, false),
+			new AudioFormat(8000, 16, 1, true, true),
+			new AudioFormat(8000, 16, 2, false, true),
+			new AudioFormat(8000, 16, 1, false, false) };
+
+	/**
+	 * Decoding and encoding PCM data should reproduce the original bytes.
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		Random random = new Random(0);
+		for (AudioFormat format : FORMATS) {
+			byte[] data = new byte[format.getFrameSize() * 10000];
+			random.nextBytes(data);
+
+			// compare against PCMUtils.decodeSample
+			float[] samples = new float[data.length * 8
+					/ format.getSampleSizeInBits()];
+			PCMUtils.decodeSamples(data, 0, samples, 0, samples.length, format);
+			int sampleSize = format.getSampleSizeInBits() / 8;
+			boolean isSigned = format.getEncoding().equals(
+					AudioFormat.Encoding.PCM_SIGNED);
+			int range = 1 << (format.getSampleSizeInBits() - 1);
+			int bias = isSigned ? 0 : range;
+			for (int a = 0; a < samples.length; a++) {
+				int v = PCMUtils.decodeSample(data, a * sampleSize,
+						sampleSize, isSigned, format.isBigEndian());
+				assertEquals(((float) (v - bias)) / range, samples[a]);
+			}
+
+			AudioInputStream in = createStream(data, format);
+			byte[] copy = readFully(new SampleSourceAudioInputStream(
+					new PCMSampleSource(in), format));
+			assertTrue(format.toString(), Arrays.equals(data, copy));
+		}
+	}
+
+	/**
+	 * This SampleSource returns zero frames on every other call.
+	 */
+	static class StutteringSampleSource implements SampleSource {
+		final SampleSource source;
+		boolean stutter = true;
+
+		StutteringSampleSource(SampleSource source) {
+			this.source = source;
+		}
+
+		@Override
+		public int getChannelCount() {
+			return source.getChannelCount();
+		}
+
+		@Override
+		public float getSampleRate() {
+			return source.getSampleRate();
+		}
+
+		@Override
+		public long getFrameLength() {
+			return source.getFrameLength();
+		}
+
+		@Override
+		public int read(float[] dest, int offset, int frameCount)
+				throws IOException {
+			stutter = !stutter;
+			if (stutter)
+				return 0;
+			return source.read(dest, offset, Math.min(frameCount, 10));
+		}
+
+		@Override
+		public void close() throws IOException {
+			source.close();
+		}
+	}
+
+	/**
+	 * A SampleSource may return zero frames, but the InputStream must not
+	 * return zero bytes (or read stale data).
+	 */
+	@Test
+	public void testZeroFrameReads() throws IOException {
+		AudioFormat format = new AudioFormat(8000, 16, 2, true, false);
+		byte[] data = new byte[format.getFrameSize() * 1000];
+		new Random(0).nextBytes(data);
+
+		InputStream in = new SampleSourceAudioInputStream(
+				new StutteringSampleSource(new PCMSampleSource(createStream(
+						data, format))), format);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[101];
+		int k = in.read(buffer);
+		while (k != -1) {
+			assertTrue(k > 0);
+			out.write(buffer, 0, k);
+			k = in.read(buffer);
+		}
+		assertTrue(Arrays.equals(data, out.toByteArray()));
+
+		// AudioInputStream only supports reading one byte at a time if a
+		// frame is one byte
+		format = new AudioFormat(8000, 8, 1, true, false);
+		data = new byte[1000];
+		new Random(0).nextBytes(data);
+		in = new SampleSourceAudioInputStream(new StutteringSampleSource(
+				new PCMSampleSource(createStream(data, format))), format);
+		out.reset();
+		int b = in.read();
+		while (b != -1) {
+			assertTrue(in.available() >= 0);
+			out.write(b);
+			b = in.read();
+		}
+		assertTrue(Arrays.equals(data, out.toByteArray()));
+	}
+
+	/**
+	 * Test mixing tracks of different lengths with different gains.
+	 */
+	@Test
+	public void testMix() throws IOException {
+		AudioFormat format = new AudioFormat(8000, 16, 2, true, false);
+		float[] track1 = createTone(3000, 2, 440, .4f);
+		float[] track2 = createTone(5000, 2, 660, .4f);
+
+		SampleSource mix = new MixedSampleSource(new GainSampleSource(
+				createSource(track1, format), .5f), new GainSampleSource(
+				createSource(track2, format), 2f));
+		assertEquals(5000, mix.getFrameLength());
+		float[] actual = readSamples(mix, 777);
+		assertEquals(track2.length, actual.length);
+		for (int a = 0; a < actual.length; a++) {
+			float expected = 2 * track2[a];
+			if (a < track1.length)
+				expected += .5f * track1[a];
+			assertEquals(expected, actual[a], .001f);
+		}
+	}
+
+	/**
+	 * Test that an AsyncSampleSource returns the same samples as its source.
+	 */
+	@Test
+	public void testAsync() throws IOException {
+		AudioFormat format = new AudioFormat(8000, 16, 2, true, false);
+		float[] track = createTone(20000, 2, 440, .8f);
+		float[] expected = readSamples(createSource(track, format), 100);
+		for (int blockFrameCount : new int[] { 1, 10, 4096, 20000, 30000 }) {
+			float[] actual = readSamples(new AsyncSampleSource(createSource(
+					track, format), blockFrameCount, 3), 333);
+			assertTrue(Arrays.equals(expected, actual));
+		}
+	}
+
+	/**
+	 * Test that closing an AsyncSampleSource doesn't wait forever for a
+	 * source that is blocked in its read method.
+	 */
+	@Test
+	public void testAsyncCloseWhileBlocked() throws Exception {
+		final CountDownLatch readStarted = new CountDownLatch(1);
+		final CountDownLatch closed = new CountDownLatch(1);
+		SampleSource blockingSource = new SampleSource() {
+			@Override
+			public int getChannelCount() {
+				return 1;
+			}
+
+			@Override
+			public float getSampleRate() {
+				return 8000;
+			}
+
+			@Override
+			public long getFrameLength() {
+				return -1;
+			}
+
+			@Override
+			public int read(float[] dest, int offset, int frameCount) {
+				readStarted.countDown();
+				// ignore interruptions, like a blocking socket read
+				while (closed.getCount() > 0) {
+					try {
+						closed.await();
+					} catch (InterruptedException e) {
+						// keep waiting
+					}
+				}
+				return -1;
+			}
+
+			@Override
+			public void close() {
+				closed.countDown();
+			}
+		};
+		AsyncSampleSource async = new AsyncSampleSource(blockingSource);
+		assertTrue(readStarted.await(10, TimeUnit.SECONDS));
+		long start = System.currentTimeMillis();
+		async.close();
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(0, closed.getCount());
+	}
+
+	/**
+	 * Test stretching and resampling.
+	 */
+	@Test
+	public void testResample() throws IOException {
+		AudioFormat format = new AudioFormat(8000, 16, 1, true, false);
+		float[] track = createTone(10000, 1, 100, .8f);
+
+		for (long frameCount : new long[] { 1, 4000, 9999, 10000, 10001,
+				25000 }) {
+			SampleSource stretched = ResampledSampleSource.stretch(
+					createSource(track, format), frameCount);
+			float[] samples = readSamples(stretched, 1000);
+			assertEquals(frameCount, samples.length);
+			assertEquals(track[0], samples[0], .0001f);
+		}
+
+		// a 100 Hz tone resampled to 16000 Hz is still a 100 Hz tone (except
+		// for the last frame, which has nothing to interpolate with)
+		SampleSource resampled = ResampledSampleSource.resample(
+				createSource(track, format), 16000);
+		float[] samples = readSamples(resampled, 1000);
+		assertEquals(20000, samples.length);
+		for (int a = 0; a < samples.length - 1; a++) {
+			double expected = .8 * Math.sin(2 * Math.PI * 100 * a / 16000.0);
+			assertEquals(expected, samples[a], .001);
+		}
+	}
+
+	private float[] createTone(int frameCount, int channels, double frequency,
+			float amplitude) {
+		float[] samples = new float[frameCount * channels];
+		for (int a = 0; a < frameCount; a++) {
+			float v = (float) (amplitude * Math.sin(2 * Math.PI * frequency * a
+					/ 8000.0));
+			for (int c = 0; c < channels; c++) {
+				samples[a * channels + c] = v;
+			}
+		}
+		return samples;
+	}
+
+	private SampleSource createSource(float[] samples, AudioFormat format) {
+		byte[] data = new byte[samples.length * format.getSampleSizeInBits()
+				/ 8];
+		PCMUtils.encodeSamples(samples, 0, data, 0, samples.length, format);
+		return new PCMSampleSource(createStream(data, format));
+	}
+
+	private AudioInputStream createStream(byte[] data, AudioFormat format) {
+		return new AudioInputStream(new ByteArrayInputStream(data), format,
+				data.length / format.getFrameSize());
+	}
+
+	private float[] readSamples(SampleSource source, int frameCount)
+			throws IOException {
+		float[] buffer = new float[frameCount * source.getChannelCount()];
+		float[] total = new float[0];
+		int k = source.read(buffer, 0, frameCount);
+		while (k != -1) {
+			int n = k * source.getChannelCount();
+			total = Arrays.copyOf(total, total.length + n);
+			System.arraycopy(buffer, 0, total, total.length - n, n);
+			k = source.read(buffer, 0, frameCount);
+		}
+		source.close();
+		return total;
+	}
+
+	private byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1001];
+		int k = in.read(buffer);
+		while (k != -1) {
+			out.write(buffer, 0, k);
+			k = in.read(buffer);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+}
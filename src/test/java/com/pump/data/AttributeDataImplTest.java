@@ -0,0 +1,266 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ *
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ *
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.data;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class AttributeDataImplTest extends TestCase {
+
+	static final Key<Integer> KEY_WIDTH = new Key<>(Integer.class, "width",
+			0);
+	static final Key<Integer> KEY_HEIGHT = new Key<>(Integer.class, "height",
+			0);
+	static final Key<String> KEY_NAME = new Key<>(String.class, "name");
+
+	/**
+	 * This stores width and height in slots, and everything else in a map.
+	 */
+	static class SlottedData extends AttributeDataImpl {
+		private static final long serialVersionUID = 1L;
+
+		private static final KeySlots KEY_SLOTS = new KeySlots(KEY_WIDTH,
+				KEY_HEIGHT);
+
+		@Override
+		protected KeySlots getKeySlots() {
+			return KEY_SLOTS;
+		}
+	}
+
+	/**
+	 * This records the name of every property change event it receives.
+	 */
+	static class RecordingListener implements PropertyChangeListener {
+		final String id;
+		final List<String> log;
+
+		RecordingListener(String id, List<String> log) {
+			this.id = id;
+			this.log = log;
+		}
+
+		@Override
+		public void propertyChange(PropertyChangeEvent evt) {
+			log.add(id + ":" + evt.getPropertyName() + "=" + evt.getNewValue());
+		}
+	}
+
+	public void testSlotsAndExtras() {
+		for (AttributeDataImpl data : new AttributeDataImpl[] {
+				new AttributeDataImpl(), new SlottedData() }) {
+			assertEquals(0, data.getAttributeCount());
+			assertEquals(Integer.valueOf(0), data.getAttribute(KEY_WIDTH));
+
+			assertNull(data.setAttribute(KEY_WIDTH, 5));
+			data.setAttribute(KEY_NAME, "rect");
+			data.setAttribute("color", "red");
+			assertEquals(Integer.valueOf(5), data.getAttribute(KEY_WIDTH));
+			assertEquals(Integer.valueOf(5), data.getAttribute("width"));
+			assertEquals("rect", data.getAttribute(KEY_NAME));
+			assertEquals(3, data.getAttributeCount());
+
+			// a different Key with the same name resolves to the same value
+			assertEquals(Integer.valueOf(5), data.getAttribute(
+					new Key<>(Integer.class, "width")));
+
+			// strings are parsed with the key's encoder
+			data.setAttribute("height", "7");
+			assertEquals(Integer.valueOf(7), data.getAttribute(KEY_HEIGHT));
+
+			Map<String, Object> expected = new HashMap<>();
+			expected.put("width", 5);
+			expected.put("height", "7");
+			expected.put("name", "rect");
+			expected.put("color", "red");
+			assertEquals(expected, data.getAttributeMap());
+			assertEquals(expected.hashCode(), data.hashCode());
+			assertEquals(4, data.getAttributes().length);
+
+			assertEquals(Integer.valueOf(5), data.setAttribute(KEY_WIDTH, null));
+			data.setAttribute("color", null);
+			assertEquals(2, data.getAttributeCount());
+
+			data.clearAttributes();
+			assertEquals(0, data.getAttributeCount());
+			assertEquals(0, data.getAttributes().length);
+		}
+	}
+
+	public void testEquals() {
+		AttributeDataImpl d1 = new AttributeDataImpl();
+		AttributeDataImpl d2 = new SlottedData();
+		AttributeDataImpl d3 = new SlottedData();
+		for (AttributeDataImpl d : new AttributeDataImpl[] { d1, d2, d3 }) {
+			d.setAttribute(KEY_WIDTH, 3);
+			d.setAttribute(KEY_NAME, "x");
+		}
+		assertEquals(d1, d2);
+		assertEquals(d2, d3);
+		assertEquals(d1.hashCode(), d3.hashCode());
+
+		d3.setAttribute(KEY_HEIGHT, 4);
+		assertFalse(d2.equals((Object) d3));
+		assertFalse(d3.equals((Object) d1));
+	}
+
+	/**
+	 * Listeners are indexed by name, but they should still be notified in the
+	 * order they were added.
+	 */
+	public void testListeners() {
+		List<String> log = new ArrayList<>();
+		RecordingListener all = new RecordingListener("all", log);
+		SlottedData data = new SlottedData();
+		data.addAttributePropertyChangeListener("width",
+				new RecordingListener("width1", log));
+		data.addAttributePropertyChangeListener(all);
+		data.addAttributePropertyChangeListener("name",
+				new RecordingListener("name", log));
+		data.addAttributePropertyChangeListener("width",
+				new RecordingListener("width2", log));
+
+		data.setAttribute(KEY_WIDTH, 1);
+		data.setAttribute(KEY_NAME, "n");
+		data.setAttribute("color", "red");
+		// this doesn't change anything, so it shouldn't notify anyone
+		data.setAttribute(KEY_WIDTH, 1);
+
+		List<String> expected = new ArrayList<>();
+		expected.add("width1:width=1");
+		expected.add("all:width=1");
+		expected.add("width2:width=1");
+		expected.add("all:name=n");
+		expected.add("name:name=n");
+		expected.add("all:color=red");
+		assertEquals(expected, log);
+
+		log.clear();
+		data.removeAttributePropertyChangeListener(all);
+		data.setAttribute(KEY_WIDTH, 2);
+		data.setAttribute("color", "blue");
+		expected.clear();
+		expected.add("width1:width=2");
+		expected.add("width2:width=2");
+		assertEquals(expected, log);
+	}
+
+	public void testPutAllAttributes() {
+		List<String> log = new ArrayList<>();
+		SlottedData data = new SlottedData();
+		data.setAttribute(KEY_WIDTH, 1);
+		data.setAttribute(KEY_HEIGHT, 2);
+		data.setAttribute(KEY_NAME, "a");
+		data.addAttributePropertyChangeListener(new RecordingListener("all",
+				log));
+
+		Map<String, Object> incoming = new HashMap<>();
+		incoming.put("width", 1);
+		incoming.put("name", "b");
+		data.putAllAttributes(incoming, false);
+		assertEquals(1, log.size());
+		assertEquals("all:name=b", log.get(0));
+		assertEquals(3, data.getAttributeCount());
+
+		log.clear();
+		data.putAllAttributes(incoming, true);
+		assertEquals(1, log.size());
+		assertEquals("all:height=null", log.get(0));
+		assertEquals(incoming, data.getAttributeMap());
+	}
+
+	public void testSerialization() throws Exception {
+		SlottedData data = new SlottedData();
+		data.setAttribute(KEY_WIDTH, 1);
+		data.setAttribute(KEY_NAME, "a");
+		data.setAttribute("color", "red");
+
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(byteOut)) {
+			out.writeObject(data);
+		}
+		SlottedData copy;
+		try (ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(byteOut.toByteArray()))) {
+			copy = (SlottedData) in.readObject();
+		}
+		assertEquals(data, copy);
+		assertEquals(Integer.valueOf(1), copy.getAttribute(KEY_WIDTH));
+
+		// the copy should be fully functional
+		List<String> log = new ArrayList<>();
+		copy.addAttributePropertyChangeListener(new RecordingListener("all",
+				log));
+		copy.setAttribute(KEY_WIDTH, 2);
+		assertEquals(1, log.size());
+	}
+
+	/**
+	 * Readers don't acquire a lock, but they should always see a consistent
+	 * value while another thread writes.
+	 */
+	public void testConcurrentReads() throws Exception {
+		final SlottedData data = new SlottedData();
+		data.setAttribute(KEY_WIDTH, 0);
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					for (int a = 1; a <= 20000; a++) {
+						data.getAttributeLock().writeLock().lock();
+						try {
+							data.setAttribute(KEY_WIDTH, a);
+							data.setAttribute(KEY_HEIGHT, a);
+							data.setAttribute("extra" + (a % 10), a);
+						} finally {
+							data.getAttributeLock().writeLock().unlock();
+						}
+					}
+				} catch (Throwable t) {
+					error.set(t);
+				}
+			}
+		};
+		writer.start();
+		int lastWidth = 0;
+		while (writer.isAlive()) {
+			int width = data.getAttribute(KEY_WIDTH);
+			assertTrue(width >= lastWidth);
+			lastWidth = width;
+
+			// a reader that holds the read lock sees both changes
+			data.getAttributeLock().readLock().lock();
+			try {
+				assertEquals(data.getAttribute(KEY_WIDTH),
+						data.getAttribute(KEY_HEIGHT));
+			} finally {
+				data.getAttributeLock().readLock().unlock();
+			}
+			assertTrue(data.getAttributeCount() <= 12);
+		}
+		writer.join();
+		assertNull(error.get());
+		assertEquals(Integer.valueOf(20000), data.getAttribute(KEY_WIDTH));
+		assertEquals(12, data.getAttributeCount());
+	}
+}
@@ -0,0 +1,301 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.data.converter;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.geom.Path2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.plaf.ColorUIResource;
+
+import com.pump.data.AbstractAttributeDataImpl;
+import com.pump.data.AttributeDataImpl;
+import com.pump.data.AttributeDataMapConverter;
+import com.pump.data.Key;
+import com.pump.image.shadow.ShadowAttributes;
+import com.pump.io.IOUtils;
+import com.pump.io.JavaObjectSerializer;
+import com.pump.io.ObjectSerializer;
+import com.pump.showcase.app.ShowcaseDemoInfo;
+
+import junit.framework.TestCase;
+
+public class BinaryObjectSerializerTest extends TestCase {
+
+	/**
+	 * This AbstractAttributeDataImpl doesn't have a no-argument constructor,
+	 * and it has state outside of its attributes.
+	 */
+	static class LabeledData extends AbstractAttributeDataImpl {
+		private static final long serialVersionUID = 1L;
+
+		final String label;
+
+		LabeledData(String label, int value) {
+			this.label = label;
+			setAttribute(new Key<>(Integer.class, "value"), value);
+		}
+	}
+
+	/**
+	 * This converts Dimensions, and is only registered in some tests.
+	 */
+	static class DimensionMapConverter implements BeanMapConverter<Dimension> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Class<Dimension> getType() {
+			return Dimension.class;
+		}
+
+		@Override
+		public Map<String, Object> createAtoms(Dimension object) {
+			Map<String, Object> atoms = new HashMap<>();
+			atoms.put("width", object.width);
+			atoms.put("height", object.height);
+			return atoms;
+		}
+
+		@Override
+		public Dimension createFromAtoms(Map<String, Object> atoms) {
+			return new Dimension((Integer) atoms.get("width"),
+					(Integer) atoms.get("height"));
+		}
+	}
+
+	BinaryObjectSerializer serializer = new BinaryObjectSerializer();
+
+	private byte[] write(Object obj) throws Exception {
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		serializer.writeObject(obj, byteOut);
+		return byteOut.toByteArray();
+	}
+
+	private Object roundTrip(Object obj) throws Exception {
+		return serializer.readObject(new ByteArrayInputStream(write(obj)));
+	}
+
+	/**
+	 * Test the types that are written natively.
+	 */
+	public void testNativeTypes() throws Exception {
+		Object[] values = new Object[] { null, true, false, (byte) -3,
+				(short) 300, 0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE,
+				Long.MIN_VALUE, 1234567890123L, 1.5f, Float.NaN, -2.25,
+				'é', "", "text ☃", TimeUnit.SECONDS };
+		for (Object value : values) {
+			assertEquals(value, roundTrip(value));
+		}
+
+		assertTrue(Arrays.equals(new byte[] { 1, -2, 3 },
+				(byte[]) roundTrip(new byte[] { 1, -2, 3 })));
+		assertTrue(Arrays.equals(new int[] { 1, -200000, 3 },
+				(int[]) roundTrip(new int[] { 1, -200000, 3 })));
+		assertTrue(Arrays.equals(new long[] { Long.MAX_VALUE, -2 },
+				(long[]) roundTrip(new long[] { Long.MAX_VALUE, -2 })));
+		assertTrue(Arrays.equals(new float[] { 1.5f, -2 },
+				(float[]) roundTrip(new float[] { 1.5f, -2 })));
+		assertTrue(Arrays.equals(new double[] { 1.5, -2 },
+				(double[]) roundTrip(new double[] { 1.5, -2 })));
+		assertTrue(Arrays.equals(new String[] { "a", null, "a" },
+				(String[]) roundTrip(new String[] { "a", null, "a" })));
+
+		Map<Object, Object> map = new HashMap<>();
+		map.put("list", new ArrayList<>(Arrays.asList(1, "two", 3.0)));
+		map.put(4, new LinkedHashSet<>(Arrays.asList("z", "y", "x")));
+		TreeMap<String, Object> treeMap = new TreeMap<>();
+		treeMap.put("b", ConverterUtils.ByteArray.get(new byte[] { 1, 2 }));
+		treeMap.put("a", ConverterUtils.FloatArray.get(new float[] { 3 }));
+		map.put("tree", treeMap);
+		map.put("bigDecimal", new BigDecimal("1.2345"));
+		Object copy = roundTrip(map);
+		assertEquals(map, copy);
+		assertEquals(Arrays.asList("z", "y", "x"),
+				new ArrayList<>((LinkedHashSet<?>) ((Map<?, ?>) copy).get(4)));
+	}
+
+	/**
+	 * Test that repeated objects are written once, and cycles are preserved.
+	 */
+	public void testReferences() throws Exception {
+		List<Object> shared = new ArrayList<>(Arrays.asList("a", "b"));
+		List<Object> list = new ArrayList<>();
+		list.add(shared);
+		list.add(shared);
+		list.add(list);
+		List<?> copy = (List<?>) roundTrip(list);
+		assertEquals(3, copy.size());
+		assertSame(copy.get(0), copy.get(1));
+		assertSame(copy, copy.get(2));
+		assertEquals(shared, copy.get(0));
+	}
+
+	/**
+	 * Test objects that are written using BeanMapConverters.
+	 */
+	public void testBeans() throws Exception {
+		AttributeDataImpl data = new AttributeDataImpl();
+		data.setAttribute(new Key<>(String.class, "name"), "Mercury");
+		data.setAttribute(new Key<>(Integer.class, "index"), 1);
+		data.setAttribute(new Key<>(Color.class, "color"), Color.gray);
+		data.setAttribute(new Key<>(BasicStroke.class, "stroke"),
+				new BasicStroke(2, BasicStroke.CAP_ROUND,
+						BasicStroke.JOIN_BEVEL, 4, new float[] { 1, 2 }, 0));
+
+		ShadowAttributes shadow = new ShadowAttributes(1, 2, 3.5f,
+				new Color(0x80112233, true));
+
+		Object[] values = new Object[] { data, shadow, Color.red,
+				AlphaComposite.getInstance(AlphaComposite.SRC_OVER, .5f),
+				new ColorUIResource(Color.blue) };
+		for (Object value : values) {
+			Object copy = roundTrip(value);
+			assertEquals(value, copy);
+			assertEquals(value.getClass(), copy.getClass());
+		}
+
+		Path2D path = new Path2D.Float();
+		path.moveTo(0, 0);
+		path.quadTo(10, 0, 10, 10);
+		path.closePath();
+		assertTrue(ConverterUtils.equals(path, roundTrip(path)));
+	}
+
+	/**
+	 * Test AbstractAttributeDataImpls that the AttributeDataMapConverter can't
+	 * recreate. These should fall back to Java serialization.
+	 */
+	public void testBeansWithoutDefaultConstructor() throws Exception {
+		ShowcaseDemoInfo info = new ShowcaseDemoInfo("Foo", "Bar");
+		ShowcaseDemoInfo infoCopy = (ShowcaseDemoInfo) roundTrip(info);
+		assertEquals("Foo", infoCopy.getDemoName());
+		assertEquals("Bar", infoCopy.getDemoSimpleClassName());
+
+		LabeledData data = new LabeledData("label", 3);
+		LabeledData dataCopy = (LabeledData) roundTrip(data);
+		assertEquals("label", dataCopy.label);
+		assertEquals(data, dataCopy);
+
+		// if someone registers the converter for these classes anyway, then
+		// it should fail while writing (instead of writing unreadable data)
+		serializer.addConverter(new AttributeDataMapConverter(),
+				LabeledData.class);
+		try {
+			write(data);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// pass
+		}
+	}
+
+	/**
+	 * Test that a stream can't name a converter this serializer doesn't
+	 * know about.
+	 */
+	public void testUnregisteredConverter() throws Exception {
+		BinaryObjectSerializer otherSerializer = new BinaryObjectSerializer();
+		otherSerializer.addConverter(new DimensionMapConverter(), false);
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		otherSerializer.writeObject(new Dimension(3, 4), byteOut);
+		byte[] data = byteOut.toByteArray();
+
+		assertEquals(new Dimension(3, 4), otherSerializer
+				.readObject(new ByteArrayInputStream(data)));
+		try {
+			serializer.readObject(new ByteArrayInputStream(data));
+			fail();
+		} catch (IOException e) {
+			// pass
+		}
+	}
+
+	/**
+	 * Test that a header that claims a huge length doesn't allocate a huge
+	 * array.
+	 */
+	public void testCorruptLength() throws Exception {
+		byte[] data = write("abc");
+		// the 4-byte signature, the 1-byte version, then the length
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		byteOut.write(data, 0, 5);
+		byteOut.write(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff,
+				(byte) 0xff, 0x07 });
+		byteOut.write(data, 6, data.length - 6);
+		try {
+			serializer.readObject(
+					new ByteArrayInputStream(byteOut.toByteArray()));
+			fail();
+		} catch (EOFException e) {
+			// pass
+		}
+	}
+
+	/**
+	 * Test that many small beans are written more compactly than with Java
+	 * serialization.
+	 */
+	public void testSize() throws Exception {
+		List<ShadowAttributes> list = new ArrayList<>();
+		for (int a = 0; a < 100; a++) {
+			list.add(new ShadowAttributes(a, a, a % 5, new Color(a, a, a)));
+		}
+		ByteArrayOutputStream javaOut = new ByteArrayOutputStream();
+		new JavaObjectSerializer().writeObject(list, javaOut);
+		byte[] binary = write(list);
+		assertTrue(binary.length * 2 < javaOut.size());
+		assertEquals(list, roundTrip(list));
+	}
+
+	/**
+	 * Test that IOUtils can switch between serializers, and can read data
+	 * written by any registered serializer.
+	 */
+	public void testIOUtils() throws Exception {
+		LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+		map.put("x", 1);
+		map.put("color", Color.cyan);
+
+		byte[] javaData = IOUtils.serialize(map);
+		ObjectSerializer oldSerializer = IOUtils.getSerializer();
+		try {
+			IOUtils.setSerializer(serializer);
+			byte[] binaryData = IOUtils.serialize(map);
+			assertFalse(Arrays.equals(javaData, binaryData));
+			assertEquals(map, IOUtils.deserialize(binaryData));
+			assertEquals(map, IOUtils.deserialize(javaData));
+
+			ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+			IOUtils.serialize((Serializable) map, byteOut, false);
+			assertEquals(map, IOUtils.deserialize(
+					new ByteArrayInputStream(byteOut.toByteArray()), false));
+		} finally {
+			IOUtils.setSerializer(oldSerializer);
+		}
+		assertEquals(map, IOUtils.deserialize(javaData));
+	}
+}
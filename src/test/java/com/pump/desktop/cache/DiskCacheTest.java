@@ -0,0 +1,212 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.desktop.cache;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.pump.io.IOUtils;
+
+import junit.framework.TestCase;
+
+public class DiskCacheTest extends TestCase {
+
+	File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("DiskCacheTest").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		IOUtils.delete(dir);
+	}
+
+	private byte[] createValue(int length, int seed) {
+		byte[] value = new byte[length];
+		for (int a = 0; a < value.length; a++) {
+			value[a] = (byte) (a * 31 + seed);
+		}
+		return value;
+	}
+
+	/**
+	 * Values should be readable after the cache is closed and reopened.
+	 */
+	public void testPersistence() throws Exception {
+		try (DiskCache cache = new DiskCache(dir, 1000000)) {
+			for (int a = 0; a < 100; a++) {
+				assertTrue(cache.put("key" + a, createValue(a, a)));
+			}
+			cache.put("key7", createValue(500, -7));
+			assertTrue(cache.remove("key8"));
+			assertFalse(cache.remove("key8"));
+			assertTrue(cache.putObject("list",
+					new ArrayList<>(Arrays.asList("a", "b", "c"))));
+		}
+
+		try (DiskCache cache = new DiskCache(dir, 1000000)) {
+			assertEquals(100, cache.size());
+			for (int a = 0; a < 100; a++) {
+				byte[] value = cache.get("key" + a);
+				if (a == 7) {
+					assertTrue(Arrays.equals(createValue(500, -7), value));
+				} else if (a == 8) {
+					assertNull(value);
+				} else {
+					assertTrue(Arrays.equals(createValue(a, a), value));
+				}
+			}
+			assertEquals(Arrays.asList("a", "b", "c"),
+					cache.getObject("list"));
+			assertEquals(100, cache.getHitCount());
+			assertEquals(1, cache.getMissCount());
+		}
+	}
+
+	/**
+	 * The least recently used entries should be evicted first.
+	 */
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		try (DiskCache cache = new DiskCache(dir, 10000)) {
+			for (int a = 0; a < 9; a++) {
+				cache.put("key" + a, createValue(1000, a));
+			}
+			assertNotNull(cache.get("key0"));
+			cache.put("key9", createValue(1000, 9));
+			cache.put("key10", createValue(1000, 10));
+
+			assertTrue(cache.getByteCount() <= 10000);
+			assertTrue(cache.containsKey("key0"));
+			assertFalse(cache.containsKey("key1"));
+			assertTrue(cache.containsKey("key10"));
+			assertTrue(cache.getEvictionCount() > 0);
+			assertTrue(cache.getEvictedByteCount() >= 1000
+					* cache.getEvictionCount());
+
+			assertFalse(cache.put("huge", createValue(20000, 0)));
+			assertFalse(cache.containsKey("huge"));
+		}
+	}
+
+	/**
+	 * The largest entries should be evicted first.
+	 */
+	public void testLargestFirstEviction() throws Exception {
+		try (DiskCache cache = new DiskCache(dir, 10000,
+				DiskCache.EvictionPolicy.LARGEST_FIRST)) {
+			cache.put("big", createValue(6000, 0));
+			for (int a = 0; a < 10; a++) {
+				cache.put("key" + a, createValue(400, a));
+			}
+			assertFalse(cache.containsKey("big"));
+			assertEquals(10, cache.size());
+			assertEquals(1, cache.getEvictionCount());
+		}
+	}
+
+	/**
+	 * Replacing values many times should compact the segment file.
+	 */
+	public void testCompaction() throws Exception {
+		File segment = new File(dir, "segment");
+		try (DiskCache cache = new DiskCache(dir, 100000)) {
+			for (int a = 0; a < 1000; a++) {
+				cache.put("key" + (a % 10), createValue(1000, a));
+			}
+			assertTrue(segment.length() < 300000);
+			for (int a = 0; a < 10; a++) {
+				assertTrue(Arrays.equals(createValue(1000, 990 + a),
+						cache.get("key" + a)));
+			}
+		}
+	}
+
+	/**
+	 * An incomplete record at the end of the segment file should be ignored.
+	 */
+	public void testTruncatedRecord() throws Exception {
+		try (DiskCache cache = new DiskCache(dir, 100000)) {
+			cache.put("a", createValue(100, 1));
+			cache.put("b", createValue(100, 2));
+		}
+		File segment = new File(dir, "segment");
+		try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+			raf.setLength(raf.length() - 10);
+		}
+		try (DiskCache cache = new DiskCache(dir, 100000)) {
+			assertTrue(Arrays.equals(createValue(100, 1), cache.get("a")));
+			assertNull(cache.get("b"));
+			cache.put("c", createValue(100, 3));
+		}
+		try (DiskCache cache = new DiskCache(dir, 100000)) {
+			assertEquals(2, cache.size());
+			assertTrue(Arrays.equals(createValue(100, 3), cache.get("c")));
+		}
+	}
+
+	/**
+	 * Several DiskCaches that share a directory should see each other's
+	 * changes, including after one of them compacts the segment file.
+	 */
+	public void testSharedDirectory() throws Exception {
+		try (DiskCache cache1 = new DiskCache(dir, 100000);
+				DiskCache cache2 = new DiskCache(dir, 100000)) {
+			cache1.put("x", createValue(10, 1));
+			assertTrue(Arrays.equals(createValue(10, 1), cache2.get("x")));
+			cache2.remove("x");
+			assertNull(cache1.get("x"));
+
+			for (int a = 0; a < 1000; a++) {
+				cache1.put("key" + (a % 10), createValue(1000, a));
+			}
+			assertEquals(10, cache2.size());
+			assertTrue(Arrays.equals(createValue(1000, 999),
+					cache2.get("key9")));
+
+			final List<Throwable> errors = new ArrayList<>();
+			Thread[] threads = new Thread[4];
+			for (int a = 0; a < threads.length; a++) {
+				final DiskCache cache = a % 2 == 0 ? cache1 : cache2;
+				final int threadIndex = a;
+				threads[a] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							for (int b = 0; b < 500; b++) {
+								String key = threadIndex + "-" + (b % 20);
+								cache.put(key, createValue(200, b));
+								byte[] value = cache.get(key);
+								assertTrue(Arrays.equals(createValue(200, b),
+										value));
+							}
+						} catch (Throwable t) {
+							synchronized (errors) {
+								errors.add(t);
+							}
+						}
+					}
+				};
+				threads[a].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(new ArrayList<Throwable>(), errors);
+			assertEquals(cache1.size(), cache2.size());
+		}
+	}
+}
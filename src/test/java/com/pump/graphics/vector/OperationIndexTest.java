@@ -0,0 +1,194 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.graphics.vector;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.pump.graphics.Graphics2DContext;
+
+import junit.framework.TestCase;
+
+public class OperationIndexTest extends TestCase {
+
+	/**
+	 * Randomly add, insert, replace and remove operations and compare the
+	 * index's results against a linear scan of the list.
+	 */
+	public void testQueries() {
+		Random random = new Random(0);
+		VectorImage img = new VectorImage();
+		List<Operation> ops = img.getOperations();
+		OperationIndex index = new OperationIndex(img.getOperations());
+		for (int a = 0; a < 2000; a++) {
+			int k = random.nextInt(10);
+			if (k < 5 || ops.isEmpty()) {
+				ops.add(createOperation(random));
+			} else if (k < 7) {
+				ops.add(random.nextInt(ops.size()), createOperation(random));
+			} else if (k < 8) {
+				ops.set(random.nextInt(ops.size()), createOperation(random));
+			} else {
+				ops.remove(random.nextInt(ops.size()));
+			}
+
+			if (a % 20 == 0) {
+				Rectangle2D r = new Rectangle2D.Double(
+						random.nextInt(1000) - 100, random.nextInt(1000) - 100,
+						random.nextInt(300), random.nextInt(300));
+				List<Operation> expected = new ArrayList<>();
+				Rectangle2D union = null;
+				for (Operation op : ops) {
+					Rectangle2D b = op.getBounds();
+					// the index treats touching edges as intersecting
+					if (b.getMinX() <= r.getMaxX() && r.getMinX() <= b.getMaxX()
+							&& b.getMinY() <= r.getMaxY()
+							&& r.getMinY() <= b.getMaxY())
+						expected.add(op);
+					if (union == null) {
+						union = b;
+					} else {
+						union.add(b);
+					}
+				}
+				List<Operation> actual = index.getOperations(r);
+				assertEquals(expected.size(), actual.size());
+				for (int b = 0; b < expected.size(); b++) {
+					assertTrue(expected.get(b) == actual.get(b));
+				}
+				assertEquals(union, index.getBounds());
+			}
+		}
+	}
+
+	/**
+	 * Test that querying the index while another thread modifies the list
+	 * doesn't deadlock, and that the index catches up afterwards.
+	 */
+	public void testConcurrentModification() throws Exception {
+		VectorImage img = new VectorImage();
+		final List<Operation> ops = img.getOperations();
+		final OperationIndex index = new OperationIndex(img.getOperations());
+		final Throwable[] error = new Throwable[1];
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Random random = new Random(0);
+					for (int a = 0; a < 5000; a++) {
+						if (ops.isEmpty() || random.nextInt(3) > 0) {
+							ops.add(random.nextInt(ops.size() + 1),
+									createOperation(random));
+						} else {
+							ops.remove(random.nextInt(ops.size()));
+						}
+					}
+				} catch (Throwable t) {
+					error[0] = t;
+				}
+			}
+		};
+		writer.start();
+		Rectangle2D r = new Rectangle2D.Double(0, 0, 500, 500);
+		while (writer.isAlive()) {
+			index.getOperations(r);
+			index.getBounds();
+		}
+		writer.join();
+		assertNull(error[0]);
+
+		List<Operation> expected = new ArrayList<>();
+		for (Operation op : ops) {
+			Rectangle2D b = op.getBounds();
+			if (b.getMinX() <= r.getMaxX() && r.getMinX() <= b.getMaxX()
+					&& b.getMinY() <= r.getMaxY() && r.getMinY() <= b.getMaxY())
+				expected.add(op);
+		}
+		List<Operation> actual = index.getOperations(r);
+		assertEquals(expected.size(), actual.size());
+		for (int b = 0; b < expected.size(); b++) {
+			assertTrue(expected.get(b) == actual.get(b));
+		}
+	}
+
+	private Operation createOperation(Random random) {
+		Graphics2DContext context = new Graphics2DContext();
+		context.setColor(new Color(random.nextInt()));
+		return new FillOperation(context,
+				new Rectangle2D.Double(random.nextInt(1000),
+						random.nextInt(1000), 1 + random.nextInt(50),
+						1 + random.nextInt(50)));
+	}
+
+	/**
+	 * Test that painting a clipped region of a VectorImage is pixel-identical
+	 * to painting every operation.
+	 */
+	public void testClippedPaint() {
+		Random random = new Random(0);
+		VectorImage img = new VectorImage();
+		Graphics2D g = img.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		for (int a = 0; a < 1000; a++) {
+			g.setColor(new Color(random.nextInt(), true));
+			float x = random.nextFloat() * 400;
+			float y = random.nextFloat() * 400;
+			if (a % 2 == 0) {
+				g.fill(new Ellipse2D.Float(x, y, 20, 20));
+			} else {
+				g.setStroke(new BasicStroke(1 + random.nextInt(5)));
+				g.draw(new Ellipse2D.Float(x, y, 10, 30));
+			}
+		}
+		g.dispose();
+
+		for (double scale : new double[] { 1, 3, .5 }) {
+			BufferedImage bi1 = new BufferedImage(100, 100,
+					BufferedImage.TYPE_INT_ARGB);
+			BufferedImage bi2 = new BufferedImage(100, 100,
+					BufferedImage.TYPE_INT_ARGB);
+
+			Graphics2D g1 = bi1.createGraphics();
+			g1.clipRect(0, 0, 100, 100);
+			g1.translate(-60, -70);
+			g1.scale(scale, scale);
+			img.paint(g1);
+			g1.dispose();
+
+			Graphics2D g2 = bi2.createGraphics();
+			g2.clipRect(0, 0, 100, 100);
+			g2.translate(-60, -70);
+			g2.scale(scale, scale);
+			int paintedCount = img.getOperations(g2).size();
+			assertTrue(paintedCount < img.getOperations().size());
+			for (Operation op : img.getOperations()) {
+				op.paint(g2);
+			}
+			g2.dispose();
+
+			for (int y = 0; y < bi1.getHeight(); y++) {
+				for (int x = 0; x < bi1.getWidth(); x++) {
+					assertEquals("scale = " + scale + " x = " + x + " y = " + y,
+							bi2.getRGB(x, y), bi1.getRGB(x, y));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.graphics.vector;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import com.pump.image.pixel.PixelIterator;
+
+import junit.framework.TestCase;
+
+public class TiledVectorImageRendererTest extends TestCase {
+
+	/**
+	 * Test that tiled rendering is pixel-identical to
+	 * {@link VectorImage#toBufferedImage()}.
+	 */
+	public void testRender() {
+		VectorImage img = createImage(true);
+		BufferedImage expected = img.toBufferedImage();
+
+		TiledVectorImageRenderer renderer = new TiledVectorImageRenderer(img);
+		renderer.setTileSize(37);
+		renderer.setThreadCount(3);
+		assertEquals(expected.getWidth(), renderer.getWidth());
+		assertEquals(expected.getHeight(), renderer.getHeight());
+
+		assertImageEquals(expected, renderer.render());
+		assertImageEquals(expected, renderer.toBufferedImage(null));
+	}
+
+	/**
+	 * Test that tiled rendering at a scale is pixel-identical to painting the
+	 * whole image with the same transform. (This omits bitmaps, because Java2D
+	 * may sample scaled images differently depending on the clip.)
+	 */
+	public void testScaledRender() {
+		VectorImage img = createImage(false);
+		double scale = 2.5;
+		Rectangle2D b = img.getBounds();
+		Rectangle r = new Rectangle2D.Double(b.getX() * scale,
+				b.getY() * scale, b.getWidth() * scale, b.getHeight() * scale)
+						.getBounds();
+		BufferedImage expected = new BufferedImage(r.width, r.height,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = expected.createGraphics();
+		g.translate(-r.x, -r.y);
+		g.scale(scale, scale);
+		img.paint(g);
+		g.dispose();
+
+		TiledVectorImageRenderer renderer = new TiledVectorImageRenderer(img,
+				scale);
+		renderer.setTileSize(100);
+		assertImageEquals(expected, renderer.render());
+		assertImageEquals(expected, renderer.toBufferedImage(null));
+	}
+
+	/**
+	 * Test that GradientPaints and scaled images, which Java2D doesn't paint
+	 * identically when they are split into tiles, are still pixel-identical
+	 * to painting the whole image.
+	 */
+	public void testGradientsAndScaledImages() {
+		VectorImage img = createImage(true);
+		Graphics2D g = img.createGraphics();
+		g.setPaint(new GradientPaint(3, 5, Color.red, 207, 111, new Color(0,
+				0, 255, 100), true));
+		g.fill(new Ellipse2D.Float(10, 10, 250, 150));
+		g.dispose();
+
+		for (double scale : new double[] { 1, 2.5 }) {
+			assertTiledRender(img, scale);
+		}
+
+		img = createImage(false);
+		g = img.createGraphics();
+		BufferedImage bi = new BufferedImage(7, 9, BufferedImage.TYPE_INT_ARGB);
+		Random random = new Random(0);
+		for (int y = 0; y < bi.getHeight(); y++) {
+			for (int x = 0; x < bi.getWidth(); x++) {
+				bi.setRGB(x, y, random.nextInt());
+			}
+		}
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(bi, 20, 15, 230, 170, null);
+		g.dispose();
+
+		for (double scale : new double[] { 1, 2.5 }) {
+			assertTiledRender(img, scale);
+		}
+	}
+
+	/**
+	 * Assert that rendering a VectorImage in tiles is pixel-identical to
+	 * painting it all at once.
+	 */
+	private void assertTiledRender(VectorImage img, double scale) {
+		Rectangle2D b = img.getBounds();
+		Rectangle r = new Rectangle2D.Double(b.getX() * scale,
+				b.getY() * scale, b.getWidth() * scale, b.getHeight() * scale)
+						.getBounds();
+		BufferedImage expected = new BufferedImage(r.width, r.height,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = expected.createGraphics();
+		g.translate(-r.x, -r.y);
+		g.scale(scale, scale);
+		img.paint(g);
+		g.dispose();
+
+		TiledVectorImageRenderer renderer = new TiledVectorImageRenderer(img,
+				scale);
+		renderer.setTileSize(37);
+		assertImageEquals(expected, renderer.render());
+		assertImageEquals(expected, renderer.toBufferedImage(null));
+	}
+
+	/**
+	 * Test that a closed iterator rejects further reads.
+	 */
+	public void testClose() {
+		TiledVectorImageRenderer renderer = new TiledVectorImageRenderer(
+				createImage(true));
+		renderer.setTileSize(50);
+		PixelIterator<int[]> iter = renderer.createPixelIterator();
+		int[] row = new int[iter.getWidth()];
+		iter.next(row, 0);
+		iter.skip();
+		iter.close();
+		try {
+			iter.next(row, 0);
+			fail();
+		} catch (PixelIterator.ClosedException e) {
+			// pass
+		}
+	}
+
+	private VectorImage createImage(boolean includeBitmap) {
+		Random random = new Random(0);
+		VectorImage img = new VectorImage();
+		Graphics2D g = img.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+				RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setColor(Color.cyan);
+		g.fillRect(-13, -7, 300, 200);
+
+		if (includeBitmap) {
+			BufferedImage bi = new BufferedImage(30, 30,
+					BufferedImage.TYPE_INT_ARGB);
+			for (int y = 0; y < bi.getHeight(); y++) {
+				for (int x = 0; x < bi.getWidth(); x++) {
+					bi.setRGB(x, y, random.nextInt());
+				}
+			}
+			g.drawImage(bi, 40, 40, null);
+		}
+
+		for (int a = 0; a < 300; a++) {
+			g.setColor(new Color(random.nextInt(), true));
+			float x = random.nextFloat() * 280;
+			float y = random.nextFloat() * 180;
+			if (a % 3 == 0) {
+				g.fill(new Ellipse2D.Float(x, y, 20, 20));
+			} else if (a % 3 == 1) {
+				g.setStroke(new BasicStroke(1 + random.nextInt(5)));
+				g.draw(new Ellipse2D.Float(x, y, 10, 30));
+			} else {
+				g.setFont(new Font(Font.SERIF, Font.PLAIN,
+						8 + random.nextInt(20)));
+				g.drawString("Tile", x, y);
+			}
+		}
+		g.dispose();
+		return img;
+	}
+
+	private void assertImageEquals(BufferedImage expected,
+			BufferedImage actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				if (expected.getRGB(x, y) != actual.getRGB(x, y))
+					fail("x = " + x + " y = " + y + " expected "
+							+ Integer.toUnsignedString(expected.getRGB(x, y),
+									16)
+							+ " but was " + Integer.toUnsignedString(
+									actual.getRGB(x, y), 16));
+			}
+		}
+	}
+}
@@ -21,12 +21,17 @@ import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Stroke;
 import java.awt.TexturePaint;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.font.TextAttribute;
 import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -35,8 +40,11 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.text.AttributedString;
+import java.util.Arrays;
 import java.util.Random;
 
+import java.util.zip.GZIPOutputStream;
+
 import javax.imageio.ImageIO;
 
 import org.junit.Test;
@@ -144,6 +152,27 @@ public class VectorImageTest extends TestCase {
 					}
 				}
 			}
+
+			// also test the binary format used by VectorImage#save:
+			try (ByteArrayOutputStream byteOut = new ByteArrayOutputStream()) {
+				img.save(byteOut);
+				bytes = byteOut.toByteArray();
+			}
+			VectorImage copy = new VectorImage(new ByteArrayInputStream(bytes));
+			assertEquals(img.getOperations().size(),
+					copy.getOperations().size());
+			for (int a = 0; a < copy.getOperations().size(); a++) {
+				Operation op1 = img.getOperations().get(a);
+				Operation op2 = copy.getOperations().get(a);
+				assertTrue("a = " + a + " " + op1.getClass(), op1.equals(op2));
+			}
+
+			BufferedImage bi4 = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g4 = bi4.createGraphics();
+			VectorImage.paint(new ByteArrayInputStream(bytes), g4);
+			g4.dispose();
+			assertImageEquals(bi, bi4);
 		}
 
 		public abstract void paint(Graphics2D g);
@@ -830,6 +859,97 @@ public class VectorImageTest extends TestCase {
 
 	}
 
+	/**
+	 * Test that saving a VectorImage preserves colors that aren't exactly
+	 * described by an ARGB int.
+	 */
+	public void testSaveColors() throws Exception {
+		Color[] colors = new Color[] { new Color(10, 20, 30, 40),
+				new Color(.1234f, .5678f, .9f, .3333f),
+				new Color(ColorSpace.getInstance(ColorSpace.CS_LINEAR_RGB),
+						new float[] { .2f, .4f, .6f }, .8f) };
+		VectorImage img = new VectorImage();
+		Graphics2D g = img.createGraphics();
+		for (Color color : colors) {
+			g.setColor(color);
+			g.fillRect(0, 0, 10, 10);
+		}
+		g.dispose();
+
+		VectorImage copy = saveAndLoad(img);
+		for (int a = 0; a < colors.length; a++) {
+			Color color = (Color) copy.getOperations().get(a).getContext()
+					.getPaint();
+			assertEquals(colors[a].getColorSpace().getType(),
+					color.getColorSpace().getType());
+			assertTrue(Arrays.equals(colors[a].getComponents(null),
+					color.getComponents(null)));
+		}
+	}
+
+	/**
+	 * Test that saving an image that ImageIO can't write as a PNG as-is
+	 * still preserves its pixels.
+	 */
+	public void testSaveUnusualImage() throws Exception {
+		ColorModel cm = new ComponentColorModel(
+				ColorSpace.getInstance(ColorSpace.CS_sRGB), true, false,
+				Transparency.TRANSLUCENT, DataBuffer.TYPE_FLOAT);
+		BufferedImage bi = new BufferedImage(cm,
+				cm.createCompatibleWritableRaster(20, 10), false, null);
+		Random random = new Random(0);
+		for (int y = 0; y < bi.getHeight(); y++) {
+			for (int x = 0; x < bi.getWidth(); x++) {
+				bi.setRGB(x, y, random.nextInt() | 0xff000000);
+			}
+		}
+		assertFalse(ImageIO.write(bi, "png", new ByteArrayOutputStream()));
+
+		VectorImage img = new VectorImage();
+		Graphics2D g = img.createGraphics();
+		g.drawImage(bi, 0, 0, null);
+		g.dispose();
+
+		VectorImage copy = saveAndLoad(img);
+		BufferedImage bi2 = (BufferedImage) ((ImageOperation) copy
+				.getOperations().get(0)).getImage();
+		for (int y = 0; y < bi.getHeight(); y++) {
+			for (int x = 0; x < bi.getWidth(); x++) {
+				assertEquals(bi.getRGB(x, y), bi2.getRGB(x, y));
+			}
+		}
+	}
+
+	private static VectorImage saveAndLoad(VectorImage img) throws Exception {
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		img.save(byteOut);
+		return new VectorImage(
+				new ByteArrayInputStream(byteOut.toByteArray()));
+	}
+
+	/**
+	 * Test that VectorImage can still read files that were saved as GZIP'd
+	 * Java serialization.
+	 */
+	public void testLegacyFormat() throws Exception {
+		VectorImage img = new VectorImage();
+		Graphics2D g = img.createGraphics();
+		g.setColor(Color.red);
+		g.fillOval(0, 0, 50, 50);
+		g.dispose();
+
+		byte[] bytes;
+		try (ByteArrayOutputStream byteOut = new ByteArrayOutputStream()) {
+			try (ObjectOutputStream objOut = new ObjectOutputStream(
+					new GZIPOutputStream(byteOut))) {
+				objOut.writeObject(img);
+			}
+			bytes = byteOut.toByteArray();
+		}
+		VectorImage copy = new VectorImage(new ByteArrayInputStream(bytes));
+		assertEquals(img.getOperations(), copy.getOperations());
+	}
+
 	private static Serializable deserialize(byte[] b) throws Exception {
 		try (ByteArrayInputStream byteIn = new ByteArrayInputStream(b)) {
 			try (ObjectInputStream objIn = new ObjectInputStream(byteIn)) {
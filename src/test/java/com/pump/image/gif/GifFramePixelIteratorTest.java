@@ -0,0 +1,92 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.image.gif;
+
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.pump.image.gif.block.GifGlobalColorTable;
+import com.pump.image.gif.block.GifImageDataBlock;
+import com.pump.image.gif.block.GifImageDescriptor;
+import com.pump.image.gif.block.GifInterlace;
+import com.pump.image.gif.lzw.LZWOutputStream;
+
+import junit.framework.TestCase;
+
+public class GifFramePixelIteratorTest extends TestCase {
+
+	@Test
+	public void testNonInterlaced() throws IOException {
+		for (int height = 1; height < 20; height++) {
+			testRows(7, height, false);
+		}
+	}
+
+	@Test
+	public void testInterlaced() throws IOException {
+		for (int height = 1; height < 20; height++) {
+			testRows(7, height, true);
+		}
+	}
+
+	/**
+	 * Encode an image where every pixel in row y is (y % 16), and confirm the
+	 * iterator returns those rows in order.
+	 */
+	private void testRows(int width, int height, boolean interlaced)
+			throws IOException {
+		byte[] pixels = new byte[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				pixels[y * width + x] = (byte) (y % 16);
+			}
+		}
+		if (interlaced)
+			GifInterlace.encode(pixels, width, height);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		LZWOutputStream out = new LZWOutputStream(bytes, 4, false);
+		out.write(pixels);
+		out.close();
+		GifImageDataBlock data = new GifImageDataBlock(4, bytes.toByteArray());
+
+		byte[] colors = new byte[16];
+		IndexColorModel icm = new IndexColorModel(4, 16, colors, colors,
+				colors);
+		GifImageDescriptor descriptor = new GifImageDescriptor(3, 4, width,
+				height, interlaced, 0);
+
+		try (GifFramePixelIterator iter = new GifFramePixelIterator(
+				descriptor, new GifGlobalColorTable(icm), -1, data)) {
+			assertEquals(width, iter.getWidth());
+			assertEquals(height, iter.getHeight());
+			assertEquals(3, iter.getX());
+			assertEquals(4, iter.getY());
+			byte[] row = new byte[width + 2];
+			for (int y = 0; y < height; y++) {
+				assertFalse(iter.isDone());
+				if (y % 3 == 1) {
+					iter.skip();
+					continue;
+				}
+				iter.next(row, 2);
+				for (int x = 0; x < width; x++) {
+					assertEquals("y = " + y + ", interlaced = " + interlaced,
+							y % 16, row[x + 2]);
+				}
+			}
+			assertTrue(iter.isDone());
+		}
+	}
+}
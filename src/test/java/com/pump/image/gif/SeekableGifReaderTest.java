@@ -0,0 +1,106 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.image.gif;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.pump.animation.FrameCache;
+
+import junit.framework.TestCase;
+
+public class SeekableGifReaderTest extends TestCase {
+
+	static final int FRAME_COUNT = 12;
+
+	/**
+	 * Create a GIF where a small square moves over a background, so most
+	 * frames only update part of the image.
+	 */
+	private File createGif() throws IOException {
+		File file = File.createTempFile("SeekableGifReaderTest", ".gif");
+		file.deleteOnExit();
+		try (OutputStream out = new FileOutputStream(file)) {
+			GifWriter writer = new GifWriter(out, new Dimension(40, 30), 0);
+			for (int a = 0; a < FRAME_COUNT; a++) {
+				BufferedImage bi = new BufferedImage(40, 30,
+						BufferedImage.TYPE_INT_ARGB);
+				Graphics2D g = bi.createGraphics();
+				g.setColor(Color.white);
+				g.fillRect(0, 0, 40, 30);
+				g.setColor(a % 2 == 0 ? Color.red : Color.blue);
+				g.fillRect(a * 2, a, 8, 8);
+				g.dispose();
+				writer.write(bi, 10 * (a + 1), null);
+			}
+			writer.close(false);
+		}
+		return file;
+	}
+
+	private List<int[]> readSequentially(File file, List<Double> durations)
+			throws IOException {
+		List<int[]> returnValue = new ArrayList<>();
+		GifReader reader = new GifReader(file);
+		BufferedImage bi = reader.getNextFrame(false);
+		while (bi != null) {
+			returnValue.add(getPixels(bi));
+			durations.add(reader.getFrameDuration());
+			bi = reader.getNextFrame(false);
+		}
+		return returnValue;
+	}
+
+	private int[] getPixels(BufferedImage bi) {
+		return bi.getRGB(0, 0, bi.getWidth(), bi.getHeight(), null, 0,
+				bi.getWidth());
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException {
+		File file = createGif();
+		List<Double> durations = new ArrayList<>();
+		List<int[]> expected = readSequentially(file, durations);
+		assertEquals(FRAME_COUNT, expected.size());
+
+		// use a cache that can only hold 2 frames, so we also have to
+		// decode from keyframes and our current position
+		long frameSize = 40 * 30 * 4;
+		try (SeekableGifReader reader = new SeekableGifReader(file,
+				new FrameCache(frameSize * 2))) {
+			assertEquals(FRAME_COUNT, reader.getFrameCount());
+			int[] order = new int[] { 5, 2, 11, 0, 7, 7, 3, 10, 1, 9, 4, 8, 6 };
+			for (int frameIndex : order) {
+				BufferedImage bi = reader.getFrame(frameIndex, true);
+				assertTrue("frame " + frameIndex, Arrays.equals(
+						expected.get(frameIndex), getPixels(bi)));
+				assertEquals(durations.get(frameIndex),
+						reader.getFrameDuration(frameIndex), .0001);
+			}
+
+			// getNextFrame continues from the last frame we requested:
+			reader.getFrame(8, false);
+			BufferedImage bi = reader.getNextFrame(false);
+			assertTrue(Arrays.equals(expected.get(9), getPixels(bi)));
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.image.gif.lzw;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class LZWInputStreamTest extends TestCase {
+
+	/**
+	 * Test data with lots of repetition, including long runs of one value
+	 * (which produce codes that aren't in the table yet when they're read).
+	 */
+	@Test
+	public void testRuns() throws IOException {
+		Random random = new Random(0);
+		for (int colorDepth = 2; colorDepth <= 8; colorDepth++) {
+			byte[] data = new byte[100000];
+			int i = 0;
+			while (i < data.length) {
+				int runLength = Math.min(data.length - i,
+						1 + random.nextInt(5000));
+				byte value = (byte) random.nextInt(1 << colorDepth);
+				for (int a = 0; a < runLength; a++) {
+					data[i++] = value;
+				}
+			}
+			testRoundTrip(data, colorDepth);
+		}
+	}
+
+	/**
+	 * Test random data, which fills the table quickly.
+	 */
+	@Test
+	public void testNoise() throws IOException {
+		Random random = new Random(0);
+		for (int colorDepth = 2; colorDepth <= 8; colorDepth++) {
+			for (int size : new int[] { 1, 2, 3, 100, 10000, 100000 }) {
+				byte[] data = new byte[size];
+				for (int a = 0; a < data.length; a++) {
+					data[a] = (byte) random.nextInt(1 << colorDepth);
+				}
+				testRoundTrip(data, colorDepth);
+			}
+		}
+	}
+
+	private void testRoundTrip(byte[] data, int colorDepth) throws IOException {
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		try (LZWOutputStream lzwOut = new LZWOutputStream(byteOut, colorDepth,
+				false)) {
+			lzwOut.write(data);
+		}
+		byte[] encodedData = byteOut.toByteArray();
+		int initSize = Math.max(2, colorDepth);
+
+		for (int bufferSize : new int[] { 1, 3, 1000, 100000 }) {
+			try (InputStream in = new LZWInputStream(new ByteArrayInputStream(
+					encodedData), initSize)) {
+				ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+				byte[] buffer = new byte[bufferSize];
+				int k = in.read(buffer);
+				while (k != -1) {
+					decoded.write(buffer, 0, k);
+					k = in.read(buffer);
+				}
+				assertEquals(data.length, decoded.size());
+				assertTrue(Arrays.equals(data, decoded.toByteArray()));
+			}
+		}
+
+		try (InputStream in = new LZWInputStream(new ByteArrayInputStream(
+				encodedData), initSize)) {
+			for (int a = 0; a < data.length; a++) {
+				assertEquals(data[a] & 0xff, in.read());
+			}
+			assertEquals(-1, in.read());
+		}
+	}
+}
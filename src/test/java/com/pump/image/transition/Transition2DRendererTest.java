@@ -0,0 +1,101 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.image.transition;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class Transition2DRendererTest extends TestCase {
+
+	static final int FRAME_COUNT = 12;
+
+	BufferedImage frameA = AbstractTransition.createImage(60, "A", true, true);
+	BufferedImage frameB = AbstractTransition.createImage(60, "B", false, true);
+
+	/**
+	 * Frames rendered on several threads should be identical to frames
+	 * painted one at a time with <code>Transition.paint(..)</code>.
+	 */
+	@Test
+	public void testFramesMatchPaint() throws IOException {
+		Transition2D[] transitions = new Transition2D[] {
+				new BlendTransition2D(), new ScaleTransition2D(),
+				new SwivelTransition2D(), new SlideTransition2D(),
+				new SpiralTransition2D(false) };
+		for (Transition2D transition : transitions) {
+			try (Transition2DRenderer renderer = new Transition2DRenderer(
+					transition, frameA, frameB, FRAME_COUNT, 1)) {
+				for (int a = 0; a < FRAME_COUNT; a++) {
+					BufferedImage expected = paint(transition,
+							renderer.getProgress(a));
+					BufferedImage actual = renderer.getNextFrame(a % 2 == 0);
+					assertImageEquals(transition + " frame " + a, expected,
+							actual);
+				}
+				assertNull(renderer.getNextFrame(false));
+			}
+		}
+	}
+
+	/**
+	 * Test that resetting the renderer replays the same frames.
+	 */
+	@Test
+	public void testReset() throws IOException {
+		try (Transition2DRenderer renderer = new Transition2DRenderer(
+				new ScaleTransition2D(), frameA, frameB, FRAME_COUNT, 1)) {
+			List<BufferedImage> firstPass = new ArrayList<>();
+			for (int a = 0; a < FRAME_COUNT / 2; a++) {
+				firstPass.add(renderer.getNextFrame(true));
+			}
+			renderer.reset();
+			for (int a = 0; a < FRAME_COUNT / 2; a++) {
+				assertImageEquals("frame " + a, firstPass.get(a),
+						renderer.getNextFrame(false));
+			}
+		}
+	}
+
+	private BufferedImage paint(Transition2D transition, float progress) {
+		BufferedImage bi = new BufferedImage(frameA.getWidth(),
+				frameA.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = bi.createGraphics();
+		g.setColor(Color.black);
+		g.fillRect(0, 0, bi.getWidth(), bi.getHeight());
+		g.setRenderingHints(Transition2DRenderer.createDefaultRenderingHints());
+		transition.paint(g, frameA, frameB, progress);
+		g.dispose();
+		return bi;
+	}
+
+	private void assertImageEquals(String id, BufferedImage bi1,
+			BufferedImage bi2) {
+		assertEquals(id, bi1.getWidth(), bi2.getWidth());
+		assertEquals(id, bi1.getHeight(), bi2.getHeight());
+		int[] row1 = new int[bi1.getWidth()];
+		int[] row2 = new int[bi1.getWidth()];
+		for (int y = 0; y < bi1.getHeight(); y++) {
+			bi1.getRGB(0, y, row1.length, 1, row1, 0, row1.length);
+			bi2.getRGB(0, y, row2.length, 1, row2, 0, row2.length);
+			for (int x = 0; x < row1.length; x++) {
+				assertEquals(id + " (" + x + "," + y + ")", row1[x], row2[x]);
+			}
+		}
+	}
+}
@@ -0,0 +1,261 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.io;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class AsyncFileAppenderTest extends TestCase {
+
+	File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("AsyncFileAppenderTest").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		IOUtils.delete(dir);
+	}
+
+	private List<String> readLines(File file) throws Exception {
+		return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Several threads append to a small ring buffer. Every line should be
+	 * written, and each thread's lines should stay in order.
+	 */
+	public void testMultipleThreads() throws Exception {
+		File file = new File(dir, "log.txt");
+		final AsyncFileAppender appender = new AsyncFileAppender(file,
+				StandardCharsets.UTF_8, 16);
+		final int threadCount = 4;
+		final int lineCount = 5000;
+		Thread[] threads = new Thread[threadCount];
+		for (int a = 0; a < threads.length; a++) {
+			final int threadIndex = a;
+			threads[a] = new Thread() {
+				@Override
+				public void run() {
+					for (int b = 0; b < lineCount; b++) {
+						appender.append(threadIndex + " " + b + "\n");
+					}
+				}
+			};
+			threads[a].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		appender.flush();
+
+		List<String> lines = readLines(file);
+		assertEquals(threadCount * lineCount, lines.size());
+		int[] next = new int[threadCount];
+		for (String line : lines) {
+			String[] terms = line.split(" ");
+			int threadIndex = Integer.parseInt(terms[0]);
+			assertEquals(next[threadIndex]++, Integer.parseInt(terms[1]));
+		}
+		appender.close();
+	}
+
+	/**
+	 * A surrogate pair split across two messages should still be encoded as
+	 * one character.
+	 */
+	public void testSplitSurrogatePair() throws Exception {
+		File file = new File(dir, "log.txt");
+		AsyncFileAppender appender = new AsyncFileAppender(file,
+				StandardCharsets.UTF_8, 16);
+		String s = "a\uD83D\uDE00b";
+		appender.append(s.substring(0, 2));
+		appender.append(s.substring(2));
+		appender.close();
+		assertEquals(s, new String(Files.readAllBytes(file.toPath()),
+				StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * When the file exceeds its maximum size it should be renamed, and only
+	 * the requested number of backups should be kept.
+	 */
+	public void testRollBySize() throws Exception {
+		File file = new File(dir, "log.txt");
+		AsyncFileAppender appender = new AsyncFileAppender(file,
+				StandardCharsets.UTF_8, 16);
+		appender.setMaxFileSize(100);
+		appender.setMaxBackupCount(2);
+		for (int a = 0; a < 20; a++) {
+			// each line is 50 bytes
+			appender.append(String.format("%049d", a) + "\n");
+			appender.flush();
+		}
+		appender.close();
+
+		assertEquals(new File(dir, "log.1.txt"), appender.getBackupFile(1));
+		assertTrue(appender.getBackupFile(1).exists());
+		assertTrue(appender.getBackupFile(2).exists());
+		assertFalse(appender.getBackupFile(3).exists());
+		List<String> lines = readLines(appender.getBackupFile(1));
+		assertEquals(2, lines.size());
+		assertEquals(String.format("%049d", 18), lines.get(0));
+		assertEquals(0, file.length());
+	}
+
+	/**
+	 * The roll interval is measured from when the file was opened, so it can
+	 * be changed after the first message.
+	 */
+	public void testRollByTime() throws Exception {
+		File file = new File(dir, "log.txt");
+		AsyncFileAppender appender = new AsyncFileAppender(file,
+				StandardCharsets.UTF_8, 16);
+		appender.append("a\n");
+		appender.flush();
+		Thread.sleep(20);
+
+		appender.setRollInterval(60000);
+		appender.append("b\n");
+		appender.flush();
+		assertFalse(appender.getBackupFile(1).exists());
+
+		Thread.sleep(20);
+		appender.setRollInterval(10);
+		appender.append("c\n");
+		appender.flush();
+		appender.close();
+
+		List<String> lines = readLines(appender.getBackupFile(1));
+		assertEquals(3, lines.size());
+		assertEquals("c", lines.get(2));
+		assertEquals(0, file.length());
+	}
+
+	/**
+	 * If the file can't be opened the writer thread should keep retrying,
+	 * and then write every message once the problem goes away.
+	 */
+	public void testWriterRecovers() throws Exception {
+		// a file where the parent directory should be
+		File blocker = new File(dir, "sub");
+		assertTrue(blocker.createNewFile());
+		File file = new File(blocker, "log.txt");
+		AsyncFileAppender appender = new AsyncFileAppender(file,
+				StandardCharsets.UTF_8, 16);
+		try {
+			appender.append("a\n");
+			long timeout = System.currentTimeMillis() + 5000;
+			while (!appender.isWriterFailed()
+					&& System.currentTimeMillis() < timeout) {
+				Thread.sleep(10);
+			}
+			assertTrue(appender.isWriterFailed());
+			appender.append("b\n");
+
+			assertTrue(blocker.delete());
+			while (appender.isWriterFailed()
+					&& System.currentTimeMillis() < timeout) {
+				Thread.sleep(10);
+			}
+			assertFalse(appender.isWriterFailed());
+			appender.append("c\n");
+			appender.flush();
+			assertEquals(Arrays.asList("a", "b", "c"), readLines(file));
+
+			// a message larger than the buffer is still written in one piece
+			StringBuilder sb = new StringBuilder();
+			while (sb.length() < 200000) {
+				sb.append("0123456789");
+			}
+			appender.append(sb + "\n");
+			appender.flush();
+			assertEquals(Arrays.asList("a", "b", "c", sb.toString()),
+					readLines(file));
+		} finally {
+			appender.close();
+		}
+	}
+
+	/**
+	 * Every appender should share one writer thread.
+	 */
+	public void testSharedWriterThread() throws Exception {
+		AsyncFileAppender[] appenders = new AsyncFileAppender[5];
+		for (int a = 0; a < appenders.length; a++) {
+			appenders[a] = new AsyncFileAppender(new File(dir, "log" + a
+					+ ".txt"), StandardCharsets.UTF_8, 16);
+			appenders[a].append("x" + a + "\n");
+		}
+		int writerCount = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("AsyncFileAppender-")
+					&& !thread.getName().endsWith("-shutdown"))
+				writerCount++;
+		}
+		assertEquals(1, writerCount);
+
+		for (int a = 0; a < appenders.length; a++) {
+			appenders[a].close();
+			assertEquals(Arrays.asList("x" + a),
+					readLines(appenders[a].getFile()));
+		}
+	}
+
+	/**
+	 * The DROP policy should never block, and it should record how many
+	 * messages it discarded.
+	 */
+	public void testDrop() throws Exception {
+		File file = new File(dir, "log.txt");
+		AsyncFileAppender appender = new AsyncFileAppender(file,
+				StandardCharsets.UTF_8, 2);
+		appender.setOverflowPolicy(AsyncFileAppender.OverflowPolicy.DROP);
+		int total = 100000;
+		for (int a = 0; a < total; a++) {
+			appender.append(a + "\n");
+		}
+		appender.close();
+
+		int written = 0;
+		long dropped = 0;
+		for (String line : readLines(file)) {
+			if (line.contains("dropped")) {
+				dropped += Long.parseLong(line.replaceAll("\\D", ""));
+			} else {
+				written++;
+			}
+		}
+		assertEquals(total, written + dropped);
+		assertEquals(0, appender.getDroppedCount());
+	}
+
+	/**
+	 * Text appended after close() should be written synchronously.
+	 */
+	public void testAppendAfterClose() throws Exception {
+		File file = new File(dir, "log.txt");
+		AsyncFileAppender appender = new AsyncFileAppender(file,
+				StandardCharsets.UTF_8, 16);
+		appender.append("a\n");
+		appender.close();
+		appender.append("b\n");
+		assertEquals("a\nb\n", new String(Files.readAllBytes(file.toPath()),
+				StandardCharsets.UTF_8));
+	}
+}
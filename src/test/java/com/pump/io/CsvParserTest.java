@@ -0,0 +1,241 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.pump.io.CsvParser.ParseException;
+import com.pump.io.CsvParser.Row;
+import com.pump.io.CsvParser.RowListener;
+
+import junit.framework.TestCase;
+
+public class CsvParserTest extends TestCase {
+
+	@Test
+	public void testSimpleCells() throws IOException {
+		assertRows("a,b,c\n1,2,3", row("a", "b", "c"), row("1", "2", "3"));
+		assertRows("a,b\r\n\r\n1,2\r\n", row("a", "b"), row("1", "2"));
+		assertRows("a,,c\n,\n", row("a", "", "c"), row("", ""));
+		assertRows("a,b,\n1,2,", row("a", "b", ""), row("1", "2", ""));
+		assertRows("");
+		assertRows("\n\r\n\n");
+	}
+
+	@Test
+	public void testQualifiedCells() throws IOException {
+		assertRows("\"a,b\",c", row("a,b", "c"));
+		assertRows("\"a \"\"quoted\"\" word\",x",
+				row("a \"quoted\" word", "x"));
+		assertRows("\"line 1\nline 2\",x\ny", row("line 1\nline 2", "x"),
+				row("y"));
+		assertRows("\"\",\"\"", row("", ""));
+		assertRows("x,\"a\"", row("x", "a"));
+		assertRows("\"a\"  ,b", row("a", "b"));
+		assertRows("x,\"unterminated", row("x", "unterminated"));
+	}
+
+	@Test
+	public void testCustomDelimiter() throws IOException {
+		CsvParser parser = new CsvParser('\t', '\'');
+		List<List<String>> rows = parseRows(parser, "a\t'b\tc'\t'it''s'");
+		assertEquals(Arrays.asList(row("a", "b\tc", "it's")), rows);
+	}
+
+	@Test
+	public void testLineNumbers() throws IOException {
+		final List<Integer> lineNumbers = new ArrayList<>();
+		new CsvParser().parseRows(new StringReader("a\n\n\"b\nc\"\r\nd"),
+				new RowListener() {
+					@Override
+					public void rowParsed(Row row) {
+						lineNumbers.add(row.getLineNumber());
+					}
+				});
+		assertEquals(Arrays.asList(1, 3, 5), lineNumbers);
+	}
+
+	@Test
+	public void testParseException() throws IOException {
+		try {
+			parseRows(new CsvParser(), "a,b\nc,\"d\nd\"x");
+			fail();
+		} catch (ParseException e) {
+			assertEquals(3, e.getLineNumber());
+			assertEquals(3, e.getPosition());
+		}
+	}
+
+	/**
+	 * Rows longer than the internal buffer should be parsed correctly.
+	 */
+	@Test
+	public void testLongRow() throws IOException {
+		char[] chars = new char[200000];
+		Arrays.fill(chars, 'x');
+		String cell = new String(chars);
+		assertRows("a\n\"" + cell + "\"," + cell + "\nb", row("a"),
+				row(cell, cell), row("b"));
+	}
+
+	/**
+	 * Parsing a file in several chunks should produce the same rows and line
+	 * numbers as parsing it sequentially.
+	 */
+	@Test
+	public void testParallelFile() throws IOException {
+		String csv = createRandomCsv(new Random(0), 2000);
+		File file = File.createTempFile("CsvParserTest", ".csv");
+		try {
+			write(file, csv, StandardCharsets.UTF_8);
+
+			List<String> expected = parseToStrings(csv);
+			for (int chunkSize : new int[] { 1, 7, 100, 1000, 100000 }) {
+				List<String> actual = new ArrayList<>();
+				new CsvParser().parseRows(file, StandardCharsets.UTF_8,
+						createListener(actual), null, chunkSize);
+				assertEquals("chunkSize = " + chunkSize, expected, actual);
+			}
+
+			// UTF-16 is always parsed sequentially
+			write(file, csv, StandardCharsets.UTF_16);
+			List<String> actual = new ArrayList<>();
+			new CsvParser().parseRows(file, StandardCharsets.UTF_16,
+					createListener(actual), null, 100);
+			assertEquals(expected, actual);
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * A ParseException in a chunk should report the line number within the
+	 * whole file.
+	 */
+	@Test
+	public void testParallelFileParseException() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int a = 0; a < 100; a++) {
+			sb.append("a,b,c\n");
+		}
+		sb.append("\"d\"e\n");
+		File file = File.createTempFile("CsvParserTest", ".csv");
+		try {
+			write(file, sb.toString(), StandardCharsets.UTF_8);
+			List<String> rows = new ArrayList<>();
+			try {
+				new CsvParser().parseRows(file, StandardCharsets.UTF_8,
+						createListener(rows), null, 50);
+				fail();
+			} catch (ParseException e) {
+				assertEquals(101, e.getLineNumber());
+				assertEquals(4, e.getPosition());
+				assertEquals(100, rows.size());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private String createRandomCsv(Random random, int rowCount) {
+		String[] values = new String[] { "", "abc", "été", "1,2",
+				"\"", "x\ny", "\r\n", "a\"\"b", "中文" };
+		StringBuilder sb = new StringBuilder();
+		for (int a = 0; a < rowCount; a++) {
+			int cellCount = 1 + random.nextInt(5);
+			for (int b = 0; b < cellCount; b++) {
+				if (b > 0)
+					sb.append(',');
+				String value = values[random.nextInt(values.length)];
+				if (value.indexOf(',') != -1 || value.indexOf('"') != -1
+						|| value.indexOf('\n') != -1 || random.nextBoolean()) {
+					sb.append('"').append(value.replace("\"", "\"\""))
+							.append('"');
+				} else {
+					sb.append(value);
+				}
+			}
+			sb.append(random.nextInt(4) == 0 ? "\r\n" : "\n");
+			if (random.nextInt(20) == 0)
+				sb.append("\n");
+		}
+		return sb.toString();
+	}
+
+	private List<String> parseToStrings(String csv) throws IOException {
+		List<String> returnValue = new ArrayList<>();
+		new CsvParser().parseRows(new StringReader(csv),
+				createListener(returnValue));
+		return returnValue;
+	}
+
+	private RowListener createListener(final List<String> dest) {
+		return new RowListener() {
+			@Override
+			public void rowParsed(Row row) {
+				dest.add(row.getLineNumber() + ": " + row.toList());
+			}
+		};
+	}
+
+	private void write(File file, String text, Charset charset)
+			throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(text.getBytes(charset));
+		}
+	}
+
+	private List<String> row(String... cells) {
+		return Arrays.asList(cells);
+	}
+
+	@SafeVarargs
+	private final void assertRows(String csv, List<String>... expectedRows)
+			throws IOException {
+		List<List<String>> rows = parseRows(new CsvParser(), csv);
+		assertEquals(csv, Arrays.asList(expectedRows), rows);
+	}
+
+	private List<List<String>> parseRows(CsvParser parser, String csv)
+			throws IOException {
+		final List<List<String>> rows = new ArrayList<>();
+		parser.parseRows(new StringReader(csv), new RowListener() {
+			@Override
+			public void rowParsed(Row row) {
+				rows.add(row.toList());
+			}
+		});
+
+		// the Receiver-based method should produce the same rows:
+		final List<List<String>> rows2 = new ArrayList<>();
+		parser.parse(new StringReader(csv),
+				new com.pump.util.Receiver<List<String>>() {
+					@Override
+					public void add(List<String>... elements) {
+						rows2.addAll(Arrays.asList(elements));
+					}
+				});
+		assertEquals(rows, rows2);
+		return rows;
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class DirectoryCopyTaskTest extends TestCase {
+
+	Path root;
+
+	@Override
+	protected void setUp() throws Exception {
+		root = Files.createTempDirectory("DirectoryCopyTaskTest");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(root);
+	}
+
+	private static void delete(Path path) throws IOException {
+		if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+				for (Path child : stream) {
+					delete(child);
+				}
+			}
+		}
+		Files.delete(path);
+	}
+
+	/**
+	 * Test copying a directory tree, and then syncing it again.
+	 */
+	@Test
+	public void testCopyAndSync() throws Exception {
+		Path src = root.resolve("src");
+		Path dst = root.resolve("dst");
+		Random random = new Random(0);
+		for (int a = 0; a < 20; a++) {
+			Path dir = src.resolve("dir" + (a % 4)).resolve("sub" + (a % 3));
+			Files.createDirectories(dir);
+			byte[] data = new byte[random.nextInt(100000)];
+			random.nextBytes(data);
+			Files.write(dir.resolve("file" + a + ".dat"), data);
+		}
+		Files.createDirectories(src.resolve("empty"));
+
+		DirectoryCopyTask task = run(src, dst, false);
+		assertEquals(20, task.getTotalFileCount());
+		assertEquals(20, task.getCopiedFileCount());
+		assertTrue(task.isFinished());
+		assertTrue(IOUtils.equals(src.toFile(), dst.toFile()));
+		assertTrue(Files.isDirectory(dst.resolve("empty")));
+
+		// nothing has changed, so nothing should be copied:
+		task = run(src, dst, false);
+		assertEquals(0, task.getTotalFileCount());
+
+		// change one file and add/remove files in the destination:
+		Path changed = src.resolve("dir1").resolve("sub1").resolve(
+				"file1.dat");
+		Files.write(changed, new byte[] { 1, 2, 3 });
+		Files.write(dst.resolve("extra.txt"), new byte[] { 4 });
+		Files.createDirectories(dst.resolve("dir0").resolve("extraDir"));
+		Files.write(dst.resolve("dir0").resolve("extraDir").resolve("x"),
+				new byte[] { 5 });
+
+		task = run(src, dst, true);
+		assertEquals(1, task.getTotalFileCount());
+		assertEquals(3L, task.getTotalByteCount());
+		assertFalse(Files.exists(dst.resolve("extra.txt")));
+		// we only delete extra files in the top level:
+		assertTrue(Files.exists(dst.resolve("dir0").resolve("extraDir")
+				.resolve("x")));
+		delete(dst.resolve("dir0").resolve("extraDir"));
+		assertTrue(IOUtils.equals(src.toFile(), dst.toFile()));
+	}
+
+	/**
+	 * Deleting extra files should never delete a directory that isn't empty.
+	 */
+	@Test
+	public void testExtraDirectory() throws Exception {
+		Path src = root.resolve("src");
+		Path dst = root.resolve("dst");
+		Files.createDirectories(src);
+		Files.createDirectories(dst.resolve("extraDir"));
+		Files.write(dst.resolve("extraDir").resolve("x"), new byte[] { 5 });
+
+		try {
+			run(src, dst, true);
+			fail();
+		} catch (IOException e) {
+			// pass
+		}
+		assertTrue(Files.exists(dst.resolve("extraDir").resolve("x")));
+	}
+
+	/**
+	 * Files with the same contents but different modification times should
+	 * not be copied.
+	 */
+	@Test
+	public void testIdenticalContents() throws Exception {
+		Path src = root.resolve("src");
+		Path dst = root.resolve("dst");
+		Files.createDirectories(src);
+		Files.createDirectories(dst);
+		Files.write(src.resolve("a.txt"), "abc".getBytes());
+		Files.write(dst.resolve("a.txt"), "abc".getBytes());
+		Files.setLastModifiedTime(dst.resolve("a.txt"),
+				FileTime.fromMillis(0));
+
+		// if we can't modify files we shouldn't touch their attributes:
+		DirectoryCopyTask task = run(src, dst, false);
+		assertEquals(0, task.getTotalFileCount());
+		assertEquals(FileTime.fromMillis(0),
+				Files.getLastModifiedTime(dst.resolve("a.txt")));
+
+		task = run(src, dst, true);
+		assertEquals(0, task.getTotalFileCount());
+		assertEquals(Files.getLastModifiedTime(src.resolve("a.txt")),
+				Files.getLastModifiedTime(dst.resolve("a.txt")));
+	}
+
+	/**
+	 * If we're not allowed to overwrite files, a different file in the
+	 * destination should make the task fail.
+	 */
+	@Test
+	public void testConflict() throws Exception {
+		Path src = root.resolve("src");
+		Path dst = root.resolve("dst");
+		Files.createDirectories(src);
+		Files.createDirectories(dst);
+		Files.write(src.resolve("a.txt"), "abc".getBytes());
+		Files.write(dst.resolve("a.txt"), "xyz".getBytes());
+		Files.setLastModifiedTime(dst.resolve("a.txt"),
+				FileTime.fromMillis(0));
+
+		try {
+			run(src, dst, false);
+			fail();
+		} catch (IOException e) {
+			// pass
+		}
+		assertEquals("xyz", new String(Files.readAllBytes(dst
+				.resolve("a.txt"))));
+	}
+
+	private DirectoryCopyTask run(Path src, Path dst,
+			boolean deleteExtraDestFiles) throws Exception {
+		File srcDir = src.toFile();
+		DirectoryCopyTask task = new DirectoryCopyTask(srcDir, dst.toFile(),
+				deleteExtraDestFiles, 3);
+		task.join();
+		return task;
+	}
+}
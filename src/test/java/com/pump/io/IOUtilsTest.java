@@ -0,0 +1,183 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class IOUtilsTest extends TestCase {
+
+	File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("IOUtilsTest").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		IOUtils.delete(dir);
+	}
+
+	@Test
+	public void testStreamEquals() throws IOException {
+		byte[] data = createData(200000, 0);
+		byte[] copy = data.clone();
+		assertTrue(IOUtils.equals(new ByteArrayInputStream(data),
+				new ByteArrayInputStream(copy)));
+
+		copy[150000]++;
+		assertFalse(IOUtils.equals(new ByteArrayInputStream(data),
+				new ByteArrayInputStream(copy)));
+
+		// a stream that is a prefix of another stream is not equal to it
+		byte[] prefix = Arrays.copyOf(data, 100000);
+		assertFalse(IOUtils.equals(new ByteArrayInputStream(data),
+				new ByteArrayInputStream(prefix)));
+		assertFalse(IOUtils.equals(new ByteArrayInputStream(prefix),
+				new ByteArrayInputStream(data)));
+	}
+
+	/**
+	 * Test comparing small files and memory-mapped large files.
+	 */
+	@Test
+	public void testFileEquals() throws IOException {
+		for (int length : new int[] { 0, 10, 65536, 100000,
+				(int) IOUtils.MAP_THRESHOLD + 12345 }) {
+			byte[] data = createData(length, length);
+			File file1 = write(new File(dir, "a" + length), data);
+			File file2 = write(new File(dir, "b" + length), data);
+			assertTrue(IOUtils.equals(file1, file2));
+			if (length > 0) {
+				data[length - 1]++;
+				write(file2, data);
+				assertFalse(IOUtils.equals(file1, file2));
+			}
+		}
+	}
+
+	/**
+	 * Test comparing directory trees.
+	 */
+	@Test
+	public void testDirectoryEquals() throws IOException {
+		File dir1 = new File(dir, "dir1");
+		File dir2 = new File(dir, "dir2");
+		for (File d : new File[] { dir1, dir2 }) {
+			for (int a = 0; a < 30; a++) {
+				File subdir = new File(d, "sub" + (a % 5));
+				subdir.mkdirs();
+				write(new File(subdir, "file" + a), createData(1000 + a, a));
+			}
+		}
+		assertTrue(IOUtils.equals(dir1, dir2));
+
+		write(new File(new File(dir2, "sub3"), "file8"), createData(1008, 0));
+		assertFalse(IOUtils.equals(dir1, dir2));
+		write(new File(new File(dir2, "sub3"), "file8"), createData(1008, 8));
+		assertTrue(IOUtils.equals(dir1, dir2));
+
+		// the same contents with a different name is not equal:
+		new File(new File(dir2, "sub3"), "file8").renameTo(new File(new File(
+				dir2, "sub3"), "file8b"));
+		assertFalse(IOUtils.equals(dir1, dir2));
+		new File(new File(dir2, "sub3"), "file8b").renameTo(new File(new File(
+				dir2, "sub3"), "file8"));
+		assertTrue(IOUtils.equals(dir1, dir2));
+
+		// a directory is never equal to a file, even an empty one:
+		File emptyDir = new File(dir1, "empty");
+		emptyDir.mkdir();
+		write(new File(dir2, "empty"), new byte[0]);
+		assertFalse(IOUtils.equals(dir1, dir2));
+		assertFalse(IOUtils.equals(emptyDir, new File(dir2, "empty")));
+	}
+
+	@Test
+	public void testZipEquals() throws IOException {
+		File zip1 = writeZip(new File(dir, "1.zip"), new String[] { "a", "b",
+				"c" }, new String[] { "apple", "banana", "cherry" });
+		File zip2 = writeZip(new File(dir, "2.zip"), new String[] { "c", "a",
+				"b" }, new String[] { "cherry", "apple", "banana" });
+		File zip3 = writeZip(new File(dir, "3.zip"), new String[] { "c", "a",
+				"b" }, new String[] { "cherry", "apple", "banana!" });
+		File zip4 = writeZip(new File(dir, "4.zip"), new String[] { "c", "a",
+				"b", "x.RSA" }, new String[] { "cherry", "apple", "banana",
+				"signature" });
+		assertTrue(IOUtils.zipEquals(zip1, zip2));
+		assertTrue(IOUtils.equals(zip1, zip2));
+		assertFalse(IOUtils.zipEquals(zip1, zip3));
+		assertFalse(IOUtils.zipEquals(zip1, zip4));
+		assertTrue(IOUtils.zipEquals(zip1, zip4, ".*\\.RSA"));
+	}
+
+	/**
+	 * Checksumming a file on several threads should produce the same CRC as
+	 * reading it on one thread.
+	 */
+	@Test
+	public void testGetCRC() throws IOException {
+		for (int length : new int[] { 0, 1, 999, 1000, 3001, 100003 }) {
+			byte[] data = createData(length, length);
+			CRC32 crc = new CRC32();
+			crc.update(data);
+			File file = write(new File(dir, "crc" + length), data);
+			assertEquals(crc.getValue(),
+					IOUtils.getCRC(new FileInputStream(file), true));
+			assertEquals(crc.getValue(), IOUtils.getCRC(file));
+			for (int threadCount : new int[] { 1, 2, 3, 7 }) {
+				assertEquals(crc.getValue(),
+						IOUtils.getCRC(file, threadCount, 1000));
+			}
+		}
+	}
+
+	private byte[] createData(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	private File write(File file, byte[] data) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(data);
+		}
+		return file;
+	}
+
+	private File writeZip(File file, String[] names, String[] contents)
+			throws IOException {
+		try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(
+				file))) {
+			for (int a = 0; a < names.length; a++) {
+				zipOut.putNextEntry(new ZipEntry(names[a]));
+				zipOut.write(contents[a].getBytes());
+				zipOut.closeEntry();
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.io.parser.java;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.Collection;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.pump.io.parser.Token;
+import com.pump.io.parser.java.JavaParser.BracketType;
+import com.pump.io.parser.java.JavaTokenizer.Type;
+
+public class JavaTokenizerTest extends TestCase {
+
+	static final String SOURCE = "package com.foo;\r\n\r\nimport java.util.*;\n"
+			+ "/** A class.\n * With two lines.\n */\n"
+			+ "public final class Foo<T> extends Bar {\n"
+			+ "\t// a comment\n"
+			+ "\tString s = \"a\\tb\\u0041\";\n"
+			+ "\tchar c = '\\n';\n"
+			+ "\tdouble d = -1.5e3 + .25f + 3L + 7;\n"
+			+ "\tint[] unclosed = { 1, 2 ];\n" + "}\n" + "\"unclosed";
+
+	@Test
+	public void testTypes() {
+		JavaTokenizer t = new JavaTokenizer("int x = 42L; // done");
+		assertEquals(Type.WORD, t.next());
+		assertEquals(0, t.getStart());
+		assertEquals(3, t.getEnd());
+		assertTrue(t.textEquals("int"));
+		assertEquals(Type.WHITESPACE, t.next());
+		assertEquals(Type.WORD, t.next());
+		assertEquals(Type.WHITESPACE, t.next());
+		assertEquals(Type.SYMBOL, t.next());
+		assertEquals('=', t.getChar());
+		assertEquals(Type.WHITESPACE, t.next());
+		assertEquals(Type.LONG, t.next());
+		assertEquals("42L", t.getText());
+		assertEquals(Type.SYMBOL, t.next());
+		assertEquals(Type.WHITESPACE, t.next());
+		assertEquals(Type.COMMENT, t.next());
+		assertEquals("// done", t.getText());
+		assertNull(t.next());
+		assertNull(t.next());
+
+		t = new JavaTokenizer("('\\u0041' \"x");
+		assertEquals(Type.BRACKET, t.next());
+		assertEquals(BracketType.PARENTHESES, t.getBracketType());
+		assertTrue(t.isOpenBracket());
+		assertEquals(Type.CHAR, t.next());
+		assertEquals("A", t.getDecodedText());
+		assertNull(t.getError());
+		assertEquals(Type.WHITESPACE, t.next());
+		assertEquals(Type.STRING, t.next());
+		assertFalse(t.isLiteralClosed());
+		assertNotNull(t.getError());
+	}
+
+	/**
+	 * Make sure the tokens the JavaParser creates describe exactly what the
+	 * JavaTokenizer identifies.
+	 */
+	@Test
+	public void testParserTokens() throws Exception {
+		Token[] tokens = new JavaParser().parse(SOURCE, true);
+		JavaTokenizer t = new JavaTokenizer(CharBuffer.wrap(SOURCE));
+		for (Token token : tokens) {
+			assertNotNull(t.next());
+			assertEquals(token.getText(), t.getText());
+			assertEquals(token.getDocumentStartIndex(), t.getStart());
+			assertEquals(token.getLineNumber(), t.getLineNumber());
+			assertEquals(token.getStartIndex(), t.getStartIndex());
+			assertEquals(token.getException() != null, t.getError() != null);
+		}
+		assertNull(t.next());
+	}
+
+	@Test
+	public void testClassSummary() {
+		JavaClassSummary summary = new JavaClassSummary(SOURCE);
+		assertEquals("com.foo", summary.getPackageName());
+		assertEquals("Foo", summary.getSimpleName());
+		assertEquals("com.foo.Foo", summary.getCanonicalName());
+		Collection<String> imports = summary.getImportClassnames();
+		assertEquals(1, imports.size());
+		assertTrue(imports.contains("java.util.*"));
+	}
+
+	/**
+	 * A JavaClassSummary should stop reading at the type body, and it should
+	 * not close a Reader it didn't open.
+	 */
+	@Test
+	public void testClassSummaryReader() throws Exception {
+		StringBuilder sb = new StringBuilder(SOURCE);
+		while (sb.length() < 100000) {
+			sb.append("\n// padding");
+		}
+		final int[] charsRead = new int[] { 0 };
+		final boolean[] closed = new boolean[] { false };
+		Reader reader = new StringReader(sb.toString()) {
+			@Override
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				int k = super.read(cbuf, off, len);
+				if (k > 0)
+					charsRead[0] += k;
+				return k;
+			}
+
+			@Override
+			public void close() {
+				closed[0] = true;
+				super.close();
+			}
+		};
+		JavaClassSummary summary = new JavaClassSummary(reader);
+		assertEquals("com.foo.Foo", summary.getCanonicalName());
+		assertFalse(closed[0]);
+		assertTrue(charsRead[0] < 10000);
+		assertTrue(reader.ready());
+	}
+}
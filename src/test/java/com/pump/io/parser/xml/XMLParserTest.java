@@ -212,6 +212,44 @@ public class XMLParserTest extends TestCase {
 		assertEquals(21, ctr);
 	}
 
+	/**
+	 * Make sure the XMLTokenizer identifies the same tokens as the XMLParser,
+	 * and that it reports matching tags by their position.
+	 */
+	@Test
+	public void testTokenizer() throws Exception {
+		String xml = "<?xml version=\"1.0\"?>\n<!DOCTYPE a [\n\t<!ELEMENT a (#PCDATA)>\n]>\n<a x='1'><!-- hi -->text</a>";
+		Token[] tokens = getParser().parse(xml, true);
+		XMLTokenizer tokenizer = new XMLTokenizer(xml);
+		for (Token token : tokens) {
+			assertNotNull(tokenizer.next());
+			assertEquals(token.getDocumentStartIndex(), tokenizer.getStart());
+			assertEquals(token.getDocumentEndIndex(), tokenizer.getEnd());
+			assertTrue(tokenizer.textEquals(token.getText()));
+			if (token instanceof TagDeclarationToken
+					&& tokenizer.getMatchStart() != -1) {
+				Token match = (Token) ((TagDeclarationToken<?>) token)
+						.getMatch();
+				assertEquals(match.getDocumentStartIndex(),
+						tokenizer.getMatchStart());
+			}
+		}
+		assertNull(tokenizer.next());
+
+		tokenizer = new XMLTokenizer("<a><!-- hi --></a>");
+		assertEquals(XMLTokenizer.Type.START_TAG, tokenizer.next());
+		assertEquals(XMLTokenizer.Type.WORD, tokenizer.next());
+		assertEquals(XMLTokenizer.Type.END_TAG, tokenizer.next());
+		assertEquals(0, tokenizer.getMatchStart());
+		assertEquals(XMLTokenizer.Type.START_COMMENT, tokenizer.next());
+		assertEquals(XMLTokenizer.Type.COMMENT, tokenizer.next());
+		assertEquals(" hi ", tokenizer.getText());
+		assertEquals(XMLTokenizer.Type.END_COMMENT, tokenizer.next());
+		assertEquals(3, tokenizer.getMatchStart());
+		assertEquals(XMLTokenizer.Type.START_TAG, tokenizer.next());
+		assertTrue(tokenizer.textEquals("</"));
+	}
+
 	/**
 	 * Convert text to an array of Tokens, and verify that the Tokens can be
 	 * used to reassemble the original test.
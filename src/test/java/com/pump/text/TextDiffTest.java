@@ -0,0 +1,127 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.text;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.pump.text.TextDiff.Algorithm;
+import com.pump.text.TextDiff.Branch;
+import com.pump.text.TextDiff.DiffSegment;
+
+import junit.framework.TestCase;
+
+public class TextDiffTest extends TestCase {
+
+	@Test
+	public void testExamples() {
+		for (Algorithm algorithm : Algorithm.values()) {
+			TextDiff diff = new TextDiff(algorithm, 0);
+			assertEquals("[anti]gravity{ field}",
+					diff.getSolution("antigravity", "gravity field").toString());
+			assertEquals("[under]water",
+					diff.getSolution("underwater", "water").toString());
+			assertEquals("{under}water",
+					diff.getSolution("water", "underwater").toString());
+			assertEquals("[a]{b}", diff.getSolution("a", "b").toString());
+			assertEquals("same", diff.getSolution("same", "same").toString());
+		}
+	}
+
+	/**
+	 * The Myers engine should find exactly the same simplest solutions as the
+	 * recursive engine.
+	 */
+	@Test
+	public void testAlgorithmsMatch() {
+		TextDiff recursive = new TextDiff(Algorithm.RECURSIVE, 0);
+		TextDiff myers = new TextDiff(Algorithm.MYERS, 0);
+		Random random = new Random(0);
+		for (int a = 0; a < 2000; a++) {
+			String strA = createString(random, random.nextInt(9));
+			String strB = createString(random, random.nextInt(9));
+			if (strA.isEmpty() && strB.isEmpty())
+				continue;
+			Set<String> expected = toStrings(recursive.getSolutions(strA,
+					strB));
+			Set<String> actual = toStrings(myers.getSolutions(strA, strB));
+			assertEquals("\"" + strA + "\" vs \"" + strB + "\"", expected,
+					actual);
+
+			DiffSegment solution = myers.getSolution(strA, strB);
+			assertEquals(strA, solution.getText(Branch.A, true));
+			assertEquals(strB, solution.getText(Branch.B, true));
+			assertTrue(expected.contains(solution.toString()));
+		}
+	}
+
+	/**
+	 * The Myers engine should handle long Strings quickly.
+	 */
+	@Test
+	public void testLongStrings() {
+		Random random = new Random(0);
+		String strA = createString(random, 5000);
+		StringBuilder sb = new StringBuilder(strA);
+		for (int a = 0; a < 50; a++) {
+			int i = random.nextInt(sb.length());
+			if (random.nextBoolean()) {
+				sb.deleteCharAt(i);
+			} else {
+				sb.insert(i, 'z');
+			}
+		}
+		String strB = sb.toString();
+		DiffSegment solution = new TextDiff().getSolution(strA, strB);
+		assertEquals(strA, solution.getText(Branch.A, true));
+		assertEquals(strB, solution.getText(Branch.B, true));
+		assertTrue(solution.getSharedCharCount() >= strA.length() - 50);
+	}
+
+	/**
+	 * The cache should stay within its size limit.
+	 */
+	@Test
+	public void testCacheSize() {
+		TextDiff diff = new TextDiff(Algorithm.MYERS, 10000);
+		Random random = new Random(0);
+		for (int a = 0; a < 500; a++) {
+			diff.getSolution(createString(random, 20),
+					createString(random, 20));
+			assertTrue(diff.getCacheSize() <= 10000);
+		}
+		assertTrue(diff.getCacheSize() > 0);
+		diff.clearCache();
+		assertEquals(0, diff.getCacheSize());
+	}
+
+	private String createString(Random random, int length) {
+		char[] chars = new char[length];
+		for (int a = 0; a < chars.length; a++) {
+			chars[a] = (char) ('a' + random.nextInt(3));
+		}
+		return new String(chars);
+	}
+
+	private Set<String> toStrings(DiffSegment[] solutions) {
+		Set<String> returnValue = new HashSet<>();
+		for (DiffSegment solution : solutions) {
+			returnValue.add(solution.toString());
+		}
+		assertEquals(Arrays.toString(solutions), solutions.length,
+				returnValue.size());
+		return returnValue;
+	}
+}
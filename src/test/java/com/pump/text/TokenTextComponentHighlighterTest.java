@@ -0,0 +1,227 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.text;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+
+import org.junit.Test;
+
+import com.pump.io.parser.MatchingToken;
+import com.pump.io.parser.Token;
+import com.pump.swing.JavaFormatter;
+import com.pump.swing.XMLFormatter;
+
+import junit.framework.TestCase;
+
+public class TokenTextComponentHighlighterTest extends TestCase {
+
+	static final String[] JAVA_SNIPPETS = new String[] { "int x = 5;", "\n",
+			"\n\t", " ", "/* comment\n * more\n */", "/*", "*/",
+			"// line comment\n", "\"string\"", "\"", "'c'", "{", "}", "(",
+			")", "[", "]", "-.5", "1e10", "3.0f", "+", "return", "a-1",
+			"public static void main(String[] args) {\n}\n" };
+
+	static final String[] XML_SNIPPETS = new String[] { "<a>", "</a>",
+			"<b x=\"1\" y='2'/>", "<!-- comment -->", "<!--", "-->",
+			"<?xml version=\"1.0\"?>", "text", " ", "\n", "\"", "<", ">",
+			"<c>some content</c>", "=" };
+
+	/**
+	 * Tokens that are parsed incrementally should match the tokens from
+	 * parsing all the text.
+	 */
+	@Test
+	public void testJavaIncrementalTokens() throws Exception {
+		invokeAndWait(new Callable<Void>() {
+			public Void call() throws Exception {
+				testIncrementalTokens(JAVA_SNIPPETS, true);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Tokens that are parsed incrementally should match the tokens from
+	 * parsing all the text.
+	 */
+	@Test
+	public void testXMLIncrementalTokens() throws Exception {
+		invokeAndWait(new Callable<Void>() {
+			public Void call() throws Exception {
+				testIncrementalTokens(XML_SNIPPETS, false);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Formatting a document incrementally should produce the same attributes
+	 * as formatting it all at once.
+	 */
+	@Test
+	public void testIncrementalFormatting() throws Exception {
+		invokeAndWait(new Callable<Void>() {
+			public Void call() throws Exception {
+				Random random = new Random(0);
+				JTextPane textPane = new JTextPane();
+				textPane.setText(createText(random, JAVA_SNIPPETS, 100));
+				JavaFormatter formatter = new JavaFormatter(textPane);
+				formatter.refresh(false);
+				for (int a = 0; a < 100; a++) {
+					edit(random, textPane, JAVA_SNIPPETS);
+					formatter.refresh(false);
+
+					JTextPane textPane2 = new JTextPane();
+					textPane2.setText(textPane.getText());
+					new JavaFormatter(textPane2).refresh(false);
+					assertSameAttributes(textPane.getStyledDocument(),
+							textPane2.getStyledDocument());
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Run a task on the event dispatch thread, because highlighters format
+	 * text on that thread.
+	 */
+	private void invokeAndWait(final Callable<Void> task) throws Exception {
+		final Exception[] exception = new Exception[1];
+		final Error[] error = new Error[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				try {
+					task.call();
+				} catch (Exception e) {
+					exception[0] = e;
+				} catch (Error e) {
+					error[0] = e;
+				}
+			}
+		});
+		if (exception[0] != null)
+			throw exception[0];
+		if (error[0] != null)
+			throw error[0];
+	}
+
+	private void testIncrementalTokens(String[] snippets, boolean java)
+			throws Exception {
+		Random random = new Random(0);
+		TokenTextComponentHighlighter incremental = createHighlighter(java);
+		String text = createText(random, snippets, 200);
+		for (int a = 0; a < 500; a++) {
+			text = edit(random, text, snippets);
+			List<String> expected = describe(createHighlighter(java)
+					.getTokens(text, true));
+			List<String> actual = describe(incremental.getTokens(text, true));
+			for (int b = 0; b < Math.max(expected.size(), actual.size()); b++) {
+				String e = b < expected.size() ? expected.get(b) : null;
+				String f = b < actual.size() ? actual.get(b) : null;
+				if (!Objects.equals(e, f))
+					assertEquals("edit " + a + ", token " + b, e, f);
+			}
+		}
+	}
+
+	private TokenTextComponentHighlighter createHighlighter(boolean java) {
+		JTextPane textPane = new JTextPane();
+		if (java)
+			return new JavaFormatter(textPane);
+		return new XMLFormatter(textPane);
+	}
+
+	private static String createText(Random random, String[] snippets,
+			int snippetCount) {
+		StringBuilder sb = new StringBuilder();
+		for (int a = 0; a < snippetCount; a++) {
+			sb.append(snippets[random.nextInt(snippets.length)]);
+		}
+		return sb.toString();
+	}
+
+	private static String edit(Random random, String text, String[] snippets) {
+		int pos = random.nextInt(text.length() + 1);
+		if (random.nextBoolean() && pos < text.length()) {
+			int end = Math.min(text.length(), pos + 1 + random.nextInt(10));
+			return text.substring(0, pos) + text.substring(end);
+		}
+		return text.substring(0, pos)
+				+ snippets[random.nextInt(snippets.length)]
+				+ text.substring(pos);
+	}
+
+	private static void edit(Random random, JTextPane textPane,
+			String[] snippets) throws Exception {
+		StyledDocument doc = textPane.getStyledDocument();
+		int pos = random.nextInt(doc.getLength() + 1);
+		if (random.nextBoolean() && pos < doc.getLength()) {
+			int length = Math.min(doc.getLength() - pos,
+					1 + random.nextInt(10));
+			doc.remove(pos, length);
+		} else {
+			doc.insertString(pos, snippets[random.nextInt(snippets.length)],
+					null);
+		}
+	}
+
+	private static List<String> describe(Token[] tokens) {
+		List<Token> list = Arrays.asList(tokens);
+		List<String> returnValue = new ArrayList<>();
+		for (Token token : tokens) {
+			String str = token.toString();
+			if (token instanceof MatchingToken) {
+				Token match = ((MatchingToken<?>) token).getMatch();
+				str += " match=" + (match == null ? -1 : indexOf(list, match));
+			}
+			returnValue.add(str);
+		}
+		return returnValue;
+	}
+
+	private static int indexOf(List<Token> list, Token token) {
+		for (int a = 0; a < list.size(); a++) {
+			if (list.get(a) == token)
+				return a;
+		}
+		return -2;
+	}
+
+	private static void assertSameAttributes(StyledDocument doc1,
+			StyledDocument doc2) throws Exception {
+		assertEquals(doc1.getText(0, doc1.getLength()),
+				doc2.getText(0, doc2.getLength()));
+		for (int a = 0; a < doc1.getLength(); a++) {
+			AttributeSet attr1 = doc1.getCharacterElement(a).getAttributes();
+			AttributeSet attr2 = doc2.getCharacterElement(a).getAttributes();
+			Color color1 = StyleConstants.getForeground(attr1);
+			Color color2 = StyleConstants.getForeground(attr2);
+			if (!color1.equals(color2)
+					|| StyleConstants.isBold(attr1) != StyleConstants
+							.isBold(attr2))
+				fail("index " + a + " of \"" + doc1.getText(0, doc1.getLength())
+						+ "\"");
+		}
+	}
+}
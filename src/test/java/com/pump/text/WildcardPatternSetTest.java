@@ -0,0 +1,94 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class WildcardPatternSetTest extends TestCase {
+
+	@Test
+	public void testMatchingPatterns() {
+		WildcardPattern jpg = new WildcardPattern("*.jpg");
+		WildcardPattern img = new WildcardPattern("img_????.*");
+		WildcardPattern caseSensitive;
+		{
+			WildcardPattern.Format format = new WildcardPattern.Format();
+			format.caseSensitive = true;
+			caseSensitive = new WildcardPattern("IMG*", format);
+		}
+		WildcardPatternSet set = new WildcardPatternSet(jpg, img,
+				caseSensitive);
+
+		assertEquals(Arrays.asList(jpg, img, caseSensitive),
+				set.getMatchingPatterns("IMG_1234.JPG"));
+		assertEquals(Arrays.asList(jpg, img),
+				set.getMatchingPatterns("img_1234.jpg"));
+		assertEquals(Arrays.asList(img), set.getMatchingPatterns("img_1234.png"));
+		assertEquals(Arrays.asList(), set.getMatchingPatterns("photo.png"));
+		assertTrue(set.matchesAny("IMG"));
+		assertFalse(set.matchesAny("img"));
+		assertFalse(new WildcardPatternSet().matchesAny(""));
+	}
+
+	/**
+	 * Compare the set against each pattern for many random patterns, so the
+	 * states span several 64-bit words.
+	 */
+	@Test
+	public void testRandomPatterns() {
+		Random random = new Random(0);
+		String[] tokens = new String[] { "a", "b", "*", "?", "[ab]" };
+		List<WildcardPattern> patterns = new ArrayList<>();
+		for (int a = 0; a < 100; a++) {
+			StringBuilder sb = new StringBuilder();
+			int length = random.nextInt(8);
+			for (int b = 0; b < length; b++) {
+				sb.append(tokens[random.nextInt(tokens.length)]);
+			}
+			patterns.add(new WildcardPattern(sb.toString()));
+		}
+		WildcardPatternSet set = new WildcardPatternSet(patterns);
+
+		TreeSet<String> strings = new TreeSet<>();
+		for (int a = 0; a < 1000; a++) {
+			StringBuilder sb = new StringBuilder();
+			int length = random.nextInt(10);
+			for (int b = 0; b < length; b++) {
+				sb.append("abc".charAt(random.nextInt(3)));
+			}
+			String str = sb.toString();
+			strings.add(str);
+
+			List<WildcardPattern> expected = new ArrayList<>();
+			for (WildcardPattern p : patterns) {
+				if (p.matches(str))
+					expected.add(p);
+			}
+			assertEquals(str, expected, set.getMatchingPatterns(str));
+			assertEquals(str, !expected.isEmpty(), set.matchesAny(str));
+		}
+
+		TreeSet<String> expected = new TreeSet<>();
+		for (String str : strings) {
+			if (set.matchesAny(str))
+				expected.add(str);
+		}
+		assertEquals(expected, set.getMatches(strings));
+	}
+}
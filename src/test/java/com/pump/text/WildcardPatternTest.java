@@ -11,6 +11,7 @@
 package com.pump.text;
 
 import java.util.Arrays;
+import java.util.Random;
 import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -203,18 +204,136 @@ public class WildcardPatternTest extends TestCase {
 	}
 
 	/**
-	 * A pattern with two asterisks usually requires more work
+	 * A pattern with two asterisks is evaluated by the compiled automaton
+	 * after the constant prefix and suffix are checked, so it doesn't recurse
+	 * either.
 	 */
 	public void testMultipleStarWildcardMatchInvocationCount() {
-		assertTrue(getMatchInvocationCount("*u*ter", "butter") > 1);
-		assertTrue(getMatchInvocationCount("*u*ter", "flutter") > 1);
-		assertTrue(getMatchInvocationCount("*u*ter", "rebuke after") > 1);
-
-		// but this one ends with "rer" and not "ter", so we should immediately
-		// strike out
+		assertEquals(1, getMatchInvocationCount("*u*ter", "butter"));
+		assertEquals(1, getMatchInvocationCount("*u*ter", "flutter"));
+		assertEquals(1, getMatchInvocationCount("*u*ter", "rebuke after"));
 		assertEquals(1, getMatchInvocationCount("*u*ter", "mutterer"));
 	}
 
+	/**
+	 * Backtracking over several stars is exponential, but the compiled
+	 * automaton is linear.
+	 */
+	public void testManyStarWildcards() {
+		StringBuilder sb = new StringBuilder();
+		for (int a = 0; a < 2000; a++) {
+			sb.append('a');
+		}
+		String str = sb.toString();
+		assertFalse(new WildcardPattern("*a*a*a*a*a*a*a*a*a*a*a*a*b")
+				.matches(str));
+		assertTrue(new WildcardPattern("*a*a*a*a*a*a*a*a*a*a*a*a*")
+				.matches(str));
+		assertTrue(new WildcardPattern("a*a*a*a*a*a*a*a*a*a*a*a*a")
+				.matches(str));
+	}
+
+	/**
+	 * Compare matches(..) against a simple dynamic programming implementation
+	 * for random patterns, including patterns that need more than one 64-bit
+	 * word of states.
+	 */
+	public void testRandomPatterns() {
+		Random random = new Random(0);
+		String[] tokens = new String[] { "a", "b", "A", "*", "?", "[ab]",
+				"[b-c]" };
+		for (int a = 0; a < 3000; a++) {
+			StringBuilder sb = new StringBuilder();
+			int length = a % 10 == 0 ? 60 + random.nextInt(80) : random
+					.nextInt(10);
+			for (int b = 0; b < length; b++) {
+				sb.append(tokens[random.nextInt(tokens.length)]);
+			}
+			WildcardPattern.Format format = new WildcardPattern.Format();
+			format.caseSensitive = random.nextBoolean();
+			WildcardPattern pattern = new WildcardPattern(sb.toString(),
+					format);
+			for (int b = 0; b < 20; b++) {
+				String str = createRandomString(random, "abcAB",
+						random.nextInt(length + 5));
+				boolean expected = matchesReference(pattern, str);
+				if (expected != pattern.matches(str)
+						|| expected != pattern.getAutomaton().matches(str, 0,
+								str.length(), 0, pattern.getPlaceholderCount()))
+					fail(pattern + " " + str + " " + expected);
+			}
+		}
+	}
+
+	/**
+	 * Compare getMatches(..) against testing every element for random sets
+	 * and patterns.
+	 */
+	public void testRandomGetMatches() {
+		Random random = new Random(0);
+		String[] patterns = new String[] { "*", "", "a*", "*b", "a*b*",
+				"?b*", "[ab]?a*", "*ab*ba*", "b?", "*\u00e9*", "\uffff*",
+				"*[c-e]" };
+		for (int a = 0; a < 100; a++) {
+			TreeSet<String> set = new TreeSet<>();
+			for (int b = 0; b < 200; b++) {
+				set.add(createRandomString(random, "abcdAB\u00e9\u00c9\uffff",
+						random.nextInt(6)));
+			}
+			for (String patternText : patterns) {
+				WildcardPattern pattern = new WildcardPattern(patternText);
+				TreeSet<String> expected = new TreeSet<>();
+				for (String s : set) {
+					if (pattern.matches(s))
+						expected.add(s);
+				}
+				assertEquals(patternText, expected, pattern.getMatches(set));
+			}
+		}
+	}
+
+	private String createRandomString(Random random, String chars, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int a = 0; a < length; a++) {
+			sb.append(chars.charAt(random.nextInt(chars.length())));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A simple O(n*m) implementation of the pattern matching logic.
+	 */
+	static boolean matchesReference(WildcardPattern pattern, String str) {
+		boolean caseSensitive = pattern.getFormat().caseSensitive;
+		int m = pattern.getPlaceholderCount();
+		// matched[i][j]: can str[i..] be matched by placeholders[j..]?
+		boolean[][] matched = new boolean[str.length() + 1][m + 1];
+		matched[str.length()][m] = true;
+		for (int i = str.length(); i >= 0; i--) {
+			for (int j = m - 1; j >= 0; j--) {
+				WildcardPattern.Placeholder p = pattern.getPlaceholder(j);
+				if (p instanceof WildcardPattern.StarWildcard) {
+					matched[i][j] = matched[i][j + 1]
+							|| (i < str.length() && matched[i + 1][j]);
+				} else if (i < str.length()) {
+					char c = str.charAt(i);
+					boolean accepts;
+					if (p instanceof WildcardPattern.FixedCharacter) {
+						accepts = ((WildcardPattern.FixedCharacter) p).matches(
+								c, caseSensitive);
+					} else if (p instanceof WildcardPattern.SquareBracketsWildcard) {
+						accepts = ((WildcardPattern.SquareBracketsWildcard) p)
+								.contains(c, caseSensitive);
+					} else {
+						accepts = true;
+					}
+					matched[i][j] = accepts && matched[i + 1][j + 1];
+				}
+			}
+		}
+		return matched[0][0];
+	}
+
 	private int getMatchInvocationCount(String pattern, String phrase) {
 		final AtomicInteger actualMatchesInvocationCount = new AtomicInteger(0);
 		WildcardPattern p = new WildcardPattern(pattern) {
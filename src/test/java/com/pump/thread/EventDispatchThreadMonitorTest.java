@@ -10,6 +10,8 @@
  */
 package com.pump.thread;
 
+import java.awt.EventQueue;
+import java.awt.Toolkit;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -226,4 +228,119 @@ public class EventDispatchThreadMonitorTest extends TestCase {
 		}
 
 	}
-}
\ No newline at end of file
+
+	/**
+	 * This freezes the EDT and makes sure a StallListener receives stack
+	 * traces of the frozen EDT, and that the dispatch delay histogram
+	 * recorded the delay.
+	 */
+	public void testStall() throws Exception {
+		final EventDispatchThreadMonitor m = EventDispatchThreadMonitor.get();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		while (!m.isInitialized()) {
+			Thread.sleep(50);
+		}
+
+		final List<EventDispatchThreadMonitor.Stall> stalls = Collections
+				.synchronizedList(new ArrayList<EventDispatchThreadMonitor.Stall>());
+		EventDispatchThreadMonitor.StallListener listener = new EventDispatchThreadMonitor.StallListener() {
+			@Override
+			public void stallRecorded(EventDispatchThreadMonitor.Stall stall) {
+				stalls.add(stall);
+			}
+		};
+		m.setStallThreshold(300);
+		m.addStallListener(listener);
+		try {
+			// another few seconds to start up:
+			Thread.sleep(3000);
+
+			SwingUtilities.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					freezeEventDispatchThread();
+				}
+			});
+
+			long timeout = System.currentTimeMillis() + 2000;
+			while (stalls.isEmpty() && System.currentTimeMillis() < timeout) {
+				Thread.sleep(50);
+			}
+		} finally {
+			m.removeStallListener(listener);
+			m.setStallThreshold(500);
+		}
+
+		assertEquals(1, stalls.size());
+		EventDispatchThreadMonitor.Stall stall = stalls.get(0);
+		assertTrue(stall.toString(), stall.getDurationMillis() >= 1000);
+		assertFalse(stall.getSamples().isEmpty());
+		assertTrue(stall.toString(),
+				stall.toString().contains("freezeEventDispatchThread"));
+		assertTrue(m.getRecentStalls().contains(stall));
+		assertTrue(m.getDispatchDelayHistogram().getMaxValue() > 500000000L);
+	}
+
+	/**
+	 * This EventQueue exposes pop() to the test.
+	 */
+	static class PoppableEventQueue extends EventQueue {
+		@Override
+		public void pop() {
+			super.pop();
+		}
+	}
+
+	/**
+	 * Disabling latency recording must not pop an EventQueue that another
+	 * caller pushed after the monitor pushed its own queue.
+	 */
+	public void testLatencyRecordingWithAnotherEventQueue() throws Exception {
+		EventDispatchThreadMonitor m = EventDispatchThreadMonitor.get();
+		Runnable emptyRunnable = new Runnable() {
+			@Override
+			public void run() {
+			}
+		};
+		EventQueue systemQueue = Toolkit.getDefaultToolkit()
+				.getSystemEventQueue();
+
+		m.setLatencyRecordingEnabled(true);
+		PoppableEventQueue otherQueue = new PoppableEventQueue();
+		systemQueue.push(otherQueue);
+		try {
+			m.setLatencyRecordingEnabled(false);
+			assertSame(otherQueue,
+					Toolkit.getDefaultToolkit().getSystemEventQueue());
+		} finally {
+			otherQueue.pop();
+		}
+
+		// the monitor's queue is still installed, but it stopped recording
+		long count = m.getEventProcessingHistogram().getTotalCount();
+		SwingUtilities.invokeAndWait(emptyRunnable);
+		assertEquals(count, m.getEventProcessingHistogram().getTotalCount());
+
+		// enabling recording again reuses that queue
+		m.setLatencyRecordingEnabled(true);
+		SwingUtilities.invokeAndWait(emptyRunnable);
+		assertTrue(count < m.getEventProcessingHistogram().getTotalCount());
+
+		// now nothing is on top of it, so it can be popped
+		m.setLatencyRecordingEnabled(false);
+		assertSame(systemQueue,
+				Toolkit.getDefaultToolkit().getSystemEventQueue());
+	}
+
+	static void freezeEventDispatchThread() {
+		try {
+			Thread.sleep(1200);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.thread;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+	/**
+	 * Every value should map to a bucket whose highest value is at least the
+	 * value and within 1/64 of it.
+	 */
+	public void testBuckets() {
+		Random random = new Random(0);
+		for (int a = 0; a < 100000; a++) {
+			long value = random.nextLong() >>> (1 + random.nextInt(63));
+			int index = LatencyHistogram.getIndex(value);
+			long highest = LatencyHistogram.getHighestValue(index);
+			assertTrue(value + " " + highest, highest >= value);
+			assertTrue(value + " " + highest,
+					highest - value <= value / 64.0 + 1);
+			if (index > 0) {
+				assertTrue(LatencyHistogram.getHighestValue(index - 1) < value);
+			}
+		}
+		assertEquals(0, LatencyHistogram.getIndex(0));
+		assertEquals(Long.MAX_VALUE, LatencyHistogram
+				.getHighestValue(LatencyHistogram.getIndex(Long.MAX_VALUE)));
+	}
+
+	public void testPercentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(0, h.getValueAtPercentile(50));
+		for (int a = 1; a <= 10000; a++) {
+			h.record(a * 1000L);
+		}
+		assertEquals(10000, h.getTotalCount());
+		assertEquals(10000000L, h.getMaxValue());
+		assertEquals(5000500.0, h.getMean(), .001);
+		assertEquals(5000000, h.getValueAtPercentile(50), 5000000 / 64);
+		assertEquals(9900000, h.getValueAtPercentile(99), 9900000 / 64);
+		assertEquals(10000000L, h.getValueAtPercentile(100));
+		assertEquals(1000, h.getValueAtPercentile(0), 1000 / 64);
+
+		h.reset();
+		assertEquals(0, h.getTotalCount());
+		assertEquals(0, h.getMaxValue());
+	}
+}
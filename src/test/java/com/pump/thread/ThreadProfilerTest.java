@@ -0,0 +1,100 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.thread;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+public class ThreadProfilerTest extends TestCase {
+
+	static volatile double sink;
+
+	static void busyMethod(AtomicBoolean done) {
+		double d = 0;
+		while (!done.get()) {
+			d += Math.sqrt(d + 1);
+		}
+		sink = d;
+	}
+
+	/**
+	 * Profile one busy thread and make sure both output formats describe it,
+	 * and that other threads are not sampled.
+	 */
+	public void testOutput() throws Exception {
+		final AtomicBoolean done = new AtomicBoolean(false);
+		Thread thread = new Thread("busy-thread") {
+			@Override
+			public void run() {
+				busyMethod(done);
+			}
+		};
+		thread.start();
+		ThreadProfiler profiler = new ThreadProfiler(thread);
+		try {
+			profiler.setSampleInterval(10);
+			profiler.setActive(true);
+			Thread.sleep(500);
+			profiler.setActive(false);
+			Thread.sleep(50);
+		} finally {
+			done.set(true);
+			thread.join();
+		}
+
+		String output = profiler.getOutput();
+		assertTrue(output, output.contains("-------- busy-thread"));
+		assertTrue(output, output.contains(
+				"com.pump.thread.ThreadProfilerTest#busyMethod("));
+		assertFalse(output, output.contains("-------- main"));
+
+		String collapsed = profiler.getCollapsedStacks();
+		int totalSamples = 0;
+		for (String line : collapsed.split("\n")) {
+			assertTrue(line, line.startsWith("busy-thread;"));
+			int i = line.lastIndexOf(' ');
+			totalSamples += Integer.parseInt(line.substring(i + 1));
+		}
+		assertTrue(collapsed, collapsed.contains(
+				"ThreadProfilerTest$1.run;com.pump.thread.ThreadProfilerTest.busyMethod"));
+
+		int sampleCount = Integer
+				.parseInt(output.substring(0, output.indexOf(' ')));
+		assertTrue(output, sampleCount > 1);
+		assertEquals(sampleCount, totalSamples);
+
+		profiler.reset();
+		assertEquals("", profiler.getCollapsedStacks());
+	}
+
+	/**
+	 * Build a call tree large enough to rehash and make sure children are
+	 * still found.
+	 */
+	public void testCallTree() {
+		ThreadProfiler.CallTree tree = new ThreadProfiler.CallTree();
+		int root = tree.createNode(-1, -1);
+		int[] children = new int[5000];
+		for (int a = 0; a < children.length; a++) {
+			children[a] = tree.getChild(root, a);
+		}
+		for (int a = 0; a < children.length; a++) {
+			assertEquals(children[a], tree.getChild(root, a));
+			assertEquals(a, tree.frame[children[a]]);
+			assertEquals(root, tree.parent[children[a]]);
+		}
+		int grandchild = tree.getChild(children[7], 7);
+		assertTrue(grandchild != children[7]);
+		assertEquals(grandchild, tree.getChild(children[7], 7));
+		assertEquals(children.length + 2, tree.size);
+	}
+}
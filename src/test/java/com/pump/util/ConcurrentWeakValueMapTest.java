@@ -0,0 +1,172 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import junit.framework.TestCase;
+
+public class ConcurrentWeakValueMapTest extends TestCase {
+
+	/**
+	 * Wait for the Cleaner to purge entries after garbage collection.
+	 */
+	private void waitForSize(ConcurrentWeakValueMap<?, ?> map, int size)
+			throws InterruptedException {
+		for (int a = 0; a < 100 && map.size() != size; a++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+	}
+
+	public void testPutGet() throws Exception {
+		Object value = new Object();
+		ConcurrentWeakValueMap<String, Object> map = new ConcurrentWeakValueMap<>();
+		map.put("1", value);
+
+		assertEquals(value, map.get("1"));
+		assertEquals(null, map.get("2"));
+		assertTrue(map.containsKey("1"));
+
+		// a garbage collection here should make no difference:
+		System.gc();
+
+		assertEquals(value, map.get("1"));
+		assertEquals(1, map.size());
+
+		value = null;
+
+		// the Cleaner should purge this entry without our help
+		waitForSize(map, 0);
+		assertEquals(0, map.size());
+		assertEquals(null, map.get("1"));
+		assertEquals(1, map.getPurgeCount());
+		assertEquals(2, map.getHitCount());
+		assertEquals(2, map.getMissCount());
+	}
+
+	public void testReplaceAndRemove() throws Exception {
+		Object value1 = new Object();
+		Object value2 = new Object();
+		ConcurrentWeakValueMap<String, Object> map = new ConcurrentWeakValueMap<>();
+		assertNull(map.put("1", value1));
+		assertSame(value1, map.put("1", value2));
+		assertSame(value2, map.remove("1"));
+		assertNull(map.remove("1"));
+		assertEquals(0, map.size());
+
+		map.put("1", value1);
+		map.put("2", value2);
+		assertEquals(2, map.toMap().size());
+		map.clear();
+		assertEquals(0, map.size());
+
+		// replaced and removed values are not counted as purged
+		System.gc();
+		Thread.sleep(50);
+		assertEquals(0, map.getPurgeCount());
+	}
+
+	/**
+	 * Many threads request the same keys at once, but each value should only
+	 * be computed once.
+	 */
+	public void testComputeIfAbsent() throws Exception {
+		final ConcurrentWeakValueMap<Integer, String> map = new ConcurrentWeakValueMap<>();
+		final AtomicInteger computeCount = new AtomicInteger();
+		final Function<Integer, String> function = new Function<Integer, String>() {
+			@Override
+			public String apply(Integer key) {
+				computeCount.incrementAndGet();
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				return "value " + key;
+			}
+		};
+
+		final int keyCount = 20;
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Object> results = new ArrayList<>();
+		Thread[] threads = new Thread[8];
+		for (int a = 0; a < threads.length; a++) {
+			threads[a] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						List<String> values = new ArrayList<>();
+						for (int b = 0; b < keyCount; b++) {
+							values.add(map.computeIfAbsent(b, function));
+						}
+						synchronized (results) {
+							results.add(values);
+						}
+					} catch (Throwable t) {
+						synchronized (results) {
+							results.add(t);
+						}
+					}
+				}
+			};
+			threads[a].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(threads.length, results.size());
+		for (Object result : results) {
+			List<?> values = (List<?>) result;
+			for (int b = 0; b < keyCount; b++) {
+				// every thread should receive the identical String
+				assertSame(map.get(b), values.get(b));
+			}
+		}
+		assertEquals(keyCount, computeCount.get());
+		assertEquals(keyCount, map.getComputeCount());
+	}
+
+	/**
+	 * An exception thrown while computing a value should propagate, and
+	 * should not leave an entry behind.
+	 */
+	public void testComputeIfAbsentException() {
+		ConcurrentWeakValueMap<String, Object> map = new ConcurrentWeakValueMap<>();
+		try {
+			map.computeIfAbsent("1", new Function<String, Object>() {
+				@Override
+				public Object apply(String key) {
+					throw new IllegalStateException();
+				}
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			// pass
+		}
+		assertEquals(0, map.size());
+		Object value = map.computeIfAbsent("1",
+				new Function<String, Object>() {
+					@Override
+					public Object apply(String key) {
+						return key + "!";
+					}
+				});
+		assertEquals("1!", value);
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.util.list;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ChunkedListTest extends TestCase {
+
+	/**
+	 * Apply random operations to a ChunkedList and an ArrayList and make sure
+	 * they always agree, and that snapshots never change.
+	 */
+	public void testRandomOperations() {
+		Random random = new Random(0);
+		ChunkedList<Integer> list = new ChunkedList<>();
+		List<Integer> control = new ArrayList<>();
+		List<List<Integer>> snapshots = new ArrayList<>();
+		List<List<Integer>> snapshotControls = new ArrayList<>();
+
+		for (int a = 0; a < 20000; a++) {
+			int k = random.nextInt(20);
+			if (k < 6 || control.size() < 10) {
+				int index = random.nextInt(control.size() + 1);
+				Integer value = random.nextInt(100);
+				list.add(index, value);
+				control.add(index, value);
+			} else if (k < 9) {
+				int index = random.nextInt(control.size());
+				assertEquals(control.remove(index), list.remove(index));
+			} else if (k < 12) {
+				int index = random.nextInt(control.size());
+				Integer value = random.nextInt(100);
+				assertEquals(control.set(index, value), list.set(index, value));
+			} else if (k == 12) {
+				List<Integer> added = new ArrayList<>();
+				for (int b = random.nextInt(1500); b > 0; b--) {
+					added.add(random.nextInt(100));
+				}
+				int index = random.nextInt(2) == 0 ? control.size() : random
+						.nextInt(control.size() + 1);
+				list.addAll(index, added);
+				control.addAll(index, added);
+			} else if (k == 13) {
+				int start = random.nextInt(control.size());
+				int end = start + random.nextInt(control.size() - start);
+				list.subList(start, end).clear();
+				control.subList(start, end).clear();
+			} else if (k == 14) {
+				List<Integer> removed = Arrays.asList(random.nextInt(100),
+						random.nextInt(100));
+				assertEquals(control.removeAll(removed),
+						list.removeAll(removed));
+			} else if (k == 15 && snapshots.size() < 20) {
+				snapshots.add(list.snapshot());
+				snapshotControls.add(new ArrayList<>(control));
+			} else if (k == 16 && random.nextInt(50) == 0) {
+				list.clear();
+				control.clear();
+			}
+
+			assertEquals(control.size(), list.size());
+			if (a % 100 == 0) {
+				assertEquals(control, list);
+				assertTrue(Arrays.equals(control.toArray(), list.toArray()));
+				for (int b = 0; b < snapshots.size(); b++) {
+					assertEquals(snapshotControls.get(b), snapshots.get(b));
+				}
+			}
+		}
+	}
+
+	public void testSnapshotIsImmutable() {
+		ChunkedList<String> list = new ChunkedList<>(Arrays.asList("a", "b"));
+		ChunkedList<String> snapshot = list.snapshot();
+		assertTrue(snapshot.isImmutable());
+		assertFalse(list.isImmutable());
+		try {
+			snapshot.set(0, "c");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// pass
+		}
+		list.set(0, "c");
+		assertEquals(Arrays.asList("a", "b"), snapshot);
+		assertEquals(Arrays.asList("c", "b"), list);
+	}
+
+	public void testSerialization() throws Exception {
+		ChunkedList<Integer> list = new ChunkedList<>();
+		for (int a = 0; a < 2000; a++) {
+			list.add(a);
+		}
+		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+		try (ObjectOutputStream objOut = new ObjectOutputStream(byteOut)) {
+			objOut.writeObject(list);
+		}
+		try (ObjectInputStream objIn = new ObjectInputStream(
+				new ByteArrayInputStream(byteOut.toByteArray()))) {
+			@SuppressWarnings("unchecked")
+			List<Integer> copy = (List<Integer>) objIn.readObject();
+			assertEquals(list, copy);
+			copy.add(0, -1);
+			assertEquals(2001, copy.size());
+		}
+	}
+}
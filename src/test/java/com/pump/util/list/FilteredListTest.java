@@ -0,0 +1,243 @@
+/**
+ * This software is released as part of the Pumpernickel project.
+ * 
+ * All com.pump resources in the Pumpernickel project are distributed under the
+ * MIT License:
+ * https://github.com/mickleness/pumpernickel/raw/master/License.txt
+ * 
+ * More information about the Pumpernickel project is available here:
+ * https://mickleness.github.io/pumpernickel/
+ */
+package com.pump.util.list;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.event.ListDataEvent;
+
+import junit.framework.TestCase;
+
+import com.pump.util.list.AbstractListFilter.FilterChangeEvent;
+
+public class FilteredListTest extends TestCase {
+
+	/**
+	 * This accepts integers that are greater than or equal to a minimum
+	 * value, so raising the minimum narrows the filter and lowering it widens
+	 * the filter.
+	 */
+	static class MinimumFilter extends AbstractListFilter<Integer> {
+		volatile int min;
+		volatile boolean oddOnly;
+		AtomicInteger evaluationCount = new AtomicInteger();
+
+		@Override
+		public boolean accept(Integer candidate) {
+			evaluationCount.incrementAndGet();
+			if (oddOnly && candidate % 2 == 0)
+				return false;
+			return candidate >= min;
+		}
+	}
+
+	/**
+	 * This applies each ListDataEvent to a separate list, so we can confirm
+	 * the events are an accurate description of how the FilteredList changed.
+	 */
+	static class EventLog {
+		List<Integer> shadow = new ArrayList<>();
+		int eventCount = 0;
+
+		void apply(ListDataEvent e, List<Integer> acceptedElements) {
+			eventCount++;
+			int i0 = e.getIndex0();
+			int i1 = e.getIndex1();
+			assertTrue(i0 <= i1);
+			if (e.getType() == ListDataEvent.INTERVAL_ADDED) {
+				shadow.addAll(i0, acceptedElements.subList(i0, i1 + 1));
+			} else if (e.getType() == ListDataEvent.INTERVAL_REMOVED) {
+				shadow.subList(i0, i1 + 1).clear();
+			} else {
+				for (int a = i0; a <= i1; a++) {
+					shadow.set(a, acceptedElements.get(a));
+				}
+			}
+		}
+	}
+
+	public void testRandomOperations() {
+		Random random = new Random(0);
+		final MinimumFilter filter = new MinimumFilter();
+		final EventLog log = new EventLog();
+		final List<FilteredList<Integer>> filteredListRef = new ArrayList<>();
+		FilteredList<Integer> filteredList = new FilteredList<Integer>(this,
+				filter) {
+			@Override
+			protected void fireListDataEvent(ListDataEvent event) {
+				log.apply(event, filteredListRef.get(0)
+						.getAcceptedElements());
+			}
+		};
+		filteredListRef.add(filteredList);
+		List<Integer> master = new ArrayList<>();
+
+		for (int a = 0; a < 3000; a++) {
+			int k = random.nextInt(20);
+			if (k < 5 || master.size() < 10) {
+				int index = random.nextInt(master.size() + 1);
+				int count = random.nextInt(10) == 0 ? 200 : 1 + random
+						.nextInt(3);
+				List<Integer> added = new ArrayList<>();
+				for (int b = 0; b < count; b++) {
+					added.add(random.nextInt(1000));
+				}
+				master.addAll(index, added);
+				filteredList.process(new AddElementsEvent<Integer>(this,
+						index, added));
+			} else if (k < 9) {
+				TreeMap<Integer, Integer> removed = new TreeMap<>();
+				int count = random.nextInt(10) == 0 ? master.size() / 2 : 1 + random
+						.nextInt(4);
+				for (int b = 0; b < count; b++) {
+					int index = random.nextInt(master.size());
+					removed.put(index, master.get(index));
+				}
+				for (int index : removed.descendingKeySet()) {
+					master.remove(index);
+				}
+				filteredList.process(new RemoveElementsEvent<Integer>(this,
+						removed));
+			} else if (k < 12) {
+				int index = random.nextInt(master.size());
+				Integer oldValue = master.get(index);
+				Integer newValue = random.nextInt(1000);
+				master.set(index, newValue);
+				filteredList.process(new ChangeElementEvent<Integer>(this,
+						index, oldValue, newValue));
+			} else if (k == 12 && random.nextInt(10) == 0) {
+				List<Integer> oldValues = new ArrayList<>(master);
+				master.clear();
+				for (int b = random.nextInt(20000); b > 0; b--) {
+					master.add(random.nextInt(1000));
+				}
+				filteredList.process(new ReplaceElementsEvent<Integer>(this,
+						oldValues, new ArrayList<>(master)));
+			} else if (k == 13) {
+				filter.min += random.nextInt(50);
+				filteredList.refilter(FilterChangeEvent.Type.NARROWED);
+			} else if (k == 14) {
+				filter.min = Math.max(0, filter.min - random.nextInt(200));
+				filteredList.refilter(FilterChangeEvent.Type.WIDENED);
+			} else if (k == 15) {
+				filter.oddOnly = !filter.oddOnly;
+				filteredList.refilter(FilterChangeEvent.Type.CHANGED);
+			} else if (k == 16) {
+				filter.setActive(!filter.isActive());
+				filteredList.refilter(filter.isActive() ? FilterChangeEvent.Type.NARROWED
+						: FilterChangeEvent.Type.WIDENED);
+			}
+
+			List<Integer> expected = new ArrayList<>();
+			for (Integer i : master) {
+				if (!filter.isActive() || filter.accept(i))
+					expected.add(i);
+			}
+			assertEquals(expected, filteredList.getAcceptedElements());
+			assertEquals(expected, log.shadow);
+		}
+	}
+
+	/**
+	 * Narrowing a filter should only evaluate the elements it used to accept,
+	 * and should report the smallest intervals that changed.
+	 */
+	public void testNarrowing() {
+		MinimumFilter filter = new MinimumFilter();
+		final List<ListDataEvent> events = new ArrayList<>();
+		FilteredList<Integer> filteredList = new FilteredList<Integer>(this,
+				filter) {
+			@Override
+			protected void fireListDataEvent(ListDataEvent event) {
+				events.add(event);
+			}
+		};
+		List<Integer> elements = new ArrayList<>();
+		for (int a = 0; a < 100000; a++) {
+			elements.add(a % 1000);
+		}
+		filter.min = 990;
+		filteredList.setElements(elements);
+		assertEquals(1000, filteredList.getAcceptedElements().size());
+		events.clear();
+
+		filter.evaluationCount.set(0);
+		filter.min = 999;
+		filteredList.refilter(FilterChangeEvent.Type.NARROWED);
+		assertEquals(1000, filter.evaluationCount.get());
+		assertEquals(100, filteredList.getAcceptedElements().size());
+		assertEquals(100, events.size());
+		for (int a = 0; a < events.size(); a++) {
+			ListDataEvent e = events.get(a);
+			assertEquals(ListDataEvent.INTERVAL_REMOVED, e.getType());
+			assertEquals(a, e.getIndex0());
+			assertEquals(a + 8, e.getIndex1());
+		}
+	}
+
+	/**
+	 * The filter should only be evaluated on other threads if parallel
+	 * evaluation is enabled.
+	 */
+	public void testParallelEvaluation() {
+		final Thread thread = Thread.currentThread();
+		final AtomicInteger otherThreadCount = new AtomicInteger();
+		MinimumFilter filter = new MinimumFilter() {
+			@Override
+			public boolean accept(Integer candidate) {
+				if (Thread.currentThread() != thread)
+					otherThreadCount.incrementAndGet();
+				return super.accept(candidate);
+			}
+		};
+		FilteredList<Integer> filteredList = new FilteredList<Integer>(this,
+				filter) {
+			@Override
+			protected void fireListDataEvent(ListDataEvent event) {
+			}
+		};
+		List<Integer> elements = new ArrayList<>();
+		for (int a = 0; a < 100000; a++) {
+			elements.add(a % 1000);
+		}
+		filter.min = 500;
+		assertFalse(filteredList.isParallel());
+		filteredList.setElements(elements);
+		assertEquals(50000, filteredList.getAcceptedElements().size());
+		assertEquals(0, otherThreadCount.get());
+
+		filteredList.setParallel(true);
+		filter.min = 900;
+		filteredList.refilter(FilterChangeEvent.Type.NARROWED);
+		assertEquals(10000, filteredList.getAcceptedElements().size());
+		for (Integer i : filteredList.getAcceptedElements()) {
+			assertTrue(i >= 900);
+		}
+	}
+
+	public void testRemoveElementsEventIntervals() {
+		TreeMap<Integer, String> removed = new TreeMap<>();
+		removed.put(1, "b");
+		removed.put(2, "c");
+		removed.put(5, "f");
+		ListDataEvent[] events = new RemoveElementsEvent<String>(this, removed)
+				.createListDataEvents();
+		assertEquals(2, events.length);
+		assertEquals(5, events[0].getIndex0());
+		assertEquals(5, events[0].getIndex1());
+		assertEquals(1, events[1].getIndex0());
+		assertEquals(2, events[1].getIndex1());
+	}
+}
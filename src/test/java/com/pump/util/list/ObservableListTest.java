@@ -12,8 +12,12 @@ package com.pump.util.list;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -809,4 +813,251 @@ public class ObservableListTest extends TestCase {
 		list.add("z");
 
 	}
-}
\ No newline at end of file
+
+	/**
+	 * ArrayListeners are given arrays that are derived from each operation's
+	 * event, so confirm those arrays match the actual before/after state.
+	 */
+	public void testArrayListener() {
+		testArrayListener(new ArrayList<Object>());
+		testArrayListener(new ChunkedList<Object>());
+	}
+
+	private void testArrayListener(List<Object> data) {
+		// the arrays are Object arrays, so this has to be a list of Objects
+		final ObservableList<Object> list = new ObservableList<>(data);
+		final List<Object> expectedOld = new ArrayList<>();
+		final List<Object[]> log = new ArrayList<>();
+		list.addArrayListener(new ObservableList.ArrayListener<Object>() {
+			@Override
+			public void listChanged(ObservableList<Object> source,
+					Object[] oldList, Object[] newList) {
+				log.add(oldList);
+				log.add(newList);
+			}
+		}, false);
+
+		Random random = new Random(0);
+		for (int a = 0; a < 2000; a++) {
+			expectedOld.clear();
+			expectedOld.addAll(list);
+			int k = random.nextInt(7);
+			if (k == 0 || list.size() < 5) {
+				list.addAll(random.nextInt(list.size() + 1),
+						Arrays.asList(random.nextInt(10), random.nextInt(10)));
+			} else if (k == 1) {
+				list.add(random.nextInt(10));
+			} else if (k == 2) {
+				list.remove(random.nextInt(list.size()));
+			} else if (k == 3) {
+				list.remove(Integer.valueOf(random.nextInt(10)));
+			} else if (k == 4) {
+				list.set(random.nextInt(list.size()), random.nextInt(10));
+			} else if (k == 5) {
+				list.removeAll(Arrays.asList(random.nextInt(10),
+						random.nextInt(10)));
+			} else if (random.nextInt(10) == 0) {
+				list.clear();
+			}
+
+			if (expectedOld.equals(list)) {
+				assertEquals(0, log.size());
+			} else {
+				assertEquals(2, log.size());
+				assertEquals(expectedOld, Arrays.asList(log.get(0)));
+				assertEquals(list, Arrays.asList(log.get(1)));
+				log.clear();
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public void testRunBatch() {
+		final ObservableList<String> list = new ObservableList<>(
+				new ChunkedList<String>());
+		list.addAll("a", "b", "c");
+		LogListListener listener = new LogListListener();
+		list.addListListener(listener, false);
+		final int[] changeCount = new int[] { 0 };
+		list.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				changeCount[0]++;
+			}
+		}, false);
+
+		// contiguous additions become one AddElementsEvent
+		list.runBatch(new Runnable() {
+			public void run() {
+				list.add("d");
+				list.add("e");
+				list.add(4, "x");
+			}
+		});
+		listener.pullAddEvent(3, "d", "x", "e");
+		assertEquals(1, changeCount[0]);
+
+		// changes to the same index become one ChangeElementEvent
+		list.runBatch(new Runnable() {
+			public void run() {
+				list.set(0, "q");
+				list.set(0, "r");
+			}
+		});
+		listener.pullSetEvent(0, "a", "r");
+		assertEquals(2, changeCount[0]);
+
+		// everything else becomes one ReplaceElementsEvent
+		list.runBatch(new Runnable() {
+			public void run() {
+				list.remove("b");
+				list.add(0, "y");
+				list.runBatch(new Runnable() {
+					public void run() {
+						list.set(3, "z");
+					}
+				});
+			}
+		});
+		listener.pullReplaceEvent(Arrays.asList("r", "b", "c", "d", "x", "e"),
+				Arrays.asList("y", "r", "c", "z", "x", "e"));
+		assertEquals(3, changeCount[0]);
+
+		// no net change means no notification
+		list.runBatch(new Runnable() {
+			public void run() {
+				list.add("w");
+				list.remove(list.size() - 1);
+			}
+		});
+		assertEquals(0, listener.log.size());
+		assertEquals(3, changeCount[0]);
+
+		// if the runnable fails then its changes are rolled back
+		List<String> expected = new ArrayList<>(list);
+		try {
+			list.runBatch(new Runnable() {
+				public void run() {
+					list.add(0, "v");
+					list.removeAll(Arrays.asList("c", "x"));
+					list.set(1, "t");
+					list.setAll(Arrays.asList("s", "t"));
+					list.add("u");
+					throw new IllegalStateException();
+				}
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			// pass
+		}
+		assertEquals(expected, list);
+		assertEquals(0, listener.log.size());
+		assertEquals(3, changeCount[0]);
+	}
+
+	/**
+	 * A batch should be rolled back even if no listener needs its events.
+	 */
+	public void testRunBatchRollbackWithoutListeners() {
+		final ObservableList<String> list = new ObservableList<>();
+		list.addAll("a", "b", "c");
+		try {
+			list.runBatch(new Runnable() {
+				public void run() {
+					list.remove("b");
+					list.clear();
+					list.add("d");
+					throw new IllegalStateException();
+				}
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			// pass
+		}
+		assertEquals(Arrays.asList("a", "b", "c"), list);
+	}
+
+	public void testSnapshot() {
+		ObservableList<String> list = new ObservableList<>(
+				new ChunkedList<String>());
+		list.addAll("a", "b", "c");
+		List<String> snapshot = list.snapshot();
+		list.set(1, "x");
+		list.add("d");
+		assertEquals(Arrays.asList("a", "b", "c"), snapshot);
+		assertEquals(Arrays.asList("a", "x", "c", "d"), list);
+		try {
+			snapshot.add("e");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// pass
+		}
+	}
+
+	/**
+	 * Read a list from several threads while another thread keeps replacing
+	 * its contents. Every snapshot of the list should contain n copies of n.
+	 */
+	public void testOptimisticReads() throws Exception {
+		final ObservableList<Integer> list = new ObservableList<>();
+		assertTrue(list.isOptimisticReads());
+		list.setAll(Collections.nCopies(10, 10));
+
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final List<Throwable> errors = Collections
+				.synchronizedList(new ArrayList<Throwable>());
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				Random random = new Random(0);
+				while (!done.get()) {
+					int n = 1 + random.nextInt(50);
+					list.setAll(Collections.nCopies(n, n));
+				}
+			}
+		};
+		Thread[] readers = new Thread[4];
+		for (int a = 0; a < readers.length; a++) {
+			readers[a] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int b = 0; b < 20000; b++) {
+							Object[] array = list.toArray();
+							for (Object e : array) {
+								assertEquals(array.length, e);
+							}
+							Integer[] array2 = list.toArray(new Integer[0]);
+							for (Integer e : array2) {
+								assertEquals(array2.length, e.intValue());
+							}
+						}
+					} catch (Throwable t) {
+						errors.add(t);
+					}
+				}
+			};
+		}
+		writer.start();
+		for (Thread reader : readers) {
+			reader.start();
+		}
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		done.set(true);
+		writer.join();
+		if (!errors.isEmpty())
+			throw new RuntimeException(errors.get(0));
+
+		ObservableList<Integer> linkedList = new ObservableList<>(
+				new LinkedList<Integer>());
+		assertFalse(linkedList.isOptimisticReads());
+		try {
+			linkedList.setOptimisticReads(true);
+			fail();
+		} catch (IllegalStateException e) {
+			// pass
+		}
+	}
+}